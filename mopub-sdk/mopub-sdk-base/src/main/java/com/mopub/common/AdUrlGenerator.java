@@ -2,11 +2,15 @@ package com.mopub.common;
 
 import android.content.Context;
 import android.location.Location;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import com.mopub.common.util.DateAndTime;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static com.mopub.common.ClientMetadata.MoPubNetworkType;
 
 public abstract class AdUrlGenerator extends BaseUrlGenerator {
@@ -101,6 +105,13 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
      */
     private static final String BUNDLE_ID_KEY = "bundle";
 
+    /**
+     * The params that only change with the client metadata, for each type of generator. Banners
+     * refresh with the same params over and over, so they are only encoded once per change.
+     */
+    private static final Map<Class<?>, EncodedParams> sEncodedParams =
+            new ConcurrentHashMap<Class<?>, EncodedParams>();
+
     protected Context mContext;
     protected String mAdUnitId;
     protected String mKeywords;
@@ -207,13 +218,11 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
     }
 
     protected void addBaseParams(final ClientMetadata clientMetadata) {
+        final EncodedParams encodedParams = getEncodedParams(clientMetadata);
+
         setAdUnitId(mAdUnitId);
 
-        setSdkVersion(clientMetadata.getSdkVersion());
-        setDeviceInfo(clientMetadata.getDeviceManufacturer(),
-                clientMetadata.getDeviceModel(),
-                clientMetadata.getDeviceProduct());
-        setBundleId(clientMetadata.getAppPackageName());
+        addEncodedParams(encodedParams.mDeviceParams);
 
         setKeywords(mKeywords);
 
@@ -221,6 +230,50 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
 
         setTimezone(DateAndTime.getTimeZoneOffsetString());
 
+        addEncodedParams(encodedParams.mClientParams);
+    }
+
+    /**
+     * Returns the params that only change with the client metadata, encoding them again if they
+     * were encoded by another type of generator, for other client metadata, or before the
+     * client metadata last changed.
+     */
+    @NonNull
+    private EncodedParams getEncodedParams(@NonNull final ClientMetadata clientMetadata) {
+        // Read before encoding, so params encoded while the metadata changes are encoded again
+        final int version = clientMetadata.getVersion();
+        final EncodedParams cachedParams = sEncodedParams.get(getClass());
+        if (cachedParams != null && cachedParams.mClientMetadata == clientMetadata
+                && cachedParams.mVersion == version) {
+            return cachedParams;
+        }
+
+        final EncodedParams encodedParams = new EncodedParams(clientMetadata, version,
+                encodeParams(new Runnable() {
+                    @Override
+                    public void run() {
+                        addDeviceParams(clientMetadata);
+                    }
+                }),
+                encodeParams(new Runnable() {
+                    @Override
+                    public void run() {
+                        addClientParams(clientMetadata);
+                    }
+                }));
+        sEncodedParams.put(getClass(), encodedParams);
+        return encodedParams;
+    }
+
+    private void addDeviceParams(@NonNull final ClientMetadata clientMetadata) {
+        setSdkVersion(clientMetadata.getSdkVersion());
+        setDeviceInfo(clientMetadata.getDeviceManufacturer(),
+                clientMetadata.getDeviceModel(),
+                clientMetadata.getDeviceProduct());
+        setBundleId(clientMetadata.getAppPackageName());
+    }
+
+    private void addClientParams(@NonNull final ClientMetadata clientMetadata) {
         setOrientation(clientMetadata.getOrientationString());
         setDeviceDimensions(clientMetadata.getDeviceDimensions());
         setDensity(clientMetadata.getDensity());
@@ -254,6 +307,11 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
         return (int) (nowInMillis - locationLastUpdatedInMillis);
     }
 
+    @VisibleForTesting
+    public static void clearEncodedParamsForTesting() {
+        sEncodedParams.clear();
+    }
+
     /**
      * @deprecated As of release 2.4
      */
@@ -261,4 +319,25 @@ public abstract class AdUrlGenerator extends BaseUrlGenerator {
     public AdUrlGenerator withFacebookSupported(boolean enabled) {
         return this;
     }
+
+    private static class EncodedParams {
+        @NonNull final ClientMetadata mClientMetadata;
+        final int mVersion;
+        /**
+         * Params that go right after the ad unit ID.
+         */
+        @NonNull final String mDeviceParams;
+        /**
+         * Params that go after the time zone, up to and including the advertising info.
+         */
+        @NonNull final String mClientParams;
+
+        EncodedParams(@NonNull final ClientMetadata clientMetadata, final int version,
+                @NonNull final String deviceParams, @NonNull final String clientParams) {
+            mClientMetadata = clientMetadata;
+            mVersion = version;
+            mDeviceParams = deviceParams;
+            mClientParams = clientParams;
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package com.mopub.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pool of background threads shared by the SDK's disk, network and image work, so that each
+ * class doesn't keep a thread pool of its own. The threads time out after
+ * {@link #KEEP_ALIVE_SECONDS} without work.
+ *
+ * Classes that need their tasks to run in order, or only a few at a time, get an executor from
+ * {@link #newSerialExecutor()} or {@link #newLimitedExecutor(int)}, which queues tasks on top of
+ * the shared pool.
+ */
+public class BackgroundExecutor {
+    @VisibleForTesting static final int KEEP_ALIVE_SECONDS = 30;
+    /**
+     * Enough threads to use every core, and to keep a few blocking network requests from holding
+     * up disk work on devices with few cores.
+     */
+    @VisibleForTesting static final int THREAD_COUNT =
+            Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    @Nullable private static ScheduledThreadPoolExecutor sExecutor;
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Returns the shared executor. Tasks run in parallel, in no particular order.
+     */
+    @NonNull
+    public static Executor getExecutor() {
+        return getScheduledExecutor();
+    }
+
+    /**
+     * Runs the task on the shared executor after the given delay.
+     */
+    @NonNull
+    public static ScheduledFuture<?> schedule(@NonNull final Runnable runnable,
+            final long delayMillis) {
+        Preconditions.checkNotNull(runnable);
+
+        return getScheduledExecutor().schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an executor that runs its tasks on the shared executor one at a time, in the order
+     * they were executed.
+     */
+    @NonNull
+    public static Executor newSerialExecutor() {
+        return newLimitedExecutor(1);
+    }
+
+    /**
+     * Returns an executor that runs at most the given number of its tasks on the shared executor
+     * at once, starting them in the order they were executed.
+     */
+    @NonNull
+    public static Executor newLimitedExecutor(final int maxConcurrency) {
+        Preconditions.checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+
+        return new LimitedExecutor(maxConcurrency);
+    }
+
+    @NonNull
+    private static synchronized ScheduledThreadPoolExecutor getScheduledExecutor() {
+        if (sExecutor == null) {
+            final ScheduledThreadPoolExecutor executor =
+                    new ScheduledThreadPoolExecutor(THREAD_COUNT);
+            executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
+    private static class LimitedExecutor implements Executor {
+        private final int mMaxConcurrency;
+        @NonNull private final Queue<Runnable> mTasks = new ArrayDeque<Runnable>();
+        private int mActiveCount;
+
+        LimitedExecutor(final int maxConcurrency) {
+            mMaxConcurrency = maxConcurrency;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull final Runnable runnable) {
+            Preconditions.checkNotNull(runnable);
+
+            mTasks.add(runnable);
+            if (mActiveCount < mMaxConcurrency) {
+                mActiveCount++;
+                getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runQueuedTasks();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Keeps running queued tasks on the same thread until there are none left, so a burst of
+         * tasks takes one trip through the shared executor's queue.
+         */
+        private void runQueuedTasks() {
+            while (true) {
+                final Runnable task;
+                synchronized (this) {
+                    task = mTasks.poll();
+                    if (task == null) {
+                        mActiveCount--;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    MoPubLog.d("Background task threw an exception.", e);
+                } finally {
+                    // A task cancelled with an interrupt must not interrupt the next one
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+}
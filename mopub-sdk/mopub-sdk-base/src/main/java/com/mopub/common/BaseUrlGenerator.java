@@ -39,6 +39,38 @@ public abstract class BaseUrlGenerator {
         mStringBuilder.append(Uri.encode(value));
     }
 
+    /**
+     * Appends params returned by {@link #encodeParams(Runnable)}.
+     */
+    protected void addEncodedParams(@NonNull String encodedParams) {
+        if (encodedParams.length() == 0) {
+            return;
+        }
+
+        // Encoded params always start with a delimiter
+        mStringBuilder.append(getParamDelimiter());
+        mStringBuilder.append(encodedParams, 1, encodedParams.length());
+    }
+
+    /**
+     * Returns the params that the runnable adds, encoded, instead of adding them to the URL. Pass
+     * the result to {@link #addEncodedParams(String)} to add them to this or any later URL.
+     */
+    @NonNull
+    protected String encodeParams(@NonNull Runnable addParams) {
+        final StringBuilder urlStringBuilder = mStringBuilder;
+        final boolean firstParam = mFirstParam;
+        mStringBuilder = new StringBuilder();
+        mFirstParam = false;
+        try {
+            addParams.run();
+            return mStringBuilder.toString();
+        } finally {
+            mStringBuilder = urlStringBuilder;
+            mFirstParam = firstParam;
+        }
+    }
+
     private String getParamDelimiter() {
         if (mFirstParam) {
             mFirstParam = false;
@@ -14,11 +14,12 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-
-import static com.mopub.common.DiskLruCache.open;
+import java.util.HashMap;
+import java.util.Map;
 
 public class CacheService {
     public interface DiskLruCacheGetListener {
@@ -31,9 +32,14 @@ public class CacheService {
     private static final int VALUE_COUNT = 1;
     private static final int DISK_CACHE_INDEX = 0;
 
-    private static DiskLruCache sDiskLruCache;
+    private static volatile StripedDiskLruCache sDiskLruCache;
+    private static long sDiskCacheBudgetBytes;
+    // Bytes of the budget used by files kept outside the disk cache, by directory
+    @NonNull private static final Map<File, Long> sReservedDiskCacheBytes =
+            new HashMap<File, Long>();
 
-    public static boolean initializeDiskCache(final Context context) {
+    // Synchronized since the disk cache may be opened from background threads.
+    public static synchronized boolean initializeDiskCache(final Context context) {
         if (context == null) {
             return false;
         }
@@ -44,13 +50,13 @@ public class CacheService {
                 return false;
             }
 
-            final long diskCacheSizeBytes = DeviceUtils.diskCacheSizeBytes(cacheDirectory);
+            sDiskCacheBudgetBytes = DeviceUtils.diskCacheSizeBytes(cacheDirectory);
             try {
-                sDiskLruCache = open(
+                sDiskLruCache = StripedDiskLruCache.open(
                         cacheDirectory,
                         APP_VERSION,
                         VALUE_COUNT,
-                        diskCacheSizeBytes
+                        getDiskLruCacheMaxSize()
                 );
             } catch (IOException e) {
                 MoPubLog.d("Unable to create DiskLruCache", e);
@@ -64,6 +70,33 @@ public class CacheService {
         initializeDiskCache(context);
     }
 
+    /**
+     * Sets how many bytes of the disk cache budget are used by the files in the given directory,
+     * which are kept outside of the disk cache, such as stored videos. The disk cache evicts
+     * entries until it fits in the rest of the budget, so that together they never use more than
+     * one budget.
+     */
+    public static synchronized void setReservedDiskCacheBytes(@NonNull final File directory,
+            final long reservedBytes) {
+        Preconditions.checkNotNull(directory);
+
+        final long previousMaxSize = getDiskLruCacheMaxSize();
+        sReservedDiskCacheBytes.put(directory, Math.max(reservedBytes, 0));
+        final long maxSize = getDiskLruCacheMaxSize();
+        if (sDiskLruCache != null && maxSize != previousMaxSize) {
+            sDiskLruCache.setMaxSize(maxSize);
+        }
+    }
+
+    private static long getDiskLruCacheMaxSize() {
+        long reservedBytes = 0;
+        for (final long bytes : sReservedDiskCacheBytes.values()) {
+            reservedBytes += bytes;
+        }
+        // DiskLruCache requires a positive max size
+        return Math.max(sDiskCacheBudgetBytes - reservedBytes, 1);
+    }
+
     public static String createValidDiskCacheKey(final String key) {
         return Utils.sha1(key);
     }
@@ -86,7 +119,11 @@ public class CacheService {
 
         try {
             final DiskLruCache.Snapshot snapshot = sDiskLruCache.get(createValidDiskCacheKey(key));
-            return snapshot != null;
+            if (snapshot == null) {
+                return false;
+            }
+            snapshot.close();
+            return true;
         } catch (Exception e) {
             return false;
         }
@@ -100,9 +137,10 @@ public class CacheService {
         // This violates encapsulation but there is no convenience method to get a filename from
         // DiskLruCache. Filename was derived from private class method Entry#getCleanFile
         // in DiskLruCache.java
-        return sDiskLruCache.getDirectory()
+        final String diskCacheKey = createValidDiskCacheKey(key);
+        return sDiskLruCache.getDirectory(diskCacheKey)
                 + File.separator
-                + createValidDiskCacheKey(key)
+                + diskCacheKey
                 + "."
                 + DISK_CACHE_INDEX;
     }
@@ -169,8 +207,8 @@ public class CacheService {
             outputStream.flush();
             outputStream.close();
 
-            sDiskLruCache.flush();
-            editor.commit();
+            // The journal is flushed in the background, batched with other puts
+            sDiskLruCache.commit(editor);
         } catch (Exception e) {
             MoPubLog.d("Unable to put to DiskLruCache", e);
             try {
@@ -185,10 +223,104 @@ public class CacheService {
         return true;
     }
 
+    /**
+     * Moves a file into the disk cache under the given key, so large files aren't written to disk
+     * twice. Falls back to copying the file if it can't be renamed into the cache directory. The
+     * file is gone after a successful call.
+     */
+    public static boolean moveToDiskCache(final String key, @NonNull final File file) {
+        if (sDiskLruCache == null) {
+            return false;
+        }
+
+        DiskLruCache.Editor editor = null;
+        try {
+            editor = sDiskLruCache.edit(createValidDiskCacheKey(key));
+
+            if (editor == null) {
+                // another edit is in progress
+                return false;
+            }
+
+            if (!editor.moveToValue(DISK_CACHE_INDEX, file)) {
+                final InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+                final OutputStream outputStream =
+                        new BufferedOutputStream(editor.newOutputStream(DISK_CACHE_INDEX));
+                try {
+                    Streams.copyContent(inputStream, outputStream);
+                    outputStream.flush();
+                } finally {
+                    Streams.closeStream(inputStream);
+                    Streams.closeStream(outputStream);
+                }
+                file.delete();
+            }
+
+            // The journal is flushed in the background, batched with other puts
+            sDiskLruCache.commit(editor);
+        } catch (Exception e) {
+            MoPubLog.d("Unable to move to DiskLruCache", e);
+            try {
+                if (editor != null) {
+                    editor.abort();
+                }
+            } catch (IOException ignore) {
+                // ignore
+            }
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean removeFromDiskCache(final String key) {
+        if (sDiskLruCache == null) {
+            return false;
+        }
+
+        try {
+            return sDiskLruCache.remove(createValidDiskCacheKey(key));
+        } catch (Exception e) {
+            MoPubLog.d("Unable to remove from DiskLruCache", e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes pending journal entries of the disk cache to the filesystem now instead of waiting
+     * for the background flush.
+     */
+    public static void flushDiskCache() {
+        if (sDiskLruCache == null) {
+            return;
+        }
+
+        try {
+            sDiskLruCache.flush();
+        } catch (Exception e) {
+            MoPubLog.d("Unable to flush DiskLruCache", e);
+        }
+    }
+
+    /**
+     * Returns the hit, miss, eviction and journal counters of the disk cache, or null if it
+     * hasn't been initialized.
+     */
+    @Nullable
+    public static StripedDiskLruCache.Stats getDiskCacheStats() {
+        if (sDiskLruCache == null) {
+            return null;
+        }
+        return sDiskLruCache.getStats();
+    }
+
     public static void putToDiskCacheAsync(final String key, final byte[] content) {
         new DiskLruCachePutTask(key, content).execute();
     }
 
+    public static void removeFromDiskCacheAsync(final String key) {
+        new DiskLruCacheRemoveTask(key).execute();
+    }
+
     private static class DiskLruCacheGetTask extends AsyncTask<Void, Void, byte[]> {
         private final DiskLruCacheGetListener mDiskLruCacheGetListener;
         private final String mKey;
@@ -239,10 +371,25 @@ public class CacheService {
         }
     }
 
+    private static class DiskLruCacheRemoveTask extends AsyncTask<Void, Void, Void> {
+        private final String mKey;
+
+        DiskLruCacheRemoveTask(final String key) {
+            mKey = key;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            CacheService.removeFromDiskCache(mKey);
+            return null;
+        }
+    }
+
     // Testing
     @Deprecated
     @VisibleForTesting
-    public static void clearAndNullCaches() {
+    public static synchronized void clearAndNullCaches() {
+        sReservedDiskCacheBytes.clear();
         if (sDiskLruCache != null) {
             try {
                 sDiskLruCache.delete();
@@ -256,7 +403,7 @@ public class CacheService {
     // Testing
     @Deprecated
     @VisibleForTesting
-    public static DiskLruCache getDiskLruCache() {
+    public static StripedDiskLruCache getDiskLruCache() {
         return sDiskLruCache;
     }
 }
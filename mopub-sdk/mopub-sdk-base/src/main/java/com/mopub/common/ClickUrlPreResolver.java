@@ -0,0 +1,182 @@
+package com.mopub.common;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.mopub.common.UrlResolutionTask.UrlResolutionListener;
+
+/**
+ * Follows the redirects of click destination URLs before the user taps, so that a click can open
+ * the final destination right away instead of waiting on {@link UrlResolutionTask}.
+ *
+ * Pre-resolution is off unless enabled with
+ * {@link MoPub#setClickUrlPreResolutionEnabled(boolean)}, since it requests the click URLs of ads
+ * that may never be clicked. Only URLs on the hosts set with
+ * {@link MoPub#setClickUrlPreResolutionHosts(java.util.Collection)} are requested, so a click
+ * URL that goes through any other host, such as a click tracker, is resolved when it is tapped.
+ * Resolved URLs are cached by click URL for
+ * {@link #CACHE_TTL_MILLIS}. Each lookup is logged with the cache's hit rate and the resolution
+ * time that hits have saved so far.
+ */
+public class ClickUrlPreResolver {
+    static final long CACHE_TTL_MILLIS = 5 * 60 * 1000;
+    private static final int MAX_CACHED_URLS = 50;
+
+    @NonNull private static final Map<String, ResolvedUrl> sResolvedUrls =
+            new LinkedHashMap<String, ResolvedUrl>(MAX_CACHED_URLS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, ResolvedUrl> eldest) {
+                    return size() > MAX_CACHED_URLS;
+                }
+            };
+    // Click URLs being resolved, so that an ad that is prepared again doesn't start another task.
+    @NonNull private static final Set<String> sPendingUrls = new HashSet<String>();
+
+    private static int sHitCount;
+    private static int sMissCount;
+    private static long sSavedMillis;
+
+    private ClickUrlPreResolver() {
+    }
+
+    /**
+     * Starts following the redirects of the given click URL in the background. Does nothing if
+     * pre-resolution is disabled, or if the URL is already cached or being resolved.
+     *
+     * @param clickUrl The click destination URL of an ad that has loaded or is being shown
+     */
+    public static void preResolve(@Nullable final String clickUrl) {
+        if (!MoPub.isClickUrlPreResolutionEnabled() || TextUtils.isEmpty(clickUrl)) {
+            return;
+        }
+
+        synchronized (sResolvedUrls) {
+            if (sPendingUrls.contains(clickUrl) || getCachedUrl(clickUrl) != null) {
+                return;
+            }
+            sPendingUrls.add(clickUrl);
+        }
+
+        final long startMillis = SystemClock.elapsedRealtime();
+        UrlResolutionTask.getResolvedUrl(clickUrl, MoPub.getClickUrlPreResolutionHosts(),
+                new UrlResolutionListener() {
+                    @Override
+                    public void onSuccess(@NonNull final String resolvedUrl) {
+                        putResolvedUrl(clickUrl, resolvedUrl,
+                                SystemClock.elapsedRealtime() - startMillis);
+                    }
+
+                    @Override
+                    public void onFailure(@NonNull final String message,
+                            @Nullable final Throwable throwable) {
+                        synchronized (sResolvedUrls) {
+                            sPendingUrls.remove(clickUrl);
+                        }
+                        MoPubLog.d("Unable to pre-resolve click url: " + clickUrl, throwable);
+                    }
+                });
+    }
+
+    /**
+     * Returns the final destination of the given click URL if it was pre-resolved within
+     * {@link #CACHE_TTL_MILLIS}, or null if the click URL should be resolved as usual.
+     */
+    @Nullable
+    public static String getResolvedUrl(@Nullable final String clickUrl) {
+        if (!MoPub.isClickUrlPreResolutionEnabled() || TextUtils.isEmpty(clickUrl)) {
+            return null;
+        }
+
+        synchronized (sResolvedUrls) {
+            final ResolvedUrl resolvedUrl = getCachedUrl(clickUrl);
+            if (resolvedUrl == null) {
+                sMissCount++;
+            } else {
+                sHitCount++;
+                sSavedMillis += resolvedUrl.mResolutionMillis;
+            }
+
+            MoPubLog.d(String.format(
+                    "Pre-resolved click url %s: %d of %d clicks hit, %d ms saved",
+                    resolvedUrl == null ? "missed" : "hit", sHitCount, sHitCount + sMissCount,
+                    sSavedMillis));
+            return resolvedUrl == null ? null : resolvedUrl.mUrl;
+        }
+    }
+
+    @VisibleForTesting
+    static int getHitCount() {
+        synchronized (sResolvedUrls) {
+            return sHitCount;
+        }
+    }
+
+    @VisibleForTesting
+    static int getMissCount() {
+        synchronized (sResolvedUrls) {
+            return sMissCount;
+        }
+    }
+
+    @VisibleForTesting
+    static long getSavedMillis() {
+        synchronized (sResolvedUrls) {
+            return sSavedMillis;
+        }
+    }
+
+    @VisibleForTesting
+    static void putResolvedUrl(@NonNull final String clickUrl, @NonNull final String resolvedUrl,
+            final long resolutionMillis) {
+        synchronized (sResolvedUrls) {
+            sPendingUrls.remove(clickUrl);
+            sResolvedUrls.put(clickUrl, new ResolvedUrl(resolvedUrl,
+                    SystemClock.elapsedRealtime(), resolutionMillis));
+        }
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        synchronized (sResolvedUrls) {
+            sResolvedUrls.clear();
+            sPendingUrls.clear();
+            sHitCount = 0;
+            sMissCount = 0;
+            sSavedMillis = 0;
+        }
+    }
+
+    @Nullable
+    private static ResolvedUrl getCachedUrl(@NonNull final String clickUrl) {
+        final ResolvedUrl resolvedUrl = sResolvedUrls.get(clickUrl);
+        if (resolvedUrl == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - resolvedUrl.mTimestamp >= CACHE_TTL_MILLIS) {
+            sResolvedUrls.remove(clickUrl);
+            return null;
+        }
+        return resolvedUrl;
+    }
+
+    private static class ResolvedUrl {
+        @NonNull final String mUrl;
+        final long mTimestamp;
+        final long mResolutionMillis;
+
+        ResolvedUrl(@NonNull final String url, final long timestamp, final long resolutionMillis) {
+            mUrl = url;
+            mTimestamp = timestamp;
+            mResolutionMillis = resolutionMillis;
+        }
+    }
+}
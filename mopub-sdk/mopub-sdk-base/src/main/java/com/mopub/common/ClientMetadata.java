@@ -1,6 +1,9 @@
 package com.mopub.common;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -17,7 +20,9 @@ import com.mopub.common.util.DeviceUtils;
 import com.mopub.common.util.Dips;
 import com.mopub.common.util.Utils;
 
+import java.io.File;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static android.Manifest.permission.ACCESS_NETWORK_STATE;
 import static android.content.pm.PackageManager.NameNotFoundException;
@@ -100,6 +105,9 @@ public class ClientMetadata {
     private final Context mContext;
     private final ConnectivityManager mConnectivityManager;
 
+    // Counts changes to the configuration and the active network, which aren't cached.
+    private final AtomicInteger mVersion = new AtomicInteger();
+
     /**
      * Returns the singleton ClientMetadata object, using the context to obtain data if necessary.
      */
@@ -186,6 +194,16 @@ public class ClientMetadata {
 
         // Get the device ID. This will be replaced later when the Play Services callbacks complete.
         mUdid = getDeviceIdFromContext(mContext);
+
+        final IntentFilter changeFilter = new IntentFilter();
+        changeFilter.addAction(Intent.ACTION_CONFIGURATION_CHANGED);
+        changeFilter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(final Context context, final Intent intent) {
+                mVersion.incrementAndGet();
+            }
+        }, changeFilter);
     }
 
     private static String getAppVersionFromContext(Context context) {
@@ -207,6 +225,15 @@ public class ClientMetadata {
         return SHA_PREFIX + deviceId;
     }
 
+    /**
+     * Returns a number that changes whenever the orientation, the screen size or density, or the
+     * active network type may have changed. Anything computed from those can be reused for as
+     * long as this returns the same number.
+     */
+    public int getVersion() {
+        return mVersion.get();
+    }
+
     /**
      * @return the display orientation. Useful when generating ad requests.
      */
@@ -362,6 +389,13 @@ public class ClientMetadata {
         return Dips.screenHeightAsIntDips(mContext);
     }
 
+    /**
+     * @return the directory the app keeps its private files in.
+     */
+    public File getFilesDirectory() {
+        return mContext.getFilesDir();
+    }
+
     /**
      * This tries to get the physical number of pixels on the device. This attempts to include
      * the pixels in the notification bar and soft buttons. This method only works after
@@ -152,6 +152,15 @@ public final class DiskLruCache implements Closeable {
   private final LinkedHashMap<String, Entry> lruEntries =
       new LinkedHashMap<String, Entry>(0, 0.75f, true);
   private int redundantOpCount;
+  private long evictionCount;
+  private long journalRebuildCount;
+
+  /**
+   * When true, committed edits don't flush the journal. The owner is expected
+   * to call {@link #flush()} periodically. DIRTY lines are always flushed so
+   * that a crash can't leak files.
+   */
+  private boolean deferJournalFlush;
 
   /**
    * To differentiate between old and current snapshots, each entry is given
@@ -173,6 +182,7 @@ public final class DiskLruCache implements Closeable {
         if (journalRebuildRequired()) {
           rebuildJournal();
           redundantOpCount = 0;
+          journalRebuildCount++;
         }
       }
       return null;
@@ -555,7 +565,9 @@ public final class DiskLruCache implements Closeable {
       lruEntries.remove(entry.key);
       journalWriter.write(REMOVE + ' ' + entry.key + '\n');
     }
-    journalWriter.flush();
+    if (!deferJournalFlush) {
+      journalWriter.flush();
+    }
 
     if (size > maxSize || journalRebuildRequired()) {
       executorService.submit(cleanupCallable);
@@ -606,6 +618,44 @@ public final class DiskLruCache implements Closeable {
     return true;
   }
 
+  /**
+   * Drops the least recently used entry that isn't being edited.
+   *
+   * @return true if an entry was evicted.
+   */
+  public synchronized boolean evictEldest() throws IOException {
+    checkNotClosed();
+    for (Map.Entry<String, Entry> eldest : lruEntries.entrySet()) {
+      if (eldest.getValue().currentEditor == null) {
+        // remove() modifies lruEntries, so return before iterating further
+        final boolean removed = remove(eldest.getKey());
+        if (removed) {
+          evictionCount++;
+        }
+        return removed;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sets whether committed edits wait for {@link #flush()} to reach the
+   * journal file instead of flushing it immediately.
+   */
+  public synchronized void setDeferJournalFlush(boolean deferJournalFlush) {
+    this.deferJournalFlush = deferJournalFlush;
+  }
+
+  /** Returns the number of entries evicted to keep the cache under its max size. */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /** Returns the number of times the journal was compacted. */
+  public synchronized long getJournalRebuildCount() {
+    return journalRebuildCount;
+  }
+
   /** Returns true if this cache has been closed. */
   public synchronized boolean isClosed() {
     return journalWriter == null;
@@ -643,6 +693,7 @@ public final class DiskLruCache implements Closeable {
     while (size > maxSize) {
       Map.Entry<String, Entry> toEvict = lruEntries.entrySet().iterator().next();
       remove(toEvict.getKey());
+      evictionCount++;
     }
   }
 
@@ -793,6 +844,28 @@ public final class DiskLruCache implements Closeable {
       }
     }
 
+    /**
+     * Moves {@code file} into the value at {@code index} instead of copying
+     * it. Returns false and leaves {@code file} in place if it can't be
+     * renamed, for example because it is on another filesystem.
+     */
+    public boolean moveToValue(int index, File file) throws IOException {
+      synchronized (DiskLruCache.this) {
+        if (entry.currentEditor != this) {
+          throw new IllegalStateException();
+        }
+        File dirtyFile = entry.getDirtyFile(index);
+        deleteIfExists(dirtyFile);
+        if (!file.renameTo(dirtyFile)) {
+          return false;
+        }
+        if (!entry.readable) {
+          written[index] = true;
+        }
+        return true;
+      }
+    }
+
     /** Sets the value at {@code index} to {@code value}. */
     public void set(int index, String value) throws IOException {
       Writer writer = null;
@@ -9,6 +9,11 @@ import com.mopub.common.util.Reflection;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
 public class MoPub {
     public static final String SDK_VERSION = "4.9.0";
@@ -27,6 +32,9 @@ public class MoPub {
     private static final int DEFAULT_LOCATION_PRECISION = 6;
     private static volatile LocationAwareness sLocationLocationAwareness = LocationAwareness.NORMAL;
     private static volatile int sLocationPrecision = DEFAULT_LOCATION_PRECISION;
+    private static volatile boolean sClickUrlPreResolutionEnabled = false;
+    @NonNull private static volatile Set<String> sClickUrlPreResolutionHosts =
+            Collections.emptySet();
     private static boolean sSearchedForUpdateActivityMethod = false;
     @Nullable private static Method sUpdateActivityMethod;
 
@@ -50,6 +58,46 @@ public class MoPub {
         sLocationPrecision = Math.min(Math.max(0, precision), DEFAULT_LOCATION_PRECISION);
     }
 
+    public static boolean isClickUrlPreResolutionEnabled() {
+        return sClickUrlPreResolutionEnabled;
+    }
+
+    /**
+     * Sets whether the redirects of native ad click destination urls are followed in the
+     * background when the ad is shown, so that a click opens the final destination without
+     * waiting on the network. It is disabled by default.
+     *
+     * When enabled, this sends requests to the click destination urls of every ad that is shown,
+     * before any click happens. Only urls on the hosts passed to
+     * {@link #setClickUrlPreResolutionHosts(Collection)} are requested, and a click destination is
+     * only pre-resolved if its whole redirect chain stays on those hosts. Only list hosts that
+     * don't count requests as clicks. Click trackers still fire when the ad is tapped.
+     */
+    public static void setClickUrlPreResolutionEnabled(final boolean enabled) {
+        sClickUrlPreResolutionEnabled = enabled;
+    }
+
+    @NonNull
+    public static Set<String> getClickUrlPreResolutionHosts() {
+        return sClickUrlPreResolutionHosts;
+    }
+
+    /**
+     * Sets the hosts whose urls may be requested to pre-resolve click destination urls before a
+     * click. None are set by default.
+     */
+    public static void setClickUrlPreResolutionHosts(@Nullable final Collection<String> hosts) {
+        final Set<String> lowerCaseHosts = new HashSet<String>();
+        if (hosts != null) {
+            for (final String host : hosts) {
+                if (host != null) {
+                    lowerCaseHosts.add(host.toLowerCase(Locale.US));
+                }
+            }
+        }
+        sClickUrlPreResolutionHosts = Collections.unmodifiableSet(lowerCaseHosts);
+    }
+
 
     //////// MoPub LifecycleListener messages ////////
 
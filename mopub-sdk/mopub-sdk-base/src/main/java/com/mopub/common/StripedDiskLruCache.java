@@ -0,0 +1,315 @@
+package com.mopub.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.logging.MoPubLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads cache entries across several {@link DiskLruCache} shards, each in its own
+ * subdirectory, so that readers and writers of different keys don't wait on one lock.
+ *
+ * Committed edits don't flush the shard journals. A task on the shared
+ * {@link BackgroundExecutor} flushes them at most {@link #FLUSH_INTERVAL_MILLIS} after an edit,
+ * which batches the journal writes of bursts of puts. An entry committed within that window is
+ * dropped if the process dies before the flush, but the journal is never left inconsistent.
+ *
+ * The shards share one size budget. Each shard may grow up to the whole budget so that large
+ * entries such as videos still fit. Each commit that takes the total over the budget evicts from
+ * the largest shards until it is back under, so the budget holds for the cache as a whole. This
+ * approximates, rather than exactly matches, a single least recently used order.
+ */
+public class StripedDiskLruCache {
+    @VisibleForTesting static final int SHARD_COUNT = 4;
+    @VisibleForTesting static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    @NonNull private final File mDirectory;
+    @NonNull private final DiskLruCache[] mShards;
+    private volatile long mMaxSize;
+    @NonNull private final AtomicBoolean mFlushScheduled = new AtomicBoolean();
+    @Nullable private volatile ScheduledFuture<?> mScheduledFlush;
+    private volatile boolean mClosed;
+
+    @NonNull private final AtomicLong mHitCount = new AtomicLong();
+    @NonNull private final AtomicLong mMissCount = new AtomicLong();
+    @NonNull private final AtomicLong mJournalFlushCount = new AtomicLong();
+
+    @NonNull private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFlushScheduled.set(false);
+            try {
+                flush();
+            } catch (Exception e) {
+                // The cache may have been closed while the flush was pending
+                MoPubLog.d("Unable to flush DiskLruCache journals", e);
+            }
+        }
+    };
+
+    private StripedDiskLruCache(@NonNull final File directory, @NonNull final DiskLruCache[] shards,
+            final long maxSize) {
+        mDirectory = directory;
+        mShards = shards;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Opens the cache in the given directory, creating it if it doesn't exist. Entries written by
+     * an unsharded cache in the same directory are deleted.
+     */
+    @NonNull
+    public static StripedDiskLruCache open(@NonNull final File directory, final int appVersion,
+            final int valueCount, final long maxSize) throws IOException {
+        Preconditions.checkNotNull(directory);
+
+        deleteUnshardedEntries(directory);
+
+        final DiskLruCache[] shards = new DiskLruCache[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = DiskLruCache.open(new File(directory, String.valueOf(i)), appVersion,
+                    valueCount, maxSize);
+            shards[i].setDeferJournalFlush(true);
+        }
+        return new StripedDiskLruCache(directory, shards, maxSize);
+    }
+
+    /**
+     * Returns a snapshot of the entry, or null if it isn't cached.
+     *
+     * @see DiskLruCache#get(String)
+     */
+    @Nullable
+    public DiskLruCache.Snapshot get(@NonNull final String key) throws IOException {
+        final DiskLruCache.Snapshot snapshot = getShard(key).get(key);
+        if (snapshot == null) {
+            mMissCount.incrementAndGet();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns an editor for the entry, or null if another edit is in progress. Finish the edit
+     * with {@link #commit(DiskLruCache.Editor)}.
+     *
+     * @see DiskLruCache#edit(String)
+     */
+    @Nullable
+    public DiskLruCache.Editor edit(@NonNull final String key) throws IOException {
+        return getShard(key).edit(key);
+    }
+
+    /**
+     * Commits the edit, evicts entries if the cache is now over its max size, and schedules the
+     * journal flush.
+     */
+    public void commit(@NonNull final DiskLruCache.Editor editor) throws IOException {
+        Preconditions.checkNotNull(editor);
+
+        editor.commit();
+        if (size() > mMaxSize) {
+            trimToSize();
+        }
+        scheduleFlush();
+    }
+
+    public boolean remove(@NonNull final String key) throws IOException {
+        final boolean removed = getShard(key).remove(key);
+        if (removed) {
+            scheduleFlush();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the root directory of the cache. Each shard is a subdirectory of it.
+     */
+    @NonNull
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * Returns the directory of the shard that stores the given key.
+     */
+    @NonNull
+    public File getDirectory(@NonNull final String key) {
+        return getShard(key).getDirectory();
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Changes the size budget of the cache. Entries over a smaller budget are evicted by the next
+     * background flush.
+     */
+    public void setMaxSize(final long maxSize) {
+        mMaxSize = maxSize;
+        for (final DiskLruCache shard : mShards) {
+            shard.setMaxSize(maxSize);
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Returns the number of bytes stored in all shards. This may be greater than the max size
+     * while entries are being edited, or until the next flush after the max size is lowered.
+     */
+    public long size() {
+        long size = 0;
+        for (final DiskLruCache shard : mShards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Evicts entries until the cache is under its max size and writes all shard journals to the
+     * filesystem.
+     */
+    public void flush() throws IOException {
+        trimToSize();
+        for (final DiskLruCache shard : mShards) {
+            shard.flush();
+        }
+        mJournalFlushCount.incrementAndGet();
+    }
+
+    public void close() throws IOException {
+        cancelFlush();
+        for (final DiskLruCache shard : mShards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Closes the cache and deletes everything in its directory.
+     */
+    public void delete() throws IOException {
+        cancelFlush();
+        for (final DiskLruCache shard : mShards) {
+            shard.delete();
+        }
+        DiskLruCacheUtil.deleteContents(mDirectory);
+    }
+
+    @NonNull
+    public Stats getStats() {
+        long evictionCount = 0;
+        long journalRebuildCount = 0;
+        for (final DiskLruCache shard : mShards) {
+            evictionCount += shard.getEvictionCount();
+            journalRebuildCount += shard.getJournalRebuildCount();
+        }
+        return new Stats(mHitCount.get(), mMissCount.get(), evictionCount, journalRebuildCount,
+                mJournalFlushCount.get());
+    }
+
+    private void scheduleFlush() {
+        if (!mClosed && mFlushScheduled.compareAndSet(false, true)) {
+            mScheduledFlush = BackgroundExecutor.schedule(mFlushRunnable, FLUSH_INTERVAL_MILLIS);
+        }
+    }
+
+    private void cancelFlush() {
+        mClosed = true;
+        final ScheduledFuture<?> scheduledFlush = mScheduledFlush;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+    }
+
+    // Synchronized so that concurrent commits don't each evict for the same excess
+    private synchronized void trimToSize() throws IOException {
+        while (size() > mMaxSize) {
+            DiskLruCache largestShard = mShards[0];
+            for (final DiskLruCache shard : mShards) {
+                if (shard.size() > largestShard.size()) {
+                    largestShard = shard;
+                }
+            }
+            if (!largestShard.evictEldest()) {
+                // Everything left in the largest shard is being edited
+                return;
+            }
+        }
+    }
+
+    @NonNull
+    private DiskLruCache getShard(@NonNull final String key) {
+        return mShards[(key.hashCode() & Integer.MAX_VALUE) % SHARD_COUNT];
+    }
+
+    private static void deleteUnshardedEntries(@NonNull final File directory) {
+        if (!new File(directory, DiskLruCache.JOURNAL_FILE).exists()) {
+            return;
+        }
+
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (file.isFile()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Counters of a {@link StripedDiskLruCache} since it was opened.
+     */
+    public static class Stats {
+        private final long mHitCount;
+        private final long mMissCount;
+        private final long mEvictionCount;
+        private final long mJournalRebuildCount;
+        private final long mJournalFlushCount;
+
+        Stats(final long hitCount, final long missCount, final long evictionCount,
+                final long journalRebuildCount, final long journalFlushCount) {
+            mHitCount = hitCount;
+            mMissCount = missCount;
+            mEvictionCount = evictionCount;
+            mJournalRebuildCount = journalRebuildCount;
+            mJournalFlushCount = journalFlushCount;
+        }
+
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        public long getEvictionCount() {
+            return mEvictionCount;
+        }
+
+        public long getJournalRebuildCount() {
+            return mJournalRebuildCount;
+        }
+
+        public long getJournalFlushCount() {
+            return mJournalFlushCount;
+        }
+
+        @Override
+        public String toString() {
+            return "{hits : " + mHitCount + ", misses : " + mMissCount + ", evictions : "
+                    + mEvictionCount + ", journal rebuilds : " + mJournalRebuildCount
+                    + ", journal flushes : " + mJournalFlushCount + "}";
+        }
+    }
+}
@@ -13,6 +13,8 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Locale;
+import java.util.Set;
 
 @VisibleForTesting
 public class UrlResolutionTask extends AsyncTask<String, Void, String> {
@@ -24,10 +26,25 @@ public class UrlResolutionTask extends AsyncTask<String, Void, String> {
     }
 
     @NonNull private final UrlResolutionListener mListener;
+    // The hosts whose urls may be requested, or null if any may be
+    @Nullable private final Set<String> mRequestableHosts;
 
     public static void getResolvedUrl(@NonNull final String urlString,
             @NonNull final UrlResolutionListener listener) {
-        final UrlResolutionTask urlResolutionTask = new UrlResolutionTask(listener);
+        getResolvedUrl(urlString, null, listener);
+    }
+
+    /**
+     * Resolves the given url without requesting urls on other hosts than the given ones.
+     * Resolution fails if the redirect chain leads to any other host.
+     *
+     * @param requestableHosts Lower case hosts whose urls may be requested, or null if any may be
+     */
+    static void getResolvedUrl(@NonNull final String urlString,
+            @Nullable final Set<String> requestableHosts,
+            @NonNull final UrlResolutionListener listener) {
+        final UrlResolutionTask urlResolutionTask =
+                new UrlResolutionTask(listener, requestableHosts);
 
         try {
             AsyncTasks.safeExecuteOnExecutor(urlResolutionTask, urlString);
@@ -37,7 +54,13 @@ public class UrlResolutionTask extends AsyncTask<String, Void, String> {
     }
 
     UrlResolutionTask(@NonNull UrlResolutionListener listener) {
+        this(listener, null);
+    }
+
+    UrlResolutionTask(@NonNull UrlResolutionListener listener,
+            @Nullable Set<String> requestableHosts) {
         mListener = listener;
+        mRequestableHosts = requestableHosts;
     }
 
     @Nullable
@@ -55,10 +78,15 @@ public class UrlResolutionTask extends AsyncTask<String, Void, String> {
             while (locationUrl != null && redirectCount < REDIRECT_LIMIT) {
                 // if location url is not http(s), assume it's an Android deep link
                 // this scheme will fail URL validation so we have to check early
-                if (!UrlAction.OPEN_IN_APP_BROWSER.shouldTryHandlingUrl(Uri.parse(locationUrl))) {
+                final Uri locationUri = Uri.parse(locationUrl);
+                if (!UrlAction.OPEN_IN_APP_BROWSER.shouldTryHandlingUrl(locationUri)) {
                     return locationUrl;
                 }
 
+                if (!isRequestable(locationUri)) {
+                    return null;
+                }
+
                 previousUrl = locationUrl;
                 locationUrl = getRedirectLocation(locationUrl);
                 redirectCount++;
@@ -73,8 +101,17 @@ public class UrlResolutionTask extends AsyncTask<String, Void, String> {
         return previousUrl;
     }
 
+    private boolean isRequestable(@NonNull final Uri uri) {
+        if (mRequestableHosts == null) {
+            return true;
+        }
+        final String host = uri.getHost();
+        return host != null && mRequestableHosts.contains(host.toLowerCase(Locale.US));
+    }
+
+    @VisibleForTesting
     @Nullable
-    private String getRedirectLocation(@NonNull final String urlString) throws IOException,
+    String getRedirectLocation(@NonNull final String urlString) throws IOException,
             URISyntaxException {
         final URL url = new URL(urlString);
 
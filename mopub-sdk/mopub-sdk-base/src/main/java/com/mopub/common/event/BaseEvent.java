@@ -65,6 +65,10 @@ public abstract class BaseEvent {
         IMPRESSION_REQUEST("impression_request"),
         CLICK_REQUEST("click_request"),
 
+        // Native Waterfall:
+        NATIVE_CUSTOM_EVENT_LOADED("native_custom_event_loaded"),
+        NATIVE_CUSTOM_EVENT_FAILED("native_custom_event_failed"),
+
         // Native Video:
         DOWNLOAD_START("download_start"),
         DOWNLOAD_VIDEO_READY("download_video_ready"),
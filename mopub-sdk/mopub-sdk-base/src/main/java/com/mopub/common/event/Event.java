@@ -37,7 +37,7 @@ public class Event extends BaseEvent {
      *                     for constants.
      * @param eventDetails Data object containing the remaining meta data around this event.
      * @return An {@link BaseEvent} with all the parts combined, or {@code null} if there is no
-     * metadata available.
+     * metadata available or the event didn't pass sampling.
      */
     @Nullable
     public static BaseEvent createEventFromDetails(@NonNull final BaseEvent.Name name,
@@ -52,6 +52,9 @@ public class Event extends BaseEvent {
             MoPubLog.d("Unable to log event due to no details present");
             return null;
         }
+        if (!MoPubEvents.isSampled(eventDetails.getRequestId(), samplingRate)) {
+            return null;
+        }
 
         return new Event.Builder(name,
                 category,
@@ -3,29 +3,83 @@ package com.mopub.common.event;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples events on the thread that logs them and hands the sampled events to the recorders on
+ * the looper's thread. Events wait in a bounded buffer until the looper's thread gets to them,
+ * and each recorder gets all the events that are waiting at once.
+ */
 public class EventDispatcher {
+    /**
+     * What happens to events that are logged while the buffer is full.
+     */
+    public enum DropPolicy {
+        /**
+         * Keep the events in the buffer and drop the new event.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest event in the buffer to make room for the new event.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * The old recorder queued at most 500 events in memory, and dropped new events past that.
+     */
+    static final int DEFAULT_BUFFER_CAPACITY = 500;
+    @VisibleForTesting static final int MSG_DRAIN = 1;
+
     private final Iterable<EventRecorder> mEventRecorders;
     private final Looper mLooper;
     private final Handler mMessageHandler;
     private final Handler.Callback mHandlerCallback;
 
+    @NonNull private final EventSampler mEventSampler;
+    @NonNull private final EventRingBuffer mEventRingBuffer;
+    @NonNull private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+
+    @NonNull private final AtomicLong mSampledOutCount = new AtomicLong();
+    @NonNull private final AtomicLong mDroppedCount = new AtomicLong();
+    @NonNull private final AtomicLong mDeliveredCount = new AtomicLong();
+
     @VisibleForTesting
     EventDispatcher(Iterable<EventRecorder> recorders, Looper looper) {
+        this(recorders, looper, new EventSampler(), DEFAULT_BUFFER_CAPACITY,
+                DropPolicy.DROP_NEWEST);
+    }
+
+    /**
+     * @param bufferCapacity The maximum number of sampled events waiting to be recorded.
+     * @param dropPolicy What to do with events logged while that many events are waiting.
+     */
+    EventDispatcher(Iterable<EventRecorder> recorders, Looper looper,
+            @NonNull EventSampler eventSampler, int bufferCapacity,
+            @NonNull DropPolicy dropPolicy) {
+        Preconditions.checkNotNull(eventSampler);
+
         mEventRecorders = recorders;
         mLooper = looper;
+        mEventSampler = eventSampler;
+        mEventRingBuffer = new EventRingBuffer(bufferCapacity, dropPolicy);
         mHandlerCallback = new Handler.Callback() {
             @Override
             public boolean handleMessage(final Message msg) {
-                if (msg.obj instanceof BaseEvent) {
-                    for (final EventRecorder recorder : mEventRecorders) {
-                        recorder.record((BaseEvent) msg.obj);
-                    }
+                if (msg.what == MSG_DRAIN) {
+                    drain();
                 } else {
-                    MoPubLog.d("EventDispatcher received non-BaseEvent message type.");
+                    MoPubLog.d("EventDispatcher received unknown message type.");
                 }
                 return true;
             }
@@ -33,8 +87,76 @@ public class EventDispatcher {
         mMessageHandler = new Handler(mLooper, mHandlerCallback);
     }
 
-    public void dispatch(BaseEvent event) {
-        Message.obtain(mMessageHandler, 0, event).sendToTarget();
+    /**
+     * Samples an event before it is built, so events that don't pass sampling don't need to be
+     * built at all. Events with a request ID that pass here also pass when they are dispatched.
+     * Events without a request ID are sampled when they are dispatched, so this always returns
+     * {@code true} for them.
+     */
+    public boolean isSampled(@Nullable String requestId, double samplingRate) {
+        if (requestId == null) {
+            return true;
+        }
+        if (!mEventSampler.sample(requestId, samplingRate)) {
+            mSampledOutCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Samples the event on the calling thread and queues it to be recorded if it passed.
+     * Does nothing if the event is null.
+     */
+    public void dispatch(@Nullable BaseEvent event) {
+        if (event == null) {
+            return;
+        }
+        if (!mEventSampler.sample(event)) {
+            mSampledOutCount.incrementAndGet();
+            return;
+        }
+
+        if (!mEventRingBuffer.offer(event)) {
+            mDroppedCount.incrementAndGet();
+            MoPubLog.d("Event buffer is at max capacity. An event is being dropped.");
+        }
+        // A single message drains everything queued before it is handled
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mMessageHandler.sendEmptyMessage(MSG_DRAIN);
+        }
+    }
+
+    /**
+     * Sets what happens to events that are logged while the buffer is full. Events already in
+     * the buffer are kept.
+     */
+    public void setDropPolicy(@NonNull DropPolicy dropPolicy) {
+        Preconditions.checkNotNull(dropPolicy);
+
+        mEventRingBuffer.setDropPolicy(dropPolicy);
+    }
+
+    /**
+     * Returns counters of the events dispatched since this dispatcher was created.
+     */
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mSampledOutCount.get(), mDroppedCount.get(), mDeliveredCount.get());
+    }
+
+    private void drain() {
+        // Cleared before draining, so events queued while the recorders run schedule another drain
+        mDrainScheduled.set(false);
+
+        final List<BaseEvent> baseEvents = new ArrayList<BaseEvent>();
+        if (mEventRingBuffer.drainTo(baseEvents) == 0) {
+            return;
+        }
+        for (final EventRecorder recorder : mEventRecorders) {
+            recorder.record(baseEvents);
+        }
+        mDeliveredCount.addAndGet(baseEvents.size());
     }
 
     @VisibleForTesting
@@ -46,4 +168,40 @@ public class EventDispatcher {
     Handler.Callback getHandlerCallback() {
         return mHandlerCallback;
     }
+
+    /**
+     * Counters of the events dispatched since the dispatcher was created.
+     */
+    public static class Stats {
+        private final long mSampledOutCount;
+        private final long mDroppedCount;
+        private final long mDeliveredCount;
+
+        Stats(final long sampledOutCount, final long droppedCount, final long deliveredCount) {
+            mSampledOutCount = sampledOutCount;
+            mDroppedCount = droppedCount;
+            mDeliveredCount = deliveredCount;
+        }
+
+        /**
+         * The number of events that didn't pass sampling, including those that were never built.
+         */
+        public long getSampledOutCount() {
+            return mSampledOutCount;
+        }
+
+        /**
+         * The number of sampled events dropped because the buffer was full.
+         */
+        public long getDroppedCount() {
+            return mDroppedCount;
+        }
+
+        /**
+         * The number of events handed to the recorders.
+         */
+        public long getDeliveredCount() {
+            return mDeliveredCount;
+        }
+    }
 }
@@ -1,8 +1,15 @@
 package com.mopub.common.event;
 
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
 /**
  * This interface represents a backend to which MoPub client events are logged.
  */
 public interface EventRecorder {
-    void record(BaseEvent baseEvent);
+    /**
+     * Records events that passed sampling, oldest first. Called on the event logging thread.
+     */
+    void record(@NonNull List<BaseEvent> baseEvents);
 }
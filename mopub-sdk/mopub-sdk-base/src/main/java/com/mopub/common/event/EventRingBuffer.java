@@ -0,0 +1,80 @@
+package com.mopub.common.event;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+
+import java.util.List;
+
+/**
+ * A bounded queue of events between the threads that log events and the event logging thread.
+ * Offering an event to a full buffer drops an event according to the drop policy instead of
+ * blocking or growing the buffer.
+ */
+class EventRingBuffer {
+    @NonNull private final BaseEvent[] mEvents;
+    @NonNull private EventDispatcher.DropPolicy mDropPolicy;
+    private int mHead;
+    private int mSize;
+
+    EventRingBuffer(int capacity, @NonNull EventDispatcher.DropPolicy dropPolicy) {
+        Preconditions.checkArgument(capacity > 0);
+        Preconditions.checkNotNull(dropPolicy);
+
+        mEvents = new BaseEvent[capacity];
+        mDropPolicy = dropPolicy;
+    }
+
+    synchronized void setDropPolicy(@NonNull EventDispatcher.DropPolicy dropPolicy) {
+        Preconditions.checkNotNull(dropPolicy);
+
+        mDropPolicy = dropPolicy;
+    }
+
+    /**
+     * Adds an event to the end of the buffer.
+     *
+     * @return Will return {@code false} if the buffer was full and an event was dropped.
+     */
+    synchronized boolean offer(@NonNull BaseEvent baseEvent) {
+        Preconditions.checkNotNull(baseEvent);
+
+        if (mSize == mEvents.length) {
+            if (mDropPolicy == EventDispatcher.DropPolicy.DROP_NEWEST) {
+                return false;
+            }
+            // Overwrite the oldest event
+            mEvents[mHead] = baseEvent;
+            mHead = (mHead + 1) % mEvents.length;
+            return false;
+        }
+
+        mEvents[(mHead + mSize) % mEvents.length] = baseEvent;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * Removes all events from the buffer and adds them to the given list, oldest first.
+     *
+     * @return The number of events drained.
+     */
+    synchronized int drainTo(@NonNull List<BaseEvent> baseEvents) {
+        Preconditions.checkNotNull(baseEvents);
+
+        final int drainedCount = mSize;
+        for (int i = 0; i < drainedCount; i++) {
+            baseEvents.add(mEvents[mHead]);
+            mEvents[mHead] = null;
+            mHead = (mHead + 1) % mEvents.length;
+        }
+        mSize = 0;
+        return drainedCount;
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        return mSize;
+    }
+}
@@ -1,28 +1,41 @@
 package com.mopub.common.event;
 
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Samples events based on rules defined in the sample method.
+ * Samples events based on rules defined in the sample method. This class is thread safe and
+ * doesn't lock, so events can be sampled on the thread that logs them.
  */
 public class EventSampler {
 
-    @VisibleForTesting static final int MAX_SIZE = 100;
-    private static final float LOAD_FACTOR = 0.75f;
     /**
-     * The capacity is just large enough to hold the max size without rehashing.
+     * The number of request IDs whose decisions are cached. Must be a power of two.
      */
-    private static final int CAPACITY = (int) (MAX_SIZE / LOAD_FACTOR + 2);
+    @VisibleForTesting static final int CAPACITY = 256;
+    /**
+     * The number of slots a request ID can go in. Must be a power of two.
+     */
+    @VisibleForTesting static final int WAYS = 4;
+    /**
+     * How long a decision is kept after its request ID was last sampled. The events of an ad
+     * request are logged within a few minutes of each other.
+     */
+    @VisibleForTesting static final long LIVE_MILLIS = 10 * 60 * 1000;
 
-    @NonNull private Random mRandom;
-    @NonNull private LinkedHashMap<String, Boolean> mSampleDecisionsCache;
+    @NonNull private final Random mRandom;
+    /**
+     * A set associative cache of decisions. A request ID goes in one of the {@link #WAYS} slots
+     * of the set its hash maps to, and only replaces a decision that is no longer live.
+     */
+    @NonNull private final AtomicReferenceArray<SampleDecision> mSampleDecisionsCache;
 
     public EventSampler() {
         this(new Random());
@@ -31,12 +44,7 @@ public class EventSampler {
     @VisibleForTesting
     public EventSampler(@NonNull Random random) {
         mRandom = random;
-        mSampleDecisionsCache = new LinkedHashMap<String, Boolean>(CAPACITY, LOAD_FACTOR, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
-                return size() > MAX_SIZE;
-            }
-        };
+        mSampleDecisionsCache = new AtomicReferenceArray<SampleDecision>(CAPACITY);
     }
 
     /**
@@ -50,22 +58,104 @@ public class EventSampler {
     boolean sample(@NonNull BaseEvent baseEvent) {
         Preconditions.checkNotNull(baseEvent);
 
-        final String requestId = baseEvent.getRequestId();
+        return sample(baseEvent.getRequestId(), baseEvent.getSamplingRate());
+    }
+
+    /**
+     * Samples an event before it is built. Returns the same decision for a request ID as long as
+     * it stays in the cache, so the event built afterwards passes {@link #sample(BaseEvent)} too.
+     * Every call without a request ID makes a new decision. If every slot a request ID can go in
+     * holds a live decision, the new decision isn't cached.
+     *
+     * @param requestId The request ID of the event, if it has one.
+     * @param samplingRate The fraction of events that pass sampling.
+     * @return Will return {@code true} if the event passed sampling and {@code false} if it is to
+     * be discarded.
+     */
+    boolean sample(@Nullable String requestId, double samplingRate) {
         if (requestId == null) {
-            return mRandom.nextDouble() < baseEvent.getSamplingRate();
+            return mRandom.nextDouble() < samplingRate;
         }
 
-        final Boolean existingSample = mSampleDecisionsCache.get(requestId);
-        if (existingSample != null) {
-            return existingSample;
+        final long nowMillis = SystemClock.elapsedRealtime();
+        final int firstIndex = setIndexFor(requestId);
+        SampleDecision newDecision = null;
+        while (true) {
+            int freeIndex = -1;
+            SampleDecision freeSlotDecision = null;
+            for (int index = firstIndex; index < firstIndex + WAYS; index++) {
+                final SampleDecision decision = mSampleDecisionsCache.get(index);
+                if (decision != null && decision.mRequestId.equals(requestId)) {
+                    decision.mLastSampledMillis = nowMillis;
+                    return decision.mSampled;
+                }
+                if (freeIndex < 0 && (decision == null || !decision.isLive(nowMillis))) {
+                    freeIndex = index;
+                    freeSlotDecision = decision;
+                }
+            }
+
+            if (newDecision == null) {
+                newDecision = new SampleDecision(requestId,
+                        mRandom.nextDouble() < samplingRate, nowMillis);
+            }
+            if (freeIndex < 0) {
+                return newDecision.mSampled;
+            }
+            if (mSampleDecisionsCache.compareAndSet(freeIndex, freeSlotDecision, newDecision)) {
+                return settle(firstIndex, freeIndex, newDecision);
+            }
+            // Another thread changed the slot first. Look again, in case it decided for the same
+            // request ID.
         }
-        final boolean newSample = mRandom.nextDouble() < baseEvent.getSamplingRate();
-        mSampleDecisionsCache.put(requestId, newSample);
-        return newSample;
+    }
+
+    /**
+     * Two threads that didn't see each other's decision can put the same request ID in two
+     * slots. The decision in the first of those slots wins, and the other one is removed.
+     */
+    private boolean settle(final int firstIndex, final int insertedIndex,
+            @NonNull final SampleDecision insertedDecision) {
+        for (int index = firstIndex; index < insertedIndex; index++) {
+            final SampleDecision decision = mSampleDecisionsCache.get(index);
+            if (decision != null && decision.mRequestId.equals(insertedDecision.mRequestId)) {
+                mSampleDecisionsCache.compareAndSet(insertedIndex, insertedDecision, null);
+                return decision.mSampled;
+            }
+        }
+        return insertedDecision.mSampled;
     }
 
     @VisibleForTesting
     int getCacheSize() {
-        return mSampleDecisionsCache.size();
+        int size = 0;
+        for (int i = 0; i < CAPACITY; i++) {
+            if (mSampleDecisionsCache.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static int setIndexFor(@NonNull String requestId) {
+        final int hash = requestId.hashCode();
+        // Request IDs are random hex strings, but spread the high bits in case they aren't
+        return ((hash ^ (hash >>> 16)) & (CAPACITY / WAYS - 1)) * WAYS;
+    }
+
+    private static class SampleDecision {
+        @NonNull final String mRequestId;
+        final boolean mSampled;
+        volatile long mLastSampledMillis;
+
+        SampleDecision(@NonNull String requestId, boolean sampled, long lastSampledMillis) {
+            mRequestId = requestId;
+            mSampled = sampled;
+            mLastSampledMillis = lastSampledMillis;
+        }
+
+        boolean isLive(long nowMillis) {
+            return nowMillis - mLastSampledMillis < LIVE_MILLIS;
+        }
     }
 }
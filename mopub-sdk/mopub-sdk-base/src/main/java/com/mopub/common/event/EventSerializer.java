@@ -1,21 +1,63 @@
 package com.mopub.common.event;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.mopub.common.ClientMetadata;
 import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 
 /**
  * Serializes events to the data format expected by the Scribe service.
+ *
+ * Events waiting to be sent are stored as compact binary records, written with
+ * {@link #toRecord(BaseEvent)}. A record holds the value of each Scribe key in the order of
+ * {@link #RECORD_KEYS}, so only the values are stored, and it is turned into Scribe JSON only when
+ * it is sent, with {@link #serializeRecordsAsJson(List)}.
  */
 public class EventSerializer {
+    @VisibleForTesting static final int RECORD_VERSION = 1;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_STRING = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_DOUBLE = 3;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * The Scribe keys of the values in a record, in the order they are written. Error events
+     * have the trailing error keys as well.
+     */
+    @VisibleForTesting
+    static final String[] RECORD_KEYS = {
+            "_category_", "ts", "name", "name_category", "sdk_product", "sdk_version",
+            "ad_unit_id", "ad_creative_id", "ad_type", "ad_network_type", "ad_width_px",
+            "ad_height_px", "dsp_creative_id", "app_platform", "app_name", "app_package_name",
+            "app_version", "client_advertising_id", "client_do_not_track",
+            "device_manufacturer", "device_model", "device_product", "device_os_version",
+            "device_screen_width_px", "device_screen_height_px", "geo_lat", "geo_lon",
+            "geo_accuracy_radius_meters", "perf_duration_ms", "network_type",
+            "network_operator_code", "network_operator_name", "network_iso_country_code",
+            "network_sim_code", "network_sim_operator_name", "network_sim_iso_country_code",
+            "req_id", "req_status_code", "req_uri", "req_retries", "timestamp_client",
+            "error_exception_class_name", "error_message", "error_stack_trace",
+            "error_file_name", "error_class_name", "error_method_name", "error_line_number"
+    };
 
     /**
      * Serializes a list of events as a JSON array of flattened JSON objects.
@@ -140,4 +182,216 @@ public class EventSerializer {
 
         return jsonObject;
     }
+
+    /**
+     * Encodes an event as a binary record. This reads the same values as
+     * {@link #serializeAsJson(BaseEvent)} without building any JSON.
+     */
+    @NonNull
+    public byte[] toRecord(@NonNull BaseEvent event) throws IOException {
+        Preconditions.checkNotNull(event);
+
+        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream(512);
+        final DataOutputStream out = new DataOutputStream(byteStream);
+        out.writeByte(RECORD_VERSION);
+
+        writeString(out, event.getScribeCategory().getCategory());
+        writeLong(out, event.getTimestampUtcMs());
+        writeString(out, event.getName().getName());
+        writeString(out, event.getCategory().getCategory());
+        final BaseEvent.SdkProduct sdkProduct = event.getSdkProduct();
+        writeLong(out, sdkProduct == null ? null : sdkProduct.getType());
+        writeString(out, event.getSdkVersion());
+        writeString(out, event.getAdUnitId());
+        writeString(out, event.getAdCreativeId());
+        writeString(out, event.getAdType());
+        writeString(out, event.getAdNetworkType());
+        writeDouble(out, event.getAdWidthPx());
+        writeDouble(out, event.getAdHeightPx());
+        writeString(out, event.getDspCreativeId());
+        final BaseEvent.AppPlatform appPlatform = event.getAppPlatform();
+        writeLong(out, appPlatform == null ? null : appPlatform.getType());
+        writeString(out, event.getAppName());
+        writeString(out, event.getAppPackageName());
+        writeString(out, event.getAppVersion());
+        writeString(out, event.getObfuscatedClientAdvertisingId());
+        writeBoolean(out, event.getClientDoNotTrack());
+        writeString(out, event.getDeviceManufacturer());
+        writeString(out, event.getDeviceModel());
+        writeString(out, event.getDeviceProduct());
+        writeString(out, event.getDeviceOsVersion());
+        writeLong(out, event.getDeviceScreenWidthDip());
+        writeLong(out, event.getDeviceScreenHeightDip());
+        writeDouble(out, event.getGeoLat());
+        writeDouble(out, event.getGeoLon());
+        writeDouble(out, event.getGeoAccuracy());
+        writeDouble(out, event.getPerformanceDurationMs());
+        final ClientMetadata.MoPubNetworkType moPubNetworkType = event.getNetworkType();
+        writeLong(out, moPubNetworkType == null ? null : moPubNetworkType.getId());
+        writeString(out, event.getNetworkOperatorCode());
+        writeString(out, event.getNetworkOperatorName());
+        writeString(out, event.getNetworkIsoCountryCode());
+        writeString(out, event.getNetworkSimCode());
+        writeString(out, event.getNetworkSimOperatorName());
+        writeString(out, event.getNetworkSimIsoCountryCode());
+        writeString(out, event.getRequestId());
+        writeLong(out, event.getRequestStatusCode());
+        writeString(out, event.getRequestUri());
+        writeLong(out, event.getRequestRetries());
+        writeLong(out, event.getTimestampUtcMs());
+
+        if (event instanceof ErrorEvent) {
+            final ErrorEvent errorEvent = (ErrorEvent) event;
+            writeString(out, errorEvent.getErrorExceptionClassName());
+            writeString(out, errorEvent.getErrorMessage());
+            writeString(out, errorEvent.getErrorStackTrace());
+            writeString(out, errorEvent.getErrorFileName());
+            writeString(out, errorEvent.getErrorClassName());
+            writeString(out, errorEvent.getErrorMethodName());
+            writeLong(out, errorEvent.getErrorLineNumber());
+        }
+
+        out.flush();
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Serializes binary records as a JSON array of flattened JSON objects, in a single pass
+     * over the records. Records that can't be decoded are left out.
+     *
+     * @param records Records created by {@link #toRecord(BaseEvent)}.
+     *
+     * @return The same JSON as {@link #serializeAsJson(List)} for the events of the records.
+     */
+    @NonNull
+    public String serializeRecordsAsJson(@NonNull List<byte[]> records) {
+        Preconditions.checkNotNull(records);
+
+        final StringWriter writer = new StringWriter(records.size() * 1024);
+        try {
+            writeRecordsAsJson(records, writer);
+        } catch (IOException e) {
+            // StringWriter doesn't throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the same JSON as {@link #serializeRecordsAsJson(List)} to the writer, one record at
+     * a time, so the JSON of the whole batch is never held in memory.
+     */
+    public void writeRecordsAsJson(@NonNull List<byte[]> records, @NonNull Writer writer)
+            throws IOException {
+        Preconditions.checkNotNull(records);
+        Preconditions.checkNotNull(writer);
+
+        final StringBuilder json = new StringBuilder(1024);
+        boolean first = true;
+        writer.write('[');
+        for (final byte[] record : records) {
+            json.setLength(0);
+            try {
+                appendRecordAsJson(record, json);
+            } catch (Exception e) {
+                MoPubLog.d("Failed to serialize event record to JSON: ", e);
+                continue;
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.append(json);
+        }
+        writer.write(']');
+    }
+
+    private static void appendRecordAsJson(@NonNull final byte[] record,
+            @NonNull final StringBuilder json) throws IOException, JSONException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        final int version = in.readUnsignedByte();
+        if (version != RECORD_VERSION) {
+            throw new IOException("Unknown event record version " + version);
+        }
+
+        json.append('{');
+        boolean first = true;
+        for (int i = 0; in.available() > 0; i++) {
+            if (i >= RECORD_KEYS.length) {
+                throw new IOException("Event record has too many values");
+            }
+
+            final int type = in.readUnsignedByte();
+            if (type == TYPE_NULL) {
+                // JSONObject leaves out keys with null values
+                continue;
+            }
+
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(JSONObject.quote(RECORD_KEYS[i])).append(':');
+            switch (type) {
+                case TYPE_STRING:
+                    final byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    json.append(JSONObject.quote(new String(bytes, CHARSET)));
+                    break;
+                case TYPE_LONG:
+                    json.append(in.readLong());
+                    break;
+                case TYPE_DOUBLE:
+                    json.append(JSONObject.numberToString(in.readDouble()));
+                    break;
+                case TYPE_BOOLEAN:
+                    json.append(in.readBoolean());
+                    break;
+                default:
+                    throw new IOException("Unknown event record value type " + type);
+            }
+        }
+        json.append('}');
+    }
+
+    private static void writeString(@NonNull final DataOutputStream out,
+            @Nullable final String value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+            return;
+        }
+        final byte[] bytes = value.getBytes(CHARSET);
+        out.writeByte(TYPE_STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeLong(@NonNull final DataOutputStream out,
+            @Nullable final Number value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+            return;
+        }
+        out.writeByte(TYPE_LONG);
+        out.writeLong(value.longValue());
+    }
+
+    private static void writeDouble(@NonNull final DataOutputStream out,
+            @Nullable final Double value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+            return;
+        }
+        out.writeByte(TYPE_DOUBLE);
+        out.writeDouble(value);
+    }
+
+    private static void writeBoolean(@NonNull final DataOutputStream out,
+            @Nullable final Boolean value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+            return;
+        }
+        out.writeByte(TYPE_BOOLEAN);
+        out.writeBoolean(value);
+    }
 }
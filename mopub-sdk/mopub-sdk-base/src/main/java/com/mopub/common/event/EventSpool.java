@@ -0,0 +1,415 @@
+package com.mopub.common.event;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.Streams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of event records waiting to be sent to the Scribe service. Records
+ * survive the process being killed, and are read back in the order they were appended.
+ *
+ * The file starts with a header holding the offset of the first record that hasn't been sent.
+ * Each record is stored as its length, a CRC32 checksum and its bytes. A record that was only
+ * partly written when the process died fails its checksum when the spool is opened, and it and
+ * everything after it are cut off.
+ *
+ * Batches of records are leased with {@link #peek(int, long)} while they are being sent, so
+ * several batches can be sent at once without reading the same records twice. Batches may be
+ * committed in any order, but the records of a batch are only removed from the file once every
+ * batch before it was committed as well.
+ *
+ * Appends aren't synced to the disk, so records only survive the process dying, not the device
+ * losing power. The spool must only be used on one thread.
+ */
+class EventSpool {
+    private static final int MAGIC = 0x4D504553; // "MPES"
+    private static final int VERSION = 1;
+    @VisibleForTesting static final int HEADER_SIZE = 16;
+    private static final int HEAD_OFFSET_POSITION = 8;
+    @VisibleForTesting static final int RECORD_OVERHEAD = 8;
+
+    /**
+     * Sent records are only removed from the file once they take up more than this fraction of
+     * it, so that most commits just update the header.
+     */
+    private static final double COMPACTION_RATIO = 0.5;
+
+    @NonNull private final File mFile;
+    private final long mMaxSize;
+    @NonNull private RandomAccessFile mRandomAccessFile;
+    private long mHeadOffset;
+    private long mEndOffset;
+    private int mRecordCount;
+    private long mUnsentBytes;
+    private int mLeasedRecordCount;
+    private long mLeasedBytes;
+
+    /**
+     * The start and end offsets of the batches that were peeked and not yet released, including
+     * committed batches that can't be removed until the batches before them are committed.
+     */
+    @NonNull private final TreeMap<Long, Long> mLeasedBatches = new TreeMap<Long, Long>();
+    @NonNull private final Set<Long> mCommittedBatches = new HashSet<Long>();
+
+    /**
+     * The number of bytes removed from the start of the file since it was opened. Batches hold
+     * offsets that include these, so they stay valid when the file is compacted. Offsets in
+     * the file are these offsets minus the removed bytes.
+     */
+    private long mRemovedBytes;
+
+    private EventSpool(@NonNull final File file, final long maxSize) throws IOException {
+        mFile = file;
+        mMaxSize = maxSize;
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        recover();
+    }
+
+    /**
+     * Opens the spool in the given file, creating it if it doesn't exist. Records that were
+     * appended but not committed before the process died are kept.
+     *
+     * @param maxSize The most bytes the file may hold. Appends that would exceed it fail.
+     */
+    @NonNull
+    static EventSpool open(@NonNull final File file, final long maxSize) throws IOException {
+        Preconditions.checkNotNull(file);
+
+        final File directory = file.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        return new EventSpool(file, maxSize);
+    }
+
+    /**
+     * Appends a record to the end of the spool.
+     *
+     * @return false if the spool is full.
+     */
+    boolean append(@NonNull final byte[] record) throws IOException {
+        Preconditions.checkNotNull(record);
+
+        if (mEndOffset + RECORD_OVERHEAD + record.length > mMaxSize) {
+            compact();
+            if (mEndOffset + RECORD_OVERHEAD + record.length > mMaxSize) {
+                return false;
+            }
+        }
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(record);
+        mRandomAccessFile.seek(mEndOffset);
+        mRandomAccessFile.writeInt(record.length);
+        mRandomAccessFile.writeInt((int) checksum.getValue());
+        mRandomAccessFile.write(record);
+        mEndOffset += RECORD_OVERHEAD + record.length;
+        mRecordCount++;
+        mUnsentBytes += record.length;
+        return true;
+    }
+
+    /**
+     * Reads up to maxCount records that aren't leased by another batch. See
+     * {@link #peek(int, long)}.
+     */
+    @NonNull
+    Batch peek(final int maxCount) throws IOException {
+        return peek(maxCount, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the first records that aren't leased by another batch, without removing them, until
+     * there are maxCount of them or the next one would take their total size over maxBytes. The
+     * first record is always read, however large it is. The records are leased until the batch
+     * is passed to {@link #commit(Batch)} once they were sent, or to {@link #release(Batch)} if
+     * they couldn't be.
+     */
+    @NonNull
+    Batch peek(final int maxCount, final long maxBytes) throws IOException {
+        // Skip the batches that are already being sent
+        long startOffset = mHeadOffset + mRemovedBytes;
+        Long leasedEndOffset;
+        while ((leasedEndOffset = mLeasedBatches.get(startOffset)) != null) {
+            startOffset = leasedEndOffset;
+        }
+        final Long nextLeasedOffset = mLeasedBatches.higherKey(startOffset);
+        final long limitOffset = nextLeasedOffset != null
+                ? nextLeasedOffset - mRemovedBytes
+                : mEndOffset;
+
+        final List<byte[]> records = new ArrayList<byte[]>(Math.min(maxCount, mRecordCount));
+        long offset = startOffset - mRemovedBytes;
+        long byteCount = 0;
+        while (records.size() < maxCount && offset < limitOffset) {
+            mRandomAccessFile.seek(offset);
+            final int recordLength = mRandomAccessFile.readInt();
+            if (!records.isEmpty() && byteCount + recordLength > maxBytes) {
+                break;
+            }
+            final byte[] record = new byte[recordLength];
+            mRandomAccessFile.readInt(); // Checked when the spool was opened
+            mRandomAccessFile.readFully(record);
+            records.add(record);
+            byteCount += recordLength;
+            offset += RECORD_OVERHEAD + recordLength;
+        }
+
+        final Batch batch = new Batch(records, byteCount, startOffset, offset + mRemovedBytes);
+        if (!records.isEmpty()) {
+            mLeasedBatches.put(batch.mStartOffset, batch.mEndOffset);
+            mLeasedRecordCount += records.size();
+            mLeasedBytes += byteCount;
+        }
+        return batch;
+    }
+
+    /**
+     * Removes the records of a batch returned by {@link #peek(int, long)}. Does nothing if the
+     * batch was already committed or released.
+     */
+    void commit(@NonNull final Batch batch) throws IOException {
+        Preconditions.checkNotNull(batch);
+
+        if (!isLeased(batch) || !mCommittedBatches.add(batch.mStartOffset)) {
+            return;
+        }
+        mRecordCount -= batch.getRecords().size();
+        mUnsentBytes -= batch.mByteCount;
+        mLeasedRecordCount -= batch.getRecords().size();
+        mLeasedBytes -= batch.mByteCount;
+
+        // Move the head past every committed batch at the start of the spool
+        long headOffset = mHeadOffset + mRemovedBytes;
+        while (mCommittedBatches.remove(headOffset)) {
+            headOffset = mLeasedBatches.remove(headOffset);
+        }
+        headOffset -= mRemovedBytes;
+        if (headOffset == mHeadOffset) {
+            return;
+        }
+
+        if (headOffset >= mEndOffset) {
+            // Everything was sent. Start over with an empty file.
+            mRemovedBytes += mEndOffset - HEADER_SIZE;
+            reset();
+            return;
+        }
+
+        mHeadOffset = headOffset;
+        mRandomAccessFile.seek(HEAD_OFFSET_POSITION);
+        mRandomAccessFile.writeLong(mHeadOffset);
+        if (mHeadOffset - HEADER_SIZE > (mEndOffset - HEADER_SIZE) * COMPACTION_RATIO) {
+            compact();
+        }
+    }
+
+    /**
+     * Gives up the lease of a batch returned by {@link #peek(int, long)} that couldn't be sent,
+     * so its records are read again by a later peek. Does nothing if the batch was already
+     * committed or released.
+     */
+    void release(@NonNull final Batch batch) {
+        Preconditions.checkNotNull(batch);
+
+        if (isLeased(batch) && !mCommittedBatches.contains(batch.mStartOffset)) {
+            mLeasedBatches.remove(batch.mStartOffset);
+            mLeasedRecordCount -= batch.getRecords().size();
+            mLeasedBytes -= batch.mByteCount;
+        }
+    }
+
+    private boolean isLeased(@NonNull final Batch batch) {
+        final Long endOffset = mLeasedBatches.get(batch.mStartOffset);
+        return endOffset != null && endOffset == batch.mEndOffset;
+    }
+
+    /**
+     * The number of records that haven't been sent, including those being sent.
+     */
+    int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * The number of records waiting to be peeked.
+     */
+    int getPendingRecordCount() {
+        return mRecordCount - mLeasedRecordCount;
+    }
+
+    boolean isEmpty() {
+        return mRecordCount == 0;
+    }
+
+    /**
+     * The number of bytes of the records waiting to be peeked, not counting their lengths and
+     * checksums.
+     */
+    long getPendingBytes() {
+        return mUnsentBytes - mLeasedBytes;
+    }
+
+    /**
+     * The number of bytes in the file, including sent records that haven't been removed yet.
+     */
+    long getFileSize() {
+        return mEndOffset;
+    }
+
+    void close() {
+        Streams.closeStream(mRandomAccessFile);
+    }
+
+    private void recover() throws IOException {
+        if (mRandomAccessFile.length() < HEADER_SIZE
+                || mRandomAccessFile.readInt() != MAGIC
+                || mRandomAccessFile.readInt() != VERSION) {
+            reset();
+            return;
+        }
+
+        final long length = mRandomAccessFile.length();
+        final long headOffset = mRandomAccessFile.readLong();
+        if (headOffset < HEADER_SIZE || headOffset > length) {
+            MoPubLog.d("Event spool header is invalid. Dropping spooled events.");
+            reset();
+            return;
+        }
+
+        // Find the end of the last intact record
+        final CRC32 checksum = new CRC32();
+        long offset = headOffset;
+        int recordCount = 0;
+        long unsentBytes = 0;
+        while (offset + RECORD_OVERHEAD <= length) {
+            mRandomAccessFile.seek(offset);
+            final int recordLength = mRandomAccessFile.readInt();
+            final int recordChecksum = mRandomAccessFile.readInt();
+            if (recordLength < 0 || offset + RECORD_OVERHEAD + recordLength > length) {
+                break;
+            }
+            final byte[] record = new byte[recordLength];
+            mRandomAccessFile.readFully(record);
+            checksum.reset();
+            checksum.update(record);
+            if ((int) checksum.getValue() != recordChecksum) {
+                break;
+            }
+            offset += RECORD_OVERHEAD + recordLength;
+            recordCount++;
+            unsentBytes += recordLength;
+        }
+
+        if (offset < length) {
+            MoPubLog.d("Dropping " + (length - offset) + " bytes of torn event records.");
+            mRandomAccessFile.setLength(offset);
+        }
+        mHeadOffset = headOffset;
+        mEndOffset = offset;
+        mRecordCount = recordCount;
+        mUnsentBytes = unsentBytes;
+    }
+
+    private void reset() throws IOException {
+        mRandomAccessFile.setLength(0);
+        mRandomAccessFile.seek(0);
+        mRandomAccessFile.writeInt(MAGIC);
+        mRandomAccessFile.writeInt(VERSION);
+        mRandomAccessFile.writeLong(HEADER_SIZE);
+        mHeadOffset = HEADER_SIZE;
+        mEndOffset = HEADER_SIZE;
+        mRecordCount = 0;
+        mUnsentBytes = 0;
+        mLeasedRecordCount = 0;
+        mLeasedBytes = 0;
+        mLeasedBatches.clear();
+        mCommittedBatches.clear();
+    }
+
+    /**
+     * Moves the unsent records to the start of a new file, which then replaces the spool.
+     */
+    private void compact() throws IOException {
+        if (mHeadOffset == HEADER_SIZE) {
+            return;
+        }
+
+        final File tempFile = new File(mFile.getPath() + ".tmp");
+        final RandomAccessFile tempRandomAccessFile = new RandomAccessFile(tempFile, "rw");
+        try {
+            tempRandomAccessFile.setLength(0);
+            tempRandomAccessFile.writeInt(MAGIC);
+            tempRandomAccessFile.writeInt(VERSION);
+            tempRandomAccessFile.writeLong(HEADER_SIZE);
+            final byte[] buffer = new byte[8192];
+            mRandomAccessFile.seek(mHeadOffset);
+            long remaining = mEndOffset - mHeadOffset;
+            while (remaining > 0) {
+                final int count = mRandomAccessFile.read(buffer, 0,
+                        (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new IOException("Event spool ended early");
+                }
+                tempRandomAccessFile.write(buffer, 0, count);
+                remaining -= count;
+            }
+        } finally {
+            Streams.closeStream(tempRandomAccessFile);
+        }
+
+        if (!tempFile.renameTo(mFile)) {
+            tempFile.delete();
+            throw new IOException("Unable to replace " + mFile);
+        }
+        Streams.closeStream(mRandomAccessFile);
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        mRemovedBytes += mHeadOffset - HEADER_SIZE;
+        mEndOffset -= mHeadOffset - HEADER_SIZE;
+        mHeadOffset = HEADER_SIZE;
+    }
+
+    /**
+     * Records read from the start of the spool.
+     */
+    static class Batch {
+        @NonNull private final List<byte[]> mRecords;
+        private final long mByteCount;
+        private final long mStartOffset;
+        private final long mEndOffset;
+
+        Batch(@NonNull final List<byte[]> records, final long byteCount, final long startOffset,
+                final long endOffset) {
+            mRecords = records;
+            mByteCount = byteCount;
+            mStartOffset = startOffset;
+            mEndOffset = endOffset;
+        }
+
+        @NonNull
+        List<byte[]> getRecords() {
+            return mRecords;
+        }
+
+        /**
+         * Where the batch starts in the spool. A batch that is peeked again after being released
+         * starts at the same offset.
+         */
+        long getStartOffset() {
+            return mStartOffset;
+        }
+    }
+}
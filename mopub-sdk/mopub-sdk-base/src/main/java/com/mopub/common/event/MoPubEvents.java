@@ -1,7 +1,10 @@
 package com.mopub.common.event;
 
 import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 
 import java.util.ArrayList;
@@ -12,6 +15,8 @@ import java.util.ArrayList;
 public class MoPubEvents {
 
     private static volatile EventDispatcher sEventDispatcher;
+    @NonNull private static volatile EventDispatcher.DropPolicy sDropPolicy =
+            EventDispatcher.DropPolicy.DROP_NEWEST;
 
     /**
      * Log a BaseEvent. MoPub uses logged events to analyze and improve performance.
@@ -21,6 +26,35 @@ public class MoPubEvents {
         MoPubEvents.getDispatcher().dispatch(baseEvent);
     }
 
+    /**
+     * Returns whether an event with the given request ID and sampling rate would be logged, so
+     * the event only needs to be built if it will be. Events without a request ID are always
+     * built, and sampled once they are logged.
+     * This method should not be called by app developers.
+     */
+    public static boolean isSampled(@Nullable String requestId,
+            @NonNull BaseEvent.SamplingRate samplingRate) {
+        Preconditions.checkNotNull(samplingRate);
+
+        return MoPubEvents.getDispatcher().isSampled(requestId, samplingRate.getSamplingRate());
+    }
+
+    /**
+     * Sets what happens to events that are logged faster than they can be recorded. Defaults to
+     * {@link EventDispatcher.DropPolicy#DROP_NEWEST}.
+     */
+    public static void setDropPolicy(@NonNull EventDispatcher.DropPolicy dropPolicy) {
+        Preconditions.checkNotNull(dropPolicy);
+
+        synchronized (MoPubEvents.class) {
+            sDropPolicy = dropPolicy;
+            final EventDispatcher eventDispatcher = sEventDispatcher;
+            if (eventDispatcher != null) {
+                eventDispatcher.setDropPolicy(dropPolicy);
+            }
+        }
+    }
+
     @VisibleForTesting
     public static void setEventDispatcher(EventDispatcher dispatcher) {
         sEventDispatcher = dispatcher;
@@ -46,7 +80,10 @@ public class MoPubEvents {
                     HandlerThread handlerThread = new HandlerThread("mopub_event_logging");
                     handlerThread.start();
                     recorders.add(new ScribeEventRecorder(handlerThread.getLooper()));
-                    result = sEventDispatcher = new EventDispatcher(recorders, handlerThread.getLooper());
+                    result = sEventDispatcher = new EventDispatcher(recorders,
+                            handlerThread.getLooper(), new EventSampler(),
+                            EventDispatcher.DEFAULT_BUFFER_CAPACITY,
+                            sDropPolicy);
                 }
             }
         }
@@ -3,62 +3,116 @@ package com.mopub.common.event;
 import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import com.mopub.common.ClientMetadata;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.network.ScribeBackoffPolicy;
 import com.mopub.network.ScribeRequest;
 import com.mopub.network.ScribeRequestManager;
+import com.mopub.volley.NetworkResponse;
+import com.mopub.volley.VolleyError;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The ScribeEventRecorder manages events being sent to the Scribe service. It is responsible for
- * sampling, batching and kicking off network requests. It is also responsible for ensuring batched
- * events don't grow unbounded.
+ * batching and kicking off network requests. It is also responsible for ensuring batched events
+ * don't grow unbounded. Events are sampled by the {@link EventDispatcher} before they get here.
+ *
+ * Events are encoded as compact records and appended to an {@link EventSpool} in the app's files
+ * directory, so events that weren't sent before the process died are sent after it restarts.
+ * Records are only removed from the spool once the Scribe service accepted them. A batch whose
+ * request was given up on goes back to the spool and is sent again later, unless the service
+ * rejected it as a bad request or it failed with server errors {@link #MAX_BATCH_ATTEMPTS} times,
+ * in which case its events are dropped. Batches that couldn't reach the service are always kept.
  */
 public class ScribeEventRecorder implements EventRecorder {
     private static final String SCRIBE_URL = "https://analytics.mopub.com/i/jot/exchange_client_event";
-    private static final int QUEUE_MAX_SIZE = 500;
+    private static final String SPOOL_FILE_NAME = "mopub-event-spool";
 
     /**
-     * As of SDK 3.6.0, events are roughly 1200 bytes in size. 1200 * 100 = 0.114441 MiB
-     * This threshhold must always be < 1 MiB
+     * Records are roughly a third of the size of the event's JSON, so this holds well over the
+     * 500 events that used to be queued in memory.
      */
-    private static final int EVENT_COUNT_SEND_THRESHHOLD = 100;
+    @VisibleForTesting static final long SPOOL_MAX_BYTES = 512 * 1024;
+
+    /**
+     * Events are sent once their records take up this many bytes, and a batch holds as many
+     * records as fit in it, so small events are sent in larger batches. The JSON of a record is
+     * roughly three times its size, which keeps the uncompressed request well under 1 MiB.
+     */
+    @VisibleForTesting static final int BATCH_BYTE_BUDGET = 64 * 1024;
+
+    /**
+     * Bounds the number of events in a batch, however small they are.
+     */
+    @VisibleForTesting static final int BATCH_MAX_EVENT_COUNT = 500;
+
+    /**
+     * The number of times a batch is given up on after failing with a server error before its
+     * events are dropped. Each attempt already retries with a {@link ScribeBackoffPolicy}.
+     */
+    @VisibleForTesting static final int MAX_BATCH_ATTEMPTS = 3;
 
     /**
      * 2 minute polling time to check for send up events
      */
     private static final int POLLING_PERIOD_MS = 2 * 60 * 1000;
 
-    @NonNull private final EventSampler mEventSampler;
-    @NonNull private final Queue<BaseEvent> mEventQueue;
     @NonNull private final EventSerializer mEventSerializer;
     @NonNull private final ScribeRequestManager mScribeRequestManager;
 
     @NonNull private final Handler mPollHandler;
     @NonNull private final PollingRunnable mPollingRunnable;
 
+    @Nullable private EventSpool mEventSpool;
+    @NonNull private final List<EventSpool.Batch> mInFlightBatches =
+            new ArrayList<EventSpool.Batch>();
+
+    /**
+     * Whether the last error response of an in-flight batch rejected it as a bad request, for
+     * the batches whose last attempt got an error response from the service.
+     */
+    @NonNull private final Map<EventSpool.Batch, Boolean> mFailedBatches =
+            new HashMap<EventSpool.Batch, Boolean>();
+
+    /**
+     * The number of attempts that failed with a server error, by the start offset of the batch.
+     */
+    @NonNull private final Map<Long, Integer> mFailedAttemptCounts = new HashMap<Long, Integer>();
+
+    @NonNull private final AtomicLong mSpooledCount = new AtomicLong();
+    @NonNull private final AtomicLong mDroppedCount = new AtomicLong();
+    @NonNull private final AtomicLong mUploadedCount = new AtomicLong();
+    @NonNull private final AtomicLong mReplayedCount = new AtomicLong();
+
     ScribeEventRecorder(@NonNull Looper looper) {
-        this(new EventSampler(),
-                new LinkedList<BaseEvent>(),
+        this(null,
                 new EventSerializer(),
                 new ScribeRequestManager(looper),
                 new Handler(looper));
     }
 
+    /**
+     * @param eventSpool The spool to keep events in, or null to open the spool in the app's files
+     *                   directory once {@link ClientMetadata} is available.
+     */
     @VisibleForTesting
-    ScribeEventRecorder(@NonNull EventSampler eventSampler,
-            @NonNull Queue<BaseEvent> eventQueue,
+    ScribeEventRecorder(@Nullable EventSpool eventSpool,
             @NonNull EventSerializer eventSerializer,
             @NonNull ScribeRequestManager scribeRequestManager,
             @NonNull Handler handler) {
-        mEventSampler = eventSampler;
-        mEventQueue = eventQueue;
+        mEventSpool = eventSpool;
         mEventSerializer = eventSerializer;
         mScribeRequestManager = scribeRequestManager;
         mPollHandler = handler;
@@ -66,58 +120,128 @@ public class ScribeEventRecorder implements EventRecorder {
     }
 
     @Override
-    public void record(@NonNull BaseEvent baseEvent) {
-        if (!mEventSampler.sample(baseEvent)) {
-            return;
+    public void record(@NonNull List<BaseEvent> baseEvents) {
+        final EventSpool eventSpool = getEventSpool();
+        for (final BaseEvent baseEvent : baseEvents) {
+            spool(eventSpool, baseEvent);
         }
-
-        if (mEventQueue.size() >= QUEUE_MAX_SIZE) {
-            MoPubLog.d("EventQueue is at max capacity. " +
-                    "Event \"" + baseEvent.getName() + "\" is being dropped.");
+        if (eventSpool == null) {
             return;
         }
 
-        mEventQueue.add(baseEvent);
-        if (mEventQueue.size() >= EVENT_COUNT_SEND_THRESHHOLD) {
+        if (eventSpool.getPendingBytes() >= BATCH_BYTE_BUDGET
+                || eventSpool.getPendingRecordCount() >= BATCH_MAX_EVENT_COUNT) {
             sendEvents();
         }
 
         scheduleNextPoll();
     }
 
+    @VisibleForTesting
+    void record(@NonNull BaseEvent baseEvent) {
+        record(Collections.singletonList(baseEvent));
+    }
+
+    private void spool(@Nullable EventSpool eventSpool, @NonNull BaseEvent baseEvent) {
+        if (eventSpool == null) {
+            drop(baseEvent, "Event spool is not available.");
+            return;
+        }
+
+        try {
+            if (!eventSpool.append(mEventSerializer.toRecord(baseEvent))) {
+                drop(baseEvent, "Event spool is at max capacity.");
+                return;
+            }
+        } catch (IOException e) {
+            drop(baseEvent, "Unable to spool event. " + e.getMessage());
+            return;
+        }
+        mSpooledCount.incrementAndGet();
+    }
+
     @VisibleForTesting
     void sendEvents() {
-        if (mScribeRequestManager.isAtCapacity()) {
+        final EventSpool eventSpool = getEventSpool();
+        if (eventSpool == null) {
             return;
         }
+        releaseFinishedBatches(eventSpool);
 
-        final List<BaseEvent> events = dequeueEvents();
-        if (events.isEmpty()) {
+        if (mScribeRequestManager.isAtCapacity() || eventSpool.getPendingRecordCount() == 0) {
             return;
         }
 
+        final EventSpool.Batch batch;
+        try {
+            batch = eventSpool.peek(BATCH_MAX_EVENT_COUNT, BATCH_BYTE_BUDGET);
+        } catch (IOException e) {
+            MoPubLog.d("Unable to read spooled events. " + e.getMessage());
+            return;
+        }
+        mInFlightBatches.add(batch);
         mScribeRequestManager.makeRequest(
                 new ScribeRequest.ScribeRequestFactory() {
                     @Override
                     public ScribeRequest createRequest(ScribeRequest.Listener listener) {
-                        return new ScribeRequest(SCRIBE_URL, events, mEventSerializer, listener);
+                        return new ScribeRequest(SCRIBE_URL, batch.getRecords(), mEventSerializer,
+                                new CommittingListener(eventSpool, batch, listener));
                     }
                 },
-                new ScribeBackoffPolicy()
+                new ScribeBackoffPolicy(),
+                batch
         );
     }
 
-    @VisibleForTesting
-    @NonNull
-    List<BaseEvent> dequeueEvents() {
-        ArrayList<BaseEvent> baseEvents = new ArrayList<BaseEvent>();
+    /**
+     * Returns the batches whose requests were given up on to the spool, so their events are
+     * sent again, or drops their events if they won't ever be accepted. Batches that were sent
+     * were already committed, so releasing them does nothing.
+     */
+    private void releaseFinishedBatches(@NonNull EventSpool eventSpool) {
+        final Iterator<EventSpool.Batch> iterator = mInFlightBatches.iterator();
+        while (iterator.hasNext()) {
+            final EventSpool.Batch batch = iterator.next();
+            if (mScribeRequestManager.hasRequest(batch)) {
+                continue;
+            }
+            iterator.remove();
 
-        // Note: Some queues do not have constant time O(1) performance for its #size()
-        // method, so we're peeking and polling instead
-        while (mEventQueue.peek() != null && baseEvents.size() < EVENT_COUNT_SEND_THRESHHOLD) {
-            baseEvents.add(mEventQueue.poll());
+            final Boolean rejected = mFailedBatches.remove(batch);
+            if (rejected == null) {
+                // Sent, cancelled or unable to reach the service
+                eventSpool.release(batch);
+                continue;
+            }
+
+            final long startOffset = batch.getStartOffset();
+            final Integer failedAttemptCount = mFailedAttemptCounts.get(startOffset);
+            final int attemptCount = failedAttemptCount == null ? 1 : failedAttemptCount + 1;
+            if (!rejected && attemptCount < MAX_BATCH_ATTEMPTS) {
+                mFailedAttemptCounts.put(startOffset, attemptCount);
+                eventSpool.release(batch);
+                continue;
+            }
+
+            mFailedAttemptCounts.remove(startOffset);
+            dropBatch(eventSpool, batch, rejected
+                    ? "Scribe service rejected the events."
+                    : "Scribe service failed " + attemptCount + " times.");
         }
-        return baseEvents;
+    }
+
+    private void dropBatch(@NonNull EventSpool eventSpool, @NonNull EventSpool.Batch batch,
+            @NonNull String reason) {
+        final int count = batch.getRecords().size();
+        try {
+            eventSpool.commit(batch);
+        } catch (IOException e) {
+            MoPubLog.d("Unable to remove dropped events from spool. " + e.getMessage());
+            eventSpool.release(batch);
+            return;
+        }
+        MoPubLog.d(reason + " " + count + " events are being dropped.");
+        mDroppedCount.addAndGet(count);
     }
 
     @VisibleForTesting
@@ -125,13 +249,117 @@ public class ScribeEventRecorder implements EventRecorder {
         // Only schedule if there are no messages already scheduled.
         // The user defined message code, the 'what' param in Handler#hasMessages, defaults to
         // 0 for posting a delayed runnable
-        if (mPollHandler.hasMessages(0) || mEventQueue.isEmpty()) {
+        final EventSpool eventSpool = getEventSpool();
+        if (mPollHandler.hasMessages(0) || eventSpool == null || eventSpool.isEmpty()) {
             return;
         }
 
         mPollHandler.postDelayed(mPollingRunnable, POLLING_PERIOD_MS);
     }
 
+    /**
+     * Returns counters of the events handled by this recorder since it was created.
+     */
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mSpooledCount.get(), mDroppedCount.get(), mUploadedCount.get(),
+                mReplayedCount.get());
+    }
+
+    /**
+     * Opens the spool if it isn't open yet. Returns null if it can't be opened.
+     */
+    @Nullable
+    private EventSpool getEventSpool() {
+        if (mEventSpool != null) {
+            return mEventSpool;
+        }
+
+        final ClientMetadata clientMetadata = ClientMetadata.getInstance();
+        if (clientMetadata == null) {
+            return null;
+        }
+
+        try {
+            mEventSpool = EventSpool.open(
+                    new File(clientMetadata.getFilesDirectory(), SPOOL_FILE_NAME),
+                    SPOOL_MAX_BYTES);
+        } catch (IOException e) {
+            MoPubLog.d("Unable to open event spool. " + e.getMessage());
+            return null;
+        }
+
+        final int replayedCount = mEventSpool.getRecordCount();
+        if (replayedCount > 0) {
+            MoPubLog.d("Replaying " + replayedCount + " spooled events.");
+            mReplayedCount.addAndGet(replayedCount);
+        }
+        return mEventSpool;
+    }
+
+    private void drop(@NonNull BaseEvent baseEvent, @NonNull String reason) {
+        MoPubLog.d(reason + " Event \"" + baseEvent.getName() + "\" is being dropped.");
+        mDroppedCount.incrementAndGet();
+    }
+
+    /**
+     * Removes the records of a batch from the spool once the Scribe service accepted them, then
+     * passes the response on to the request manager.
+     */
+    class CommittingListener implements ScribeRequest.Listener {
+        @NonNull private final EventSpool mBatchSpool;
+        @NonNull private final EventSpool.Batch mBatch;
+        @NonNull private final ScribeRequest.Listener mListener;
+
+        CommittingListener(@NonNull EventSpool eventSpool, @NonNull EventSpool.Batch batch,
+                @NonNull ScribeRequest.Listener listener) {
+            mBatchSpool = eventSpool;
+            mBatch = batch;
+            mListener = listener;
+        }
+
+        @Override
+        public void onResponse() {
+            // Post back to the dedicated event logging thread before touching the spool. This is
+            // posted before the request manager finishes the request, so the batch can't be
+            // released before it is committed.
+            mPollHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mFailedBatches.remove(mBatch);
+                    mFailedAttemptCounts.remove(mBatch.getStartOffset());
+                    try {
+                        mBatchSpool.commit(mBatch);
+                        mUploadedCount.addAndGet(mBatch.getRecords().size());
+                    } catch (IOException e) {
+                        MoPubLog.d("Unable to remove sent events from spool. " + e.getMessage());
+                    }
+                }
+            });
+            mListener.onResponse();
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError volleyError) {
+            final NetworkResponse networkResponse = volleyError.networkResponse;
+            if (networkResponse != null) {
+                // Posted before the request manager gives up on the request, so the next call to
+                // sendEvents knows why the batch failed when it releases it
+                final boolean rejected = networkResponse.statusCode >= 400
+                        && networkResponse.statusCode < 500;
+                mPollHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mFailedBatches.put(mBatch, rejected);
+                    }
+                });
+            }
+            // The request manager retries with the same batch, or gives up on it so it is
+            // released by the next call to sendEvents
+            mListener.onErrorResponse(volleyError);
+        }
+    }
+
     class PollingRunnable implements Runnable {
         @Override
         public void run() {
@@ -139,4 +367,52 @@ public class ScribeEventRecorder implements EventRecorder {
             scheduleNextPoll();
         }
     }
+
+    /**
+     * Counters of the events handled by the recorder since it was created.
+     */
+    public static class Stats {
+        private final long mSpooledCount;
+        private final long mDroppedCount;
+        private final long mUploadedCount;
+        private final long mReplayedCount;
+
+        Stats(final long spooledCount, final long droppedCount, final long uploadedCount,
+                final long replayedCount) {
+            mSpooledCount = spooledCount;
+            mDroppedCount = droppedCount;
+            mUploadedCount = uploadedCount;
+            mReplayedCount = replayedCount;
+        }
+
+        /**
+         * The number of sampled events that were written to the spool.
+         */
+        public long getSpooledCount() {
+            return mSpooledCount;
+        }
+
+        /**
+         * The number of sampled events that couldn't be written to the spool, or that were
+         * dropped since the Scribe service wouldn't accept them.
+         */
+        public long getDroppedCount() {
+            return mDroppedCount;
+        }
+
+        /**
+         * The number of events the Scribe service accepted.
+         */
+        public long getUploadedCount() {
+            return mUploadedCount;
+        }
+
+        /**
+         * The number of events found in the spool when it was opened, left over from an earlier
+         * process.
+         */
+        public long getReplayedCount() {
+            return mReplayedCount;
+        }
+    }
 }
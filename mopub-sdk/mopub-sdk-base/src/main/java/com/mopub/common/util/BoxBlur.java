@@ -0,0 +1,245 @@
+package com.mopub.common.util;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.BackgroundExecutor;
+import com.mopub.common.Preconditions;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blurs buffers of ARGB pixels with repeated box blurs, which approximate a Gaussian blur.
+ *
+ * Each pass blurs the rows into a scratch buffer and then the columns back into the pixels. Both
+ * halves of a pass are split into horizontal stripes that are blurred in parallel. The scratch
+ * buffers are kept between calls, so reusing one instance for frames of the same size doesn't
+ * allocate. Like {@link ImageUtils#applyFastGaussianBlurToBitmap(android.graphics.Bitmap, int)},
+ * the blurred pixels are opaque.
+ */
+public class BoxBlur {
+    public static final int DEFAULT_PASSES = 3;
+    /**
+     * Stripes shorter than this aren't worth handing to another thread.
+     */
+    private static final int MIN_STRIPE_HEIGHT = 32;
+
+    @NonNull private final Executor mExecutor;
+    private final int mMaxStripes;
+    private final int mPasses;
+    @NonNull private int[] mPixels = new int[0];
+    @NonNull private int[] mScratch = new int[0];
+    // Running red, green and blue sums of every column, one array per stripe
+    @NonNull private int[][] mColumnSums = new int[0][];
+    // Maps a channel sum to the channel average for the current radius
+    @NonNull private int[] mDivide = new int[0];
+    private int mDivideRadius;
+
+    public BoxBlur() {
+        this(BackgroundExecutor.getExecutor(), Runtime.getRuntime().availableProcessors(),
+                DEFAULT_PASSES);
+    }
+
+    /**
+     * @param executor Runs every stripe but the first, which runs on the calling thread. Stripes
+     *                 the executor hasn't started by then also run on the calling thread.
+     * @param maxStripes The most stripes to split a frame into, usually the number of cores
+     * @param passes The number of box blurs to apply. Three are close to a Gaussian blur.
+     */
+    public BoxBlur(@NonNull final Executor executor, final int maxStripes, final int passes) {
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(maxStripes > 0, "maxStripes must be positive");
+        Preconditions.checkArgument(passes > 0, "passes must be positive");
+
+        mExecutor = executor;
+        mMaxStripes = maxStripes;
+        mPasses = passes;
+    }
+
+    /**
+     * Returns a pixel buffer of at least the given size that is kept between calls. Callers that
+     * share this instance should synchronize on it while they use the buffer.
+     */
+    @NonNull
+    public synchronized int[] getPixelBuffer(final int size) {
+        if (mPixels.length < size) {
+            mPixels = new int[size];
+        }
+        return mPixels;
+    }
+
+    /**
+     * Blurs the pixels in place.
+     *
+     * @param pixels The ARGB pixels of the frame, row by row
+     * @param width The width of the frame
+     * @param height The height of the frame
+     * @param radius The number of pixels on each side of a pixel that are averaged into it
+     */
+    public synchronized void blur(@NonNull final int[] pixels, final int width, final int height,
+            final int radius) {
+        Preconditions.checkNotNull(pixels);
+        Preconditions.checkArgument(width >= 0 && height >= 0, "Frame size cannot be negative");
+        Preconditions.checkArgument(pixels.length >= width * height,
+                "Pixel buffer is smaller than the frame");
+
+        if (radius < 1 || width == 0 || height == 0) {
+            return;
+        }
+
+        final int stripes = Math.max(1, Math.min(mMaxStripes, height / MIN_STRIPE_HEIGHT));
+        prepareBuffers(width, height, radius, stripes);
+
+        for (int pass = 0; pass < mPasses; pass++) {
+            blurInStripes(true, pixels, mScratch, width, height, radius, stripes);
+            blurInStripes(false, mScratch, pixels, width, height, radius, stripes);
+        }
+    }
+
+    private void prepareBuffers(final int width, final int height, final int radius,
+            final int stripes) {
+        if (mScratch.length < width * height) {
+            mScratch = new int[width * height];
+        }
+        if (mColumnSums.length < stripes
+                || (mColumnSums.length > 0 && mColumnSums[0].length < 3 * width)) {
+            mColumnSums = new int[Math.max(stripes, mColumnSums.length)][3 * width];
+        }
+        if (mDivideRadius != radius) {
+            final int diameter = 2 * radius + 1;
+            mDivide = new int[256 * diameter];
+            for (int i = 0; i < mDivide.length; i++) {
+                mDivide[i] = i / diameter;
+            }
+            mDivideRadius = radius;
+        }
+    }
+
+    private void blurInStripes(final boolean rows, @NonNull final int[] source,
+            @NonNull final int[] destination, final int width, final int height, final int radius,
+            final int stripes) {
+        final CountDownLatch latch = new CountDownLatch(stripes - 1);
+        // Each stripe is claimed once, either by an executor task or by the calling thread, so a
+        // busy executor can't hold up the blur
+        final AtomicInteger nextStripe = new AtomicInteger(1);
+        final Runnable claimStripes = new Runnable() {
+            @Override
+            public void run() {
+                int stripe;
+                while ((stripe = nextStripe.getAndIncrement()) < stripes) {
+                    try {
+                        blurStripe(rows, source, destination, width, height, radius, stripe,
+                                stripes);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }
+        };
+        for (int i = 1; i < stripes; i++) {
+            mExecutor.execute(claimStripes);
+        }
+        blurStripe(rows, source, destination, width, height, radius, 0, stripes);
+        claimStripes.run();
+
+        // Wait for the other stripes even if interrupted, since the next pass reads them
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void blurStripe(final boolean rows, @NonNull final int[] source,
+            @NonNull final int[] destination, final int width, final int height, final int radius,
+            final int stripe, final int stripes) {
+        final int startRow = (int) ((long) height * stripe / stripes);
+        final int endRow = (int) ((long) height * (stripe + 1) / stripes);
+
+        if (rows) {
+            for (int y = startRow; y < endRow; y++) {
+                blurRow(source, destination, y * width, width, radius);
+            }
+        } else {
+            blurColumns(source, destination, width, height, radius, startRow, endRow,
+                    mColumnSums[stripe]);
+        }
+    }
+
+    private void blurRow(@NonNull final int[] source, @NonNull final int[] destination,
+            final int rowStart, final int width, final int radius) {
+        final int[] divide = mDivide;
+        final int lastX = width - 1;
+
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        for (int i = -radius; i <= radius; i++) {
+            final int pixel = source[rowStart + Math.min(Math.max(i, 0), lastX)];
+            red += (pixel >> 16) & 0xFF;
+            green += (pixel >> 8) & 0xFF;
+            blue += pixel & 0xFF;
+        }
+
+        for (int x = 0; x < width; x++) {
+            destination[rowStart + x] =
+                    0xFF000000 | (divide[red] << 16) | (divide[green] << 8) | divide[blue];
+
+            final int added = source[rowStart + Math.min(x + radius + 1, lastX)];
+            final int removed = source[rowStart + Math.max(x - radius, 0)];
+            red += ((added >> 16) & 0xFF) - ((removed >> 16) & 0xFF);
+            green += ((added >> 8) & 0xFF) - ((removed >> 8) & 0xFF);
+            blue += (added & 0xFF) - (removed & 0xFF);
+        }
+    }
+
+    /**
+     * Blurs the columns of the given rows. The sums of all columns are slid down together so that
+     * the frame is read row by row.
+     */
+    private void blurColumns(@NonNull final int[] source, @NonNull final int[] destination,
+            final int width, final int height, final int radius, final int startRow,
+            final int endRow, @NonNull final int[] sums) {
+        final int[] divide = mDivide;
+        final int lastY = height - 1;
+
+        Arrays.fill(sums, 0, 3 * width, 0);
+        for (int i = startRow - radius; i <= startRow + radius; i++) {
+            final int rowStart = Math.min(Math.max(i, 0), lastY) * width;
+            for (int x = 0, s = 0; x < width; x++, s += 3) {
+                final int pixel = source[rowStart + x];
+                sums[s] += (pixel >> 16) & 0xFF;
+                sums[s + 1] += (pixel >> 8) & 0xFF;
+                sums[s + 2] += pixel & 0xFF;
+            }
+        }
+
+        for (int y = startRow; y < endRow; y++) {
+            final int rowStart = y * width;
+            for (int x = 0, s = 0; x < width; x++, s += 3) {
+                destination[rowStart + x] = 0xFF000000 | (divide[sums[s]] << 16)
+                        | (divide[sums[s + 1]] << 8) | divide[sums[s + 2]];
+            }
+
+            if (y + 1 < endRow) {
+                final int addedRowStart = Math.min(y + radius + 1, lastY) * width;
+                final int removedRowStart = Math.max(y - radius, 0) * width;
+                for (int x = 0, s = 0; x < width; x++, s += 3) {
+                    final int added = source[addedRowStart + x];
+                    final int removed = source[removedRowStart + x];
+                    sums[s] += ((added >> 16) & 0xFF) - ((removed >> 16) & 0xFF);
+                    sums[s + 1] += ((added >> 8) & 0xFF) - ((removed >> 8) & 0xFF);
+                    sums[s + 2] += (added & 0xFF) - (removed & 0xFF);
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,6 @@
 package com.mopub.common.util;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 import java.util.TimeZone;
 
 public class DateAndTime {
@@ -21,12 +19,23 @@ public class DateAndTime {
         return instance.internalNow();
     }
 
+    /**
+     * Returns the offset of the local time zone from UTC right now, formatted like the "Z"
+     * pattern of {@link java.text.SimpleDateFormat}, e.g. "-0800". This is formatted by hand
+     * because it is needed for every ad request, and creating a date format is expensive.
+     */
     public static String getTimeZoneOffsetString() {
-        // A new instance is created with each call because DateFormat objects have
-        // internal state and are not thread safe.
-        SimpleDateFormat format = new SimpleDateFormat("Z", Locale.US);
-        format.setTimeZone(localTimeZone());
-        return format.format(now());
+        final int offsetMinutes = localTimeZone().getOffset(now().getTime()) / (60 * 1000);
+        final int absoluteOffsetMinutes = Math.abs(offsetMinutes);
+        final int hours = absoluteOffsetMinutes / 60;
+        final int minutes = absoluteOffsetMinutes % 60;
+        return new StringBuilder(5)
+                .append(offsetMinutes < 0 ? '-' : '+')
+                .append((char) ('0' + hours / 10))
+                .append((char) ('0' + hours % 10))
+                .append((char) ('0' + minutes / 10))
+                .append((char) ('0' + minutes % 10))
+                .toString();
     }
 
     public TimeZone internalLocalTimeZone() {
@@ -3,11 +3,14 @@ package com.mopub.common.util;
 import android.graphics.Bitmap;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.widget.ImageView;
 
 
 public class ImageUtils {
 
+    @Nullable private static BoxBlur sBoxBlur;
+
     /**
      * Fast Gaussian blurring algorithm source:
      * https://github.com/patrickfav/BlurTestAndroid/blob/master/BlurBenchmark/src/main/java/at/favre/app/blurbenchmark/blur/algorithms/GaussianFastBlur.java
@@ -20,6 +23,13 @@ public class ImageUtils {
         int[] pixels = new int[w * h];
         mutableBitmap.getPixels(pixels, 0, w, 0, 0, w, h);
 
+        applyFastGaussianBlur(pixels, w, h, radius);
+
+        mutableBitmap.setPixels(pixels, 0, w, 0, 0, w, h);
+        return mutableBitmap;
+    }
+
+    static void applyFastGaussianBlur(@NonNull int[] pixels, int w, int h, int radius) {
         for (int r = radius; r >= 1; r /= 2) {
             for (int i = r; i < h - r; i++) {
                 for (int j = r; j < w - r; j++) {
@@ -39,9 +49,49 @@ public class ImageUtils {
                 }
             }
         }
+    }
 
-        mutableBitmap.setPixels(pixels, 0, w, 0, 0, w, h);
-        return mutableBitmap;
+    /**
+     * Blurs a copy of the bitmap that is scaled down so that neither side is longer than
+     * {@code maxDimension}. Blurring the smaller copy with {@link BoxBlur} is much cheaper than
+     * blurring the full bitmap, and the loss of detail doesn't show once it is blurred. The copy
+     * is scaled back up when it is drawn.
+     *
+     * @param bitmap The bitmap to blur. It is not modified.
+     * @param maxDimension The longest side of the blurred copy, in pixels
+     * @param radius The blur radius in pixels of the original bitmap
+     * @return The blurred copy, or the bitmap itself if it is empty
+     */
+    @NonNull
+    public static Bitmap applyDownsampledBlurToBitmap(@NonNull Bitmap bitmap, int maxDimension,
+            int radius) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        if (width <= 0 || height <= 0) {
+            return bitmap;
+        }
+
+        final float scale = Math.min(1f, (float) maxDimension / Math.max(width, height));
+        final int scaledWidth = Math.max(1, Math.round(width * scale));
+        final int scaledHeight = Math.max(1, Math.round(height * scale));
+        final Bitmap scaledBitmap =
+                Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+        final Bitmap blurredBitmap =
+                Bitmap.createBitmap(scaledWidth, scaledHeight, Bitmap.Config.ARGB_8888);
+
+        final BoxBlur boxBlur = getBoxBlur();
+        synchronized (boxBlur) {
+            final int[] pixels = boxBlur.getPixelBuffer(scaledWidth * scaledHeight);
+            scaledBitmap.getPixels(pixels, 0, scaledWidth, 0, 0, scaledWidth, scaledHeight);
+            boxBlur.blur(pixels, scaledWidth, scaledHeight,
+                    Math.max(1, Math.round(radius * scale)));
+            blurredBitmap.setPixels(pixels, 0, scaledWidth, 0, 0, scaledWidth, scaledHeight);
+        }
+
+        if (scaledBitmap != bitmap) {
+            scaledBitmap.recycle();
+        }
+        return blurredBitmap;
     }
 
     /**
@@ -58,4 +108,12 @@ public class ImageUtils {
             imageView.setAlpha(alpha);
         }
     }
+
+    @NonNull
+    private static synchronized BoxBlur getBoxBlur() {
+        if (sBoxBlur == null) {
+            sBoxBlur = new BoxBlur();
+        }
+        return sBoxBlur;
+    }
 }
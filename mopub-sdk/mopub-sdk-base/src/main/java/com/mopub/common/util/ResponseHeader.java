@@ -25,6 +25,7 @@ public enum ResponseHeader {
     LOCATION("Location"),
     USER_AGENT("User-Agent"),
     ACCEPT_LANGUAGE("Accept-Language"),
+    CONTENT_ENCODING("Content-Encoding"),
 
     // Native Video fields
     PLAY_VISIBLE_PERCENT("X-Play-Visible-Percent"),
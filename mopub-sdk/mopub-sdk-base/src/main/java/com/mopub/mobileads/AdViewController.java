@@ -420,7 +420,7 @@ public class AdViewController {
     void trackImpression() {
         if (mAdResponse != null) {
             TrackingRequest.makeTrackingHttpRequest(mAdResponse.getImpressionTrackingUrl(),
-                    mContext, BaseEvent.Name.IMPRESSION_REQUEST);
+                    mContext, null, BaseEvent.Name.IMPRESSION_REQUEST, mAdResponse);
         }
     }
 
@@ -428,7 +428,7 @@ public class AdViewController {
         if (mAdResponse != null) {
             // Click tracker fired from Banners and Interstitials
             TrackingRequest.makeTrackingHttpRequest(mAdResponse.getClickTrackingUrl(),
-                    mContext, BaseEvent.Name.CLICK_REQUEST);
+                    mContext, null, BaseEvent.Name.CLICK_REQUEST, mAdResponse);
         }
     }
 
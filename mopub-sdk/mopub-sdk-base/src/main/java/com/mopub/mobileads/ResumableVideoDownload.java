@@ -0,0 +1,465 @@
+package com.mopub.mobileads;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.CacheService;
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.ClientMetadata.MoPubNetworkType;
+import com.mopub.common.MoPubHttpUrlConnection;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.Streams;
+import com.mopub.common.util.Strings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a video into the disk cache in HTTP Range chunks.
+ *
+ * Chunks are appended to a partial file next to the disk cache as they arrive, so a download
+ * that is cancelled, fails, pauses, or is killed with the process picks up where it left off the
+ * next time the same url is downloaded. The response validator (ETag or Last-Modified) is sent
+ * back in an If-Range header, so a partial file is only continued if the video hasn't changed.
+ * Servers that ignore the Range header get the whole response streamed into the cache as before.
+ *
+ * The download pauses before each chunk while the device is on a mobile network, and between
+ * chunks if the network is too slow to finish the rest of the video in a reasonable time.
+ *
+ * Partial files are kept outside of the disk cache, so their size is charged to the disk cache
+ * budget through {@link CacheService#setReservedDiskCacheBytes(File, long)}. A download reserves
+ * the full length of its video once it is known.
+ */
+class ResumableVideoDownload {
+    enum Result {
+        COMPLETE,
+        PAUSED,
+        FAILED
+    }
+
+    static final int DEFAULT_CHUNK_SIZE = 512 * 1024; // 512 KiB
+    /**
+     * Below this throughput a download pauses if the rest of the video is projected to take
+     * longer than {@link #MAX_PROJECTED_MILLIS}.
+     */
+    static final long MIN_BYTES_PER_SECOND = 32 * 1024;
+    static final long MAX_PROJECTED_MILLIS = 60 * 1000;
+    static final String PARTIAL_DIRECTORY_NAME = "mopub-video-partial";
+    private static final int MAX_PARTIAL_DOWNLOADS = 5;
+    private static final String PARTIAL_EXTENSION = ".part";
+    private static final String METADATA_EXTENSION = ".meta";
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final Pattern CONTENT_RANGE_PATTERN =
+            Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    @NonNull private final String mUrl;
+    private final long mMaxSize;
+    private final int mChunkSize;
+    @NonNull private final File mPartialFile;
+    @NonNull private final File mMetadataFile;
+
+    // -1 until a 206 response reports the full length
+    private long mTotalLength = -1;
+    @Nullable private String mValidator;
+
+    ResumableVideoDownload(@NonNull final File partialDirectory, @NonNull final String url,
+            final long maxSize) {
+        this(partialDirectory, url, maxSize, DEFAULT_CHUNK_SIZE);
+    }
+
+    @VisibleForTesting
+    ResumableVideoDownload(@NonNull final File partialDirectory, @NonNull final String url,
+            final long maxSize, final int chunkSize) {
+        Preconditions.checkNotNull(partialDirectory);
+        Preconditions.checkNotNull(url);
+
+        mUrl = url;
+        mMaxSize = maxSize;
+        mChunkSize = chunkSize;
+        final String key = CacheService.createValidDiskCacheKey(url);
+        mPartialFile = new File(partialDirectory, key + PARTIAL_EXTENSION);
+        mMetadataFile = new File(partialDirectory, key + METADATA_EXTENSION);
+    }
+
+    /**
+     * Returns the directory partial downloads are kept in, or null if the disk cache hasn't been
+     * initialized.
+     */
+    @Nullable
+    static File getPartialDirectory() {
+        if (CacheService.getDiskLruCache() == null) {
+            return null;
+        }
+        final File cacheDirectory = CacheService.getDiskLruCache().getDirectory();
+        return new File(cacheDirectory.getParentFile(), PARTIAL_DIRECTORY_NAME);
+    }
+
+    /**
+     * Downloads the rest of the video and moves it into the disk cache.
+     *
+     * @throws InterruptedIOException If the thread is interrupted. The chunks downloaded so far
+     *                                are kept.
+     */
+    @NonNull
+    Result download() throws IOException {
+        final File partialDirectory = mPartialFile.getParentFile();
+        if (!partialDirectory.exists() && !partialDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + partialDirectory);
+        }
+        restoreProgress();
+
+        try {
+            reserveDiskCacheBytes(getReservedLength());
+            while (true) {
+                checkInterrupted();
+
+                final long offset = mPartialFile.length();
+                if (mTotalLength >= 0 && offset >= mTotalLength) {
+                    return finish();
+                }
+
+                if (getNetworkType() == MoPubNetworkType.MOBILE) {
+                    MoPubLog.d("VideoDownloader paused on a mobile network.");
+                    return Result.PAUSED;
+                }
+
+                final long startMillis = SystemClock.elapsedRealtime();
+                final ChunkResult chunkResult = downloadChunk(offset);
+                if (chunkResult == ChunkResult.FULL_RESPONSE) {
+                    return Result.COMPLETE;
+                } else if (chunkResult == ChunkResult.FAILED) {
+                    return Result.FAILED;
+                }
+
+                final long bytesRead = mPartialFile.length() - offset;
+                if (mPartialFile.length() < mTotalLength
+                        && isTooSlow(bytesRead, SystemClock.elapsedRealtime() - startMillis)) {
+                    return Result.PAUSED;
+                }
+            }
+        } finally {
+            reserveDiskCacheBytes(mPartialFile.length());
+        }
+    }
+
+    long getDownloadedLength() {
+        return mPartialFile.length();
+    }
+
+    private enum ChunkResult {
+        PARTIAL_RESPONSE,
+        FULL_RESPONSE,
+        FAILED
+    }
+
+    @NonNull
+    private ChunkResult downloadChunk(final long offset) throws IOException {
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        try {
+            urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(mUrl);
+            urlConnection.setRequestProperty("Range",
+                    "bytes=" + offset + "-" + (offset + mChunkSize - 1));
+            if (offset > 0 && mValidator != null) {
+                urlConnection.setRequestProperty("If-Range", mValidator);
+            }
+
+            final int statusCode = urlConnection.getResponseCode();
+            if (statusCode == HttpURLConnection.HTTP_PARTIAL) {
+                inputStream = new BufferedInputStream(urlConnection.getInputStream());
+                return appendChunk(urlConnection, inputStream, offset);
+            }
+
+            if (statusCode == HTTP_RANGE_NOT_SATISFIABLE && offset > 0) {
+                if (mTotalLength < 0) {
+                    // A video of unknown length ended exactly on a chunk boundary
+                    mTotalLength = offset;
+                    saveMetadata();
+                    return ChunkResult.PARTIAL_RESPONSE;
+                }
+                // The partial file can't be continued, so start over next time
+                MoPubLog.d("VideoDownloader could not resume video at byte " + offset);
+                discardProgress();
+                return ChunkResult.FAILED;
+            }
+
+            if (statusCode < HttpURLConnection.HTTP_OK
+                    || statusCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                MoPubLog.d("VideoDownloader encountered unexpected statusCode: " + statusCode);
+                return ChunkResult.FAILED;
+            }
+
+            // The server ignored the Range header, or the video changed since the last chunk
+            discardProgress();
+            final int contentLength = urlConnection.getContentLength();
+            if (contentLength > mMaxSize) {
+                logVideoTooLarge(contentLength);
+                return ChunkResult.FAILED;
+            }
+            inputStream = new BufferedInputStream(urlConnection.getInputStream());
+            return CacheService.putToDiskCache(mUrl, inputStream)
+                    ? ChunkResult.FULL_RESPONSE
+                    : ChunkResult.FAILED;
+        } finally {
+            Streams.closeStream(inputStream);
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    @NonNull
+    private ChunkResult appendChunk(@NonNull final HttpURLConnection urlConnection,
+            @NonNull final InputStream inputStream, final long offset) throws IOException {
+        final String contentRange = urlConnection.getHeaderField("Content-Range");
+        final Matcher matcher = contentRange == null
+                ? null
+                : CONTENT_RANGE_PATTERN.matcher(contentRange.trim());
+        if (matcher == null || !matcher.matches() || Long.parseLong(matcher.group(1)) != offset) {
+            MoPubLog.d("VideoDownloader received an unexpected Content-Range: " + contentRange);
+            discardProgress();
+            return ChunkResult.FAILED;
+        }
+
+        final long chunkLength = Long.parseLong(matcher.group(2)) - offset + 1;
+        final long totalLength = "*".equals(matcher.group(3))
+                ? -1
+                : Long.parseLong(matcher.group(3));
+        if (totalLength > mMaxSize || offset + chunkLength > mMaxSize) {
+            logVideoTooLarge(Math.max(totalLength, offset + chunkLength));
+            discardProgress();
+            return ChunkResult.FAILED;
+        }
+
+        if (offset == 0) {
+            mTotalLength = totalLength;
+            mValidator = urlConnection.getHeaderField("ETag");
+            if (mValidator == null) {
+                mValidator = urlConnection.getHeaderField("Last-Modified");
+            }
+            saveMetadata();
+            reserveDiskCacheBytes(getReservedLength());
+        }
+
+        final OutputStream outputStream =
+                new BufferedOutputStream(new FileOutputStream(mPartialFile, true));
+        long written = 0;
+        try {
+            final byte[] buffer = new byte[16384];
+            int length;
+            while (written < chunkLength && (length = inputStream.read(buffer, 0,
+                    (int) Math.min(buffer.length, chunkLength - written))) != -1) {
+                outputStream.write(buffer, 0, length);
+                written += length;
+                checkInterrupted();
+            }
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+
+        if (written == 0) {
+            MoPubLog.d("VideoDownloader received an empty chunk at byte " + offset);
+            return ChunkResult.FAILED;
+        }
+
+        if (mTotalLength < 0 && written < mChunkSize) {
+            // Without a total length, a short chunk means the end of the video
+            mTotalLength = offset + written;
+            saveMetadata();
+        }
+        return ChunkResult.PARTIAL_RESPONSE;
+    }
+
+    /**
+     * Moves the finished partial file into the disk cache, rather than copying it, so the video
+     * is only written to disk once.
+     */
+    @NonNull
+    private Result finish() {
+        // Stop reserving the video first, so the cache doesn't evict entries to make room for it
+        // twice while it is moved in.
+        reserveDiskCacheBytes(0);
+        if (!CacheService.moveToDiskCache(mUrl, mPartialFile)) {
+            return Result.FAILED;
+        }
+        discardProgress();
+        return Result.COMPLETE;
+    }
+
+    private boolean isTooSlow(final long bytesRead, final long elapsedMillis) {
+        if (mTotalLength < 0 || elapsedMillis <= 0) {
+            return false;
+        }
+        final long bytesPerSecond = bytesRead * 1000 / elapsedMillis;
+        if (bytesPerSecond >= MIN_BYTES_PER_SECOND) {
+            return false;
+        }
+        final long remainingBytes = mTotalLength - mPartialFile.length();
+        final long projectedMillis = bytesPerSecond == 0
+                ? Long.MAX_VALUE
+                : remainingBytes * 1000 / bytesPerSecond;
+        if (projectedMillis > MAX_PROJECTED_MILLIS) {
+            MoPubLog.d(String.format("VideoDownloader paused on a slow network " +
+                    "(%d bytes/s, %d bytes remaining).", bytesPerSecond, remainingBytes));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the length and validator saved with the partial file. A partial file without
+     * readable metadata can't be trusted, so it is thrown away.
+     */
+    private void restoreProgress() {
+        if (!mPartialFile.exists() || !mMetadataFile.exists()) {
+            discardProgress();
+            return;
+        }
+
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(mMetadataFile);
+            final String[] lines = Strings.fromStream(inputStream).split("\n", -1);
+            mTotalLength = Long.parseLong(lines[0]);
+            mValidator = lines.length > 1 && !lines[1].isEmpty() ? lines[1] : null;
+            if (mTotalLength >= 0 && mPartialFile.length() > mTotalLength) {
+                discardProgress();
+                return;
+            }
+            // Keep the most recently used partial files when pruning
+            mPartialFile.setLastModified(System.currentTimeMillis());
+            MoPubLog.d(String.format("VideoDownloader resuming video at byte %d.",
+                    mPartialFile.length()));
+        } catch (Exception e) {
+            MoPubLog.d("VideoDownloader could not read partial download metadata.", e);
+            discardProgress();
+        } finally {
+            Streams.closeStream(inputStream);
+        }
+    }
+
+    private void saveMetadata() throws IOException {
+        final OutputStream outputStream = new FileOutputStream(mMetadataFile);
+        try {
+            outputStream.write((mTotalLength + "\n" + (mValidator == null ? "" : mValidator))
+                    .getBytes("UTF-8"));
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+    }
+
+    /**
+     * Returns the number of bytes the partial file takes up now or will once it is complete.
+     */
+    private long getReservedLength() {
+        return Math.max(mPartialFile.length(), mTotalLength);
+    }
+
+    /**
+     * Charges the partial files to the disk cache budget, counting the given number of bytes for
+     * this download's partial file.
+     */
+    private void reserveDiskCacheBytes(final long ownBytes) {
+        final File partialDirectory = mPartialFile.getParentFile();
+        CacheService.setReservedDiskCacheBytes(partialDirectory,
+                getPartialDownloadsSize(partialDirectory, mPartialFile) + ownBytes);
+    }
+
+    /**
+     * Returns the total length of the partial files in the given directory other than the given
+     * one.
+     */
+    static long getPartialDownloadsSize(@NonNull final File partialDirectory,
+            @Nullable final File excludedFile) {
+        final File[] partialFiles = partialDirectory.listFiles();
+        if (partialFiles == null) {
+            return 0;
+        }
+
+        long size = 0;
+        for (final File file : partialFiles) {
+            if (file.getName().endsWith(PARTIAL_EXTENSION) && !file.equals(excludedFile)) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private void discardProgress() {
+        mPartialFile.delete();
+        mMetadataFile.delete();
+        mTotalLength = -1;
+        mValidator = null;
+    }
+
+    private void logVideoTooLarge(final long length) {
+        MoPubLog.d(String.format(
+                "VideoDownloader encountered video larger than disk cap. " +
+                        "(%d bytes / %d maximum).",
+                length,
+                mMaxSize));
+    }
+
+    @Nullable
+    private static MoPubNetworkType getNetworkType() {
+        final ClientMetadata clientMetadata = ClientMetadata.getInstance();
+        return clientMetadata == null ? null : clientMetadata.getActiveNetworkType();
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("VideoDownloader was interrupted.");
+        }
+    }
+
+    /**
+     * Deletes all but the most recently used partial downloads so abandoned videos don't pile up
+     * outside the disk cache, and charges the rest to the disk cache budget.
+     */
+    static void prunePartialDownloads(@NonNull final File partialDirectory) {
+        final File[] partialFiles = partialDirectory.listFiles();
+        if (partialFiles == null) {
+            return;
+        }
+
+        Arrays.sort(partialFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                final long lhsModified = lhs.lastModified();
+                final long rhsModified = rhs.lastModified();
+                return lhsModified > rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        int partialCount = 0;
+        for (final File file : partialFiles) {
+            final String name = file.getName();
+            if (!name.endsWith(PARTIAL_EXTENSION)) {
+                continue;
+            }
+            partialCount++;
+            if (partialCount > MAX_PARTIAL_DOWNLOADS) {
+                file.delete();
+                new File(partialDirectory, name.substring(0,
+                        name.length() - PARTIAL_EXTENSION.length()) + METADATA_EXTENSION).delete();
+            }
+        }
+        CacheService.setReservedDiskCacheBytes(partialDirectory,
+                getPartialDownloadsSize(partialDirectory, null));
+    }
+}
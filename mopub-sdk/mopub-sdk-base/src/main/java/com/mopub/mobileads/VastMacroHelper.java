@@ -10,47 +10,57 @@ import com.mopub.common.logging.MoPubLog;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Handles macro substitution with actual data.
+ * Handles macro substitution with actual data. Each URL is parsed into a {@link VastUrlTemplate}
+ * once, and expanding it appends the literal text and macro values to a reused builder.
  */
 public class VastMacroHelper {
+    private static final int CACHEBUSTING_DIGITS = 8;
 
-    @NonNull private final List<String> mOriginalUris;
-    @NonNull private final Map<VastMacro, String> mMacroDataMap;
+    @NonNull private final VastUrlTemplate[] mTemplates;
+    @NonNull private final String[] mMacroValues;
+    @NonNull private final StringBuilder mUriBuilder;
 
     public VastMacroHelper(@NonNull final List<String> uris) {
-        Preconditions.checkNotNull(uris, "uris cannot be null");
-        mOriginalUris = uris;
-        mMacroDataMap = new HashMap<VastMacro, String>();
-        mMacroDataMap.put(VastMacro.CACHEBUSTING, getCachebustingString());
+        this(compileTemplates(uris));
+    }
+
+    private VastMacroHelper(@NonNull final VastUrlTemplate[] templates) {
+        mTemplates = templates;
+        mMacroValues = new String[VastMacro.values().length];
+        mMacroValues[VastMacro.CACHEBUSTING.ordinal()] = getCachebustingString();
+        mUriBuilder = new StringBuilder();
+    }
+
+    /**
+     * Creates a helper for the URLs of the trackers, using the templates parsed when each
+     * tracker was created.
+     */
+    @NonNull
+    public static VastMacroHelper forTrackers(@NonNull final List<? extends VastTracker> trackers) {
+        Preconditions.checkNotNull(trackers, "trackers cannot be null");
+
+        final VastUrlTemplate[] templates = new VastUrlTemplate[trackers.size()];
+        for (int i = 0; i < templates.length; i++) {
+            templates[i] = trackers.get(i).getUrlTemplate();
+        }
+        return new VastMacroHelper(templates);
     }
 
     @NonNull
     public List<String> getUris() {
-        List<String> modifiedUris = new ArrayList<String>();
+        List<String> modifiedUris = new ArrayList<String>(mTemplates.length);
 
-        for(final String originalUri : mOriginalUris) {
-            String modifiedUri = originalUri;
-            if (TextUtils.isEmpty(modifiedUri)) {
+        for (final VastUrlTemplate template : mTemplates) {
+            if (TextUtils.isEmpty(template.getUrl())) {
                 continue;
             }
-            for (final VastMacro vastMacro : VastMacro.values()) {
-                String value = mMacroDataMap.get(vastMacro);
-                if (value == null) {
-                    value = "";
-                }
-
-                modifiedUri = modifiedUri.replaceAll("\\[" + vastMacro.name() + "\\]",
-                        value);
-            }
-
-            modifiedUris.add(modifiedUri);
+            mUriBuilder.setLength(0);
+            template.expand(mUriBuilder, mMacroValues);
+            modifiedUris.add(mUriBuilder.toString());
         }
 
         return modifiedUris;
@@ -59,7 +69,7 @@ public class VastMacroHelper {
     @NonNull
     public VastMacroHelper withErrorCode(@Nullable final VastErrorCode errorCode) {
         if (errorCode != null) {
-            mMacroDataMap.put(VastMacro.ERRORCODE, errorCode.getErrorCode());
+            mMacroValues[VastMacro.ERRORCODE.ordinal()] = errorCode.getErrorCode();
         }
         return this;
     }
@@ -69,7 +79,7 @@ public class VastMacroHelper {
         if (contentPlayHeadMS != null) {
             String contentPlayHeadMSStr = formatContentPlayHead(contentPlayHeadMS);
             if (!TextUtils.isEmpty(contentPlayHeadMSStr)) {
-                mMacroDataMap.put(VastMacro.CONTENTPLAYHEAD, contentPlayHeadMSStr);
+                mMacroValues[VastMacro.CONTENTPLAYHEAD.ordinal()] = contentPlayHeadMSStr;
             }
         }
         return this;
@@ -84,22 +94,67 @@ public class VastMacroHelper {
             } catch (UnsupportedEncodingException e) {
                 MoPubLog.w("Failed to encode url", e);
             }
-            mMacroDataMap.put(VastMacro.ASSETURI, assetUri);
+            mMacroValues[VastMacro.ASSETURI.ordinal()] = assetUri;
         }
         return this;
     }
 
     @NonNull
-    private String getCachebustingString() {
-        return String.format(Locale.US, "%08d", Math.round(Math.random() * 100000000));
+    private static VastUrlTemplate[] compileTemplates(@NonNull final List<String> uris) {
+        Preconditions.checkNotNull(uris, "uris cannot be null");
+
+        final VastUrlTemplate[] templates = new VastUrlTemplate[uris.size()];
+        for (int i = 0; i < templates.length; i++) {
+            final String uri = uris.get(i);
+            templates[i] = VastUrlTemplate.compile(uri == null ? "" : uri);
+        }
+        return templates;
+    }
+
+    @NonNull
+    private static String getCachebustingString() {
+        final StringBuilder builder = new StringBuilder(CACHEBUSTING_DIGITS);
+        appendZeroPadded(builder, Math.round(Math.random() * 100000000), CACHEBUSTING_DIGITS);
+        return builder.toString();
     }
 
+    /**
+     * Formats the play head as HH:MM:SS.mmm, the same as
+     * {@code String.format("%02d:%02d:%02d.%03d", ...)} but without parsing a format string.
+     */
     @NonNull
-    private String formatContentPlayHead(int contentPlayHeadMS) {
-        return String.format("%02d:%02d:%02d.%03d",
-                TimeUnit.MILLISECONDS.toHours(contentPlayHeadMS),
-                TimeUnit.MILLISECONDS.toMinutes(contentPlayHeadMS) % TimeUnit.HOURS.toMinutes(1),
+    private static String formatContentPlayHead(final int contentPlayHeadMS) {
+        final StringBuilder builder = new StringBuilder(12);
+        appendZeroPadded(builder, TimeUnit.MILLISECONDS.toHours(contentPlayHeadMS), 2);
+        builder.append(':');
+        appendZeroPadded(builder,
+                TimeUnit.MILLISECONDS.toMinutes(contentPlayHeadMS) % TimeUnit.HOURS.toMinutes(1), 2);
+        builder.append(':');
+        appendZeroPadded(builder,
                 TimeUnit.MILLISECONDS.toSeconds(contentPlayHeadMS) % TimeUnit.MINUTES.toSeconds(1),
-                contentPlayHeadMS % 1000);
+                2);
+        builder.append('.');
+        appendZeroPadded(builder, contentPlayHeadMS % 1000, 3);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the value padded with zeros to at least the given width, like {@code %0Nd}.
+     */
+    private static void appendZeroPadded(@NonNull final StringBuilder builder, long value,
+            int width) {
+        if (value < 0) {
+            builder.append('-');
+            value = -value;
+            width--;
+        }
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < width; i++) {
+            builder.append('0');
+        }
+        builder.append(value);
     }
 }
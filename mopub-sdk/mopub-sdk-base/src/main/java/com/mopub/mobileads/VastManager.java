@@ -39,6 +39,7 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
 
     @Nullable private VastManagerListener mVastManagerListener;
     @Nullable private VastXmlManagerAggregator mVastXmlManagerAggregator;
+    @Nullable private VideoDownloaderListener mVideoDownloaderListener;
     @Nullable private String mDspCreativeId;
     private double mScreenAspectRatio;
     private int mScreenAreaDp;
@@ -80,13 +81,19 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
     }
 
     /**
-     * Stops the VAST aggregator from continuing to follow wrapper redirects.
+     * Stops the VAST aggregator from continuing to follow wrapper redirects, and stops waiting for
+     * the video to download.
      */
     public void cancel() {
         if (mVastXmlManagerAggregator != null) {
             mVastXmlManagerAggregator.cancel(true);
             mVastXmlManagerAggregator = null;
         }
+        if (mVideoDownloaderListener != null) {
+            final VideoDownloaderListener videoDownloaderListener = mVideoDownloaderListener;
+            mVideoDownloaderListener = null;
+            VideoDownloader.cancel(videoDownloaderListener);
+        }
     }
 
     @Override
@@ -115,6 +122,12 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
         final VideoDownloaderListener videoDownloaderListener = new VideoDownloaderListener() {
             @Override
             public void onComplete(boolean success) {
+                if (mVideoDownloaderListener != this) {
+                    // The download was cancelled
+                    return;
+                }
+                mVideoDownloaderListener = null;
+
                 if (success && updateDiskMediaFileUrl(vastVideoConfig)) {
                     mVastManagerListener.onVastVideoConfigurationPrepared(vastVideoConfig);
                 } else {
@@ -124,6 +137,7 @@ public class VastManager implements VastXmlManagerAggregator.VastXmlManagerAggre
             }
         };
 
+        mVideoDownloaderListener = videoDownloaderListener;
         VideoDownloader.cache(vastVideoConfig.getNetworkMediaFileUrl(), videoDownloaderListener);
     }
 
@@ -0,0 +1,108 @@
+package com.mopub.mobileads;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the VAST progress trackers that are due as a video plays. It is called on every progress
+ * tick, so it keeps a cursor into each of the sorted absolute and fractional tracker lists of
+ * the {@link VastVideoConfig} and only looks at trackers past the cursors, instead of scanning
+ * both lists from the start. Due trackers are returned in one reused list, so a tick with
+ * nothing to track allocates nothing.
+ *
+ * Trackers are returned at most once. Seeking forward returns every tracker that was skipped
+ * over, and seeking back doesn't return trackers again, since they have already been tracked.
+ */
+public class VastProgressTrackerScheduler {
+    @NonNull private final VastVideoConfig mVastVideoConfig;
+    @NonNull private final ArrayList<VastTracker> mDueTrackers = new ArrayList<VastTracker>();
+
+    /**
+     * Everything before a cursor has been tracked.
+     */
+    private int mAbsoluteCursor;
+    private int mFractionalCursor;
+
+    /**
+     * The size of each list when the cursors were last moved. Adding trackers re-sorts the
+     * lists, which invalidates the cursors.
+     */
+    private int mAbsoluteTrackerCount;
+    private int mFractionalTrackerCount;
+
+    public VastProgressTrackerScheduler(@NonNull final VastVideoConfig vastVideoConfig) {
+        Preconditions.checkNotNull(vastVideoConfig);
+
+        mVastVideoConfig = vastVideoConfig;
+    }
+
+    /**
+     * Returns the untracked progress trackers at or before the current position, in the order
+     * they trigger, and marks them as tracked. The returned list is reused by the next call.
+     *
+     * @param currentPositionMillis the current video position in milliseconds.
+     * @param videoLengthMillis the total video length.
+     */
+    @NonNull
+    public List<VastTracker> getDueTrackers(final int currentPositionMillis,
+            final int videoLengthMillis) {
+        mDueTrackers.clear();
+        if (videoLengthMillis <= 0) {
+            return mDueTrackers;
+        }
+
+        final ArrayList<VastAbsoluteProgressTracker> absoluteTrackers =
+                mVastVideoConfig.getAbsoluteTrackers();
+        final ArrayList<VastFractionalProgressTracker> fractionalTrackers =
+                mVastVideoConfig.getFractionalTrackers();
+        final int absoluteTrackerCount = absoluteTrackers.size();
+        final int fractionalTrackerCount = fractionalTrackers.size();
+        if (absoluteTrackerCount != mAbsoluteTrackerCount
+                || fractionalTrackerCount != mFractionalTrackerCount) {
+            mAbsoluteCursor = 0;
+            mFractionalCursor = 0;
+            mAbsoluteTrackerCount = absoluteTrackerCount;
+            mFractionalTrackerCount = fractionalTrackerCount;
+        }
+
+        final float progressFraction = currentPositionMillis / (float) videoLengthMillis;
+        while (true) {
+            VastAbsoluteProgressTracker absoluteTracker = null;
+            if (mAbsoluteCursor < absoluteTrackerCount) {
+                absoluteTracker = absoluteTrackers.get(mAbsoluteCursor);
+                if (absoluteTracker.getTrackingMilliseconds() > currentPositionMillis) {
+                    absoluteTracker = null;
+                }
+            }
+            VastFractionalProgressTracker fractionalTracker = null;
+            if (mFractionalCursor < fractionalTrackerCount) {
+                fractionalTracker = fractionalTrackers.get(mFractionalCursor);
+                if (fractionalTracker.trackingFraction() > progressFraction) {
+                    fractionalTracker = null;
+                }
+            }
+
+            final VastTracker dueTracker;
+            if (absoluteTracker != null && (fractionalTracker == null
+                    || absoluteTracker.getTrackingMilliseconds()
+                    <= fractionalTracker.trackingFraction() * videoLengthMillis)) {
+                dueTracker = absoluteTracker;
+                mAbsoluteCursor++;
+            } else if (fractionalTracker != null) {
+                dueTracker = fractionalTracker;
+                mFractionalCursor++;
+            } else {
+                return mDueTrackers;
+            }
+
+            if (!dueTracker.isTracked()) {
+                dueTracker.setTracked();
+                mDueTrackers.add(dueTracker);
+            }
+        }
+    }
+}
@@ -46,7 +46,7 @@ class VastResource implements Serializable {
 
     /**
      * Helper method that tries to create a {@link VastResource} by accessing all resource types on
-     * the {@link VastResourceXmlManager} in order of priority defined by the {@link Type} enum.
+     * the {@link VastXmlPullParser.Resource} in order of priority defined by the {@link Type} enum.
      *
      * @param resourceXmlManager the manager used to populate the {@link VastResource}
      * @param width              the expected width of the resource. This only affects IFrames.
@@ -55,7 +55,7 @@ class VastResource implements Serializable {
      */
     @Nullable
     static VastResource fromVastResourceXmlManager(
-            @NonNull final VastResourceXmlManager resourceXmlManager, final int width,
+            @NonNull final VastXmlPullParser.Resource resourceXmlManager, final int width,
             final int height) {
         for (Type type : Type.values()) {
             VastResource vastResource =
@@ -69,7 +69,7 @@ class VastResource implements Serializable {
 
     /**
      * Tries to create a {@link VastResource} by accessing a specific resource {@link Type} on the
-     * {@link VastResourceXmlManager}.
+     * {@link VastXmlPullParser.Resource}.
      *
      * @param resourceXmlManager the manager used to populate the {@link VastResource}
      * @param type the resource {@link Type} to try to access
@@ -79,7 +79,7 @@ class VastResource implements Serializable {
      */
     @Nullable
     static VastResource fromVastResourceXmlManager(
-            @NonNull final VastResourceXmlManager resourceXmlManager,
+            @NonNull final VastXmlPullParser.Resource resourceXmlManager,
             final @NonNull Type type, final int width, final int height) {
         Preconditions.checkNotNull(resourceXmlManager);
         Preconditions.checkNotNull(type);
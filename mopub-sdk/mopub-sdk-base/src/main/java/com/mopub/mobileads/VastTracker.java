@@ -13,12 +13,15 @@ import java.io.Serializable;
 public class VastTracker implements Serializable {
     private static final long serialVersionUID = 0L;
     @NonNull protected final String mTrackingUrl;
+    @NonNull private final VastUrlTemplate mUrlTemplate;
     private boolean mCalled;
     private boolean mIsRepeatable;
 
     public VastTracker(@NonNull String trackingUrl) {
         Preconditions.checkNotNull(trackingUrl);
         mTrackingUrl = trackingUrl;
+        // Parsed up front so firing the tracker doesn't have to search for macros
+        mUrlTemplate = VastUrlTemplate.compile(trackingUrl);
     }
 
     public VastTracker(@NonNull String trackingUrl, boolean isRepeatable) {
@@ -31,6 +34,11 @@ public class VastTracker implements Serializable {
         return mTrackingUrl;
     }
 
+    @NonNull
+    VastUrlTemplate getUrlTemplate() {
+        return mUrlTemplate;
+    }
+
     public void setTracked() {
         mCalled = true;
     }
@@ -0,0 +1,102 @@
+package com.mopub.mobileads;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tracking URL split into the literal text between macros and the {@link VastMacro} slots,
+ * so that expanding it is a single pass with no regular expressions. Text in brackets that
+ * isn't a known macro is kept as is.
+ */
+class VastUrlTemplate implements Serializable {
+    private static final long serialVersionUID = 0L;
+
+    private static final VastMacro[] MACROS = VastMacro.values();
+
+    @NonNull private final String mUrl;
+
+    /**
+     * The literal text before each macro, followed by the text after the last one, so there is
+     * always one more literal than macros.
+     */
+    @NonNull private final String[] mLiterals;
+    @NonNull private final VastMacro[] mMacros;
+
+    private VastUrlTemplate(@NonNull final String url, @NonNull final String[] literals,
+            @NonNull final VastMacro[] macros) {
+        mUrl = url;
+        mLiterals = literals;
+        mMacros = macros;
+    }
+
+    @NonNull
+    static VastUrlTemplate compile(@NonNull final String url) {
+        Preconditions.checkNotNull(url);
+
+        final List<String> literals = new ArrayList<String>();
+        final List<VastMacro> macros = new ArrayList<VastMacro>();
+        int literalStart = 0;
+        int openIndex = url.indexOf('[');
+        while (openIndex >= 0) {
+            final int closeIndex = url.indexOf(']', openIndex + 1);
+            if (closeIndex < 0) {
+                break;
+            }
+            final VastMacro macro = findMacro(url, openIndex + 1, closeIndex);
+            if (macro != null) {
+                literals.add(url.substring(literalStart, openIndex));
+                macros.add(macro);
+                literalStart = closeIndex + 1;
+                openIndex = url.indexOf('[', literalStart);
+            } else {
+                // Look for a macro starting inside these brackets, e.g. "[[ERRORCODE]"
+                openIndex = url.indexOf('[', openIndex + 1);
+            }
+        }
+        literals.add(url.substring(literalStart));
+
+        return new VastUrlTemplate(url, literals.toArray(new String[literals.size()]),
+                macros.toArray(new VastMacro[macros.size()]));
+    }
+
+    @NonNull
+    String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Appends the URL with every macro replaced by its value.
+     *
+     * @param macroValues The value of each macro, indexed by {@link VastMacro#ordinal()}. A null
+     *                    value is replaced with the empty string.
+     */
+    void expand(@NonNull final StringBuilder builder, @NonNull final String[] macroValues) {
+        builder.append(mLiterals[0]);
+        for (int i = 0; i < mMacros.length; i++) {
+            final String value = macroValues[mMacros[i].ordinal()];
+            if (value != null) {
+                builder.append(value);
+            }
+            builder.append(mLiterals[i + 1]);
+        }
+    }
+
+    @Nullable
+    private static VastMacro findMacro(@NonNull final String url, final int nameStart,
+            final int nameEnd) {
+        final int nameLength = nameEnd - nameStart;
+        for (final VastMacro macro : MACROS) {
+            final String name = macro.name();
+            if (name.length() == nameLength && url.startsWith(name, nameStart)) {
+                return macro;
+            }
+        }
+        return null;
+    }
+}
@@ -22,6 +22,16 @@ public class VastVideoBlurLastVideoFrameTask extends AsyncTask<String, Void, Boo
      */
     private static final int OFFSET_IN_MICROSECONDS = 200000;
 
+    /**
+     * The last frame is scaled down so that neither side is longer than this before blurring it.
+     */
+    private static final int MAX_BLURRED_FRAME_DIMENSION = 480;
+
+    /**
+     * The blur radius in pixels of the full size frame.
+     */
+    private static final int BLUR_RADIUS = 4;
+
     @NonNull private final MediaMetadataRetriever mMediaMetadataRetriever;
     @NonNull private final ImageView mBlurredLastVideoFrameImageView;
     private int mVideoDuration;
@@ -59,8 +69,14 @@ public class VastVideoBlurLastVideoFrameTask extends AsyncTask<String, Void, Boo
                     return false;
                 }
 
-                mBlurredLastVideoFrame = ImageUtils.applyFastGaussianBlurToBitmap(
-                        mLastVideoFrame, 4);
+                mBlurredLastVideoFrame = ImageUtils.applyDownsampledBlurToBitmap(
+                        mLastVideoFrame, MAX_BLURRED_FRAME_DIMENSION, BLUR_RADIUS);
+
+                // The full size frame is no longer needed once the smaller copy is blurred
+                if (mBlurredLastVideoFrame != mLastVideoFrame) {
+                    mLastVideoFrame.recycle();
+                }
+                mLastVideoFrame = null;
 
                 return true;
             } catch (Exception e) {
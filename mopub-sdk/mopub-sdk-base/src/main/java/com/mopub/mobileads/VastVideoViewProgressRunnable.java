@@ -6,7 +6,6 @@ import android.support.annotation.NonNull;
 import com.mopub.common.Preconditions;
 import com.mopub.network.TrackingRequest;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -16,7 +15,7 @@ import java.util.List;
 public class VastVideoViewProgressRunnable extends RepeatingHandlerRunnable {
 
     @NonNull private final VastVideoViewController mVideoViewController;
-    @NonNull private final VastVideoConfig mVastVideoConfig;
+    @NonNull private final VastProgressTrackerScheduler mTrackerScheduler;
 
     public VastVideoViewProgressRunnable(@NonNull VastVideoViewController videoViewController,
             @NonNull final VastVideoConfig vastVideoConfig,
@@ -26,7 +25,7 @@ public class VastVideoViewProgressRunnable extends RepeatingHandlerRunnable {
         Preconditions.checkNotNull(videoViewController);
         Preconditions.checkNotNull(vastVideoConfig);
         mVideoViewController = videoViewController;
-        mVastVideoConfig = vastVideoConfig;
+        mTrackerScheduler = new VastProgressTrackerScheduler(vastVideoConfig);
     }
 
     @Override
@@ -38,15 +37,10 @@ public class VastVideoViewProgressRunnable extends RepeatingHandlerRunnable {
 
         if (videoLength > 0) {
             final List<VastTracker> trackersToTrack =
-                    mVastVideoConfig.getUntriggeredTrackersBefore(currentPosition, videoLength);
+                    mTrackerScheduler.getDueTrackers(currentPosition, videoLength);
             if (!trackersToTrack.isEmpty()) {
-                final List<String> trackUrls = new ArrayList<String>();
-                for (VastTracker tracker : trackersToTrack) {
-                    trackUrls.add(tracker.getTrackingUrl());
-                    tracker.setTracked();
-                }
                 TrackingRequest.makeTrackingHttpRequest(
-                        new VastMacroHelper(trackUrls)
+                        VastMacroHelper.forTrackers(trackersToTrack)
                                 .withAssetUri(mVideoViewController.getNetworkMediaFileUrl())
                                 .withContentPlayHead(currentPosition)
                                 .getUris(),
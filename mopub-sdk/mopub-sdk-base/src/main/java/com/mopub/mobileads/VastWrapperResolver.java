@@ -0,0 +1,233 @@
+package com.mopub.mobileads;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.BackgroundExecutor;
+import com.mopub.common.MoPubHttpUrlConnection;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.Streams;
+import com.mopub.common.util.Strings;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches the VAST documents that Wrapper elements redirect to for a single
+ * {@link VastXmlManagerAggregator}.
+ *
+ * All fetches of a wrapper chain share one deadline instead of each hop getting the full
+ * connection timeouts. The VASTAdTagURIs of sibling Ad elements can be fetched concurrently
+ * ahead of time. Documents are never shared between resolvers, since every fetch of a wrapper
+ * URL is a new ad decision with its own trackers.
+ */
+public class VastWrapperResolver {
+    /**
+     * The time allowed to resolve a whole wrapper chain.
+     */
+    static final long DEFAULT_DEADLINE_MILLIS = 15 * 1000;
+    private static final int MAX_CONCURRENT_FETCHES = 3;
+
+    @Nullable private static Executor sExecutor;
+
+    private final long mDeadlineMillis;
+    @NonNull private final Map<String, FutureTask<String>> mPrefetches =
+            new HashMap<String, FutureTask<String>>();
+    // URLs already followed in this chain. A wrapper that redirects to a URL it has already
+    // visited expects a new document, so these are never served from a prefetch.
+    @NonNull private final Set<String> mFollowedUrls = new HashSet<String>();
+    @NonNull private final List<Long> mHopTimesMillis = new ArrayList<Long>();
+
+    VastWrapperResolver() {
+        this(DEFAULT_DEADLINE_MILLIS);
+    }
+
+    @VisibleForTesting
+    VastWrapperResolver(final long deadlineMillis) {
+        mDeadlineMillis = SystemClock.elapsedRealtime() + deadlineMillis;
+    }
+
+    /**
+     * Starts fetching the given redirect URLs concurrently. URLs that are already being fetched
+     * are skipped. The documents are picked up by {@link #resolve(String)}.
+     *
+     * @param urls The VASTAdTagURIs of sibling Wrapper elements, in document order
+     */
+    void prefetch(@NonNull final List<String> urls) {
+        Preconditions.checkNotNull(urls);
+
+        for (final String url : urls) {
+            if (mPrefetches.containsKey(url)) {
+                continue;
+            }
+
+            final long timeoutMillis = getRemainingMillis();
+            if (timeoutMillis <= 0) {
+                return;
+            }
+
+            final FutureTask<String> prefetch = new FutureTask<String>(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return fetch(url, timeoutMillis);
+                }
+            });
+            mPrefetches.put(url, prefetch);
+            getExecutor().execute(prefetch);
+        }
+    }
+
+    /**
+     * Returns the VAST document at the given redirect URL, from a prefetch or the network. A
+     * prefetch that failed is retried over the network if the chain's deadline allows.
+     *
+     * @throws IOException If the document can't be fetched before the chain's deadline
+     */
+    @NonNull
+    String resolve(@NonNull final String url) throws IOException {
+        Preconditions.checkNotNull(url);
+
+        final long startMillis = SystemClock.elapsedRealtime();
+        final boolean followedBefore = !mFollowedUrls.add(url);
+        final FutureTask<String> prefetch = mPrefetches.remove(url);
+
+        if (followedBefore && prefetch != null) {
+            prefetch.cancel(true);
+        }
+
+        String source = "network";
+        String document = null;
+        if (prefetch != null && !followedBefore) {
+            document = getPrefetchedDocument(prefetch);
+            if (document != null) {
+                source = "prefetch";
+            } else {
+                source = "network after failed prefetch";
+            }
+        }
+        if (document == null) {
+            final long timeoutMillis = getRemainingMillis();
+            if (timeoutMillis <= 0) {
+                throw new SocketTimeoutException("VAST wrapper chain deadline exceeded");
+            }
+            document = fetch(url, timeoutMillis);
+        }
+
+        final long hopTimeMillis = SystemClock.elapsedRealtime() - startMillis;
+        mHopTimesMillis.add(hopTimeMillis);
+        MoPubLog.d(String.format("Resolved VAST wrapper %d from %s in %d ms: %s",
+                mHopTimesMillis.size(), source, hopTimeMillis, url));
+        return document;
+    }
+
+    /**
+     * Cancels the prefetches that were not used.
+     */
+    void cancelPrefetches() {
+        for (final FutureTask<String> prefetch : mPrefetches.values()) {
+            prefetch.cancel(true);
+        }
+        mPrefetches.clear();
+    }
+
+    long getRemainingMillis() {
+        return mDeadlineMillis - SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * The time it took to resolve each hop of the wrapper chain, in the order they were resolved.
+     */
+    @NonNull
+    List<Long> getHopTimesMillis() {
+        return new ArrayList<Long>(mHopTimesMillis);
+    }
+
+    /**
+     * Waits for the prefetch until the chain's deadline.
+     *
+     * @return The document, or null if the prefetch failed
+     * @throws IOException If the deadline passed or the thread was interrupted while waiting
+     */
+    @Nullable
+    private String getPrefetchedDocument(@NonNull final FutureTask<String> prefetch)
+            throws IOException {
+        try {
+            return prefetch.get(Math.max(getRemainingMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            prefetch.cancel(true);
+            throw new SocketTimeoutException("VAST wrapper chain deadline exceeded");
+        } catch (InterruptedException e) {
+            prefetch.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resolving VAST wrapper");
+        } catch (ExecutionException e) {
+            MoPubLog.d("Prefetching VAST wrapper failed.", e.getCause());
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private static String fetch(@NonNull final String url, final long timeoutMillis)
+            throws IOException {
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+        try {
+            urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(url);
+            // Never wait longer than the rest of the chain is allowed to take
+            final int timeout = (int) Math.min(timeoutMillis, Integer.MAX_VALUE);
+            if (timeout < urlConnection.getConnectTimeout()) {
+                urlConnection.setConnectTimeout(timeout);
+            }
+            if (timeout < urlConnection.getReadTimeout()) {
+                urlConnection.setReadTimeout(timeout);
+            }
+            inputStream = new BufferedInputStream(urlConnection.getInputStream());
+
+            return Strings.fromStream(inputStream);
+        } finally {
+            Streams.closeStream(inputStream);
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    @NonNull
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = BackgroundExecutor.newLimitedExecutor(MAX_CONCURRENT_FETCHES);
+        }
+        return sExecutor;
+    }
+
+    @VisibleForTesting
+    static synchronized void setExecutorForTesting(@Nullable final Executor executor) {
+        sExecutor = executor;
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        setExecutorForTesting(null);
+    }
+}
@@ -10,20 +10,14 @@ import android.text.TextUtils;
 import android.view.Display;
 import android.view.WindowManager;
 
-import com.mopub.common.MoPubHttpUrlConnection;
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.Dips;
-import com.mopub.common.util.Streams;
-import com.mopub.common.util.Strings;
 import com.mopub.network.Networking;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -42,8 +36,6 @@ import static com.mopub.network.TrackingRequest.makeVastTrackingHttpRequest;
  */
 public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoConfig> {
 
-    private static final String MOPUB = "MoPub";
-
     public static final String ADS_BY_AD_SLOT_ID = "adsBy";
     public static final String SOCIAL_ACTIONS_AD_SLOT_ID = "socialActions";
 
@@ -88,6 +80,12 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      */
     private int mTimesFollowedVastRedirect;
 
+    /**
+     * Resolves the wrapper redirects of this aggregation. This is only accessed on the
+     * background thread.
+     */
+    @NonNull private final VastWrapperResolver mWrapperResolver;
+
     VastXmlManagerAggregator(@NonNull final VastXmlManagerAggregatorListener vastXmlManagerAggregatorListener,
             final double screenAspectRatio,
             final int screenAreaDp,
@@ -101,6 +99,7 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         mScreenAspectRatio = screenAspectRatio;
         mScreenAreaDp = screenAreaDp;
         mContext = context.getApplicationContext();
+        mWrapperResolver = new VastWrapperResolver();
     }
 
     @Override
@@ -122,6 +121,8 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         } catch (Exception e) {
             MoPubLog.d("Unable to generate VastVideoConfig.", e);
             return null;
+        } finally {
+            mWrapperResolver.cancelPrefetches();
         }
     }
 
@@ -166,9 +167,9 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         Preconditions.checkNotNull(vastXml, "vastXml cannot be null");
         Preconditions.checkNotNull(errorTrackers, "errorTrackers cannot be null");
 
-        final VastXmlManager xmlManager = new VastXmlManager();
+        final VastXmlPullParser.Document vastDocument;
         try {
-            xmlManager.parseVastXml(vastXml);
+            vastDocument = VastXmlPullParser.parse(vastXml);
         } catch (Exception e) {
             MoPubLog.d("Failed to parse VAST XML", e);
             makeVastTrackingHttpRequest(errorTrackers, VastErrorCode.XML_PARSING_ERROR, null,
@@ -176,38 +177,37 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
             return null;
         }
 
-        final List<VastAdXmlManager> vastAdXmlManagers = xmlManager.getAdXmlManagers();
+        final List<VastXmlPullParser.Ad> vastAds = vastDocument.getAds();
 
         // If there are no ads, fire the error trackers
-        if (fireErrorTrackerIfNoAds(vastAdXmlManagers, xmlManager, mContext)) {
+        if (fireErrorTrackerIfNoAds(vastAds, vastDocument, mContext)) {
             return null;
         }
 
-        for (VastAdXmlManager vastAdXmlManager : vastAdXmlManagers) {
-            if (!isValidSequenceNumber(vastAdXmlManager.getSequence())) {
+        prefetchWrapperRedirects(vastAds);
+
+        for (VastXmlPullParser.Ad vastAd : vastAds) {
+            if (!isValidSequenceNumber(vastAd.getSequence())) {
                 continue;
             }
 
             // InLine evaluation
-            final VastInLineXmlManager vastInLineXmlManager =
-                    vastAdXmlManager.getInLineXmlManager();
-            if (vastInLineXmlManager != null) {
-                final VastVideoConfig vastVideoConfig = evaluateInLineXmlManager(
-                        vastInLineXmlManager, errorTrackers);
+            final VastXmlPullParser.InLineWrapper vastInLine = vastAd.getInLine();
+            if (vastInLine != null) {
+                final VastVideoConfig vastVideoConfig = evaluateInLine(vastInLine, errorTrackers);
                 // If the vastVideoConfig is non null, it means we found a valid media file
                 if (vastVideoConfig != null) {
-                    populateMoPubCustomElements(xmlManager, vastVideoConfig);
+                    populateMoPubCustomElements(vastDocument, vastVideoConfig);
                     return vastVideoConfig;
                 }
             }
 
             // Wrapper evaluation
-            final VastWrapperXmlManager vastWrapperXmlManager
-                    = vastAdXmlManager.getWrapperXmlManager();
-            if (vastWrapperXmlManager != null) {
+            final VastXmlPullParser.InLineWrapper vastWrapper = vastAd.getWrapper();
+            if (vastWrapper != null) {
                 final List<VastTracker> wrapperErrorTrackers = new ArrayList<VastTracker>(errorTrackers);
-                wrapperErrorTrackers.addAll(vastWrapperXmlManager.getErrorTrackers());
-                final String vastRedirectXml = evaluateWrapperRedirect(vastWrapperXmlManager,
+                wrapperErrorTrackers.addAll(vastWrapper.getErrorTrackers());
+                final String vastRedirectXml = evaluateWrapperRedirect(vastWrapper,
                         wrapperErrorTrackers);
                 if (vastRedirectXml == null) {
                     continue;
@@ -226,24 +226,21 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
 
                 // If we have a vastVideoConfig it means that we found a valid media file
                 // in one of Wrapper redirects. Therefore, aggregate all trackers in the wrapper
-                vastVideoConfig.addImpressionTrackers(
-                        vastWrapperXmlManager.getImpressionTrackers());
-                final List<VastLinearXmlManager> linearXmlManagers =
-                        vastWrapperXmlManager.getLinearXmlManagers();
-                for (VastLinearXmlManager linearXmlManager : linearXmlManagers) {
-                    populateLinearTrackersAndIcon(linearXmlManager, vastVideoConfig);
+                vastVideoConfig.addImpressionTrackers(vastWrapper.getImpressionTrackers());
+                for (VastXmlPullParser.Linear linear : vastWrapper.getLinears()) {
+                    populateLinearTrackersAndIcon(linear, vastVideoConfig);
                 }
-                populateVideoViewabilityTracker(vastWrapperXmlManager, vastVideoConfig);
+                populateVideoViewabilityTracker(vastWrapper, vastVideoConfig);
 
-                final List<VastCompanionAdXmlManager> companionAdXmlManagers =
-                        vastWrapperXmlManager.getCompanionAdXmlManagers();
+                final List<VastXmlPullParser.CompanionAd> companionAds =
+                        vastWrapper.getCompanionAds();
                 // Only populate a companion ad if we don't already have one from one of the
                 // redirects
                 if (!vastVideoConfig.hasCompanionAd()) {
                     vastVideoConfig.setVastCompanionAd(
-                            getBestCompanionAd(companionAdXmlManagers,
+                            getBestCompanionAd(companionAds,
                                     CompanionOrientation.LANDSCAPE),
-                            getBestCompanionAd(companionAdXmlManagers,
+                            getBestCompanionAd(companionAds,
                                     CompanionOrientation.PORTRAIT));
                 } else {
                     // Otherwise append the companion trackers if it doesn't have resources
@@ -252,16 +249,16 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
                     final VastCompanionAdConfig portraitCompanionAd = vastVideoConfig.getVastCompanionAd(
                             Configuration.ORIENTATION_PORTRAIT);
                     if (landscapeCompanionAd != null && portraitCompanionAd != null) {
-                        for (final VastCompanionAdXmlManager companionAdXmlManager : companionAdXmlManagers) {
-                            if (!companionAdXmlManager.hasResources()) {
+                        for (final VastXmlPullParser.CompanionAd companionAd : companionAds) {
+                            if (!companionAd.hasResources()) {
                                 landscapeCompanionAd.addClickTrackers(
-                                        companionAdXmlManager.getClickTrackers());
+                                        companionAd.getClickTrackers());
                                 landscapeCompanionAd.addCreativeViewTrackers(
-                                        companionAdXmlManager.getCompanionCreativeViewTrackers());
+                                        companionAd.getCompanionCreativeViewTrackers());
                                 portraitCompanionAd.addClickTrackers(
-                                        companionAdXmlManager.getClickTrackers());
+                                        companionAd.getClickTrackers());
                                 portraitCompanionAd.addCreativeViewTrackers(
-                                        companionAdXmlManager.getCompanionCreativeViewTrackers());
+                                        companionAd.getCompanionCreativeViewTrackers());
                             }
                         }
                     }
@@ -269,10 +266,10 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
 
                 if (vastVideoConfig.getSocialActionsCompanionAds().isEmpty()) {
                     vastVideoConfig.setSocialActionsCompanionAds(
-                            getSocialActionsCompanionAds(companionAdXmlManagers));
+                            getSocialActionsCompanionAds(companionAds));
                 }
 
-                populateMoPubCustomElements(xmlManager, vastVideoConfig);
+                populateMoPubCustomElements(vastDocument, vastVideoConfig);
 
                 return vastVideoConfig;
             }
@@ -287,47 +284,44 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      * found, a {@link VastVideoConfig} is created and trackers are aggregated. If a
      * valid companion ad is found, it is also added to the configuration.
      *
-     * @param vastInLineXmlManager used to extract the media file, clickthrough link, trackers, and
-     *                         companion ad
+     * @param vastInLine used to extract the media file, clickthrough link, trackers, and
+     *                   companion ad
      * @param errorTrackers The error trackers from previous wrappers
      * @return a {@link VastVideoConfig} or null if a valid media file was not found
      */
     @Nullable
-    private VastVideoConfig evaluateInLineXmlManager(
-            @NonNull final VastInLineXmlManager vastInLineXmlManager,
+    private VastVideoConfig evaluateInLine(
+            @NonNull final VastXmlPullParser.InLineWrapper vastInLine,
             @NonNull final List<VastTracker> errorTrackers) {
-        Preconditions.checkNotNull(vastInLineXmlManager);
+        Preconditions.checkNotNull(vastInLine);
         Preconditions.checkNotNull(errorTrackers);
 
-        final List<VastLinearXmlManager> linearXmlManagers
-                = vastInLineXmlManager.getLinearXmlManagers();
-
-        for (VastLinearXmlManager linearXmlManager : linearXmlManagers) {
-            String bestMediaFileUrl = getBestMediaFileUrl(linearXmlManager.getMediaXmlManagers());
+        for (VastXmlPullParser.Linear linear : vastInLine.getLinears()) {
+            String bestMediaFileUrl = getBestMediaFileUrl(linear.getMediaFiles());
             if (bestMediaFileUrl != null) {
                 // Create vast video configuration and populate initial trackers
                 final VastVideoConfig vastVideoConfig = new VastVideoConfig();
-                vastVideoConfig.addImpressionTrackers(vastInLineXmlManager.getImpressionTrackers());
-                populateLinearTrackersAndIcon(linearXmlManager, vastVideoConfig);
+                vastVideoConfig.addImpressionTrackers(vastInLine.getImpressionTrackers());
+                populateLinearTrackersAndIcon(linear, vastVideoConfig);
 
                 // Linear nodes will only have a click through url and network media file when they
                 // are under an InLine element. They will not have these assets when they are under
                 // a Wrapper element.
-                vastVideoConfig.setClickThroughUrl(linearXmlManager.getClickThroughUrl());
+                vastVideoConfig.setClickThroughUrl(linear.getClickThroughUrl());
                 vastVideoConfig.setNetworkMediaFileUrl(bestMediaFileUrl);
 
-                final List<VastCompanionAdXmlManager> companionAdXmlManagers =
-                        vastInLineXmlManager.getCompanionAdXmlManagers();
+                final List<VastXmlPullParser.CompanionAd> companionAds =
+                        vastInLine.getCompanionAds();
                 vastVideoConfig.setVastCompanionAd(
-                        getBestCompanionAd(companionAdXmlManagers,
+                        getBestCompanionAd(companionAds,
                                 CompanionOrientation.LANDSCAPE),
-                        getBestCompanionAd(companionAdXmlManagers,
+                        getBestCompanionAd(companionAds,
                                 CompanionOrientation.PORTRAIT));
                 vastVideoConfig.setSocialActionsCompanionAds(
-                        getSocialActionsCompanionAds(companionAdXmlManagers));
-                errorTrackers.addAll(vastInLineXmlManager.getErrorTrackers());
+                        getSocialActionsCompanionAds(companionAds));
+                errorTrackers.addAll(vastInLine.getErrorTrackers());
                 vastVideoConfig.addErrorTrackers(errorTrackers);
-                populateVideoViewabilityTracker(vastInLineXmlManager, vastVideoConfig);
+                populateVideoViewabilityTracker(vastInLine, vastVideoConfig);
 
                 return vastVideoConfig;
             }
@@ -337,41 +331,31 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
     }
 
     private void populateVideoViewabilityTracker(
-            @NonNull final VastBaseInLineWrapperXmlManager vastInLineXmlManager,
+            @NonNull final VastXmlPullParser.InLineWrapper vastInLineWrapper,
             @NonNull VastVideoConfig vastVideoConfig) {
-        Preconditions.checkNotNull(vastInLineXmlManager);
+        Preconditions.checkNotNull(vastInLineWrapper);
         Preconditions.checkNotNull(vastVideoConfig);
 
         if (vastVideoConfig.getVideoViewabilityTracker() != null) {
             return;
         }
 
-        final VastExtensionParentXmlManager vastExtensionParentXmlManager =
-                vastInLineXmlManager.getVastExtensionParentXmlManager();
-        if (vastExtensionParentXmlManager != null) {
-            final List<VastExtensionXmlManager> vastExtensionXmlManagers =
-                    vastExtensionParentXmlManager.getVastExtensionXmlManagers();
-            for (VastExtensionXmlManager vastExtensionXmlManager : vastExtensionXmlManagers) {
-                if (MOPUB.equals(vastExtensionXmlManager.getType())) {
-                    vastVideoConfig.setVideoViewabilityTracker(vastExtensionXmlManager
-                            .getVideoViewabilityTracker());
-                    break;
-                }
-            }
-        }
+        // This is the tracker of the first MoPub extension
+        vastVideoConfig.setVideoViewabilityTracker(
+                vastInLineWrapper.getVideoViewabilityTracker());
     }
 
     /**
      * Retrieves the Wrapper's redirect uri and follows it to return the next VAST xml String.
      *
-     * @param vastWrapperXmlManager used to get the redirect uri
-     * @param wrapperErrorTrackers  Error trackers to hit if something goes wrong
+     * @param vastWrapper          used to get the redirect uri
+     * @param wrapperErrorTrackers Error trackers to hit if something goes wrong
      * @return the next VAST xml String or {@code null} if it could not be resolved
      */
     @Nullable
-    private String evaluateWrapperRedirect(@NonNull VastWrapperXmlManager vastWrapperXmlManager,
+    private String evaluateWrapperRedirect(@NonNull VastXmlPullParser.InLineWrapper vastWrapper,
             @NonNull List<VastTracker> wrapperErrorTrackers) {
-        final String vastAdTagUri = vastWrapperXmlManager.getVastAdTagURI();
+        final String vastAdTagUri = vastWrapper.getVastAdTagUri();
         if (vastAdTagUri == null) {
             return null;
         }
@@ -391,36 +375,36 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
     }
 
     /**
-     * This method aggregates all trackers found in the linearXmlManager and adds them to the
+     * This method aggregates all trackers found in the Linear element and adds them to the
      * {@link VastVideoConfig}. This method also populates the skip offset and icon if they
      * have not already been populated in one of the wrapper redirects.
      *
-     * @param linearXmlManager used to retrieve trackers, and assets
+     * @param linear used to retrieve trackers, and assets
      * @param vastVideoConfig modified in this method to store trackers and assets
      */
-    private void populateLinearTrackersAndIcon(@NonNull final VastLinearXmlManager linearXmlManager,
+    private void populateLinearTrackersAndIcon(@NonNull final VastXmlPullParser.Linear linear,
             @NonNull final VastVideoConfig vastVideoConfig) {
-        Preconditions.checkNotNull(linearXmlManager, "linearXmlManager cannot be null");
+        Preconditions.checkNotNull(linear, "linear cannot be null");
         Preconditions.checkNotNull(vastVideoConfig, "vastVideoConfig cannot be null");
 
-        vastVideoConfig.addAbsoluteTrackers(linearXmlManager.getAbsoluteProgressTrackers());
+        vastVideoConfig.addAbsoluteTrackers(linear.getAbsoluteProgressTrackers());
         vastVideoConfig.addFractionalTrackers(
-                linearXmlManager.getFractionalProgressTrackers());
-        vastVideoConfig.addPauseTrackers(linearXmlManager.getPauseTrackers());
-        vastVideoConfig.addResumeTrackers(linearXmlManager.getResumeTrackers());
-        vastVideoConfig.addCompleteTrackers(linearXmlManager.getVideoCompleteTrackers());
-        vastVideoConfig.addCloseTrackers(linearXmlManager.getVideoCloseTrackers());
-        vastVideoConfig.addSkipTrackers(linearXmlManager.getVideoSkipTrackers());
-        vastVideoConfig.addClickTrackers(linearXmlManager.getClickTrackers());
+                linear.getFractionalProgressTrackers());
+        vastVideoConfig.addPauseTrackers(linear.getPauseTrackers());
+        vastVideoConfig.addResumeTrackers(linear.getResumeTrackers());
+        vastVideoConfig.addCompleteTrackers(linear.getVideoCompleteTrackers());
+        vastVideoConfig.addCloseTrackers(linear.getVideoCloseTrackers());
+        vastVideoConfig.addSkipTrackers(linear.getVideoSkipTrackers());
+        vastVideoConfig.addClickTrackers(linear.getClickTrackers());
 
         // Only set the skip offset if we haven't set it already in one of the redirects
         if (vastVideoConfig.getSkipOffsetString() == null) {
-            vastVideoConfig.setSkipOffset(linearXmlManager.getSkipOffset());
+            vastVideoConfig.setSkipOffset(linear.getSkipOffset());
         }
 
         // Only set the icon if we haven't set it already in one of the redirects
         if (vastVideoConfig.getVastIconConfig() == null) {
-            vastVideoConfig.setVastIconConfig(getBestIcon(linearXmlManager.getIconXmlManagers()));
+            vastVideoConfig.setVastIconConfig(getBestIcon(linear.getIcons()));
         }
     }
 
@@ -429,28 +413,29 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      * and populates them in the {@link VastVideoConfig}. These extensions are not part
      * of the Vast 3.0 spec and are appended to the root of the xml document.
      *
-     * @param xmlManager used to retrieve the custom extensions and impression trackers
+     * @param vastDocument used to retrieve the custom extensions and impression trackers
      * @param vastVideoConfig modified in this method to store custom extensions and
      *                               impression trackers
      */
-    private void populateMoPubCustomElements(@NonNull final VastXmlManager xmlManager,
+    private void populateMoPubCustomElements(
+            @NonNull final VastXmlPullParser.Document vastDocument,
             @NonNull final VastVideoConfig vastVideoConfig) {
-        Preconditions.checkNotNull(xmlManager, "xmlManager cannot be null");
+        Preconditions.checkNotNull(vastDocument, "vastDocument cannot be null");
         Preconditions.checkNotNull(vastVideoConfig, "vastVideoConfig cannot be null");
 
-        vastVideoConfig.addImpressionTrackers(xmlManager.getMoPubImpressionTrackers());
+        vastVideoConfig.addImpressionTrackers(vastDocument.getMoPubImpressionTrackers());
 
         if (vastVideoConfig.getCustomCtaText() == null) {
-            vastVideoConfig.setCustomCtaText(xmlManager.getCustomCtaText());
+            vastVideoConfig.setCustomCtaText(vastDocument.getCustomCtaText());
         }
         if (vastVideoConfig.getCustomSkipText() == null) {
-            vastVideoConfig.setCustomSkipText(xmlManager.getCustomSkipText());
+            vastVideoConfig.setCustomSkipText(vastDocument.getCustomSkipText());
         }
         if (vastVideoConfig.getCustomCloseIconUrl() == null) {
-            vastVideoConfig.setCustomCloseIconUrl(xmlManager.getCustomCloseIconUrl());
+            vastVideoConfig.setCustomCloseIconUrl(vastDocument.getCustomCloseIconUrl());
         }
         if (!vastVideoConfig.isCustomForceOrientationSet()) {
-            vastVideoConfig.setCustomForceOrientation(xmlManager.getCustomForceOrientation());
+            vastVideoConfig.setCustomForceOrientation(vastDocument.getCustomForceOrientation());
         }
     }
 
@@ -460,21 +445,21 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
      * VAST document with only the Error element and no Ad elements. Returns whether or not the
      * error tracker was fired.
      *
-     * @param vastAdXmlManagers The List of AdXmlManagers to determine if there are any ads
-     *                          available
-     * @param xmlManager        The current VastXmlManager that's used to get the new error tracker
-     * @param context           Used to send an http request
+     * @param vastAds      The List of Ad elements to determine if there are any ads available
+     * @param vastDocument The current VAST document that's used to get the new error tracker
+     * @param context      Used to send an http request
      * @return {@code true} if the error tracker was fired, {@code false} if the error tracker was
      * not fired.
      */
     private boolean fireErrorTrackerIfNoAds(
-            @NonNull final List<VastAdXmlManager> vastAdXmlManagers,
-            @NonNull final VastXmlManager xmlManager, @NonNull Context context) {
+            @NonNull final List<VastXmlPullParser.Ad> vastAds,
+            @NonNull final VastXmlPullParser.Document vastDocument, @NonNull Context context) {
         // When there is no <Ad> tag and when there is an error tracker
-        if (vastAdXmlManagers.isEmpty() && xmlManager.getErrorTracker() != null ) {
+        final VastTracker errorTracker = vastDocument.getErrorTracker();
+        if (vastAds.isEmpty() && errorTracker != null) {
             // Only use NO_ADS_VAST_RESPONSE if we've followed one or more wrappers
             makeVastTrackingHttpRequest(
-                    Collections.singletonList(xmlManager.getErrorTracker()),
+                    Collections.singletonList(errorTracker),
                     mTimesFollowedVastRedirect > 0
                             ? VastErrorCode.NO_ADS_VAST_RESPONSE
                             : VastErrorCode.UNDEFINED_ERROR,
@@ -486,15 +471,17 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
 
     @VisibleForTesting
     @Nullable
-    String getBestMediaFileUrl(@NonNull final List<VastMediaXmlManager> managers) {
+    String getBestMediaFileUrl(@NonNull final List<VastXmlPullParser.MediaFile> managers) {
         Preconditions.checkNotNull(managers, "managers cannot be null");
-        final List<VastMediaXmlManager> mediaXmlManagers = new ArrayList<VastMediaXmlManager>(managers);
+        final List<VastXmlPullParser.MediaFile> mediaXmlManagers =
+                new ArrayList<VastXmlPullParser.MediaFile>(managers);
         double bestMediaFitness = Double.POSITIVE_INFINITY;
         String bestMediaFileUrl = null;
 
-        final Iterator<VastMediaXmlManager> xmlManagerIterator = mediaXmlManagers.iterator();
+        final Iterator<VastXmlPullParser.MediaFile> xmlManagerIterator =
+                mediaXmlManagers.iterator();
         while (xmlManagerIterator.hasNext()) {
-            final VastMediaXmlManager mediaXmlManager = xmlManagerIterator.next();
+            final VastXmlPullParser.MediaFile mediaXmlManager = xmlManagerIterator.next();
 
             final String mediaType = mediaXmlManager.getType();
             final String mediaUrl = mediaXmlManager.getMediaUrl();
@@ -522,24 +509,24 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
     @VisibleForTesting
     @Nullable
     VastCompanionAdConfig getBestCompanionAd(
-            @NonNull final List<VastCompanionAdXmlManager> managers,
+            @NonNull final List<VastXmlPullParser.CompanionAd> managers,
             @NonNull final CompanionOrientation orientation) {
         Preconditions.checkNotNull(managers, "managers cannot be null");
         Preconditions.checkNotNull(orientation, "orientation cannot be null");
 
-        final List<VastCompanionAdXmlManager> companionXmlManagers =
-                new ArrayList<VastCompanionAdXmlManager>(managers);
+        final List<VastXmlPullParser.CompanionAd> companionXmlManagers =
+                new ArrayList<VastXmlPullParser.CompanionAd>(managers);
         double bestCompanionFitness = Double.POSITIVE_INFINITY;
-        VastCompanionAdXmlManager bestCompanionXmlManager = null;
+        VastXmlPullParser.CompanionAd bestCompanionXmlManager = null;
         VastResource bestVastResource = null;
         Point bestVastScaledDimensions = null;
 
         // Look for the best companion ad in order of prioritized resource types
         for (VastResource.Type type : VastResource.Type.values()) {
-            final Iterator<VastCompanionAdXmlManager> xmlManagerIterator =
+            final Iterator<VastXmlPullParser.CompanionAd> xmlManagerIterator =
                     companionXmlManagers.iterator();
             while (xmlManagerIterator.hasNext()) {
-                final VastCompanionAdXmlManager companionXmlManager = xmlManagerIterator.next();
+                final VastXmlPullParser.CompanionAd companionXmlManager = xmlManagerIterator.next();
 
                 final Integer width = companionXmlManager.getWidth();
                 final Integer height = companionXmlManager.getHeight();
@@ -590,13 +577,13 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
     @VisibleForTesting
     @NonNull
     Map<String, VastCompanionAdConfig> getSocialActionsCompanionAds(
-            @NonNull final List<VastCompanionAdXmlManager> managers) {
+            @NonNull final List<VastXmlPullParser.CompanionAd> managers) {
         Preconditions.checkNotNull(managers, "managers cannot be null");
 
         final Map<String, VastCompanionAdConfig> socialActionsCompanionAds =
                 new HashMap<String, VastCompanionAdConfig>();
 
-        for (VastCompanionAdXmlManager companionXmlManager : managers) {
+        for (VastXmlPullParser.CompanionAd companionXmlManager : managers) {
             final Integer width = companionXmlManager.getWidth();
             final Integer height = companionXmlManager.getHeight();
             if (width == null || height == null) {
@@ -712,15 +699,16 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
 
     @VisibleForTesting
     @Nullable
-    VastIconConfig getBestIcon(@NonNull final List<VastIconXmlManager> managers) {
+    VastIconConfig getBestIcon(@NonNull final List<VastXmlPullParser.Icon> managers) {
         Preconditions.checkNotNull(managers, "managers cannot be null");
-        final List<VastIconXmlManager> iconXmlManagers = new ArrayList<VastIconXmlManager>(managers);
+        final List<VastXmlPullParser.Icon> iconXmlManagers =
+                new ArrayList<VastXmlPullParser.Icon>(managers);
 
         // Look for the best icon in order of prioritized resource types
         for (VastResource.Type type : VastResource.Type.values()) {
-            final Iterator<VastIconXmlManager> xmlManagerIterator = iconXmlManagers.iterator();
+            final Iterator<VastXmlPullParser.Icon> xmlManagerIterator = iconXmlManagers.iterator();
             while (xmlManagerIterator.hasNext()) {
-                final VastIconXmlManager iconXmlManager = xmlManagerIterator.next();
+                final VastXmlPullParser.Icon iconXmlManager = xmlManagerIterator.next();
 
                 final Integer width = iconXmlManager.getWidth();
                 final Integer height = iconXmlManager.getHeight();
@@ -795,31 +783,52 @@ public class VastXmlManagerAggregator extends AsyncTask<String, Void, VastVideoC
         }
     }
 
+    /**
+     * Starts fetching the redirects of sibling Wrapper elements concurrently, so that falling
+     * back to the next Ad doesn't cost another round trip. A single Wrapper is resolved on the
+     * background thread when it is reached.
+     *
+     * @param vastAds The Ad elements of the current document
+     */
+    private void prefetchWrapperRedirects(@NonNull final List<VastXmlPullParser.Ad> vastAds) {
+        final List<String> vastAdTagUris = new ArrayList<String>();
+        for (final VastXmlPullParser.Ad vastAd : vastAds) {
+            final VastXmlPullParser.InLineWrapper vastWrapper = vastAd.getWrapper();
+            if (vastWrapper == null || vastWrapper.getVastAdTagUri() == null
+                    || !isValidSequenceNumber(vastAd.getSequence())) {
+                continue;
+            }
+            // Don't fetch redirects that can't be followed anyway
+            if (mTimesFollowedVastRedirect + vastAdTagUris.size()
+                    >= MAX_TIMES_TO_FOLLOW_VAST_REDIRECT) {
+                break;
+            }
+            vastAdTagUris.add(vastWrapper.getVastAdTagUri());
+        }
+
+        if (vastAdTagUris.size() > 1) {
+            mWrapperResolver.prefetch(vastAdTagUris);
+        }
+    }
+
     @Nullable
     private String followVastRedirect(@NonNull final String redirectUrl) throws IOException {
         Preconditions.checkNotNull(redirectUrl);
 
         if (mTimesFollowedVastRedirect < MAX_TIMES_TO_FOLLOW_VAST_REDIRECT) {
             mTimesFollowedVastRedirect++;
-
-            HttpURLConnection urlConnection = null;
-            InputStream inputStream = null;
-            try {
-                urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(redirectUrl);
-                inputStream = new BufferedInputStream(urlConnection.getInputStream());
-
-                return Strings.fromStream(inputStream);
-            } finally {
-                Streams.closeStream(inputStream);
-                if (urlConnection != null) {
-                    urlConnection.disconnect();
-                }
-            }
+            return mWrapperResolver.resolve(redirectUrl);
         }
 
         return null;
     }
 
+    @VisibleForTesting
+    @NonNull
+    List<Long> getWrapperHopTimesMillis() {
+        return mWrapperResolver.getHopTimesMillis();
+    }
+
     @VisibleForTesting
     @Deprecated
     void setTimesFollowedVastRedirect(final int timesFollowedVastRedirect) {
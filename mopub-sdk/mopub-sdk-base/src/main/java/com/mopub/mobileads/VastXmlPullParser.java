@@ -0,0 +1,1317 @@
+package com.mopub.mobileads;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Xml;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DeviceUtils.ForceOrientation;
+import com.mopub.common.util.Strings;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses VAST XML in a single pass with an {@link XmlPullParser}. Only the elements and
+ * attributes that are used to build a {@link VastVideoConfig} are kept; everything else is
+ * skipped as it streams by.
+ *
+ * The result is what {@link VastXmlManagerAggregator} uses to pick the media file, companion ads
+ * and icons of each ad. Currently using the VAST 3.0 spec found here:
+ * https://www.iab.net/media/file/VASTv3.0.pdf.
+ */
+class VastXmlPullParser {
+    // The ad server may send MoPub impression trackers as siblings of <VAST>, so the document is
+    // read as the children of a synthetic root element.
+    private static final String ROOT_TAG = "MPMoVideoXMLDocRoot";
+
+    // Element names
+    private static final String AD = "Ad";
+    private static final String INLINE = "InLine";
+    private static final String WRAPPER = "Wrapper";
+    private static final String ERROR = "Error";
+    private static final String IMPRESSION = "Impression";
+    private static final String VAST_AD_TAG_URI = "VASTAdTagURI";
+    private static final String CREATIVES = "Creatives";
+    private static final String CREATIVE = "Creative";
+    private static final String LINEAR = "Linear";
+    private static final String COMPANION_ADS = "CompanionAds";
+    private static final String COMPANION = "Companion";
+    private static final String EXTENSIONS = "Extensions";
+    private static final String EXTENSION = "Extension";
+    private static final String TRACKING_EVENTS = "TrackingEvents";
+    private static final String TRACKING = "Tracking";
+    private static final String VIDEO_CLICKS = "VideoClicks";
+    private static final String CLICK_THROUGH = "ClickThrough";
+    private static final String CLICK_TRACKING = "ClickTracking";
+    private static final String MEDIA_FILES = "MediaFiles";
+    private static final String MEDIA_FILE = "MediaFile";
+    private static final String ICONS = "Icons";
+    private static final String ICON = "Icon";
+    private static final String ICON_CLICKS = "IconClicks";
+    private static final String ICON_CLICK_TRACKING = "IconClickTracking";
+    private static final String ICON_CLICK_THROUGH = "IconClickThrough";
+    private static final String ICON_VIEW_TRACKING = "IconViewTracking";
+    private static final String COMPANION_CLICK_THROUGH = "CompanionClickThrough";
+    private static final String COMPANION_CLICK_TRACKING = "CompanionClickTracking";
+    private static final String STATIC_RESOURCE = "StaticResource";
+    private static final String IFRAME_RESOURCE = "IFrameResource";
+    private static final String HTML_RESOURCE = "HTMLResource";
+    private static final String VIDEO_VIEWABILITY_TRACKER = "MoPubViewabilityTracker";
+
+    // Custom element names for VAST 3.0 extensions. These may appear anywhere in the document.
+    private static final String MP_IMPRESSION_TRACKER = "MP_TRACKING_URL";
+    private static final String CUSTOM_CTA_TEXT = "MoPubCtaText";
+    private static final String CUSTOM_SKIP_TEXT = "MoPubSkipText";
+    private static final String CUSTOM_CLOSE_ICON = "MoPubCloseIcon";
+    private static final String CUSTOM_FORCE_ORIENTATION = "MoPubForceOrientation";
+
+    // Attribute names
+    private static final String SEQUENCE = "sequence";
+    private static final String EVENT = "event";
+    private static final String OFFSET = "offset";
+    private static final String SKIP_OFFSET = "skipoffset";
+    private static final String WIDTH = "width";
+    private static final String HEIGHT = "height";
+    private static final String TYPE = "type";
+    private static final String DURATION = "duration";
+    private static final String AD_SLOT_ID = "adSlotID";
+    private static final String CREATIVE_TYPE = "creativeType";
+    private static final String VIEWABLE_PLAYTIME = "viewablePlaytime";
+    private static final String PERCENT_VIEWABLE = "percentViewable";
+
+    // Attribute values
+    private static final String CREATIVE_VIEW = "creativeView";
+    private static final String START = "start";
+    private static final String FIRST_QUARTILE = "firstQuartile";
+    private static final String MIDPOINT = "midpoint";
+    private static final String THIRD_QUARTILE = "thirdQuartile";
+    private static final String COMPLETE = "complete";
+    private static final String PAUSE = "pause";
+    private static final String RESUME = "resume";
+    private static final String CLOSE = "close";
+    private static final String CLOSE_LINEAR = "closeLinear";
+    private static final String PROGRESS = "progress";
+    private static final String SKIP = "skip";
+    private static final String MOPUB = "MoPub";
+
+    private static final int CREATIVE_VIEW_TRACKER_THRESHOLD = 0;
+    private static final int START_TRACKER_THRESHOLD = 2000;
+    private static final float FIRST_QUARTER_MARKER = 0.25f;
+    private static final float MID_POINT_MARKER = 0.50f;
+    private static final float THIRD_QUARTER_MARKER = 0.75f;
+
+    @NonNull private final XmlPullParser mParser;
+    @NonNull private final Document mDocument;
+    private boolean mInAd;
+
+    private VastXmlPullParser(@NonNull final XmlPullParser parser) {
+        mParser = parser;
+        mDocument = new Document();
+    }
+
+    /**
+     * Parses the given VAST XML.
+     *
+     * @param xmlString The XML to parse
+     * @throws XmlPullParserException If the XML is poorly formatted
+     * @throws IOException            If we can't read the document for any reason
+     */
+    @NonNull
+    static Document parse(@NonNull final String xmlString)
+            throws XmlPullParserException, IOException {
+        Preconditions.checkNotNull(xmlString, "xmlString cannot be null");
+
+        final XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setInput(new VastDocumentReader(xmlString));
+
+        final VastXmlPullParser vastXmlPullParser = new VastXmlPullParser(parser);
+        vastXmlPullParser.readDocument();
+        return vastXmlPullParser.mDocument;
+    }
+
+    private void readDocument() throws XmlPullParserException, IOException {
+        mParser.nextTag();
+        mParser.require(XmlPullParser.START_TAG, null, ROOT_TAG);
+        readOther();
+        if (mParser.next() != XmlPullParser.END_DOCUMENT) {
+            throw new XmlPullParserException("Unexpected content after the VAST document");
+        }
+    }
+
+    /**
+     * Reads an element that has no meaning at its position, looking for Ad, Error and MoPub
+     * custom elements among its descendants. Must be called on a START_TAG, and returns on the
+     * matching END_TAG.
+     */
+    private void readOther() throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (AD.equals(name) && !mInAd) {
+                readAd();
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    /**
+     * Reads a child element that the current reader doesn't use. MoPub custom elements are
+     * recorded on the document wherever they appear.
+     */
+    private void readOtherChild() throws XmlPullParserException, IOException {
+        final String name = mParser.getName();
+        if (ERROR.equals(name)) {
+            readError();
+        } else if (MP_IMPRESSION_TRACKER.equals(name)) {
+            final String tracker = readText();
+            if (tracker != null) {
+                mDocument.mMoPubImpressionTrackers.add(new VastTracker(tracker));
+            }
+        } else if (CUSTOM_CTA_TEXT.equals(name)) {
+            final String ctaText = readText();
+            if (mDocument.mCustomCtaText == null) {
+                mDocument.mCustomCtaText = ctaText;
+            }
+        } else if (CUSTOM_SKIP_TEXT.equals(name)) {
+            final String skipText = readText();
+            if (mDocument.mCustomSkipText == null) {
+                mDocument.mCustomSkipText = skipText;
+            }
+        } else if (CUSTOM_CLOSE_ICON.equals(name)) {
+            final String closeIconUrl = readText();
+            if (mDocument.mCustomCloseIconUrl == null) {
+                mDocument.mCustomCloseIconUrl = closeIconUrl;
+            }
+        } else if (CUSTOM_FORCE_ORIENTATION.equals(name)) {
+            final String forceOrientation = readText();
+            if (mDocument.mCustomForceOrientation == null) {
+                mDocument.mCustomForceOrientation = forceOrientation;
+            }
+        } else {
+            readOther();
+        }
+    }
+
+    /**
+     * Reads an Error element. The first one in the document is also the document's error tracker.
+     */
+    @Nullable
+    private String readError() throws XmlPullParserException, IOException {
+        final String errorTracker = readText();
+        if (mDocument.mErrorTracker == null) {
+            mDocument.mErrorTracker = errorTracker;
+        }
+        return errorTracker;
+    }
+
+    private void readAd() throws XmlPullParserException, IOException {
+        final Ad ad = new Ad(mParser.getAttributeValue(null, SEQUENCE));
+        mDocument.mAds.add(ad);
+        mInAd = true;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (INLINE.equals(name) && ad.mInLine == null) {
+                ad.mInLine = readInLineWrapper(false);
+            } else if (WRAPPER.equals(name) && ad.mWrapper == null) {
+                ad.mWrapper = readInLineWrapper(true);
+            } else {
+                readOtherChild();
+            }
+        }
+
+        mInAd = false;
+    }
+
+    @NonNull
+    private InLineWrapper readInLineWrapper(final boolean isWrapper)
+            throws XmlPullParserException, IOException {
+        final InLineWrapper inLineWrapper = new InLineWrapper();
+        boolean readCreatives = false;
+        boolean readExtensions = false;
+        boolean readVastAdTagUri = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (IMPRESSION.equals(name)) {
+                final String tracker = readText();
+                if (!TextUtils.isEmpty(tracker)) {
+                    inLineWrapper.mImpressionTrackers.add(new VastTracker(tracker));
+                }
+            } else if (ERROR.equals(name)) {
+                final String tracker = readError();
+                if (!TextUtils.isEmpty(tracker)) {
+                    inLineWrapper.mErrorTrackers.add(new VastTracker(tracker, true));
+                }
+            } else if (CREATIVES.equals(name) && !readCreatives) {
+                readCreatives = true;
+                readCreatives(inLineWrapper);
+            } else if (EXTENSIONS.equals(name) && !readExtensions) {
+                readExtensions = true;
+                readExtensions(inLineWrapper);
+            } else if (isWrapper && VAST_AD_TAG_URI.equals(name) && !readVastAdTagUri) {
+                readVastAdTagUri = true;
+                inLineWrapper.mVastAdTagUri = readText();
+            } else {
+                readOtherChild();
+            }
+        }
+        return inLineWrapper;
+    }
+
+    private void readCreatives(@NonNull final InLineWrapper inLineWrapper)
+            throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (CREATIVE.equals(mParser.getName())) {
+                readCreative(inLineWrapper);
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    /**
+     * Reads the first Linear and the first CompanionAds of a Creative. There can only be one
+     * Linear, CompanionAds, or NonLinearAds element per creative.
+     */
+    private void readCreative(@NonNull final InLineWrapper inLineWrapper)
+            throws XmlPullParserException, IOException {
+        boolean readLinear = false;
+        boolean readCompanionAds = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (LINEAR.equals(name) && !readLinear) {
+                readLinear = true;
+                inLineWrapper.mLinears.add(readLinear());
+            } else if (COMPANION_ADS.equals(name) && !readCompanionAds) {
+                readCompanionAds = true;
+                readCompanionAds(inLineWrapper);
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    @NonNull
+    private Linear readLinear() throws XmlPullParserException, IOException {
+        final Linear linear = new Linear(mParser.getAttributeValue(null, SKIP_OFFSET));
+        boolean readTrackingEvents = false;
+        boolean readVideoClicks = false;
+        boolean readMediaFiles = false;
+        boolean readIcons = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (TRACKING_EVENTS.equals(name) && !readTrackingEvents) {
+                readTrackingEvents = true;
+                readTrackingEvents(linear.mTrackingEvents);
+            } else if (VIDEO_CLICKS.equals(name) && !readVideoClicks) {
+                readVideoClicks = true;
+                readVideoClicks(linear);
+            } else if (MEDIA_FILES.equals(name) && !readMediaFiles) {
+                readMediaFiles = true;
+                readMediaFiles(linear);
+            } else if (ICONS.equals(name) && !readIcons) {
+                readIcons = true;
+                readIcons(linear);
+            } else {
+                readOtherChild();
+            }
+        }
+        return linear;
+    }
+
+    private void readTrackingEvents(@NonNull final List<TrackingEvent> trackingEvents)
+            throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (TRACKING.equals(mParser.getName())) {
+                final String event = mParser.getAttributeValue(null, EVENT);
+                final String offset = mParser.getAttributeValue(null, OFFSET);
+                trackingEvents.add(new TrackingEvent(event, offset, readText()));
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    private void readVideoClicks(@NonNull final Linear linear)
+            throws XmlPullParserException, IOException {
+        boolean readClickThrough = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (CLICK_THROUGH.equals(name) && !readClickThrough) {
+                readClickThrough = true;
+                linear.mClickThroughUrl = readText();
+            } else if (CLICK_TRACKING.equals(name)) {
+                final String tracker = readText();
+                if (tracker != null) {
+                    linear.mClickTrackers.add(new VastTracker(tracker));
+                }
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    private void readMediaFiles(@NonNull final Linear linear)
+            throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (MEDIA_FILE.equals(mParser.getName())) {
+                final MediaFile mediaFile = new MediaFile(
+                        getIntegerAttribute(WIDTH),
+                        getIntegerAttribute(HEIGHT),
+                        mParser.getAttributeValue(null, TYPE));
+                mediaFile.mMediaUrl = readText();
+                linear.mMediaFiles.add(mediaFile);
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    private void readIcons(@NonNull final Linear linear)
+            throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (ICON.equals(mParser.getName())) {
+                linear.mIcons.add(readIcon());
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    @NonNull
+    private Icon readIcon() throws XmlPullParserException, IOException {
+        final Icon icon = new Icon(
+                getIntegerAttribute(WIDTH),
+                getIntegerAttribute(HEIGHT),
+                getOffsetAttribute(OFFSET),
+                getOffsetAttribute(DURATION));
+        boolean readIconClicks = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (readResource(icon.mResource)) {
+                continue;
+            }
+            if (ICON_CLICKS.equals(name) && !readIconClicks) {
+                readIconClicks = true;
+                readIconClicks(icon);
+            } else if (ICON_VIEW_TRACKING.equals(name)) {
+                final String tracker = readText();
+                if (tracker != null) {
+                    icon.mViewTrackingUris.add(new VastTracker(tracker));
+                }
+            } else {
+                readOtherChild();
+            }
+        }
+        return icon;
+    }
+
+    private void readIconClicks(@NonNull final Icon icon)
+            throws XmlPullParserException, IOException {
+        boolean readClickThrough = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (ICON_CLICK_THROUGH.equals(name) && !readClickThrough) {
+                readClickThrough = true;
+                icon.mClickThroughUri = readText();
+            } else if (ICON_CLICK_TRACKING.equals(name)) {
+                final String tracker = readText();
+                if (tracker != null) {
+                    icon.mClickTrackingUris.add(new VastTracker(tracker));
+                }
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    private void readCompanionAds(@NonNull final InLineWrapper inLineWrapper)
+            throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (COMPANION.equals(mParser.getName())) {
+                inLineWrapper.mCompanionAds.add(readCompanionAd());
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    @NonNull
+    private CompanionAd readCompanionAd() throws XmlPullParserException, IOException {
+        final CompanionAd companionAd = new CompanionAd(
+                getIntegerAttribute(WIDTH),
+                getIntegerAttribute(HEIGHT),
+                mParser.getAttributeValue(null, AD_SLOT_ID));
+        boolean readClickThrough = false;
+        boolean readTrackingEvents = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            final String name = mParser.getName();
+            if (readResource(companionAd.mResource)) {
+                continue;
+            }
+            if (COMPANION_CLICK_THROUGH.equals(name) && !readClickThrough) {
+                readClickThrough = true;
+                companionAd.mClickThroughUrl = readText();
+            } else if (COMPANION_CLICK_TRACKING.equals(name)) {
+                final String tracker = readText();
+                if (!TextUtils.isEmpty(tracker)) {
+                    companionAd.mClickTrackers.add(new VastTracker(tracker));
+                }
+            } else if (TRACKING_EVENTS.equals(name) && !readTrackingEvents) {
+                readTrackingEvents = true;
+                final List<TrackingEvent> trackingEvents = new ArrayList<TrackingEvent>();
+                readTrackingEvents(trackingEvents);
+                for (final TrackingEvent trackingEvent : trackingEvents) {
+                    if (CREATIVE_VIEW.equals(trackingEvent.mEvent)) {
+                        companionAd.mCreativeViewTrackers.add(new VastTracker(trackingEvent.mUrl));
+                    }
+                }
+            } else {
+                readOtherChild();
+            }
+        }
+        return companionAd;
+    }
+
+    /**
+     * Reads the current element into the resource if it is the first resource element of its
+     * kind. Returns whether the element was consumed.
+     */
+    private boolean readResource(@NonNull final Resource resource)
+            throws XmlPullParserException, IOException {
+        final String name = mParser.getName();
+        if (STATIC_RESOURCE.equals(name) && !resource.mHasStaticResource) {
+            resource.mHasStaticResource = true;
+            final String creativeType = mParser.getAttributeValue(null, CREATIVE_TYPE);
+            resource.mStaticResourceType =
+                    creativeType != null ? creativeType.toLowerCase() : null;
+            resource.mStaticResource = readText();
+            return true;
+        } else if (IFRAME_RESOURCE.equals(name) && !resource.mHasIFrameResource) {
+            resource.mHasIFrameResource = true;
+            resource.mIFrameResource = readText();
+            return true;
+        } else if (HTML_RESOURCE.equals(name) && !resource.mHasHtmlResource) {
+            resource.mHasHtmlResource = true;
+            resource.mHtmlResource = readText();
+            return true;
+        }
+        return false;
+    }
+
+    private void readExtensions(@NonNull final InLineWrapper inLineWrapper)
+            throws XmlPullParserException, IOException {
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (EXTENSION.equals(mParser.getName())) {
+                readExtension(inLineWrapper);
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    /**
+     * Reads an Extension element. Only the viewability tracker of the first MoPub extension is
+     * used.
+     */
+    private void readExtension(@NonNull final InLineWrapper inLineWrapper)
+            throws XmlPullParserException, IOException {
+        final boolean isFirstMoPubExtension =
+                MOPUB.equals(mParser.getAttributeValue(null, TYPE))
+                        && !inLineWrapper.mHasMoPubExtension;
+        if (isFirstMoPubExtension) {
+            inLineWrapper.mHasMoPubExtension = true;
+        }
+        boolean readViewabilityTracker = false;
+
+        final int depth = mParser.getDepth();
+        while (nextChild(depth)) {
+            if (VIDEO_VIEWABILITY_TRACKER.equals(mParser.getName()) && !readViewabilityTracker) {
+                readViewabilityTracker = true;
+                final VideoViewabilityTracker tracker = readVideoViewabilityTracker();
+                if (isFirstMoPubExtension) {
+                    inLineWrapper.mVideoViewabilityTracker = tracker;
+                }
+            } else {
+                readOtherChild();
+            }
+        }
+    }
+
+    @Nullable
+    private VideoViewabilityTracker readVideoViewabilityTracker()
+            throws XmlPullParserException, IOException {
+        final Integer viewablePlaytime = parseViewablePlaytimeMS(
+                mParser.getAttributeValue(null, VIEWABLE_PLAYTIME));
+        final Integer percentViewable = parsePercentViewable(
+                mParser.getAttributeValue(null, PERCENT_VIEWABLE));
+        final String url = readText();
+        if (viewablePlaytime == null || percentViewable == null || TextUtils.isEmpty(url)) {
+            return null;
+        }
+        return new VideoViewabilityTracker(viewablePlaytime, percentViewable, url);
+    }
+
+    /**
+     * Parses the "viewablePlaytime" attribute, which is either HH:MM:SS[.mmm] or SS[.mmm], into
+     * milliseconds, or returns null if it is missing or invalid.
+     */
+    @Nullable
+    private static Integer parseViewablePlaytimeMS(@Nullable final String viewablePlaytimeStr) {
+        if (viewablePlaytimeStr == null) {
+            return null;
+        }
+
+        Integer viewablePlaytimeMS = null;
+        if (Strings.isAbsoluteTracker(viewablePlaytimeStr)) {
+            try {
+                viewablePlaytimeMS = Strings.parseAbsoluteOffset(viewablePlaytimeStr);
+            } catch (NumberFormatException e) {
+                MoPubLog.d(String.format("Invalid VAST viewablePlaytime format " +
+                        "for \"HH:MM:SS[.mmm]\": %s:", viewablePlaytimeStr));
+            }
+        } else {
+            try {
+                viewablePlaytimeMS = (int) (Float.parseFloat(viewablePlaytimeStr) * 1000);
+            } catch (NumberFormatException e) {
+                MoPubLog.d(String.format("Invalid VAST viewablePlaytime format" +
+                        " for \"SS[.mmm]\": %s:", viewablePlaytimeStr));
+            }
+        }
+
+        if (viewablePlaytimeMS == null || viewablePlaytimeMS < 0) {
+            return null;
+        }
+
+        return viewablePlaytimeMS;
+    }
+
+    /**
+     * Parses the "percentViewable" attribute, with or without a percentage sign, into an integer
+     * between 0 and 100, or returns null if it is missing or invalid.
+     */
+    @Nullable
+    private static Integer parsePercentViewable(@Nullable final String percentViewableStr) {
+        if (percentViewableStr == null) {
+            return null;
+        }
+
+        Integer percentViewable = null;
+        try {
+            percentViewable = (int) (Float.parseFloat(percentViewableStr.replace("%", "")));
+        } catch (NumberFormatException e) {
+            MoPubLog.d(String.format("Invalid VAST percentViewable format for \"d{1,3}%%\": %s:",
+                    percentViewableStr));
+        }
+
+        if (percentViewable == null || percentViewable < 0 || percentViewable > 100) {
+            return null;
+        }
+
+        return percentViewable;
+    }
+
+    /**
+     * Reads the text of the current element, which must be a START_TAG, and moves to its
+     * END_TAG. Like a DOM node value, this is only the text before the first child element,
+     * trimmed, or {@code null} if the element does not start with text.
+     */
+    @Nullable
+    private String readText() throws XmlPullParserException, IOException {
+        String text = null;
+        boolean readChild = false;
+
+        final int depth = mParser.getDepth();
+        while (true) {
+            final int eventType = mParser.next();
+            if (eventType == XmlPullParser.TEXT) {
+                if (!readChild) {
+                    text = text == null ? mParser.getText() : text + mParser.getText();
+                }
+            } else if (eventType == XmlPullParser.START_TAG) {
+                readChild = true;
+                readOtherChild();
+            } else if (eventType == XmlPullParser.END_TAG && mParser.getDepth() == depth) {
+                return text != null ? text.trim() : null;
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of VAST document");
+            }
+        }
+    }
+
+    /**
+     * Moves to the next child element of the element at the given depth. Returns {@code false}
+     * once the end of that element is reached.
+     */
+    private boolean nextChild(final int depth) throws XmlPullParserException, IOException {
+        while (true) {
+            final int eventType = mParser.next();
+            if (eventType == XmlPullParser.START_TAG) {
+                return true;
+            } else if (eventType == XmlPullParser.END_TAG && mParser.getDepth() == depth) {
+                return false;
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of VAST document");
+            }
+        }
+    }
+
+    @Nullable
+    private Integer getIntegerAttribute(@NonNull final String name) {
+        try {
+            return Integer.parseInt(mParser.getAttributeValue(null, name));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private Integer getOffsetAttribute(@NonNull final String name) {
+        final String offset = mParser.getAttributeValue(null, name);
+        try {
+            return Strings.parseAbsoluteOffset(offset);
+        } catch (NumberFormatException e) {
+            MoPubLog.d(String.format("Invalid VAST icon %s format: %s:", name, offset));
+            return null;
+        }
+    }
+
+    /**
+     * A parsed VAST document.
+     */
+    static class Document {
+        // Constants for custom extensions
+        private static final int MAX_CTA_TEXT_LENGTH = 15;
+        private static final int MAX_SKIP_TEXT_LENGTH = 8;
+
+        @NonNull private final List<Ad> mAds = new ArrayList<Ad>();
+        @NonNull private final List<VastTracker> mMoPubImpressionTrackers =
+                new ArrayList<VastTracker>();
+        @Nullable private String mErrorTracker;
+        @Nullable private String mCustomCtaText;
+        @Nullable private String mCustomSkipText;
+        @Nullable private String mCustomCloseIconUrl;
+        @Nullable private String mCustomForceOrientation;
+
+        /**
+         * The Ad elements of the document, in document order.
+         */
+        @NonNull
+        List<Ad> getAds() {
+            return mAds;
+        }
+
+        /**
+         * The first Error element of the document. Documents can have just an error element, which
+         * is usually used to indicate that no ad is available.
+         */
+        @Nullable
+        VastTracker getErrorTracker() {
+            if (TextUtils.isEmpty(mErrorTracker)) {
+                return null;
+            }
+            return new VastTracker(mErrorTracker);
+        }
+
+        @NonNull
+        List<VastTracker> getMoPubImpressionTrackers() {
+            return mMoPubImpressionTrackers;
+        }
+
+        @Nullable
+        String getCustomCtaText() {
+            if (mCustomCtaText != null && mCustomCtaText.length() <= MAX_CTA_TEXT_LENGTH) {
+                return mCustomCtaText;
+            }
+            return null;
+        }
+
+        @Nullable
+        String getCustomSkipText() {
+            if (mCustomSkipText != null && mCustomSkipText.length() <= MAX_SKIP_TEXT_LENGTH) {
+                return mCustomSkipText;
+            }
+            return null;
+        }
+
+        @Nullable
+        String getCustomCloseIconUrl() {
+            return mCustomCloseIconUrl;
+        }
+
+        @NonNull
+        ForceOrientation getCustomForceOrientation() {
+            return ForceOrientation.getForceOrientation(mCustomForceOrientation);
+        }
+    }
+
+    /**
+     * An Ad element. It should contain either one InLine or one Wrapper, but both are handled.
+     */
+    static class Ad {
+        @Nullable private final String mSequence;
+        @Nullable private InLineWrapper mInLine;
+        @Nullable private InLineWrapper mWrapper;
+
+        Ad(@Nullable final String sequence) {
+            mSequence = sequence;
+        }
+
+        @Nullable
+        String getSequence() {
+            return mSequence;
+        }
+
+        @Nullable
+        InLineWrapper getInLine() {
+            return mInLine;
+        }
+
+        @Nullable
+        InLineWrapper getWrapper() {
+            return mWrapper;
+        }
+    }
+
+    /**
+     * An InLine or Wrapper element.
+     */
+    static class InLineWrapper {
+        @NonNull private final List<VastTracker> mImpressionTrackers = new ArrayList<VastTracker>();
+        @NonNull private final List<VastTracker> mErrorTrackers = new ArrayList<VastTracker>();
+        @NonNull private final List<Linear> mLinears = new ArrayList<Linear>();
+        @NonNull private final List<CompanionAd> mCompanionAds = new ArrayList<CompanionAd>();
+        @Nullable private VideoViewabilityTracker mVideoViewabilityTracker;
+        private boolean mHasMoPubExtension;
+        @Nullable private String mVastAdTagUri;
+
+        @NonNull
+        List<VastTracker> getImpressionTrackers() {
+            return mImpressionTrackers;
+        }
+
+        @NonNull
+        List<VastTracker> getErrorTrackers() {
+            return mErrorTrackers;
+        }
+
+        @NonNull
+        List<Linear> getLinears() {
+            return mLinears;
+        }
+
+        @NonNull
+        List<CompanionAd> getCompanionAds() {
+            return mCompanionAds;
+        }
+
+        /**
+         * The viewability tracker of the first MoPub extension or {@code null}.
+         */
+        @Nullable
+        VideoViewabilityTracker getVideoViewabilityTracker() {
+            return mVideoViewabilityTracker;
+        }
+
+        /**
+         * The redirect URI to the next VAST document. Always {@code null} for an InLine.
+         */
+        @Nullable
+        String getVastAdTagUri() {
+            return mVastAdTagUri;
+        }
+    }
+
+    /**
+     * A Linear creative.
+     */
+    static class Linear {
+        @Nullable private final String mSkipOffset;
+        @NonNull private final List<TrackingEvent> mTrackingEvents = new ArrayList<TrackingEvent>();
+        @NonNull private final List<VastTracker> mClickTrackers = new ArrayList<VastTracker>();
+        @NonNull private final List<MediaFile> mMediaFiles = new ArrayList<MediaFile>();
+        @NonNull private final List<Icon> mIcons = new ArrayList<Icon>();
+        @Nullable private String mClickThroughUrl;
+
+        Linear(@Nullable final String skipOffset) {
+            mSkipOffset = skipOffset;
+        }
+
+        @NonNull
+        List<VastFractionalProgressTracker> getFractionalProgressTrackers() {
+            final List<VastFractionalProgressTracker> trackers =
+                    new ArrayList<VastFractionalProgressTracker>();
+            addFractionalTrackers(trackers, FIRST_QUARTILE, FIRST_QUARTER_MARKER);
+            addFractionalTrackers(trackers, MIDPOINT, MID_POINT_MARKER);
+            addFractionalTrackers(trackers, THIRD_QUARTILE, THIRD_QUARTER_MARKER);
+
+            for (final TrackingEvent trackingEvent : mTrackingEvents) {
+                if (!PROGRESS.equals(trackingEvent.mEvent) || trackingEvent.mOffset == null) {
+                    continue;
+                }
+                final String offset = trackingEvent.mOffset.trim();
+                if (Strings.isPercentageTracker(offset)) {
+                    try {
+                        final float fraction = Float.parseFloat(offset.replace("%", "")) / 100f;
+                        trackers.add(new VastFractionalProgressTracker(trackingEvent.mUrl,
+                                fraction));
+                    } catch (NumberFormatException e) {
+                        MoPubLog.d(String.format("Failed to parse VAST progress tracker %s",
+                                offset));
+                    }
+                }
+            }
+
+            // Sort the list so we can quickly index it in the video progress runnable.
+            Collections.sort(trackers);
+            return trackers;
+        }
+
+        @NonNull
+        List<VastAbsoluteProgressTracker> getAbsoluteProgressTrackers() {
+            final List<VastAbsoluteProgressTracker> trackers =
+                    new ArrayList<VastAbsoluteProgressTracker>();
+
+            // Start trackers are treated as absolute trackers with a 2s offset.
+            for (final String url : getTrackerUrls(START)) {
+                trackers.add(new VastAbsoluteProgressTracker(url, START_TRACKER_THRESHOLD));
+            }
+
+            for (final TrackingEvent trackingEvent : mTrackingEvents) {
+                if (!PROGRESS.equals(trackingEvent.mEvent) || trackingEvent.mOffset == null) {
+                    continue;
+                }
+                final String offset = trackingEvent.mOffset.trim();
+                if (Strings.isAbsoluteTracker(offset)) {
+                    try {
+                        final Integer milliseconds = Strings.parseAbsoluteOffset(offset);
+                        if (milliseconds != null) {
+                            trackers.add(new VastAbsoluteProgressTracker(trackingEvent.mUrl,
+                                    milliseconds));
+                        }
+                    } catch (NumberFormatException e) {
+                        MoPubLog.d(String.format("Failed to parse VAST progress tracker %s",
+                                offset));
+                    }
+                }
+            }
+
+            for (final TrackingEvent trackingEvent : mTrackingEvents) {
+                if (CREATIVE_VIEW.equals(trackingEvent.mEvent)) {
+                    trackers.add(new VastAbsoluteProgressTracker(trackingEvent.mUrl,
+                            CREATIVE_VIEW_TRACKER_THRESHOLD));
+                }
+            }
+
+            // Sort the list so we can quickly index it in the video progress runnable.
+            Collections.sort(trackers);
+            return trackers;
+        }
+
+        @NonNull
+        List<VastTracker> getVideoCompleteTrackers() {
+            return getTrackers(COMPLETE, false);
+        }
+
+        @NonNull
+        List<VastTracker> getPauseTrackers() {
+            return getTrackers(PAUSE, true);
+        }
+
+        @NonNull
+        List<VastTracker> getResumeTrackers() {
+            return getTrackers(RESUME, true);
+        }
+
+        @NonNull
+        List<VastTracker> getVideoCloseTrackers() {
+            final List<VastTracker> trackers = getTrackers(CLOSE, false);
+            trackers.addAll(getTrackers(CLOSE_LINEAR, false));
+            return trackers;
+        }
+
+        @NonNull
+        List<VastTracker> getVideoSkipTrackers() {
+            return getTrackers(SKIP, false);
+        }
+
+        @Nullable
+        String getClickThroughUrl() {
+            return mClickThroughUrl;
+        }
+
+        @NonNull
+        List<VastTracker> getClickTrackers() {
+            return mClickTrackers;
+        }
+
+        @Nullable
+        String getSkipOffset() {
+            if (mSkipOffset == null || mSkipOffset.trim().isEmpty()) {
+                return null;
+            }
+            return mSkipOffset.trim();
+        }
+
+        @NonNull
+        List<MediaFile> getMediaFiles() {
+            return mMediaFiles;
+        }
+
+        @NonNull
+        List<Icon> getIcons() {
+            return mIcons;
+        }
+
+        @NonNull
+        private List<String> getTrackerUrls(@NonNull final String event) {
+            final List<String> urls = new ArrayList<String>();
+            for (final TrackingEvent trackingEvent : mTrackingEvents) {
+                if (event.equals(trackingEvent.mEvent) && trackingEvent.mUrl != null) {
+                    urls.add(trackingEvent.mUrl);
+                }
+            }
+            return urls;
+        }
+
+        @NonNull
+        private List<VastTracker> getTrackers(@NonNull final String event,
+                final boolean isRepeatable) {
+            final List<VastTracker> trackers = new ArrayList<VastTracker>();
+            for (final String url : getTrackerUrls(event)) {
+                trackers.add(new VastTracker(url, isRepeatable));
+            }
+            return trackers;
+        }
+
+        private void addFractionalTrackers(
+                @NonNull final List<VastFractionalProgressTracker> trackers,
+                @NonNull final String event, final float fraction) {
+            for (final String url : getTrackerUrls(event)) {
+                trackers.add(new VastFractionalProgressTracker(url, fraction));
+            }
+        }
+    }
+
+    private static class TrackingEvent {
+        @Nullable final String mEvent;
+        @Nullable final String mOffset;
+        @Nullable final String mUrl;
+
+        TrackingEvent(@Nullable final String event, @Nullable final String offset,
+                @Nullable final String url) {
+            mEvent = event;
+            mOffset = offset;
+            mUrl = url;
+        }
+    }
+
+    static class MediaFile {
+        @Nullable private final Integer mWidth;
+        @Nullable private final Integer mHeight;
+        @Nullable private final String mType;
+        @Nullable private String mMediaUrl;
+
+        MediaFile(@Nullable final Integer width, @Nullable final Integer height,
+                @Nullable final String type) {
+            mWidth = width;
+            mHeight = height;
+            mType = type;
+        }
+
+        @Nullable
+        Integer getWidth() {
+            return mWidth;
+        }
+
+        @Nullable
+        Integer getHeight() {
+            return mHeight;
+        }
+
+        @Nullable
+        String getType() {
+            return mType;
+        }
+
+        @Nullable
+        String getMediaUrl() {
+            return mMediaUrl;
+        }
+    }
+
+    static class Resource {
+        @Nullable private String mStaticResource;
+        @Nullable private String mStaticResourceType;
+        @Nullable private String mIFrameResource;
+        @Nullable private String mHtmlResource;
+        private boolean mHasStaticResource;
+        private boolean mHasIFrameResource;
+        private boolean mHasHtmlResource;
+
+        @Nullable
+        String getStaticResource() {
+            return mStaticResource;
+        }
+
+        @Nullable
+        String getStaticResourceType() {
+            return mStaticResourceType;
+        }
+
+        @Nullable
+        String getIFrameResource() {
+            return mIFrameResource;
+        }
+
+        @Nullable
+        String getHTMLResource() {
+            return mHtmlResource;
+        }
+    }
+
+    static class CompanionAd {
+        @Nullable private final Integer mWidth;
+        @Nullable private final Integer mHeight;
+        @Nullable private final String mAdSlotId;
+        @NonNull private final Resource mResource = new Resource();
+        @NonNull private final List<VastTracker> mClickTrackers = new ArrayList<VastTracker>();
+        @NonNull private final List<VastTracker> mCreativeViewTrackers =
+                new ArrayList<VastTracker>();
+        @Nullable private String mClickThroughUrl;
+
+        CompanionAd(@Nullable final Integer width, @Nullable final Integer height,
+                @Nullable final String adSlotId) {
+            mWidth = width;
+            mHeight = height;
+            mAdSlotId = adSlotId;
+        }
+
+        @Nullable
+        Integer getWidth() {
+            return mWidth;
+        }
+
+        @Nullable
+        Integer getHeight() {
+            return mHeight;
+        }
+
+        @Nullable
+        String getAdSlotId() {
+            return mAdSlotId;
+        }
+
+        @NonNull
+        Resource getResourceXmlManager() {
+            return mResource;
+        }
+
+        @Nullable
+        String getClickThroughUrl() {
+            return mClickThroughUrl;
+        }
+
+        @NonNull
+        List<VastTracker> getClickTrackers() {
+            return new ArrayList<VastTracker>(mClickTrackers);
+        }
+
+        @NonNull
+        List<VastTracker> getCompanionCreativeViewTrackers() {
+            return new ArrayList<VastTracker>(mCreativeViewTrackers);
+        }
+
+        boolean hasResources() {
+            return !TextUtils.isEmpty(mResource.getStaticResource()) ||
+                    !TextUtils.isEmpty(mResource.getHTMLResource()) ||
+                    !TextUtils.isEmpty(mResource.getIFrameResource());
+        }
+    }
+
+    static class Icon {
+        @Nullable private final Integer mWidth;
+        @Nullable private final Integer mHeight;
+        @Nullable private final Integer mOffsetMS;
+        @Nullable private final Integer mDurationMS;
+        @NonNull private final Resource mResource = new Resource();
+        @NonNull private final List<VastTracker> mClickTrackingUris = new ArrayList<VastTracker>();
+        @NonNull private final List<VastTracker> mViewTrackingUris = new ArrayList<VastTracker>();
+        @Nullable private String mClickThroughUri;
+
+        Icon(@Nullable final Integer width, @Nullable final Integer height,
+                @Nullable final Integer offsetMS, @Nullable final Integer durationMS) {
+            mWidth = width;
+            mHeight = height;
+            mOffsetMS = offsetMS;
+            mDurationMS = durationMS;
+        }
+
+        @Nullable
+        Integer getWidth() {
+            return mWidth;
+        }
+
+        @Nullable
+        Integer getHeight() {
+            return mHeight;
+        }
+
+        @Nullable
+        Integer getOffsetMS() {
+            return mOffsetMS;
+        }
+
+        @Nullable
+        Integer getDurationMS() {
+            return mDurationMS;
+        }
+
+        @NonNull
+        Resource getResourceXmlManager() {
+            return mResource;
+        }
+
+        @NonNull
+        List<VastTracker> getClickTrackingUris() {
+            return new ArrayList<VastTracker>(mClickTrackingUris);
+        }
+
+        @Nullable
+        String getClickThroughUri() {
+            return mClickThroughUri;
+        }
+
+        @NonNull
+        List<VastTracker> getViewTrackingUris() {
+            return new ArrayList<VastTracker>(mViewTrackingUris);
+        }
+    }
+
+    /**
+     * Reads the VAST XML wrapped in the synthetic root element, without the XML declaration,
+     * without copying the document.
+     */
+    private static class VastDocumentReader extends Reader {
+        private static final String ROOT_TAG_OPEN = "<" + ROOT_TAG + ">";
+        private static final String ROOT_TAG_CLOSE = "</" + ROOT_TAG + ">";
+
+        @NonNull private final String mXml;
+        // The range of the XML declaration that is skipped
+        private final int mSkipStart;
+        private final int mSkipEnd;
+        // Position in ROOT_TAG_OPEN + mXml + ROOT_TAG_CLOSE
+        private int mPosition;
+
+        VastDocumentReader(@NonNull final String xml) {
+            mXml = xml;
+
+            // If the xml string has an <?xml?> tag, it can break parsing if it isn't formatted
+            // exactly right or if it's not the first line of the document, so skip the first
+            // processing instruction.
+            int skipStart = 0;
+            int skipEnd = 0;
+            int start = xml.indexOf("<?");
+            while (start >= 0) {
+                final int lineEnd = findLineEnd(xml, start);
+                final int end = xml.lastIndexOf("?>", lineEnd - 2);
+                if (end >= start + 2) {
+                    skipStart = start;
+                    skipEnd = end + 2;
+                    break;
+                }
+                start = xml.indexOf("<?", start + 1);
+            }
+            mSkipStart = skipStart;
+            mSkipEnd = skipEnd;
+        }
+
+        @Override
+        public int read(@NonNull final char[] buffer, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            final int openLength = ROOT_TAG_OPEN.length();
+            final int xmlLength = mXml.length() - (mSkipEnd - mSkipStart);
+            final int totalLength = openLength + xmlLength + ROOT_TAG_CLOSE.length();
+            if (mPosition >= totalLength) {
+                return -1;
+            }
+
+            int read = 0;
+            while (read < length && mPosition < totalLength) {
+                final int count;
+                if (mPosition < openLength) {
+                    count = Math.min(length - read, openLength - mPosition);
+                    ROOT_TAG_OPEN.getChars(mPosition, mPosition + count, buffer, offset + read);
+                } else if (mPosition < openLength + xmlLength) {
+                    int xmlPosition = mPosition - openLength;
+                    int limit = xmlLength;
+                    if (xmlPosition < mSkipStart) {
+                        limit = mSkipStart;
+                    } else {
+                        xmlPosition += mSkipEnd - mSkipStart;
+                        limit += mSkipEnd - mSkipStart;
+                    }
+                    count = Math.min(length - read, limit - xmlPosition);
+                    mXml.getChars(xmlPosition, xmlPosition + count, buffer, offset + read);
+                } else {
+                    final int closePosition = mPosition - openLength - xmlLength;
+                    count = Math.min(length - read, ROOT_TAG_CLOSE.length() - closePosition);
+                    ROOT_TAG_CLOSE.getChars(closePosition, closePosition + count, buffer,
+                            offset + read);
+                }
+                read += count;
+                mPosition += count;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private static int findLineEnd(@NonNull final String xml, final int start) {
+            for (int i = start; i < xml.length(); i++) {
+                final char c = xml.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    return i;
+                }
+            }
+            return xml.length();
+        }
+    }
+}
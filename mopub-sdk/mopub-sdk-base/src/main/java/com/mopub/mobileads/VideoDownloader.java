@@ -5,24 +5,41 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.mopub.common.CacheService;
-import com.mopub.common.MoPubHttpUrlConnection;
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.AsyncTasks;
-import com.mopub.common.util.Streams;
 
-import java.io.BufferedInputStream;
-import java.io.InputStream;
+import java.io.File;
 import java.lang.ref.WeakReference;
-import java.net.HttpURLConnection;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 public class VideoDownloader {
     private static final int MAX_VIDEO_SIZE = 25 * 1024 * 1024; // 25 MiB
+    @VisibleForTesting
+    static final int MAX_CONCURRENT_DOWNLOADS = 2;
+    /**
+     * A paused download checks whether it can resume this often, and gives up after
+     * {@link #MAX_RESUME_ATTEMPTS} checks.
+     */
+    @VisibleForTesting
+    static final long RESUME_DELAY_MILLIS = 15 * 1000;
+    @VisibleForTesting
+    static final int MAX_RESUME_ATTEMPTS = 40;
+    // Shared between all tasks so that at most MAX_CONCURRENT_DOWNLOADS videos compete for
+    // bandwidth, regardless of which executor the tasks run on.
+    private static final Semaphore sDownloadPermits =
+            new Semaphore(MAX_CONCURRENT_DOWNLOADS, true);
     private static final Deque<WeakReference<VideoDownloaderTask>> sDownloaderTasks =
             new ArrayDeque<WeakReference<VideoDownloaderTask>>();
+    // Urls of the videos being downloaded. Downloads of the same video would append to the same
+    // partial file, so a second download waits for the first one to finish.
+    private static final Set<String> sDownloadingUrls = new HashSet<String>();
 
     interface VideoDownloaderListener {
         void onComplete(boolean success);
@@ -66,6 +83,20 @@ public class VideoDownloader {
         sDownloaderTasks.removeLast();
     }
 
+    /**
+     * Cancels the download started with the given listener, if it hasn't finished yet.
+     */
+    static void cancel(@NonNull final VideoDownloaderListener listener) {
+        final Iterator<WeakReference<VideoDownloaderTask>> iterator = sDownloaderTasks.iterator();
+        while (iterator.hasNext()) {
+            final VideoDownloaderTask downloaderTask = iterator.next().get();
+            if (downloaderTask != null && downloaderTask.mListener == listener) {
+                downloaderTask.cancel(true);
+                iterator.remove();
+            }
+        }
+    }
+
     /**
      * @param weakDownloaderTask A weak reference to an in-flight VideoDownloaderTask
      * @return  <tt>false</tt> if weakDownloaderTask is null, has a null referent, or if the task has
@@ -86,14 +117,25 @@ public class VideoDownloader {
         return downloaderTask.cancel(true);
     }
 
+    /**
+     * Downloads a video into the disk cache. A paused download keeps the task running, and so
+     * keeps the ad that needs the video loading, until the download can resume.
+     */
     @VisibleForTesting
     static class VideoDownloaderTask extends AsyncTask<String, Void, Boolean> {
         @NonNull private final VideoDownloaderListener mListener;
         @NonNull private final WeakReference<VideoDownloaderTask> mWeakSelf;
+        private final long mResumeDelayMillis;
 
-        @VisibleForTesting
         VideoDownloaderTask(@NonNull final VideoDownloaderListener listener) {
+            this(listener, RESUME_DELAY_MILLIS);
+        }
+
+        @VisibleForTesting
+        VideoDownloaderTask(@NonNull final VideoDownloaderListener listener,
+                final long resumeDelayMillis) {
             mListener = listener;
+            mResumeDelayMillis = resumeDelayMillis;
             mWeakSelf = new WeakReference<VideoDownloaderTask>(this);
             sDownloaderTasks.add(mWeakSelf);
         }
@@ -106,42 +148,80 @@ public class VideoDownloader {
             }
 
             final String videoUrl = params[0];
-            HttpURLConnection urlConnection = null;
-            InputStream inputStream = null;
+            final File partialDirectory = ResumableVideoDownload.getPartialDirectory();
+            if (partialDirectory == null) {
+                MoPubLog.d("VideoDownloader task tried to cache video before the disk cache " +
+                        "was initialized.");
+                return false;
+            }
+
+            final boolean waited;
             try {
-                urlConnection = MoPubHttpUrlConnection.getHttpUrlConnection(videoUrl);
-                inputStream = new BufferedInputStream(urlConnection.getInputStream());
-
-                // Check status code range
-                int statusCode = urlConnection.getResponseCode();
-                if (statusCode < HttpURLConnection.HTTP_OK
-                        || statusCode >= HttpURLConnection.HTTP_MULT_CHOICE) {
-                    MoPubLog.d("VideoDownloader encountered unexpected statusCode: " +
-                            statusCode);
-                    return false;
+                waited = startDownloading(videoUrl);
+            } catch (InterruptedException e) {
+                MoPubLog.d("VideoDownloader task was interrupted while waiting to start.");
+                return false;
+            }
+
+            try {
+                if (waited && CacheService.containsKeyDiskCache(videoUrl)) {
+                    MoPubLog.d("VideoDownloader task found the video cached by another task.");
+                    return true;
+                }
+                return download(partialDirectory, videoUrl);
+            } finally {
+                finishDownloading(videoUrl);
+            }
+        }
+
+        private boolean download(@NonNull final File partialDirectory,
+                @NonNull final String videoUrl) {
+            for (int attempt = 0; attempt <= MAX_RESUME_ATTEMPTS; attempt++) {
+                final ResumableVideoDownload.Result result =
+                        downloadUntilPaused(partialDirectory, videoUrl);
+                if (result != ResumableVideoDownload.Result.PAUSED) {
+                    return result == ResumableVideoDownload.Result.COMPLETE;
                 }
 
-                // Check video size below maximum
-                int contentLength = urlConnection.getContentLength();
-                if (contentLength > MAX_VIDEO_SIZE) {
-                    MoPubLog.d(String.format(
-                            "VideoDownloader encountered video larger than disk cap. " +
-                                    "(%d bytes / %d maximum).",
-                            contentLength,
-                            MAX_VIDEO_SIZE));
+                // Wait without holding a permit, so other videos can download in the meantime.
+                try {
+                    Thread.sleep(mResumeDelayMillis);
+                } catch (InterruptedException e) {
+                    MoPubLog.d("VideoDownloader task was interrupted while paused.");
                     return false;
                 }
+            }
 
-                boolean diskPutResult = CacheService.putToDiskCache(videoUrl, inputStream);
-                return diskPutResult;
+            MoPubLog.d("VideoDownloader gave up on a paused download. The download will " +
+                    "resume the next time this video is cached.");
+            return false;
+        }
+
+        @NonNull
+        private ResumableVideoDownload.Result downloadUntilPaused(
+                @NonNull final File partialDirectory, @NonNull final String videoUrl) {
+            try {
+                sDownloadPermits.acquire();
+            } catch (InterruptedException e) {
+                MoPubLog.d("VideoDownloader task was interrupted while waiting to start.");
+                return ResumableVideoDownload.Result.FAILED;
+            }
+
+            try {
+                ResumableVideoDownload.prunePartialDownloads(partialDirectory);
+                final ResumableVideoDownload download =
+                        new ResumableVideoDownload(partialDirectory, videoUrl, MAX_VIDEO_SIZE);
+                final ResumableVideoDownload.Result result = download.download();
+                if (result == ResumableVideoDownload.Result.PAUSED) {
+                    MoPubLog.d(String.format("VideoDownloader paused after %d bytes.",
+                            download.getDownloadedLength()));
+                }
+                return result;
             } catch (Exception e) {
                 MoPubLog.d("VideoDownloader task threw an internal exception.", e);
-                return false;
+                return ResumableVideoDownload.Result.FAILED;
             } finally {
-                Streams.closeStream(inputStream);
-                if (urlConnection != null) {
-                    urlConnection.disconnect();
-                }
+                sDownloadPermits.release();
             }
         }
 
@@ -170,6 +250,32 @@ public class VideoDownloader {
         }
     }
 
+    /**
+     * Marks the url as downloading, first waiting for any other download of it to finish.
+     *
+     * @return Whether another download of the url had to finish first
+     */
+    @VisibleForTesting
+    static boolean startDownloading(@NonNull final String url) throws InterruptedException {
+        synchronized (sDownloadingUrls) {
+            boolean waited = false;
+            while (sDownloadingUrls.contains(url)) {
+                waited = true;
+                sDownloadingUrls.wait();
+            }
+            sDownloadingUrls.add(url);
+            return waited;
+        }
+    }
+
+    @VisibleForTesting
+    static void finishDownloading(@NonNull final String url) {
+        synchronized (sDownloadingUrls) {
+            sDownloadingUrls.remove(url);
+            sDownloadingUrls.notifyAll();
+        }
+    }
+
     @Deprecated
     @VisibleForTesting
     public static Deque<WeakReference<VideoDownloaderTask>> getDownloaderTasks() {
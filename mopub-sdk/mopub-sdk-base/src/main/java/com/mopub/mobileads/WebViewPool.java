@@ -0,0 +1,276 @@
+package com.mopub.mobileads;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.VersionCode;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps constructed WebViews ready to be handed to HTML and MRAID ads. Constructing a WebView
+ * is one of the slowest steps of showing an ad, so the pool builds them while the main thread is
+ * idle instead of while an ad is loading.
+ *
+ * A WebView is never handed out twice. Once an ad has loaded a creative into it, the WebView
+ * holds that creative's scripts, storage and listeners, and it can't be used at all after
+ * {@link BaseWebView#destroy()}. Instead, taking a WebView from the pool schedules a fresh one
+ * of the same type to be built the next time the main thread is idle.
+ *
+ * The pool holds at most {@link #MAX_IDLE_PER_TYPE} WebViews of each type, and destroys them
+ * when the app goes to the background or memory runs low.
+ *
+ * The pool must only be used on the main thread.
+ */
+public class WebViewPool {
+    public interface Factory<T extends BaseWebView> {
+        @NonNull
+        T create(@NonNull Context context);
+    }
+
+    public static final Factory<BaseWebView> BASE_WEB_VIEW_FACTORY = new Factory<BaseWebView>() {
+        @NonNull
+        @Override
+        public BaseWebView create(@NonNull final Context context) {
+            return new BaseWebView(context);
+        }
+    };
+
+    @VisibleForTesting static final int MAX_IDLE_PER_TYPE = 1;
+
+    @Nullable private static WebViewPool sInstance;
+
+    @NonNull private final Context mContext;
+    @NonNull private final Map<Class<? extends BaseWebView>, Factory<? extends BaseWebView>>
+            mFactories = new LinkedHashMap<Class<? extends BaseWebView>,
+            Factory<? extends BaseWebView>>();
+    @NonNull private final Map<Class<? extends BaseWebView>, ArrayDeque<BaseWebView>>
+            mIdleWebViews = new HashMap<Class<? extends BaseWebView>, ArrayDeque<BaseWebView>>();
+    @NonNull private final MessageQueue.IdleHandler mWarmUpIdleHandler;
+    @Nullable private MessageQueue mWarmUpQueue;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mConstructionCount;
+    private long mConstructionNanos;
+
+    @VisibleForTesting
+    WebViewPool(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        mContext = context.getApplicationContext();
+        mWarmUpIdleHandler = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                return warmUp();
+            }
+        };
+        if (VersionCode.currentApiLevel().isAtLeast(VersionCode.ICE_CREAM_SANDWICH)) {
+            registerTrimCallbacks();
+        }
+    }
+
+    @NonNull
+    public static WebViewPool getInstance(@NonNull final Context context) {
+        if (sInstance == null) {
+            sInstance = new WebViewPool(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns an unused WebView of the given type, from the pool if one is ready, or else from
+     * the factory. Either way, a replacement is built when the main thread is next idle.
+     */
+    @NonNull
+    public <T extends BaseWebView> T obtain(@NonNull final Class<T> type,
+            @NonNull final Factory<T> factory) {
+        Preconditions.checkNotNull(type);
+        Preconditions.checkNotNull(factory);
+        Preconditions.checkUiThread("WebViews must be created on the main thread");
+
+        mFactories.put(type, factory);
+
+        final T webView;
+        final ArrayDeque<BaseWebView> idleWebViews = mIdleWebViews.get(type);
+        if (idleWebViews != null && !idleWebViews.isEmpty()) {
+            mHitCount++;
+            webView = type.cast(idleWebViews.poll());
+        } else {
+            mMissCount++;
+            webView = construct(factory);
+        }
+
+        scheduleWarmUp();
+        return webView;
+    }
+
+    /**
+     * Destroys every idle WebView. The pool fills up again after the next {@link #obtain}.
+     */
+    public void clear() {
+        for (final ArrayDeque<BaseWebView> idleWebViews : mIdleWebViews.values()) {
+            for (final BaseWebView webView : idleWebViews) {
+                webView.destroy();
+            }
+            idleWebViews.clear();
+        }
+        if (mWarmUpQueue != null) {
+            mWarmUpQueue.removeIdleHandler(mWarmUpIdleHandler);
+            mWarmUpQueue = null;
+        }
+    }
+
+    @NonNull
+    public Stats getStats() {
+        return new Stats(mHitCount, mMissCount, mConstructionCount, mConstructionNanos);
+    }
+
+    @VisibleForTesting
+    int getIdleCount(@NonNull final Class<? extends BaseWebView> type) {
+        final ArrayDeque<BaseWebView> idleWebViews = mIdleWebViews.get(type);
+        return idleWebViews == null ? 0 : idleWebViews.size();
+    }
+
+    /**
+     * Builds one missing WebView. Only one is built per call so that the main thread doesn't
+     * stay busy for long if input arrives.
+     *
+     * @return true if more WebViews are missing.
+     */
+    @VisibleForTesting
+    boolean warmUp() {
+        for (final Map.Entry<Class<? extends BaseWebView>, Factory<? extends BaseWebView>> entry
+                : mFactories.entrySet()) {
+            ArrayDeque<BaseWebView> idleWebViews = mIdleWebViews.get(entry.getKey());
+            if (idleWebViews == null) {
+                idleWebViews = new ArrayDeque<BaseWebView>(MAX_IDLE_PER_TYPE);
+                mIdleWebViews.put(entry.getKey(), idleWebViews);
+            }
+            if (idleWebViews.size() < MAX_IDLE_PER_TYPE) {
+                try {
+                    idleWebViews.add(construct(entry.getValue()));
+                } catch (RuntimeException e) {
+                    // For example while the system WebView package is being updated
+                    MoPubLog.d("Unable to warm up WebView pool", e);
+                    mWarmUpQueue = null;
+                    return false;
+                }
+                return true;
+            }
+        }
+        mWarmUpQueue = null;
+        return false;
+    }
+
+    private void scheduleWarmUp() {
+        if (mWarmUpQueue == null) {
+            mWarmUpQueue = Looper.myQueue();
+            mWarmUpQueue.addIdleHandler(mWarmUpIdleHandler);
+        }
+    }
+
+    @NonNull
+    private <T extends BaseWebView> T construct(@NonNull final Factory<T> factory) {
+        final long startNanos = System.nanoTime();
+        final T webView = factory.create(mContext);
+        mConstructionNanos += System.nanoTime() - startNanos;
+        mConstructionCount++;
+        return webView;
+    }
+
+    @TargetApi(14)
+    private void registerTrimCallbacks() {
+        mContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(final int level) {
+                // Covers the app going to the background as well as low memory while visible
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                    clear();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(final Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        sInstance = null;
+    }
+
+    /**
+     * Counters of the pool since it was created.
+     */
+    public static class Stats {
+        private final long mHitCount;
+        private final long mMissCount;
+        private final long mConstructionCount;
+        private final long mConstructionNanos;
+
+        Stats(final long hitCount, final long missCount, final long constructionCount,
+                final long constructionNanos) {
+            mHitCount = hitCount;
+            mMissCount = missCount;
+            mConstructionCount = constructionCount;
+            mConstructionNanos = constructionNanos;
+        }
+
+        public long getHitCount() {
+            return mHitCount;
+        }
+
+        public long getMissCount() {
+            return mMissCount;
+        }
+
+        /**
+         * The fraction of WebViews that were ready in the pool, or 0 if none were obtained.
+         */
+        public double getHitRate() {
+            final long total = mHitCount + mMissCount;
+            return total == 0 ? 0 : (double) mHitCount / total;
+        }
+
+        /**
+         * The number of WebViews built, both when obtained and while idle.
+         */
+        public long getConstructionCount() {
+            return mConstructionCount;
+        }
+
+        /**
+         * The mean time it took to build a WebView, or 0 if none were built.
+         */
+        public double getAverageConstructionMillis() {
+            return mConstructionCount == 0
+                    ? 0 : mConstructionNanos / 1000000.0 / mConstructionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "{hits : " + mHitCount + ", misses : " + mMissCount + ", constructions : "
+                    + mConstructionCount + ", average construction ms : "
+                    + getAverageConstructionMillis() + "}";
+        }
+    }
+}
@@ -40,6 +40,7 @@ import com.mopub.common.util.DeviceUtils;
 import com.mopub.common.util.Dips;
 import com.mopub.common.util.Views;
 import com.mopub.mobileads.MraidVideoPlayerActivity;
+import com.mopub.mobileads.WebViewPool;
 import com.mopub.mobileads.util.WebViews;
 import com.mopub.mraid.MraidBridge.MraidBridgeListener;
 import com.mopub.mraid.MraidBridge.MraidWebView;
@@ -66,6 +67,15 @@ public class MraidController {
         public void useCustomCloseChanged(boolean useCustomClose);
     }
 
+    private static final WebViewPool.Factory<MraidWebView> MRAID_WEB_VIEW_FACTORY =
+            new WebViewPool.Factory<MraidWebView>() {
+                @NonNull
+                @Override
+                public MraidWebView create(@NonNull final Context context) {
+                    return new MraidWebView(context);
+                }
+            };
+
     /**
      * Holds a weak reference to the activity if the context that is passed in is an activity.
      * While this field is never null, the reference could become null. This reference starts out
@@ -332,7 +342,8 @@ public class MraidController {
     public void loadContent(@NonNull String htmlData) {
         Preconditions.checkState(mMraidWebView == null, "loadContent should only be called once");
 
-        mMraidWebView = new MraidWebView(mContext);
+        mMraidWebView = WebViewPool.getInstance(mContext).obtain(MraidWebView.class,
+                MRAID_WEB_VIEW_FACTORY);
         mMraidBridge.attachView(mMraidWebView);
         mDefaultAdContainer.addView(mMraidWebView,
                 new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
@@ -754,7 +765,8 @@ public class MraidController {
         if (isTwoPart) {
             // Of note: the two part ad will start off with its view state as LOADING, and will
             // transition to EXPANDED once the page is fully loaded
-            mTwoPartWebView = new MraidWebView(mContext);
+            mTwoPartWebView = WebViewPool.getInstance(mContext).obtain(MraidWebView.class,
+                    MRAID_WEB_VIEW_FACTORY);
             mTwoPartBridge.attachView(mTwoPartWebView);
 
             // onPageLoaded gets fired once the html is loaded into the two part webView
@@ -334,6 +334,10 @@ public class AdRequest extends Request<AdResponse> {
         Preconditions.checkNotNull(adResponse);
         Preconditions.checkNotNull(networkResponse);
 
+        if (!MoPubEvents.isSampled(adResponse.getRequestId(), BaseEvent.SamplingRate.AD_REQUEST)) {
+            return;
+        }
+
         MoPubEvents.log(
                 new Event.Builder(BaseEvent.Name.AD_REQUEST, BaseEvent.Category.REQUESTS,
                         BaseEvent.SamplingRate.AD_REQUEST.getSamplingRate())
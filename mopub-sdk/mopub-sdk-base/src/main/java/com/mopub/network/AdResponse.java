@@ -99,7 +99,7 @@ public class AdResponse implements Serializable {
         mEventDetails = builder.eventDetails;
         mCustomEventClassName = builder.customEventClassName;
         mServerExtras = builder.serverExtras;
-        mTimestamp = DateAndTime.now().getTime();
+        mTimestamp = builder.timestamp != null ? builder.timestamp : DateAndTime.now().getTime();
     }
 
     public boolean hasJson() {
@@ -277,6 +277,8 @@ public class AdResponse implements Serializable {
         private String customEventClassName;
         private Map<String, String> serverExtras = new TreeMap<String, String>();
 
+        private Long timestamp;
+
         public Builder setAdType(@Nullable final String adType) {
             this.adType = adType;
             return this;
@@ -396,6 +398,15 @@ public class AdResponse implements Serializable {
             return this;
         }
 
+        /**
+         * Overrides the creation time of the response, e.g. when restoring a persisted response.
+         * Defaults to the time {@link #build()} is called.
+         */
+        public Builder setTimestamp(@Nullable final Long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
         public AdResponse build() {
             return new AdResponse(this);
         }
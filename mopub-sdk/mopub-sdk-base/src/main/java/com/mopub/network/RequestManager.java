@@ -9,16 +9,22 @@ import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.volley.Request;
+import com.mopub.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 /**
- * This class is responsible for managing the lifecycle of a request with a backoff policy. This
- * class currently manages a single request at a time. The API allows for it to support multiple
- * simultaneous requests in the future.
+ * This class is responsible for managing the lifecycle of requests with a backoff policy. Up to
+ * a fixed number of requests are in flight at a time, and each of them retries with its own
+ * backoff policy, so a request that is backing off doesn't hold up newer ones.
  *
  * Subclasses are responsible for implementing the createRequest method that will create a new
  * instance of subclass's specific request type.
  * The subclass is also responsible for listening to success and error responses from its specific
- * request type.
+ * request type, and for reporting them with {@link #onRequestSucceeded(InFlightRequest)} and
+ * {@link #onRequestFailed(InFlightRequest, VolleyError)} on the handler's thread.
  *
  * @param <T> The type of request factory to generate new requests for each retry.
  */
@@ -27,78 +33,266 @@ public abstract class RequestManager<T extends RequestManager.RequestFactory> {
     // This interface is used to bound type T of the RequestManager
     public interface RequestFactory{}
 
-    @Nullable protected Request<?> mCurrentRequest;
-    @Nullable protected T mRequestFactory;
-    @Nullable protected BackoffPolicy mBackoffPolicy;
+    @NonNull private final List<InFlightRequest> mInFlightRequests = new ArrayList<InFlightRequest>();
+    private final int mMaxInFlightRequests;
     @NonNull protected Handler mHandler;
 
+    private long mSucceededCount;
+    private long mAbandonedCount;
+    private long mCancelledCount;
+
     public RequestManager(@NonNull Looper looper) {
+        this(looper, 1);
+    }
+
+    public RequestManager(@NonNull Looper looper, int maxInFlightRequests) {
+        Preconditions.checkArgument(maxInFlightRequests > 0);
+
         mHandler = new Handler(looper);
+        mMaxInFlightRequests = maxInFlightRequests;
     }
 
+    /**
+     * Creates the request for the next attempt of an in flight request. Its responses must be
+     * reported for that in flight request.
+     */
     @NonNull
-    abstract Request<?> createRequest();
+    abstract Request<?> createRequest(@NonNull InFlightRequest inFlightRequest);
 
     public boolean isAtCapacity() {
-        return mCurrentRequest != null;
+        return mInFlightRequests.size() >= mMaxInFlightRequests;
     }
 
     /**
-     * This method first cancels existing requests in flight and then begins the request
-     * lifecycle for the new request.
+     * Begins the request lifecycle for a new request without a tag. See
+     * {@link #makeRequest(RequestFactory, BackoffPolicy, Object)}.
+     */
+    public void makeRequest(@NonNull T requestFactory, @NonNull BackoffPolicy backoffPolicy) {
+        makeRequest(requestFactory, backoffPolicy, null);
+    }
+
+    /**
+     * This method begins the request lifecycle for a new request. If the maximum number of
+     * requests is already in flight, the oldest of them is cancelled first.
      *
      * @param requestFactory Factory that constructs a new request for each request retry from the
      *                       backoff policy.
-     * @param backoffPolicy The request to cancel.
+     * @param backoffPolicy The backoff policy of this request only.
+     * @param tag Identifies the request for {@link #hasRequest(Object)} and
+     *            {@link #cancelRequests(Object)}.
      */
-    public void makeRequest(@NonNull T requestFactory, @NonNull BackoffPolicy backoffPolicy) {
+    public void makeRequest(@NonNull T requestFactory, @NonNull BackoffPolicy backoffPolicy,
+            @Nullable Object tag) {
         Preconditions.checkNotNull(requestFactory);
         Preconditions.checkNotNull(backoffPolicy);
 
-        cancelRequest();
-        mRequestFactory = requestFactory;
-        mBackoffPolicy = backoffPolicy;
-        makeRequestInternal();
+        while (isAtCapacity()) {
+            cancel(mInFlightRequests.remove(0));
+        }
+        final InFlightRequest inFlightRequest =
+                new InFlightRequest(requestFactory, backoffPolicy, tag);
+        mInFlightRequests.add(inFlightRequest);
+        makeRequestInternal(inFlightRequest);
     }
 
     /**
-     * Cancels the request in flight.
+     * Cancels every request in flight.
      */
     public void cancelRequest() {
-        MoPubRequestQueue requestQueue = Networking.getRequestQueue();
-        if (requestQueue != null && mCurrentRequest != null) {
-            requestQueue.cancel(mCurrentRequest);
+        for (final InFlightRequest inFlightRequest : mInFlightRequests) {
+            cancel(inFlightRequest);
+        }
+        mInFlightRequests.clear();
+    }
+
+    /**
+     * Cancels the requests in flight that were made with the given tag.
+     */
+    public void cancelRequests(@NonNull Object tag) {
+        Preconditions.checkNotNull(tag);
+
+        final Iterator<InFlightRequest> iterator = mInFlightRequests.iterator();
+        while (iterator.hasNext()) {
+            final InFlightRequest inFlightRequest = iterator.next();
+            if (tag.equals(inFlightRequest.mTag)) {
+                cancel(inFlightRequest);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns true if a request made with the given tag is still in flight, including while it
+     * is waiting to be retried.
+     */
+    public boolean hasRequest(@NonNull Object tag) {
+        Preconditions.checkNotNull(tag);
+
+        for (final InFlightRequest inFlightRequest : mInFlightRequests) {
+            if (tag.equals(inFlightRequest.mTag)) {
+                return true;
+            }
         }
-        clearRequest();
+        return false;
+    }
+
+    /**
+     * Returns counters of the requests made by this manager since it was created.
+     */
+    @NonNull
+    public Stats getStats() {
+        int retryingCount = 0;
+        for (final InFlightRequest inFlightRequest : mInFlightRequests) {
+            if (inFlightRequest.mBackoffPolicy.getRetryCount() > 0) {
+                retryingCount++;
+            }
+        }
+        return new Stats(mInFlightRequests.size(), retryingCount, mSucceededCount,
+                mAbandonedCount, mCancelledCount);
     }
 
     @VisibleForTesting
-    void makeRequestInternal() {
-        mCurrentRequest = createRequest();
+    void makeRequestInternal(@NonNull InFlightRequest inFlightRequest) {
+        inFlightRequest.mCurrentRequest = createRequest(inFlightRequest);
         MoPubRequestQueue requestQueue = Networking.getRequestQueue();
         if (requestQueue == null) {
             MoPubLog.d("MoPubRequest queue is null. Clearing request.");
-            clearRequest();
+            if (mInFlightRequests.remove(inFlightRequest)) {
+                mAbandonedCount++;
+            }
             return;
         }
 
-        if (mBackoffPolicy.getRetryCount() == 0) {
-            requestQueue.add(mCurrentRequest);
+        final BackoffPolicy backoffPolicy = inFlightRequest.mBackoffPolicy;
+        if (backoffPolicy.getRetryCount() == 0) {
+            requestQueue.add(inFlightRequest.mCurrentRequest);
         } else {
-            requestQueue.addDelayedRequest(mCurrentRequest, mBackoffPolicy.getBackoffMs());
+            requestQueue.addDelayedRequest(inFlightRequest.mCurrentRequest,
+                    backoffPolicy.getBackoffMs());
         }
     }
 
-    @VisibleForTesting
-    void clearRequest() {
-        mCurrentRequest = null;
-        mRequestFactory = null;
-        mBackoffPolicy = null;
+    /**
+     * Finishes a request whose last attempt succeeded.
+     */
+    void onRequestSucceeded(@NonNull InFlightRequest inFlightRequest) {
+        if (mInFlightRequests.remove(inFlightRequest)) {
+            mSucceededCount++;
+        }
+    }
+
+    /**
+     * Retries a request whose last attempt failed, or gives up on it if its backoff policy has
+     * no attempts remaining. Does nothing if the request was cancelled.
+     */
+    void onRequestFailed(@NonNull InFlightRequest inFlightRequest,
+            @NonNull VolleyError volleyError) {
+        if (!mInFlightRequests.contains(inFlightRequest)) {
+            return;
+        }
+
+        try {
+            inFlightRequest.mBackoffPolicy.backoff(volleyError);
+            makeRequestInternal(inFlightRequest);
+        } catch (VolleyError e) {
+            MoPubLog.d("Giving up on request after " +
+                    inFlightRequest.mBackoffPolicy.getRetryCount() + " retries: " + volleyError);
+            mInFlightRequests.remove(inFlightRequest);
+            mAbandonedCount++;
+        }
+    }
+
+    private void cancel(@NonNull InFlightRequest inFlightRequest) {
+        MoPubRequestQueue requestQueue = Networking.getRequestQueue();
+        if (requestQueue != null && inFlightRequest.mCurrentRequest != null) {
+            requestQueue.cancel(inFlightRequest.mCurrentRequest);
+        }
+        mCancelledCount++;
     }
 
     @Deprecated
     @VisibleForTesting
-    Request<?> getCurrentRequest() {
-        return mCurrentRequest;
+    @NonNull
+    List<InFlightRequest> getInFlightRequests() {
+        return mInFlightRequests;
+    }
+
+    /**
+     * A request that hasn't succeeded, been given up on or been cancelled yet, along with the
+     * state of its backoff policy.
+     */
+    class InFlightRequest {
+        @NonNull private final T mRequestFactory;
+        @NonNull private final BackoffPolicy mBackoffPolicy;
+        @Nullable private final Object mTag;
+        @Nullable private Request<?> mCurrentRequest;
+
+        InFlightRequest(@NonNull T requestFactory, @NonNull BackoffPolicy backoffPolicy,
+                @Nullable Object tag) {
+            mRequestFactory = requestFactory;
+            mBackoffPolicy = backoffPolicy;
+            mTag = tag;
+        }
+
+        @NonNull
+        T getRequestFactory() {
+            return mRequestFactory;
+        }
+
+        @Deprecated
+        @VisibleForTesting
+        @Nullable
+        Request<?> getCurrentRequest() {
+            return mCurrentRequest;
+        }
+    }
+
+    /**
+     * Counters of the requests made by a manager since it was created.
+     */
+    public static class Stats {
+        private final int mInFlightCount;
+        private final int mRetryingCount;
+        private final long mSucceededCount;
+        private final long mAbandonedCount;
+        private final long mCancelledCount;
+
+        Stats(final int inFlightCount, final int retryingCount, final long succeededCount,
+                final long abandonedCount, final long cancelledCount) {
+            mInFlightCount = inFlightCount;
+            mRetryingCount = retryingCount;
+            mSucceededCount = succeededCount;
+            mAbandonedCount = abandonedCount;
+            mCancelledCount = cancelledCount;
+        }
+
+        /**
+         * The number of requests that haven't finished, including those waiting to be retried.
+         */
+        public int getInFlightCount() {
+            return mInFlightCount;
+        }
+
+        /**
+         * The number of requests in flight that failed at least once and are being retried.
+         */
+        public int getRetryingCount() {
+            return mRetryingCount;
+        }
+
+        public long getSucceededCount() {
+            return mSucceededCount;
+        }
+
+        /**
+         * The number of requests given up on because their backoff policy ran out of attempts.
+         */
+        public long getAbandonedCount() {
+            return mAbandonedCount;
+        }
+
+        public long getCancelledCount() {
+            return mCancelledCount;
+        }
     }
 }
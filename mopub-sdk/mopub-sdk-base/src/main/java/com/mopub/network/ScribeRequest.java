@@ -3,24 +3,34 @@ package com.mopub.network;
 import android.support.annotation.NonNull;
 
 import com.mopub.common.VisibleForTesting;
-import com.mopub.common.event.BaseEvent;
 import com.mopub.common.event.EventSerializer;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.ResponseHeader;
 import com.mopub.volley.DefaultRetryPolicy;
 import com.mopub.volley.NetworkResponse;
 import com.mopub.volley.Request;
 import com.mopub.volley.Response;
 import com.mopub.volley.toolbox.HttpHeaderParser;
 
-import org.json.JSONArray;
-
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URLEncoder;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A POST request for logging custom events to the Scribe service.
+ *
+ * The body is the form encoded "log" parameter holding the JSON of the events, compressed with
+ * gzip. The JSON is written straight into the compressed body, one event at a time.
  */
 public class ScribeRequest extends Request<Void> {
+    @VisibleForTesting static final String LOG_PARAM = "log";
+    private static final String GZIP_ENCODING = "gzip";
 
     public interface Listener extends Response.ErrorListener {
         void onResponse();
@@ -30,17 +40,17 @@ public class ScribeRequest extends Request<Void> {
         ScribeRequest createRequest(ScribeRequest.Listener listener);
     }
 
-    @NonNull private final List<BaseEvent> mEvents;
+    @NonNull private final List<byte[]> mRecords;
     @NonNull private final EventSerializer mEventSerializer;
     @NonNull private final ScribeRequest.Listener mListener;
 
     public ScribeRequest(@NonNull String url,
-            @NonNull List<BaseEvent> events,
+            @NonNull List<byte[]> records,
             @NonNull EventSerializer eventSerializer,
             @NonNull Listener listener) {
         super(Method.POST, url, listener);
 
-        mEvents = events;
+        mRecords = records;
         mEventSerializer = eventSerializer;
         mListener = listener;
 
@@ -50,15 +60,34 @@ public class ScribeRequest extends Request<Void> {
         setRetryPolicy(new DefaultRetryPolicy());
     }
 
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new TreeMap<String, String>();
+        headers.put(ResponseHeader.CONTENT_ENCODING.getKey(), GZIP_ENCODING);
+        return headers;
+    }
+
     /**
-     * This is method runs on the background thread
+     * This is method runs on the background thread. The records are only turned into JSON here,
+     * in a single pass.
      */
     @Override
-    protected Map<String,String> getParams() {
-        JSONArray jsonArray = mEventSerializer.serializeAsJson(mEvents);
-        Map<String,String> params = new HashMap<String, String>();
-        params.put("log", jsonArray.toString());
-        return params;
+    public byte[] getBody() {
+        // Compressed JSON is roughly a tenth of the size of the records
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(
+                Math.max(512, mRecords.size() * 64));
+        try {
+            final OutputStream gzipStream = new GZIPOutputStream(body);
+            gzipStream.write((LOG_PARAM + "=").getBytes(getParamsEncoding()));
+            final Writer writer = new FormUrlEncodingWriter(gzipStream, getParamsEncoding());
+            mEventSerializer.writeRecordsAsJson(mRecords, writer);
+            writer.close();
+        } catch (IOException e) {
+            // Only thrown for an unsupported encoding, since the body is kept in memory
+            MoPubLog.d("Failed to build Scribe request body", e);
+            return null;
+        }
+        return body.toByteArray();
     }
 
     @Override
@@ -76,8 +105,63 @@ public class ScribeRequest extends Request<Void> {
     @NonNull
     @Deprecated
     @VisibleForTesting
-    public List<BaseEvent> getEvents() {
-        return mEvents;
+    public List<byte[]> getRecords() {
+        return mRecords;
+    }
+
+    /**
+     * Form encodes the characters written to it in chunks, the same way Volley encodes
+     * parameters, and writes them to a stream.
+     */
+    private static class FormUrlEncodingWriter extends Writer {
+        private static final int CHUNK_SIZE = 4096;
+
+        @NonNull private final OutputStream mOutputStream;
+        @NonNull private final String mEncoding;
+        @NonNull private final StringBuilder mChunk = new StringBuilder(CHUNK_SIZE);
+
+        FormUrlEncodingWriter(@NonNull final OutputStream outputStream,
+                @NonNull final String encoding) {
+            mOutputStream = outputStream;
+            mEncoding = encoding;
+        }
+
+        @Override
+        public void write(@NonNull final char[] buffer, final int offset, final int count)
+                throws IOException {
+            mChunk.append(buffer, offset, count);
+            if (mChunk.length() >= CHUNK_SIZE) {
+                writeChunk(false);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeChunk(true);
+            mOutputStream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writeChunk(true);
+            mOutputStream.close();
+        }
+
+        private void writeChunk(final boolean isLast) throws IOException {
+            int end = mChunk.length();
+            // A surrogate pair must be encoded together, so keep a trailing high surrogate for
+            // the next chunk
+            if (!isLast && end > 0 && Character.isHighSurrogate(mChunk.charAt(end - 1))) {
+                end--;
+            }
+            if (end == 0) {
+                return;
+            }
+            // Form encoded text is ASCII
+            mOutputStream.write(URLEncoder.encode(mChunk.substring(0, end), mEncoding)
+                    .getBytes("US-ASCII"));
+            mChunk.delete(0, end);
+        }
     }
 }
 
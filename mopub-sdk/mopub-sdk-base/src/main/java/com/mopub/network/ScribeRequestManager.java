@@ -11,49 +11,58 @@ import static com.mopub.network.ScribeRequest.ScribeRequestFactory;
 
 /**
  * Request manager to manage scribe requests. This class implements the specific Scribe
- * request listener.
+ * request listener for each request in flight.
  */
-public class ScribeRequestManager extends RequestManager<ScribeRequestFactory> implements ScribeRequest.Listener {
+public class ScribeRequestManager extends RequestManager<ScribeRequestFactory> {
+    /**
+     * Lets a new batch of events be sent while an older one is backing off.
+     */
+    private static final int MAX_IN_FLIGHT_REQUESTS = 2;
 
     public ScribeRequestManager(final Looper looper) {
-        super(looper);
+        super(looper, MAX_IN_FLIGHT_REQUESTS);
     }
 
     // RequestManager
     @NonNull
     @Override
-    Request<?> createRequest() {
-        return mRequestFactory.createRequest(this);
+    Request<?> createRequest(@NonNull final InFlightRequest inFlightRequest) {
+        return inFlightRequest.getRequestFactory().createRequest(
+                new InFlightRequestListener(inFlightRequest));
     }
 
-    // ScribeRequest.Listener
-    @Override
-    public void onResponse() {
-        MoPubLog.d("Successfully scribed events");
-        // Get back to the dedicated event logging thread before touching shared resources
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                clearRequest();
-            }
-        });
-    }
+    /**
+     * Reports the responses of one request in flight.
+     */
+    class InFlightRequestListener implements ScribeRequest.Listener {
+        @NonNull private final InFlightRequest mInFlightRequest;
 
-    @Override
-    public void onErrorResponse(final VolleyError volleyError) {
-        // Post back to the dedicated event logging thread before touching shared resources
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    mBackoffPolicy.backoff(volleyError);
-                    makeRequestInternal();
-                } catch (VolleyError e) {
-                    MoPubLog.d("Failed to Scribe events: " + volleyError);
-                    clearRequest();
+        InFlightRequestListener(@NonNull final InFlightRequest inFlightRequest) {
+            mInFlightRequest = inFlightRequest;
+        }
+
+        // ScribeRequest.Listener
+        @Override
+        public void onResponse() {
+            MoPubLog.d("Successfully scribed events");
+            // Get back to the dedicated event logging thread before touching shared resources
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onRequestSucceeded(mInFlightRequest);
                 }
-            }
-        });
+            });
+        }
+
+        @Override
+        public void onErrorResponse(final VolleyError volleyError) {
+            // Post back to the dedicated event logging thread before touching shared resources
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onRequestFailed(mInFlightRequest, volleyError);
+                }
+            });
+        }
     }
 }
-
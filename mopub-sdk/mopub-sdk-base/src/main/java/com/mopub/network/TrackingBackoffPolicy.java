@@ -0,0 +1,68 @@
+package com.mopub.network;
+
+import com.mopub.common.VisibleForTesting;
+import com.mopub.volley.NoConnectionError;
+import com.mopub.volley.VolleyError;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+
+/**
+ * The backoff policy for impression and click tracking requests.
+ *
+ * Only failures that prove the request was never sent are retried, so that retrying does not cause
+ * duplicate impressions or clicks. These are failures to resolve the host or to open a connection.
+ * Any other failure, including an error response or a connection that broke after it was opened,
+ * may have been recorded by the server.
+ */
+public class TrackingBackoffPolicy extends BackoffPolicy {
+    private static final int DEFAULT_BACKOFF_TIME_MS = 5 * 1000;
+    private static final int MAX_RETRIES = 5;
+    private static final int BACKOFF_MULTIPLIER = 2;
+
+    public TrackingBackoffPolicy() {
+        this(DEFAULT_BACKOFF_TIME_MS, MAX_RETRIES, BACKOFF_MULTIPLIER);
+    }
+
+    @VisibleForTesting
+    TrackingBackoffPolicy(int defaultBackoffTimeMs, int maxRetries, int backoffMultiplier) {
+        mDefaultBackoffTimeMs = defaultBackoffTimeMs;
+        mMaxRetries = maxRetries;
+        mBackoffMultiplier = backoffMultiplier;
+    }
+
+    @Override
+    public void backoff(VolleyError volleyError) throws VolleyError {
+        if (!hasAttemptRemaining()) {
+            throw volleyError;
+        }
+
+        if (!isNeverSent(volleyError)) {
+            throw volleyError;
+        }
+
+        updateBackoffTime();
+    }
+
+    /**
+     * Volley reports every IOException that happens before a response as a NoConnectionError, so
+     * the cause tells whether the connection was ever opened.
+     */
+    private static boolean isNeverSent(final VolleyError volleyError) {
+        if (!(volleyError instanceof NoConnectionError)) {
+            return false;
+        }
+
+        final Throwable cause = volleyError.getCause();
+        return cause instanceof UnknownHostException
+                || cause instanceof ConnectException
+                || cause instanceof NoRouteToHostException;
+    }
+
+    private void updateBackoffTime() {
+        double multiplier = Math.pow(mBackoffMultiplier, mRetryCount);
+        mBackoffMs = (int) (mDefaultBackoffTimeMs * multiplier);
+        mRetryCount++;
+    }
+}
@@ -3,20 +3,16 @@ package com.mopub.network;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
 
 import com.mopub.common.Preconditions;
 import com.mopub.common.event.BaseEvent;
-import com.mopub.common.logging.MoPubLog;
 import com.mopub.mobileads.VastErrorCode;
 import com.mopub.mobileads.VastMacroHelper;
 import com.mopub.mobileads.VastTracker;
 import com.mopub.volley.DefaultRetryPolicy;
 import com.mopub.volley.NetworkResponse;
 import com.mopub.volley.Request;
-import com.mopub.volley.RequestQueue;
 import com.mopub.volley.Response;
-import com.mopub.volley.VolleyError;
 import com.mopub.volley.toolbox.HttpHeaderParser;
 
 import java.util.ArrayList;
@@ -25,7 +21,8 @@ import java.util.List;
 
 public class TrackingRequest extends Request<Void> {
 
-    // Retrying may cause duplicate impressions
+    // Retrying may cause duplicate impressions. TrackingRequestDispatcher retries only the failures
+    // that cannot have reached the server.
     private static final int ZERO_RETRIES = 0;
 
     public interface Listener extends Response.ErrorListener {
@@ -34,7 +31,7 @@ public class TrackingRequest extends Request<Void> {
 
     @Nullable private final TrackingRequest.Listener mListener;
 
-    private TrackingRequest(@NonNull final String url, @Nullable final Listener listener) {
+    TrackingRequest(@NonNull final String url, @Nullable final Listener listener) {
         super(Method.GET, url, listener);
         mListener = listener;
         setShouldCache(false);
@@ -74,7 +71,7 @@ public class TrackingRequest extends Request<Void> {
             @Nullable final Context context) {
         Preconditions.checkNotNull(vastTrackers);
 
-        List<String> trackers = new ArrayList<String>(vastTrackers.size());
+        List<VastTracker> trackers = new ArrayList<VastTracker>(vastTrackers.size());
         for (VastTracker vastTracker : vastTrackers) {
             if (vastTracker == null) {
                 continue;
@@ -82,12 +79,12 @@ public class TrackingRequest extends Request<Void> {
             if (vastTracker.isTracked() && !vastTracker.isRepeatable()) {
                 continue;
             }
-            trackers.add(vastTracker.getTrackingUrl());
+            trackers.add(vastTracker);
             vastTracker.setTracked();
         }
 
         makeTrackingHttpRequest(
-                new VastMacroHelper(trackers)
+                VastMacroHelper.forTrackers(trackers)
                         .withErrorCode(vastErrorCode)
                         .withContentPlayHead(contentPlayHead)
                         .withAssetUri(assetUri)
@@ -100,36 +97,23 @@ public class TrackingRequest extends Request<Void> {
             @Nullable final Context context,
             @Nullable final Listener listener,
             final BaseEvent.Name name) {
+        makeTrackingHttpRequest(urls, context, listener, name, null);
+    }
+
+    /**
+     * Sends the tracking urls once per ad: urls that were already sent for the same ad instance
+     * are ignored.
+     */
+    public static void makeTrackingHttpRequest(@Nullable final Iterable<String> urls,
+            @Nullable final Context context,
+            @Nullable final Listener listener,
+            final BaseEvent.Name name,
+            @Nullable final Object ad) {
         if (urls == null || context == null) {
             return;
         }
 
-        final RequestQueue requestQueue = Networking.getRequestQueue(context);
-        for (final String url : urls) {
-            if (TextUtils.isEmpty(url)) {
-                continue;
-            }
-
-            final TrackingRequest.Listener internalListener = new TrackingRequest.Listener() {
-                @Override
-                public void onResponse(@NonNull String url) {
-                    MoPubLog.d("Successfully hit tracking endpoint: " + url);
-                    if (listener != null) {
-                        listener.onResponse(url);
-                    }
-                }
-
-                @Override
-                public void onErrorResponse(final VolleyError volleyError) {
-                    MoPubLog.d("Failed to hit tracking endpoint: " + url);
-                    if (listener != null) {
-                        listener.onErrorResponse(volleyError);
-                    }
-                }
-            };
-            final TrackingRequest trackingRequest = new TrackingRequest(url, internalListener);
-            requestQueue.add(trackingRequest);
-        }
+        TrackingRequestDispatcher.getInstance(context).dispatch(urls, listener, ad);
     }
 
     public static void makeTrackingHttpRequest(@Nullable final String url,
@@ -151,8 +135,16 @@ public class TrackingRequest extends Request<Void> {
             @Nullable final Context context,
             @Nullable Listener listener,
             final BaseEvent.Name name) {
+        makeTrackingHttpRequest(url, context, listener, name, null);
+    }
+
+    public static void makeTrackingHttpRequest(@Nullable final String url,
+            @Nullable final Context context,
+            @Nullable Listener listener,
+            final BaseEvent.Name name,
+            @Nullable final Object ad) {
         if (url != null) {
-            makeTrackingHttpRequest(Arrays.asList(url), context, listener, name);
+            makeTrackingHttpRequest(Arrays.asList(url), context, listener, name, ad);
         }
     }
 
@@ -0,0 +1,500 @@
+package com.mopub.network;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.mopub.common.BackgroundExecutor;
+import com.mopub.common.Preconditions;
+import com.mopub.common.SharedPreferencesHelper;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DateAndTime;
+import com.mopub.volley.RequestQueue;
+import com.mopub.volley.VolleyError;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Queues impression and click tracking URLs and delivers them to the tracking servers.
+ *
+ * At most {@link #MAX_REQUESTS_IN_FLIGHT} tracking requests run at a time, so that a backlog never
+ * competes with ad requests for connections. New tracking URLs wait in a FIFO queue that is served
+ * before retried and restored URLs, since impressions and clicks are time sensitive. Requests that
+ * fail before reaching the server are retried according to a {@link TrackingBackoffPolicy}.
+ *
+ * Undelivered URLs are persisted to shared preferences and are dispatched again after the process
+ * restarts, until they are older than {@link #MAX_AGE_MILLIS}. URLs whose request is running when
+ * they are persisted are left out, since the server may already have counted them. A hit is lost
+ * rather than counted twice if the process dies during its request. Restoring happens on a
+ * background thread.
+ *
+ * Every hit is identified by its URL, the time it was first dispatched and a sequence number. A
+ * retry or a restore sends the same hit again rather than creating a new one, and a hit that is
+ * already undelivered is never queued twice. The same URL dispatched twice in one call, or twice
+ * for the same ad, is only sent once.
+ *
+ * This class is thread safe. Listeners are called on the main thread.
+ */
+public class TrackingRequestDispatcher {
+    @VisibleForTesting static final int MAX_REQUESTS_IN_FLIGHT = 4;
+    @VisibleForTesting static final int MAX_UNDELIVERED = 500;
+    @VisibleForTesting static final long MAX_AGE_MILLIS = 24 * 60 * 60 * 1000;
+    @VisibleForTesting static final String PENDING_TRACKERS_KEY = "tracking-dispatcher-pending";
+    private static final int PERSIST_DELAY_MILLIS = 1000;
+
+    private static final String URL_KEY = "url";
+    private static final String TIMESTAMP_KEY = "timestamp";
+    private static final String SEQUENCE_NUMBER_KEY = "sequence-number";
+
+    @Nullable private static volatile TrackingRequestDispatcher sInstance;
+
+    @NonNull private final Context mContext;
+    @NonNull private final Handler mHandler;
+    @NonNull private final Runnable mPersistRunnable;
+
+    // Every tracker that has not been delivered or dropped yet, keyed by TrackingEntry#getKey
+    @NonNull private final Map<String, TrackingEntry> mUndelivered;
+    // New trackers waiting for a free request slot
+    @NonNull private final LinkedList<TrackingEntry> mNew;
+    // Retried and restored trackers waiting for a free request slot
+    @NonNull private final LinkedList<TrackingEntry> mPending;
+    // Keys of the trackers whose request is running
+    @NonNull private final Set<String> mInFlight;
+    // URLs already dispatched for each ad that is still referenced elsewhere
+    @NonNull private final Map<Object, Set<String>> mDispatchedUrlsByAd;
+    private long mSequenceNumber;
+    private boolean mPersistScheduled;
+    // Whether undelivered trackers are still being restored, which must finish before persisting
+    private boolean mRestoring;
+    private boolean mPersistAfterRestore;
+
+    private int mDeliveredCount;
+    private int mRetriedCount;
+    private int mDroppedCount;
+    private long mTotalDeliveryLatencyMillis;
+    private long mMaxDeliveryLatencyMillis;
+
+    @NonNull
+    public static TrackingRequestDispatcher getInstance(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        TrackingRequestDispatcher dispatcher = sInstance;
+        if (dispatcher == null) {
+            synchronized (TrackingRequestDispatcher.class) {
+                dispatcher = sInstance;
+                if (dispatcher == null) {
+                    dispatcher = new TrackingRequestDispatcher(context.getApplicationContext(),
+                            new Handler(Looper.getMainLooper()));
+                    dispatcher.restoreInBackground();
+                    sInstance = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    @VisibleForTesting
+    TrackingRequestDispatcher(@NonNull final Context context, @NonNull final Handler handler) {
+        mContext = context;
+        mHandler = handler;
+        mUndelivered = new LinkedHashMap<String, TrackingEntry>();
+        mNew = new LinkedList<TrackingEntry>();
+        mPending = new LinkedList<TrackingEntry>();
+        mInFlight = new HashSet<String>();
+        mDispatchedUrlsByAd = new WeakHashMap<Object, Set<String>>();
+        mPersistRunnable = new Runnable() {
+            @Override
+            public void run() {
+                persist();
+            }
+        };
+    }
+
+    /**
+     * Sends the given tracking URLs. Empty and repeated URLs are ignored.
+     */
+    public void dispatch(@NonNull final Iterable<String> urls,
+            @Nullable final TrackingRequest.Listener listener) {
+        dispatch(urls, listener, null);
+    }
+
+    /**
+     * Sends the given tracking URLs for the given ad. Empty and repeated URLs are ignored, and so
+     * are URLs that were already dispatched for the same ad.
+     *
+     * @param ad The ad instance the trackers belong to, or null to only ignore URLs repeated in
+     * this call. It is not kept from being garbage collected.
+     */
+    public void dispatch(@NonNull final Iterable<String> urls,
+            @Nullable final TrackingRequest.Listener listener, @Nullable final Object ad) {
+        Preconditions.checkNotNull(urls);
+
+        final long now = DateAndTime.now().getTime();
+        final List<TrackingEntry> pending;
+        synchronized (this) {
+            final Set<String> dispatchedUrls = getDispatchedUrls(ad);
+            for (final String url : urls) {
+                if (TextUtils.isEmpty(url) || !dispatchedUrls.add(url)) {
+                    continue;
+                }
+                final TrackingEntry entry =
+                        new TrackingEntry(url, now, mSequenceNumber++, listener);
+                if (add(entry)) {
+                    mNew.add(entry);
+                }
+            }
+            pending = pollPending();
+        }
+
+        sendAll(pending);
+        schedulePersist();
+    }
+
+    public synchronized int getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    public synchronized int getRetriedCount() {
+        return mRetriedCount;
+    }
+
+    public synchronized int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public synchronized int getUndeliveredCount() {
+        return mUndelivered.size();
+    }
+
+    /**
+     * Returns the average time between enqueuing a tracker and it being delivered, including
+     * retries, or 0 if nothing has been delivered yet.
+     */
+    public synchronized long getAverageDeliveryLatencyMillis() {
+        return mDeliveredCount == 0 ? 0 : mTotalDeliveryLatencyMillis / mDeliveredCount;
+    }
+
+    public synchronized long getMaxDeliveryLatencyMillis() {
+        return mMaxDeliveryLatencyMillis;
+    }
+
+    @NonNull
+    private Set<String> getDispatchedUrls(@Nullable final Object ad) {
+        if (ad == null) {
+            return new HashSet<String>();
+        }
+
+        Set<String> dispatchedUrls = mDispatchedUrlsByAd.get(ad);
+        if (dispatchedUrls == null) {
+            dispatchedUrls = new HashSet<String>();
+            mDispatchedUrlsByAd.put(ad, dispatchedUrls);
+        }
+        return dispatchedUrls;
+    }
+
+    /**
+     * Adds the hit to the undelivered trackers. Returns false if the hit is already undelivered
+     * or there is no room for it.
+     */
+    private boolean add(@NonNull final TrackingEntry entry) {
+        if (mUndelivered.containsKey(entry.getKey())) {
+            return false;
+        }
+
+        if (mUndelivered.size() >= MAX_UNDELIVERED) {
+            // Make room by dropping the oldest tracker that is not currently being sent, preferring
+            // trackers that have already been retried or restored.
+            final TrackingEntry oldest = mPending.isEmpty() ? mNew.poll() : mPending.poll();
+            if (oldest == null) {
+                drop(entry);
+                return false;
+            }
+            drop(oldest);
+        }
+
+        mUndelivered.put(entry.getKey(), entry);
+        return true;
+    }
+
+    /**
+     * Returns the queued trackers that fit in the connection budget, new trackers first. The
+     * caller must send them outside of the lock.
+     */
+    @NonNull
+    private List<TrackingEntry> pollPending() {
+        final List<TrackingEntry> entries = new ArrayList<TrackingEntry>();
+        while (mInFlight.size() < MAX_REQUESTS_IN_FLIGHT
+                && (!mNew.isEmpty() || !mPending.isEmpty())) {
+            final TrackingEntry entry = mNew.isEmpty() ? mPending.poll() : mNew.poll();
+            entries.add(entry);
+            mInFlight.add(entry.getKey());
+        }
+        return entries;
+    }
+
+    private void sendAll(@NonNull final List<TrackingEntry> entries) {
+        for (final TrackingEntry entry : entries) {
+            send(entry);
+        }
+    }
+
+    private void send(@NonNull final TrackingEntry entry) {
+        final RequestQueue requestQueue = Networking.getRequestQueue(mContext);
+        requestQueue.add(new TrackingRequest(entry.mUrl, new TrackingRequest.Listener() {
+            @Override
+            public void onResponse(@NonNull final String url) {
+                onDelivered(entry);
+            }
+
+            @Override
+            public void onErrorResponse(final VolleyError volleyError) {
+                onFailed(entry, volleyError);
+            }
+        }));
+    }
+
+    @VisibleForTesting
+    void onDelivered(@NonNull final TrackingEntry entry) {
+        final List<TrackingEntry> pending;
+        synchronized (this) {
+            mInFlight.remove(entry.getKey());
+            if (mUndelivered.remove(entry.getKey()) != null) {
+                final long latency = Math.max(0, DateAndTime.now().getTime() - entry.mTimestamp);
+                mDeliveredCount++;
+                mTotalDeliveryLatencyMillis += latency;
+                mMaxDeliveryLatencyMillis = Math.max(mMaxDeliveryLatencyMillis, latency);
+            }
+            pending = pollPending();
+        }
+        sendAll(pending);
+
+        MoPubLog.d("Successfully hit tracking endpoint: " + entry.mUrl);
+        if (entry.mListener != null) {
+            entry.mListener.onResponse(entry.mUrl);
+        }
+        schedulePersist();
+    }
+
+    @VisibleForTesting
+    void onFailed(@NonNull final TrackingEntry entry, @NonNull final VolleyError volleyError) {
+        boolean willRetry = false;
+        final List<TrackingEntry> pending;
+        synchronized (this) {
+            mInFlight.remove(entry.getKey());
+            final boolean expired =
+                    DateAndTime.now().getTime() - entry.mTimestamp >= MAX_AGE_MILLIS;
+            if (!expired && mUndelivered.containsKey(entry.getKey())) {
+                try {
+                    entry.mBackoffPolicy.backoff(volleyError);
+                    willRetry = true;
+                    mRetriedCount++;
+                } catch (VolleyError e) {
+                    // Not retryable, fall through and drop.
+                }
+            }
+            if (!willRetry) {
+                mUndelivered.remove(entry.getKey());
+                mDroppedCount++;
+            }
+            pending = pollPending();
+        }
+        sendAll(pending);
+
+        if (willRetry) {
+            MoPubLog.d("Failed to hit tracking endpoint, retrying in "
+                    + entry.mBackoffPolicy.getBackoffMs() + " ms: " + entry.mUrl);
+            mHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    retry(entry);
+                }
+            }, entry.mBackoffPolicy.getBackoffMs());
+            return;
+        }
+
+        MoPubLog.d("Failed to hit tracking endpoint: " + entry.mUrl);
+        if (entry.mListener != null) {
+            entry.mListener.onErrorResponse(volleyError);
+        }
+        schedulePersist();
+    }
+
+    private void retry(@NonNull final TrackingEntry entry) {
+        final List<TrackingEntry> pending;
+        synchronized (this) {
+            // The tracker may have been dropped while waiting.
+            if (!mUndelivered.containsKey(entry.getKey())) {
+                return;
+            }
+            mPending.add(entry);
+            pending = pollPending();
+        }
+        sendAll(pending);
+    }
+
+    private void drop(@NonNull final TrackingEntry entry) {
+        mUndelivered.remove(entry.getKey());
+        mDroppedCount++;
+        MoPubLog.d("Too many undelivered tracking requests, dropping: " + entry.mUrl);
+    }
+
+    private void schedulePersist() {
+        synchronized (this) {
+            if (mPersistScheduled) {
+                return;
+            }
+            mPersistScheduled = true;
+        }
+        mHandler.postDelayed(mPersistRunnable, PERSIST_DELAY_MILLIS);
+    }
+
+    /**
+     * Writes the undelivered trackers whose request isn't running to shared preferences.
+     */
+    @VisibleForTesting
+    void persist() {
+        final JSONArray jsonArray = new JSONArray();
+        synchronized (this) {
+            mPersistScheduled = false;
+            // Restoring persists once it's done; writing now would lose the restored trackers.
+            if (mRestoring) {
+                mPersistAfterRestore = true;
+                return;
+            }
+            for (final TrackingEntry entry : mUndelivered.values()) {
+                if (mInFlight.contains(entry.getKey())) {
+                    continue;
+                }
+                try {
+                    final JSONObject jsonObject = new JSONObject();
+                    jsonObject.put(URL_KEY, entry.mUrl);
+                    jsonObject.put(TIMESTAMP_KEY, entry.mTimestamp);
+                    jsonObject.put(SEQUENCE_NUMBER_KEY, entry.mSequenceNumber);
+                    jsonArray.put(jsonObject);
+                } catch (JSONException e) {
+                    MoPubLog.d("Unable to persist tracking url: " + entry.mUrl);
+                }
+            }
+        }
+
+        SharedPreferencesHelper.getSharedPreferences(mContext)
+                .edit()
+                .putString(PENDING_TRACKERS_KEY, jsonArray.toString())
+                .apply();
+    }
+
+    /**
+     * Enqueues the trackers that were undelivered when the process last stopped.
+     */
+    @VisibleForTesting
+    void restore() {
+        final SharedPreferences sharedPreferences =
+                SharedPreferencesHelper.getSharedPreferences(mContext);
+        final String pendingJson = sharedPreferences.getString(PENDING_TRACKERS_KEY, null);
+        if (TextUtils.isEmpty(pendingJson)) {
+            return;
+        }
+
+        final List<TrackingEntry> entries = new ArrayList<TrackingEntry>();
+        final long now = DateAndTime.now().getTime();
+        try {
+            final JSONArray jsonArray = new JSONArray(pendingJson);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                final JSONObject jsonObject = jsonArray.getJSONObject(i);
+                final String url = jsonObject.getString(URL_KEY);
+                final long timestamp = jsonObject.getLong(TIMESTAMP_KEY);
+                final long sequenceNumber = jsonObject.optLong(SEQUENCE_NUMBER_KEY);
+                if (now - timestamp < MAX_AGE_MILLIS) {
+                    entries.add(new TrackingEntry(url, timestamp, sequenceNumber, null));
+                }
+            }
+        } catch (JSONException e) {
+            MoPubLog.d("Unable to restore pending tracking urls.", e);
+        }
+
+        final List<TrackingEntry> pending;
+        synchronized (this) {
+            for (final TrackingEntry entry : entries) {
+                if (add(entry)) {
+                    mPending.add(entry);
+                }
+            }
+            pending = pollPending();
+        }
+        sendAll(pending);
+        schedulePersist();
+    }
+
+    /**
+     * Runs {@link #restore()} on a background thread, since reading shared preferences for the
+     * first time reads them from disk.
+     */
+    private void restoreInBackground() {
+        synchronized (this) {
+            mRestoring = true;
+        }
+
+        BackgroundExecutor.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean persist;
+                try {
+                    restore();
+                } finally {
+                    synchronized (TrackingRequestDispatcher.this) {
+                        mRestoring = false;
+                        persist = mPersistAfterRestore;
+                        mPersistAfterRestore = false;
+                    }
+                }
+                if (persist) {
+                    schedulePersist();
+                }
+            }
+        });
+    }
+
+    @VisibleForTesting
+    public static synchronized void clearForTesting() {
+        sInstance = null;
+    }
+
+    @VisibleForTesting
+    static class TrackingEntry {
+        @NonNull final String mUrl;
+        final long mTimestamp;
+        final long mSequenceNumber;
+        @Nullable final TrackingRequest.Listener mListener;
+        @NonNull final BackoffPolicy mBackoffPolicy;
+
+        TrackingEntry(@NonNull final String url, final long timestamp, final long sequenceNumber,
+                @Nullable final TrackingRequest.Listener listener) {
+            mUrl = url;
+            mTimestamp = timestamp;
+            mSequenceNumber = sequenceNumber;
+            mListener = listener;
+            mBackoffPolicy = new TrackingBackoffPolicy();
+        }
+
+        @NonNull
+        String getKey() {
+            return mTimestamp + "-" + mSequenceNumber + " " + mUrl;
+        }
+    }
+}
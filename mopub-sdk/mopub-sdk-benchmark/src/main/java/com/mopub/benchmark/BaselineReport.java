@@ -0,0 +1,224 @@
+package com.mopub.benchmark;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.util.Streams;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares benchmark results against checked-in baseline numbers.
+ *
+ * The baseline file is a JSON object of the form
+ * <pre>
+ * {"threshold": 0.25, "benchmarks": {"Json.jsonStringToMap": 5120.3, ...}}
+ * </pre>
+ * where each benchmark maps to its median ns/op. A result is a regression when it is slower than
+ * its baseline by more than the threshold, as a fraction of the baseline. Other top-level keys,
+ * such as a note on where the numbers were measured, are ignored.
+ */
+public class BaselineReport {
+    public static final double DEFAULT_THRESHOLD = 0.25;
+
+    static final String THRESHOLD_KEY = "threshold";
+    static final String BENCHMARKS_KEY = "benchmarks";
+    static final String REPORT_FILE_NAME = "report.txt";
+    static final String RESULTS_FILE_NAME = "results.json";
+
+    public enum Status {
+        REGRESSED,
+        OK,
+        IMPROVED,
+        NO_BASELINE
+    }
+
+    @NonNull private final Map<String, Double> mBaseline;
+    private final double mThreshold;
+    @NonNull private final List<BenchmarkResult> mResults = new ArrayList<BenchmarkResult>();
+
+    public BaselineReport(@NonNull final Map<String, Double> baseline, final double threshold) {
+        Preconditions.checkNotNull(baseline);
+        Preconditions.checkArgument(threshold >= 0, "Threshold must not be negative");
+
+        mBaseline = new HashMap<String, Double>(baseline);
+        mThreshold = threshold;
+    }
+
+    /**
+     * Reads the baseline file. A missing file is treated as an empty baseline.
+     *
+     * @param thresholdOverride Used instead of the threshold in the file, if not null.
+     */
+    @NonNull
+    public static BaselineReport fromFile(@Nullable final File baselineFile,
+            @Nullable final Double thresholdOverride) throws IOException, JSONException {
+        final Map<String, Double> baseline = new HashMap<String, Double>();
+        double threshold = DEFAULT_THRESHOLD;
+
+        if (baselineFile != null && baselineFile.exists()) {
+            final JSONObject jsonObject = new JSONObject(readFile(baselineFile));
+            threshold = jsonObject.optDouble(THRESHOLD_KEY, DEFAULT_THRESHOLD);
+            final JSONObject benchmarks = jsonObject.optJSONObject(BENCHMARKS_KEY);
+            if (benchmarks != null) {
+                final Iterator<String> keys = benchmarks.keys();
+                while (keys.hasNext()) {
+                    final String key = keys.next();
+                    baseline.put(key, benchmarks.getDouble(key));
+                }
+            }
+        }
+
+        return new BaselineReport(baseline,
+                thresholdOverride != null ? thresholdOverride : threshold);
+    }
+
+    public void add(@NonNull final BenchmarkResult result) {
+        Preconditions.checkNotNull(result);
+
+        mResults.add(result);
+    }
+
+    public double getThreshold() {
+        return mThreshold;
+    }
+
+    @NonNull
+    public Status getStatus(@NonNull final BenchmarkResult result) {
+        Preconditions.checkNotNull(result);
+
+        final Double baseline = mBaseline.get(result.getName());
+        if (baseline == null || baseline <= 0) {
+            return Status.NO_BASELINE;
+        }
+        final double change = (result.getMedianNanosPerOp() - baseline) / baseline;
+        if (change > mThreshold) {
+            return Status.REGRESSED;
+        }
+        if (change < -mThreshold) {
+            return Status.IMPROVED;
+        }
+        return Status.OK;
+    }
+
+    @NonNull
+    public List<BenchmarkResult> getRegressions() {
+        final List<BenchmarkResult> regressions = new ArrayList<BenchmarkResult>();
+        for (final BenchmarkResult result : mResults) {
+            if (getStatus(result) == Status.REGRESSED) {
+                regressions.add(result);
+            }
+        }
+        return Collections.unmodifiableList(regressions);
+    }
+
+    /**
+     * A table of every result, its baseline and the relative change.
+     */
+    @NonNull
+    public String toText() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "Regression threshold: %.0f%%%n",
+                mThreshold * 100));
+        if (mBaseline.isEmpty()) {
+            builder.append(String.format(Locale.US, "No baseline is recorded yet. Run with "
+                    + "-PrecordBaseline and check in %s as the baseline file.%n",
+                    RESULTS_FILE_NAME));
+        }
+        builder.append(String.format(Locale.US, "%n"));
+        builder.append(String.format(Locale.US, "%-48s %14s %14s %9s  %s%n",
+                "Benchmark", "Baseline ns/op", "Current ns/op", "Change", "Status"));
+        for (final BenchmarkResult result : mResults) {
+            final Double baseline = mBaseline.get(result.getName());
+            final String baselineText;
+            final String changeText;
+            if (baseline == null || baseline <= 0) {
+                baselineText = "-";
+                changeText = "-";
+            } else {
+                baselineText = String.format(Locale.US, "%.1f", baseline);
+                changeText = String.format(Locale.US, "%+.1f%%",
+                        (result.getMedianNanosPerOp() - baseline) / baseline * 100);
+            }
+            builder.append(String.format(Locale.US, "%-48s %14s %14.1f %9s  %s%n",
+                    result.getName(), baselineText, result.getMedianNanosPerOp(), changeText,
+                    getStatus(result)));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The results in the format of the baseline file, to replace it after an intended change in
+     * performance.
+     */
+    @NonNull
+    public JSONObject toBaselineJson() throws JSONException {
+        final JSONObject benchmarks = new JSONObject();
+        for (final BenchmarkResult result : mResults) {
+            benchmarks.put(result.getName(),
+                    Math.round(result.getMedianNanosPerOp() * 10) / 10.0);
+        }
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put(THRESHOLD_KEY, mThreshold);
+        jsonObject.put(BENCHMARKS_KEY, benchmarks);
+        return jsonObject;
+    }
+
+    /**
+     * Writes {@link #REPORT_FILE_NAME} to the directory, and {@link #RESULTS_FILE_NAME} as well
+     * if recordBaseline is true.
+     */
+    public void writeTo(@NonNull final File directory, final boolean recordBaseline)
+            throws IOException, JSONException {
+        Preconditions.checkNotNull(directory);
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        writeFile(new File(directory, REPORT_FILE_NAME), toText());
+        if (recordBaseline) {
+            writeFile(new File(directory, RESULTS_FILE_NAME), toBaselineJson().toString(2));
+        }
+    }
+
+    @NonNull
+    private static String readFile(@NonNull final File file) throws IOException {
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            Streams.copyContent(inputStream, outputStream);
+            return outputStream.toString("UTF-8");
+        } finally {
+            Streams.closeStream(inputStream);
+        }
+    }
+
+    private static void writeFile(@NonNull final File file, @NonNull final String content)
+            throws IOException {
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(file);
+            outputStream.write(content.getBytes("UTF-8"));
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mopub.benchmark;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+
+/**
+ * A single operation measured by {@link BenchmarkRunner}. Each call to {@link #run()} should do
+ * one unit of work and return something computed from it, so that the work can't be optimized
+ * away.
+ */
+public abstract class Benchmark {
+    @NonNull private final String mName;
+
+    protected Benchmark(@NonNull final String name) {
+        Preconditions.checkNotNull(name);
+
+        mName = name;
+    }
+
+    /**
+     * The key of this benchmark in the baseline file.
+     */
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Called once before warming up. The setup time isn't measured.
+     */
+    public void setUp() throws Exception {
+    }
+
+    @Nullable
+    public abstract Object run() throws Exception;
+
+    /**
+     * Called once after the last measurement, even if the benchmark failed.
+     */
+    public void tearDown() throws Exception {
+    }
+}
@@ -0,0 +1,84 @@
+package com.mopub.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.Preconditions;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The time per operation of one benchmark, summarized over its measurement iterations.
+ */
+public class BenchmarkResult {
+    @NonNull private final String mName;
+    private final double mMedianNanosPerOp;
+    private final double mMeanNanosPerOp;
+    private final double mMinNanosPerOp;
+    private final double mMaxNanosPerOp;
+
+    public BenchmarkResult(@NonNull final String name, final double medianNanosPerOp,
+            final double meanNanosPerOp, final double minNanosPerOp, final double maxNanosPerOp) {
+        Preconditions.checkNotNull(name);
+
+        mName = name;
+        mMedianNanosPerOp = medianNanosPerOp;
+        mMeanNanosPerOp = meanNanosPerOp;
+        mMinNanosPerOp = minNanosPerOp;
+        mMaxNanosPerOp = maxNanosPerOp;
+    }
+
+    /**
+     * Summarizes the ns/op of each measurement iteration.
+     */
+    @NonNull
+    static BenchmarkResult fromSamples(@NonNull final String name,
+            @NonNull final double[] nanosPerOpSamples) {
+        Preconditions.checkNotNull(nanosPerOpSamples);
+        Preconditions.checkArgument(nanosPerOpSamples.length > 0, "No samples for " + name);
+
+        final double[] sorted = nanosPerOpSamples.clone();
+        Arrays.sort(sorted);
+        final int middle = sorted.length / 2;
+        final double median = sorted.length % 2 == 1
+                ? sorted[middle]
+                : (sorted[middle - 1] + sorted[middle]) / 2;
+        double sum = 0;
+        for (final double sample : sorted) {
+            sum += sample;
+        }
+        return new BenchmarkResult(name, median, sum / sorted.length, sorted[0],
+                sorted[sorted.length - 1]);
+    }
+
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * The value compared against the baseline. The median is used since it isn't skewed by an
+     * iteration that was interrupted by a garbage collection.
+     */
+    public double getMedianNanosPerOp() {
+        return mMedianNanosPerOp;
+    }
+
+    public double getMeanNanosPerOp() {
+        return mMeanNanosPerOp;
+    }
+
+    public double getMinNanosPerOp() {
+        return mMinNanosPerOp;
+    }
+
+    public double getMaxNanosPerOp() {
+        return mMaxNanosPerOp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: median %.1f ns/op (mean %.1f, min %.1f, max %.1f)",
+                mName, mMedianNanosPerOp, mMeanNanosPerOp, mMinNanosPerOp, mMaxNanosPerOp);
+    }
+}
@@ -0,0 +1,85 @@
+package com.mopub.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.logging.MoPubLog;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures benchmarks the way JMH does in its average time mode: a number of warmup iterations
+ * whose results are thrown away, then a number of measured iterations. Each iteration calls the
+ * benchmark in a loop for a fixed amount of time, so fast operations are timed in batches and
+ * the cost of reading the clock is spread across many calls.
+ */
+public class BenchmarkRunner {
+    public static final int DEFAULT_WARMUP_ITERATIONS = 5;
+    public static final int DEFAULT_MEASUREMENT_ITERATIONS = 10;
+    public static final long DEFAULT_ITERATION_MILLIS = 200;
+
+    private final int mWarmupIterations;
+    private final int mMeasurementIterations;
+    private final long mIterationNanos;
+
+    /**
+     * Keeps the result of every operation reachable so the JIT can't discard the work that
+     * produced it.
+     */
+    private volatile Object mSink;
+
+    public BenchmarkRunner() {
+        this(DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASUREMENT_ITERATIONS, DEFAULT_ITERATION_MILLIS);
+    }
+
+    public BenchmarkRunner(final int warmupIterations, final int measurementIterations,
+            final long iterationMillis) {
+        Preconditions.checkArgument(warmupIterations >= 0);
+        Preconditions.checkArgument(measurementIterations > 0);
+        Preconditions.checkArgument(iterationMillis > 0);
+
+        mWarmupIterations = warmupIterations;
+        mMeasurementIterations = measurementIterations;
+        mIterationNanos = TimeUnit.MILLISECONDS.toNanos(iterationMillis);
+    }
+
+    @NonNull
+    public BenchmarkResult run(@NonNull final Benchmark benchmark) throws Exception {
+        Preconditions.checkNotNull(benchmark);
+
+        benchmark.setUp();
+        try {
+            for (int i = 0; i < mWarmupIterations; i++) {
+                runIteration(benchmark);
+            }
+
+            final double[] samples = new double[mMeasurementIterations];
+            for (int i = 0; i < mMeasurementIterations; i++) {
+                samples[i] = runIteration(benchmark);
+            }
+
+            final BenchmarkResult result =
+                    BenchmarkResult.fromSamples(benchmark.getName(), samples);
+            MoPubLog.d(result.toString());
+            return result;
+        } finally {
+            benchmark.tearDown();
+            mSink = null;
+        }
+    }
+
+    /**
+     * Returns the average ns/op of one iteration.
+     */
+    private double runIteration(@NonNull final Benchmark benchmark) throws Exception {
+        long operations = 0;
+        final long start = System.nanoTime();
+        long elapsed;
+        do {
+            mSink = benchmark.run();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < mIterationNanos);
+        return (double) elapsed / operations;
+    }
+}
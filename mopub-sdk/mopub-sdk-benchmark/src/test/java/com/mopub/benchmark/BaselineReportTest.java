@@ -0,0 +1,90 @@
+package com.mopub.benchmark;
+
+import com.mopub.mobileads.benchmark.BuildConfig;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class BaselineReportTest {
+    private BaselineReport subject;
+
+    @Before
+    public void setUp() {
+        final Map<String, Double> baseline = new HashMap<String, Double>();
+        baseline.put("fast", 100.0);
+        baseline.put("slow", 1000.0);
+        subject = new BaselineReport(baseline, 0.25);
+    }
+
+    @Test
+    public void getStatus_shouldCompareMedianAgainstThreshold() {
+        assertThat(subject.getStatus(result("fast", 126))).isEqualTo(BaselineReport.Status.REGRESSED);
+        assertThat(subject.getStatus(result("fast", 125))).isEqualTo(BaselineReport.Status.OK);
+        assertThat(subject.getStatus(result("fast", 75))).isEqualTo(BaselineReport.Status.OK);
+        assertThat(subject.getStatus(result("fast", 74))).isEqualTo(BaselineReport.Status.IMPROVED);
+        assertThat(subject.getStatus(result("new", 1))).isEqualTo(BaselineReport.Status.NO_BASELINE);
+    }
+
+    @Test
+    public void getRegressions_shouldOnlyReturnRegressedResults() {
+        final BenchmarkResult regressed = result("slow", 2000);
+        subject.add(result("fast", 100));
+        subject.add(regressed);
+        subject.add(result("new", 5));
+
+        assertThat(subject.getRegressions()).containsExactly(regressed);
+    }
+
+    @Test
+    public void toText_withEmptyBaseline_shouldExplainHowToRecordOne() {
+        subject = new BaselineReport(new HashMap<String, Double>(), 0.25);
+        subject.add(result("new", 5));
+
+        assertThat(subject.toText()).contains("No baseline is recorded yet")
+                .contains(BaselineReport.RESULTS_FILE_NAME);
+    }
+
+    @Test
+    public void toText_withBaseline_shouldNotExplainHowToRecordOne() {
+        subject.add(result("fast", 100));
+
+        assertThat(subject.toText().contains("No baseline is recorded yet")).isFalse();
+    }
+
+    @Test
+    public void toBaselineJson_shouldContainThresholdAndMedians() throws Exception {
+        subject.add(result("fast", 101.26));
+
+        final JSONObject json = subject.toBaselineJson();
+
+        assertThat(json.getDouble(BaselineReport.THRESHOLD_KEY)).isEqualTo(0.25);
+        assertThat(json.getJSONObject(BaselineReport.BENCHMARKS_KEY).getDouble("fast"))
+                .isEqualTo(101.3);
+    }
+
+    @Test
+    public void fromSamples_shouldUseMedianOfSamples() {
+        final BenchmarkResult result =
+                BenchmarkResult.fromSamples("name", new double[] {5, 1, 100, 3});
+
+        assertThat(result.getMedianNanosPerOp()).isEqualTo(4.0);
+        assertThat(result.getMinNanosPerOp()).isEqualTo(1.0);
+        assertThat(result.getMaxNanosPerOp()).isEqualTo(100.0);
+        assertThat(result.getMeanNanosPerOp()).isEqualTo(27.25);
+    }
+
+    private static BenchmarkResult result(final String name, final double median) {
+        return new BenchmarkResult(name, median, median, median, median);
+    }
+}
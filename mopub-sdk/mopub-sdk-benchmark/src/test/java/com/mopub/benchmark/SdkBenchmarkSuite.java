@@ -0,0 +1,68 @@
+package com.mopub.benchmark;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.mopub.common.CommonBenchmarks;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.ImageUtilsBenchmarks;
+import com.mopub.mobileads.MobileAdsBenchmarks;
+import com.mopub.mobileads.benchmark.BuildConfig;
+import com.mopub.nativeads.PlacementDataBenchmarks;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Runs every benchmark in one JVM and writes a report of the results against the checked-in
+ * baseline to the report directory. See build.gradle for the properties that control it.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class SdkBenchmarkSuite {
+    private static final String BASELINE_PROPERTY = "mopub.benchmark.baseline";
+    private static final String REPORT_DIRECTORY_PROPERTY = "mopub.benchmark.reportDir";
+    private static final String RECORD_PROPERTY = "mopub.benchmark.record";
+    private static final String FAIL_ON_REGRESSION_PROPERTY = "mopub.benchmark.failOnRegression";
+    private static final String THRESHOLD_PROPERTY = "mopub.benchmark.threshold";
+    private static final String DEFAULT_REPORT_DIRECTORY = "build/reports/benchmarks";
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        final Context context = Robolectric.buildActivity(Activity.class).create().get();
+        final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        benchmarks.addAll(PlacementDataBenchmarks.create());
+        benchmarks.addAll(MobileAdsBenchmarks.create(context));
+        benchmarks.addAll(CommonBenchmarks.create(context));
+        benchmarks.addAll(ImageUtilsBenchmarks.create());
+
+        final String baselinePath = System.getProperty(BASELINE_PROPERTY);
+        final String threshold = System.getProperty(THRESHOLD_PROPERTY);
+        final BaselineReport report = BaselineReport.fromFile(
+                baselinePath == null ? null : new File(baselinePath),
+                threshold == null ? null : Double.valueOf(threshold));
+
+        final BenchmarkRunner runner = new BenchmarkRunner();
+        for (final Benchmark benchmark : benchmarks) {
+            report.add(runner.run(benchmark));
+        }
+
+        final File reportDirectory = new File(
+                System.getProperty(REPORT_DIRECTORY_PROPERTY, DEFAULT_REPORT_DIRECTORY));
+        report.writeTo(reportDirectory, Boolean.getBoolean(RECORD_PROPERTY));
+        MoPubLog.d("Benchmark report written to " + reportDirectory.getAbsolutePath());
+
+        if (Boolean.getBoolean(FAIL_ON_REGRESSION_PROPERTY) && !report.getRegressions().isEmpty()) {
+            fail("Benchmarks regressed past the baseline:\n" + report.toText());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.mopub.common;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.mopub.benchmark.Benchmark;
+import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.Event;
+import com.mopub.common.event.EventSerializer;
+import com.mopub.common.util.Json;
+import com.mopub.common.util.Streams;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmarks of the disk cache, event serialization and JSON parsing.
+ */
+public class CommonBenchmarks {
+    private static final int CACHE_ENTRY_COUNT = 100;
+    private static final int CACHE_ENTRY_SIZE = 4 * 1024;
+    private static final long CACHE_MAX_SIZE = 10 * 1024 * 1024;
+    private static final int EVENT_COUNT = 20;
+
+    private static final String SERVER_EXTRAS_JSON = "{" +
+            "\"adunit_id\":\"b195f8dd8ded45fe847ad89ed1d016da\"," +
+            "\"app_id\":\"1234567890\"," +
+            "\"placement_id\":\"placement-0123456789\"," +
+            "\"network_name\":\"admob_native\"," +
+            "\"ad_type\":\"native\"," +
+            "\"width\":\"320\"," +
+            "\"height\":\"50\"," +
+            "\"refresh_time\":\"30\"," +
+            "\"click_url\":\"https://ads.mopub.com/m/aclk?appid=&cid=4652bd83d89a40c5a4e276dbf101499f\"," +
+            "\"impression_url\":\"https://ads.mopub.com/m/imp?appid=&cid=4652bd83d89a40c5a4e276dbf101499f\"" +
+            "}";
+
+    @NonNull
+    public static List<Benchmark> create(@NonNull final Context context) {
+        final File cacheDirectory = new File(context.getCacheDir(), "mopub-benchmark");
+        return Arrays.asList(
+                new DiskLruCacheGetBenchmark(new File(cacheDirectory, "get")),
+                new DiskLruCachePutBenchmark(new File(cacheDirectory, "put")),
+                new StripedDiskLruCachePutBenchmark(new File(cacheDirectory, "striped-put")),
+                new Benchmark("EventSerializer.serializeAsJson") {
+                    private final EventSerializer mEventSerializer = new EventSerializer();
+                    private final List<BaseEvent> mEvents = new ArrayList<BaseEvent>();
+
+                    @Override
+                    public void setUp() {
+                        // Events read the device fields from the shared client metadata
+                        ClientMetadata.getInstance(context);
+                        for (int i = 0; i < EVENT_COUNT; i++) {
+                            mEvents.add(new Event.Builder(BaseEvent.Name.AD_REQUEST,
+                                    BaseEvent.Category.REQUESTS,
+                                    BaseEvent.SamplingRate.AD_REQUEST.getSamplingRate())
+                                    .withAdUnitId("b195f8dd8ded45fe847ad89ed1d016da")
+                                    .withAdType("html")
+                                    .withAdNetworkType("mopub")
+                                    .withRequestId("request-" + i)
+                                    .withRequestStatusCode(200)
+                                    .withRequestUri("https://ads.mopub.com/m/ad?id=" + i)
+                                    .withPerformanceDurationMs(120.0)
+                                    .build());
+                        }
+                    }
+
+                    @Override
+                    public Object run() {
+                        return mEventSerializer.serializeAsJson(mEvents);
+                    }
+                },
+                new Benchmark("Json.jsonStringToMap") {
+                    @Override
+                    public Object run() throws Exception {
+                        return Json.jsonStringToMap(SERVER_EXTRAS_JSON);
+                    }
+                }
+        );
+    }
+
+    private static class DiskLruCacheGetBenchmark extends Benchmark {
+        @NonNull private final File mDirectory;
+        @NonNull private final byte[] mBuffer = new byte[CACHE_ENTRY_SIZE];
+        private DiskLruCache mDiskLruCache;
+        private int mNextKey;
+
+        DiskLruCacheGetBenchmark(@NonNull final File directory) {
+            super("DiskLruCache.get");
+            mDirectory = directory;
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            mDiskLruCache = DiskLruCache.open(mDirectory, 1, 1, CACHE_MAX_SIZE);
+            for (int i = 0; i < CACHE_ENTRY_COUNT; i++) {
+                final DiskLruCache.Editor editor = mDiskLruCache.edit(key(i));
+                writeValue(editor, mBuffer);
+                editor.commit();
+            }
+        }
+
+        @Override
+        public Object run() throws Exception {
+            final DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key(mNextKey));
+            mNextKey = (mNextKey + 1) % CACHE_ENTRY_COUNT;
+            try {
+                final InputStream inputStream = snapshot.getInputStream(0);
+                Streams.readStream(inputStream, mBuffer);
+                return mBuffer;
+            } finally {
+                snapshot.close();
+            }
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            mDiskLruCache.delete();
+        }
+    }
+
+    private static class DiskLruCachePutBenchmark extends Benchmark {
+        @NonNull private final File mDirectory;
+        @NonNull private final byte[] mData = new byte[CACHE_ENTRY_SIZE];
+        private DiskLruCache mDiskLruCache;
+        private int mNextKey;
+
+        DiskLruCachePutBenchmark(@NonNull final File directory) {
+            super("DiskLruCache.put");
+            mDirectory = directory;
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            mDiskLruCache = DiskLruCache.open(mDirectory, 1, 1, CACHE_MAX_SIZE);
+        }
+
+        @Override
+        public Object run() throws Exception {
+            final DiskLruCache.Editor editor = mDiskLruCache.edit(key(mNextKey));
+            mNextKey = (mNextKey + 1) % CACHE_ENTRY_COUNT;
+            writeValue(editor, mData);
+            editor.commit();
+            return editor;
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            mDiskLruCache.delete();
+        }
+    }
+
+    private static class StripedDiskLruCachePutBenchmark extends Benchmark {
+        @NonNull private final File mDirectory;
+        @NonNull private final byte[] mData = new byte[CACHE_ENTRY_SIZE];
+        private StripedDiskLruCache mDiskLruCache;
+        private int mNextKey;
+
+        StripedDiskLruCachePutBenchmark(@NonNull final File directory) {
+            super("StripedDiskLruCache.put");
+            mDirectory = directory;
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            mDiskLruCache = StripedDiskLruCache.open(mDirectory, 1, 1, CACHE_MAX_SIZE);
+        }
+
+        @Override
+        public Object run() throws Exception {
+            final DiskLruCache.Editor editor = mDiskLruCache.edit(key(mNextKey));
+            mNextKey = (mNextKey + 1) % CACHE_ENTRY_COUNT;
+            writeValue(editor, mData);
+            mDiskLruCache.commit(editor);
+            return editor;
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            mDiskLruCache.delete();
+        }
+    }
+
+    private static void writeValue(@NonNull final DiskLruCache.Editor editor,
+            @NonNull final byte[] data) throws Exception {
+        final OutputStream outputStream = editor.newOutputStream(0);
+        try {
+            outputStream.write(data);
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+    }
+
+    @NonNull
+    private static String key(final int index) {
+        return "benchmark_key_" + index;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mopub.common.util;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.benchmark.Benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks of blurring the last frame of a VAST video, over raw ARGB frames. Every run copies
+ * the same source frame into the buffer it blurs, since the blurs work in place.
+ */
+public class ImageUtilsBenchmarks {
+    private static final int FRAME_WIDTH = 1920;
+    private static final int FRAME_HEIGHT = 1080;
+    // The size VastVideoBlurLastVideoFrameTask scales a 1080p frame down to before blurring it
+    private static final int DOWNSAMPLED_FRAME_WIDTH = 480;
+    private static final int DOWNSAMPLED_FRAME_HEIGHT = 270;
+    private static final int BLUR_RADIUS = 4;
+    private static final int DOWNSAMPLED_BLUR_RADIUS = 1;
+
+    @NonNull
+    public static List<Benchmark> create() {
+        return Arrays.<Benchmark>asList(
+                new FrameBlurBenchmark("ImageUtils.applyFastGaussianBlur-1920x1080",
+                        FRAME_WIDTH, FRAME_HEIGHT) {
+                    @Override
+                    void blur(@NonNull final int[] pixels) {
+                        ImageUtils.applyFastGaussianBlur(pixels, FRAME_WIDTH, FRAME_HEIGHT,
+                                BLUR_RADIUS);
+                    }
+                },
+                new FrameBlurBenchmark("BoxBlur.blur-1920x1080", FRAME_WIDTH, FRAME_HEIGHT) {
+                    private final BoxBlur mBoxBlur = new BoxBlur();
+
+                    @Override
+                    void blur(@NonNull final int[] pixels) {
+                        mBoxBlur.blur(pixels, FRAME_WIDTH, FRAME_HEIGHT, BLUR_RADIUS);
+                    }
+                },
+                new FrameBlurBenchmark("BoxBlur.blur-480x270",
+                        DOWNSAMPLED_FRAME_WIDTH, DOWNSAMPLED_FRAME_HEIGHT) {
+                    private final BoxBlur mBoxBlur = new BoxBlur();
+
+                    @Override
+                    void blur(@NonNull final int[] pixels) {
+                        mBoxBlur.blur(pixels, DOWNSAMPLED_FRAME_WIDTH, DOWNSAMPLED_FRAME_HEIGHT,
+                                DOWNSAMPLED_BLUR_RADIUS);
+                    }
+                }
+        );
+    }
+
+    private static abstract class FrameBlurBenchmark extends Benchmark {
+        private final int mPixelCount;
+        private int[] mFrame;
+        private int[] mPixels;
+
+        FrameBlurBenchmark(@NonNull final String name, final int width, final int height) {
+            super(name);
+            mPixelCount = width * height;
+        }
+
+        abstract void blur(@NonNull final int[] pixels);
+
+        @Override
+        public void setUp() {
+            final Random random = new Random(0);
+            mFrame = new int[mPixelCount];
+            for (int i = 0; i < mPixelCount; i++) {
+                mFrame[i] = 0xFF000000 | random.nextInt(0x1000000);
+            }
+            mPixels = new int[mPixelCount];
+        }
+
+        @Override
+        public Object run() {
+            System.arraycopy(mFrame, 0, mPixels, 0, mPixelCount);
+            blur(mPixels);
+            return mPixels;
+        }
+    }
+}
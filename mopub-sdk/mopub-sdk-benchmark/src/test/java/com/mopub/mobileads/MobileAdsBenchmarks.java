@@ -0,0 +1,239 @@
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.mopub.benchmark.Benchmark;
+import com.mopub.common.AdUrlGenerator;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Benchmarks of ad request and VAST code, some of which is package-private.
+ */
+public class MobileAdsBenchmarks {
+    private static final String AD_UNIT_ID = "b195f8dd8ded45fe847ad89ed1d016da";
+    private static final String KEYWORDS = "m_age:24,m_gender:m,m_marital:single";
+    private static final String HOSTNAME = "ads.mopub.com";
+    private static final int MACRO_TRACKER_COUNT = 20;
+    private static final String ASSET_URI = "https://cdn.mopub.com/video_1280.mp4";
+
+    @NonNull
+    public static List<Benchmark> create(@NonNull final Context context) {
+        return Arrays.asList(
+                new Benchmark("WebViewAdUrlGenerator.generateUrlString") {
+                    private WebViewAdUrlGenerator mGenerator;
+
+                    @Override
+                    public void setUp() {
+                        mGenerator = new WebViewAdUrlGenerator(context, false);
+                        mGenerator.withAdUnitId(AD_UNIT_ID).withKeywords(KEYWORDS);
+                    }
+
+                    @Override
+                    public Object run() {
+                        return mGenerator.generateUrlString(HOSTNAME);
+                    }
+                },
+                new Benchmark("WebViewAdUrlGenerator.generateUrlString-uncached") {
+                    private WebViewAdUrlGenerator mGenerator;
+
+                    @Override
+                    public void setUp() {
+                        mGenerator = new WebViewAdUrlGenerator(context, false);
+                        mGenerator.withAdUnitId(AD_UNIT_ID).withKeywords(KEYWORDS);
+                    }
+
+                    @Override
+                    public Object run() {
+                        // As if the client metadata changed before every request
+                        AdUrlGenerator.clearEncodedParamsForTesting();
+                        return mGenerator.generateUrlString(HOSTNAME);
+                    }
+                },
+                new Benchmark("VastXmlPullParser.parse") {
+                    @Override
+                    public Object run() throws Exception {
+                        return VastXmlPullParser.parse(VAST_INLINE_XML);
+                    }
+                },
+                new Benchmark("VastXmlPullParser.parse-domReference") {
+                    @Override
+                    public Object run() throws Exception {
+                        return parseWithDom(VAST_INLINE_XML);
+                    }
+                },
+                new Benchmark("VastMacroHelper.getUris") {
+                    private final List<VastTracker> mTrackers = createMacroTrackers();
+
+                    @Override
+                    public Object run() {
+                        return VastMacroHelper.forTrackers(mTrackers)
+                                .withErrorCode(VastErrorCode.UNDEFINED_ERROR)
+                                .withContentPlayHead(12345)
+                                .withAssetUri(ASSET_URI)
+                                .getUris();
+                    }
+                },
+                new Benchmark("VastMacroHelper.getUris-regexReference") {
+                    private final List<String> mUrls = getUrls(createMacroTrackers());
+
+                    @Override
+                    public Object run() throws Exception {
+                        return expandWithRegex(mUrls, VastErrorCode.UNDEFINED_ERROR.getErrorCode(),
+                                12345, ASSET_URI);
+                    }
+                }
+        );
+    }
+
+    @NonNull
+    private static List<VastTracker> createMacroTrackers() {
+        final List<VastTracker> trackers = new ArrayList<VastTracker>();
+        for (int i = 0; i < MACRO_TRACKER_COUNT; i++) {
+            trackers.add(new VastTracker("https://track.mopub.com/event?id=" + i
+                    + "&error=[ERRORCODE]&cph=[CONTENTPLAYHEAD]&asset=[ASSETURI]"
+                    + "&cb=[CACHEBUSTING]"));
+        }
+        return trackers;
+    }
+
+    @NonNull
+    private static List<String> getUrls(@NonNull final List<VastTracker> trackers) {
+        final List<String> urls = new ArrayList<String>();
+        for (final VastTracker tracker : trackers) {
+            urls.add(tracker.getTrackingUrl());
+        }
+        return urls;
+    }
+
+    /**
+     * The macro expansion VastMacroHelper did before it used templates: a regular expression
+     * replacement per macro per URL, with the values formatted by String.format.
+     */
+    @NonNull
+    private static List<String> expandWithRegex(@NonNull final List<String> urls,
+            @NonNull final String errorCode, final int contentPlayHeadMS,
+            @NonNull final String assetUri) throws UnsupportedEncodingException {
+        final Map<VastMacro, String> macroDataMap = new HashMap<VastMacro, String>();
+        macroDataMap.put(VastMacro.CACHEBUSTING, String.format(Locale.US, "%08d",
+                Math.round(Math.random() * 100000000)));
+        macroDataMap.put(VastMacro.ERRORCODE, errorCode);
+        macroDataMap.put(VastMacro.CONTENTPLAYHEAD, String.format("%02d:%02d:%02d.%03d",
+                TimeUnit.MILLISECONDS.toHours(contentPlayHeadMS),
+                TimeUnit.MILLISECONDS.toMinutes(contentPlayHeadMS) % TimeUnit.HOURS.toMinutes(1),
+                TimeUnit.MILLISECONDS.toSeconds(contentPlayHeadMS) % TimeUnit.MINUTES.toSeconds(1),
+                contentPlayHeadMS % 1000));
+        macroDataMap.put(VastMacro.ASSETURI, URLEncoder.encode(assetUri, "UTF-8"));
+
+        final List<String> modifiedUrls = new ArrayList<String>();
+        for (final String url : urls) {
+            String modifiedUrl = url;
+            for (final VastMacro vastMacro : VastMacro.values()) {
+                String value = macroDataMap.get(vastMacro);
+                if (value == null) {
+                    value = "";
+                }
+                modifiedUrl = modifiedUrl.replaceAll("\\[" + vastMacro.name() + "\\]", value);
+            }
+            modifiedUrls.add(modifiedUrl);
+        }
+        return modifiedUrls;
+    }
+
+    /**
+     * The parse VastXmlManagerAggregator did before it used VastXmlPullParser: a DOM tree of the
+     * whole document, wrapped in a root element and without its XML declaration.
+     */
+    @NonNull
+    private static Document parseWithDom(@NonNull final String xml) throws Exception {
+        final String documentString = "<MPMoVideoXMLDocRoot>"
+                + xml.replaceFirst("<\\?.*\\?>", "") + "</MPMoVideoXMLDocRoot>";
+
+        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setCoalescing(true);
+        final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        return documentBuilder.parse(new InputSource(new StringReader(documentString)));
+    }
+
+    private static final String VAST_INLINE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<VAST version=\"3.0\">" +
+            "<Ad id=\"62833\" sequence=\"1\">" +
+            "<InLine>" +
+            "<AdSystem version=\"1.0\">MoPub</AdSystem>" +
+            "<AdTitle>Benchmark Video</AdTitle>" +
+            "<Error><![CDATA[https://track.mopub.com/error?code=[ERRORCODE]]]></Error>" +
+            "<Impression><![CDATA[https://track.mopub.com/imp1]]></Impression>" +
+            "<Impression><![CDATA[https://track.mopub.com/imp2]]></Impression>" +
+            "<Creatives>" +
+            "<Creative AdID=\"601364\">" +
+            "<Linear skipoffset=\"00:00:05\">" +
+            "<Duration>00:00:30</Duration>" +
+            "<TrackingEvents>" +
+            "<Tracking event=\"creativeView\"><![CDATA[https://track.mopub.com/creativeView]]></Tracking>" +
+            "<Tracking event=\"start\"><![CDATA[https://track.mopub.com/start]]></Tracking>" +
+            "<Tracking event=\"firstQuartile\"><![CDATA[https://track.mopub.com/firstQuartile]]></Tracking>" +
+            "<Tracking event=\"midpoint\"><![CDATA[https://track.mopub.com/midpoint]]></Tracking>" +
+            "<Tracking event=\"thirdQuartile\"><![CDATA[https://track.mopub.com/thirdQuartile]]></Tracking>" +
+            "<Tracking event=\"complete\"><![CDATA[https://track.mopub.com/complete]]></Tracking>" +
+            "<Tracking event=\"progress\" offset=\"00:00:10\"><![CDATA[https://track.mopub.com/progress10]]></Tracking>" +
+            "<Tracking event=\"progress\" offset=\"25%\"><![CDATA[https://track.mopub.com/progress25]]></Tracking>" +
+            "<Tracking event=\"pause\"><![CDATA[https://track.mopub.com/pause]]></Tracking>" +
+            "<Tracking event=\"resume\"><![CDATA[https://track.mopub.com/resume]]></Tracking>" +
+            "<Tracking event=\"close\"><![CDATA[https://track.mopub.com/close]]></Tracking>" +
+            "<Tracking event=\"skip\"><![CDATA[https://track.mopub.com/skip]]></Tracking>" +
+            "</TrackingEvents>" +
+            "<VideoClicks>" +
+            "<ClickThrough><![CDATA[https://www.mopub.com/clickthrough]]></ClickThrough>" +
+            "<ClickTracking><![CDATA[https://track.mopub.com/click1]]></ClickTracking>" +
+            "<ClickTracking><![CDATA[https://track.mopub.com/click2]]></ClickTracking>" +
+            "</VideoClicks>" +
+            "<MediaFiles>" +
+            "<MediaFile delivery=\"progressive\" type=\"video/mp4\" bitrate=\"500\" width=\"640\" height=\"360\"><![CDATA[https://cdn.mopub.com/video_640.mp4]]></MediaFile>" +
+            "<MediaFile delivery=\"progressive\" type=\"video/mp4\" bitrate=\"1000\" width=\"1280\" height=\"720\"><![CDATA[https://cdn.mopub.com/video_1280.mp4]]></MediaFile>" +
+            "<MediaFile delivery=\"progressive\" type=\"video/3gpp\" bitrate=\"300\" width=\"320\" height=\"180\"><![CDATA[https://cdn.mopub.com/video_320.3gp]]></MediaFile>" +
+            "</MediaFiles>" +
+            "<Icons>" +
+            "<Icon program=\"adchoices\" width=\"40\" height=\"40\" xPosition=\"right\" yPosition=\"top\" offset=\"00:00:00\" duration=\"00:00:30\">" +
+            "<StaticResource creativeType=\"image/png\"><![CDATA[https://cdn.mopub.com/adchoices.png]]></StaticResource>" +
+            "<IconClicks><IconClickThrough><![CDATA[https://www.mopub.com/optout]]></IconClickThrough></IconClicks>" +
+            "<IconViewTracking><![CDATA[https://track.mopub.com/iconview]]></IconViewTracking>" +
+            "</Icon>" +
+            "</Icons>" +
+            "</Linear>" +
+            "</Creative>" +
+            "<Creative AdID=\"601365\">" +
+            "<CompanionAds>" +
+            "<Companion width=\"300\" height=\"250\">" +
+            "<StaticResource creativeType=\"image/jpeg\"><![CDATA[https://cdn.mopub.com/companion_300x250.jpg]]></StaticResource>" +
+            "<TrackingEvents><Tracking event=\"creativeView\"><![CDATA[https://track.mopub.com/companionView]]></Tracking></TrackingEvents>" +
+            "<CompanionClickThrough><![CDATA[https://www.mopub.com/companion]]></CompanionClickThrough>" +
+            "</Companion>" +
+            "<Companion width=\"728\" height=\"90\">" +
+            "<HTMLResource><![CDATA[<html><body><a href=\"https://www.mopub.com\">MoPub</a></body></html>]]></HTMLResource>" +
+            "</Companion>" +
+            "</CompanionAds>" +
+            "</Creative>" +
+            "</Creatives>" +
+            "<Extensions>" +
+            "<Extension type=\"MoPub\"><MoPubCtaText>Learn More</MoPubCtaText></Extension>" +
+            "</Extensions>" +
+            "</InLine>" +
+            "</Ad>" +
+            "</VAST>";
+}
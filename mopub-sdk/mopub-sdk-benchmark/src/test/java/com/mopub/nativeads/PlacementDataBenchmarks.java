@@ -0,0 +1,148 @@
+package com.mopub.nativeads;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.benchmark.Benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Benchmarks of the position mapping done by {@link PlacementData} for every item of a stream.
+ */
+public class PlacementDataBenchmarks {
+    private static final int ITEM_COUNT = 1000;
+    private static final int LARGE_ITEM_COUNT = 10000;
+    private static final int PAGE_SIZE = 50;
+    private static final int REPEAT_INTERVAL = 5;
+
+    @NonNull
+    public static List<Benchmark> create() {
+        return Arrays.asList(
+                new Benchmark("PlacementData.getAdjustedPosition") {
+                    private PlacementData mPlacementData;
+
+                    @Override
+                    public void setUp() {
+                        mPlacementData = createFilledPlacementData(ITEM_COUNT);
+                    }
+
+                    @Override
+                    public Object run() {
+                        int sum = 0;
+                        for (int i = 0; i < ITEM_COUNT; i++) {
+                            sum += mPlacementData.getAdjustedPosition(i);
+                        }
+                        return sum;
+                    }
+                },
+                new Benchmark("PlacementData.getOriginalPosition") {
+                    private PlacementData mPlacementData;
+                    private int mAdjustedCount;
+
+                    @Override
+                    public void setUp() {
+                        mPlacementData = createFilledPlacementData(ITEM_COUNT);
+                        mAdjustedCount = mPlacementData.getAdjustedCount(ITEM_COUNT);
+                    }
+
+                    @Override
+                    public Object run() {
+                        int sum = 0;
+                        for (int i = 0; i < mAdjustedCount; i++) {
+                            sum += mPlacementData.getOriginalPosition(i);
+                        }
+                        return sum;
+                    }
+                },
+                new Benchmark("PlacementData.insertItem+removeItem") {
+                    private PlacementData mPlacementData;
+
+                    @Override
+                    public void setUp() {
+                        mPlacementData = createFilledPlacementData(ITEM_COUNT);
+                    }
+
+                    @Override
+                    public Object run() {
+                        mPlacementData.insertItem(ITEM_COUNT / 2);
+                        mPlacementData.removeItem(ITEM_COUNT / 2);
+                        return mPlacementData;
+                    }
+                },
+                new Benchmark("PlacementData.getAdjustedPosition-10000") {
+                    private PlacementData mPlacementData;
+
+                    @Override
+                    public void setUp() {
+                        mPlacementData = createFilledPlacementData(LARGE_ITEM_COUNT);
+                    }
+
+                    @Override
+                    public Object run() {
+                        int sum = 0;
+                        for (int i = 0; i < LARGE_ITEM_COUNT; i++) {
+                            sum += mPlacementData.getAdjustedPosition(i);
+                        }
+                        return sum;
+                    }
+                },
+                new Benchmark("PlacementData.insertItems+removeItems-page") {
+                    private PlacementData mPlacementData;
+
+                    @Override
+                    public void setUp() {
+                        mPlacementData = createFilledPlacementData(LARGE_ITEM_COUNT);
+                    }
+
+                    @Override
+                    public Object run() {
+                        mPlacementData.insertItems(LARGE_ITEM_COUNT / 2, PAGE_SIZE);
+                        mPlacementData.removeItems(LARGE_ITEM_COUNT / 2, PAGE_SIZE);
+                        return mPlacementData;
+                    }
+                },
+                new Benchmark("PlacementData.insertItem+removeItem-page") {
+                    private PlacementData mPlacementData;
+
+                    @Override
+                    public void setUp() {
+                        mPlacementData = createFilledPlacementData(LARGE_ITEM_COUNT);
+                    }
+
+                    @Override
+                    public Object run() {
+                        for (int i = 0; i < PAGE_SIZE; i++) {
+                            mPlacementData.insertItem(LARGE_ITEM_COUNT / 2);
+                        }
+                        for (int i = 0; i < PAGE_SIZE; i++) {
+                            mPlacementData.removeItem(LARGE_ITEM_COUNT / 2);
+                        }
+                        return mPlacementData;
+                    }
+                }
+        );
+    }
+
+    /**
+     * Returns placement data with an ad placed at every desired position within the first
+     * {@code itemCount} items.
+     */
+    @NonNull
+    private static PlacementData createFilledPlacementData(final int itemCount) {
+        final PlacementData placementData = PlacementData.fromAdPositioning(
+                MoPubNativeAdPositioning.clientPositioning()
+                        .addFixedPosition(1)
+                        .enableRepeatingPositions(REPEAT_INTERVAL));
+        final NativeAd nativeAd = mock(NativeAd.class);
+        int position = placementData.nextInsertionPosition(-1);
+        while (position != PlacementData.NOT_FOUND
+                && position < placementData.getAdjustedCount(itemCount)) {
+            placementData.placeAd(position, nativeAd);
+            position = placementData.nextInsertionPosition(position);
+        }
+        return placementData;
+    }
+}
@@ -15,6 +15,7 @@ import com.mopub.common.CloseableLayout.OnCloseListener;
 import com.mopub.common.DataKeys;
 
 import static com.mopub.common.DataKeys.BROADCAST_IDENTIFIER_KEY;
+import static com.mopub.common.DataKeys.HTML_RESPONSE_BODY_KEY;
 
 abstract class BaseInterstitialActivity extends Activity {
     protected AdReport mAdReport;
@@ -41,6 +42,7 @@ abstract class BaseInterstitialActivity extends Activity {
 
     private CloseableLayout mCloseableLayout;
     private Long mBroadcastIdentifier;
+    private boolean mIsDestroyed;
 
     public abstract View getAdView();
 
@@ -55,8 +57,6 @@ abstract class BaseInterstitialActivity extends Activity {
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN);
 
-        View adView = getAdView();
-
         mCloseableLayout = new CloseableLayout(this);
         mCloseableLayout.setOnCloseListener(new OnCloseListener() {
             @Override
@@ -64,21 +64,66 @@ abstract class BaseInterstitialActivity extends Activity {
                 finish();
             }
         });
-        mCloseableLayout.addView(adView,
-                new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
         setContentView(mCloseableLayout);
+
+        if (mBroadcastIdentifier != null && HtmlPayloadRegistry.get(mBroadcastIdentifier) == null
+                && !intent.hasExtra(HTML_RESPONSE_BODY_KEY)) {
+            // The process was restarted since this interstitial was started, so read its creative
+            // back from disk before creating the ad view
+            HtmlPayloadRegistry.load(this, mBroadcastIdentifier,
+                    new HtmlPayloadRegistry.LoadListener() {
+                        @Override
+                        public void onLoaded(@Nullable final String htmlData) {
+                            if (!mIsDestroyed) {
+                                addAdView();
+                            }
+                        }
+                    });
+        } else {
+            addAdView();
+        }
     }
 
     @Override
     protected void onDestroy() {
+        mIsDestroyed = true;
         mCloseableLayout.removeAllViews();
         super.onDestroy();
     }
 
+    private void addAdView() {
+        mCloseableLayout.addView(getAdView(),
+                new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    }
+
     Long getBroadcastIdentifier() {
         return mBroadcastIdentifier;
     }
 
+    /**
+     * Returns the HTML creative handed off for this interstitial through the
+     * {@link HtmlPayloadRegistry}, or the one in the Intent if it was started that way.
+     */
+    @Nullable
+    protected String getHtmlPayload() {
+        if (mBroadcastIdentifier != null) {
+            final String htmlData = HtmlPayloadRegistry.get(mBroadcastIdentifier);
+            if (htmlData != null) {
+                return htmlData;
+            }
+        }
+        return getIntent().getStringExtra(HTML_RESPONSE_BODY_KEY);
+    }
+
+    /**
+     * Drops the HTML creative of this interstitial once it won't be shown again.
+     */
+    protected void removeHtmlPayload() {
+        if (mBroadcastIdentifier != null) {
+            HtmlPayloadRegistry.remove(mBroadcastIdentifier);
+        }
+    }
+
     protected void showInterstitialCloseButton() {
         mCloseableLayout.setCloseVisible(true);
     }
@@ -31,7 +31,8 @@ public class HtmlInterstitial extends ResponseBodyInterstitial {
 
     @Override
     protected void preRenderHtml(CustomEventInterstitialListener customEventInterstitialListener) {
-        MoPubActivity.preRenderHtml(mContext, mAdReport, customEventInterstitialListener, mHtmlData);
+        MoPubActivity.preRenderHtml(mContext, mAdReport, customEventInterstitialListener, mHtmlData,
+                mBroadcastIdentifier);
     }
 
     @Override
@@ -40,4 +41,12 @@ public class HtmlInterstitial extends ResponseBodyInterstitial {
                 mRedirectUrl, mClickthroughUrl, mOrientation,
                 mBroadcastIdentifier);
     }
+
+    @Override
+    public void onInvalidate() {
+        if (mContext != null) {
+            PreRenderedWebViewCache.getInstance(mContext).remove(mBroadcastIdentifier);
+        }
+        super.onInvalidate();
+    }
 }
@@ -0,0 +1,189 @@
+package com.mopub.mobileads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.BackgroundExecutor;
+import com.mopub.common.CacheService;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Hands HTML creatives from an interstitial to the activity that shows it without putting them in
+ * the Intent. Large creatives marshalled through Binder slow down starting the activity and may
+ * fail with a TransactionTooLargeException.
+ *
+ * Payloads are keyed by the broadcast identifier of the interstitial, which is already in the
+ * Intent. They are kept in memory and also written to the disk cache, so an activity that is
+ * recreated after its process was killed can still find its creative with
+ * {@link #load(Context, long, LoadListener)}. All disk cache work happens on a background thread,
+ * in the order it was requested.
+ */
+public class HtmlPayloadRegistry {
+    /**
+     * Called on the UI thread once a payload has been read back from the disk cache.
+     */
+    public interface LoadListener {
+        void onLoaded(@Nullable String htmlData);
+    }
+
+    @VisibleForTesting static final String DISK_CACHE_KEY_PREFIX = "mopub-html-payload-";
+    private static final String CHARSET = "UTF-8";
+
+    @NonNull private static final Map<Long, String> sPayloads = new HashMap<Long, String>();
+    @Nullable private static Executor sExecutor;
+
+    private HtmlPayloadRegistry() {
+    }
+
+    /**
+     * Stores the HTML for the interstitial with the given broadcast identifier, replacing any
+     * previous payload for it. The payload is written to the disk cache in the background.
+     */
+    public static void put(@NonNull final Context context, final long broadcastIdentifier,
+            @NonNull final String htmlData) {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(htmlData);
+
+        synchronized (sPayloads) {
+            sPayloads.put(broadcastIdentifier, htmlData);
+        }
+
+        final Context applicationContext = context.getApplicationContext();
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!CacheService.initializeDiskCache(applicationContext)) {
+                    return;
+                }
+                try {
+                    CacheService.putToDiskCache(getDiskCacheKey(broadcastIdentifier),
+                            htmlData.getBytes(CHARSET));
+                } catch (UnsupportedEncodingException e) {
+                    MoPubLog.d("Unable to write HTML payload to disk cache", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the HTML for the interstitial with the given broadcast identifier if it is in
+     * memory, or null otherwise. This never reads from disk.
+     */
+    @Nullable
+    public static String get(final long broadcastIdentifier) {
+        synchronized (sPayloads) {
+            return sPayloads.get(broadcastIdentifier);
+        }
+    }
+
+    /**
+     * Reads the HTML for the interstitial with the given broadcast identifier back from the disk
+     * cache in the background, for when it isn't in memory because the process was restarted.
+     * The payload is kept in memory again if found, and passed to the listener on the UI thread.
+     */
+    public static void load(@NonNull final Context context, final long broadcastIdentifier,
+            @NonNull final LoadListener listener) {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(listener);
+
+        final Context applicationContext = context.getApplicationContext();
+        final Handler handler = new Handler(Looper.getMainLooper());
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final String htmlData = read(applicationContext, broadcastIdentifier);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onLoaded(htmlData);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops the HTML for the interstitial with the given broadcast identifier from memory and,
+     * in the background, from the disk cache.
+     */
+    public static void remove(final long broadcastIdentifier) {
+        synchronized (sPayloads) {
+            sPayloads.remove(broadcastIdentifier);
+        }
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                CacheService.removeFromDiskCache(getDiskCacheKey(broadcastIdentifier));
+            }
+        });
+    }
+
+    @Nullable
+    private static String read(@NonNull final Context context, final long broadcastIdentifier) {
+        final String inMemoryHtmlData = get(broadcastIdentifier);
+        if (inMemoryHtmlData != null) {
+            return inMemoryHtmlData;
+        }
+
+        if (!CacheService.initializeDiskCache(context)) {
+            return null;
+        }
+        final byte[] bytes = CacheService.getFromDiskCache(getDiskCacheKey(broadcastIdentifier));
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            final String htmlData = new String(bytes, CHARSET);
+            synchronized (sPayloads) {
+                sPayloads.put(broadcastIdentifier, htmlData);
+            }
+            return htmlData;
+        } catch (UnsupportedEncodingException e) {
+            MoPubLog.d("Unable to read HTML payload from disk cache", e);
+            return null;
+        }
+    }
+
+    @NonNull
+    private static String getDiskCacheKey(final long broadcastIdentifier) {
+        return DISK_CACHE_KEY_PREFIX + broadcastIdentifier;
+    }
+
+    @NonNull
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            // One task at a time, so a payload is never removed from disk before it is written
+            sExecutor = BackgroundExecutor.newSerialExecutor();
+        }
+        return sExecutor;
+    }
+
+    @VisibleForTesting
+    public static synchronized void setExecutorForTesting(@Nullable final Executor executor) {
+        sExecutor = executor;
+    }
+
+    @VisibleForTesting
+    static int size() {
+        synchronized (sPayloads) {
+            return sPayloads.size();
+        }
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        synchronized (sPayloads) {
+            sPayloads.clear();
+        }
+    }
+}
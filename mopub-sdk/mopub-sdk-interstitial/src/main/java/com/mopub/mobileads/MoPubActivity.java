@@ -4,6 +4,7 @@ import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.annotation.Nullable;
 import android.util.Log;
 import android.view.View;
 import android.webkit.WebView;
@@ -13,6 +14,7 @@ import com.mopub.common.AdReport;
 import com.mopub.common.CreativeOrientation;
 import com.mopub.common.DataKeys;
 import com.mopub.common.util.DeviceUtils;
+import com.mopub.common.util.VersionCode;
 import com.mopub.mobileads.factories.HtmlInterstitialWebViewFactory;
 
 import java.io.Serializable;
@@ -21,7 +23,6 @@ import static com.mopub.common.DataKeys.AD_REPORT_KEY;
 import static com.mopub.common.DataKeys.BROADCAST_IDENTIFIER_KEY;
 import static com.mopub.common.DataKeys.CLICKTHROUGH_URL_KEY;
 import static com.mopub.common.DataKeys.CREATIVE_ORIENTATION_KEY;
-import static com.mopub.common.DataKeys.HTML_RESPONSE_BODY_KEY;
 import static com.mopub.common.DataKeys.REDIRECT_URL_KEY;
 import static com.mopub.common.DataKeys.SCROLLABLE_KEY;
 import static com.mopub.mobileads.BaseInterstitialActivity.JavaScriptWebViewCallbacks.WEB_VIEW_DID_APPEAR;
@@ -47,14 +48,19 @@ public class MoPubActivity extends BaseInterstitialActivity {
             context.startActivity(intent);
         } catch (ActivityNotFoundException anfe) {
             Log.d("MoPubActivity", "MoPubActivity not found - did you declare it in AndroidManifest.xml?");
+            // No activity will ever take the creative
+            HtmlPayloadRegistry.remove(broadcastIdentifier);
         }
     }
 
     static Intent createIntent(Context context,
             String htmlData, AdReport adReport, boolean isScrollable, String redirectUrl,
             String clickthroughUrl, CreativeOrientation orientation, long broadcastIdentifier) {
+        if (htmlData != null) {
+            HtmlPayloadRegistry.put(context, broadcastIdentifier, htmlData);
+        }
+
         Intent intent = new Intent(context, MoPubActivity.class);
-        intent.putExtra(HTML_RESPONSE_BODY_KEY, htmlData);
         intent.putExtra(SCROLLABLE_KEY, isScrollable);
         intent.putExtra(CLICKTHROUGH_URL_KEY, clickthroughUrl);
         intent.putExtra(REDIRECT_URL_KEY, redirectUrl);
@@ -67,9 +73,11 @@ public class MoPubActivity extends BaseInterstitialActivity {
 
     static void preRenderHtml(final Context context, final AdReport adReport,
             final CustomEventInterstitialListener customEventInterstitialListener,
-            final String htmlData) {
-        final HtmlInterstitialWebView dummyWebView = HtmlInterstitialWebViewFactory.create(context,
-                adReport, customEventInterstitialListener, false, null, null);
+            final String htmlData, final long broadcastIdentifier) {
+        // The rendered WebView may outlive the activity that loaded the interstitial
+        final HtmlInterstitialWebView dummyWebView = HtmlInterstitialWebViewFactory.create(
+                context.getApplicationContext(), adReport, customEventInterstitialListener, false,
+                null, null);
 
         dummyWebView.enablePlugins(false);
         dummyWebView.enableJavascriptCaching();
@@ -78,14 +86,20 @@ public class MoPubActivity extends BaseInterstitialActivity {
             @Override
             public boolean shouldOverrideUrlLoading(WebView view, String url) {
                 if (MOPUB_FINISH_LOAD.equals(url)) {
-                    customEventInterstitialListener.onInterstitialLoaded();
+                    // The interstitial may have been invalidated while the creative was loading
+                    if (PreRenderedWebViewCache.getInstance(context).put(broadcastIdentifier,
+                            dummyWebView)) {
+                        customEventInterstitialListener.onInterstitialLoaded();
+                    }
                 } else if (MOPUB_FAIL_LOAD.equals(url)) {
+                    PreRenderedWebViewCache.getInstance(context).remove(broadcastIdentifier);
                     customEventInterstitialListener.onInterstitialFailed(null);
                 }
 
                 return true;
             }
         });
+        PreRenderedWebViewCache.getInstance(context).startRendering(broadcastIdentifier);
         dummyWebView.loadHtmlResponse(htmlData);
     }
 
@@ -95,7 +109,21 @@ public class MoPubActivity extends BaseInterstitialActivity {
         boolean isScrollable = intent.getBooleanExtra(SCROLLABLE_KEY, false);
         String redirectUrl = intent.getStringExtra(REDIRECT_URL_KEY);
         String clickthroughUrl = intent.getStringExtra(CLICKTHROUGH_URL_KEY);
-        String htmlResponse = intent.getStringExtra(HTML_RESPONSE_BODY_KEY);
+
+        mHtmlInterstitialWebView = takePreRenderedWebView();
+        if (mHtmlInterstitialWebView != null) {
+            // The creative has already loaded, so the interstitial appears right away
+            mHtmlInterstitialWebView.init(new BroadcastingInterstitialListener(), isScrollable,
+                    redirectUrl, clickthroughUrl,
+                    mAdReport != null ? mAdReport.getDspCreativeId() : null);
+            if (VersionCode.currentApiLevel().isAtLeast(VersionCode.ICE_CREAM_SANDWICH)) {
+                mHtmlInterstitialWebView.enablePlugins(true);
+            }
+            mHtmlInterstitialWebView.loadUrl(WEB_VIEW_DID_APPEAR.getUrl());
+            return mHtmlInterstitialWebView;
+        }
+
+        String htmlResponse = getHtmlPayload();
 
         mHtmlInterstitialWebView = HtmlInterstitialWebViewFactory.create(getApplicationContext(), mAdReport, new BroadcastingInterstitialListener(), isScrollable, redirectUrl, clickthroughUrl);
         mHtmlInterstitialWebView.loadHtmlResponse(htmlResponse);
@@ -103,6 +131,16 @@ public class MoPubActivity extends BaseInterstitialActivity {
         return mHtmlInterstitialWebView;
     }
 
+    @Nullable
+    private HtmlInterstitialWebView takePreRenderedWebView() {
+        final Long broadcastIdentifier = getBroadcastIdentifier();
+        if (broadcastIdentifier == null) {
+            return null;
+        }
+        return PreRenderedWebViewCache.getInstance(this).take(broadcastIdentifier,
+                HtmlInterstitialWebView.class);
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -121,8 +159,14 @@ public class MoPubActivity extends BaseInterstitialActivity {
 
     @Override
     protected void onDestroy() {
-        mHtmlInterstitialWebView.loadUrl(WEB_VIEW_DID_CLOSE.getUrl());
-        mHtmlInterstitialWebView.destroy();
+        // Null if destroyed while the creative was still being read from disk
+        if (mHtmlInterstitialWebView != null) {
+            mHtmlInterstitialWebView.loadUrl(WEB_VIEW_DID_CLOSE.getUrl());
+            mHtmlInterstitialWebView.destroy();
+        }
+        if (isFinishing()) {
+            removeHtmlPayload();
+        }
         broadcastAction(this, getBroadcastIdentifier(), ACTION_INTERSTITIAL_DISMISS);
         super.onDestroy();
     }
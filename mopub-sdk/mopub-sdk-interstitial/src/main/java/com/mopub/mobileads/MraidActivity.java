@@ -28,7 +28,6 @@ import com.mopub.network.Networking;
 
 import static com.mopub.common.DataKeys.AD_REPORT_KEY;
 import static com.mopub.common.DataKeys.BROADCAST_IDENTIFIER_KEY;
-import static com.mopub.common.DataKeys.HTML_RESPONSE_BODY_KEY;
 import static com.mopub.mobileads.BaseInterstitialActivity.JavaScriptWebViewCallbacks.WEB_VIEW_DID_APPEAR;
 import static com.mopub.mobileads.BaseInterstitialActivity.JavaScriptWebViewCallbacks.WEB_VIEW_DID_CLOSE;
 import static com.mopub.common.IntentActions.ACTION_INTERSTITIAL_CLICK;
@@ -44,7 +43,9 @@ public class MraidActivity extends BaseInterstitialActivity {
     public static void preRenderHtml(@NonNull final Context context,
             @NonNull final CustomEventInterstitialListener customEventInterstitialListener,
             @NonNull final String htmlData) {
-        preRenderHtml(customEventInterstitialListener, htmlData, new BaseWebView(context));
+        preRenderHtml(customEventInterstitialListener, htmlData,
+                WebViewPool.getInstance(context).obtain(BaseWebView.class,
+                        WebViewPool.BASE_WEB_VIEW_FACTORY));
     }
 
     @VisibleForTesting
@@ -85,14 +86,17 @@ public class MraidActivity extends BaseInterstitialActivity {
             context.startActivity(intent);
         } catch (ActivityNotFoundException exception) {
             Log.d("MraidInterstitial", "MraidActivity.class not found. Did you declare MraidActivity in your manifest?");
+            // No activity will ever take the creative
+            HtmlPayloadRegistry.remove(broadcastIdentifier);
         }
     }
 
     @VisibleForTesting
     protected static Intent createIntent(@NonNull Context context, @Nullable AdReport adReport,
             @NonNull String htmlData, long broadcastIdentifier) {
+        HtmlPayloadRegistry.put(context, broadcastIdentifier, htmlData);
+
         Intent intent = new Intent(context, MraidActivity.class);
-        intent.putExtra(HTML_RESPONSE_BODY_KEY, htmlData);
         intent.putExtra(BROADCAST_IDENTIFIER_KEY, broadcastIdentifier);
         intent.putExtra(AD_REPORT_KEY, adReport);
         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -101,7 +105,7 @@ public class MraidActivity extends BaseInterstitialActivity {
 
     @Override
     public View getAdView() {
-        String htmlData = getIntent().getStringExtra(HTML_RESPONSE_BODY_KEY);
+        String htmlData = getHtmlPayload();
         if (htmlData == null) {
             MoPubLog.w("MraidActivity received a null HTML body. Finishing the activity.");
             finish();
@@ -194,6 +198,9 @@ public class MraidActivity extends BaseInterstitialActivity {
         if (mMraidController != null) {
             mMraidController.destroy();
         }
+        if (isFinishing()) {
+            removeHtmlPayload();
+        }
 
         broadcastAction(this, getBroadcastIdentifier(), ACTION_INTERSTITIAL_DISMISS);
         super.onDestroy();
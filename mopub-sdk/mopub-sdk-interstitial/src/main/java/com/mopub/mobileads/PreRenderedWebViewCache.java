@@ -0,0 +1,222 @@
+package com.mopub.mobileads;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.util.VersionCode;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds interstitial WebViews that finished loading their creative in the background, so that
+ * the activity showing the interstitial can add the already rendered WebView to its layout
+ * instead of loading the creative a second time.
+ *
+ * WebViews are keyed by the broadcast identifier of their interstitial and can be taken only
+ * once. An interstitial must call {@link #startRendering(long)} before its WebView is put, and a
+ * WebView that finishes loading after its interstitial was removed is destroyed instead. The cache destroys WebViews that are older than {@link #EXPIRATION_TIME_MILLIS}, the
+ * least recently added ones beyond {@link #MAX_ENTRIES}, and all of them when memory runs low.
+ *
+ * The cache must only be used on the main thread.
+ */
+public class PreRenderedWebViewCache {
+    @VisibleForTesting static final int MAX_ENTRIES = 2;
+    @VisibleForTesting static final long EXPIRATION_TIME_MILLIS = 4 * 60 * 60 * 1000; // 4 hours
+
+    @Nullable private static PreRenderedWebViewCache sInstance;
+
+    @NonNull private final LinkedHashMap<Long, Entry> mEntries = new LinkedHashMap<Long, Entry>();
+    /**
+     * The broadcast identifiers of the interstitials whose WebViews are still loading.
+     */
+    @NonNull private final Set<Long> mRenderingIdentifiers = new HashSet<Long>();
+
+    private long mHitCount;
+    private long mMissCount;
+
+    @VisibleForTesting
+    PreRenderedWebViewCache(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        if (VersionCode.currentApiLevel().isAtLeast(VersionCode.ICE_CREAM_SANDWICH)) {
+            registerTrimCallbacks(context.getApplicationContext());
+        }
+    }
+
+    @NonNull
+    public static PreRenderedWebViewCache getInstance(@NonNull final Context context) {
+        if (sInstance == null) {
+            sInstance = new PreRenderedWebViewCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Marks the interstitial with the given broadcast identifier as loading its WebView, so the
+     * WebView can be put once it finishes loading.
+     */
+    public void startRendering(final long broadcastIdentifier) {
+        Preconditions.checkUiThread("WebViews must be rendered on the main thread");
+
+        mRenderingIdentifiers.add(broadcastIdentifier);
+    }
+
+    /**
+     * Adds a WebView that finished loading the creative of the interstitial with the given
+     * broadcast identifier. A WebView already cached for the same interstitial is destroyed.
+     *
+     * @return Will return {@code false} if the interstitial was removed while the WebView was
+     * loading. The WebView is destroyed in that case.
+     */
+    public boolean put(final long broadcastIdentifier, @NonNull final BaseWebView webView) {
+        Preconditions.checkNotNull(webView);
+        Preconditions.checkUiThread("WebViews must be cached on the main thread");
+
+        final Entry previousEntry = mEntries.get(broadcastIdentifier);
+        if (!mRenderingIdentifiers.remove(broadcastIdentifier)) {
+            if (previousEntry != null && previousEntry.mWebView == webView) {
+                return true;
+            }
+            webView.destroy();
+            return false;
+        }
+
+        mEntries.remove(broadcastIdentifier);
+        if (previousEntry != null && previousEntry.mWebView != webView) {
+            destroy(previousEntry);
+        }
+        removeExpired();
+        while (mEntries.size() >= MAX_ENTRIES) {
+            final Iterator<Entry> iterator = mEntries.values().iterator();
+            destroy(iterator.next());
+            iterator.remove();
+        }
+        mEntries.put(broadcastIdentifier, new Entry(webView, SystemClock.elapsedRealtime()));
+        return true;
+    }
+
+    /**
+     * Removes and returns the WebView rendered for the interstitial with the given broadcast
+     * identifier, or null if there is none of the given type or it expired. The caller owns the
+     * returned WebView and must destroy it.
+     */
+    @Nullable
+    public <T extends BaseWebView> T take(final long broadcastIdentifier,
+            @NonNull final Class<T> type) {
+        Preconditions.checkNotNull(type);
+        Preconditions.checkUiThread("WebViews must be taken on the main thread");
+
+        final Entry entry = mEntries.remove(broadcastIdentifier);
+        if (entry == null || isExpired(entry) || !type.isInstance(entry.mWebView)) {
+            destroy(entry);
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return type.cast(entry.mWebView);
+    }
+
+    /**
+     * Destroys the WebView rendered for the interstitial with the given broadcast identifier, if
+     * it is still cached. A WebView of that interstitial that is still loading is destroyed once
+     * it is put.
+     */
+    public void remove(final long broadcastIdentifier) {
+        mRenderingIdentifiers.remove(broadcastIdentifier);
+        destroy(mEntries.remove(broadcastIdentifier));
+    }
+
+    /**
+     * Destroys every cached WebView.
+     */
+    public void clear() {
+        for (final Entry entry : mEntries.values()) {
+            destroy(entry);
+        }
+        mEntries.clear();
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    @VisibleForTesting
+    int size() {
+        return mEntries.size();
+    }
+
+    private void removeExpired() {
+        final Iterator<Map.Entry<Long, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            if (isExpired(entry)) {
+                destroy(entry);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static boolean isExpired(@NonNull final Entry entry) {
+        return SystemClock.elapsedRealtime() - entry.mRenderedAtMillis >= EXPIRATION_TIME_MILLIS;
+    }
+
+    private static void destroy(@Nullable final Entry entry) {
+        if (entry != null) {
+            entry.mWebView.destroy();
+        }
+    }
+
+    @TargetApi(14)
+    private void registerTrimCallbacks(@NonNull final Context context) {
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(final int level) {
+                // Unlike idle WebViews, a rendered ad is kept when only the app's UI is hidden,
+                // since the app may show it as soon as the user comes back
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                        && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                    clear();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(final Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+        });
+    }
+
+    @VisibleForTesting
+    public static void clearForTesting() {
+        sInstance = null;
+    }
+
+    private static class Entry {
+        @NonNull final BaseWebView mWebView;
+        final long mRenderedAtMillis;
+
+        Entry(@NonNull final BaseWebView webView, final long renderedAtMillis) {
+            mWebView = webView;
+            mRenderedAtMillis = renderedAtMillis;
+        }
+    }
+}
@@ -252,6 +252,7 @@ public class MoPubCustomEventNative extends CustomEventNative {
         public void prepare(@NonNull final View view) {
             mImpressionTracker.addView(view, this);
             mNativeClickHandler.setOnClickListener(view, this);
+            mNativeClickHandler.preResolveClickDestinationUrl(getClickDestinationUrl());
         }
 
         @Override
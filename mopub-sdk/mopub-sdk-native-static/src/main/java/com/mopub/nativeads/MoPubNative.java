@@ -1,6 +1,8 @@
 package com.mopub.nativeads;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -8,6 +10,9 @@ import com.mopub.common.AdFormat;
 import com.mopub.common.Constants;
 import com.mopub.common.Preconditions;
 import com.mopub.common.VisibleForTesting;
+import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.Event;
+import com.mopub.common.event.MoPubEvents;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.util.DeviceUtils;
 import com.mopub.common.util.ManifestUtils;
@@ -17,10 +22,11 @@ import com.mopub.network.AdResponse;
 import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.Networking;
 import com.mopub.volley.NetworkResponse;
-import com.mopub.volley.RequestQueue;
 import com.mopub.volley.VolleyError;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -31,6 +37,7 @@ import static com.mopub.nativeads.NativeErrorCode.EMPTY_AD_RESPONSE;
 import static com.mopub.nativeads.NativeErrorCode.INVALID_REQUEST_URL;
 import static com.mopub.nativeads.NativeErrorCode.INVALID_RESPONSE;
 import static com.mopub.nativeads.NativeErrorCode.NATIVE_RENDERER_CONFIGURATION_ERROR;
+import static com.mopub.nativeads.NativeErrorCode.NETWORK_TIMEOUT;
 import static com.mopub.nativeads.NativeErrorCode.SERVER_ERROR_RESPONSE_CODE;
 import static com.mopub.nativeads.NativeErrorCode.UNSPECIFIED;
 
@@ -54,6 +61,15 @@ public class MoPubNative {
         }
     };
 
+    /**
+     * Time a custom event has to load an ad, unless its ad response specifies a timeout
+     */
+    static final int DEFAULT_NATIVE_TIMEOUT_DELAY = Constants.TEN_SECONDS_MILLIS;
+    /**
+     * Time a waterfall has to load an ad, from its first ad request on
+     */
+    static final int DEFAULT_WATERFALL_DEADLINE = Constants.THIRTY_SECONDS_MILLIS;
+
     // Highly recommended to be an Activity since 3rd party networks need it
     @NonNull private final WeakReference<Context> mContext;
     @NonNull private final String mAdUnitId;
@@ -61,10 +77,11 @@ public class MoPubNative {
 
     // For small sets TreeMap, takes up less memory than HashMap
     @NonNull private Map<String, Object> mLocalExtras = new TreeMap<String, Object>();
-    @NonNull private final AdRequest.Listener mVolleyListener;
-    @Nullable private AdRequest mNativeRequest;
     @NonNull AdRendererRegistry mAdRendererRegistry;
 
+    @NonNull private final Handler mHandler;
+    @NonNull private final List<Waterfall> mWaterfalls = new ArrayList<Waterfall>();
+
     public MoPubNative(@NonNull final Context context,
             @NonNull final String adUnitId,
             @NonNull final MoPubNativeNetworkListener moPubNativeNetworkListener) {
@@ -87,17 +104,7 @@ public class MoPubNative {
         mAdUnitId = adUnitId;
         mMoPubNativeNetworkListener = moPubNativeNetworkListener;
         mAdRendererRegistry = adRendererRegistry;
-        mVolleyListener = new AdRequest.Listener() {
-            @Override
-            public void onSuccess(@NonNull final AdResponse response) {
-                onAdLoad(response);
-            }
-
-            @Override
-            public void onErrorResponse(@NonNull final VolleyError volleyError) {
-                onAdError(volleyError);
-            }
-        };
+        mHandler = new Handler();
 
         // warm up cache for google play services info
         fetchAdvertisingInfoAsync(context, null);
@@ -114,10 +121,10 @@ public class MoPubNative {
 
     public void destroy() {
         mContext.clear();
-        if (mNativeRequest != null) {
-            mNativeRequest.cancel();
-            mNativeRequest = null;
+        for (final Waterfall waterfall : mWaterfalls) {
+            waterfall.cancel();
         }
+        mWaterfalls.clear();
         mMoPubNativeNetworkListener = EMPTY_NETWORK_LISTENER;
     }
 
@@ -139,22 +146,34 @@ public class MoPubNative {
 
     public void makeRequest(@Nullable final RequestParameters requestParameters,
             @Nullable Integer sequenceNumber) {
+        makeRequest(requestParameters, sequenceNumber, null);
+    }
+
+    /**
+     * Makes a request whose result goes to the given listener instead of the one this instance was
+     * created with, so that a caller with several requests in flight can tell them apart. Once
+     * this instance is destroyed, results go nowhere as usual.
+     */
+    void makeRequest(@Nullable final RequestParameters requestParameters,
+            @Nullable final Integer sequenceNumber,
+            @Nullable final MoPubNativeNetworkListener requestListener) {
         final Context context = getContextOrDestroy();
         if (context == null) {
             return;
         }
 
         if (!DeviceUtils.isNetworkAvailable(context)) {
-            mMoPubNativeNetworkListener.onNativeFail(CONNECTION_ERROR);
+            getListener(requestListener).onNativeFail(CONNECTION_ERROR);
             return;
         }
 
-        loadNativeAd(requestParameters, sequenceNumber);
+        loadNativeAd(requestParameters, sequenceNumber, requestListener);
     }
 
     private void loadNativeAd(
             @Nullable final RequestParameters requestParameters,
-            @Nullable final Integer sequenceNumber) {
+            @Nullable final Integer sequenceNumber,
+            @Nullable final MoPubNativeNetworkListener requestListener) {
         final Context context = getContextOrDestroy();
         if (context == null) {
             return;
@@ -174,105 +193,361 @@ public class MoPubNative {
             MoPubLog.d("Loading ad from: " + endpointUrl);
         }
 
-        requestNativeAd(endpointUrl);
+        requestNativeAd(endpointUrl, requestListener);
     }
 
     void requestNativeAd(@Nullable final String endpointUrl) {
+        requestNativeAd(endpointUrl, null);
+    }
+
+    private void requestNativeAd(@Nullable final String endpointUrl,
+            @Nullable final MoPubNativeNetworkListener requestListener) {
         final Context context = getContextOrDestroy();
         if (context == null) {
             return;
         }
 
         if (endpointUrl == null) {
-            mMoPubNativeNetworkListener.onNativeFail(INVALID_REQUEST_URL);
+            getListener(requestListener).onNativeFail(INVALID_REQUEST_URL);
             return;
         }
 
-        mNativeRequest = new AdRequest(endpointUrl, AdFormat.NATIVE, mAdUnitId, context, mVolleyListener);
-        RequestQueue requestQueue = Networking.getRequestQueue(context);
-        requestQueue.add(mNativeRequest);
+        new Waterfall(requestListener).start(endpointUrl);
     }
 
-    private void onAdLoad(@NonNull final AdResponse response) {
-        final Context context = getContextOrDestroy();
-        if (context == null) {
+    /**
+     * Loads an ad from a response that was received earlier, e.g. one restored from disk, without
+     * making an ad request.
+     */
+    void loadNativeAd(@NonNull final AdResponse response) {
+        Preconditions.checkNotNull(response);
+
+        new Waterfall(null).start(response);
+    }
+
+    @NonNull
+    private MoPubNativeNetworkListener getListener(
+            @Nullable final MoPubNativeNetworkListener requestListener) {
+        // After destroy() the listener is the empty one, which destroys loaded ads.
+        if (requestListener == null || mMoPubNativeNetworkListener == EMPTY_NETWORK_LISTENER) {
+            return mMoPubNativeNetworkListener;
+        }
+        return requestListener;
+    }
+
+    private void logCustomEventLatency(@NonNull final BaseEvent.Name name,
+            @NonNull final AdResponse response, final long durationMillis) {
+        if (!MoPubEvents.isSampled(response.getRequestId(), BaseEvent.SamplingRate.AD_REQUEST)) {
             return;
         }
-        final CustomEventNativeListener customEventNativeListener =
-                new CustomEventNativeListener() {
-                    @Override
-                    public void onNativeAdLoaded(@NonNull final BaseNativeAd nativeAd) {
-                        final Context context = getContextOrDestroy();
-                        if (context == null) {
-                            return;
+
+        MoPubEvents.log(
+                new Event.Builder(name, BaseEvent.Category.REQUESTS,
+                        BaseEvent.SamplingRate.AD_REQUEST.getSamplingRate())
+                        .withAdUnitId(mAdUnitId)
+                        .withDspCreativeId(response.getDspCreativeId())
+                        .withAdType(response.getAdType())
+                        .withAdNetworkType(response.getNetworkType())
+                        .withPerformanceDurationMs((double) durationMillis)
+                        .withRequestId(response.getRequestId())
+                        .build()
+        );
+    }
+
+    /**
+     * Goes down the waterfall of ad responses that starts at one ad request until a custom event
+     * loads an ad.
+     *
+     * Every custom event gets a limited time to load before the waterfall fails over, and the
+     * waterfall as a whole fails once its deadline has passed. While a custom event is loading,
+     * its failover response is already requested so that failing over doesn't wait for another
+     * round trip to the server.
+     */
+    private class Waterfall {
+        @Nullable private final MoPubNativeNetworkListener mRequestListener;
+        @NonNull private final Runnable mCustomEventTimeout;
+        @NonNull private final Runnable mDeadline;
+
+        @Nullable private AdRequest mAdRequest;
+        @Nullable private AdResponse mLoadingResponse;
+        private long mLoadStartMillis;
+
+        // Incremented for every custom event, so a failover request is only used by the custom
+        // event it was requested for.
+        private int mHop;
+        @Nullable private AdRequest mFailoverRequest;
+        @Nullable private AdResponse mFailoverResponse;
+        @Nullable private VolleyError mFailoverError;
+        private boolean mWaitingForFailover;
+
+        private boolean mFinished;
+
+        Waterfall(@Nullable final MoPubNativeNetworkListener requestListener) {
+            mRequestListener = requestListener;
+            mCustomEventTimeout = new Runnable() {
+                @Override
+                public void run() {
+                    if (mLoadingResponse != null) {
+                        MoPubLog.d("Custom event native timed out.");
+                        onCustomEventFailed(mLoadingResponse, NETWORK_TIMEOUT);
+                    }
+                }
+            };
+            mDeadline = new Runnable() {
+                @Override
+                public void run() {
+                    MoPubLog.d("Native ad waterfall did not load an ad within "
+                            + DEFAULT_WATERFALL_DEADLINE + " ms.");
+                    if (mLoadingResponse != null) {
+                        logCustomEventLatency(BaseEvent.Name.NATIVE_CUSTOM_EVENT_FAILED,
+                                mLoadingResponse, SystemClock.uptimeMillis() - mLoadStartMillis);
+                    }
+                    finish();
+                    getListener(mRequestListener).onNativeFail(NETWORK_TIMEOUT);
+                }
+            };
+        }
+
+        void start(@NonNull final String url) {
+            final Context context = getContextOrDestroy();
+            if (context == null) {
+                return;
+            }
+
+            begin();
+            mAdRequest = new AdRequest(url, AdFormat.NATIVE, mAdUnitId, context,
+                    new AdRequest.Listener() {
+                        @Override
+                        public void onSuccess(@NonNull final AdResponse response) {
+                            if (mFinished) {
+                                return;
+                            }
+                            mAdRequest = null;
+                            loadCustomEvent(response);
                         }
 
-                        MoPubAdRenderer renderer = mAdRendererRegistry.getRendererForAd(nativeAd);
-                        if (renderer == null) {
-                            onNativeAdFailed(NATIVE_RENDERER_CONFIGURATION_ERROR);
-                            return;
+                        @Override
+                        public void onErrorResponse(@NonNull final VolleyError volleyError) {
+                            if (mFinished) {
+                                return;
+                            }
+                            mAdRequest = null;
+                            fail(volleyError);
                         }
+                    });
+            Networking.getRequestQueue(context).add(mAdRequest);
+        }
 
-                        mMoPubNativeNetworkListener.onNativeLoad(new NativeAd(context,
-                                        response.getImpressionTrackingUrl(),
-                                        response.getClickTrackingUrl(),
-                                        mAdUnitId,
-                                        nativeAd,
-                                        renderer)
-                        );
-                    }
+        void start(@NonNull final AdResponse response) {
+            begin();
+            loadCustomEvent(response);
+        }
+
+        void cancel() {
+            mFinished = true;
+            mHandler.removeCallbacks(mCustomEventTimeout);
+            mHandler.removeCallbacks(mDeadline);
+            if (mAdRequest != null) {
+                mAdRequest.cancel();
+                mAdRequest = null;
+            }
+            if (mFailoverRequest != null) {
+                mFailoverRequest.cancel();
+                mFailoverRequest = null;
+            }
+            mLoadingResponse = null;
+            mFailoverResponse = null;
+            mFailoverError = null;
+        }
 
-                    @Override
-                    public void onNativeAdFailed(final NativeErrorCode errorCode) {
-                        MoPubLog.v(String.format("Native Ad failed to load with error: %s.", errorCode));
-                        requestNativeAd(response.getFailoverUrl());
+        private void begin() {
+            mWaterfalls.add(this);
+            mHandler.postDelayed(mDeadline, DEFAULT_WATERFALL_DEADLINE);
+        }
+
+        private void finish() {
+            cancel();
+            mWaterfalls.remove(this);
+        }
+
+        private void fail(@NonNull final VolleyError volleyError) {
+            finish();
+            onAdError(volleyError, getListener(mRequestListener));
+        }
+
+        private void loadCustomEvent(@NonNull final AdResponse response) {
+            final Context context = getContextOrDestroy();
+            if (context == null) {
+                return;
+            }
+
+            mHop++;
+            mLoadingResponse = response;
+            mLoadStartMillis = SystemClock.uptimeMillis();
+            final Integer adTimeoutMillis = response.getAdTimeoutMillis();
+            mHandler.postDelayed(mCustomEventTimeout,
+                    adTimeoutMillis != null && adTimeoutMillis > 0
+                            ? adTimeoutMillis
+                            : DEFAULT_NATIVE_TIMEOUT_DELAY);
+            requestFailover(response.getFailoverUrl());
+
+            CustomEventNativeAdapter.loadNativeAd(
+                    context,
+                    mLocalExtras,
+                    response,
+                    new CustomEventNativeListener() {
+                        @Override
+                        public void onNativeAdLoaded(@NonNull final BaseNativeAd nativeAd) {
+                            // The custom event timed out or the waterfall is over
+                            if (response != mLoadingResponse) {
+                                nativeAd.destroy();
+                                return;
+                            }
+                            onCustomEventLoaded(response, nativeAd);
+                        }
+
+                        @Override
+                        public void onNativeAdFailed(final NativeErrorCode errorCode) {
+                            if (response != mLoadingResponse) {
+                                return;
+                            }
+                            onCustomEventFailed(response, errorCode);
+                        }
                     }
-                };
+            );
+        }
 
-        CustomEventNativeAdapter.loadNativeAd(
-                context,
-                mLocalExtras,
-                response,
-                customEventNativeListener
-        );
+        private void onCustomEventLoaded(@NonNull final AdResponse response,
+                @NonNull final BaseNativeAd nativeAd) {
+            final Context context = getContextOrDestroy();
+            if (context == null) {
+                return;
+            }
+
+            final MoPubAdRenderer renderer = mAdRendererRegistry.getRendererForAd(nativeAd);
+            if (renderer == null) {
+                onCustomEventFailed(response, NATIVE_RENDERER_CONFIGURATION_ERROR);
+                return;
+            }
+
+            logCustomEventLatency(BaseEvent.Name.NATIVE_CUSTOM_EVENT_LOADED, response,
+                    SystemClock.uptimeMillis() - mLoadStartMillis);
+            finish();
+
+            final NativeAd moPubNativeAd = new NativeAd(context,
+                    response.getImpressionTrackingUrl(),
+                    response.getClickTrackingUrl(),
+                    mAdUnitId,
+                    nativeAd,
+                    renderer);
+            moPubNativeAd.setAdResponse(response);
+            getListener(mRequestListener).onNativeLoad(moPubNativeAd);
+        }
+
+        private void onCustomEventFailed(@NonNull final AdResponse response,
+                @NonNull final NativeErrorCode errorCode) {
+            MoPubLog.v(String.format("Native Ad failed to load with error: %s.", errorCode));
+            logCustomEventLatency(BaseEvent.Name.NATIVE_CUSTOM_EVENT_FAILED, response,
+                    SystemClock.uptimeMillis() - mLoadStartMillis);
+            mHandler.removeCallbacks(mCustomEventTimeout);
+            mLoadingResponse = null;
+
+            if (mFailoverResponse != null) {
+                final AdResponse failoverResponse = mFailoverResponse;
+                mFailoverResponse = null;
+                loadCustomEvent(failoverResponse);
+            } else if (mFailoverError != null) {
+                fail(mFailoverError);
+            } else if (mFailoverRequest != null) {
+                mWaitingForFailover = true;
+            } else {
+                finish();
+                getListener(mRequestListener).onNativeFail(INVALID_REQUEST_URL);
+            }
+        }
+
+        private void requestFailover(@Nullable final String failoverUrl) {
+            final Context context = getContextOrDestroy();
+            if (context == null || failoverUrl == null) {
+                return;
+            }
+
+            final int hop = mHop;
+            mFailoverRequest = new AdRequest(failoverUrl, AdFormat.NATIVE, mAdUnitId, context,
+                    new AdRequest.Listener() {
+                        @Override
+                        public void onSuccess(@NonNull final AdResponse response) {
+                            if (mFinished || hop != mHop) {
+                                return;
+                            }
+                            mFailoverRequest = null;
+                            if (mWaitingForFailover) {
+                                mWaitingForFailover = false;
+                                loadCustomEvent(response);
+                            } else {
+                                mFailoverResponse = response;
+                            }
+                        }
+
+                        @Override
+                        public void onErrorResponse(@NonNull final VolleyError volleyError) {
+                            if (mFinished || hop != mHop) {
+                                return;
+                            }
+                            mFailoverRequest = null;
+                            if (mWaitingForFailover) {
+                                mWaitingForFailover = false;
+                                fail(volleyError);
+                            } else {
+                                mFailoverError = volleyError;
+                            }
+                        }
+                    });
+            Networking.getRequestQueue(context).add(mFailoverRequest);
+        }
     }
 
     @VisibleForTesting
     void onAdError(@NonNull final VolleyError volleyError) {
+        onAdError(volleyError, mMoPubNativeNetworkListener);
+    }
+
+    private void onAdError(@NonNull final VolleyError volleyError,
+            @NonNull final MoPubNativeNetworkListener listener) {
         MoPubLog.d("Native ad request failed.", volleyError);
         if (volleyError instanceof MoPubNetworkError) {
             MoPubNetworkError error = (MoPubNetworkError) volleyError;
             switch (error.getReason()) {
                 case BAD_BODY:
-                    mMoPubNativeNetworkListener.onNativeFail(INVALID_RESPONSE);
+                    listener.onNativeFail(INVALID_RESPONSE);
                     return;
                 case BAD_HEADER_DATA:
-                    mMoPubNativeNetworkListener.onNativeFail(INVALID_RESPONSE);
+                    listener.onNativeFail(INVALID_RESPONSE);
                     return;
                 case WARMING_UP:
                     // Used for the sample app to signal a toast.
                     // This is not customer-facing except in the sample app.
                     MoPubLog.c(MoPubErrorCode.WARMUP.toString());
-                    mMoPubNativeNetworkListener.onNativeFail(EMPTY_AD_RESPONSE);
+                    listener.onNativeFail(EMPTY_AD_RESPONSE);
                     return;
                 case NO_FILL:
-                    mMoPubNativeNetworkListener.onNativeFail(EMPTY_AD_RESPONSE);
+                    listener.onNativeFail(EMPTY_AD_RESPONSE);
                     return;
                 case UNSPECIFIED:
                 default:
-                    mMoPubNativeNetworkListener.onNativeFail(UNSPECIFIED);
+                    listener.onNativeFail(UNSPECIFIED);
                     return;
             }
         } else {
             // Process our other status code errors.
             NetworkResponse response = volleyError.networkResponse;
             if (response != null && response.statusCode >= 500 && response.statusCode < 600) {
-                mMoPubNativeNetworkListener.onNativeFail(SERVER_ERROR_RESPONSE_CODE);
+                listener.onNativeFail(SERVER_ERROR_RESPONSE_CODE);
             } else if (response == null && !DeviceUtils.isNetworkAvailable(mContext.get())) {
                 MoPubLog.c(String.valueOf(MoPubErrorCode.NO_CONNECTION.toString()));
-                mMoPubNativeNetworkListener.onNativeFail(CONNECTION_ERROR);
+                listener.onNativeFail(CONNECTION_ERROR);
             } else {
-                mMoPubNativeNetworkListener.onNativeFail(UNSPECIFIED);
+                listener.onNativeFail(UNSPECIFIED);
             }
         }
     }
@@ -92,65 +92,36 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
         mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
             @Override
             public void onChanged() {
+                // There is no way to tell which items changed, so everything has to be rebound.
                 mStreamAdPlacer.setItemCount(mOriginalAdapter.getItemCount());
                 notifyDataSetChanged();
             }
 
             @Override
             public void onItemRangeChanged(final int positionStart, final int itemCount) {
-                int adjustedEndPosition = mStreamAdPlacer.getAdjustedPosition(positionStart + itemCount - 1);
-                int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
-                int adjustedCount = adjustedEndPosition - adjustedStartPosition + 1;
-                notifyItemRangeChanged(adjustedStartPosition, adjustedCount);
+                handleItemRangeChanged(positionStart, itemCount, null);
+            }
+
+            @Override
+            public void onItemRangeChanged(final int positionStart, final int itemCount,
+                    final Object payload) {
+                handleItemRangeChanged(positionStart, itemCount, payload);
             }
 
             @Override
             public void onItemRangeInserted(final int positionStart, final int itemCount) {
-                final int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
-                final int newOriginalCount = mOriginalAdapter.getItemCount();
-                mStreamAdPlacer.setItemCount(newOriginalCount);
-                final boolean addingToEnd = positionStart + itemCount >= newOriginalCount;
-                if (KEEP_ADS_FIXED == mStrategy
-                        || (INSERT_AT_END == mStrategy
-                        && addingToEnd)) {
-                    notifyDataSetChanged();
-                } else {
-                    for (int i = 0; i < itemCount; i++) {
-                        // We insert itemCount items at the original position, moving ads downstream.
-                        mStreamAdPlacer.insertItem(positionStart);
-                    }
-                    notifyItemRangeInserted(adjustedStartPosition, itemCount);
-                }
+                handleItemRangeInserted(positionStart, itemCount);
             }
 
             @Override
             public void onItemRangeRemoved(final int positionStart, final int itemsRemoved) {
-                int adjustedStartPosition = mStreamAdPlacer.getAdjustedPosition(positionStart);
-                final int newOriginalCount = mOriginalAdapter.getItemCount();
-                mStreamAdPlacer.setItemCount(newOriginalCount);
-                final boolean removingFromEnd = positionStart + itemsRemoved >= newOriginalCount;
-                if (KEEP_ADS_FIXED == mStrategy
-                        || (INSERT_AT_END == mStrategy
-                        && removingFromEnd)) {
-                    notifyDataSetChanged();
-                } else {
-                    final int oldAdjustedCount = mStreamAdPlacer.getAdjustedCount(newOriginalCount + itemsRemoved);
-                    for (int i = 0; i < itemsRemoved; i++) {
-                        // We remove itemsRemoved items at the original position.
-                        mStreamAdPlacer.removeItem(positionStart);
-                    }
-
-                    final int itemsRemovedIncludingAds = oldAdjustedCount - mStreamAdPlacer.getAdjustedCount(newOriginalCount);
-                    // Need to move the start position back by the # of ads removed.
-                    adjustedStartPosition -= itemsRemovedIncludingAds - itemsRemoved;
-                    notifyItemRangeRemoved(adjustedStartPosition, itemsRemovedIncludingAds);
-                }
+                handleItemRangeRemoved(positionStart, itemsRemoved);
             }
 
             @Override
             public void onItemRangeMoved(final int fromPosition, final int toPosition,
                     final int itemCount) {
-                notifyDataSetChanged();
+                handleItemRangeMoved(fromPosition, toPosition, itemCount);
             }
         };
 
@@ -538,6 +509,216 @@ public final class MoPubRecyclerAdapter extends RecyclerView.Adapter<RecyclerVie
         notifyItemRemoved(position);
     }
 
+    /**
+     * Notifies that the content items in the original range changed, skipping the ads between
+     * them so that their views are not rebound.
+     */
+    private void handleItemRangeChanged(final int positionStart, final int itemCount,
+            @Nullable final Object payload) {
+        final int[] adPositions = mStreamAdPlacer.getPlacedAdPositions();
+        int runStart = positionStart;
+        final int end = positionStart + itemCount;
+        for (int i = countAdsBefore(adPositions, positionStart + 1); i < adPositions.length; i++) {
+            final int adOriginalPosition = adPositions[i] - i;
+            if (adOriginalPosition >= end) {
+                break;
+            }
+            if (adOriginalPosition > runStart) {
+                notifyItemRangeChanged(toAdjustedPosition(adPositions, runStart),
+                        adOriginalPosition - runStart, payload);
+                runStart = adOriginalPosition;
+            }
+        }
+        if (end > runStart) {
+            notifyItemRangeChanged(toAdjustedPosition(adPositions, runStart), end - runStart,
+                    payload);
+        }
+    }
+
+    private void handleItemRangeInserted(final int positionStart, final int itemCount) {
+        final int[] oldAdPositions = mStreamAdPlacer.getPlacedAdPositions();
+        final int newOriginalCount = mOriginalAdapter.getItemCount();
+        mStreamAdPlacer.setItemCount(newOriginalCount);
+        final boolean addingToEnd = positionStart + itemCount >= newOriginalCount;
+        final int[] newAdPositions;
+        if (KEEP_ADS_FIXED == mStrategy
+                || (INSERT_AT_END == mStrategy
+                && addingToEnd)) {
+            // Ads keep their positions, so they will be moved back over the new items below.
+            newAdPositions = oldAdPositions;
+        } else {
+            // We insert itemCount items at the original position, moving ads downstream.
+            mStreamAdPlacer.insertItems(positionStart, itemCount);
+            newAdPositions = mStreamAdPlacer.getPlacedAdPositions();
+        }
+
+        // The new items go after any ads that end up before them. An ad after the last item is
+        // not in the stream yet, and is inserted with the other ads below if it now is.
+        final int oldOriginalCount = newOriginalCount - itemCount;
+        final int adsBefore = Math.min(countAdsBefore(newAdPositions, positionStart + 1),
+                countAdsBefore(oldAdPositions, oldOriginalCount));
+        notifyItemRangeInserted(positionStart + adsBefore, itemCount);
+
+        final int[] contentBefore = getOriginalPositions(oldAdPositions);
+        for (int i = adsBefore; i < contentBefore.length; i++) {
+            contentBefore[i] += itemCount;
+        }
+        notifyAdsMoved(oldAdPositions, contentBefore, oldOriginalCount, newAdPositions,
+                newOriginalCount);
+    }
+
+    private void handleItemRangeRemoved(final int positionStart, final int itemsRemoved) {
+        final int[] oldAdPositions = mStreamAdPlacer.getPlacedAdPositions();
+        final int newOriginalCount = mOriginalAdapter.getItemCount();
+        mStreamAdPlacer.setItemCount(newOriginalCount);
+        final boolean removingFromEnd = positionStart + itemsRemoved >= newOriginalCount;
+        final int[] newAdPositions;
+        if (KEEP_ADS_FIXED == mStrategy
+                || (INSERT_AT_END == mStrategy
+                && removingFromEnd)) {
+            newAdPositions = oldAdPositions;
+        } else {
+            // We remove itemsRemoved items at the original position.
+            mStreamAdPlacer.removeItems(positionStart, itemsRemoved);
+            newAdPositions = mStreamAdPlacer.getPlacedAdPositions();
+        }
+
+        // Remove the items back to front, one run of items between two ads at a time. Ads sit
+        // right before the item at their original position.
+        int runEnd = positionStart + itemsRemoved;
+        for (int i = oldAdPositions.length - 1; i >= 0; i--) {
+            final int adOriginalPosition = oldAdPositions[i] - i;
+            if (adOriginalPosition <= positionStart) {
+                break;
+            }
+            if (adOriginalPosition < runEnd) {
+                notifyItemRangeRemoved(oldAdPositions[i] + 1, runEnd - adOriginalPosition);
+                runEnd = adOriginalPosition;
+            }
+        }
+        if (runEnd > positionStart) {
+            notifyItemRangeRemoved(toAdjustedPosition(oldAdPositions, positionStart),
+                    runEnd - positionStart);
+        }
+
+        final int[] contentBefore = getOriginalPositions(oldAdPositions);
+        for (int i = 0; i < contentBefore.length; i++) {
+            contentBefore[i] -= Math.min(Math.max(contentBefore[i] - positionStart, 0),
+                    itemsRemoved);
+        }
+        notifyAdsMoved(oldAdPositions, contentBefore, newOriginalCount + itemsRemoved,
+                newAdPositions, newOriginalCount);
+    }
+
+    private void handleItemRangeMoved(final int fromPosition, final int toPosition,
+            final int itemCount) {
+        // RecyclerView only ever moves a single item.
+        if (itemCount != 1) {
+            notifyDataSetChanged();
+            return;
+        }
+        if (fromPosition == toPosition) {
+            return;
+        }
+
+        // Ads keep their positions when items move, whatever the strategy.
+        final int[] adPositions = mStreamAdPlacer.getPlacedAdPositions();
+        final int originalCount = mOriginalAdapter.getItemCount();
+        final int visibleAdCount = countAdsBefore(adPositions, originalCount);
+        final int[] contentBefore = getOriginalPositions(adPositions);
+        int adsBeforeTarget = 0;
+        for (int i = 0; i < visibleAdCount; i++) {
+            if (contentBefore[i] > fromPosition) {
+                contentBefore[i]--;
+            }
+            if (contentBefore[i] > toPosition) {
+                contentBefore[i]++;
+            } else {
+                adsBeforeTarget++;
+            }
+        }
+        notifyItemMoved(toAdjustedPosition(adPositions, fromPosition),
+                toPosition + adsBeforeTarget);
+
+        notifyAdsMoved(adPositions, contentBefore, originalCount, adPositions, originalCount);
+    }
+
+    /**
+     * Moves the ads from where the content change left them to their placed positions.
+     *
+     * @param oldAdPositions The adjusted ad positions before the change.
+     * @param contentBefore The number of items before each of these ads after the content change
+     * was notified, with the ads kept in place relative to their neighboring items.
+     * @param oldOriginalCount The original number of items before the change.
+     * @param newAdPositions The adjusted ad positions after the change.
+     * @param newOriginalCount The original number of items after the change.
+     */
+    private void notifyAdsMoved(@NonNull final int[] oldAdPositions,
+            @NonNull final int[] contentBefore, final int oldOriginalCount,
+            @NonNull final int[] newAdPositions, final int newOriginalCount) {
+        if (oldAdPositions.length != newAdPositions.length) {
+            MoPubLog.w("Ads were added or removed during a content change.");
+            notifyDataSetChanged();
+            return;
+        }
+
+        // Only ads before the last item are in the stream.
+        final int oldVisibleCount = countAdsBefore(oldAdPositions, oldOriginalCount);
+        final int newVisibleCount = countAdsBefore(newAdPositions, newOriginalCount);
+        final int keptCount = Math.min(oldVisibleCount, newVisibleCount);
+
+        for (int i = oldVisibleCount - 1; i >= keptCount; i--) {
+            notifyItemRemoved(contentBefore[i] + i);
+        }
+
+        // Ads never pass each other, so moving the ads that go down from the last one and the
+        // ads that go up from the first one never shifts an ad that still has to move.
+        for (int i = keptCount - 1; i >= 0; i--) {
+            if (contentBefore[i] + i < newAdPositions[i]) {
+                notifyItemMoved(contentBefore[i] + i, newAdPositions[i]);
+            }
+        }
+        for (int i = 0; i < keptCount; i++) {
+            if (contentBefore[i] + i > newAdPositions[i]) {
+                notifyItemMoved(contentBefore[i] + i, newAdPositions[i]);
+            }
+        }
+
+        for (int i = keptCount; i < newVisibleCount; i++) {
+            notifyItemInserted(newAdPositions[i]);
+        }
+    }
+
+    /**
+     * Returns the original position of each ad, which is the original position of the item right
+     * after it.
+     */
+    @NonNull
+    private static int[] getOriginalPositions(@NonNull final int[] adPositions) {
+        final int[] originalPositions = new int[adPositions.length];
+        for (int i = 0; i < adPositions.length; i++) {
+            originalPositions[i] = adPositions[i] - i;
+        }
+        return originalPositions;
+    }
+
+    /**
+     * Returns the number of ads before the item at the given original position.
+     */
+    private static int countAdsBefore(@NonNull final int[] adPositions,
+            final int originalPosition) {
+        int count = 0;
+        while (count < adPositions.length && adPositions[count] - count < originalPosition) {
+            count++;
+        }
+        return count;
+    }
+
+    private static int toAdjustedPosition(@NonNull final int[] adPositions,
+            final int originalPosition) {
+        return originalPosition + countAdsBefore(adPositions, originalPosition + 1);
+    }
+
     private void handleVisibilityChanged(final List<View> visibleViews,
             final List<View> invisibleViews) {
         // Loop through all visible positions in order to build a max and min range, and then
@@ -30,6 +30,9 @@ import java.util.WeakHashMap;
  * To start loading ads, call {@link #loadAds}. We recommend passing targeting information to
  * increase the chance that you show ads that are relevant to your users.
  *
+ * Ad placers that load the same ad unit share a single cache of prefetched ads, which is released
+ * once every one of them has been cleared or destroyed.
+ *
  * This class is not intended to be used by multiple threads. All calls should be made from the main
  * UI thread.
  */
@@ -55,7 +58,7 @@ public class MoPubStreamAdPlacer {
     @NonNull private final Handler mPlacementHandler;
     @NonNull private final Runnable mPlacementRunnable;
     @NonNull private final PositioningSource mPositioningSource;
-    @NonNull private final NativeAdSource mAdSource;
+    @NonNull private final StreamAdSource mAdSource;
 
     @NonNull private final HashMap<NativeAd, WeakReference<View>> mViewMap;
     @NonNull private final WeakHashMap<View, NativeAd> mNativeAdMap;
@@ -83,6 +86,23 @@ public class MoPubStreamAdPlacer {
     private static final int RANGE_BUFFER = 6;
     private boolean mNeedsPlacement;
 
+    private static volatile boolean sAdSourceSharingEnabled = false;
+
+    /**
+     * Sets whether ad placers created from now on share prefetched ads with the other placers
+     * showing the same ad unit, instead of each loading and caching its own ads. Sharing saves ad
+     * requests when several screens show the same ad unit. It is disabled by default.
+     *
+     * @param enabled Whether new ad placers should share ads.
+     */
+    public static void setAdSourceSharingEnabled(final boolean enabled) {
+        sAdSourceSharingEnabled = enabled;
+    }
+
+    public static boolean isAdSourceSharingEnabled() {
+        return sAdSourceSharingEnabled;
+    }
+
     /**
      * Creates a new MoPubStreamAdPlacer object.
      *
@@ -107,7 +127,7 @@ public class MoPubStreamAdPlacer {
      */
     public MoPubStreamAdPlacer(@NonNull final Activity activity,
             @NonNull final MoPubServerPositioning adPositioning) {
-        this(activity, new NativeAdSource(), new ServerPositioningSource(activity));
+        this(activity, createAdSource(), new ServerPositioningSource(activity));
     }
 
     /**
@@ -121,12 +141,17 @@ public class MoPubStreamAdPlacer {
             @NonNull final MoPubClientPositioning adPositioning) {
         // MoPubClientPositioning is mutable, so we must take care not to hold a
         // reference to it that might be subsequently modified by the caller.
-        this(activity, new NativeAdSource(), new ClientPositioningSource(adPositioning));
+        this(activity, createAdSource(), new ClientPositioningSource(adPositioning));
+    }
+
+    @NonNull
+    private static StreamAdSource createAdSource() {
+        return sAdSourceSharingEnabled ? new SharedNativeAdSource() : new NativeAdSource();
     }
 
     @VisibleForTesting
     MoPubStreamAdPlacer(@NonNull final Activity activity,
-            @NonNull final NativeAdSource adSource,
+            @NonNull final StreamAdSource adSource,
             @NonNull final PositioningSource positioningSource) {
         Preconditions.checkNotNull(activity, "activity is not allowed to be null");
         Preconditions.checkNotNull(adSource, "adSource is not allowed to be null");
@@ -175,6 +200,22 @@ public class MoPubStreamAdPlacer {
         mAdSource.registerAdRenderer(adRenderer);
     }
 
+    /**
+     * Configures how many ads the placer prefetches ahead of placement.
+     *
+     * By default a single ad is kept ready. Feeds that are scrolled quickly can raise the cache
+     * limit so that ads are available when new positions scroll into view. The number of ads
+     * actually prefetched adapts to how quickly ads are placed, up to the cache limit, and never
+     * exceeds the number of ads that can be placed before they expire.
+     *
+     * @param cacheLimit The maximum number of ads to prefetch, between 1 and 10.
+     * @param maxRequestsInFlight The maximum number of ad requests to make in parallel, between 1
+     * and {@code cacheLimit}.
+     */
+    public void setAdCacheLimits(final int cacheLimit, final int maxRequestsInFlight) {
+        mAdSource.setCacheLimits(cacheLimit, maxRequestsInFlight);
+    }
+
     @Nullable
     public MoPubAdRenderer getAdRendererForViewType(int viewType) {
         return mAdSource.getAdRendererForViewType(viewType);
@@ -254,7 +295,7 @@ public class MoPubStreamAdPlacer {
             }
         });
 
-        mAdSource.setAdSourceListener(new NativeAdSource.AdSourceListener() {
+        mAdSource.setAdSourceListener(new StreamAdSource.AdSourceListener() {
             @Override
             public void onAdsAvailable() {
                 handleAdsAvailable();
@@ -264,6 +305,12 @@ public class MoPubStreamAdPlacer {
         mAdSource.loadAds(mActivity, adUnitId, requestParameters);
     }
 
+    @NonNull
+    @VisibleForTesting
+    StreamAdSource getAdSource() {
+        return mAdSource;
+    }
+
     @VisibleForTesting
     void handlePositioningLoad(@NonNull final MoPubClientPositioning positioning) {
         PlacementData placementData = PlacementData.fromAdPositioning(positioning);
@@ -548,6 +595,15 @@ public class MoPubStreamAdPlacer {
         return mPlacementData.getAdjustedCount(originalCount);
     }
 
+    /**
+     * Returns the positions of all placed ads, expressed in terms of the position in the stream
+     * including ads, in ascending order. This allocates a new array on every call.
+     */
+    @NonNull
+    int[] getPlacedAdPositions() {
+        return mPlacementData.getPlacedAdPositions();
+    }
+
     /**
      * Sets the original number of items in your stream.
      *
@@ -587,6 +643,20 @@ public class MoPubStreamAdPlacer {
         mPlacementData.insertItem(originalPosition);
     }
 
+    /**
+     * Inserts a range of content rows at the given position, adjusting ad positions accordingly.
+     *
+     * This has the same effect as calling {@link #insertItem} {@code itemCount} times with the same
+     * position, but takes about as long as a single call.
+     *
+     * @param originalPosition The position at which to add the items. If you have an adjusted
+     * position, you will need to call {@link #getOriginalPosition} to get this value.
+     * @param itemCount The number of items to add.
+     */
+    public void insertItems(final int originalPosition, final int itemCount) {
+        mPlacementData.insertItems(originalPosition, itemCount);
+    }
+
     /**
      * Removes the content row at the given position, adjusting ad positions accordingly.
      *
@@ -608,6 +678,21 @@ public class MoPubStreamAdPlacer {
         mPlacementData.removeItem(originalPosition);
     }
 
+    /**
+     * Removes a range of content rows starting at the given position, adjusting ad positions
+     * accordingly.
+     *
+     * This has the same effect as calling {@link #removeItem} {@code itemCount} times with the
+     * same position. Ads that were placed between removed items end up next to each other.
+     *
+     * @param originalPosition The position of the first item to remove. If you have an adjusted
+     * position, you will need to call {@link #getOriginalPosition} to get this value.
+     * @param itemCount The number of items to remove.
+     */
+    public void removeItems(final int originalPosition, final int itemCount) {
+        mPlacementData.removeItems(originalPosition, itemCount);
+    }
+
     /**
      * Moves the content row at the given position adjusting ad positions accordingly.
      *
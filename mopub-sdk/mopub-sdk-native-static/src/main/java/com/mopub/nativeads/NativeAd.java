@@ -55,6 +55,7 @@ public class NativeAd {
     @NonNull private final Set<String> mClickTrackers;
     @NonNull private final String mAdUnitId;
     @Nullable private MoPubNativeEventListener mMoPubNativeEventListener;
+    @Nullable private AdResponse mAdResponse;
 
     private boolean mRecordedImpression;
     private boolean mIsClicked;
@@ -79,7 +80,32 @@ public class NativeAd {
         mClickTrackers.addAll(baseNativeAd.getClickTrackers());
 
         mBaseNativeAd = baseNativeAd;
-        mBaseNativeAd.setNativeEventListener(new NativeEventListener() {
+        mBaseNativeAd.setNativeEventListener(createNativeEventListener());
+
+        mMoPubAdRenderer = moPubAdRenderer;
+    }
+
+    /**
+     * Creates a copy of an ad that renders with a different renderer. The underlying
+     * {@link BaseNativeAd} reports its events to the copy, so the original must no longer be used.
+     */
+    NativeAd(@NonNull final NativeAd nativeAd, @NonNull final MoPubAdRenderer moPubAdRenderer) {
+        mContext = nativeAd.mContext;
+        mAdUnitId = nativeAd.mAdUnitId;
+        mImpressionTrackers = new HashSet<String>(nativeAd.mImpressionTrackers);
+        mClickTrackers = new HashSet<String>(nativeAd.mClickTrackers);
+
+        mAdResponse = nativeAd.mAdResponse;
+
+        mBaseNativeAd = nativeAd.mBaseNativeAd;
+        mBaseNativeAd.setNativeEventListener(createNativeEventListener());
+
+        mMoPubAdRenderer = moPubAdRenderer;
+    }
+
+    @NonNull
+    private NativeEventListener createNativeEventListener() {
+        return new NativeEventListener() {
             @Override
             public void onAdImpressed() {
                 recordImpression(null);
@@ -89,9 +115,7 @@ public class NativeAd {
             public void onAdClicked() {
                 handleClick(null);
             }
-        });
-
-        mMoPubAdRenderer = moPubAdRenderer;
+        };
     }
 
     @Override
@@ -109,6 +133,18 @@ public class NativeAd {
         mMoPubNativeEventListener = moPubNativeEventListener;
     }
 
+    /**
+     * Returns the ad server response this ad was loaded from, if known.
+     */
+    @Nullable
+    AdResponse getAdResponse() {
+        return mAdResponse;
+    }
+
+    void setAdResponse(@Nullable final AdResponse adResponse) {
+        mAdResponse = adResponse;
+    }
+
     @NonNull
     public String getAdUnitId() {
         return mAdUnitId;
@@ -202,7 +238,7 @@ public class NativeAd {
             return;
         }
 
-        TrackingRequest.makeTrackingHttpRequest(mImpressionTrackers, mContext);
+        TrackingRequest.makeTrackingHttpRequest(mImpressionTrackers, mContext, null, null, this);
         if (mMoPubNativeEventListener != null) {
             mMoPubNativeEventListener.onImpression(view);
         }
@@ -216,7 +252,7 @@ public class NativeAd {
             return;
         }
 
-        TrackingRequest.makeTrackingHttpRequest(mClickTrackers, mContext);
+        TrackingRequest.makeTrackingHttpRequest(mClickTrackers, mContext, null, null, this);
         if (mMoPubNativeEventListener != null) {
             mMoPubNativeEventListener.onClick(view);
         }
@@ -0,0 +1,230 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.AdType;
+import com.mopub.common.BackgroundExecutor;
+import com.mopub.common.CacheService;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DateAndTime;
+import com.mopub.network.AdResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Persists the responses of cached, not yet shown native ads to the disk cache, so that after the
+ * process restarts a {@link NativeAdSource} can place ads without waiting for a network round trip.
+ *
+ * Only static native responses are persisted. Responses are stored per ad unit along with their
+ * creation time, and responses older than the native ad expiration time are never restored.
+ *
+ * Opening the disk cache, serializing and all disk access happen in the background one task at a
+ * time, so writes are applied in the order they were made.
+ */
+class NativeAdResponseCache {
+    interface Listener {
+        void onResponsesLoaded(@NonNull List<AdResponse> adResponses);
+    }
+
+    @VisibleForTesting static final String KEY_PREFIX = "native-ad-responses-";
+
+    private static final String TIMESTAMP_KEY = "timestamp";
+    private static final String AD_TYPE_KEY = "ad-type";
+    private static final String AD_UNIT_ID_KEY = "ad-unit-id";
+    private static final String NETWORK_TYPE_KEY = "network-type";
+    private static final String CUSTOM_EVENT_CLASS_NAME_KEY = "custom-event-class-name";
+    private static final String CLICK_TRACKING_URL_KEY = "click-tracking-url";
+    private static final String IMPRESSION_TRACKING_URL_KEY = "impression-tracking-url";
+    private static final String FAILOVER_URL_KEY = "failover-url";
+    private static final String REQUEST_ID_KEY = "request-id";
+    private static final String DSP_CREATIVE_ID_KEY = "dsp-creative-id";
+    private static final String SERVER_EXTRAS_KEY = "server-extras";
+    private static final String JSON_BODY_KEY = "json-body";
+
+    @Nullable private static Executor sExecutor;
+
+    @NonNull private final Context mContext;
+    @NonNull private final Handler mHandler;
+    private final long mExpirationTimeMillis;
+
+    NativeAdResponseCache(@NonNull final Context context, final long expirationTimeMillis) {
+        Preconditions.checkNotNull(context);
+
+        mContext = context.getApplicationContext();
+        mHandler = new Handler(Looper.getMainLooper());
+        mExpirationTimeMillis = expirationTimeMillis;
+    }
+
+    static boolean isCacheable(@Nullable final AdResponse adResponse) {
+        return adResponse != null
+                && AdType.STATIC_NATIVE.equals(adResponse.getAdType())
+                && adResponse.getJsonBody() != null;
+    }
+
+    /**
+     * Replaces the persisted responses for the given ad unit. Responses that can't be persisted
+     * are skipped. The write happens in the background.
+     */
+    void save(@NonNull final String adUnitId, @NonNull final List<AdResponse> adResponses) {
+        final List<AdResponse> responsesToSave = new ArrayList<AdResponse>(adResponses);
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (CacheService.initializeDiskCache(mContext)) {
+                    write(adUnitId, responsesToSave);
+                }
+            }
+        });
+    }
+
+    private void write(@NonNull final String adUnitId,
+            @NonNull final List<AdResponse> adResponses) {
+        final JSONArray jsonArray = new JSONArray();
+        for (final AdResponse adResponse : adResponses) {
+            if (!isCacheable(adResponse)) {
+                continue;
+            }
+            try {
+                jsonArray.put(toJson(adResponse));
+            } catch (JSONException e) {
+                MoPubLog.d("Unable to persist native ad response.", e);
+            }
+        }
+
+        CacheService.putToDiskCache(KEY_PREFIX + adUnitId, jsonArray.toString().getBytes());
+    }
+
+    /**
+     * Loads the unexpired responses persisted for the given ad unit and removes them from disk,
+     * since the caller takes ownership of them. The listener is called on the UI thread.
+     */
+    void load(@NonNull final String adUnitId, @NonNull final Listener listener) {
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<AdResponse> adResponses;
+                if (CacheService.initializeDiskCache(mContext)) {
+                    adResponses = fromBytes(CacheService.getFromDiskCache(KEY_PREFIX + adUnitId),
+                            DateAndTime.now().getTime());
+                    if (!adResponses.isEmpty()) {
+                        write(adUnitId, new ArrayList<AdResponse>());
+                    }
+                } else {
+                    adResponses = new ArrayList<AdResponse>();
+                }
+
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onResponsesLoaded(adResponses);
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    @VisibleForTesting
+    List<AdResponse> fromBytes(@Nullable final byte[] content, final long now) {
+        final List<AdResponse> adResponses = new ArrayList<AdResponse>();
+        if (content == null || content.length == 0) {
+            return adResponses;
+        }
+
+        try {
+            final JSONArray jsonArray = new JSONArray(new String(content));
+            for (int i = 0; i < jsonArray.length(); i++) {
+                final AdResponse adResponse = fromJson(jsonArray.getJSONObject(i));
+                final long age = now - adResponse.getTimestamp();
+                if (age >= 0 && age < mExpirationTimeMillis) {
+                    adResponses.add(adResponse);
+                }
+            }
+        } catch (JSONException e) {
+            MoPubLog.d("Unable to restore persisted native ad responses.", e);
+        }
+        return adResponses;
+    }
+
+    @NonNull
+    @VisibleForTesting
+    static JSONObject toJson(@NonNull final AdResponse adResponse) throws JSONException {
+        final JSONObject jsonObject = new JSONObject();
+        jsonObject.put(TIMESTAMP_KEY, adResponse.getTimestamp());
+        jsonObject.putOpt(AD_TYPE_KEY, adResponse.getAdType());
+        jsonObject.putOpt(AD_UNIT_ID_KEY, adResponse.getAdUnitId());
+        jsonObject.putOpt(NETWORK_TYPE_KEY, adResponse.getNetworkType());
+        jsonObject.putOpt(CUSTOM_EVENT_CLASS_NAME_KEY, adResponse.getCustomEventClassName());
+        jsonObject.putOpt(CLICK_TRACKING_URL_KEY, adResponse.getClickTrackingUrl());
+        jsonObject.putOpt(IMPRESSION_TRACKING_URL_KEY, adResponse.getImpressionTrackingUrl());
+        jsonObject.putOpt(FAILOVER_URL_KEY, adResponse.getFailoverUrl());
+        jsonObject.putOpt(REQUEST_ID_KEY, adResponse.getRequestId());
+        jsonObject.putOpt(DSP_CREATIVE_ID_KEY, adResponse.getDspCreativeId());
+        jsonObject.put(SERVER_EXTRAS_KEY, new JSONObject(adResponse.getServerExtras()));
+        jsonObject.putOpt(JSON_BODY_KEY, adResponse.getJsonBody());
+        return jsonObject;
+    }
+
+    @NonNull
+    @VisibleForTesting
+    static AdResponse fromJson(@NonNull final JSONObject jsonObject) throws JSONException {
+        final Map<String, String> serverExtras = new TreeMap<String, String>();
+        final JSONObject serverExtrasJson = jsonObject.optJSONObject(SERVER_EXTRAS_KEY);
+        if (serverExtrasJson != null) {
+            final Iterator<?> keys = serverExtrasJson.keys();
+            while (keys.hasNext()) {
+                final String key = (String) keys.next();
+                serverExtras.put(key, serverExtrasJson.getString(key));
+            }
+        }
+
+        return new AdResponse.Builder()
+                .setTimestamp(jsonObject.getLong(TIMESTAMP_KEY))
+                .setAdType(optString(jsonObject, AD_TYPE_KEY))
+                .setAdUnitId(optString(jsonObject, AD_UNIT_ID_KEY))
+                .setNetworkType(optString(jsonObject, NETWORK_TYPE_KEY))
+                .setCustomEventClassName(optString(jsonObject, CUSTOM_EVENT_CLASS_NAME_KEY))
+                .setClickTrackingUrl(optString(jsonObject, CLICK_TRACKING_URL_KEY))
+                .setImpressionTrackingUrl(optString(jsonObject, IMPRESSION_TRACKING_URL_KEY))
+                .setFailoverUrl(optString(jsonObject, FAILOVER_URL_KEY))
+                .setRequestId(optString(jsonObject, REQUEST_ID_KEY))
+                .setDspCreativeId(optString(jsonObject, DSP_CREATIVE_ID_KEY))
+                .setServerExtras(serverExtras)
+                .setJsonBody(jsonObject.optJSONObject(JSON_BODY_KEY))
+                .build();
+    }
+
+    @NonNull
+    private static synchronized Executor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = BackgroundExecutor.newSerialExecutor();
+        }
+        return sExecutor;
+    }
+
+    @VisibleForTesting
+    static synchronized void setExecutorForTesting(@Nullable final Executor executor) {
+        sExecutor = executor;
+    }
+
+    @Nullable
+    private static String optString(@NonNull final JSONObject jsonObject,
+            @NonNull final String key) {
+        return jsonObject.isNull(key) ? null : jsonObject.optString(key);
+    }
+}
@@ -6,12 +6,17 @@ import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.mopub.common.Preconditions.NoThrow;
 import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DateAndTime;
+import com.mopub.network.AdResponse;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
+import static com.mopub.nativeads.NativeAdResponseCache.isCacheable;
 
 /**
  * An ad source responsible for requesting ads from the MoPub ad server.
@@ -21,54 +26,87 @@ import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
  * a queue, so that the first ad loaded from the server will be the first ad available for dequeue.
  * To take an ad out of the cache, call {@link #dequeueAd}.
  *
- * The cache size may be automatically adjusted by the MoPub server based on an app's usage and
- * ad fill rate. Cached ads have a maximum TTL of 15 minutes before which they expire.
+ * The cache is a prefetch pool whose maximum depth and number of parallel requests can be
+ * configured with {@link #setCacheLimits}. Within those limits the pool refills adaptively: the
+ * target depth grows with the observed dequeue rate so that ads keep arriving while earlier ones
+ * are consumed, but never beyond the number of ads that can be dequeued before they expire.
+ * Cached ads have a maximum TTL of 15 minutes before which they expire.
+ *
+ * The responses of cached static native ads are also persisted to disk through
+ * {@link NativeAdResponseCache}. When ads are loaded after a process restart, unexpired persisted
+ * responses are placed immediately while the first ad request is still in flight.
  *
  * The ad source also takes care of retrying failed ad requests, with a reasonable back-off to
  * avoid spamming the server.
  *
  * This class is not thread safe and should only be called from the UI thread.
  */
-class NativeAdSource {
+class NativeAdSource implements StreamAdSource {
+    /**
+     * Default number of ads to cache
+     */
+    @VisibleForTesting static final int DEFAULT_CACHE_LIMIT = 1;
     /**
-     * Number of ads to cache
+     * Default number of ad requests that may be in flight at the same time
      */
-    private static final int CACHE_LIMIT = 1;
+    @VisibleForTesting static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 1;
+    /**
+     * Upper bound for both the cache limit and the number of parallel requests
+     */
+    @VisibleForTesting static final int MAX_CACHE_LIMIT = 10;
+    /**
+     * Used as the expected request latency until the first ad has loaded
+     */
+    @VisibleForTesting static final long DEFAULT_LOAD_TIME_MILLISECONDS = 2000;
+    /**
+     * Changes to the cache within this delay are persisted with a single write
+     */
+    @VisibleForTesting static final long PERSIST_DELAY_MILLISECONDS = 1000;
 
-    private static final int EXPIRATION_TIME_MILLISECONDS = 15 * 60 * 1000; // 15 minutes
+    @VisibleForTesting static final int EXPIRATION_TIME_MILLISECONDS = 15 * 60 * 1000; // 15 minutes
     private static final int MAXIMUM_RETRY_TIME_MILLISECONDS = 5 * 60 * 1000; // 5 minutes.
     @VisibleForTesting static final int[] RETRY_TIME_ARRAY_MILLISECONDS = new int[]{1000, 3000, 5000, 25000, 60000, MAXIMUM_RETRY_TIME_MILLISECONDS};
 
     @NonNull private final List<TimestampWrapper<NativeAd>> mNativeAdCache;
     @NonNull private final Handler mReplenishCacheHandler;
     @NonNull private final Runnable mReplenishCacheRunnable;
+    @NonNull private final Runnable mPersistCachedResponsesRunnable;
     @NonNull private final MoPubNativeNetworkListener mMoPubNativeNetworkListener;
+    @NonNull private final MoPubNativeNetworkListener mRestoredAdNetworkListener;
 
-    @VisibleForTesting boolean mRequestInFlight;
+    @VisibleForTesting int mRequestsInFlight;
     @VisibleForTesting boolean mRetryInFlight;
     @VisibleForTesting int mSequenceNumber;
     @VisibleForTesting int mCurrentRetries;
 
+    private int mCacheLimit = DEFAULT_CACHE_LIMIT;
+    private int mMaxRequestsInFlight = DEFAULT_MAX_REQUESTS_IN_FLIGHT;
+
+    // Exponential moving averages used to size the cache. A value of 0 means no samples yet.
+    @VisibleForTesting long mAverageDequeueIntervalMillis;
+    @VisibleForTesting long mAverageLoadTimeMillis;
+    private long mLastDequeueTimestamp;
+
+    private int mCacheHitCount;
+    private int mCacheMissCount;
+    private int mExpiredCount;
+
     @Nullable private AdSourceListener mAdSourceListener;
 
-    // We will need collections of these when we support multiple ad units.
+    // Placers that opt in share a source per ad unit through NativeAdSourceRegistry.
     @Nullable private RequestParameters mRequestParameters;
     @Nullable private MoPubNative mMoPubNative;
+    @Nullable private String mAdUnitId;
 
-    @NonNull private final AdRendererRegistry mAdRendererRegistry;
+    // Loads ads from responses persisted by a previous process.
+    @Nullable private NativeAdResponseCache mResponseCache;
+    private boolean mPersistPending;
+    @Nullable private MoPubNative mRestoreMoPubNative;
 
-    /**
-     * A listener for when ads are available for dequeueing.
-     */
-    interface AdSourceListener {
-        /**
-         * Called when the number of items available for goes from 0 to more than 0.
-         */
-        void onAdsAvailable();
-    }
+    @NonNull private final AdRendererRegistry mAdRendererRegistry;
 
     NativeAdSource() {
-        this(new ArrayList<TimestampWrapper<NativeAd>>(CACHE_LIMIT),
+        this(new ArrayList<TimestampWrapper<NativeAd>>(DEFAULT_CACHE_LIMIT),
                 new Handler(),
                 new AdRendererRegistry());
     }
@@ -86,11 +124,65 @@ class NativeAdSource {
                 replenishCache();
             }
         };
+        mPersistCachedResponsesRunnable = new Runnable() {
+            @Override
+            public void run() {
+                writeCachedResponses();
+            }
+        };
 
         mAdRendererRegistry = adRendererRegistry;
 
-        // Construct native URL and start filling the cache
-        mMoPubNativeNetworkListener = new MoPubNativeNetworkListener() {
+        // Requests pass their own listener; this one only receives results without a start time.
+        mMoPubNativeNetworkListener = newRequestListener(null);
+
+        mRestoredAdNetworkListener = new MoPubNativeNetworkListener() {
+            @Override
+            public void onNativeLoad(@NonNull final NativeAd nativeAd) {
+                if (mMoPubNative == null) {
+                    nativeAd.destroy();
+                    return;
+                }
+
+                // Restored ads keep the age they had when they were persisted.
+                final TimestampWrapper<NativeAd> timestampWrapper =
+                        new TimestampWrapper<NativeAd>(nativeAd);
+                final AdResponse adResponse = nativeAd.getAdResponse();
+                if (adResponse != null) {
+                    final long age = DateAndTime.now().getTime() - adResponse.getTimestamp();
+                    timestampWrapper.mCreatedTimestamp -= Math.max(0, age);
+                }
+
+                // Ads may have loaded while the responses were restored.
+                if (mNativeAdCache.size() >= mCacheLimit) {
+                    nativeAd.destroy();
+                    return;
+                }
+
+                mNativeAdCache.add(timestampWrapper);
+                if (mNativeAdCache.size() == 1 && mAdSourceListener != null) {
+                    mAdSourceListener.onAdsAvailable();
+                }
+                persistCachedResponses();
+            }
+
+            @Override
+            public void onNativeFail(final NativeErrorCode errorCode) {
+                // Restoring is best effort; regular requests fill the cache instead.
+            }
+        };
+
+        mSequenceNumber = 0;
+        resetRetryTime();
+    }
+
+    /**
+     * Returns a listener for one ad request, which measures the request's load time from the given
+     * start. Requests can finish in any order, so each one carries its own start time.
+     */
+    @NonNull
+    private MoPubNativeNetworkListener newRequestListener(@Nullable final Long requestStartMillis) {
+        return new MoPubNativeNetworkListener() {
             @Override
             public void onNativeLoad(@NonNull final NativeAd nativeAd) {
                 // This can be null if the ad source was cleared as the AsyncTask is posting
@@ -99,7 +191,7 @@ class NativeAdSource {
                     return;
                 }
 
-                mRequestInFlight = false;
+                onRequestFinished(true, requestStartMillis);
                 mSequenceNumber++;
                 resetRetryTime();
 
@@ -108,13 +200,19 @@ class NativeAdSource {
                     mAdSourceListener.onAdsAvailable();
                 }
 
+                persistCachedResponses();
                 replenishCache();
             }
 
             @Override
             public void onNativeFail(final NativeErrorCode errorCode) {
                 // Reset the retry time for the next time we dequeue.
-                mRequestInFlight = false;
+                onRequestFinished(false, requestStartMillis);
+
+                // A retry is already scheduled for one of the other parallel requests.
+                if (mRetryInFlight) {
+                    return;
+                }
 
                 // Stopping requests after the max retry count prevents us from using battery when
                 // the user is not interacting with the stream, eg. the app is backgrounded.
@@ -128,15 +226,14 @@ class NativeAdSource {
                 mReplenishCacheHandler.postDelayed(mReplenishCacheRunnable, getRetryTime());
             }
         };
-
-        mSequenceNumber = 0;
-        resetRetryTime();
     }
 
-    int getAdRendererCount() {
+    @Override
+    public int getAdRendererCount() {
         return mAdRendererRegistry.getAdRendererCount();
     }
 
+    @Override
     public int getViewTypeForAd(@NonNull final NativeAd nativeAd) {
         return mAdRendererRegistry.getViewTypeForAd(nativeAd);
     }
@@ -146,7 +243,8 @@ class NativeAdSource {
      * Note that if multiple ad renderers support a specific native ad format, the first
      * one registered will be used.
      */
-    void registerAdRenderer(@NonNull final MoPubAdRenderer moPubNativeAdRenderer) {
+    @Override
+    public void registerAdRenderer(@NonNull final MoPubAdRenderer moPubNativeAdRenderer) {
         mAdRendererRegistry.registerAdRenderer(moPubNativeAdRenderer);
         if (mMoPubNative != null) {
             mMoPubNative.registerAdRenderer(moPubNativeAdRenderer);
@@ -154,22 +252,124 @@ class NativeAdSource {
     }
 
     @Nullable
+    @Override
     public MoPubAdRenderer getAdRendererForViewType(final int viewType) {
         return mAdRendererRegistry.getRendererForViewType(viewType);
     }
 
+    /**
+     * Configures the prefetch pool.
+     *
+     * @param cacheLimit The maximum number of ads to hold in the cache. The number of ads actually
+     * prefetched adapts to how fast ads are dequeued, up to this limit.
+     * @param maxRequestsInFlight The maximum number of ad requests to run in parallel.
+     */
+    @Override
+    public void setCacheLimits(final int cacheLimit, final int maxRequestsInFlight) {
+        if (!NoThrow.checkArgument(cacheLimit > 0 && cacheLimit <= MAX_CACHE_LIMIT,
+                "cacheLimit must be between 1 and " + MAX_CACHE_LIMIT)) {
+            return;
+        }
+        if (!NoThrow.checkArgument(maxRequestsInFlight > 0 && maxRequestsInFlight <= cacheLimit,
+                "maxRequestsInFlight must be between 1 and cacheLimit")) {
+            return;
+        }
+
+        mCacheLimit = cacheLimit;
+        mMaxRequestsInFlight = maxRequestsInFlight;
+        replenishCache();
+    }
+
     /**
      * Sets a adSourceListener for determining when ads are available.
      * @param adSourceListener An AdSourceListener.
      */
-    void setAdSourceListener(@Nullable final AdSourceListener adSourceListener) {
+    @Override
+    public void setAdSourceListener(@Nullable final AdSourceListener adSourceListener) {
         mAdSourceListener = adSourceListener;
     }
 
-    void loadAds(@NonNull final Activity activity,
+    @Override
+    public void loadAds(@NonNull final Activity activity,
             @NonNull final String adUnitId,
-            final RequestParameters requestParameters) {
+            @Nullable final RequestParameters requestParameters) {
         loadAds(requestParameters, new MoPubNative(activity, adUnitId, mMoPubNativeNetworkListener));
+
+        mAdUnitId = adUnitId;
+        if (mResponseCache == null) {
+            mResponseCache = new NativeAdResponseCache(activity, EXPIRATION_TIME_MILLISECONDS);
+        }
+        restoreCachedResponses(new MoPubNative(activity, adUnitId, mRestoredAdNetworkListener));
+    }
+
+    @VisibleForTesting
+    void restoreCachedResponses(@NonNull final MoPubNative restoreMoPubNative) {
+        if (mResponseCache == null || mAdUnitId == null) {
+            return;
+        }
+
+        for (MoPubAdRenderer renderer : mAdRendererRegistry.getRendererIterable()) {
+            restoreMoPubNative.registerAdRenderer(renderer);
+        }
+        mRestoreMoPubNative = restoreMoPubNative;
+
+        mResponseCache.load(mAdUnitId, new NativeAdResponseCache.Listener() {
+            @Override
+            public void onResponsesLoaded(@NonNull final List<AdResponse> adResponses) {
+                // Drop the responses if the source was cleared while they were loading.
+                if (mRestoreMoPubNative != restoreMoPubNative) {
+                    return;
+                }
+                // Don't restore more ads than the cache may hold.
+                final int count = Math.min(adResponses.size(), mCacheLimit);
+                for (int i = 0; i < count; i++) {
+                    restoreMoPubNative.loadNativeAd(adResponses.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules writing the responses of the ads in the cache to disk, replacing what was
+     * previously persisted for this ad unit. Changes made before the write runs are included in
+     * it, so a burst of loads costs a single write.
+     */
+    private void persistCachedResponses() {
+        if (mResponseCache == null || mAdUnitId == null || mPersistPending) {
+            return;
+        }
+
+        mPersistPending = true;
+        mReplenishCacheHandler.postDelayed(mPersistCachedResponsesRunnable,
+                PERSIST_DELAY_MILLISECONDS);
+    }
+
+    /**
+     * Hands the responses of the ads currently in the cache to the response cache, which
+     * serializes and writes them in the background.
+     */
+    private void writeCachedResponses() {
+        mReplenishCacheHandler.removeCallbacks(mPersistCachedResponsesRunnable);
+        mPersistPending = false;
+        if (mResponseCache == null || mAdUnitId == null) {
+            return;
+        }
+
+        final List<AdResponse> adResponses = new ArrayList<AdResponse>(mNativeAdCache.size());
+        for (final TimestampWrapper<NativeAd> timestampWrapper : mNativeAdCache) {
+            final AdResponse adResponse = timestampWrapper.mInstance.getAdResponse();
+            if (isCacheable(adResponse)) {
+                adResponses.add(adResponse);
+            }
+        }
+        mResponseCache.save(mAdUnitId, adResponses);
+    }
+
+    @VisibleForTesting
+    void setResponseCache(@Nullable final NativeAdResponseCache responseCache,
+            @Nullable final String adUnitId) {
+        mResponseCache = responseCache;
+        mAdUnitId = adUnitId;
     }
 
     @VisibleForTesting
@@ -187,27 +387,91 @@ class NativeAdSource {
         replenishCache();
     }
 
+    /**
+     * Replaces the {@link MoPubNative} used to request ads for the current ad unit, keeping any
+     * ads that are already cached. Requests in flight on the previous instance are dropped.
+     *
+     * This is used when the activity the ads were originally requested with goes away while the
+     * source is still in use by other activities.
+     */
+    void switchActivity(@NonNull final Activity activity, @NonNull final String adUnitId) {
+        switchMoPubNative(new MoPubNative(activity, adUnitId, mMoPubNativeNetworkListener));
+    }
+
+    @VisibleForTesting
+    void switchMoPubNative(@NonNull final MoPubNative moPubNative) {
+        if (mMoPubNative != null) {
+            mMoPubNative.destroy();
+        }
+
+        for (MoPubAdRenderer renderer : mAdRendererRegistry.getRendererIterable()) {
+            moPubNative.registerAdRenderer(renderer);
+        }
+
+        mMoPubNative = moPubNative;
+        mRequestsInFlight = 0;
+
+        replenishCache();
+    }
+
+    /**
+     * Sets the targeting information used for subsequent ad requests.
+     */
+    void setRequestParameters(@Nullable final RequestParameters requestParameters) {
+        mRequestParameters = requestParameters;
+    }
+
+    /**
+     * Returns the number of ads currently in the cache, including ads that may have expired.
+     */
+    int getCachedAdCount() {
+        return mNativeAdCache.size();
+    }
+
     /**
      * Clears the ad source, removing any currently queued ads.
      */
-    void clear() {
+    @Override
+    public void clear() {
+        if (mCacheHitCount + mCacheMissCount > 0) {
+            MoPubLog.d(String.format("Native ad cache stats: %d hits, %d misses, %d expired",
+                    mCacheHitCount, mCacheMissCount, mExpiredCount));
+        }
+
         // This will cleanup listeners to stop callbacks from handling old ad units
         if (mMoPubNative != null) {
             mMoPubNative.destroy();
             mMoPubNative = null;
         }
+        if (mRestoreMoPubNative != null) {
+            mRestoreMoPubNative.destroy();
+            mRestoreMoPubNative = null;
+        }
 
         mRequestParameters = null;
 
+        if (mPersistPending) {
+            writeCachedResponses();
+        }
+
         for (final TimestampWrapper<NativeAd> timestampWrapper : mNativeAdCache) {
             timestampWrapper.mInstance.destroy();
         }
         mNativeAdCache.clear();
 
         mReplenishCacheHandler.removeMessages(0);
-        mRequestInFlight = false;
+        mReplenishCacheHandler.removeCallbacks(mReplenishCacheRunnable);
+        mRetryInFlight = false;
+        mRequestsInFlight = 0;
         mSequenceNumber = 0;
         resetRetryTime();
+
+        mAverageDequeueIntervalMillis = 0;
+        mAverageLoadTimeMillis = 0;
+        mLastDequeueTimestamp = 0;
+        mCacheHitCount = 0;
+        mCacheMissCount = 0;
+        mExpiredCount = 0;
     }
 
     /**
@@ -221,23 +485,113 @@ class NativeAdSource {
      * @return Ad ad item that should be rendered into a view.
      */
     @Nullable
-    NativeAd dequeueAd() {
+    @Override
+    public NativeAd dequeueAd() {
+        final TimestampWrapper<NativeAd> timestampWrapper = dequeueTimestampedAd();
+        return timestampWrapper != null ? timestampWrapper.mInstance : null;
+    }
+
+    /**
+     * Removes an ad from the front of the ad source cache along with the time it was loaded at, so
+     * that callers holding on to the ad can keep expiring it on schedule.
+     */
+    @Nullable
+    TimestampWrapper<NativeAd> dequeueTimestampedAd() {
         final long now = SystemClock.uptimeMillis();
+        recordDequeue(now);
 
         // Starting an ad request takes several millis. Post for performance reasons.
-        if (!mRequestInFlight && !mRetryInFlight) {
+        if (mRequestsInFlight < mMaxRequestsInFlight && !mRetryInFlight) {
             mReplenishCacheHandler.post(mReplenishCacheRunnable);
         }
 
         // Dequeue the first ad that hasn't expired.
+        TimestampWrapper<NativeAd> timestampWrapper = null;
         while (!mNativeAdCache.isEmpty()) {
             TimestampWrapper<NativeAd> responseWrapper = mNativeAdCache.remove(0);
 
             if (now - responseWrapper.mCreatedTimestamp < EXPIRATION_TIME_MILLISECONDS) {
-                return responseWrapper.mInstance;
+                mCacheHitCount++;
+                timestampWrapper = responseWrapper;
+                break;
             }
+            mExpiredCount++;
+        }
+
+        if (timestampWrapper == null) {
+            mCacheMissCount++;
+            return null;
+        }
+
+        // Ads handed out must not be restored after a restart, so write right away instead of
+        // after the persist delay. This also makes any pending write unnecessary.
+        writeCachedResponses();
+        return timestampWrapper;
+    }
+
+    int getCacheHitCount() {
+        return mCacheHitCount;
+    }
+
+    int getCacheMissCount() {
+        return mCacheMissCount;
+    }
+
+    int getExpiredCount() {
+        return mExpiredCount;
+    }
+
+    private void recordDequeue(final long now) {
+        if (mLastDequeueTimestamp > 0) {
+            // Long pauses (e.g. the app was backgrounded) are capped so that a single idle period
+            // doesn't dominate the average.
+            final long interval = Math.min(now - mLastDequeueTimestamp,
+                    EXPIRATION_TIME_MILLISECONDS);
+            mAverageDequeueIntervalMillis = movingAverage(mAverageDequeueIntervalMillis, interval);
         }
-        return null;
+        mLastDequeueTimestamp = now;
+    }
+
+    private void onRequestFinished(final boolean success,
+            @Nullable final Long requestStartMillis) {
+        if (mRequestsInFlight > 0) {
+            mRequestsInFlight--;
+        }
+        if (success && requestStartMillis != null) {
+            mAverageLoadTimeMillis = movingAverage(mAverageLoadTimeMillis,
+                    SystemClock.uptimeMillis() - requestStartMillis);
+        }
+    }
+
+    private static long movingAverage(final long average, final long sample) {
+        if (average <= 0) {
+            return Math.max(1, sample);
+        }
+        return Math.max(1, (3 * average + sample) / 4);
+    }
+
+    /**
+     * Returns the number of ads the cache should currently hold.
+     *
+     * The cache holds enough ads to cover the observed dequeue rate during one request round trip,
+     * bounded by the number of ads that can be dequeued before they expire and by the configured
+     * cache limit. Until ads have been dequeued at least twice a single ad is kept warm.
+     */
+    @VisibleForTesting
+    int getTargetCacheSize() {
+        if (mCacheLimit <= 1 || mAverageDequeueIntervalMillis <= 0) {
+            return Math.min(mCacheLimit, 1);
+        }
+
+        final long loadTime = mAverageLoadTimeMillis > 0
+                ? mAverageLoadTimeMillis
+                : DEFAULT_LOAD_TIME_MILLISECONDS;
+        final long neededDuringLoad =
+                1 + (loadTime + mAverageDequeueIntervalMillis - 1) / mAverageDequeueIntervalMillis;
+        final long usableBeforeExpiry = EXPIRATION_TIME_MILLISECONDS / mAverageDequeueIntervalMillis;
+
+        final long target = Math.min(neededDuringLoad, usableBeforeExpiry);
+        return (int) Math.max(1, Math.min(target, mCacheLimit));
     }
 
     @VisibleForTesting
@@ -267,9 +621,16 @@ class NativeAdSource {
      */
     @VisibleForTesting
     void replenishCache() {
-        if (!mRequestInFlight && mMoPubNative != null && mNativeAdCache.size() < CACHE_LIMIT) {
-            mRequestInFlight = true;
-            mMoPubNative.makeRequest(mRequestParameters, mSequenceNumber);
+        final int targetCacheSize = getTargetCacheSize();
+        while (mMoPubNative != null
+                && !mRetryInFlight
+                && mRequestsInFlight < mMaxRequestsInFlight
+                && mNativeAdCache.size() + mRequestsInFlight < targetCacheSize) {
+            // Parallel requests each get their own position in the sequence.
+            final int sequenceNumber = mSequenceNumber + mRequestsInFlight;
+            mRequestsInFlight++;
+            mMoPubNative.makeRequest(mRequestParameters, sequenceNumber,
+                    newRequestListener(SystemClock.uptimeMillis()));
         }
     }
 
@@ -285,4 +646,11 @@ class NativeAdSource {
     MoPubNativeNetworkListener getMoPubNativeNetworkListener() {
         return mMoPubNativeNetworkListener;
     }
+
+    @NonNull
+    @Deprecated
+    @VisibleForTesting
+    MoPubNativeNetworkListener getRestoredAdNetworkListener() {
+        return mRestoredAdNetworkListener;
+    }
 }
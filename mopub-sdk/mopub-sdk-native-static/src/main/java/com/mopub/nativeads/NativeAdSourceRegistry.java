@@ -0,0 +1,361 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A process-wide registry of {@link NativeAdSource}s keyed by ad unit ID.
+ *
+ * Ad placers showing the same ad unit attach to a single shared source through a
+ * {@link SharedNativeAdSource}, so that ads prefetched for one screen can be placed on another
+ * instead of each screen warming and discarding its own cache. The shared source is torn down when
+ * the last attached placer detaches.
+ *
+ * This class is not thread safe and should only be called from the UI thread.
+ */
+class NativeAdSourceRegistry {
+    @NonNull private static final Map<String, SharedEntry> sEntries =
+            new HashMap<String, SharedEntry>();
+
+    private NativeAdSourceRegistry() {
+    }
+
+    /**
+     * Returns the shared entry for the given ad unit, creating it if necessary.
+     */
+    @NonNull
+    static SharedEntry getOrCreateEntry(@NonNull final String adUnitId) {
+        Preconditions.checkNotNull(adUnitId);
+
+        SharedEntry entry = sEntries.get(adUnitId);
+        if (entry == null) {
+            entry = new SharedEntry(adUnitId, new NativeAdSource());
+            sEntries.put(adUnitId, entry);
+        }
+        return entry;
+    }
+
+    @Nullable
+    static SharedEntry getEntry(@NonNull final String adUnitId) {
+        return sEntries.get(adUnitId);
+    }
+
+    private static void removeEntry(@NonNull final SharedEntry entry) {
+        if (sEntries.get(entry.mAdUnitId) == entry) {
+            sEntries.remove(entry.mAdUnitId);
+        }
+    }
+
+    @VisibleForTesting
+    static void putEntry(@NonNull final SharedEntry entry) {
+        sEntries.put(entry.mAdUnitId, entry);
+    }
+
+    @VisibleForTesting
+    static void clearEntries() {
+        sEntries.clear();
+    }
+
+    /**
+     * A shared {@link NativeAdSource} along with the placers attached to it.
+     *
+     * Prefetched ads are distributed fairly: a placer that failed to dequeue an ad joins a waiting
+     * line, and each ad that arrives later is taken out of the cache and reserved for the placer at
+     * the front of the line. A reservation that its placer hasn't claimed within
+     * {@link #RESERVATION_TIMEOUT_MILLISECONDS} may be taken by any other placer, so a placer that
+     * stops asking for ads can't hold them back from the rest.
+     */
+    static class SharedEntry {
+        @VisibleForTesting static final long RESERVATION_TIMEOUT_MILLISECONDS = 5 * 1000;
+
+        @NonNull private final String mAdUnitId;
+        @NonNull private final NativeAdSource mAdSource;
+        @NonNull private final List<SharedNativeAdSource> mAttached;
+        @NonNull private final LinkedList<SharedNativeAdSource> mWaiting;
+        @NonNull private final List<Reservation> mReservations;
+        @NonNull private final List<Class<? extends MoPubAdRenderer>> mRendererClasses;
+
+        // The attached source whose activity the shared source requests ads with
+        @Nullable private SharedNativeAdSource mOwner;
+
+        @VisibleForTesting
+        SharedEntry(@NonNull final String adUnitId, @NonNull final NativeAdSource adSource) {
+            mAdUnitId = adUnitId;
+            mAdSource = adSource;
+            mAttached = new ArrayList<SharedNativeAdSource>();
+            mWaiting = new LinkedList<SharedNativeAdSource>();
+            mReservations = new ArrayList<Reservation>();
+            mRendererClasses = new ArrayList<Class<? extends MoPubAdRenderer>>();
+
+            mAdSource.setAdSourceListener(new StreamAdSource.AdSourceListener() {
+                @Override
+                public void onAdsAvailable() {
+                    notifyAdsAvailable();
+                }
+            });
+        }
+
+        @NonNull
+        String getAdUnitId() {
+            return mAdUnitId;
+        }
+
+        @NonNull
+        NativeAdSource getAdSource() {
+            return mAdSource;
+        }
+
+        int getAttachedCount() {
+            return mAttached.size();
+        }
+
+        @VisibleForTesting
+        int getReservedAdCount() {
+            return mReservations.size();
+        }
+
+        void attach(@NonNull final SharedNativeAdSource source,
+                @NonNull final Activity activity,
+                @Nullable final RequestParameters requestParameters) {
+            if (mAttached.contains(source)) {
+                mAdSource.setRequestParameters(requestParameters);
+                return;
+            }
+
+            mAttached.add(source);
+            for (final MoPubAdRenderer renderer : source.getAdRendererIterable()) {
+                registerAdRenderer(renderer);
+            }
+
+            if (mOwner == null) {
+                mOwner = source;
+                mAdSource.loadAds(activity, mAdUnitId, requestParameters);
+                return;
+            }
+
+            mAdSource.setRequestParameters(requestParameters);
+            if (mAdSource.getCachedAdCount() > 0 || hasUnclaimedReservation()) {
+                // Ads are only announced when the cache becomes non-empty, so let the new placer
+                // know that it can start placing right away.
+                source.onAdsAvailable();
+            }
+        }
+
+        void detach(@NonNull final SharedNativeAdSource source) {
+            if (!mAttached.remove(source)) {
+                return;
+            }
+            mWaiting.remove(source);
+
+            if (mAttached.isEmpty()) {
+                for (final Reservation reservation : mReservations) {
+                    reservation.mNativeAd.mInstance.destroy();
+                }
+                mReservations.clear();
+                mOwner = null;
+                mAdSource.clear();
+                removeEntry(this);
+                return;
+            }
+
+            if (source == mOwner) {
+                mOwner = mAttached.get(0);
+                final Activity activity = mOwner.getActivity();
+                if (activity != null) {
+                    mAdSource.switchActivity(activity, mAdUnitId);
+                }
+            }
+
+            final Reservation reservation = findReservation(source);
+            if (reservation != null) {
+                // Pass the ad on to the next placer in line, or to whoever asks first.
+                final SharedNativeAdSource next = mWaiting.poll();
+                reservation.reserveFor(next);
+                if (next != null) {
+                    next.onAdsAvailable();
+                } else {
+                    final List<SharedNativeAdSource> sources =
+                            new ArrayList<SharedNativeAdSource>();
+                    addOtherAttached(sources);
+                    for (final SharedNativeAdSource attached : sources) {
+                        attached.onAdsAvailable();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Registers a renderer with the shared source unless one of the same type already is. Ads
+         * are matched to each placer's own renderers when they are dequeued.
+         */
+        void registerAdRenderer(@NonNull final MoPubAdRenderer renderer) {
+            final Class<? extends MoPubAdRenderer> rendererClass = renderer.getClass();
+            if (mRendererClasses.contains(rendererClass)) {
+                return;
+            }
+            mRendererClasses.add(rendererClass);
+            mAdSource.registerAdRenderer(renderer);
+        }
+
+        /**
+         * Returns the ad reserved for the given placer, an ad from the cache, or an ad whose
+         * reservation has gone unclaimed, in that order. Otherwise the placer joins the waiting line
+         * and null is returned.
+         */
+        @Nullable
+        NativeAd dequeueAd(@NonNull final SharedNativeAdSource source) {
+            removeExpiredReservations();
+
+            final Reservation reservation = findReservation(source);
+            if (reservation != null) {
+                mReservations.remove(reservation);
+                return reservation.mNativeAd.mInstance;
+            }
+
+            NativeAd nativeAd = null;
+            if (mAdSource.getCachedAdCount() > 0) {
+                final TimestampWrapper<NativeAd> timestampWrapper =
+                        mAdSource.dequeueTimestampedAd();
+                if (timestampWrapper != null) {
+                    nativeAd = timestampWrapper.mInstance;
+                }
+            } else {
+                mAdSource.replenishCache();
+            }
+            if (nativeAd == null) {
+                nativeAd = takeUnclaimedReservation();
+            }
+
+            if (nativeAd == null) {
+                if (!mWaiting.contains(source)) {
+                    mWaiting.add(source);
+                }
+                return null;
+            }
+
+            mWaiting.remove(source);
+            return nativeAd;
+        }
+
+        private void notifyAdsAvailable() {
+            // Hand the new ads to the waiting placers in order, so that the placers that have
+            // been waiting longest can't lose them to placers that happen to ask first.
+            final List<SharedNativeAdSource> sources = new ArrayList<SharedNativeAdSource>();
+            while (!mWaiting.isEmpty() && mAdSource.getCachedAdCount() > 0) {
+                final TimestampWrapper<NativeAd> nativeAd = mAdSource.dequeueTimestampedAd();
+                if (nativeAd == null) {
+                    break;
+                }
+                final SharedNativeAdSource source = mWaiting.removeFirst();
+                mReservations.add(new Reservation(nativeAd, source));
+                sources.add(source);
+            }
+
+            // Placers that weren't waiting only need to hear about ads left in the cache.
+            if (mAdSource.getCachedAdCount() > 0) {
+                addOtherAttached(sources);
+            }
+            for (final SharedNativeAdSource source : sources) {
+                source.onAdsAvailable();
+            }
+        }
+
+        /**
+         * Adds the attached placers that aren't in the given list to its end. Listeners are
+         * notified from such a copy since they may detach.
+         */
+        private void addOtherAttached(@NonNull final List<SharedNativeAdSource> sources) {
+            for (final SharedNativeAdSource source : mAttached) {
+                if (!sources.contains(source)) {
+                    sources.add(source);
+                }
+            }
+        }
+
+        @Nullable
+        private Reservation findReservation(@NonNull final SharedNativeAdSource source) {
+            for (final Reservation reservation : mReservations) {
+                if (reservation.mSource == source) {
+                    return reservation;
+                }
+            }
+            return null;
+        }
+
+        private boolean hasUnclaimedReservation() {
+            final long now = SystemClock.uptimeMillis();
+            for (final Reservation reservation : mReservations) {
+                if (reservation.isUnclaimed(now)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Nullable
+        private NativeAd takeUnclaimedReservation() {
+            final long now = SystemClock.uptimeMillis();
+            final Iterator<Reservation> iterator = mReservations.iterator();
+            while (iterator.hasNext()) {
+                final Reservation reservation = iterator.next();
+                if (reservation.isUnclaimed(now)) {
+                    iterator.remove();
+                    return reservation.mNativeAd.mInstance;
+                }
+            }
+            return null;
+        }
+
+        private void removeExpiredReservations() {
+            final long now = SystemClock.uptimeMillis();
+            final Iterator<Reservation> iterator = mReservations.iterator();
+            while (iterator.hasNext()) {
+                final Reservation reservation = iterator.next();
+                if (now - reservation.mNativeAd.mCreatedTimestamp
+                        >= NativeAdSource.EXPIRATION_TIME_MILLISECONDS) {
+                    reservation.mNativeAd.mInstance.destroy();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * An ad taken out of the shared cache for one placer. The ad keeps the time it was loaded at,
+     * so it expires just as it would have in the cache.
+     */
+    private static class Reservation {
+        @NonNull final TimestampWrapper<NativeAd> mNativeAd;
+        // The placer the ad is reserved for, or null if anyone may take it
+        @Nullable SharedNativeAdSource mSource;
+        long mReservedTimestamp;
+
+        Reservation(@NonNull final TimestampWrapper<NativeAd> nativeAd,
+                @NonNull final SharedNativeAdSource source) {
+            mNativeAd = nativeAd;
+            reserveFor(source);
+        }
+
+        void reserveFor(@Nullable final SharedNativeAdSource source) {
+            mSource = source;
+            mReservedTimestamp = SystemClock.uptimeMillis();
+        }
+
+        boolean isUnclaimed(final long now) {
+            return mSource == null
+                    || now - mReservedTimestamp >= SharedEntry.RESERVATION_TIMEOUT_MILLISECONDS;
+        }
+    }
+}
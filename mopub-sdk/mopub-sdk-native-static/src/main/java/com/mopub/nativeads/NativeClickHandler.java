@@ -8,6 +8,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 
+import com.mopub.common.ClickUrlPreResolver;
 import com.mopub.common.Preconditions;
 import com.mopub.common.UrlAction;
 import com.mopub.common.UrlHandler;
@@ -90,9 +91,23 @@ public class NativeClickHandler {
         setOnClickListener(view, (OnClickListener) null);
     }
 
+    /**
+     * Starts following the redirects of the click destination url in the background, if
+     * {@link com.mopub.common.MoPub#setClickUrlPreResolutionEnabled(boolean)} is enabled, so that
+     * {@link #openClickDestinationUrl(String, View)} can open the final destination right away.
+     * Only urls on the hosts set with
+     * {@link com.mopub.common.MoPub#setClickUrlPreResolutionHosts(java.util.Collection)} are
+     * requested before the click.
+     *
+     * @param clickDestinationUrl The click destination url of an ad that is being shown
+     */
+    public void preResolveClickDestinationUrl(@Nullable final String clickDestinationUrl) {
+        ClickUrlPreResolver.preResolve(clickDestinationUrl);
+    }
+
     /**
      * Handles resolving and opening the click destination url. A spinning progress view is shown
-     * while the click destination is being resolved.
+     * while the click destination is being resolved, unless it was already pre-resolved.
      *
      * @param clickDestinationUrl The click destination url
      * @param view The view on which to display the spinning progress view
@@ -119,7 +134,12 @@ public class NativeClickHandler {
         }
         mClickInProgress = true;
 
-        if (view != null) {
+        // A pre-resolved url was reached without requesting any url on a host that may count
+        // the request as a click, so none of the redirects skipped here is a click tracker. The
+        // ad's click trackers are fired by the ad itself on every click.
+        final String resolvedUrl = ClickUrlPreResolver.getResolvedUrl(clickDestinationUrl);
+        final boolean showSpinner = view != null && resolvedUrl == null;
+        if (showSpinner) {
             spinningProgressView.addToRoot(view);
         }
 
@@ -127,7 +147,7 @@ public class NativeClickHandler {
         if (!TextUtils.isEmpty(mDspCreativeId)) {
             builder.withDspCreativeId(mDspCreativeId);
         }
-        builder.withSupportedUrlActions(
+        final UrlHandler urlHandler = builder.withSupportedUrlActions(
                 UrlAction.IGNORE_ABOUT_SCHEME,
                 UrlAction.OPEN_NATIVE_BROWSER,
                 UrlAction.OPEN_APP_MARKET,
@@ -151,11 +171,17 @@ public class NativeClickHandler {
                     }
 
                     private void removeSpinningProgressView() {
-                        if (view != null) {
+                        if (showSpinner) {
                             spinningProgressView.removeFromRoot();
                         }
                     }
                 })
-                .build().handleUrl(mContext, clickDestinationUrl);
+                .build();
+
+        if (resolvedUrl != null) {
+            urlHandler.handleResolvedUrl(mContext, resolvedUrl, true, null);
+        } else {
+            urlHandler.handleUrl(mContext, clickDestinationUrl);
+        }
     }
 }
@@ -6,6 +6,7 @@ import android.support.annotation.Nullable;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.nativeads.MoPubNativeAdPositioning.MoPubClientPositioning;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -113,10 +114,15 @@ import java.util.List;
  * originalPositions: {3}
  * adjustedPositions: {3}
  *
+ * Repeating positions are added to the desired positions as the stream reaches them, so there is
+ * no limit to the number of ads in a stream.
+ *
  * Some runtime guarantees in terms of number of insertion ads:
  * - Finds the next or previous insertion position in O(logN)
  * - Maps from adjusted to original positions and vice versa in O(logN)
- * - Places an ad (moves positions from desired to placed) in O(N)
+ * - Inserts or removes a range of items in O(logN), plus O(logN) for each ad in a removed range
+ * - Places an ad (moves positions from desired to placed) in O(N), or amortized O(logN) if the
+ *   ad is placed after all other placed ads and before all other desired positions
  */
 class PlacementData {
     /**
@@ -124,27 +130,32 @@ class PlacementData {
      */
     public final static int NOT_FOUND = -1;
 
-    // Cap the number of ads to avoid unrestrained memory usage. 200 allows the 5 positioning
-    // arrays to fit in less than 4K.
-    private final static int MAX_ADS = 200;
+    @NonNull private final PositionList mDesiredOriginalPositions = new PositionList();
+    @NonNull private final PositionList mDesiredInsertionPositions = new PositionList();
+    @NonNull private final PositionList mOriginalAdPositions = new PositionList();
+    @NonNull private final PositionList mAdjustedAdPositions = new PositionList();
+    @NonNull private final ArrayList<NativeAd> mNativeAds = new ArrayList<NativeAd>();
 
-    // Initialize all of these to their max capacity. This prevents garbage collection when
-    // reallocating the list, which causes noticeable stuttering when scrolling on some devices.
-    @NonNull private final int[] mDesiredOriginalPositions = new int[MAX_ADS];
-    @NonNull private final int[] mDesiredInsertionPositions = new int[MAX_ADS];
-    private int mDesiredCount = 0;
-    @NonNull private final int[] mOriginalAdPositions = new int[MAX_ADS];
-    @NonNull private final int[] mAdjustedAdPositions = new int[MAX_ADS];
-    @NonNull private final NativeAd[] mNativeAds = new NativeAd[MAX_ADS];
-    private int mPlacedCount = 0;
+    // Repeating positions after the desired positions above. They all come after every other
+    // position, so inserting or removing items before them shifts them all the same way.
+    private final int mRepeatInterval;
+    private int mNextRepeatingPosition;
 
     /**
      * @param desiredInsertionPositions Insertion positions, expressed as original positions
+     * @param repeatInterval The interval of the desired positions after the given ones, or
+     * {@link MoPubClientPositioning#NO_REPEAT}
+     * @param firstRepeatingPosition The first position after the given ones, expressed as an
+     * original position
      */
-    private PlacementData(@NonNull final int[] desiredInsertionPositions) {
-        mDesiredCount = Math.min(desiredInsertionPositions.length, MAX_ADS);
-        System.arraycopy(desiredInsertionPositions, 0, mDesiredInsertionPositions, 0, mDesiredCount);
-        System.arraycopy(desiredInsertionPositions, 0, mDesiredOriginalPositions, 0, mDesiredCount);
+    private PlacementData(@NonNull final int[] desiredInsertionPositions,
+            final int repeatInterval, final int firstRepeatingPosition) {
+        mDesiredInsertionPositions.setAll(desiredInsertionPositions,
+                desiredInsertionPositions.length);
+        mDesiredOriginalPositions.setAll(desiredInsertionPositions,
+                desiredInsertionPositions.length);
+        mRepeatInterval = repeatInterval;
+        mNextRepeatingPosition = firstRepeatingPosition;
     }
 
     @NonNull
@@ -152,8 +163,7 @@ class PlacementData {
         final List<Integer> fixed = adPositioning.getFixedPositions();
         final int interval = adPositioning.getRepeatingInterval();
 
-        final int size = (interval == MoPubClientPositioning.NO_REPEAT ? fixed.size() : MAX_ADS);
-        final int[] desiredInsertionPositions = new int[size];
+        final int[] desiredInsertionPositions = new int[fixed.size()];
 
         // Fixed positions are in terms of final positions. Calculate current insertion positions
         // by decrementing numAds at each index.
@@ -164,25 +174,24 @@ class PlacementData {
             desiredInsertionPositions[numAds++] = lastPos;
         }
 
-        // Expand the repeating positions, if there are any
-        while (numAds < size) {
-            lastPos = lastPos + interval - 1;
-            desiredInsertionPositions[numAds++] = lastPos;
-        }
-        return new PlacementData(desiredInsertionPositions);
+        // The repeating positions are added as they are needed
+        final int firstRepeatingPosition = (interval == MoPubClientPositioning.NO_REPEAT)
+                ? lastPos
+                : lastPos + interval - 1;
+        return new PlacementData(desiredInsertionPositions, interval, firstRepeatingPosition);
     }
 
     @NonNull
     static PlacementData empty() {
-        return new PlacementData(new int[] {});
+        return new PlacementData(new int[] {}, MoPubClientPositioning.NO_REPEAT, 0);
     }
 
     /**
      * Whether the given position should be an ad.
      */
     boolean shouldPlaceAd(final int position) {
-        final int index = binarySearch(mDesiredInsertionPositions, 0, mDesiredCount, position);
-        return index >= 0;
+        addRepeatingPositions(position);
+        return mDesiredInsertionPositions.indexOf(position) >= 0;
     }
 
     /**
@@ -190,12 +199,12 @@ class PlacementData {
      * more ads.
      */
     int nextInsertionPosition(final int position) {
-        final int index = binarySearchGreaterThan(
-                mDesiredInsertionPositions, mDesiredCount, position);
-        if (index == mDesiredCount) {
+        addRepeatingPositions(position);
+        final int index = mDesiredInsertionPositions.indexOfFirstGreaterThan(position);
+        if (index == mDesiredInsertionPositions.size()) {
             return NOT_FOUND;
         }
-        return mDesiredInsertionPositions[index];
+        return mDesiredInsertionPositions.get(index);
     }
 
     /**
@@ -203,12 +212,12 @@ class PlacementData {
      * are no more ads.
      */
     int previousInsertionPosition(final int position) {
-        final int index = binarySearchFirstEquals(
-                mDesiredInsertionPositions,  mDesiredCount, position);
+        addRepeatingPositions(position);
+        final int index = mDesiredInsertionPositions.indexOfFirstAtLeast(position);
         if (index == 0) {
             return NOT_FOUND;
         }
-        return mDesiredInsertionPositions[index - 1];
+        return mDesiredInsertionPositions.get(index - 1);
     }
 
     /**
@@ -216,54 +225,34 @@ class PlacementData {
      */
     void placeAd(final int adjustedPosition, final NativeAd nativeAd) {
         // See if this is a insertion ad
-        final int desiredIndex = binarySearchFirstEquals(
-                mDesiredInsertionPositions, mDesiredCount, adjustedPosition);
-        if (desiredIndex == mDesiredCount
-                || mDesiredInsertionPositions[desiredIndex] != adjustedPosition) {
+        addRepeatingPositions(adjustedPosition);
+        final int desiredIndex = mDesiredInsertionPositions.indexOf(adjustedPosition);
+        if (desiredIndex < 0) {
             MoPubLog.w("Attempted to insert an ad at an invalid position");
             return;
         }
 
-        // Add to placed array
-        final int originalPosition = mDesiredOriginalPositions[desiredIndex];
-        int placeIndex = binarySearchGreaterThan(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-        if (placeIndex < mPlacedCount) {
-            final int num = mPlacedCount - placeIndex;
-            System.arraycopy(mOriginalAdPositions, placeIndex,
-                    mOriginalAdPositions, placeIndex + 1, num);
-            System.arraycopy(mAdjustedAdPositions, placeIndex,
-                    mAdjustedAdPositions, placeIndex + 1, num);
-            System.arraycopy(mNativeAds, placeIndex, mNativeAds, placeIndex + 1, num);
-        }
-        mOriginalAdPositions[placeIndex] = originalPosition;
-        mAdjustedAdPositions[placeIndex] = adjustedPosition;
-        mNativeAds[placeIndex] = nativeAd;
-        mPlacedCount++;
+        // Add to placed lists
+        final int originalPosition = mDesiredOriginalPositions.get(desiredIndex);
+        final int placeIndex = mOriginalAdPositions.indexOfFirstGreaterThan(originalPosition);
+        mOriginalAdPositions.add(placeIndex, originalPosition);
+        mAdjustedAdPositions.add(placeIndex, adjustedPosition);
+        mNativeAds.add(placeIndex, nativeAd);
 
         // Remove desired index
-        final int num = mDesiredCount - desiredIndex - 1;
-        System.arraycopy(mDesiredInsertionPositions, desiredIndex + 1,
-                mDesiredInsertionPositions, desiredIndex, num);
-        System.arraycopy(mDesiredOriginalPositions, desiredIndex + 1,
-                mDesiredOriginalPositions, desiredIndex, num);
-        mDesiredCount--;
+        mDesiredOriginalPositions.remove(desiredIndex);
+        mDesiredInsertionPositions.remove(desiredIndex);
 
         // Increment adjusted positions
-        for (int i = desiredIndex; i < mDesiredCount; ++i) {
-            mDesiredInsertionPositions[i]++;
-        }
-        for (int i = placeIndex + 1; i < mPlacedCount; ++i) {
-            mAdjustedAdPositions[i]++;
-        }
+        mDesiredInsertionPositions.shift(desiredIndex, 1);
+        mAdjustedAdPositions.shift(placeIndex + 1, 1);
     }
 
     /**
      * @see {@link com.mopub.nativeads.MoPubStreamAdPlacer#isAd(int)}
      */
     boolean isPlacedAd(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-        return index >= 0;
+        return mAdjustedAdPositions.indexOf(position) >= 0;
     }
 
     /**
@@ -272,11 +261,11 @@ class PlacementData {
      */
     @Nullable
     NativeAd getPlacedAd(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
+        final int index = mAdjustedAdPositions.indexOf(position);
         if (index < 0) {
             return null;
         }
-        return mNativeAds[index];
+        return mNativeAds.get(index);
     }
 
     /**
@@ -285,32 +274,28 @@ class PlacementData {
      */
     @NonNull
     int[] getPlacedAdPositions() {
-        int[] positions = new int[mPlacedCount];
-        System.arraycopy(mAdjustedAdPositions, 0, positions, 0, mPlacedCount);
-        return positions;
+        return mAdjustedAdPositions.toArray();
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#getOriginalPosition(int)
      */
     int getOriginalPosition(final int position) {
-        final int index = binarySearch(mAdjustedAdPositions, 0, mPlacedCount, position);
-
-        // No match, ~index is the number of ads before this pos.
-        if (index < 0) {
-            return position - ~index;
+        // The index is the number of ads before this pos.
+        final int index = mAdjustedAdPositions.indexOfFirstAtLeast(position);
+        if (index < mAdjustedAdPositions.size() && mAdjustedAdPositions.get(index) == position) {
+            // This is an ad - there is no original position
+            return NOT_FOUND;
         }
-
-        // This is an ad - there is no original position
-        return NOT_FOUND;
+        return position - index;
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#getAdjustedPosition(int)
      */
     int getAdjustedPosition(final int originalPosition) {
-        // This is an ad. Since binary search doesn't properly handle dups, find the first non-ad.
-        int index = binarySearchGreaterThan(mOriginalAdPositions, mPlacedCount, originalPosition);
+        // Ads share the original position of the item after them, so count those too.
+        final int index = mOriginalAdPositions.indexOfFirstGreaterThan(originalPosition);
         return originalPosition + index;
     }
 
@@ -343,17 +328,21 @@ class PlacementData {
      * positions.
      */
     int clearAdsInRange(final int adjustedStartRange, final int adjustedEndRange) {
+        final int placedCount = mNativeAds.size();
+        final int[] originalAdPositions = mOriginalAdPositions.toArray();
+        final int[] adjustedAdPositions = mAdjustedAdPositions.toArray();
+
         // Temporary arrays to store the cleared positions. Using temporary arrays makes it
         // easy to debug what positions are being cleared.
-        int[] clearOriginalPositions = new int[mPlacedCount];
-        int[] clearAdjustedPositions = new int[mPlacedCount];
+        int[] clearOriginalPositions = new int[placedCount];
+        int[] clearAdjustedPositions = new int[placedCount];
         int clearCount = 0;
 
         // Add to the clear position arrays any positions that fall inside
         // [adjustedRangeStart, adjustedRangeEnd).
-        for (int i = 0; i < mPlacedCount; ++i) {
-            int originalPosition = mOriginalAdPositions[i];
-            int adjustedPosition = mAdjustedAdPositions[i];
+        for (int i = 0; i < placedCount; ++i) {
+            int originalPosition = originalAdPositions[i];
+            int adjustedPosition = adjustedAdPositions[i];
             if (adjustedStartRange <= adjustedPosition && adjustedPosition < adjustedEndRange) {
                 // When copying adjusted positions, subtract the current clear count because there
                 // is no longer an ad incrementing the desired insertion position.
@@ -361,15 +350,15 @@ class PlacementData {
                 clearAdjustedPositions[clearCount] = adjustedPosition - clearCount;
 
                 // Destroying and nulling out the ad objects to avoids a memory leak.
-                mNativeAds[i].destroy();
-                mNativeAds[i] = null;
+                mNativeAds.get(i).destroy();
+                mNativeAds.set(i, null);
                 clearCount++;
             } else if (clearCount > 0) {
                 // The position is not in the range; shift it by the number of cleared ads.
                 int newIndex = i - clearCount;
-                mOriginalAdPositions[newIndex] = originalPosition;
-                mAdjustedAdPositions[newIndex] = adjustedPosition - clearCount;
-                mNativeAds[newIndex] = mNativeAds[i];
+                originalAdPositions[newIndex] = originalPosition;
+                adjustedAdPositions[newIndex] = adjustedPosition - clearCount;
+                mNativeAds.set(newIndex, mNativeAds.get(i));
             }
         }
 
@@ -381,23 +370,35 @@ class PlacementData {
         // Modify the desired positions arrays in order to make space to put back the
         // cleared ad positions. For example if the desired array was {1, 10,
         // 15} and we need to insert {3, 7} we'll shift the desired array to be {1, ?, ? , 10, 15}.
+        final int desiredCount = mDesiredInsertionPositions.size();
+        final int[] desiredOriginalPositions = new int[desiredCount + clearCount];
+        final int[] desiredInsertionPositions = new int[desiredCount + clearCount];
+        System.arraycopy(mDesiredOriginalPositions.toArray(), 0,
+                desiredOriginalPositions, 0, desiredCount);
+        System.arraycopy(mDesiredInsertionPositions.toArray(), 0,
+                desiredInsertionPositions, 0, desiredCount);
+
         int firstCleared = clearAdjustedPositions[0];
-        int desiredIndex = binarySearchFirstEquals(
-                mDesiredInsertionPositions, mDesiredCount, firstCleared);
-        for (int i = mDesiredCount - 1; i >= desiredIndex; --i) {
-            mDesiredOriginalPositions[i + clearCount] = mDesiredOriginalPositions[i];
-            mDesiredInsertionPositions[i + clearCount] = mDesiredInsertionPositions[i] - clearCount;
+        int desiredIndex = mDesiredInsertionPositions.indexOfFirstAtLeast(firstCleared);
+        for (int i = desiredCount - 1; i >= desiredIndex; --i) {
+            desiredOriginalPositions[i + clearCount] = desiredOriginalPositions[i];
+            desiredInsertionPositions[i + clearCount] = desiredInsertionPositions[i] - clearCount;
         }
 
         // Copy the cleared ad positions into the desired arrays.
         for (int i = 0; i < clearCount; ++i) {
-            mDesiredOriginalPositions[desiredIndex + i] = clearOriginalPositions[i];
-            mDesiredInsertionPositions[desiredIndex + i] = clearAdjustedPositions[i];
+            desiredOriginalPositions[desiredIndex + i] = clearOriginalPositions[i];
+            desiredInsertionPositions[desiredIndex + i] = clearAdjustedPositions[i];
         }
 
-        // Update the array counts, and we're done.
-        mDesiredCount = mDesiredCount + clearCount;
-        mPlacedCount = mPlacedCount - clearCount;
+        // Update the lists, and we're done.
+        mDesiredOriginalPositions.setAll(desiredOriginalPositions, desiredCount + clearCount);
+        mDesiredInsertionPositions.setAll(desiredInsertionPositions, desiredCount + clearCount);
+        mOriginalAdPositions.setAll(originalAdPositions, placedCount - clearCount);
+        mAdjustedAdPositions.setAll(adjustedAdPositions, placedCount - clearCount);
+        for (int i = placedCount - 1; i >= placedCount - clearCount; --i) {
+            mNativeAds.remove(i);
+        }
         return clearCount;
     }
 
@@ -406,59 +407,63 @@ class PlacementData {
      * will be back to the desired insertion positions.
      */
     void clearAds() {
-        if (mPlacedCount == 0) {
+        if (mNativeAds.isEmpty()) {
             return;
         }
 
-        clearAdsInRange(0, mAdjustedAdPositions[mPlacedCount - 1] + 1);
+        clearAdsInRange(0, mAdjustedAdPositions.last() + 1);
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#insertItem(int)
      */
     void insertItem(final int originalPosition) {
+        insertItems(originalPosition, 1);
+    }
 
-        // Increment desired arrays.
-        int indexToIncrement = binarySearchFirstEquals(
-                mDesiredOriginalPositions, mDesiredCount, originalPosition);
-        for (int i = indexToIncrement; i < mDesiredCount; ++i) {
-            mDesiredOriginalPositions[i]++;
-            mDesiredInsertionPositions[i]++;
+    /**
+     * @see com.mopub.nativeads.MoPubStreamAdPlacer#insertItems(int, int)
+     */
+    void insertItems(final int originalPosition, final int itemCount) {
+        if (itemCount <= 0) {
+            return;
         }
+        addRepeatingOriginalPositions(originalPosition);
 
-        // Increment placed arrays.
-        indexToIncrement = binarySearchFirstEquals(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
-        for (int i = indexToIncrement; i < mPlacedCount; ++i) {
-            mOriginalAdPositions[i]++;
-            mAdjustedAdPositions[i]++;
-        }
+        // Increment desired lists.
+        int indexToIncrement = mDesiredOriginalPositions.indexOfFirstAtLeast(originalPosition);
+        mDesiredOriginalPositions.shift(indexToIncrement, itemCount);
+        mDesiredInsertionPositions.shift(indexToIncrement, itemCount);
+
+        // Increment placed lists.
+        indexToIncrement = mOriginalAdPositions.indexOfFirstAtLeast(originalPosition);
+        mOriginalAdPositions.shift(indexToIncrement, itemCount);
+        mAdjustedAdPositions.shift(indexToIncrement, itemCount);
+
+        mNextRepeatingPosition += itemCount;
     }
 
     /**
      * @see com.mopub.nativeads.MoPubStreamAdPlacer#removeItem(int)
      */
     void removeItem(final int originalPosition) {
-        // When removing items, we only decrement ad position values *greater* than the original
-        // position we're removing. The original position associated with an ad is the original
-        // position of the first content item after the ad, so we shouldn't change the original
-        // position of an ad that matches the original position removed.
-        int indexToDecrement = binarySearchGreaterThan(
-                mDesiredOriginalPositions, mDesiredCount, originalPosition);
-
-        // Decrement desired arrays.
-        for (int i = indexToDecrement; i < mDesiredCount; ++i) {
-            mDesiredOriginalPositions[i]--;
-            mDesiredInsertionPositions[i]--;
+        removeItems(originalPosition, 1);
+    }
+
+    /**
+     * @see com.mopub.nativeads.MoPubStreamAdPlacer#removeItems(int, int)
+     */
+    void removeItems(final int originalPosition, final int itemCount) {
+        if (itemCount <= 0) {
+            return;
         }
+        addRepeatingOriginalPositions(originalPosition + itemCount);
 
-        indexToDecrement = binarySearchGreaterThan(
-                mOriginalAdPositions, mPlacedCount, originalPosition);
+        removeItems(mDesiredOriginalPositions, mDesiredInsertionPositions,
+                originalPosition, itemCount);
+        removeItems(mOriginalAdPositions, mAdjustedAdPositions, originalPosition, itemCount);
 
-        for (int i = indexToDecrement; i < mPlacedCount; ++i) {
-            mOriginalAdPositions[i]--;
-            mAdjustedAdPositions[i]--;
-        }
+        mNextRepeatingPosition -= itemCount;
     }
 
     /**
@@ -469,59 +474,69 @@ class PlacementData {
         insertItem(newPosition);
     }
 
-    private static int binarySearchFirstEquals(int[] array, int count, int value) {
-        int index = binarySearch(array, 0, count, value);
-
-        // If not found, binarySearch returns the 2's complement of the index of the nearest
-        // value higher than the target value, which is also the insertion index.
-        if (index < 0) {
-            return ~index;
-        }
-
-        int duplicateValue = array[index];
-        while (index >= 0 && array[index] == duplicateValue) {
-            index--;
+    /**
+     * Decrements the positions in a pair of lists as if the items in the given range were removed
+     * one at a time.
+     *
+     * When removing items, we only decrement ad position values *greater* than the original
+     * position we're removing. The original position associated with an ad is the original
+     * position of the first content item after the ad, so we shouldn't change the original
+     * position of an ad that matches the original position removed. Ads whose item was removed
+     * end up at the original position of the range.
+     */
+    private static void removeItems(@NonNull final PositionList originalPositions,
+            @NonNull final PositionList positions,
+            final int originalPosition, final int itemCount) {
+        final int startIndex = originalPositions.indexOfFirstGreaterThan(originalPosition);
+        final int endIndex = originalPositions.indexOfFirstGreaterThan(
+                originalPosition + itemCount);
+
+        // Every shift applies to all later positions too, so track what has been applied so far
+        int shifted = 0;
+        for (int i = startIndex; i < endIndex; i++) {
+            final int delta = originalPosition - originalPositions.get(i);
+            originalPositions.shift(i, delta);
+            positions.shift(i, delta);
+            shifted += delta;
         }
-
-        return index + 1;
+        originalPositions.shift(endIndex, -itemCount - shifted);
+        positions.shift(endIndex, -itemCount - shifted);
     }
 
-    private static int binarySearchGreaterThan(int[] array, int count, int value) {
-        int index = binarySearch(array, 0, count, value);
-
-        // If not found, binarySearch returns the 2's complement of the index of the nearest
-        // value higher than the target value, which is also the insertion index.
-        if (index < 0) {
-            return ~index;
-        }
-
-        int duplicateValue = array[index];
-        while (index < count && array[index] == duplicateValue) {
-            index++;
+    /**
+     * Adds repeating positions to the desired positions until they contain an insertion position
+     * after the given one.
+     */
+    private void addRepeatingPositions(final int position) {
+        while (hasRepeatingPositions()
+                && (mDesiredInsertionPositions.size() == 0
+                || mDesiredInsertionPositions.last() <= position)) {
+            addNextRepeatingPosition();
         }
-
-        return index;
     }
 
     /**
-     * Copied from Arrays.java, which isn't available until Gingerbread.
+     * Adds repeating positions to the desired positions until they contain an original position
+     * after the given one.
      */
-    private static int binarySearch(int[] array, int startIndex, int endIndex, int value) {
-        int lo = startIndex;
-        int hi = endIndex - 1;
-
-        while (lo <= hi) {
-            int mid = (lo + hi) >>> 1;
-            int midVal = array[mid];
-
-            if (midVal < value) {
-                lo = mid + 1;
-            } else if (midVal > value) {
-                hi = mid - 1;
-            } else {
-                return mid;  // value found
-            }
+    private void addRepeatingOriginalPositions(final int originalPosition) {
+        while (hasRepeatingPositions()
+                && (mDesiredOriginalPositions.size() == 0
+                || mDesiredOriginalPositions.last() <= originalPosition)) {
+            addNextRepeatingPosition();
         }
-        return ~lo;  // value not present
+    }
+
+    private boolean hasRepeatingPositions() {
+        // Stops before the positions overflow
+        return mRepeatInterval != MoPubClientPositioning.NO_REPEAT
+                && mNextRepeatingPosition < Integer.MAX_VALUE - mRepeatInterval - mNativeAds.size();
+    }
+
+    private void addNextRepeatingPosition() {
+        // Every placed ad comes before the repeating positions, so each one increments them.
+        mDesiredOriginalPositions.add(mNextRepeatingPosition);
+        mDesiredInsertionPositions.add(mNextRepeatingPosition + mNativeAds.size());
+        mNextRepeatingPosition += mRepeatInterval - 1;
     }
 }
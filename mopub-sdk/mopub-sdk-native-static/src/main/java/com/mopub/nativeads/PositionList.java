@@ -0,0 +1,230 @@
+package com.mopub.nativeads;
+
+import android.support.annotation.NonNull;
+
+import com.mopub.common.Preconditions;
+
+/**
+ * A sorted list of positions in a stream that supports shifting every position from an index on,
+ * as happens when content items are inserted into or removed from the stream.
+ *
+ * The positions are stored as the differences between neighboring positions in a Fenwick tree,
+ * so shifting a suffix of the list is a single update. Some runtime guarantees:
+ * - Gets a position or finds the index of a position in O(logN)
+ * - Shifts all positions from an index on in O(logN)
+ * - Adds a position to the end in amortized O(logN)
+ * - Removes the first position in amortized O(1)
+ * - Inserts or removes a position anywhere else in O(N)
+ *
+ * This class is not thread safe.
+ */
+class PositionList {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 1-based Fenwick tree. Node i holds the sum of the differences (i - lowestOneBit(i), i].
+    @NonNull private int[] mTree = new int[INITIAL_CAPACITY + 1];
+
+    // Positions removed from the front stay in the tree, before node mHead + 1 where the list
+    // starts, until they take up more than half of it and the tree is rebuilt.
+    private int mHead;
+    private int mSize;
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the position at the given index.
+     */
+    int get(final int index) {
+        return getAtNode(mHead + index + 1);
+    }
+
+    /**
+     * Returns the last position. The list must not be empty.
+     */
+    int last() {
+        return get(mSize - 1);
+    }
+
+    /**
+     * Returns the index of the first position that is at least the given position, or the size of
+     * the list if there is none.
+     */
+    int indexOfFirstAtLeast(final int position) {
+        // Descends the tree, keeping the largest node whose position is less than the given one.
+        // Removed positions are never greater than the first one, so they are all counted before
+        // any position of the list is.
+        final int endNode = mHead + mSize;
+        int node = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(Math.max(endNode, 1)); step > 0; step >>= 1) {
+            final int next = node + step;
+            if (next <= endNode && mTree[next] < remaining) {
+                node = next;
+                remaining -= mTree[next];
+            }
+        }
+        return Math.max(node - mHead, 0);
+    }
+
+    /**
+     * Returns the index of the first position greater than the given position, or the size of the
+     * list if there is none.
+     */
+    int indexOfFirstGreaterThan(final int position) {
+        if (position == Integer.MAX_VALUE) {
+            return mSize;
+        }
+        return indexOfFirstAtLeast(position + 1);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given position, or -1 if the position is
+     * not in the list.
+     */
+    int indexOf(final int position) {
+        final int index = indexOfFirstAtLeast(position);
+        if (index < mSize && get(index) == position) {
+            return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the given delta to every position from the given index on. The positions must stay
+     * sorted.
+     */
+    void shift(final int fromIndex, final int delta) {
+        // Shifting the whole list shifts the removed positions too, so they stay before it
+        final int fromNode = fromIndex == 0 ? 1 : mHead + fromIndex + 1;
+        for (int i = fromNode; i <= mHead + mSize; i += Integer.lowestOneBit(i)) {
+            mTree[i] += delta;
+        }
+    }
+
+    /**
+     * Adds a position to the end of the list. The position should not be less than the last one,
+     * otherwise the searches above are undefined, just as a binary search over an unsorted array.
+     */
+    void add(final int position) {
+        final int node = mHead + mSize + 1;
+        if (node == mTree.length) {
+            final int[] tree = new int[mTree.length * 2];
+            System.arraycopy(mTree, 0, tree, 0, mTree.length);
+            mTree = tree;
+        }
+
+        // The differences in the range of the new node sum up to the new position minus the
+        // position before its range.
+        final int rangeStart = node - Integer.lowestOneBit(node);
+        mTree[node] = position - getAtNode(rangeStart);
+        mSize++;
+    }
+
+    /**
+     * Inserts a position at the given index. The positions must stay sorted.
+     */
+    void add(final int index, final int position) {
+        if (index == mSize) {
+            add(position);
+            return;
+        }
+
+        final int[] positions = toArray();
+        final int[] newPositions = new int[positions.length + 1];
+        System.arraycopy(positions, 0, newPositions, 0, index);
+        newPositions[index] = position;
+        System.arraycopy(positions, index, newPositions, index + 1, positions.length - index);
+        setAll(newPositions, newPositions.length);
+    }
+
+    /**
+     * Removes the position at the given index.
+     */
+    void remove(final int index) {
+        Preconditions.checkArgument(index >= 0 && index < mSize);
+
+        if (index == 0) {
+            // Leave the position in the tree and start the list after it
+            mHead++;
+            mSize--;
+            if (mHead > mSize) {
+                setAll(toArray(), mSize);
+            }
+            return;
+        }
+
+        final int[] positions = toArray();
+        System.arraycopy(positions, index + 1, positions, index, positions.length - index - 1);
+        setAll(positions, positions.length - 1);
+    }
+
+    /**
+     * Replaces the positions in the list with the first {@code count} positions of the given
+     * array, in O(N).
+     */
+    void setAll(@NonNull final int[] positions, final int count) {
+        Preconditions.checkNotNull(positions);
+
+        int capacity = mTree.length - 1;
+        while (capacity < count) {
+            capacity *= 2;
+        }
+        if (capacity + 1 != mTree.length) {
+            mTree = new int[capacity + 1];
+        }
+
+        for (int i = 1; i <= count; i++) {
+            mTree[i] = positions[i - 1] - (i > 1 ? positions[i - 2] : 0);
+        }
+        for (int i = count + 1; i < mTree.length; i++) {
+            mTree[i] = 0;
+        }
+        for (int i = 1; i <= count; i++) {
+            final int parent = i + Integer.lowestOneBit(i);
+            if (parent <= count) {
+                mTree[parent] += mTree[i];
+            }
+        }
+        mHead = 0;
+        mSize = count;
+    }
+
+    void clear() {
+        setAll(new int[0], 0);
+    }
+
+    /**
+     * Returns the positions in the list, in O(N).
+     */
+    @NonNull
+    int[] toArray() {
+        final int[] positions = new int[mSize];
+        int position = 0;
+        for (int i = 0; i < mHead + mSize; i++) {
+            // The difference at node i + 1 is its sum minus the nodes it covers
+            int difference = mTree[i + 1];
+            final int rangeStart = i + 1 - Integer.lowestOneBit(i + 1);
+            for (int child = i; child > rangeStart; child -= Integer.lowestOneBit(child)) {
+                difference -= mTree[child];
+            }
+            position += difference;
+            if (i >= mHead) {
+                positions[i - mHead] = position;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the position at the given 1-based node, or 0 for node 0.
+     */
+    private int getAtNode(final int node) {
+        int position = 0;
+        for (int i = node; i > 0; i -= Integer.lowestOneBit(i)) {
+            position += mTree[i];
+        }
+        return position;
+    }
+}
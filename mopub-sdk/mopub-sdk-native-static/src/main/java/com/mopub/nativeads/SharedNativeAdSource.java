@@ -0,0 +1,157 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+
+import static com.mopub.nativeads.NativeAdSourceRegistry.SharedEntry;
+
+/**
+ * A {@link StreamAdSource} that draws its ads from a {@link NativeAdSource} shared by every ad
+ * placer showing the same ad unit. See {@link NativeAdSourceRegistry}.
+ *
+ * Renderers registered here belong to this placer only. Ads dequeued from the shared source are
+ * matched against them, so each placer renders ads with its own view binders.
+ *
+ * This class is not thread safe and should only be called from the UI thread.
+ */
+class SharedNativeAdSource implements StreamAdSource {
+    @NonNull private final AdRendererRegistry mAdRendererRegistry;
+
+    @Nullable private SharedEntry mSharedEntry;
+    @Nullable private Activity mActivity;
+    @Nullable private AdSourceListener mAdSourceListener;
+
+    // Cache limits requested before this source was attached. 0 means not set.
+    private int mCacheLimit;
+    private int mMaxRequestsInFlight;
+
+    SharedNativeAdSource() {
+        this(new AdRendererRegistry());
+    }
+
+    @VisibleForTesting
+    SharedNativeAdSource(@NonNull final AdRendererRegistry adRendererRegistry) {
+        mAdRendererRegistry = adRendererRegistry;
+    }
+
+    @Override
+    public void registerAdRenderer(@NonNull final MoPubAdRenderer moPubNativeAdRenderer) {
+        mAdRendererRegistry.registerAdRenderer(moPubNativeAdRenderer);
+        if (mSharedEntry != null) {
+            mSharedEntry.registerAdRenderer(moPubNativeAdRenderer);
+        }
+    }
+
+    @Override
+    public int getAdRendererCount() {
+        return mAdRendererRegistry.getAdRendererCount();
+    }
+
+    @Override
+    public int getViewTypeForAd(@NonNull final NativeAd nativeAd) {
+        return mAdRendererRegistry.getViewTypeForAd(nativeAd);
+    }
+
+    @Nullable
+    @Override
+    public MoPubAdRenderer getAdRendererForViewType(final int viewType) {
+        return mAdRendererRegistry.getRendererForViewType(viewType);
+    }
+
+    @Override
+    public void setAdSourceListener(@Nullable final AdSourceListener adSourceListener) {
+        mAdSourceListener = adSourceListener;
+    }
+
+    @Override
+    public void setCacheLimits(final int cacheLimit, final int maxRequestsInFlight) {
+        mCacheLimit = cacheLimit;
+        mMaxRequestsInFlight = maxRequestsInFlight;
+        if (mSharedEntry != null) {
+            mSharedEntry.getAdSource().setCacheLimits(cacheLimit, maxRequestsInFlight);
+        }
+    }
+
+    @Override
+    public void loadAds(@NonNull final Activity activity,
+            @NonNull final String adUnitId,
+            @Nullable final RequestParameters requestParameters) {
+        if (mSharedEntry != null && !adUnitId.equals(mSharedEntry.getAdUnitId())) {
+            clear();
+        }
+
+        mActivity = activity;
+        if (mSharedEntry == null) {
+            mSharedEntry = NativeAdSourceRegistry.getOrCreateEntry(adUnitId);
+        }
+        mSharedEntry.attach(this, activity, requestParameters);
+
+        if (mCacheLimit > 0) {
+            mSharedEntry.getAdSource().setCacheLimits(mCacheLimit, mMaxRequestsInFlight);
+        }
+    }
+
+    /**
+     * Detaches from the shared source. Ads already cached, or reserved for this placer, remain
+     * available to other placers.
+     */
+    @Override
+    public void clear() {
+        if (mSharedEntry != null) {
+            mSharedEntry.detach(this);
+            mSharedEntry = null;
+        }
+        mActivity = null;
+    }
+
+    @Nullable
+    @Override
+    public NativeAd dequeueAd() {
+        if (mSharedEntry == null) {
+            return null;
+        }
+
+        final NativeAd nativeAd = mSharedEntry.dequeueAd(this);
+        if (nativeAd == null) {
+            return null;
+        }
+
+        final MoPubAdRenderer renderer =
+                mAdRendererRegistry.getRendererForAd(nativeAd.getBaseNativeAd());
+        if (renderer == null) {
+            MoPubLog.d("No registered renderer supports the shared native ad. Discarding it.");
+            nativeAd.destroy();
+            return null;
+        }
+        if (renderer != nativeAd.getMoPubAdRenderer()) {
+            return new NativeAd(nativeAd, renderer);
+        }
+        return nativeAd;
+    }
+
+    void onAdsAvailable() {
+        if (mAdSourceListener != null) {
+            mAdSourceListener.onAdsAvailable();
+        }
+    }
+
+    @NonNull
+    Iterable<MoPubAdRenderer> getAdRendererIterable() {
+        return mAdRendererRegistry.getRendererIterable();
+    }
+
+    @Nullable
+    Activity getActivity() {
+        return mActivity;
+    }
+
+    @Nullable
+    @VisibleForTesting
+    SharedEntry getSharedEntry() {
+        return mSharedEntry;
+    }
+}
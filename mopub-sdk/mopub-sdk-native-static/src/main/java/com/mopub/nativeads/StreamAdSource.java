@@ -0,0 +1,69 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * The source of the ads that a {@link MoPubStreamAdPlacer} places.
+ *
+ * {@link NativeAdSource} requests and caches ads for a single placer.
+ * {@link SharedNativeAdSource} draws ads from a source shared by every placer showing the same ad
+ * unit.
+ */
+interface StreamAdSource {
+
+    /**
+     * A listener for when ads are available for dequeueing.
+     */
+    interface AdSourceListener {
+        /**
+         * Called when the number of items available for goes from 0 to more than 0.
+         */
+        void onAdsAvailable();
+    }
+
+    /**
+     * Sets a adSourceListener for determining when ads are available.
+     * @param adSourceListener An AdSourceListener.
+     */
+    void setAdSourceListener(@Nullable AdSourceListener adSourceListener);
+
+    /**
+     * Registers an ad renderer for rendering a specific native ad format.
+     * Note that if multiple ad renderers support a specific native ad format, the first
+     * one registered will be used.
+     */
+    void registerAdRenderer(@NonNull MoPubAdRenderer moPubNativeAdRenderer);
+
+    int getAdRendererCount();
+
+    int getViewTypeForAd(@NonNull NativeAd nativeAd);
+
+    @Nullable
+    MoPubAdRenderer getAdRendererForViewType(int viewType);
+
+    /**
+     * Configures the prefetch pool.
+     *
+     * @param cacheLimit The maximum number of ads to hold in the cache.
+     * @param maxRequestsInFlight The maximum number of ad requests to run in parallel.
+     */
+    void setCacheLimits(int cacheLimit, int maxRequestsInFlight);
+
+    void loadAds(@NonNull Activity activity, @NonNull String adUnitId,
+            @Nullable RequestParameters requestParameters);
+
+    /**
+     * Removes an ad from the front of the ad source cache, or returns null if no ad is available.
+     * Callers should dequeue ads as late as possible, typically immediately before rendering them
+     * into a view.
+     */
+    @Nullable
+    NativeAd dequeueAd();
+
+    /**
+     * Clears the ad source, removing any currently queued ads.
+     */
+    void clear();
+}
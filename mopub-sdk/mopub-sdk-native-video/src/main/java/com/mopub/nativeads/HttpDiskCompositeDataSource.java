@@ -18,29 +18,17 @@ import com.mopub.common.event.EventDetails;
 import com.mopub.common.event.MoPubEvents;
 import com.mopub.common.logging.MoPubLog;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.File;
 import java.io.IOException;
 import java.util.TreeSet;
 
 /**
  * This data source caches data on disk as it is read from an {@link HttpDataSource}. This expects
- * relatively large files, and this will segment the files. If any segment becomes invalid, the
- * entire file is effectively cleared from the cache.
+ * relatively large files, which are kept in a {@link VideoSegmentStore}. If the stored file
+ * becomes invalid, the entire file is effectively cleared from the cache.
  */
 public class HttpDiskCompositeDataSource implements DataSource {
 
-    // Keys are prefixed since URLs can end basically however they want, and key names could
-    // potentially be part of the URL and get the cache confused.
-    @VisibleForTesting static final String INTERVALS_KEY_PREFIX = "intervals-sorted-";
-    @VisibleForTesting static final String EXPECTED_FILE_SIZE_KEY_PREFIX = "expectedsize-";
-
-    // These are used to serialize/deserialize the intervals list
-    private static final String START = "start";
-    private static final String LENGTH = "length";
-
     /**
      * The constant used in {@link DefaultHttpDataSource} is private even though this is a pretty
      * standard constant used in Exoplayer. This represents the constant that tells the HTTP
@@ -54,21 +42,22 @@ public class HttpDiskCompositeDataSource implements DataSource {
     private static final int HTTP_RESPONSE_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
 
     /**
-     * The current block size is arbitrarily set at 500KiB. This has to be bigger than the biggest
-     * read request from the consumer of this class's read method. This also has to be reasonably
-     * small to accommodate devices that don't have a lot of memory to work with.
+     * The network data source
      */
-    @VisibleForTesting static final int BLOCK_SIZE = 500 * 1024;
+    @NonNull private final HttpDataSource mHttpDataSource;
+
+    @NonNull private final Context mContext;
 
     /**
-     * The network data source
+     * The directory videos are stored in, or null if the app has no cache directory.
      */
-    @NonNull private final HttpDataSource mHttpDataSource;
+    @Nullable private final File mStoreDirectory;
 
     /**
-     * Bytes from disk. This is the in-memory working copy.
+     * The stored bytes of the current video. This is null when the video can't be cached, in
+     * which case bytes are only read from the network.
      */
-    @Nullable private byte[] mCachedBytes;
+    @Nullable private VideoSegmentStore mStore;
 
     /**
      * Base key of the cache. This is the URI of the {@link DataSpec}.
@@ -87,21 +76,10 @@ public class HttpDiskCompositeDataSource implements DataSource {
     private int mStartInFile;
 
     /**
-     * The total number of bytes read in the current block. This indicates the current cursor
-     * position. mDataBlockOffset plus mStartInFile is the cursor position for the file.
-     * mDataBlockOffset plus mStartInDataBlock is the cursor position for the current data block.
+     * The total number of bytes read since open. mStartInFile plus mReadOffset is the cursor
+     * position for the file.
      */
-    private int mDataBlockOffset;
-
-    /**
-     * Which segment of the file the current block is on.
-     */
-    private int mSegment;
-
-    /**
-     * The index of the physical byte array for the current block.
-     */
-    private int mStartInDataBlock;
+    private int mReadOffset;
 
     /**
      * Whether or not this has an {@link HttpDataSource} that is already open.
@@ -147,7 +125,8 @@ public class HttpDiskCompositeDataSource implements DataSource {
             @NonNull final String userAgent, @Nullable final EventDetails eventDetails,
             @NonNull final HttpDataSource httpDataSource) {
         mHttpDataSource = httpDataSource;
-        CacheService.initialize(context);
+        mContext = context.getApplicationContext();
+        mStoreDirectory = VideoSegmentStore.getDirectory(context);
         mIntervals = new TreeSet<IntInterval>();
         mEventDetails = eventDetails;
     }
@@ -167,29 +146,19 @@ public class HttpDiskCompositeDataSource implements DataSource {
             return LENGTH_UNBOUNDED;
         }
         mStartInFile = (int) dataSpec.absoluteStreamPosition;
-        mSegment = mStartInFile / BLOCK_SIZE;
-        mCachedBytes = CacheService.getFromDiskCache(mSegment + mKey);
-        mStartInDataBlock = mStartInFile % BLOCK_SIZE;
-        mDataBlockOffset = 0;
-
-        mExpectedFileLength = getExpectedFileLengthFromDisk(mKey);
+        mReadOffset = 0;
 
-        populateIntervalsFromDisk(mKey, mIntervals);
-
-        int mDataRequestStartPoint = getFirstContiguousPointAfter(mStartInFile, mIntervals);
-
-        // Cache miss
-        if (mCachedBytes == null) {
-            mCachedBytes = new byte[BLOCK_SIZE];
-
-            // It's not in the cache, but we expected it to be there.
-            if (mDataRequestStartPoint > mStartInFile) {
-                MoPubLog.d("Cache segment " + mSegment + " was evicted. Invalidating cache");
-                mIntervals.clear();
-                mDataRequestStartPoint = (int) dataSpec.absoluteStreamPosition;
-            }
+        mStore = openStore(mKey);
+        if (mStore != null) {
+            mExpectedFileLength = mStore.getExpectedLength();
+            mStore.readIntervals(mIntervals);
+        } else {
+            mExpectedFileLength = null;
+            mIntervals.clear();
         }
 
+        final int mDataRequestStartPoint = getFirstContiguousPointAfter(mStartInFile, mIntervals);
+
         long size;
         // If we think there are more bytes left to read from the network
         if (mExpectedFileLength == null || mDataRequestStartPoint != mExpectedFileLength) {
@@ -210,8 +179,7 @@ public class HttpDiskCompositeDataSource implements DataSource {
                     // If we don't have an expected file length set, set it if we requested the
                     // rest of the file.
                     mExpectedFileLength = (int) (mStartInFile + size);
-                    CacheService.putToDiskCache(EXPECTED_FILE_SIZE_KEY_PREFIX + mKey,
-                            String.valueOf(mExpectedFileLength).getBytes());
+                    writeExpectedFileLengthToDisk(mExpectedFileLength);
                 }
                 mIsHttpSourceOpen = true;
                 if (!mHasLoggedDownloadStart) {
@@ -238,53 +206,44 @@ public class HttpDiskCompositeDataSource implements DataSource {
         return size;
     }
 
-    private static void populateIntervalsFromDisk(@NonNull final String key,
-            @NonNull final TreeSet<IntInterval> intervals) {
-        Preconditions.checkNotNull(key);
-        Preconditions.checkNotNull(intervals);
-
-        intervals.clear();
-        byte[] intervalsFromDisk = CacheService.getFromDiskCache(INTERVALS_KEY_PREFIX + key);
-        if (intervalsFromDisk != null) {
-            String intervalsStringData = new String(intervalsFromDisk);
-            try {
-                JSONArray jsonIntervalArray = new JSONArray(intervalsStringData);
-                for (int i = 0; i < jsonIntervalArray.length(); i++) {
-                    JSONObject jsonInterval = new JSONObject((String) jsonIntervalArray.get(i));
-                    intervals.add(new IntInterval(jsonInterval.getInt(START),
-                            jsonInterval.getInt(LENGTH)));
-                }
-            } catch (JSONException e) {
-                MoPubLog.d("clearing cache since invalid json intervals found", e);
-                intervals.clear();
-            } catch (ClassCastException e) {
-                MoPubLog.d("clearing cache since unable to read json data");
-                intervals.clear();
-            }
+    @Nullable
+    private VideoSegmentStore openStore(@NonNull final String key) {
+        if (mStoreDirectory == null) {
+            return null;
+        }
+        // The store's size is reserved from the disk cache budget. This runs on the loading
+        // thread, so it's safe to open the disk cache here.
+        CacheService.initializeDiskCache(mContext);
+        try {
+            return VideoSegmentStore.open(mStoreDirectory, key);
+        } catch (IOException e) {
+            MoPubLog.d("Unable to open video cache. Streaming from the network only", e);
+            return null;
         }
     }
 
-    private static Integer getExpectedFileLengthFromDisk(@NonNull final String key) {
-        Preconditions.checkNotNull(key);
-
-        byte[] maxSizeByteArray = CacheService.getFromDiskCache(
-                EXPECTED_FILE_SIZE_KEY_PREFIX + key);
-        if (maxSizeByteArray != null) {
-            try {
-                return Integer.parseInt(new String(maxSizeByteArray));
-            } catch (NumberFormatException e) {
-                return null;
-            }
+    private void writeExpectedFileLengthToDisk(final int expectedFileLength) {
+        if (mStore == null) {
+            return;
+        }
+        try {
+            mStore.setExpectedLength(expectedFileLength);
+            mStore.writeIndex(mIntervals);
+        } catch (IOException e) {
+            MoPubLog.d("Unable to save expected video length", e);
         }
-        return null;
     }
 
     @Override
     public void close() throws IOException {
-        if (!TextUtils.isEmpty(mKey) && mCachedBytes != null) {
-            CacheService.putToDiskCache(mSegment + mKey, mCachedBytes);
-            addNewInterval(mIntervals, mStartInFile, mDataBlockOffset);
-            writeIntervalsToDisk(mIntervals, mKey);
+        if (!TextUtils.isEmpty(mKey) && mStore != null) {
+            addNewInterval(mIntervals, mStartInFile, mReadOffset);
+            try {
+                mStore.writeIndex(mIntervals);
+            } catch (IOException e) {
+                MoPubLog.d("Unable to save video cache index", e);
+            }
+            mStore.close();
             if (mIsDirty && mExpectedFileLength != null && getFirstContiguousPointAfter(
                     0, mIntervals) == mExpectedFileLength) {
                 MoPubEvents.log(Event.createEventFromDetails(
@@ -294,107 +253,39 @@ public class HttpDiskCompositeDataSource implements DataSource {
                         mEventDetails));
             }
         }
-        mCachedBytes = null;
+        mStore = null;
 
         mHttpDataSource.close();
         mIsHttpSourceOpen = false;
         mStartInFile = 0;
-        mDataBlockOffset = 0;
-        mStartInDataBlock = 0;
+        mReadOffset = 0;
         mExpectedFileLength = null;
         mIsDirty = false;
     }
 
-    private static void writeIntervalsToDisk(@NonNull final TreeSet<IntInterval> intervals,
-            @NonNull final String key) {
-        Preconditions.checkNotNull(intervals);
-        Preconditions.checkNotNull(key);
-
-        final JSONArray jsonIntervals = new JSONArray();
-        for (IntInterval interval : intervals) {
-            jsonIntervals.put(interval);
-        }
-        CacheService.putToDiskCache(INTERVALS_KEY_PREFIX + key,
-                jsonIntervals.toString().getBytes());
-    }
-
     @Override
     public int read(final byte[] buffer, final int offset, final int length) throws IOException {
-        if (length > BLOCK_SIZE) {
-            MoPubLog.d(
-                    "Reading more than the block size (" + BLOCK_SIZE + " bytes) at once is not possible. length = " + length);
-            return -1;
-        }
         if (mDataSpec == null) {
             MoPubLog.d("Unable to read from data source when no spec provided");
             return -1;
         }
-        if (mCachedBytes == null) {
-            MoPubLog.d("No cache set up. Call open before read.");
-            return -1;
-        }
-
-        // Number of bytes available in the current block
-        final int bytesAvailableInCurrentBlock = BLOCK_SIZE - mStartInDataBlock - mDataBlockOffset;
 
+        final int position = mStartInFile + mReadOffset;
         // The position of the next expected break (could be end of file)
-        final int farthestContiguousPoint = getFirstContiguousPointAfter(
-                mStartInFile + mDataBlockOffset, mIntervals);
-        // Amount of data expected to be in the cache
-        final int validBytesLeftInCache = farthestContiguousPoint - mStartInFile - mDataBlockOffset;
-        // The number of expected bytes to be able to read from the cache
-        final int bytesToRead = Math.min(validBytesLeftInCache, length);
-        // To keep track of actual bytes read from the cache
-        int bytesReadFromDisk = 0;
-        // If the data is available at least partially on disk
-        if (areBytesAvailableInCache(farthestContiguousPoint, mStartInFile, mDataBlockOffset)) {
-            // The case of when all of the bytes are available in the current block
-            if (bytesToRead <= bytesAvailableInCurrentBlock) {
-                System.arraycopy(mCachedBytes, mStartInDataBlock + mDataBlockOffset, buffer, offset,
-                        bytesToRead);
-                mDataBlockOffset += bytesToRead;
-                bytesReadFromDisk += bytesToRead;
-            } else {
-                // Read all of the available bytes in the current block
-                System.arraycopy(mCachedBytes, mStartInDataBlock + mDataBlockOffset, buffer, offset,
-                        bytesAvailableInCurrentBlock);
-                mDataBlockOffset += bytesAvailableInCurrentBlock;
-                bytesReadFromDisk += bytesAvailableInCurrentBlock;
-
-                // Flush the cache
-                writeCacheToDiskAndClearVariables();
-
-                // Read in the next segment from disk
-                mCachedBytes = CacheService.getFromDiskCache(mSegment + mKey);
-                if (mCachedBytes == null) {
-                    // If there is a mismatch between expected bytes available in the cache and what
-                    // is actually in the cache, this is an unrecoverable problem. Reset the cache
-                    // and clear the data and open a new HTTP connection starting at the current position.
-                    MoPubLog.d("Unexpected cache miss. Invalidating cache");
-                    mIntervals.clear();
-                    mCachedBytes = new byte[BLOCK_SIZE];
-                    mHttpDataSource.close();
-
-                    mHttpDataSource.open(
-                            new DataSpec(mDataSpec.uri, mStartInFile + mDataBlockOffset,
-                                    LENGTH_UNBOUNDED, mDataSpec.key, mDataSpec.flags));
-                    mIsHttpSourceOpen = true;
-                } else {
-                    // If the data is available in the cache, read the remaining bytes into the
-                    // buffer, additionally offset by what has already been written to the buffer.
-                    System.arraycopy(mCachedBytes, mStartInDataBlock + mDataBlockOffset, buffer,
-                            offset + bytesReadFromDisk,
-                            bytesToRead - bytesReadFromDisk);
-                    mDataBlockOffset += bytesToRead - bytesReadFromDisk;
-                    bytesReadFromDisk = bytesToRead;
-                }
-            }
+        final int farthestContiguousPoint = getFirstContiguousPointAfter(position, mIntervals);
+        // The number of bytes available in the cache. Intervals are only ever loaded from a
+        // store, so this is 0 when there is no store.
+        final int bytesFromDisk = Math.min(farthestContiguousPoint - position, length);
+        if (mStore != null && bytesFromDisk > 0) {
+            // Copied straight from the mapped file into the caller's buffer
+            mStore.read(position, buffer, offset, bytesFromDisk);
+            mReadOffset += bytesFromDisk;
         }
 
         // If we have read enough data from disk, don't ask for network data
-        final int bytesToReadFromNetwork = length - bytesReadFromDisk;
+        final int bytesToReadFromNetwork = length - bytesFromDisk;
         if (bytesToReadFromNetwork <= 0) {
-            return bytesReadFromDisk;
+            return bytesFromDisk;
         }
 
         mIsDirty = true;
@@ -402,56 +293,24 @@ public class HttpDiskCompositeDataSource implements DataSource {
         // This should never happen, but if we lose network or something, this might happen
         if (!mIsHttpSourceOpen) {
             MoPubLog.d("end of cache reached. No http source open");
-            return -1;
+            return bytesFromDisk > 0 ? bytesFromDisk : -1;
         }
 
         // Read from network and store to disk
-        int bytesReadFromNetwork = mHttpDataSource.read(buffer, offset + bytesReadFromDisk,
+        final int bytesReadFromNetwork = mHttpDataSource.read(buffer, offset + bytesFromDisk,
                 bytesToReadFromNetwork);
-
-        final int bytesAvailableInCurrentBlockForNetwork =
-                BLOCK_SIZE - mStartInDataBlock - mDataBlockOffset;
-        if (bytesAvailableInCurrentBlockForNetwork < bytesReadFromNetwork) {
-            // If there is not enough room in the current block, write up to the end of the current
-            // block, set up a new segment (which may have data in the cache already), and write
-            // the rest of the data.
-            System.arraycopy(buffer, offset + bytesReadFromDisk, mCachedBytes,
-                    mStartInDataBlock + mDataBlockOffset, bytesAvailableInCurrentBlockForNetwork);
-            mDataBlockOffset += bytesAvailableInCurrentBlockForNetwork;
-
-            writeCacheToDiskAndClearVariables();
-
-            mCachedBytes = CacheService.getFromDiskCache(mSegment + mKey);
-            if (mCachedBytes == null) {
-                mCachedBytes = new byte[BLOCK_SIZE];
-            }
-
-            System.arraycopy(buffer,
-                    offset + bytesAvailableInCurrentBlockForNetwork + bytesReadFromDisk,
-                    mCachedBytes, mStartInDataBlock + mDataBlockOffset,
-                    bytesReadFromNetwork - bytesAvailableInCurrentBlockForNetwork);
-            mDataBlockOffset += bytesReadFromNetwork - bytesAvailableInCurrentBlockForNetwork;
-        } else {
-            System.arraycopy(buffer, offset + bytesReadFromDisk, mCachedBytes,
-                    mStartInDataBlock + mDataBlockOffset, bytesReadFromNetwork);
-            mDataBlockOffset += bytesReadFromNetwork;
+        if (bytesReadFromNetwork < 0) {
+            // End of input
+            return bytesFromDisk > 0 ? bytesFromDisk : bytesReadFromNetwork;
         }
 
-        return bytesReadFromNetwork + bytesReadFromDisk;
-    }
-
-    private static boolean areBytesAvailableInCache(final int farthestContiguousPoint,
-            final int startInFile, final int dataBlockOffset) {
-        return farthestContiguousPoint > startInFile + dataBlockOffset;
-    }
+        if (mStore != null) {
+            mStore.write(position + bytesFromDisk, buffer, offset + bytesFromDisk,
+                    bytesReadFromNetwork);
+        }
+        mReadOffset += bytesReadFromNetwork;
 
-    private void writeCacheToDiskAndClearVariables() {
-        CacheService.putToDiskCache(mSegment + mKey, mCachedBytes);
-        addNewInterval(mIntervals, mStartInFile, mDataBlockOffset);
-        mStartInDataBlock = 0;
-        mStartInFile = mStartInFile + mDataBlockOffset;
-        mDataBlockOffset = 0;
-        mSegment = mStartInFile / BLOCK_SIZE;
+        return bytesReadFromNetwork + bytesFromDisk;
     }
 
     /**
@@ -34,6 +34,7 @@ import com.mopub.common.event.Event;
 import com.mopub.common.event.EventDetails;
 import com.mopub.common.event.MoPubEvents;
 import com.mopub.mobileads.RepeatingHandlerRunnable;
+import com.mopub.mobileads.VastProgressTrackerScheduler;
 import com.mopub.mobileads.VastTracker;
 import com.mopub.mobileads.VastVideoConfig;
 import com.mopub.nativeads.NativeVideoController.NativeVideoProgressRunnable.ProgressListener;
@@ -498,7 +499,7 @@ public class NativeVideoController implements ExoPlayer.Listener,OnAudioFocusCha
         @NonNull private final Context mContext;
         @NonNull private final VisibilityChecker mVisibilityChecker;
         @NonNull private final List<VisibilityTrackingEvent> mVisibilityTrackingEvents;
-        @NonNull private final VastVideoConfig mVastVideoConfig;
+        @NonNull private final VastProgressTrackerScheduler mTrackerScheduler;
         @Nullable private ExoPlayer mExoPlayer;
         @Nullable private TextureView mTextureView;
         @Nullable private ProgressListener mProgressListener;
@@ -529,7 +530,7 @@ public class NativeVideoController implements ExoPlayer.Listener,OnAudioFocusCha
             mContext = context.getApplicationContext();
             mVisibilityTrackingEvents = visibilityTrackingEvents;
             mVisibilityChecker = visibilityChecker;
-            mVastVideoConfig = vastVideoConfig;
+            mTrackerScheduler = new VastProgressTrackerScheduler(vastVideoConfig);
             mDuration = -1L; // Initialized to -1 so we can distinguish between "never started" and a zero-length video.
             mStopRequested = false;
         }
@@ -602,16 +603,11 @@ public class NativeVideoController implements ExoPlayer.Listener,OnAudioFocusCha
             }
 
             final List<VastTracker> trackers =
-                    mVastVideoConfig.getUntriggeredTrackersBefore(
-                            (int) mCurrentPosition, (int) mDuration);
+                    mTrackerScheduler.getDueTrackers((int) mCurrentPosition, (int) mDuration);
             if (!trackers.isEmpty()) {
-                final List<String> trackingUrls = new ArrayList<String>();
+                final List<String> trackingUrls = new ArrayList<String>(trackers.size());
                 for (VastTracker tracker : trackers) {
-                    if (tracker.isTracked()) {
-                        continue;
-                    }
                     trackingUrls.add(tracker.getTrackingUrl());
-                    tracker.setTracked();
                 }
                 TrackingRequest.makeTrackingHttpRequest(trackingUrls, mContext);
             }
@@ -0,0 +1,463 @@
+package com.mopub.nativeads;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mopub.common.CacheService;
+import com.mopub.common.Preconditions;
+import com.mopub.common.VisibleForTesting;
+import com.mopub.common.logging.MoPubLog;
+import com.mopub.common.util.DeviceUtils;
+import com.mopub.common.util.Streams;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stores the downloaded parts of one video in a single file, sized up front to the length of the
+ * video, and accessed through memory-mapped windows. Bytes are copied straight between the
+ * caller's buffer and the mapped pages, so no per-segment arrays are allocated while a video
+ * plays.
+ *
+ * Which parts of the file are valid is kept in a small binary index next to the data file. The
+ * index is replaced atomically and checksummed, so a torn or corrupted index is detected and the
+ * video is treated as not cached. The data is synced to disk before each index that covers it.
+ */
+class VideoSegmentStore {
+    @VisibleForTesting static final String DIRECTORY_NAME = "mopub-video-segments";
+
+    /**
+     * The size of each mapped region of the data file. Mapping a window at a time means a video
+     * is never mapped whole. Windows that are moved past aren't unmapped until they are garbage
+     * collected, since there is no public API to unmap them, so several may be mapped at once.
+     */
+    @VisibleForTesting static final int WINDOW_SIZE = 1024 * 1024; // 1 MiB
+
+    /**
+     * Stored videos may use up to this fraction of the disk cache budget. The bytes they use are
+     * reserved from the budget of {@link CacheService}, whose disk cache shrinks to fit in the
+     * rest. The least recently opened videos are deleted first.
+     */
+    @VisibleForTesting static final int MAX_STORE_BUDGET_DIVISOR = 2;
+
+    /**
+     * Keys under which older versions stored each video in the disk cache of
+     * {@link CacheService}, as {@link #LEGACY_SEGMENT_SIZE} segments keyed by their index.
+     */
+    @VisibleForTesting static final String LEGACY_INTERVALS_KEY_PREFIX = "intervals-sorted-";
+    @VisibleForTesting static final String LEGACY_EXPECTED_LENGTH_KEY_PREFIX = "expectedsize-";
+    @VisibleForTesting static final int LEGACY_SEGMENT_SIZE = 500 * 1024;
+
+    private static final int INDEX_MAGIC = 0x4D505653; // "MPVS"
+    private static final int INDEX_VERSION = 1;
+    private static final int MAX_INDEX_INTERVALS = 10000;
+    private static final int UNKNOWN_LENGTH = -1;
+    @VisibleForTesting static final String DATA_EXTENSION = ".seg";
+    @VisibleForTesting static final String INDEX_EXTENSION = ".idx";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    // Directories that have been pruned in this process
+    @NonNull private static final Set<File> sPrunedDirectories = new HashSet<File>();
+
+    @NonNull private final File mDirectory;
+    @NonNull private final File mDataFile;
+    @NonNull private final File mIndexFile;
+    @NonNull private final RandomAccessFile mRandomAccessFile;
+    @NonNull private final FileChannel mFileChannel;
+    @NonNull private final TreeSet<IntInterval> mIntervals = new TreeSet<IntInterval>();
+    @Nullable private Integer mExpectedLength;
+
+    /**
+     * The currently mapped region of the data file, and where it starts in the file.
+     */
+    @Nullable private MappedByteBuffer mWindow;
+    private long mWindowStart;
+    // Windows written to since the index was last written, which must be synced before it
+    @NonNull private final List<MappedByteBuffer> mDirtyWindows = new ArrayList<MappedByteBuffer>();
+
+    private VideoSegmentStore(@NonNull final File directory, @NonNull final File dataFile,
+            @NonNull final File indexFile) throws IOException {
+        mDirectory = directory;
+        mDataFile = dataFile;
+        mIndexFile = indexFile;
+
+        final boolean hasData = dataFile.exists();
+        readIndex();
+        if (!hasData && !mIntervals.isEmpty()) {
+            MoPubLog.d("Video segment file was deleted. Invalidating cache");
+            mIntervals.clear();
+        }
+
+        mRandomAccessFile = new RandomAccessFile(dataFile, "rw");
+        mFileChannel = mRandomAccessFile.getChannel();
+        // Mark this video as the most recently used when pruning
+        dataFile.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the directory videos are stored in, or null if there is no cache directory.
+     */
+    @Nullable
+    static File getDirectory(@NonNull final Context context) {
+        Preconditions.checkNotNull(context);
+
+        final File cacheDirectory = context.getCacheDir();
+        if (cacheDirectory == null) {
+            return null;
+        }
+        return new File(cacheDirectory, DIRECTORY_NAME);
+    }
+
+    /**
+     * Opens the store for the given key, creating it if it doesn't exist. The first store opened
+     * in a directory in this process deletes the least recently used videos if the directory is
+     * over its share of the disk cache budget, and reserves the bytes left from
+     * {@link CacheService}. After that, only growing a store changes the directory's size, so
+     * {@link #setExpectedLength(int)} does the same. The first time a video is opened, any copy an
+     * older version kept in the disk cache is deleted.
+     */
+    @NonNull
+    static VideoSegmentStore open(@NonNull final File directory, @NonNull final String key)
+            throws IOException {
+        Preconditions.checkNotNull(directory);
+        Preconditions.checkNotNull(key);
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        final String fileName = CacheService.createValidDiskCacheKey(key);
+        final File dataFile = new File(directory, fileName + DATA_EXTENSION);
+        if (!dataFile.exists()) {
+            deleteLegacySegments(key);
+        }
+        final boolean firstOpen;
+        synchronized (sPrunedDirectories) {
+            firstOpen = sPrunedDirectories.add(directory);
+        }
+        if (firstOpen) {
+            pruneAndReserve(directory, dataFile);
+        }
+        return new VideoSegmentStore(directory, dataFile,
+                new File(directory, fileName + INDEX_EXTENSION));
+    }
+
+    /**
+     * The length of the whole video, or null if it isn't known yet.
+     */
+    @Nullable
+    Integer getExpectedLength() {
+        return mExpectedLength;
+    }
+
+    /**
+     * Sets the length of the whole video and grows the data file to that length, so that writes
+     * never have to extend it. Growing the file may delete the least recently used videos.
+     */
+    void setExpectedLength(final int expectedLength) throws IOException {
+        mExpectedLength = expectedLength;
+        if (mRandomAccessFile.length() < expectedLength) {
+            mRandomAccessFile.setLength(expectedLength);
+            pruneAndReserve(mDirectory, mDataFile);
+        }
+    }
+
+    /**
+     * Replaces the contents of the given set with the intervals that are stored.
+     */
+    void readIntervals(@NonNull final TreeSet<IntInterval> intervals) {
+        Preconditions.checkNotNull(intervals);
+
+        intervals.clear();
+        for (final IntInterval interval : mIntervals) {
+            intervals.add(new IntInterval(interval.getStart(), interval.getLength()));
+        }
+    }
+
+    /**
+     * Copies stored bytes into the buffer.
+     *
+     * @param position Where in the video to start reading
+     */
+    void read(final long position, @NonNull final byte[] buffer, final int offset,
+            final int length) throws IOException {
+        Preconditions.checkNotNull(buffer);
+
+        int copied = 0;
+        while (copied < length) {
+            final MappedByteBuffer window = mapWindow(position + copied);
+            final int positionInWindow = (int) (position + copied - mWindowStart);
+            final int count = Math.min(length - copied, window.limit() - positionInWindow);
+            window.position(positionInWindow);
+            window.get(buffer, offset + copied, count);
+            copied += count;
+        }
+    }
+
+    /**
+     * Copies bytes from the buffer into the store. The bytes don't count as stored until an
+     * interval covering them is written with {@link #writeIndex(TreeSet)}.
+     *
+     * @param position Where in the video the bytes belong
+     */
+    void write(final long position, @NonNull final byte[] buffer, final int offset,
+            final int length) throws IOException {
+        Preconditions.checkNotNull(buffer);
+
+        int copied = 0;
+        while (copied < length) {
+            final MappedByteBuffer window = mapWindow(position + copied);
+            final int positionInWindow = (int) (position + copied - mWindowStart);
+            final int count = Math.min(length - copied, window.limit() - positionInWindow);
+            window.position(positionInWindow);
+            window.put(buffer, offset + copied, count);
+            if (mDirtyWindows.isEmpty()
+                    || mDirtyWindows.get(mDirtyWindows.size() - 1) != window) {
+                mDirtyWindows.add(window);
+            }
+            copied += count;
+        }
+    }
+
+    /**
+     * Saves the expected length and the given set of valid intervals. The data written since the
+     * last call is synced to disk first, and so is the new index before it replaces the old one,
+     * so the index never covers bytes that were lost, even if the device loses power.
+     */
+    void writeIndex(@NonNull final TreeSet<IntInterval> intervals) throws IOException {
+        Preconditions.checkNotNull(intervals);
+
+        for (final MappedByteBuffer window : mDirtyWindows) {
+            window.force();
+        }
+        mDirtyWindows.clear();
+        // Also syncs the length the file was grown to
+        mFileChannel.force(true);
+
+        mIntervals.clear();
+        for (final IntInterval interval : intervals) {
+            mIntervals.add(new IntInterval(interval.getStart(), interval.getLength()));
+        }
+
+        final File tempFile = new File(mIndexFile.getPath() + TEMP_EXTENSION);
+        final CRC32 checksum = new CRC32();
+        final FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+        final DataOutputStream outputStream =
+                new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+        try {
+            final DataOutputStream checkedStream =
+                    new DataOutputStream(new CheckedOutputStream(outputStream, checksum));
+            checkedStream.writeInt(INDEX_MAGIC);
+            checkedStream.writeInt(INDEX_VERSION);
+            checkedStream.writeInt(mExpectedLength == null ? UNKNOWN_LENGTH : mExpectedLength);
+            checkedStream.writeInt(mIntervals.size());
+            for (final IntInterval interval : mIntervals) {
+                checkedStream.writeInt(interval.getStart());
+                checkedStream.writeInt(interval.getLength());
+            }
+            checkedStream.flush();
+            outputStream.writeInt((int) checksum.getValue());
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            Streams.closeStream(outputStream);
+        }
+
+        if (!tempFile.renameTo(mIndexFile)) {
+            tempFile.delete();
+            throw new IOException("Unable to replace " + mIndexFile);
+        }
+    }
+
+    void close() {
+        mWindow = null;
+        mDirtyWindows.clear();
+        Streams.closeStream(mFileChannel);
+        Streams.closeStream(mRandomAccessFile);
+    }
+
+    /**
+     * Maps the window that contains the given position, unless it is already mapped.
+     */
+    @NonNull
+    private MappedByteBuffer mapWindow(final long position) throws IOException {
+        if (mWindow != null && position >= mWindowStart
+                && position < mWindowStart + mWindow.limit()) {
+            return mWindow;
+        }
+
+        final long windowStart = position - position % WINDOW_SIZE;
+        long windowSize = WINDOW_SIZE;
+        if (mExpectedLength != null && mExpectedLength > position) {
+            // Don't grow the pre-sized file past the end of the video
+            windowSize = Math.min(windowSize, mExpectedLength - windowStart);
+        }
+        mWindow = mFileChannel.map(FileChannel.MapMode.READ_WRITE, windowStart, windowSize);
+        mWindowStart = windowStart;
+        return mWindow;
+    }
+
+    private void readIndex() {
+        mIntervals.clear();
+        mExpectedLength = null;
+        if (!mIndexFile.exists()) {
+            return;
+        }
+
+        final CRC32 checksum = new CRC32();
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(mIndexFile)));
+            final DataInputStream checkedStream =
+                    new DataInputStream(new CheckedInputStream(inputStream, checksum));
+            if (checkedStream.readInt() != INDEX_MAGIC
+                    || checkedStream.readInt() != INDEX_VERSION) {
+                throw new IOException("Unknown index format");
+            }
+            final int expectedLength = checkedStream.readInt();
+            final int count = checkedStream.readInt();
+            if (count < 0 || count > MAX_INDEX_INTERVALS) {
+                throw new IOException("Invalid interval count " + count);
+            }
+            final TreeSet<IntInterval> intervals = new TreeSet<IntInterval>();
+            for (int i = 0; i < count; i++) {
+                intervals.add(new IntInterval(checkedStream.readInt(), checkedStream.readInt()));
+            }
+            if (inputStream.readInt() != (int) checksum.getValue()) {
+                throw new IOException("Index checksum mismatch");
+            }
+
+            mExpectedLength = expectedLength == UNKNOWN_LENGTH ? null : expectedLength;
+            mIntervals.addAll(intervals);
+        } catch (IOException e) {
+            // Includes EOFException for a truncated index
+            MoPubLog.d("Clearing video cache since the segment index is invalid", e);
+        } finally {
+            Streams.closeStream(inputStream);
+        }
+    }
+
+    /**
+     * Deletes the least recently used videos if the directory is over its share of the disk cache
+     * budget, and reserves the bytes left from {@link CacheService}.
+     */
+    private static void pruneAndReserve(@NonNull final File directory,
+            @NonNull final File keepDataFile) {
+        prune(directory, DeviceUtils.diskCacheSizeBytes(directory) / MAX_STORE_BUDGET_DIVISOR,
+                keepDataFile);
+        CacheService.setReservedDiskCacheBytes(directory, getStoreSize(directory));
+    }
+
+    @VisibleForTesting
+    static void clearForTesting() {
+        synchronized (sPrunedDirectories) {
+            sPrunedDirectories.clear();
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by all stored videos.
+     */
+    @VisibleForTesting
+    static long getStoreSize(@NonNull final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long size = 0;
+        for (final File file : files) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Deletes the segments, intervals and length of a video that an older version stored in the
+     * disk cache of {@link CacheService}. Anything this misses is evicted by the disk cache as
+     * usual.
+     */
+    @VisibleForTesting
+    static void deleteLegacySegments(@NonNull final String key) {
+        Preconditions.checkNotNull(key);
+
+        int segmentCount = 0;
+        final byte[] expectedLength =
+                CacheService.getFromDiskCache(LEGACY_EXPECTED_LENGTH_KEY_PREFIX + key);
+        if (expectedLength != null) {
+            try {
+                final int length = Integer.parseInt(new String(expectedLength));
+                segmentCount = (length + LEGACY_SEGMENT_SIZE - 1) / LEGACY_SEGMENT_SIZE;
+            } catch (NumberFormatException e) {
+                MoPubLog.d("Unable to read the length of a legacy cached video", e);
+            }
+        }
+
+        // Segments that were never downloaded are missing, so only stop at a missing segment
+        // once past the stored length
+        int segment = 0;
+        while (CacheService.removeFromDiskCache(segment + key) || segment < segmentCount) {
+            segment++;
+        }
+        CacheService.removeFromDiskCache(LEGACY_INTERVALS_KEY_PREFIX + key);
+        CacheService.removeFromDiskCache(LEGACY_EXPECTED_LENGTH_KEY_PREFIX + key);
+    }
+
+    /**
+     * Deletes the least recently used videos until the ones left fit in maxSize. The video that
+     * is being opened is never deleted.
+     */
+    @VisibleForTesting
+    static void prune(@NonNull final File directory, final long maxSize,
+            @NonNull final File keepDataFile) {
+        final File[] dataFiles = directory.listFiles();
+        if (dataFiles == null) {
+            return;
+        }
+
+        Arrays.sort(dataFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File lhs, final File rhs) {
+                final long lhsModified = lhs.lastModified();
+                final long rhsModified = rhs.lastModified();
+                return lhsModified > rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+
+        long totalSize = keepDataFile.length();
+        for (final File dataFile : dataFiles) {
+            final String name = dataFile.getName();
+            if (!name.endsWith(DATA_EXTENSION) || dataFile.equals(keepDataFile)) {
+                continue;
+            }
+            totalSize += dataFile.length();
+            if (totalSize > maxSize) {
+                totalSize -= dataFile.length();
+                dataFile.delete();
+                new File(directory, name.substring(0, name.length() - DATA_EXTENSION.length())
+                        + INDEX_EXTENSION).delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.mopub.common;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class BackgroundExecutorTest {
+
+    @Test
+    public void newSerialExecutor_shouldRunTasksInOrder() throws Exception {
+        final Executor subject = BackgroundExecutor.newSerialExecutor();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            subject.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 20; i++) {
+            assertThat(order.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    public void newLimitedExecutor_shouldNotRunMoreThanMaxConcurrencyTasksAtOnce()
+            throws Exception {
+        final Executor subject = BackgroundExecutor.newLimitedExecutor(2);
+        final AtomicInteger runningCount = new AtomicInteger();
+        final AtomicInteger maxRunningCount = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            subject.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final int running = runningCount.incrementAndGet();
+                    synchronized (maxRunningCount) {
+                        maxRunningCount.set(Math.max(maxRunningCount.get(), running));
+                    }
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                    runningCount.decrementAndGet();
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunningCount.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void newSerialExecutor_withThrowingTask_shouldRunLaterTasks() throws Exception {
+        final Executor subject = BackgroundExecutor.newSerialExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        subject.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        });
+        subject.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void schedule_shouldRunTaskAfterDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long startMillis = System.nanoTime() / 1000000;
+
+        BackgroundExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 50);
+
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(System.nanoTime() / 1000000 - startMillis).isGreaterThanOrEqualTo(50);
+    }
+}
@@ -15,6 +15,7 @@ import org.robolectric.annotation.Config;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.concurrent.Semaphore;
 
@@ -72,7 +73,7 @@ public class CacheServiceTest {
         assertThat(CacheService.getDiskLruCache()).isNull();
 
         CacheService.initialize(context);
-        DiskLruCache diskLruCache = CacheService.getDiskLruCache();
+        StripedDiskLruCache diskLruCache = CacheService.getDiskLruCache();
         assertThat(diskLruCache).isNotNull();
 
         CacheService.initialize(context);
@@ -151,6 +152,71 @@ public class CacheServiceTest {
         assertThat(CacheService.getFromDiskCache(key1)).isEqualTo(data1.getBytes());
     }
 
+    @Test
+    public void removeFromDiskCache_whenPopulated_shouldRemoveValue() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        assertThat(CacheService.removeFromDiskCache(key1)).isTrue();
+        assertThat(CacheService.containsKeyDiskCache(key1)).isFalse();
+        assertThat(CacheService.removeFromDiskCache(key1)).isFalse();
+    }
+
+    @Test
+    public void moveToDiskCache_shouldMoveFileIntoCache() throws Exception {
+        CacheService.initialize(context);
+        final File file = new File(context.getCacheDir(), "video.part");
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        outputStream.write(data1.getBytes());
+        outputStream.close();
+
+        assertThat(CacheService.moveToDiskCache(key1, file)).isTrue();
+
+        assertThat(file.exists()).isFalse();
+        assertThat(CacheService.getFromDiskCache(key1)).isEqualTo(data1.getBytes());
+        assertThat(CacheService.getDiskLruCache().size()).isEqualTo(data1.length());
+    }
+
+    @Test
+    public void getFilePathDiskCache_shouldReturnPathOfCachedFile() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        final File file = new File(CacheService.getFilePathDiskCache(key1));
+
+        assertThat(file.exists()).isTrue();
+        assertThat(file.length()).isEqualTo(data1.length());
+    }
+
+    @Test
+    public void getDiskCacheStats_shouldCountHitsAndMisses() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        CacheService.getFromDiskCache(key1);
+        CacheService.getFromDiskCache("https://www.mopub.com/missing");
+        CacheService.containsKeyDiskCache(key1);
+
+        final StripedDiskLruCache.Stats stats = CacheService.getDiskCacheStats();
+        assertThat(stats.getHitCount()).isEqualTo(2);
+        assertThat(stats.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getDiskCacheStats_withUninitializedCache_shouldReturnNull() throws Exception {
+        assertThat(CacheService.getDiskCacheStats()).isNull();
+    }
+
+    @Test
+    public void flushDiskCache_shouldCountJournalFlush() throws Exception {
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(key1, data1.getBytes());
+
+        CacheService.flushDiskCache();
+
+        assertThat(CacheService.getDiskCacheStats().getJournalFlushCount()).isGreaterThan(0);
+    }
+
     private static InputStream getInputStreamFromString(final String string) {
         return spy(new ByteArrayInputStream(string.getBytes()));
     }
@@ -0,0 +1,96 @@
+package com.mopub.common;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.util.Collections;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ClickUrlPreResolverTest {
+    private static final String CLICK_URL = "https://www.mopub.com/click";
+    private static final String DEEP_LINK = "market://details?id=com.mopub.simpleadsdemo";
+
+    @Before
+    public void setUp() {
+        // XXX We need this to ensure that our SystemClock starts
+        ShadowSystemClock.uptimeMillis();
+        MoPub.setClickUrlPreResolutionEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        MoPub.setClickUrlPreResolutionEnabled(false);
+        MoPub.setClickUrlPreResolutionHosts(null);
+        ClickUrlPreResolver.clearForTesting();
+    }
+
+    @Test
+    public void preResolve_withDeepLink_shouldCacheDeepLink() {
+        ClickUrlPreResolver.preResolve(DEEP_LINK);
+
+        assertThat(ClickUrlPreResolver.getResolvedUrl(DEEP_LINK)).isEqualTo(DEEP_LINK);
+        assertThat(ClickUrlPreResolver.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void preResolve_withClickUrlOnOtherHost_shouldNotCacheUrl() {
+        MoPub.setClickUrlPreResolutionHosts(Collections.singleton("play.google.com"));
+
+        ClickUrlPreResolver.preResolve(CLICK_URL);
+
+        assertThat(ClickUrlPreResolver.getResolvedUrl(CLICK_URL)).isNull();
+    }
+
+    @Test
+    public void preResolve_whenDisabled_shouldNotCacheUrl() {
+        MoPub.setClickUrlPreResolutionEnabled(false);
+        ClickUrlPreResolver.preResolve(DEEP_LINK);
+        MoPub.setClickUrlPreResolutionEnabled(true);
+
+        assertThat(ClickUrlPreResolver.getResolvedUrl(DEEP_LINK)).isNull();
+    }
+
+    @Test
+    public void getResolvedUrl_shouldCountHitsAndMisses_shouldAddUpSavedTime() {
+        ClickUrlPreResolver.putResolvedUrl(CLICK_URL, DEEP_LINK, 300);
+
+        assertThat(ClickUrlPreResolver.getResolvedUrl(CLICK_URL)).isEqualTo(DEEP_LINK);
+        assertThat(ClickUrlPreResolver.getResolvedUrl(CLICK_URL)).isEqualTo(DEEP_LINK);
+        assertThat(ClickUrlPreResolver.getResolvedUrl("https://www.mopub.com/other")).isNull();
+
+        assertThat(ClickUrlPreResolver.getHitCount()).isEqualTo(2);
+        assertThat(ClickUrlPreResolver.getMissCount()).isEqualTo(1);
+        assertThat(ClickUrlPreResolver.getSavedMillis()).isEqualTo(600);
+    }
+
+    @Test
+    public void getResolvedUrl_whenDisabled_shouldReturnNull_shouldNotCountLookup() {
+        ClickUrlPreResolver.putResolvedUrl(CLICK_URL, DEEP_LINK, 300);
+        MoPub.setClickUrlPreResolutionEnabled(false);
+
+        assertThat(ClickUrlPreResolver.getResolvedUrl(CLICK_URL)).isNull();
+        assertThat(ClickUrlPreResolver.getHitCount()).isEqualTo(0);
+        assertThat(ClickUrlPreResolver.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getResolvedUrl_afterTtl_shouldReturnNull() {
+        ClickUrlPreResolver.putResolvedUrl(CLICK_URL, DEEP_LINK, 300);
+
+        ShadowSystemClock.sleep(ClickUrlPreResolver.CACHE_TTL_MILLIS);
+
+        assertThat(ClickUrlPreResolver.getResolvedUrl(CLICK_URL)).isNull();
+        assertThat(ClickUrlPreResolver.getMissCount()).isEqualTo(1);
+        assertThat(ClickUrlPreResolver.getSavedMillis()).isEqualTo(0);
+    }
+}
@@ -2,6 +2,8 @@ package com.mopub.common;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
 import android.telephony.TelephonyManager;
 
 import com.mopub.common.test.support.SdkTestRunner;
@@ -71,4 +73,17 @@ public class ClientMetadataTest {
         // Other cached data.
         assertThat(clientMetadata.getDeviceId()).isNotNull().isNotEmpty();
     }
+
+    @Test
+    public void getVersion_afterConfigurationOrConnectivityChange_shouldChange() {
+        final ClientMetadata clientMetadata = ClientMetadata.getInstance(activityContext);
+        final int version = clientMetadata.getVersion();
+
+        activityContext.sendBroadcast(new Intent(Intent.ACTION_CONFIGURATION_CHANGED));
+        assertThat(clientMetadata.getVersion()).isNotEqualTo(version);
+
+        final int configurationChangedVersion = clientMetadata.getVersion();
+        activityContext.sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        assertThat(clientMetadata.getVersion()).isNotEqualTo(configurationChangedVersion);
+    }
 }
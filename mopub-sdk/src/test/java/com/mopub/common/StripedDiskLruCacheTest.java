@@ -0,0 +1,135 @@
+package com.mopub.common;
+
+import android.app.Activity;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class StripedDiskLruCacheTest {
+    private File directory;
+    private StripedDiskLruCache subject;
+
+    @Before
+    public void setUp() throws Exception {
+        Activity context = Robolectric.buildActivity(Activity.class).create().get();
+        directory = new File(context.getCacheDir(), "striped-cache");
+        subject = StripedDiskLruCache.open(directory, 1, 1, 100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        subject.delete();
+    }
+
+    @Test
+    public void open_shouldCreateShardDirectories() throws Exception {
+        for (int i = 0; i < StripedDiskLruCache.SHARD_COUNT; i++) {
+            assertThat(new File(directory, String.valueOf(i)).isDirectory()).isTrue();
+        }
+    }
+
+    @Test
+    public void open_withUnshardedCache_shouldDeleteUnshardedEntries() throws Exception {
+        subject.close();
+        final File journal = new File(directory, DiskLruCache.JOURNAL_FILE);
+        final File entry = new File(directory, "key.0");
+        assertThat(journal.createNewFile()).isTrue();
+        assertThat(entry.createNewFile()).isTrue();
+
+        subject = StripedDiskLruCache.open(directory, 1, 1, 100);
+
+        assertThat(journal.exists()).isFalse();
+        assertThat(entry.exists()).isFalse();
+    }
+
+    @Test
+    public void commit_thenGet_shouldReturnEntryFromItsShard() throws Exception {
+        put("key", 10);
+
+        final DiskLruCache.Snapshot snapshot = subject.get("key");
+
+        assertThat(snapshot).isNotNull();
+        assertThat(snapshot.getLength(0)).isEqualTo(10);
+        snapshot.close();
+        assertThat(new File(subject.getDirectory("key"), "key.0").exists()).isTrue();
+        assertThat(subject.size()).isEqualTo(10);
+    }
+
+    @Test
+    public void commit_withEntriesOverMaxSize_shouldEvictUntilUnderMaxSize() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            put("key" + i, 10);
+        }
+
+        assertThat(subject.size()).isEqualTo(100);
+        assertThat(subject.getStats().getEvictionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void commit_withEntriesInEveryShard_shouldNotExceedMaxSizeInTotal() throws Exception {
+        // Each shard alone may hold up to the max size
+        for (int i = 0; i < 40; i++) {
+            put("key" + i, 30);
+        }
+
+        assertThat(subject.size()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void setMaxSize_thenFlush_shouldEvictUntilUnderNewMaxSize() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            put("key" + i, 10);
+        }
+
+        subject.setMaxSize(50);
+        subject.flush();
+
+        assertThat(subject.getMaxSize()).isEqualTo(50);
+        assertThat(subject.size()).isLessThanOrEqualTo(50);
+        assertThat(subject.getStats().getJournalFlushCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void commit_withoutFlush_shouldNotWriteCleanLineToJournal() throws Exception {
+        put("key", 10);
+        final File journal = new File(subject.getDirectory("key"), DiskLruCache.JOURNAL_FILE);
+        final long journalLengthBeforeFlush = journal.length();
+
+        subject.flush();
+
+        assertThat(journal.length()).isGreaterThan(journalLengthBeforeFlush);
+    }
+
+    @Test
+    public void get_shouldCountHitsAndMisses() throws Exception {
+        put("key", 10);
+
+        subject.get("key").close();
+        subject.get("missing");
+
+        assertThat(subject.getStats().getHitCount()).isEqualTo(1);
+        assertThat(subject.getStats().getMissCount()).isEqualTo(1);
+    }
+
+    private void put(final String key, final int length) throws Exception {
+        final DiskLruCache.Editor editor = subject.edit(key);
+        final OutputStream outputStream = editor.newOutputStream(0);
+        outputStream.write(new byte[length]);
+        outputStream.close();
+        subject.commit(editor);
+    }
+}
@@ -1,5 +1,6 @@
 package com.mopub.common;
 
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.mopub.common.test.support.SdkTestRunner;
@@ -13,7 +14,12 @@ import org.robolectric.annotation.Config;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static com.mopub.common.UrlResolutionTask.UrlResolutionListener;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -128,6 +134,25 @@ public class UrlResolutionTaskTest {
                 .isNull();
     }
 
+    @Test
+    public void doInBackground_withRequestableHosts_shouldFollowRedirectsOnThoseHosts() {
+        final List<String> requestedUrls = new ArrayList<String>();
+        final UrlResolutionTask subject = createTask(requestedUrls, "https://A.example.com/final");
+
+        assertThat(subject.doInBackground(BASE_URL)).isEqualTo("https://A.example.com/final");
+        assertThat(requestedUrls).isEqualTo(
+                Arrays.asList(BASE_URL, "https://A.example.com/final"));
+    }
+
+    @Test
+    public void doInBackground_withRedirectToOtherHost_shouldNotRequestRedirect_shouldReturnNull() {
+        final List<String> requestedUrls = new ArrayList<String>();
+        final UrlResolutionTask subject = createTask(requestedUrls, "https://click.example.com/c");
+
+        assertThat(subject.doInBackground(BASE_URL)).isNull();
+        assertThat(requestedUrls).isEqualTo(Collections.singletonList(BASE_URL));
+    }
+
     @Test(expected = URISyntaxException.class)
     public void resolveRedirectLocation_withInvalidUrl_shouldThrowURISyntaxException() throws Exception {
         setupMockHttpUrlConnection(301, "https://a.example.com/b c/d");
@@ -135,6 +160,20 @@ public class UrlResolutionTaskTest {
         UrlResolutionTask.resolveRedirectLocation(BASE_URL, mockHttpUrlConnection);
     }
 
+    private UrlResolutionTask createTask(@NonNull final List<String> requestedUrls,
+            @NonNull final String redirectUrl) {
+        // Only requests to a.example.com are allowed. BASE_URL redirects to redirectUrl.
+        return new UrlResolutionTask(mock(UrlResolutionListener.class),
+                Collections.singleton("a.example.com")) {
+            @Nullable
+            @Override
+            String getRedirectLocation(@NonNull final String urlString) {
+                requestedUrls.add(urlString);
+                return BASE_URL.equals(urlString) ? redirectUrl : null;
+            }
+        };
+    }
+
     private void setupMockHttpUrlConnection(final int responseCode,
             @Nullable final String absolutePathUrl) throws IOException {
         mockHttpUrlConnection = mock(HttpURLConnection.class);
@@ -1,7 +1,5 @@
 package com.mopub.common.event;
 
-import android.app.Activity;
-import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 
@@ -11,17 +9,22 @@ import com.mopub.mobileads.BuildConfig;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.anyList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 @RunWith(SdkTestRunner.class)
@@ -32,36 +35,140 @@ public class EventDispatcherTest {
     private List<EventRecorder> recorders;
     @Mock private EventRecorder mockEventRecorder1;
     @Mock private EventRecorder mockEventRecorder2;
-    @Mock private HandlerThread mockHandlerThread;
+    @Mock private EventSampler mockEventSampler;
 
     @Before
     public void setUp() {
         recorders = new ArrayList<EventRecorder>();
         recorders.add(mockEventRecorder1);
         recorders.add(mockEventRecorder2);
+        when(mockEventSampler.sample(any(BaseEvent.class))).thenReturn(true);
+
+        subject = new EventDispatcher(recorders, Looper.getMainLooper(), mockEventSampler, 2,
+                EventDispatcher.DropPolicy.DROP_NEWEST);
+        Robolectric.getForegroundThreadScheduler().pause();
     }
 
     @Test
-    public void handler_handleMessage_shouldCallRecordOnAllRecorders() throws Exception {
-        Message message = new Message();
-        message.obj = mock(Event.class);
+    public void dispatch_shouldCallRecordOnAllRecordersWithAllQueuedEvents() throws Exception {
+        Event event1 = mock(Event.class);
+        Event event2 = mock(Event.class);
 
-        subject = new EventDispatcher(recorders, Looper.getMainLooper());
-        subject.getHandlerCallback().handleMessage(message);
+        subject.dispatch(event1);
+        subject.dispatch(event2);
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
 
-        verify(mockEventRecorder1).record(eq((Event) message.obj));
-        verify(mockEventRecorder2).record(eq((Event) message.obj));
+        ArgumentCaptor<List> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockEventRecorder1).record(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).containsExactly(event1, event2);
+        verify(mockEventRecorder2).record(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).containsExactly(event1, event2);
+        assertThat(subject.getStats().getDeliveredCount()).isEqualTo(2);
     }
 
     @Test
-    public void handler_handleMessage_withNonBaseEventTypeMessageShouldNotRecordOnAnyRecorders() throws Exception {
+    public void dispatch_afterDrain_shouldCallRecordAgain() throws Exception {
+        subject.dispatch(mock(Event.class));
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        subject.dispatch(mock(Event.class));
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        verify(mockEventRecorder1, times(2)).record(anyList());
+    }
+
+    @Test
+    public void dispatch_withEventThatDidNotPassSampling_shouldNotRecordEvent() throws Exception {
+        Event event = mock(Event.class);
+        when(mockEventSampler.sample(event)).thenReturn(false);
+
+        subject.dispatch(event);
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        verify(mockEventRecorder1, never()).record(anyList());
+        assertThat(subject.getStats().getSampledOutCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dispatch_withNullEvent_shouldNotRecordAnything() throws Exception {
+        subject.dispatch(null);
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        verify(mockEventRecorder1, never()).record(anyList());
+    }
+
+    @Test
+    public void dispatch_withFullBuffer_withDropNewest_shouldDropNewEvent() throws Exception {
+        Event event1 = mock(Event.class);
+        Event event2 = mock(Event.class);
+
+        subject.dispatch(event1);
+        subject.dispatch(event2);
+        subject.dispatch(mock(Event.class));
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        ArgumentCaptor<List> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockEventRecorder1).record(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).containsExactly(event1, event2);
+        assertThat(subject.getStats().getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dispatch_withFullBuffer_withDropOldest_shouldDropOldestEvent() throws Exception {
+        subject = new EventDispatcher(recorders, Looper.getMainLooper(), mockEventSampler, 2,
+                EventDispatcher.DropPolicy.DROP_OLDEST);
+        Event event2 = mock(Event.class);
+        Event event3 = mock(Event.class);
+
+        subject.dispatch(mock(Event.class));
+        subject.dispatch(event2);
+        subject.dispatch(event3);
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        ArgumentCaptor<List> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockEventRecorder1).record(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).containsExactly(event2, event3);
+        assertThat(subject.getStats().getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void setDropPolicy_withDropOldest_shouldDropOldestEventWhenFull() throws Exception {
+        Event event2 = mock(Event.class);
+        Event event3 = mock(Event.class);
+
+        subject.setDropPolicy(EventDispatcher.DropPolicy.DROP_OLDEST);
+        subject.dispatch(mock(Event.class));
+        subject.dispatch(event2);
+        subject.dispatch(event3);
+        Robolectric.getForegroundThreadScheduler().advanceToLastPostedRunnable();
+
+        ArgumentCaptor<List> eventsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockEventRecorder1).record(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).containsExactly(event2, event3);
+    }
+
+    @Test
+    public void isSampled_withRequestId_shouldSampleRequestId() throws Exception {
+        when(mockEventSampler.sample("rid", 0.1)).thenReturn(false);
+
+        assertThat(subject.isSampled("rid", 0.1)).isFalse();
+        assertThat(subject.getStats().getSampledOutCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void isSampled_withoutRequestId_shouldReturnTrue() throws Exception {
+        assertThat(subject.isSampled(null, 0.1)).isTrue();
+        verify(mockEventSampler, never()).sample(null, 0.1);
+    }
+
+    @Test
+    public void handler_handleMessage_withUnknownMessageShouldNotRecordOnAnyRecorders() throws Exception {
         Message message = new Message();
-        message.obj = mock(Activity.class);
+        message.obj = mock(Event.class);
 
-        subject = new EventDispatcher(recorders, Looper.getMainLooper());
         subject.getHandlerCallback().handleMessage(message);
 
-        verify(mockEventRecorder1, never()).record(any(BaseEvent.class));
-        verify(mockEventRecorder2, never()).record(any(BaseEvent.class));
+        verify(mockEventRecorder1, never()).record(anyList());
+        verify(mockEventRecorder2, never()).record(anyList());
     }
 }
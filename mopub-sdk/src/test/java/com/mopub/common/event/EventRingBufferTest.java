@@ -0,0 +1,73 @@
+package com.mopub.common.event;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class EventRingBufferTest {
+
+    private EventRingBuffer subject;
+
+    @Test
+    public void drainTo_afterWrappingAround_shouldReturnEventsOldestFirst() throws Exception {
+        subject = new EventRingBuffer(3, EventDispatcher.DropPolicy.DROP_NEWEST);
+        BaseEvent event1 = mock(BaseEvent.class);
+        BaseEvent event2 = mock(BaseEvent.class);
+        BaseEvent event3 = mock(BaseEvent.class);
+        subject.offer(mock(BaseEvent.class));
+        subject.offer(mock(BaseEvent.class));
+        subject.drainTo(new ArrayList<BaseEvent>());
+
+        subject.offer(event1);
+        subject.offer(event2);
+        subject.offer(event3);
+        List<BaseEvent> events = new ArrayList<BaseEvent>();
+
+        assertThat(subject.drainTo(events)).isEqualTo(3);
+        assertThat(events).containsExactly(event1, event2, event3);
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void offer_whenFull_withDropNewest_shouldReturnFalse_shouldKeepEvents() throws Exception {
+        subject = new EventRingBuffer(2, EventDispatcher.DropPolicy.DROP_NEWEST);
+        BaseEvent event1 = mock(BaseEvent.class);
+        BaseEvent event2 = mock(BaseEvent.class);
+
+        assertThat(subject.offer(event1)).isTrue();
+        assertThat(subject.offer(event2)).isTrue();
+        assertThat(subject.offer(mock(BaseEvent.class))).isFalse();
+
+        List<BaseEvent> events = new ArrayList<BaseEvent>();
+        subject.drainTo(events);
+        assertThat(events).containsExactly(event1, event2);
+    }
+
+    @Test
+    public void offer_whenFull_withDropOldest_shouldReturnFalse_shouldReplaceOldestEvent() throws Exception {
+        subject = new EventRingBuffer(2, EventDispatcher.DropPolicy.DROP_OLDEST);
+        BaseEvent event2 = mock(BaseEvent.class);
+        BaseEvent event3 = mock(BaseEvent.class);
+        BaseEvent event4 = mock(BaseEvent.class);
+
+        subject.offer(mock(BaseEvent.class));
+        subject.offer(event2);
+        assertThat(subject.offer(event3)).isFalse();
+        assertThat(subject.offer(event4)).isFalse();
+
+        List<BaseEvent> events = new ArrayList<BaseEvent>();
+        subject.drainTo(events);
+        assertThat(events).containsExactly(event3, event4);
+    }
+}
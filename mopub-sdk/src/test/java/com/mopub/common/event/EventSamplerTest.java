@@ -9,8 +9,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.stubbing.OngoingStubbing;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
 
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -71,19 +73,108 @@ public class EventSamplerTest {
         assertThat(secondResult).isFalse();
     }
 
+    @Test
+    public void sample_withRequestId_beforeEventIsBuilt_shouldReturnSameValueForEvent() throws Exception {
+        when(mockRandom.nextDouble()).thenReturn(0.09).thenReturn(0.999);
+        when(mockBaseEvent.getRequestId()).thenReturn("rid");
+
+        assertThat(subject.sample("rid", 0.10)).isTrue();
+        assertThat(subject.sample(mockBaseEvent)).isTrue();
+    }
+
+    @Test
+    public void sample_withoutRequestId_shouldNotCacheDecision() throws Exception {
+        when(mockRandom.nextDouble()).thenReturn(0.09).thenReturn(0.999);
+
+        assertThat(subject.sample(null, 0.10)).isTrue();
+        assertThat(subject.sample(null, 0.10)).isFalse();
+        assertThat(subject.getCacheSize()).isEqualTo(0);
+    }
+
     @Test
     public void sample_withTooManyEvents_shouldHoldAMaximumNumberOfRequestIds() {
         when(mockRandom.nextDouble()).thenReturn(0.001);
         OngoingStubbing<String> ongoingStubbing = when(mockBaseEvent.getRequestId()).thenReturn(
                 "rid0");
-        for (int i = 1; i < EventSampler.MAX_SIZE * 3; i++) {
+        for (int i = 1; i < EventSampler.CAPACITY * 3; i++) {
             ongoingStubbing = ongoingStubbing.thenReturn("rid" + i);
         }
 
-        for (int i = 0; i < EventSampler.MAX_SIZE * 3; i++) {
+        for (int i = 0; i < EventSampler.CAPACITY * 3; i++) {
             subject.sample(mockBaseEvent);
         }
 
-        assertThat(subject.getCacheSize()).isEqualTo(EventSampler.MAX_SIZE);
+        assertThat(subject.getCacheSize()).isGreaterThan(0);
+        assertThat(subject.getCacheSize()).isLessThanOrEqualTo(EventSampler.CAPACITY);
+    }
+
+    @Test
+    public void sample_withLiveRequestId_shouldNotBeEvictedByOtherRequestIds() {
+        when(mockRandom.nextDouble()).thenReturn(0.09).thenReturn(0.999);
+
+        assertThat(subject.sample("rid", 0.10)).isTrue();
+        for (int i = 0; i < EventSampler.CAPACITY * 3; i++) {
+            subject.sample("rid" + i, 0.10);
+        }
+
+        assertThat(subject.sample("rid", 0.10)).isTrue();
+    }
+
+    @Test
+    public void sample_withOnlyLiveDecisionsInSet_shouldNotCacheNewDecision() {
+        when(mockRandom.nextDouble()).thenReturn(0.999);
+        for (int i = 0; i < EventSampler.CAPACITY * 3; i++) {
+            subject.sample("rid" + i, 0.10);
+        }
+        when(mockRandom.nextDouble()).thenReturn(0.09).thenReturn(0.999);
+
+        assertThat(subject.sample("new", 0.10)).isTrue();
+        assertThat(subject.sample("new", 0.10)).isFalse();
+    }
+
+    @Test
+    public void sample_withDecisionsNoLongerLive_shouldReplaceThem() {
+        when(mockRandom.nextDouble()).thenReturn(0.999);
+        for (int i = 0; i < EventSampler.CAPACITY * 3; i++) {
+            subject.sample("rid" + i, 0.10);
+        }
+        ShadowSystemClock.sleep(EventSampler.LIVE_MILLIS);
+        when(mockRandom.nextDouble()).thenReturn(0.09).thenReturn(0.999);
+
+        assertThat(subject.sample("new", 0.10)).isTrue();
+        assertThat(subject.sample("new", 0.10)).isTrue();
+    }
+
+    @Test
+    public void sample_withSameRequestIdOnSeveralThreads_shouldReturnSameValueOnEveryThread() throws Exception {
+        subject = new EventSampler();
+        final int threadCount = 4;
+        final boolean[] results = new boolean[threadCount];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    results[index] = subject.sample("rid", 0.5);
+                }
+            });
+            threads[i].start();
+        }
+
+        startLatch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 1; i < threadCount; i++) {
+            assertThat(results[i]).isEqualTo(results[0]);
+        }
     }
 }
@@ -17,6 +17,8 @@ import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -103,6 +105,58 @@ public class EventSerializerTest {
         assertThat(jsonObject2.getString("name_category")).isEqualTo("requests");
     }
 
+    @Test
+    public void serializeRecordsAsJson_shouldMatchSerializeAsJson() throws Exception {
+        ArrayList<BaseEvent> events = new ArrayList<BaseEvent>();
+        events.add(mockEvent);
+        events.add(mockErrorEvent);
+        ArrayList<byte[]> records = new ArrayList<byte[]>();
+        records.add(subject.toRecord(mockEvent));
+        records.add(subject.toRecord(mockErrorEvent));
+
+        JSONArray jsonArray = new JSONArray(subject.serializeRecordsAsJson(records));
+        // Round trip the expected JSON so numbers are compared as they are sent
+        JSONArray expectedJsonArray = new JSONArray(subject.serializeAsJson(events).toString());
+
+        assertThat(jsonArray.length()).isEqualTo(2);
+        for (int i = 0; i < jsonArray.length(); i++) {
+            JSONObject jsonObject = jsonArray.getJSONObject(i);
+            JSONObject expectedJsonObject = expectedJsonArray.getJSONObject(i);
+            assertThat(jsonObject.length()).isEqualTo(expectedJsonObject.length());
+            Iterator<String> keys = expectedJsonObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                assertThat(jsonObject.get(key)).as(key).isEqualTo(expectedJsonObject.get(key));
+            }
+        }
+        validateBaseEventFields(jsonArray.getJSONObject(0));
+    }
+
+    @Test
+    public void serializeRecordsAsJson_withNullFields_shouldOmitThem() throws Exception {
+        when(mockEvent.getAdUnitId()).thenReturn(null);
+        when(mockEvent.getGeoLat()).thenReturn(null);
+
+        JSONObject jsonObject = new JSONArray(subject.serializeRecordsAsJson(
+                Collections.singletonList(subject.toRecord(mockEvent)))).getJSONObject(0);
+
+        assertThat(jsonObject.has("ad_unit_id")).isFalse();
+        assertThat(jsonObject.has("geo_lat")).isFalse();
+        assertThat(jsonObject.getString("ad_creative_id")).isEqualTo("3c2b887e2c2a4cd0ae6a925440a62f0d");
+    }
+
+    @Test
+    public void serializeRecordsAsJson_withCorruptRecord_shouldSkipIt() throws Exception {
+        ArrayList<byte[]> records = new ArrayList<byte[]>();
+        records.add(new byte[] {EventSerializer.RECORD_VERSION, 1, 0, 0});
+        records.add(subject.toRecord(mockEvent));
+
+        JSONArray jsonArray = new JSONArray(subject.serializeRecordsAsJson(records));
+
+        assertThat(jsonArray.length()).isEqualTo(1);
+        validateBaseEventFields(jsonArray.getJSONObject(0));
+    }
+
     private void populateBaseEventFields(BaseEvent mockBaseEvent) {
         when(mockBaseEvent.getScribeCategory()).thenReturn(BaseEvent.ScribeCategory.EXCHANGE_CLIENT_EVENT);
         when(mockBaseEvent.getName()).thenReturn(BaseEvent.Name.AD_REQUEST);
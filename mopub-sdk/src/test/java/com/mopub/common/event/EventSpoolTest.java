@@ -0,0 +1,287 @@
+package com.mopub.common.event;
+
+import android.app.Activity;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class EventSpoolTest {
+    private static final long MAX_SIZE = 1024;
+
+    private File file;
+    private EventSpool subject;
+
+    @Before
+    public void setUp() throws Exception {
+        Activity context = Robolectric.buildActivity(Activity.class).create().get();
+        file = new File(new File(context.getCacheDir(), "spool"), "events");
+        file.delete();
+        subject = EventSpool.open(file, MAX_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        subject.close();
+    }
+
+    @Test
+    public void peek_shouldReturnRecordsInOrder_shouldNotRemoveThem() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+
+        EventSpool.Batch batch = subject.peek(2);
+
+        assertThat(batch.getRecords()).hasSize(2);
+        assertThat(batch.getRecords().get(0)).isEqualTo(record(1));
+        assertThat(batch.getRecords().get(1)).isEqualTo(record(2));
+        assertThat(subject.getRecordCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void peek_withMaxBytes_shouldStopBeforeRecordThatDoesNotFit() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+
+        EventSpool.Batch batch = subject.peek(10, 2 * record(1).length + 1);
+        assertThat(batch.getRecords()).hasSize(2);
+        subject.release(batch);
+        // The first record is always read
+        assertThat(subject.peek(10, 1).getRecords()).hasSize(1);
+    }
+
+    @Test
+    public void peek_shouldSkipLeasedBatches() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+
+        EventSpool.Batch firstBatch = subject.peek(1);
+        EventSpool.Batch secondBatch = subject.peek(10);
+
+        assertThat(firstBatch.getRecords().get(0)).isEqualTo(record(1));
+        assertThat(secondBatch.getRecords()).hasSize(2);
+        assertThat(secondBatch.getRecords().get(0)).isEqualTo(record(2));
+        assertThat(subject.peek(10).getRecords()).isEmpty();
+    }
+
+    @Test
+    public void peek_afterRelease_shouldReadRecordsAgain_shouldStopAtNextLeasedBatch() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+        EventSpool.Batch firstBatch = subject.peek(2);
+        subject.peek(1);
+
+        subject.release(firstBatch);
+        EventSpool.Batch batch = subject.peek(10);
+
+        assertThat(batch.getRecords()).hasSize(2);
+        assertThat(batch.getRecords().get(0)).isEqualTo(record(1));
+        assertThat(batch.getRecords().get(1)).isEqualTo(record(2));
+    }
+
+    @Test
+    public void getPendingBytes_shouldCountBytesOfUnsentRecords() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+
+        subject.commit(subject.peek(1));
+
+        assertThat(subject.getPendingBytes()).isEqualTo(record(2).length);
+    }
+
+    @Test
+    public void commit_shouldRemoveRecordsOfBatch() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+
+        subject.commit(subject.peek(1));
+
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+        assertThat(subject.peek(10).getRecords().get(0)).isEqualTo(record(2));
+    }
+
+    @Test
+    public void commit_outOfOrder_shouldRemoveRecordsOnceEarlierBatchIsCommitted() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+        EventSpool.Batch firstBatch = subject.peek(1);
+        EventSpool.Batch secondBatch = subject.peek(1);
+
+        subject.commit(secondBatch);
+
+        assertThat(subject.getRecordCount()).isEqualTo(2);
+        subject.close();
+        subject = EventSpool.open(file, MAX_SIZE);
+        // Not removed from the file yet, so it's read again after a restart
+        assertThat(subject.getRecordCount()).isEqualTo(3);
+        firstBatch = subject.peek(1);
+        secondBatch = subject.peek(1);
+
+        subject.commit(secondBatch);
+        subject.commit(firstBatch);
+
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+        assertThat(subject.peek(10).getRecords().get(0)).isEqualTo(record(3));
+        subject.close();
+        subject = EventSpool.open(file, MAX_SIZE);
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void commit_afterRelease_shouldNotRemoveRecords() throws Exception {
+        subject.append(record(1));
+        EventSpool.Batch batch = subject.peek(1);
+
+        subject.release(batch);
+        subject.commit(batch);
+
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void commit_twice_shouldOnlyRemoveRecordsOnce() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        EventSpool.Batch batch = subject.peek(1);
+
+        subject.commit(batch);
+        subject.commit(batch);
+
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void commit_withAllRecords_shouldEmptyFile() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+
+        subject.commit(subject.peek(2));
+
+        assertThat(subject.isEmpty()).isTrue();
+        assertThat(subject.getFileSize()).isEqualTo(EventSpool.HEADER_SIZE);
+        assertThat(file.length()).isEqualTo(EventSpool.HEADER_SIZE);
+    }
+
+    @Test
+    public void commit_afterCompactionByAppend_shouldRemoveRecordsOfBatch() throws Exception {
+        final int recordSize = EventSpool.RECORD_OVERHEAD + record(1).length;
+        final int recordsThatFit = (int) ((MAX_SIZE - EventSpool.HEADER_SIZE) / recordSize);
+        for (int i = 0; i < recordsThatFit; i++) {
+            subject.append(record(i));
+        }
+        subject.commit(subject.peek(1));
+        EventSpool.Batch inFlightBatch = subject.peek(1);
+
+        // Only fits once the committed record is compacted away
+        assertThat(subject.append(record(100))).isTrue();
+        subject.commit(inFlightBatch);
+
+        assertThat(subject.getRecordCount()).isEqualTo(recordsThatFit - 1);
+        assertThat(subject.peek(1).getRecords().get(0)).isEqualTo(record(2));
+    }
+
+    @Test
+    public void append_whenFull_shouldReturnFalse() throws Exception {
+        final int recordSize = EventSpool.RECORD_OVERHEAD + record(1).length;
+        final int recordsThatFit = (int) ((MAX_SIZE - EventSpool.HEADER_SIZE) / recordSize);
+        for (int i = 0; i < recordsThatFit; i++) {
+            assertThat(subject.append(record(i))).isTrue();
+        }
+
+        assertThat(subject.append(record(100))).isFalse();
+        assertThat(subject.getRecordCount()).isEqualTo(recordsThatFit);
+    }
+
+    @Test
+    public void open_shouldReplayUncommittedRecords() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+        subject.commit(subject.peek(1));
+        subject.close();
+
+        subject = EventSpool.open(file, MAX_SIZE);
+
+        assertThat(subject.getRecordCount()).isEqualTo(2);
+        EventSpool.Batch batch = subject.peek(10);
+        assertThat(batch.getRecords().get(0)).isEqualTo(record(2));
+        assertThat(batch.getRecords().get(1)).isEqualTo(record(3));
+    }
+
+    @Test
+    public void open_withTornRecord_shouldDropIt_shouldKeepEarlierRecords() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.close();
+        // As if the process died while writing the second record
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() - 1);
+        randomAccessFile.close();
+
+        subject = EventSpool.open(file, MAX_SIZE);
+
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+        assertThat(subject.append(record(3))).isTrue();
+        EventSpool.Batch batch = subject.peek(10);
+        assertThat(batch.getRecords()).hasSize(2);
+        assertThat(batch.getRecords().get(0)).isEqualTo(record(1));
+        assertThat(batch.getRecords().get(1)).isEqualTo(record(3));
+    }
+
+    @Test
+    public void open_withCorruptRecord_shouldDropItAndEverythingAfterIt() throws Exception {
+        subject.append(record(1));
+        subject.append(record(2));
+        subject.append(record(3));
+        subject.close();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(EventSpool.HEADER_SIZE + 2 * EventSpool.RECORD_OVERHEAD
+                + record(1).length);
+        randomAccessFile.write(42);
+        randomAccessFile.close();
+
+        subject = EventSpool.open(file, MAX_SIZE);
+
+        assertThat(subject.getRecordCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void open_withInvalidHeader_shouldStartEmpty() throws Exception {
+        subject.append(record(1));
+        subject.close();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.writeInt(0);
+        randomAccessFile.close();
+
+        subject = EventSpool.open(file, MAX_SIZE);
+
+        assertThat(subject.isEmpty()).isTrue();
+        assertThat(subject.getFileSize()).isEqualTo(EventSpool.HEADER_SIZE);
+    }
+
+    private static byte[] record(final int value) {
+        final byte[] record = new byte[64];
+        for (int i = 0; i < record.length; i++) {
+            record[i] = (byte) (value + i);
+        }
+        return record;
+    }
+}
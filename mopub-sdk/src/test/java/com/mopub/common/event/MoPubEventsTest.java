@@ -3,6 +3,7 @@ package com.mopub.common.event;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,6 +14,7 @@ import java.util.ArrayList;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 @RunWith(SdkTestRunner.class)
@@ -24,6 +26,11 @@ public class MoPubEventsTest {
         MoPubEvents.setEventDispatcher(null);
     }
 
+    @After
+    public void tearDown() {
+        MoPubEvents.setDropPolicy(EventDispatcher.DropPolicy.DROP_NEWEST);
+    }
+
     @Test
     public void getDispatcher_shouldReturnSingletonEventDispatcherWithScribeEventRecorder() throws Exception {
         EventDispatcher eventDispatcher = MoPubEvents.getDispatcher();
@@ -41,6 +48,16 @@ public class MoPubEventsTest {
         assertThat(eventRecorders.get(0)).isInstanceOf(ScribeEventRecorder.class);
     }
 
+    @Test
+    public void setDropPolicy_shouldSetDropPolicyOfExistingDispatcher() throws Exception {
+        EventDispatcher mockEventDispatcher = mock(EventDispatcher.class);
+        MoPubEvents.setEventDispatcher(mockEventDispatcher);
+
+        MoPubEvents.setDropPolicy(EventDispatcher.DropPolicy.DROP_OLDEST);
+
+        verify(mockEventDispatcher).setDropPolicy(EventDispatcher.DropPolicy.DROP_OLDEST);
+    }
+
     @Test
     public void log_shouldDispatchEvent() throws Exception {
         EventDispatcher mockEventDispatcher = mock(EventDispatcher.class);
@@ -51,4 +68,14 @@ public class MoPubEventsTest {
 
         verify(mockEventDispatcher).dispatch(mockEvent);
     }
+
+    @Test
+    public void isSampled_shouldSampleWithDispatcher() throws Exception {
+        EventDispatcher mockEventDispatcher = mock(EventDispatcher.class);
+        MoPubEvents.setEventDispatcher(mockEventDispatcher);
+        when(mockEventDispatcher.isSampled("rid", 0.1)).thenReturn(true);
+
+        assertThat(MoPubEvents.isSampled("rid", BaseEvent.SamplingRate.AD_REQUEST)).isTrue();
+        verify(mockEventDispatcher).isSampled("rid", 0.1);
+    }
 }
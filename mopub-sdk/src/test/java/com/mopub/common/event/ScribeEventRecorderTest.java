@@ -1,30 +1,39 @@
 package com.mopub.common.event;
 
+import android.app.Activity;
 import android.os.Handler;
 
+import com.mopub.common.ClientMetadata;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
 import com.mopub.network.ScribeBackoffPolicy;
 import com.mopub.network.ScribeRequest;
 import com.mopub.network.ScribeRequestManager;
+import com.mopub.volley.NetworkResponse;
+import com.mopub.volley.VolleyError;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 
-import java.util.List;
-import java.util.Queue;
+import java.io.File;
+import java.util.Arrays;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,145 +41,310 @@ import static org.mockito.Mockito.when;
 @RunWith(SdkTestRunner.class)
 @Config(constants = BuildConfig.class)
 public class ScribeEventRecorderTest {
+    private static final byte[] RECORD = new byte[] {1, 2, 3};
 
     private ScribeEventRecorder subject;
-    @Mock private EventSampler mockEventSampler;
-    @Mock private Queue<BaseEvent> mockQueue;
+    private Activity context;
+    private File spoolFile;
+    private EventSpool eventSpool;
     @Mock private EventSerializer mockEventSerializer;
     @Mock private ScribeRequestManager mockScribeRequestManager;
     @Mock private Handler mockHandler;
     @Mock private Event mockEvent;
 
     @Before
-    public void setUp() {
+    public void setUp() throws Exception {
+        context = Robolectric.buildActivity(Activity.class).create().get();
+        spoolFile = new File(context.getCacheDir(), "test-event-spool");
+        spoolFile.delete();
+        eventSpool = EventSpool.open(spoolFile, ScribeEventRecorder.SPOOL_MAX_BYTES);
+
         subject = new ScribeEventRecorder(
-                mockEventSampler,
-                mockQueue,
+                eventSpool,
                 mockEventSerializer,
                 mockScribeRequestManager,
                 mockHandler
         );
 
-        when(mockEventSampler.sample(any(Event.class))).thenReturn(true);
+        when(mockEventSerializer.toRecord(any(Event.class))).thenReturn(RECORD);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eventSpool.close();
     }
 
     @Test
-    public void record_shouldSampleEvent() throws Exception {
-        subject.record(mockEvent);
-        verify(mockEventSampler).sample(mockEvent);
+    public void record_withEvents_shouldSpoolEvents_shouldSendEventsOnce() throws Exception {
+        spool(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT - 2);
+
+        subject.record(Arrays.<BaseEvent>asList(mockEvent, mockEvent, mockEvent));
+
+        assertThat(eventSpool.getRecordCount()).isEqualTo(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT + 1);
+        assertThat(subject.getStats().getSpooledCount()).isEqualTo(3);
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+        verify(mockHandler).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), eq(Long.valueOf(120000)));
     }
 
     @Test
-    public void record_withQueueSizeBelowSendThreshold_shouldQueueEvent_shouldNotSendEvents_shouldScheduleNextPoll() throws Exception {
-        when(mockQueue.size()).thenReturn(99);
+    public void record_withSpoolBelowSendThreshold_shouldSpoolEvent_shouldNotSendEvents_shouldScheduleNextPoll() throws Exception {
+        spool(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT - 2);
 
         subject.record(mockEvent);
 
-        verify(mockQueue).add(mockEvent);
-        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        assertThat(eventSpool.getRecordCount()).isEqualTo(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT - 1);
+        assertThat(subject.getStats().getSpooledCount()).isEqualTo(1);
+        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
         verify(mockHandler).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), eq(Long.valueOf(120000)));
     }
 
     @Test
-    public void record_withQueueSizeAtSendThreshold_shouldQueueEvent_shouldSendEvents_shouldScheduleNextPoll() throws Exception {
-        when(mockQueue.size()).thenReturn(100);
-        when(mockQueue.peek()).thenReturn(mockEvent);
-        when(mockQueue.poll()).thenReturn(mockEvent);
+    public void record_withSpoolAtMaxEventCount_shouldSpoolEvent_shouldSendEvents_shouldScheduleNextPoll() throws Exception {
+        spool(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT - 1);
 
         subject.record(mockEvent);
 
-        verify(mockQueue).add(mockEvent);
-        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        assertThat(eventSpool.getRecordCount()).isEqualTo(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT);
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
         verify(mockHandler).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), eq(Long.valueOf(120000)));
     }
 
     @Test
-    public void record_withQueueSizeAtQueueLimit_shouldNotQueueEvent_shouldNotSendEvents_shouldNotScheduleNextPoll() throws Exception {
-        when(mockQueue.size()).thenReturn(500);
+    public void record_withSpoolAtByteBudget_shouldSendEvents() throws Exception {
+        when(mockEventSerializer.toRecord(mockEvent))
+                .thenReturn(new byte[ScribeEventRecorder.BATCH_BYTE_BUDGET / 2]);
+
+        subject.record(mockEvent);
+        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+
+        subject.record(mockEvent);
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+    }
+
+    @Test
+    public void record_withSpoolFull_shouldDropEvent_shouldNotScheduleNextPoll() throws Exception {
+        eventSpool.close();
+        spoolFile.delete();
+        eventSpool = EventSpool.open(spoolFile, EventSpool.HEADER_SIZE);
+        subject = new ScribeEventRecorder(eventSpool, mockEventSerializer,
+                mockScribeRequestManager, mockHandler);
 
         subject.record(mockEvent);
 
-        verify(mockQueue, never()).add(mockEvent);
-        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        assertThat(eventSpool.isEmpty()).isTrue();
+        assertThat(subject.getStats().getDroppedCount()).isEqualTo(1);
         verify(mockHandler, never()).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), anyLong());
     }
 
     @Test
-    public void sendEvents_shouldDequeueEvents_shouldAddRequestToScribeRequestManager() throws Exception {
-        when(mockQueue.size()).thenReturn(1);
-        when(mockQueue.peek()).thenReturn(mockEvent).thenReturn(null);
-        when(mockQueue.poll()).thenReturn(mockEvent).thenReturn(null);
+    public void record_withoutSpool_withoutClientMetadata_shouldDropEvent() throws Exception {
+        subject = new ScribeEventRecorder(null, mockEventSerializer,
+                mockScribeRequestManager, mockHandler);
+
+        subject.record(mockEvent);
+
+        assertThat(subject.getStats().getDroppedCount()).isEqualTo(1);
+        assertThat(subject.getStats().getSpooledCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void record_withoutSpool_withClientMetadata_shouldOpenSpoolInFilesDirectory_shouldReplaySpooledEvents() throws Exception {
+        ClientMetadata.getInstance(context);
+        final File filesSpoolFile = new File(context.getFilesDir(), "mopub-event-spool");
+        filesSpoolFile.delete();
+        EventSpool previousSpool = EventSpool.open(filesSpoolFile, ScribeEventRecorder.SPOOL_MAX_BYTES);
+        previousSpool.append(RECORD);
+        previousSpool.close();
+        subject = new ScribeEventRecorder(null, mockEventSerializer,
+                mockScribeRequestManager, mockHandler);
+
+        subject.record(mockEvent);
+
+        ScribeEventRecorder.Stats stats = subject.getStats();
+        assertThat(stats.getReplayedCount()).isEqualTo(1);
+        assertThat(stats.getSpooledCount()).isEqualTo(1);
+        assertThat(filesSpoolFile.length()).isEqualTo(
+                EventSpool.HEADER_SIZE + 2 * (EventSpool.RECORD_OVERHEAD + RECORD.length));
+    }
+
+    @Test
+    public void sendEvents_shouldPeekRecords_shouldAddRequestToScribeRequestManager() throws Exception {
+        spool(1);
         doAnswer(new Answer() {
             @Override
             public Object answer(InvocationOnMock invocation) throws Throwable {
                 ScribeRequest scribeRequest = ((ScribeRequest.ScribeRequestFactory) invocation.getArguments()[0]).createRequest(null);
                 assertThat(scribeRequest.getUrl()).isEqualTo("https://analytics.mopub.com/i/jot/exchange_client_event");
-                assertThat(scribeRequest.getEvents()).containsOnly(mockEvent);
+                assertThat(scribeRequest.getRecords()).containsOnly(RECORD);
+                return null;
+            }
+        }).when(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+
+        subject.sendEvents();
+
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+        // Records are only removed once they were sent
+        assertThat(eventSpool.getRecordCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void sendEvents_withMoreRecordsThanMaxEventCount_shouldSendUpToMaxEventCount() throws Exception {
+        spool(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT + 1);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ScribeRequest scribeRequest = ((ScribeRequest.ScribeRequestFactory) invocation.getArguments()[0]).createRequest(null);
+                assertThat(scribeRequest.getRecords()).hasSize(ScribeEventRecorder.BATCH_MAX_EVENT_COUNT);
+                return null;
+            }
+        }).when(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+
+        subject.sendEvents();
+
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+    }
+
+    @Test
+    public void sendEvents_withMoreRecordBytesThanByteBudget_shouldSendUpToByteBudget() throws Exception {
+        final int recordSize = ScribeEventRecorder.BATCH_BYTE_BUDGET / 4;
+        for (int i = 0; i < 5; i++) {
+            eventSpool.append(new byte[recordSize]);
+        }
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ScribeRequest scribeRequest = ((ScribeRequest.ScribeRequestFactory) invocation.getArguments()[0]).createRequest(null);
+                assertThat(scribeRequest.getRecords()).hasSize(4);
                 return null;
             }
-        }).when(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        }).when(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+
+        subject.sendEvents();
+
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+    }
 
+    @Test
+    public void sendEvents_withEmptySpool_shouldNotMakeRequest() throws Exception {
         subject.sendEvents();
 
-        verify(mockQueue, times(2)).peek();
-        verify(mockQueue, times(1)).poll();
-        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
     }
 
     @Test
     public void sendEvents_withRequestInFlightShouldReturnFast() throws Exception {
+        spool(1);
         when(mockScribeRequestManager.isAtCapacity()).thenReturn(true);
 
         subject.sendEvents();
 
-        verify(mockQueue, never()).poll();
-        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        verify(mockScribeRequestManager, never()).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
     }
-    
+
     @Test
-    public void dequeEvents_withQueueSizeGreaterThanEventSendThreshhold_shouldDequeueUpToEventSendThreshhold() throws Exception {
-        when(mockQueue.size()).thenReturn(101);
-        when(mockQueue.peek()).thenReturn(mockEvent);
-        when(mockQueue.poll()).thenReturn(mockEvent);
+    public void sendEvents_withBatchInFlight_shouldSendOtherRecords() throws Exception {
+        final int recordSize = ScribeEventRecorder.BATCH_BYTE_BUDGET / 2;
+        for (int i = 0; i < 3; i++) {
+            eventSpool.append(new byte[recordSize]);
+        }
+        ArgumentCaptor<EventSpool.Batch> batchCaptor = ArgumentCaptor.forClass(EventSpool.Batch.class);
 
-        List<BaseEvent> events = subject.dequeueEvents();
+        subject.sendEvents();
+        when(mockScribeRequestManager.hasRequest(any())).thenReturn(true);
+        subject.sendEvents();
 
-        verify(mockQueue, times(101)).peek();
-        verify(mockQueue, times(100)).poll();
-        assertThat(events.size()).isEqualTo(100);
+        verify(mockScribeRequestManager, times(2)).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), batchCaptor.capture());
+        assertThat(batchCaptor.getAllValues().get(0).getRecords()).hasSize(2);
+        assertThat(batchCaptor.getAllValues().get(1).getRecords()).hasSize(1);
+        assertThat(eventSpool.getPendingRecordCount()).isEqualTo(0);
     }
 
     @Test
-    public void dequeEvents_withQueueSizeLessThanEventSendThreshhold_shouldDequeueQueueSize() throws Exception {
-        when(mockQueue.size()).thenReturn(99);
+    public void sendEvents_afterRequestWasGivenUpOn_shouldSendSameRecordsAgain() throws Exception {
+        spool(2);
+        ArgumentCaptor<EventSpool.Batch> batchCaptor = ArgumentCaptor.forClass(EventSpool.Batch.class);
+        subject.sendEvents();
+        assertThat(eventSpool.getPendingRecordCount()).isEqualTo(0);
 
-        when(mockQueue.peek()).thenAnswer(new Answer<BaseEvent>() {
-            int i;
-            @Override
-            public BaseEvent answer(InvocationOnMock invocation) throws Throwable {
-                return i++ < 99 ? mockEvent : null;
-            }
-        });
+        // The request manager no longer has the request
+        when(mockScribeRequestManager.hasRequest(any())).thenReturn(false);
+        subject.sendEvents();
 
-        when(mockQueue.poll()).thenAnswer(new Answer<BaseEvent>() {
-            int i;
-            @Override
-            public BaseEvent answer(InvocationOnMock invocation) throws Throwable {
-                return i++ < 99 ? mockEvent : null;
-            }
-        });
+        verify(mockScribeRequestManager, times(2)).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), batchCaptor.capture());
+        assertThat(batchCaptor.getAllValues().get(1).getRecords()).hasSize(2);
+        assertThat(eventSpool.getRecordCount()).isEqualTo(2);
+    }
 
-        List<BaseEvent> events = subject.dequeueEvents();
+    @Test
+    public void sendEvents_afterRequestWasRejected_shouldDropRecords() throws Exception {
+        spool(2);
+        ArgumentCaptor<EventSpool.Batch> batchCaptor = ArgumentCaptor.forClass(EventSpool.Batch.class);
+        subject.sendEvents();
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), batchCaptor.capture());
+
+        failWithStatusCode(batchCaptor.getValue(), 400);
+        subject.sendEvents();
 
-        verify(mockQueue, times(100)).peek();
-        verify(mockQueue, times(99)).poll();
-        assertThat(events.size()).isEqualTo(99);
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+        assertThat(eventSpool.getRecordCount()).isEqualTo(0);
+        assertThat(subject.getStats().getDroppedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void sendEvents_afterServerErrors_shouldRetryBatch_shouldDropRecordsAfterMaxAttempts() throws Exception {
+        spool(2);
+        ArgumentCaptor<EventSpool.Batch> batchCaptor = ArgumentCaptor.forClass(EventSpool.Batch.class);
+        subject.sendEvents();
+
+        for (int i = 1; i <= ScribeEventRecorder.MAX_BATCH_ATTEMPTS; i++) {
+            verify(mockScribeRequestManager, times(i)).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), batchCaptor.capture());
+            assertThat(eventSpool.getRecordCount()).isEqualTo(2);
+            failWithStatusCode(batchCaptor.getValue(), 503);
+            subject.sendEvents();
+        }
+
+        verify(mockScribeRequestManager, times(ScribeEventRecorder.MAX_BATCH_ATTEMPTS)).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
+        assertThat(eventSpool.getRecordCount()).isEqualTo(0);
+        assertThat(subject.getStats().getDroppedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void CommittingListener_onResponse_shouldRemoveRecordsFromSpool_shouldNotifyListener() throws Exception {
+        spool(3);
+        ScribeRequest.Listener mockListener = mock(ScribeRequest.Listener.class);
+        ScribeEventRecorder.CommittingListener committingListener =
+                subject.new CommittingListener(eventSpool, eventSpool.peek(2), mockListener);
+
+        committingListener.onResponse();
+
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockHandler).post(runnableCaptor.capture());
+        verify(mockListener).onResponse();
+        runnableCaptor.getValue().run();
+        assertThat(eventSpool.getRecordCount()).isEqualTo(1);
+        assertThat(subject.getStats().getUploadedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void CommittingListener_onErrorResponse_shouldKeepRecordsInSpool_shouldNotifyListener() throws Exception {
+        spool(3);
+        ScribeRequest.Listener mockListener = mock(ScribeRequest.Listener.class);
+        VolleyError volleyError = new VolleyError();
+        ScribeEventRecorder.CommittingListener committingListener =
+                subject.new CommittingListener(eventSpool, eventSpool.peek(2), mockListener);
+
+        committingListener.onErrorResponse(volleyError);
+
+        verify(mockListener).onErrorResponse(volleyError);
+        verify(mockHandler, never()).post(any(Runnable.class));
+        assertThat(eventSpool.getRecordCount()).isEqualTo(3);
+        assertThat(subject.getStats().getUploadedCount()).isEqualTo(0);
     }
 
     @Test
     public void scheduleNextPoll_shouldPostDelayedPollingRunnable() throws Exception {
+        spool(1);
         when(mockHandler.hasMessages(0)).thenReturn(false);
-        when(mockQueue.isEmpty()).thenReturn(false);
 
         subject.scheduleNextPoll();
 
@@ -179,8 +353,8 @@ public class ScribeEventRecorderTest {
 
     @Test
     public void scheduleNextPoll_withPollScheduled_shouldNotPostDelayedPollingRunnable() throws Exception {
+        spool(1);
         when(mockHandler.hasMessages(0)).thenReturn(true);
-        when(mockQueue.isEmpty()).thenReturn(false);
 
         subject.scheduleNextPoll();
 
@@ -188,9 +362,8 @@ public class ScribeEventRecorderTest {
     }
 
     @Test
-    public void scheduleNextPoll_withEmptyRequestQueue_shouldNotPostDelayedPollingRunnable() throws Exception {
+    public void scheduleNextPoll_withEmptySpool_shouldNotPostDelayedPollingRunnable() throws Exception {
         when(mockHandler.hasMessages(0)).thenReturn(false);
-        when(mockQueue.isEmpty()).thenReturn(true);
 
         subject.scheduleNextPoll();
 
@@ -199,15 +372,34 @@ public class ScribeEventRecorderTest {
 
     @Test
     public void PollingRunnable_run_shouldSendEvents_shouldScheduleNextPoll() throws Exception {
-        when(mockQueue.size()).thenReturn(100);
-        when(mockQueue.peek()).thenReturn(mockEvent);
-        when(mockQueue.poll()).thenReturn(mockEvent);
+        spool(1);
 
         ScribeEventRecorder.PollingRunnable pollingRunnable = subject.new PollingRunnable();
         pollingRunnable.run();
 
-        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class));
+        verify(mockScribeRequestManager).makeRequest(any(ScribeRequest.ScribeRequestFactory.class), any(ScribeBackoffPolicy.class), any(EventSpool.Batch.class));
         verify(mockHandler).postDelayed(any(ScribeEventRecorder.PollingRunnable.class), eq(Long.valueOf(120000)));
     }
-}
 
+    /**
+     * Fails the request of the batch with an error response and has the request manager give up
+     * on it.
+     */
+    private void failWithStatusCode(final EventSpool.Batch batch, final int statusCode) {
+        reset(mockHandler);
+        ScribeEventRecorder.CommittingListener committingListener = subject.new CommittingListener(
+                eventSpool, batch, mock(ScribeRequest.Listener.class));
+        committingListener.onErrorResponse(new VolleyError(
+                new NetworkResponse(statusCode, null, null, false)));
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockHandler).post(runnableCaptor.capture());
+        runnableCaptor.getValue().run();
+        when(mockScribeRequestManager.hasRequest(batch)).thenReturn(false);
+    }
+
+    private void spool(final int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            eventSpool.append(RECORD);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.mopub.common.test.support;
 
+import com.mopub.common.AdUrlGenerator;
 import com.mopub.common.CacheService;
 import com.mopub.common.ClientMetadata;
 import com.mopub.common.MoPub;
@@ -16,6 +17,10 @@ import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
 import com.mopub.common.util.test.support.ShadowReflection;
 import com.mopub.common.util.test.support.TestDateAndTime;
 import com.mopub.common.util.test.support.TestMethodBuilderFactory;
+import com.mopub.mobileads.HtmlPayloadRegistry;
+import com.mopub.mobileads.PreRenderedWebViewCache;
+import com.mopub.mobileads.VastWrapperResolver;
+import com.mopub.mobileads.WebViewPool;
 import com.mopub.mobileads.factories.AdViewControllerFactory;
 import com.mopub.mobileads.factories.CustomEventBannerAdapterFactory;
 import com.mopub.mobileads.factories.CustomEventBannerFactory;
@@ -38,6 +43,7 @@ import com.mopub.mobileads.test.support.TestMraidControllerFactory;
 import com.mopub.mobileads.test.support.TestVastManagerFactory;
 import com.mopub.nativeads.factories.CustomEventNativeFactory;
 import com.mopub.nativeads.test.support.TestCustomEventNativeFactory;
+import com.mopub.network.TrackingRequestDispatcher;
 
 import org.junit.runners.model.InitializationError;
 import org.mockito.MockitoAnnotations;
@@ -76,6 +82,7 @@ public class SdkTestRunner extends RobolectricGradleTestRunner {
         @Override
         public void prepareTest(Object test) {
             ClientMetadata.clearForTesting();
+            AdUrlGenerator.clearEncodedParamsForTesting();
 
             // Precondition exceptions should not be thrown during tests so that we can test
             // for unexpected behavior even after failing a precondition.
@@ -106,6 +113,12 @@ public class SdkTestRunner extends RobolectricGradleTestRunner {
 
             AsyncTasks.setExecutor(new RoboExecutorService());
             CacheService.clearAndNullCaches();
+            TrackingRequestDispatcher.clearForTesting();
+            VastWrapperResolver.clearForTesting();
+            WebViewPool.clearForTesting();
+            HtmlPayloadRegistry.setExecutorForTesting(new RoboExecutorService());
+            HtmlPayloadRegistry.clearForTesting();
+            PreRenderedWebViewCache.clearForTesting();
         }
     }
 }
@@ -0,0 +1,133 @@
+package com.mopub.common.util;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class BoxBlurTest {
+    private ExecutorService executorService;
+    private BoxBlur subject;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(3);
+        subject = new BoxBlur(executorService, 4, BoxBlur.DEFAULT_PASSES);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void blur_withUniformFrame_shouldNotChangeColor_shouldMakeFrameOpaque() {
+        final int[] pixels = new int[40 * 30];
+        Arrays.fill(pixels, 0x80336699);
+
+        subject.blur(pixels, 40, 30, 3);
+
+        for (final int pixel : pixels) {
+            assertThat(pixel).isEqualTo(0xFF336699);
+        }
+    }
+
+    @Test
+    public void blur_withSinglePixel_shouldSpreadItEvenly() {
+        final int[] pixels = new int[9 * 9];
+        Arrays.fill(pixels, 0xFF000000);
+        pixels[4 * 9 + 4] = 0xFFFFFFFF;
+
+        new BoxBlur(executorService, 1, 1).blur(pixels, 9, 9, 1);
+
+        // One pass with a radius of 1 averages each pixel with its 3x3 neighborhood
+        for (int y = 0; y < 9; y++) {
+            for (int x = 0; x < 9; x++) {
+                final boolean inNeighborhood = Math.abs(x - 4) <= 1 && Math.abs(y - 4) <= 1;
+                assertThat(pixels[y * 9 + x]).isEqualTo(inNeighborhood ? 0xFF1C1C1C : 0xFF000000);
+            }
+        }
+    }
+
+    @Test
+    public void blur_withStripes_shouldMatchBlurWithoutStripes() {
+        final Random random = new Random(0);
+        final int width = 97;
+        final int height = 203;
+        final int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        final int[] expected = Arrays.copyOf(pixels, pixels.length);
+
+        new BoxBlur(executorService, 1, BoxBlur.DEFAULT_PASSES).blur(expected, width, height, 5);
+        subject.blur(pixels, width, height, 5);
+
+        assertThat(pixels).isEqualTo(expected);
+    }
+
+    @Test
+    public void blur_withExecutorThatNeverRunsTasks_shouldBlurAllStripesOnCallingThread() {
+        final Random random = new Random(0);
+        final int width = 97;
+        final int height = 203;
+        final int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        final int[] expected = Arrays.copyOf(pixels, pixels.length);
+
+        new BoxBlur(executorService, 1, BoxBlur.DEFAULT_PASSES).blur(expected, width, height, 5);
+        new BoxBlur(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                // Never runs, like an executor whose threads are all busy
+            }
+        }, 4, BoxBlur.DEFAULT_PASSES).blur(pixels, width, height, 5);
+
+        assertThat(pixels).isEqualTo(expected);
+    }
+
+    @Test
+    public void blur_withDifferentFrameSizes_shouldReuseBuffers() {
+        final int[] large = new int[64 * 64];
+        final int[] small = new int[16 * 8];
+        Arrays.fill(large, 0xFF102030);
+        Arrays.fill(small, 0xFF405060);
+
+        subject.blur(large, 64, 64, 2);
+        subject.blur(small, 16, 8, 2);
+
+        assertThat(large[0]).isEqualTo(0xFF102030);
+        assertThat(small[small.length - 1]).isEqualTo(0xFF405060);
+        assertThat(subject.getPixelBuffer(16)).isSameAs(subject.getPixelBuffer(8));
+    }
+
+    @Test
+    public void blur_withZeroRadius_shouldNotChangePixels() {
+        final int[] pixels = new int[] {0x00000001, 0x00000002, 0x00000003, 0x00000004};
+
+        subject.blur(pixels, 2, 2, 0);
+
+        assertThat(pixels).isEqualTo(new int[] {0x00000001, 0x00000002, 0x00000003, 0x00000004});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blur_withPixelBufferSmallerThanFrame_shouldThrowIllegalArgumentException() {
+        subject.blur(new int[10], 4, 4, 1);
+    }
+}
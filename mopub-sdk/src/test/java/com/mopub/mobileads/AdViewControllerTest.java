@@ -284,6 +284,15 @@ public class AdViewControllerTest {
         verify(mockRequestQueue).add(argThat(isUrl("impressionUrl")));
     }
 
+    @Test
+    public void trackImpression_calledTwiceForSameAd_shouldAddToRequestQueueOnce() {
+        subject.onAdLoadSuccess(response);
+        subject.trackImpression();
+        subject.trackImpression();
+
+        verify(mockRequestQueue).add(argThat(isUrl("impressionUrl")));
+    }
+
     @Test
     public void trackImpression_noAdResponse_shouldNotAddToQueue() {
         subject.trackImpression();
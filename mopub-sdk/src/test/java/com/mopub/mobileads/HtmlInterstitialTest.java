@@ -10,6 +10,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowApplication;
 import org.robolectric.shadows.support.v4.ShadowLocalBroadcastManager;
@@ -50,7 +51,7 @@ public class HtmlInterstitialTest extends ResponseBodyInterstitialTest {
 
         expectedResponse = "this is the response";
         htmlInterstitialWebView = TestHtmlInterstitialWebViewFactory.getSingletonMock();
-        context = new Activity();
+        context = Robolectric.buildActivity(Activity.class).create().get();
         customEventInterstitialListener = mock(CustomEventInterstitialListener.class);
         localExtras = new HashMap<String, Object>();
         serverExtras = new HashMap<String, String>();
@@ -88,7 +89,8 @@ public class HtmlInterstitialTest extends ResponseBodyInterstitialTest {
         subject.showInterstitial();
 
         Intent nextStartedActivity = ShadowApplication.getInstance().getNextStartedActivity();
-        assertThat(nextStartedActivity.getStringExtra(HTML_RESPONSE_BODY_KEY)).isEqualTo(expectedResponse);
+        assertThat(nextStartedActivity.hasExtra(HTML_RESPONSE_BODY_KEY)).isFalse();
+        assertThat(HtmlPayloadRegistry.get(broadcastIdentifier)).isEqualTo(expectedResponse);
         assertThat(nextStartedActivity.getBooleanExtra(SCROLLABLE_KEY, false)).isFalse();
         assertThat(nextStartedActivity.getStringExtra(REDIRECT_URL_KEY)).isNull();
         assertThat(nextStartedActivity.getStringExtra(CLICKTHROUGH_URL_KEY)).isNull();
@@ -106,7 +108,8 @@ public class HtmlInterstitialTest extends ResponseBodyInterstitialTest {
         subject.showInterstitial();
 
         Intent nextStartedActivity = ShadowApplication.getInstance().getNextStartedActivity();
-        assertThat(nextStartedActivity.getStringExtra(HTML_RESPONSE_BODY_KEY)).isEqualTo(expectedResponse);
+        assertThat(nextStartedActivity.hasExtra(HTML_RESPONSE_BODY_KEY)).isFalse();
+        assertThat(HtmlPayloadRegistry.get(broadcastIdentifier)).isEqualTo(expectedResponse);
         assertThat(nextStartedActivity.getBooleanExtra(SCROLLABLE_KEY, false)).isTrue();
         assertThat(nextStartedActivity.getStringExtra(REDIRECT_URL_KEY)).isEqualTo("redirectUrl");
         assertThat(nextStartedActivity.getStringExtra(CLICKTHROUGH_URL_KEY)).isEqualTo("clickthroughUrl");
@@ -129,6 +132,19 @@ public class HtmlInterstitialTest extends ResponseBodyInterstitialTest {
         verify(customEventInterstitialListener).onInterstitialDismissed();
     }
 
+    @Test
+    public void onInvalidate_shouldDestroyPreRenderedWebView() throws Exception {
+        subject.loadInterstitial(context, customEventInterstitialListener, localExtras, serverExtras);
+        final HtmlInterstitialWebView preRenderedWebView = mock(HtmlInterstitialWebView.class);
+        PreRenderedWebViewCache.getInstance(context).put(broadcastIdentifier, preRenderedWebView);
+
+        subject.onInvalidate();
+
+        verify(preRenderedWebView).destroy();
+        assertThat(PreRenderedWebViewCache.getInstance(context).take(broadcastIdentifier,
+                HtmlInterstitialWebView.class)).isNull();
+    }
+
     @Test
     public void onInvalidate_shouldDisconnectListenerToBroadcastReceiver() throws Exception {
         subject.loadInterstitial(context, customEventInterstitialListener, localExtras, serverExtras);
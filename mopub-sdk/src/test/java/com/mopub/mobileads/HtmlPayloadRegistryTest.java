@@ -0,0 +1,82 @@
+package com.mopub.mobileads;
+
+import android.app.Activity;
+
+import com.mopub.common.CacheService;
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class HtmlPayloadRegistryTest {
+    private static final long BROADCAST_IDENTIFIER = 2222;
+    private static final String HTML_DATA = "<html>\u00e9</html>";
+
+    @Mock private HtmlPayloadRegistry.LoadListener loadListener;
+
+    private Activity context;
+
+    @Before
+    public void setUp() throws Exception {
+        context = Robolectric.buildActivity(Activity.class).create().get();
+    }
+
+    @Test
+    public void put_thenGet_shouldReturnHtml() throws Exception {
+        HtmlPayloadRegistry.put(context, BROADCAST_IDENTIFIER, HTML_DATA);
+
+        assertThat(HtmlPayloadRegistry.get(BROADCAST_IDENTIFIER)).isEqualTo(HTML_DATA);
+        assertThat(HtmlPayloadRegistry.get(BROADCAST_IDENTIFIER + 1)).isNull();
+    }
+
+    @Test
+    public void put_shouldWriteHtmlToDiskCache() throws Exception {
+        HtmlPayloadRegistry.put(context, BROADCAST_IDENTIFIER, HTML_DATA);
+
+        assertThat(CacheService.getFromDiskCache(
+                HtmlPayloadRegistry.DISK_CACHE_KEY_PREFIX + BROADCAST_IDENTIFIER))
+                .isEqualTo(HTML_DATA.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void load_afterInMemoryPayloadsAreLost_shouldReadHtmlFromDiskCache() throws Exception {
+        HtmlPayloadRegistry.put(context, BROADCAST_IDENTIFIER, HTML_DATA);
+        // As after the process was killed
+        HtmlPayloadRegistry.clearForTesting();
+        assertThat(HtmlPayloadRegistry.get(BROADCAST_IDENTIFIER)).isNull();
+
+        HtmlPayloadRegistry.load(context, BROADCAST_IDENTIFIER, loadListener);
+
+        verify(loadListener).onLoaded(HTML_DATA);
+        assertThat(HtmlPayloadRegistry.get(BROADCAST_IDENTIFIER)).isEqualTo(HTML_DATA);
+    }
+
+    @Test
+    public void load_withNoPayload_shouldPassNull() throws Exception {
+        HtmlPayloadRegistry.load(context, BROADCAST_IDENTIFIER, loadListener);
+
+        verify(loadListener).onLoaded(null);
+        assertThat(HtmlPayloadRegistry.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void remove_shouldRemoveHtmlFromMemoryAndDiskCache() throws Exception {
+        HtmlPayloadRegistry.put(context, BROADCAST_IDENTIFIER, HTML_DATA);
+
+        HtmlPayloadRegistry.remove(BROADCAST_IDENTIFIER);
+
+        assertThat(HtmlPayloadRegistry.size()).isEqualTo(0);
+        assertThat(HtmlPayloadRegistry.get(BROADCAST_IDENTIFIER)).isNull();
+        assertThat(CacheService.getFromDiskCache(
+                HtmlPayloadRegistry.DISK_CACHE_KEY_PREFIX + BROADCAST_IDENTIFIER)).isNull();
+    }
+}
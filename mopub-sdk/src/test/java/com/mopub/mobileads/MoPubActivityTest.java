@@ -1,6 +1,7 @@
 package com.mopub.mobileads;
 
 import android.app.Activity;
+import android.content.ActivityNotFoundException;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -42,7 +43,9 @@ import static com.mopub.mobileads.EventForwardingBroadcastReceiverTest.getIntent
 import static com.mopub.mobileads.MoPubErrorCode.UNSPECIFIED;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -98,7 +101,8 @@ public class MoPubActivityTest {
     @Test
     public void preRenderHtml_shouldPreloadTheHtml() throws Exception {
         String htmlData = "this is nonsense";
-        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, htmlData);
+        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, htmlData,
+                testBroadcastIdentifier);
 
         verify(htmlInterstitialWebView).enablePlugins(eq(false));
         verify(htmlInterstitialWebView).loadHtmlResponse(htmlData);
@@ -107,14 +111,15 @@ public class MoPubActivityTest {
     @Test
     public void preRenderHtml_shouldEnableJavascriptCachingForDummyWebView() {
         MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener,
-                "html_data");
+                "html_data", testBroadcastIdentifier);
 
         verify(htmlInterstitialWebView).enableJavascriptCaching();
     }
 
     @Test
     public void preRenderHtml_shouldHaveAWebViewClientThatForwardsFinishLoad() throws Exception {
-        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, null);
+        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, null,
+                testBroadcastIdentifier);
 
         ArgumentCaptor<WebViewClient> webViewClientCaptor = ArgumentCaptor.forClass(WebViewClient.class);
         verify(htmlInterstitialWebView).setWebViewClient(webViewClientCaptor.capture());
@@ -126,9 +131,39 @@ public class MoPubActivityTest {
         verify(customEventInterstitialListener, never()).onInterstitialFailed(any(MoPubErrorCode.class));
     }
 
+    @Test
+    public void preRenderHtml_onFinishLoad_shouldCacheRenderedWebView() throws Exception {
+        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, null,
+                testBroadcastIdentifier);
+
+        ArgumentCaptor<WebViewClient> webViewClientCaptor = ArgumentCaptor.forClass(WebViewClient.class);
+        verify(htmlInterstitialWebView).setWebViewClient(webViewClientCaptor.capture());
+        webViewClientCaptor.getValue().shouldOverrideUrlLoading(null, "mopub://finishLoad");
+
+        assertThat(PreRenderedWebViewCache.getInstance(subject).take(testBroadcastIdentifier,
+                HtmlInterstitialWebView.class)).isSameAs(htmlInterstitialWebView);
+    }
+
+    @Test
+    public void preRenderHtml_onFinishLoadAfterRemove_shouldDestroyWebView_shouldNotForwardFinishLoad() throws Exception {
+        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, null,
+                testBroadcastIdentifier);
+        PreRenderedWebViewCache.getInstance(subject).remove(testBroadcastIdentifier);
+
+        ArgumentCaptor<WebViewClient> webViewClientCaptor = ArgumentCaptor.forClass(WebViewClient.class);
+        verify(htmlInterstitialWebView).setWebViewClient(webViewClientCaptor.capture());
+        webViewClientCaptor.getValue().shouldOverrideUrlLoading(null, "mopub://finishLoad");
+
+        verify(htmlInterstitialWebView).destroy();
+        verify(customEventInterstitialListener, never()).onInterstitialLoaded();
+        assertThat(PreRenderedWebViewCache.getInstance(subject).take(testBroadcastIdentifier,
+                HtmlInterstitialWebView.class)).isNull();
+    }
+
     @Test
     public void preRenderHtml_shouldHaveAWebViewClientThatForwardsFailLoad() throws Exception {
-        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, null);
+        MoPubActivity.preRenderHtml(subject, mockAdReport, customEventInterstitialListener, null,
+                testBroadcastIdentifier);
 
         ArgumentCaptor<WebViewClient> webViewClientCaptor = ArgumentCaptor.forClass(WebViewClient.class);
         verify(htmlInterstitialWebView).setWebViewClient(webViewClientCaptor.capture());
@@ -190,12 +225,40 @@ public class MoPubActivityTest {
         verify(htmlInterstitialWebView).loadUrl(eq("javascript:webviewDidClose();"));
     }
 
+    @Test
+    public void onDestroy_whenFinishing_shouldRemoveHtmlPayload() throws Exception {
+        subject.finish();
+        subject.onDestroy();
+
+        assertThat(HtmlPayloadRegistry.get(testBroadcastIdentifier)).isNull();
+    }
+
+    @Test
+    public void onDestroy_whenNotFinishing_shouldKeepHtmlPayload() throws Exception {
+        subject.onDestroy();
+
+        assertThat(HtmlPayloadRegistry.get(testBroadcastIdentifier))
+                .isEqualTo(EXPECTED_HTML_DATA);
+    }
+
+    @Test
+    public void start_withActivityNotFound_shouldRemoveHtmlPayload() throws Exception {
+        final Context mockContext = mock(Context.class);
+        doThrow(new ActivityNotFoundException()).when(mockContext).startActivity(any(Intent.class));
+
+        MoPubActivity.start(mockContext, "expectedResponse", mockAdReport, true, "redirectUrl", "clickthroughUrl", CreativeOrientation.PORTRAIT, testBroadcastIdentifier);
+
+        assertThat(HtmlPayloadRegistry.get(testBroadcastIdentifier)).isNull();
+    }
+
     @Test
     public void start_shouldStartMoPubActivityWithCorrectParameters() throws Exception {
         MoPubActivity.start(subject, "expectedResponse", mockAdReport, true, "redirectUrl", "clickthroughUrl", CreativeOrientation.PORTRAIT, testBroadcastIdentifier);
 
         Intent nextStartedActivity = ShadowApplication.getInstance().getNextStartedActivity();
-        assertThat(nextStartedActivity.getStringExtra(HTML_RESPONSE_BODY_KEY)).isEqualTo("expectedResponse");
+        assertThat(nextStartedActivity.hasExtra(HTML_RESPONSE_BODY_KEY)).isFalse();
+        assertThat(HtmlPayloadRegistry.get(testBroadcastIdentifier))
+                .isEqualTo("expectedResponse");
         assertThat(nextStartedActivity.getBooleanExtra(SCROLLABLE_KEY, false)).isTrue();
         assertThat(nextStartedActivity.getStringExtra(REDIRECT_URL_KEY)).isEqualTo("redirectUrl");
         assertThat(nextStartedActivity.getStringExtra(CLICKTHROUGH_URL_KEY)).isEqualTo("clickthroughUrl");
@@ -204,6 +267,25 @@ public class MoPubActivityTest {
         assertThat(nextStartedActivity.getComponent().getClassName()).isEqualTo("com.mopub.mobileads.MoPubActivity");
     }
 
+    @Test
+    public void getAdView_withPreRenderedWebView_shouldReuseIt_shouldNotLoadResponseAgain() throws Exception {
+        final HtmlInterstitialWebView preRenderedWebView = mock(HtmlInterstitialWebView.class);
+        PreRenderedWebViewCache.getInstance(subject).startRendering(testBroadcastIdentifier);
+        PreRenderedWebViewCache.getInstance(subject).put(testBroadcastIdentifier,
+                preRenderedWebView);
+        resetMockedView(htmlInterstitialWebView);
+
+        View adView = subject.getAdView();
+
+        assertThat(adView).isSameAs(preRenderedWebView);
+        verify(preRenderedWebView).init(any(CustomEventInterstitialListener.class),
+                eq(EXPECTED_IS_SCROLLABLE), eq(EXPECTED_REDIRECT_URL),
+                eq(EXPECTED_CLICKTHROUGH_URL), anyString());
+        verify(preRenderedWebView).loadUrl("javascript:webviewDidAppear();");
+        verify(preRenderedWebView, never()).loadHtmlResponse(anyString());
+        verify(htmlInterstitialWebView, never()).loadHtmlResponse(anyString());
+    }
+
     @Test
     public void getAdView_shouldCreateHtmlInterstitialWebViewAndLoadResponse() throws Exception {
         // This is needed because we preload in onCreate and the mock gets triggered.
@@ -0,0 +1,134 @@
+package com.mopub.mobileads;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class PreRenderedWebViewCacheTest {
+    private Activity context;
+    private HtmlInterstitialWebView webView;
+    private PreRenderedWebViewCache subject;
+
+    @Before
+    public void setUp() throws Exception {
+        context = Robolectric.buildActivity(Activity.class).create().get();
+        webView = mock(HtmlInterstitialWebView.class);
+        subject = PreRenderedWebViewCache.getInstance(context);
+    }
+
+    @Test
+    public void take_shouldReturnWebViewOnce_shouldCountHitsAndMisses() throws Exception {
+        subject.startRendering(1);
+        subject.put(1, webView);
+
+        assertThat(subject.take(1, HtmlInterstitialWebView.class)).isSameAs(webView);
+        assertThat(subject.take(1, HtmlInterstitialWebView.class)).isNull();
+        assertThat(subject.getHitCount()).isEqualTo(1);
+        assertThat(subject.getMissCount()).isEqualTo(1);
+        verify(webView, never()).destroy();
+    }
+
+    @Test
+    public void take_withOtherType_shouldDestroyWebView_shouldReturnNull() throws Exception {
+        final BaseWebView baseWebView = mock(BaseWebView.class);
+        subject.startRendering(1);
+        subject.put(1, baseWebView);
+
+        assertThat(subject.take(1, HtmlInterstitialWebView.class)).isNull();
+        verify(baseWebView).destroy();
+    }
+
+    @Test
+    public void take_afterExpiration_shouldDestroyWebView_shouldReturnNull() throws Exception {
+        subject.startRendering(1);
+        subject.put(1, webView);
+
+        ShadowSystemClock.sleep(PreRenderedWebViewCache.EXPIRATION_TIME_MILLIS);
+
+        assertThat(subject.take(1, HtmlInterstitialWebView.class)).isNull();
+        verify(webView).destroy();
+    }
+
+    @Test
+    public void put_overMaxEntries_shouldDestroyLeastRecentlyAddedWebView() throws Exception {
+        for (int i = 0; i < PreRenderedWebViewCache.MAX_ENTRIES; i++) {
+            subject.startRendering(i + 1);
+            subject.put(i + 1, mock(HtmlInterstitialWebView.class));
+        }
+        subject.startRendering(0);
+        subject.put(0, webView);
+
+        assertThat(subject.size()).isEqualTo(PreRenderedWebViewCache.MAX_ENTRIES);
+        assertThat(subject.take(1, HtmlInterstitialWebView.class)).isNull();
+        assertThat(subject.take(0, HtmlInterstitialWebView.class)).isSameAs(webView);
+    }
+
+    @Test
+    public void put_withSameWebViewTwice_shouldNotDestroyIt() throws Exception {
+        subject.startRendering(1);
+        subject.put(1, webView);
+        subject.put(1, webView);
+
+        verify(webView, never()).destroy();
+        assertThat(subject.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void put_withoutStartRendering_shouldDestroyWebView_shouldReturnFalse() throws Exception {
+        assertThat(subject.put(1, webView)).isFalse();
+
+        verify(webView).destroy();
+        assertThat(subject.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void put_afterRemoveWhileRendering_shouldDestroyWebView_shouldReturnFalse() throws Exception {
+        subject.startRendering(1);
+        subject.remove(1);
+
+        assertThat(subject.put(1, webView)).isFalse();
+
+        verify(webView).destroy();
+        assertThat(subject.take(1, HtmlInterstitialWebView.class)).isNull();
+    }
+
+    @Test
+    public void onTrimMemory_withUiHidden_shouldKeepWebViews() throws Exception {
+        subject.startRendering(1);
+        subject.put(1, webView);
+
+        ((Application) context.getApplicationContext()).onTrimMemory(
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertThat(subject.size()).isEqualTo(1);
+        verify(webView, never()).destroy();
+    }
+
+    @Test
+    public void onTrimMemory_withRunningLow_shouldDestroyWebViews() throws Exception {
+        subject.startRendering(1);
+        subject.put(1, webView);
+
+        ((Application) context.getApplicationContext()).onTrimMemory(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+
+        assertThat(subject.size()).isEqualTo(0);
+        verify(webView).destroy();
+    }
+}
@@ -0,0 +1,250 @@
+package com.mopub.mobileads;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.mopub.common.CacheService;
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.ClientMetadata.MoPubNetworkType;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class, shadows = {ShadowMoPubHttpUrlConnection.class})
+public class ResumableVideoDownloadTest {
+    private static final String VIDEO_URL = "https://video_url";
+    private static final int CHUNK_SIZE = 5;
+    private static final long MAX_SIZE = 100;
+
+    private File partialDirectory;
+
+    @Before
+    public void setUp() {
+        Context context = Robolectric.buildActivity(Activity.class).create().get();
+        CacheService.initialize(context);
+        partialDirectory = ResumableVideoDownload.getPartialDirectory();
+    }
+
+    @Test
+    public void download_shouldRequestChunksInOrder_shouldMoveVideoToDiskCache() throws Exception {
+        final HttpURLConnection firstChunk = addChunk("01234", "bytes 0-4/8", "etag");
+        final HttpURLConnection secondChunk = addChunk("567", "bytes 5-7/8", null);
+
+        final ResumableVideoDownload.Result result = createDownload().download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.COMPLETE);
+        verify(firstChunk).setRequestProperty("Range", "bytes=0-4");
+        verify(firstChunk, never()).setRequestProperty(eq("If-Range"), anyString());
+        verify(secondChunk).setRequestProperty("Range", "bytes=5-9");
+        verify(secondChunk).setRequestProperty("If-Range", "etag");
+        assertThat(CacheService.getFromDiskCache(VIDEO_URL)).isEqualTo("01234567".getBytes());
+        assertThat(partialDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void download_afterFailedChunk_shouldResumeFromLastChunk() throws Exception {
+        addChunk("01234", "bytes 0-4/8", "etag");
+        // No pending response for the second chunk makes the connection fail
+
+        try {
+            createDownload().download();
+            fail("Expected the second chunk to fail");
+        } catch (Exception e) {
+            // pass
+        }
+        assertThat(CacheService.containsKeyDiskCache(VIDEO_URL)).isFalse();
+
+        // A new download, as after process death, picks up the saved progress
+        final HttpURLConnection secondChunk = addChunk("567", "bytes 5-7/8", null);
+        final ResumableVideoDownload download = createDownload();
+        final ResumableVideoDownload.Result result = download.download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.COMPLETE);
+        verify(secondChunk).setRequestProperty("Range", "bytes=5-9");
+        verify(secondChunk).setRequestProperty("If-Range", "etag");
+        assertThat(CacheService.getFromDiskCache(VIDEO_URL)).isEqualTo("01234567".getBytes());
+    }
+
+    @Test
+    public void download_withFullResponseWhenResuming_shouldDiscardPartialFile() throws Exception {
+        addChunk("01234", "bytes 0-4/8", "etag");
+        try {
+            createDownload().download();
+            fail("Expected the second chunk to fail");
+        } catch (Exception e) {
+            // pass
+        }
+
+        // The video changed, so the server ignores If-Range and sends all of it
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "abcdefgh");
+        final ResumableVideoDownload.Result result = createDownload().download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.COMPLETE);
+        assertThat(CacheService.getFromDiskCache(VIDEO_URL)).isEqualTo("abcdefgh".getBytes());
+        assertThat(partialDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void download_withUnknownTotalLength_shouldCompleteOnShortChunk() throws Exception {
+        addChunk("01234", "bytes 0-4/*", null);
+        addChunk("56", "bytes 5-6/*", null);
+
+        final ResumableVideoDownload.Result result = createDownload().download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.COMPLETE);
+        assertThat(CacheService.getFromDiskCache(VIDEO_URL)).isEqualTo("0123456".getBytes());
+    }
+
+    @Test
+    public void download_withTotalLengthLargerThanMaximum_shouldFail_shouldNotKeepProgress()
+            throws Exception {
+        addChunk("01234", "bytes 0-4/" + (MAX_SIZE + 1), null);
+
+        final ResumableVideoDownload.Result result = createDownload().download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.FAILED);
+        assertThat(CacheService.containsKeyDiskCache(VIDEO_URL)).isFalse();
+        assertThat(partialDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void download_withUnexpectedContentRange_shouldFail() throws Exception {
+        addChunk("56789", "bytes 5-9/10", null);
+
+        final ResumableVideoDownload.Result result = createDownload().download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.FAILED);
+        assertThat(partialDirectory.list()).isEmpty();
+    }
+
+    @Test
+    public void download_afterMovingToMobileNetwork_shouldPause_shouldKeepProgress()
+            throws Exception {
+        final ClientMetadata clientMetadata = mock(ClientMetadata.class);
+        when(clientMetadata.getActiveNetworkType())
+                .thenReturn(MoPubNetworkType.WIFI, MoPubNetworkType.MOBILE);
+        ClientMetadata.setInstance(clientMetadata);
+        addChunk("01234", "bytes 0-4/8", null);
+        addChunk("567", "bytes 5-7/8", null);
+
+        final ResumableVideoDownload download = createDownload();
+        final ResumableVideoDownload.Result result = download.download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.PAUSED);
+        assertThat(download.getDownloadedLength()).isEqualTo(5);
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(1);
+        assertThat(CacheService.containsKeyDiskCache(VIDEO_URL)).isFalse();
+    }
+
+    @Test
+    public void download_startedOnMobileNetwork_shouldPauseBeforeFirstChunk() throws Exception {
+        final ClientMetadata clientMetadata = mock(ClientMetadata.class);
+        when(clientMetadata.getActiveNetworkType()).thenReturn(MoPubNetworkType.MOBILE);
+        ClientMetadata.setInstance(clientMetadata);
+        addChunk("01234", "bytes 0-4/8", null);
+        addChunk("567", "bytes 5-7/8", null);
+
+        final ResumableVideoDownload download = createDownload();
+        final ResumableVideoDownload.Result result = download.download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.PAUSED);
+        assertThat(download.getDownloadedLength()).isEqualTo(0);
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(2);
+    }
+
+    @Test
+    public void download_withPartialFile_shouldChargeItToDiskCacheBudget_untilMovedIntoCache()
+            throws Exception {
+        final long maxSize = CacheService.getDiskLruCache().getMaxSize();
+        final ClientMetadata clientMetadata = mock(ClientMetadata.class);
+        when(clientMetadata.getActiveNetworkType())
+                .thenReturn(MoPubNetworkType.WIFI, MoPubNetworkType.MOBILE);
+        ClientMetadata.setInstance(clientMetadata);
+        addChunk("01234", "bytes 0-4/8", null);
+
+        assertThat(createDownload().download()).isEqualTo(ResumableVideoDownload.Result.PAUSED);
+        assertThat(CacheService.getDiskLruCache().getMaxSize()).isEqualTo(maxSize - 5);
+
+        when(clientMetadata.getActiveNetworkType()).thenReturn(MoPubNetworkType.WIFI);
+        addChunk("567", "bytes 5-7/8", null);
+
+        assertThat(createDownload().download())
+                .isEqualTo(ResumableVideoDownload.Result.COMPLETE);
+        assertThat(CacheService.getDiskLruCache().getMaxSize()).isEqualTo(maxSize);
+    }
+
+    @Test
+    public void download_withStatusCodeGreaterThan299_shouldFail() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(404, "not found");
+
+        final ResumableVideoDownload.Result result = createDownload().download();
+
+        assertThat(result).isEqualTo(ResumableVideoDownload.Result.FAILED);
+        assertThat(CacheService.containsKeyDiskCache(VIDEO_URL)).isFalse();
+    }
+
+    @Test
+    public void prunePartialDownloads_shouldKeepMostRecentlyUsedPartialFiles() throws Exception {
+        assertThat(partialDirectory.mkdirs()).isTrue();
+        final List<File> partialFiles = new ArrayList<File>();
+        for (int i = 0; i < 7; i++) {
+            final File partialFile = new File(partialDirectory, "video" + i + ".part");
+            final File metadataFile = new File(partialDirectory, "video" + i + ".meta");
+            assertThat(partialFile.createNewFile()).isTrue();
+            assertThat(metadataFile.createNewFile()).isTrue();
+            partialFile.setLastModified(i * 1000L);
+            partialFiles.add(partialFile);
+        }
+
+        ResumableVideoDownload.prunePartialDownloads(partialDirectory);
+
+        assertThat(partialFiles.get(0).exists()).isFalse();
+        assertThat(partialFiles.get(1).exists()).isFalse();
+        assertThat(new File(partialDirectory, "video0.meta").exists()).isFalse();
+        for (int i = 2; i < 7; i++) {
+            assertThat(partialFiles.get(i).exists()).isTrue();
+        }
+        assertThat(partialDirectory.list()).hasSize(10);
+    }
+
+    private ResumableVideoDownload createDownload() {
+        return new ResumableVideoDownload(partialDirectory, VIDEO_URL, MAX_SIZE, CHUNK_SIZE);
+    }
+
+    private static HttpURLConnection addChunk(final String body, final String contentRange,
+            final String etag) throws Exception {
+        final Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("Content-Range", Collections.singletonList(contentRange));
+        if (etag != null) {
+            headers.put("ETag", Collections.singletonList(etag));
+        }
+        ShadowMoPubHttpUrlConnection.addPendingResponse(206, body, headers);
+
+        final List<?> pending =
+                new ArrayList<Object>(ShadowMoPubHttpUrlConnection.getPendingUrlConnections());
+        return (HttpURLConnection) pending.get(pending.size() - 1);
+    }
+}
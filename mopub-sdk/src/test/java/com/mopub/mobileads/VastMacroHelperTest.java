@@ -213,6 +213,31 @@ public class VastMacroHelperTest {
         assertThat(subject.getUris()).containsOnly(normalUri);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void withUnknownOrNestedBrackets_shouldOnlyReplaceKnownMacros() {
+        final String uri = "https://www.someurl.com/?a=[UNKNOWN]&b=[[ERRORCODE]]&c=[ERRORCODE&d=]";
+        subject = new VastMacroHelper(Collections.singletonList(uri))
+                .withErrorCode(VastErrorCode.UNDEFINED_ERROR);
+
+        assertThat(subject.getUris()).containsOnly(
+                "https://www.someurl.com/?a=[UNKNOWN]&b=[900]&c=[ERRORCODE&d=]");
+    }
+
+    @Test
+    public void forTrackers_shouldExpandTrackerUrls() {
+        subject = VastMacroHelper.forTrackers(Arrays.asList(
+                new VastTracker("https://www.someurl.com/?error=[ERRORCODE]"),
+                new VastAbsoluteProgressTracker("https://www.someurl.com/?cph=[CONTENTPLAYHEAD]",
+                        1000)))
+                .withErrorCode(VastErrorCode.UNDEFINED_ERROR)
+                .withContentPlayHead(1500);
+
+        assertThat(subject.getUris()).containsExactly(
+                "https://www.someurl.com/?error=900",
+                "https://www.someurl.com/?cph=00:00:01.500");
+    }
+
     private String getAndCheckCachebusting(final String uriStr) {
         Uri uri = Uri.parse(uriStr);
         String cacheBusting = uri.getQueryParameter(CACHE_BUSTING);
@@ -0,0 +1,113 @@
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class VastProgressTrackerSchedulerTest {
+    private VastVideoConfig vastVideoConfig;
+    private VastProgressTrackerScheduler subject;
+
+    @Before
+    public void setUp() {
+        vastVideoConfig = new VastVideoConfig();
+        vastVideoConfig.addAbsoluteTrackers(Arrays.asList(
+                new VastAbsoluteProgressTracker("absolute_0", 0),
+                new VastAbsoluteProgressTracker("absolute_3000", 3000),
+                new VastAbsoluteProgressTracker("absolute_6000", 6000)));
+        vastVideoConfig.addFractionalTrackers(Arrays.asList(
+                new VastFractionalProgressTracker("fractional_0.25", 0.25f),
+                new VastFractionalProgressTracker("fractional_0.5", 0.5f),
+                new VastFractionalProgressTracker("fractional_0.75", 0.75f)));
+        subject = new VastProgressTrackerScheduler(vastVideoConfig);
+    }
+
+    @Test
+    public void getDueTrackers_shouldReturnTrackersInTriggerOrder_shouldMarkThemTracked() {
+        final List<VastTracker> dueTrackers = subject.getDueTrackers(5000, 10000);
+
+        assertThat(getUrls(dueTrackers))
+                .containsExactly("absolute_0", "fractional_0.25", "absolute_3000", "fractional_0.5");
+        for (final VastTracker tracker : dueTrackers) {
+            assertThat(tracker.isTracked()).isTrue();
+        }
+        assertThat(vastVideoConfig.getAbsoluteTrackers().get(2).isTracked()).isFalse();
+    }
+
+    @Test
+    public void getDueTrackers_shouldReturnEachTrackerOnce() {
+        assertThat(getUrls(subject.getDueTrackers(2500, 10000)))
+                .containsExactly("absolute_0", "fractional_0.25");
+        assertThat(subject.getDueTrackers(2600, 10000)).isEmpty();
+        assertThat(getUrls(subject.getDueTrackers(3000, 10000))).containsExactly("absolute_3000");
+    }
+
+    @Test
+    public void getDueTrackers_shouldReuseReturnedList() {
+        final List<VastTracker> first = subject.getDueTrackers(0, 10000);
+        final List<VastTracker> second = subject.getDueTrackers(100, 10000);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second).isEmpty();
+    }
+
+    @Test
+    public void getDueTrackers_afterSeekingForward_shouldReturnSkippedTrackers() {
+        subject.getDueTrackers(1000, 10000);
+
+        assertThat(getUrls(subject.getDueTrackers(9000, 10000))).containsExactly(
+                "fractional_0.25", "absolute_3000", "fractional_0.5", "absolute_6000",
+                "fractional_0.75");
+    }
+
+    @Test
+    public void getDueTrackers_afterSeekingBack_shouldNotReturnTrackersAgain() {
+        subject.getDueTrackers(5000, 10000);
+
+        assertThat(subject.getDueTrackers(0, 10000)).isEmpty();
+        assertThat(getUrls(subject.getDueTrackers(6000, 10000))).containsExactly("absolute_6000");
+    }
+
+    @Test
+    public void getDueTrackers_withTrackersTrackedElsewhere_shouldSkipThem() {
+        vastVideoConfig.getFractionalTrackers().get(0).setTracked();
+
+        assertThat(getUrls(subject.getDueTrackers(3000, 10000)))
+                .containsExactly("absolute_0", "absolute_3000");
+    }
+
+    @Test
+    public void getDueTrackers_afterTrackersAdded_shouldReturnNewTrackers() {
+        subject.getDueTrackers(5000, 10000);
+
+        vastVideoConfig.addAbsoluteTrackers(Arrays.asList(
+                new VastAbsoluteProgressTracker("absolute_1000", 1000)));
+
+        assertThat(getUrls(subject.getDueTrackers(5000, 10000))).containsExactly("absolute_1000");
+    }
+
+    @Test
+    public void getDueTrackers_withNoVideoLength_shouldReturnNothing() {
+        assertThat(subject.getDueTrackers(5000, 0)).isEmpty();
+        assertThat(vastVideoConfig.getAbsoluteTrackers().get(0).isTracked()).isFalse();
+    }
+
+    private static List<String> getUrls(final List<VastTracker> trackers) {
+        final List<String> urls = new ArrayList<String>();
+        for (final VastTracker tracker : trackers) {
+            urls.add(tracker.getTrackingUrl());
+        }
+        return urls;
+    }
+}
@@ -27,7 +27,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withIFrameType_shouldSetIFrameResource() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         "StaticResource", "image/jpeg", "IFrameResource", "HTMLResource");
 
@@ -44,7 +44,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withHTMLType_shouldSetHTMLResource() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         "StaticResource", "image/jpeg", "IFrameResource", "HTMLResource");
 
@@ -61,7 +61,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withStaticType_withImageCreativeType_shouldSetImageCreativeType() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         "StaticResource", "image/jpeg", "IFrameResource", "HTMLResource");
 
@@ -77,7 +77,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withStaticType_withJavaScriptCreativeType_shouldSetJavascriptCreativeType() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         "StaticResource", "application/x-javascript", "IFrameResource", "HTMLResource");
 
@@ -93,7 +93,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withStaticType_withMissingCreativeType_shouldReturnNull() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         "StaticResource", null, "IFrameResource", "HTMLResource");
 
@@ -103,7 +103,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withStaticType_withInvalidCreativeType_shouldReturnNull() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         "StaticResource", "INVALID_CREATIVE_TYPE", "IFrameResource", "HTMLResource");
 
@@ -113,7 +113,7 @@ public class VastResourceTest {
 
     @Test
     public void fromVastResourceXmlManager_withNoResource_shouldReturnNull() throws Exception {
-        final VastResourceXmlManager resourceXmlManager =
+        final VastXmlPullParser.Resource resourceXmlManager =
                 VastXmlManagerAggregatorTest.initializeVastResourceXmlManagerMock(
                         null, null, null, null);
 
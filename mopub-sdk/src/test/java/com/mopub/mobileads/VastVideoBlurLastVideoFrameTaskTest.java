@@ -69,6 +69,21 @@ public class VastVideoBlurLastVideoFrameTaskTest {
         assertThat(subject.getBlurredLastVideoFrame()).isEqualTo(mockBitmap);
     }
 
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+    @Test
+    public void doInBackground_withFullHdFrame_shouldBlurDownsampledCopy_shouldRecycleFrame() throws Exception {
+        final Bitmap lastVideoFrame = Bitmap.createBitmap(1920, 1080, Bitmap.Config.ARGB_8888);
+        when(mockMediaMetadataRetriever.getFrameAtTime(anyLong(), anyInt()))
+                .thenReturn(lastVideoFrame);
+
+        assertThat(subject.doInBackground(videoPath)).isTrue();
+
+        final Bitmap blurredLastVideoFrame = subject.getBlurredLastVideoFrame();
+        assertThat(blurredLastVideoFrame.getWidth()).isEqualTo(480);
+        assertThat(blurredLastVideoFrame.getHeight()).isEqualTo(270);
+        assertThat(lastVideoFrame.isRecycled()).isTrue();
+    }
+
     @TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
     @Test
     public void doInBackground_whenSetDataSourceThrowsRuntimeException_shouldCatchExceptionAndReturnFalse() throws Exception {
@@ -48,19 +48,19 @@ public class VastVideoViewProgressRunnableTest {
 
     @Test
     public void doWork_whenTrackersReturned_shouldMakeTrackingRequests() {
-        List<VastTracker> testTrackers = new ArrayList<VastTracker>();
+        ArrayList<VastAbsoluteProgressTracker> testTrackers =
+                new ArrayList<VastAbsoluteProgressTracker>();
         testTrackers.add(new VastAbsoluteProgressTracker("https://example.com/", 1999));
         testTrackers.add(new VastAbsoluteProgressTracker("https://example1.com/", 2000));
+        testTrackers.add(new VastAbsoluteProgressTracker("https://example2.com/", 3001));
 
-        when(mockVideoConfig.getUntriggeredTrackersBefore(eq(3000), eq(4000)))
-                .thenReturn(testTrackers);
+        when(mockVideoConfig.getAbsoluteTrackers()).thenReturn(testTrackers);
         when(mockVastVideoViewController.getCurrentPosition()).thenReturn(3000);
         when(mockVastVideoViewController.getDuration()).thenReturn(4000);
         when(mockVastVideoViewController.getContext()).thenReturn(mockContext);
 
         subject.doWork();
 
-        verify(mockVideoConfig).getUntriggeredTrackersBefore(eq(3000), eq(4000));
         verify(mockVastVideoViewController).getCurrentPosition();
         verify(mockVastVideoViewController).getDuration();
         verify(mockVastVideoViewController).getContext();
@@ -74,23 +74,26 @@ public class VastVideoViewProgressRunnableTest {
         assertThat(allValues).hasSize(2);
         assertThat(allValues.get(0).getUrl()).isEqualTo("https://example.com/");
         assertThat(allValues.get(1).getUrl()).isEqualTo("https://example1.com/");
+        assertThat(testTrackers.get(0).isTracked()).isTrue();
+        assertThat(testTrackers.get(1).isTracked()).isTrue();
+        assertThat(testTrackers.get(2).isTracked()).isFalse();
 
         verifyNoMoreInteractions(mockVastVideoViewController, mockRequestQueue);
     }
 
     @Test
     public void doWork_whenNoTrackersReturned_shouldNotMakeTrackingRequests() {
-        List<VastTracker> testTrackers = new ArrayList<VastTracker>();
+        ArrayList<VastAbsoluteProgressTracker> testTrackers =
+                new ArrayList<VastAbsoluteProgressTracker>();
+        testTrackers.add(new VastAbsoluteProgressTracker("https://example.com/", 3001));
 
-        when(mockVideoConfig.getUntriggeredTrackersBefore(eq(3000), eq(4000)))
-                .thenReturn(testTrackers);
+        when(mockVideoConfig.getAbsoluteTrackers()).thenReturn(testTrackers);
         when(mockVastVideoViewController.getCurrentPosition()).thenReturn(3000);
         when(mockVastVideoViewController.getDuration()).thenReturn(4000);
         when(mockVastVideoViewController.getContext()).thenReturn(mockContext);
 
         subject.doWork();
 
-        verify(mockVideoConfig).getUntriggeredTrackersBefore(eq(3000), eq(4000));
         verify(mockVastVideoViewController).getCurrentPosition();
         verify(mockVastVideoViewController).getDuration();
         verify(mockVastVideoViewController).handleIconDisplay(eq(3000));
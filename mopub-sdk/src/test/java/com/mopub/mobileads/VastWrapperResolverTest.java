@@ -0,0 +1,133 @@
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class, shadows = {ShadowMoPubHttpUrlConnection.class})
+public class VastWrapperResolverTest {
+    private VastWrapperResolver subject;
+
+    @Before
+    public void setUp() {
+        // XXX We need this to ensure that our SystemClock starts
+        ShadowSystemClock.uptimeMillis();
+        VastWrapperResolver.setExecutorForTesting(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        });
+        subject = new VastWrapperResolver();
+    }
+
+    @Test
+    public void resolve_shouldFetchDocument_shouldRecordHopTime() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+
+        assertThat(subject.resolve("https://wrapper")).isEqualTo("document");
+        assertThat(ShadowMoPubHttpUrlConnection.getLatestRequestUrl()).isEqualTo("https://wrapper");
+        assertThat(subject.getHopTimesMillis()).containsExactly(0L);
+    }
+
+    @Test
+    public void resolve_withDocumentResolvedByAnotherChain_shouldFetchAgain() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "newDocument");
+        subject.resolve("https://wrapper");
+
+        assertThat(new VastWrapperResolver().resolve("https://wrapper")).isEqualTo("newDocument");
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+    }
+
+    @Test
+    public void resolve_withUrlAlreadyFollowedInChain_shouldFetchAgain() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "newDocument");
+        subject.resolve("https://wrapper");
+
+        assertThat(subject.resolve("https://wrapper")).isEqualTo("newDocument");
+        assertThat(subject.getHopTimesMillis()).hasSize(2);
+    }
+
+    @Test
+    public void resolve_afterDeadline_shouldThrowSocketTimeoutException_shouldNotFetch()
+            throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+        subject = new VastWrapperResolver(1000);
+        ShadowSystemClock.sleep(1000);
+
+        try {
+            subject.resolve("https://wrapper");
+            fail("Expected SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            // pass
+        }
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(1);
+    }
+
+    @Test
+    public void prefetch_shouldFetchAllUrls_thenResolveShouldUsePrefetchedDocuments()
+            throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "first");
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "second");
+
+        subject.prefetch(Arrays.asList("https://first", "https://second"));
+
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+        assertThat(subject.resolve("https://second")).isEqualTo("second");
+        assertThat(subject.resolve("https://first")).isEqualTo("first");
+    }
+
+    @Test
+    public void prefetch_withDocumentResolvedByAnotherChain_shouldFetchAgain() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+        new VastWrapperResolver().resolve("https://wrapper");
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "other");
+
+        subject.prefetch(Arrays.asList("https://wrapper"));
+
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+        assertThat(subject.resolve("https://wrapper")).isEqualTo("other");
+    }
+
+    @Test
+    public void resolve_withFailedPrefetch_shouldFetchAgain() throws Exception {
+        // No pending response makes the connection fail
+        subject.prefetch(Arrays.asList("https://wrapper"));
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+
+        assertThat(subject.resolve("https://wrapper")).isEqualTo("document");
+        assertThat(subject.getHopTimesMillis()).hasSize(1);
+    }
+
+    @Test
+    public void resolve_withFailedPrefetch_afterDeadline_shouldThrowSocketTimeoutException()
+            throws Exception {
+        subject = new VastWrapperResolver(1000);
+        subject.prefetch(Arrays.asList("https://wrapper"));
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, "document");
+        ShadowSystemClock.sleep(1000);
+
+        try {
+            subject.resolve("https://wrapper");
+            fail("Expected SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            // pass
+        }
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(1);
+    }
+}
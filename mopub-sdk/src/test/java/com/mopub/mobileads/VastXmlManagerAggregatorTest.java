@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 
 import static com.mopub.common.VolleyRequestMatcher.isUrl;
@@ -411,7 +412,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_shouldReturnMediaFileUrl() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(300, 250, "video/mp4", "video_url");
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(300, 250, "video/mp4", "video_url");
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
         assertThat(bestMediaFileUrl).isEqualTo("video_url");
@@ -419,7 +420,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_withNullMediaType_shouldReturnNull() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(300, 250, null, "video_url");
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(300, 250, null, "video_url");
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
         assertThat(bestMediaFileUrl).isNull();
@@ -427,7 +428,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_withIncompatibleMediaType_shouldReturnNull() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(300, 250, "video/rubbish", "video_url");
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(300, 250, "video/rubbish", "video_url");
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
         assertThat(bestMediaFileUrl).isNull();
@@ -435,7 +436,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_withNullMediaUrl_shouldReturnNull() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(300, 250, "video/mp4", null);
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(300, 250, "video/mp4", null);
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
         assertThat(bestMediaFileUrl).isNull();
@@ -443,7 +444,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_withNullDimension_shouldReturnNull() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(null, 250, "video/mp4", "video_url");
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(null, 250, "video/mp4", "video_url");
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
         assertThat(bestMediaFileUrl).isNull();
@@ -451,7 +452,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_withZeroDimension_shouldReturnNull() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(0, 250,
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(0, 250,
                 "video/mp4", "video_url");
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
@@ -460,7 +461,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestMediaFileUrl_withNegativeDimension_shouldReturnNull() throws Exception {
-        final VastMediaXmlManager mediaXmlManager = initializeMediaXmlManagerMock(-1, 250, "video/mp4", "video_url");
+        final VastXmlPullParser.MediaFile mediaXmlManager = initializeMediaXmlManagerMock(-1, 250, "video/mp4", "video_url");
 
         final String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager));
         assertThat(bestMediaFileUrl).isNull();
@@ -474,9 +475,9 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Triple screen size
-        final VastMediaXmlManager mediaXmlManager1 = initializeMediaXmlManagerMock(2400, 1440, "video/mp4", "video_url1");
+        final VastXmlPullParser.MediaFile mediaXmlManager1 = initializeMediaXmlManagerMock(2400, 1440, "video/mp4", "video_url1");
         // Double screen size
-        final VastMediaXmlManager mediaXmlManager2 = initializeMediaXmlManagerMock(1600, 960, "video/mp4", "video_url2");
+        final VastXmlPullParser.MediaFile mediaXmlManager2 = initializeMediaXmlManagerMock(1600, 960, "video/mp4", "video_url2");
 
         String bestMediaFileUrl = subject.getBestMediaFileUrl(Arrays.asList(mediaXmlManager1, mediaXmlManager2));
         assertThat(bestMediaFileUrl).isEqualTo("video_url2");
@@ -490,9 +491,9 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Triple screen size
-        final VastMediaXmlManager mediaXmlManager1 = initializeMediaXmlManagerMock(2400, 1440, "video/mp4", "video_url1");
+        final VastXmlPullParser.MediaFile mediaXmlManager1 = initializeMediaXmlManagerMock(2400, 1440, "video/mp4", "video_url1");
         // Half screen size
-        final VastMediaXmlManager mediaXmlManager2 = initializeMediaXmlManagerMock(400, 240,
+        final VastXmlPullParser.MediaFile mediaXmlManager2 = initializeMediaXmlManagerMock(400, 240,
                 "video/mp4", "video_url2");
 
         String bestMediaFileUrl = subject.getBestMediaFileUrl(
@@ -508,10 +509,10 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Landscape
-        final VastMediaXmlManager mediaXmlManager1 =
+        final VastXmlPullParser.MediaFile mediaXmlManager1 =
                 initializeMediaXmlManagerMock(400, 240, "video/mp4", "video_url1");
         // Portrait
-        final VastMediaXmlManager mediaXmlManager2 =
+        final VastXmlPullParser.MediaFile mediaXmlManager2 =
                 initializeMediaXmlManagerMock(240, 400, "video/mp4", "video_url2");
 
         String bestMediaFileUrl = subject.getBestMediaFileUrl(
@@ -527,9 +528,9 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Invalid media type
-        final VastMediaXmlManager mediaXmlManager1 = initializeMediaXmlManagerMock(800, 480, "video/invalid", "video_url1");
+        final VastXmlPullParser.MediaFile mediaXmlManager1 = initializeMediaXmlManagerMock(800, 480, "video/invalid", "video_url1");
         // Null dimension
-        final VastMediaXmlManager mediaXmlManager2 = initializeMediaXmlManagerMock(null, null,
+        final VastXmlPullParser.MediaFile mediaXmlManager2 = initializeMediaXmlManagerMock(null, null,
                 "video/mp4", "video_url2");
 
         String bestMediaFileUrl = subject.getBestMediaFileUrl(
@@ -544,8 +545,8 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getWidth()).isEqualTo(480);
         assertThat(display.getHeight()).isEqualTo(800);
 
-        final VastMediaXmlManager mediaXmlManager1 = initializeMediaXmlManagerMock(800, 480, "video/invalid", "video_url1");
-        final VastMediaXmlManager mediaXmlManager2 = initializeMediaXmlManagerMock(800,
+        final VastXmlPullParser.MediaFile mediaXmlManager1 = initializeMediaXmlManagerMock(800, 480, "video/invalid", "video_url1");
+        final VastXmlPullParser.MediaFile mediaXmlManager2 = initializeMediaXmlManagerMock(800,
                 480, null, "video_url2");
 
         String bestMediaFileUrl = subject.getBestMediaFileUrl(
@@ -555,7 +556,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestCompanionAd_shouldReturnCompanionAd() throws Exception {
-        final VastCompanionAdXmlManager companionXmlManager = initializeCompanionXmlManagerMock(
+        final VastXmlPullParser.CompanionAd companionXmlManager = initializeCompanionXmlManagerMock(
                 300, 250, "image_url", "image/jpeg", null, null, null);
 
         final VastCompanionAdConfig bestCompanionAd =
@@ -566,7 +567,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestCompanionAd_withInvalidVastResource_shouldReturnNull() throws Exception {
-        final VastCompanionAdXmlManager companionXmlManager = initializeCompanionXmlManagerMock(
+        final VastXmlPullParser.CompanionAd companionXmlManager = initializeCompanionXmlManagerMock(
                 300, 250, "image_url", "image/INVALID", null, null, null);
 
         final VastCompanionAdConfig bestCompanionAd =
@@ -577,7 +578,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestCompanionAd_withNullDimension_shouldReturnNull() throws Exception {
-        final VastCompanionAdXmlManager companionXmlManager =
+        final VastXmlPullParser.CompanionAd companionXmlManager =
                 initializeCompanionXmlManagerMock(null, 250, "image_url", "image/png", null, null, null);
 
         final VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -588,7 +589,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestCompanionAd_withWidthTooSmall_shouldReturnNull() throws Exception {
-        final VastCompanionAdXmlManager companionXmlManager =
+        final VastXmlPullParser.CompanionAd companionXmlManager =
                 initializeCompanionXmlManagerMock(299, 250, "image_url", "image/png", null, null, null);
 
         final VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -599,7 +600,7 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestCompanionAd_withHeightTooSmall_shouldReturnNull() throws Exception {
-        final VastCompanionAdXmlManager companionXmlManager =
+        final VastXmlPullParser.CompanionAd companionXmlManager =
                 initializeCompanionXmlManagerMock(300, 249, "image_url", "image/png", null, null, null);
 
         final VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -616,10 +617,10 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Triple screen size
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(2400, 1440, "image_url1", "image/png", null, null, null);
         // Double screen size
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(1600, 960, "image_url2", "image/bmp", null, null, null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -636,10 +637,10 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Triple screen size
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(2400, 1440, "image_url1", "image/png", null, null, null);
         // Half screen size
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(400, 250, "image_url2", "image/bmp", null, null, null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -656,10 +657,10 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Landscape
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(400, 250, "image_url1", "image/png", null, null, null);
         // Portrait
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(250, 400, "image_url2", "image/bmp", null, null, null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -676,10 +677,10 @@ public class VastXmlManagerAggregatorTest {
         assertThat(display.getHeight()).isEqualTo(800);
 
         // Landscape
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(400, 300, "image_url1", "image/png", null, null, null);
         // Portrait
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(300, 400, "image_url2", "image/bmp", null, null, null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -691,14 +692,14 @@ public class VastXmlManagerAggregatorTest {
     @Test
     public void getBestCompanionAd_withAllThreeResourceTypes_shouldReturnStaticResourceType() throws Exception {
         // Static Resource
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(400, 250, "StaticResource", "image/png", null,
                         null, null);
         // HTML Resource
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(250, 400, null, null, null, "HTMLResource", null);
         // IFrame Resource
-        final VastCompanionAdXmlManager companionXmlManager3 =
+        final VastXmlPullParser.CompanionAd companionXmlManager3 =
                 initializeCompanionXmlManagerMock(250, 400, null, null, "IFrameResource", null, null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -710,10 +711,10 @@ public class VastXmlManagerAggregatorTest {
     @Test
     public void getBestCompanionAd_withHTMLAndStaticResourceTypes_shouldReturnStaticResourceType() throws Exception {
         // Static Resource
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(400, 250, "StaticResource", "image/png", null, null, null);
         // HTML Resource
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(250, 400, null, null, null, "HTMLResource", null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -724,10 +725,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestCompanionAd_withInvalidStaticResource_withValidHtmlResource_shouldReturnHtmlResource() throws Exception {
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(400, 250, "StaticResource", "INVALID",
                         "IFrameResource", null, null);
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(300, 400, null, null, null, "HTMLResource", null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -745,9 +746,9 @@ public class VastXmlManagerAggregatorTest {
 
         // 305 x 305 is both fewer pixels (screen area) and a worse aspect ratio. It still should be
         // chosen because 240 is not wide enough to be considered for a companion ad
-        final VastCompanionAdXmlManager companionXmlManager1 =
+        final VastXmlPullParser.CompanionAd companionXmlManager1 =
                 initializeCompanionXmlManagerMock(305, 305, "image_url1", "image/png", null, null, null);
-        final VastCompanionAdXmlManager companionXmlManager2 =
+        final VastXmlPullParser.CompanionAd companionXmlManager2 =
                 initializeCompanionXmlManagerMock(240, 400, "image_url2", "image/bmp", null, null, null);
 
         VastCompanionAdConfig bestCompanionAd = subject.getBestCompanionAd(
@@ -758,10 +759,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getSocialActionsCompanionAds_shouldReturnSocialActionsCompanionAds() throws Exception {
-        final VastCompanionAdXmlManager adsByXmlManager =
+        final VastXmlPullParser.CompanionAd adsByXmlManager =
                 initializeCompanionXmlManagerMock(65, 20, null, "HTMLResource", null,
                         "<p>Ads by</p>", "adsBy");
-        final VastCompanionAdXmlManager socialActionsXmlManager =
+        final VastXmlPullParser.CompanionAd socialActionsXmlManager =
                 initializeCompanionXmlManagerMock(130, 30, null, "HTMLResource", null,
                         "<p>Retweet Like</p>", "socialActions");
 
@@ -783,10 +784,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getSocialActionsCompanionAds_withoutSocialActions_shouldNotReturnSocialActionsCompanionAds() throws Exception {
-        final VastCompanionAdXmlManager adsByXmlManager =
+        final VastXmlPullParser.CompanionAd adsByXmlManager =
                 initializeCompanionXmlManagerMock(65, 20, null, "HTMLResource", null,
                         "<p>Ads by</p>", "NOTadsBy");
-        final VastCompanionAdXmlManager socialActionsXmlManager =
+        final VastXmlPullParser.CompanionAd socialActionsXmlManager =
                 initializeCompanionXmlManagerMock(130, 30, null, "HTMLResource", null,
                         "<p>Retweet Like</p>", "NOTsocialActions");
 
@@ -799,10 +800,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getSocialActionsCompanionAds_withoutHTMLResource_shouldNotReturnSocialActionsCompanionAds() throws Exception {
-        final VastCompanionAdXmlManager adsByXmlManager =
+        final VastXmlPullParser.CompanionAd adsByXmlManager =
                 initializeCompanionXmlManagerMock(65, 20, null, "HTMLResource", null, null,
                         "adsBy");
-        final VastCompanionAdXmlManager socialActionsXmlManager =
+        final VastXmlPullParser.CompanionAd socialActionsXmlManager =
                 initializeCompanionXmlManagerMock(130, 30, null, "HTMLResource", null,
                         null, "socialActions");
 
@@ -818,10 +819,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getSocialActionsCompanionAds_whenTooWide_shouldNotReturnSocialActionsCompanionAds() throws Exception {
-        final VastCompanionAdXmlManager adsByXmlManager =
+        final VastXmlPullParser.CompanionAd adsByXmlManager =
                 initializeCompanionXmlManagerMock(76, 20, null, "HTMLResource", null,
                         "<p>Ads by</p>", "adsBy");
-        final VastCompanionAdXmlManager socialActionsXmlManager =
+        final VastXmlPullParser.CompanionAd socialActionsXmlManager =
                 initializeCompanionXmlManagerMock(151, 30, null, "HTMLResource", null,
                         "<p>Retweet Like</p>", "socialActions");
 
@@ -834,10 +835,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getSocialActionsCompanionAds_whenTooTall_shouldNotReturnSocialActionsCompanionAds() throws Exception {
-        final VastCompanionAdXmlManager adsByXmlManager =
+        final VastXmlPullParser.CompanionAd adsByXmlManager =
                 initializeCompanionXmlManagerMock(65, 51, null, "HTMLResource", null,
                         "<p>Ads by</p>", "adsBy");
-        final VastCompanionAdXmlManager socialActionsXmlManager =
+        final VastXmlPullParser.CompanionAd socialActionsXmlManager =
                 initializeCompanionXmlManagerMock(130, 51, null, "HTMLResource", null,
                         "<p>Retweet Like</p>", "socialActions");
 
@@ -1248,12 +1249,12 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_shouldReturnBestIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, 50, 123, 456, "staticResource1", "image/jpeg", null, null,
                         VastUtils.stringsToVastTrackers("clickTrackingUri1", "clickTrackingUri2"),
                         "clickThroughUri",
                         VastUtils.stringsToVastTrackers("viewTrackingUri1", "viewTrackingUri2"));
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1276,10 +1277,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withMissingWidth_shouldNotSelectThatIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(null, 50, null, null, "staticResource1", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null,
                         new ArrayList<VastTracker>());
@@ -1290,10 +1291,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withNegativeWidth_shouldNotSelectThatIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(-1, 50, null, null, "staticResource1", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1303,10 +1304,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withWidthGreaterThan300dp_shouldNotSelectThatIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(301, 50, null, null, "staticResource1", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1316,10 +1317,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withMissingHeight_shouldNotSelectThatIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, null, null, null, "staticResource1", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1329,10 +1330,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withNegativeHeight_shouldNotSelectThatIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, -1, null, null, "staticResource1", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1342,10 +1343,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withHeightGreaterThan300dp_shouldNotSelectThatIcon() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, 301, null, null, "staticResource1", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, "staticResource2", "image/png",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1355,13 +1356,13 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withAllThreeResourceTypes_shouldReturnStaticResourceType() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, 40, null, null, "StaticResource", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, null, null, "IFrameResource",
                         null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager3 =
+        final VastXmlPullParser.Icon iconXmlManager3 =
                 initializeIconXmlManagerMock(40, 40, null, null, null, null, null, "HTMLResource",
                         new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1372,10 +1373,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withHTMLAndStaticResourceTypes_shouldReturnStaticResourceType() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, 40, null, null, "StaticResource", "image/jpeg",
                         null, null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, null, null, null, "HTMLResource",
                         new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1385,10 +1386,10 @@ public class VastXmlManagerAggregatorTest {
 
     @Test
     public void getBestIcon_withInvalidStaticResource_withValidHtmlResource_shouldReturnHtmlResource() throws Exception {
-        final VastIconXmlManager iconXmlManager1 =
+        final VastXmlPullParser.Icon iconXmlManager1 =
                 initializeIconXmlManagerMock(40, 40, null, null, "StaticResource", "INVALID",
                         "IFrameResource", null, new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
-        final VastIconXmlManager iconXmlManager2 =
+        final VastXmlPullParser.Icon iconXmlManager2 =
                 initializeIconXmlManagerMock(40, 40, null, null, null, null, null, "HTMLResource",
                         new ArrayList<VastTracker>(), null, new ArrayList<VastTracker>());
 
@@ -1743,12 +1744,53 @@ public class VastXmlManagerAggregatorTest {
         verifyNoMoreInteractions(mockRequestQueue);
     }
 
-    private VastMediaXmlManager initializeMediaXmlManagerMock(
+    @Test
+    public void evaluateVastXmlManager_withSiblingWrappers_shouldPrefetchRedirects_shouldFallBackToSecondWrapper() throws Exception {
+        VastWrapperResolver.setExecutorForTesting(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        });
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_INVALID_VAST_XML_STRING);
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        final String siblingWrappersXml = "<VAST version='3.0'>" +
+                "<Ad><Wrapper><VASTAdTagURI>https://firstWrapper</VASTAdTagURI></Wrapper></Ad>" +
+                "<Ad><Wrapper><VASTAdTagURI>https://secondWrapper</VASTAdTagURI></Wrapper></Ad>" +
+                "</VAST>";
+
+        VastVideoConfig vastVideoConfig = subject.evaluateVastXmlManager(
+                siblingWrappersXml, new ArrayList<VastTracker>());
+
+        // Both redirects were fetched before the first one was evaluated
+        assertThat(ShadowMoPubHttpUrlConnection.getLatestRequestUrl())
+                .isEqualTo("https://secondWrapper");
+        assertThat(vastVideoConfig.getNetworkMediaFileUrl())
+                .isEqualTo("https://s3.amazonaws.com/mopub-vast/tapad-video.mp4");
+        assertThat(subject.getWrapperHopTimesMillis()).hasSize(2);
+    }
+
+    @Test
+    public void evaluateVastXmlManager_withWrapperResolvedBefore_shouldUseCachedRedirect() throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(200, TEST_NESTED_VAST_XML_STRING);
+        subject.evaluateVastXmlManager(TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        final VastXmlManagerAggregator aggregator = new VastXmlManagerAggregator(
+                vastXmlManagerAggregatorListener, 800.0 / 480, 800 * 480, context);
+        VastVideoConfig vastVideoConfig = aggregator.evaluateVastXmlManager(
+                TEST_VAST_XML_STRING, new ArrayList<VastTracker>());
+
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).isEmpty();
+        assertThat(vastVideoConfig.getNetworkMediaFileUrl())
+                .isEqualTo("https://s3.amazonaws.com/mopub-vast/tapad-video.mp4");
+    }
+
+    private VastXmlPullParser.MediaFile initializeMediaXmlManagerMock(
             final Integer width,
             final Integer height,
             final String type,
             final String mediaUrl) {
-        VastMediaXmlManager mediaXmlManager = mock(VastMediaXmlManager.class);
+        VastXmlPullParser.MediaFile mediaXmlManager = mock(VastXmlPullParser.MediaFile.class);
         when(mediaXmlManager.getWidth()).thenReturn(width);
         when(mediaXmlManager.getHeight()).thenReturn(height);
         when(mediaXmlManager.getType()).thenReturn(type);
@@ -1756,7 +1798,7 @@ public class VastXmlManagerAggregatorTest {
         return mediaXmlManager;
     }
 
-    private VastCompanionAdXmlManager initializeCompanionXmlManagerMock(
+    private VastXmlPullParser.CompanionAd initializeCompanionXmlManagerMock(
             final Integer width,
             final Integer height,
             final String staticResource,
@@ -1764,12 +1806,12 @@ public class VastXmlManagerAggregatorTest {
             final String iFrameResource,
             final String htmlResource,
             final String adSlotId) {
-        VastCompanionAdXmlManager companionXmlManager = mock(VastCompanionAdXmlManager.class);
+        VastXmlPullParser.CompanionAd companionXmlManager = mock(VastXmlPullParser.CompanionAd.class);
         when(companionXmlManager.getWidth()).thenReturn(width);
         when(companionXmlManager.getHeight()).thenReturn(height);
         when(companionXmlManager.getAdSlotId()).thenReturn(adSlotId);
 
-        VastResourceXmlManager mockResourceXmlManager = initializeVastResourceXmlManagerMock(
+        VastXmlPullParser.Resource mockResourceXmlManager = initializeVastResourceXmlManagerMock(
                 staticResource,
                 staticResourceType,
                 iFrameResource,
@@ -1781,7 +1823,7 @@ public class VastXmlManagerAggregatorTest {
     }
 
     private void assertCompanionAdsAreEqual(
-            final VastCompanionAdXmlManager companionAdXmlManager,
+            final VastXmlPullParser.CompanionAd companionAdXmlManager,
             final VastCompanionAdConfig companionAd) {
         final VastCompanionAdConfig companionAd1 = new VastCompanionAdConfig(
                 companionAdXmlManager.getWidth(),
@@ -1814,7 +1856,7 @@ public class VastXmlManagerAggregatorTest {
                 vastCompanionAdConfig2.getCreativeViewTrackers());
     }
 
-    private VastIconXmlManager initializeIconXmlManagerMock(
+    private VastXmlPullParser.Icon initializeIconXmlManagerMock(
             final Integer width,
             final Integer height,
             final Integer offsetMS,
@@ -1826,13 +1868,13 @@ public class VastXmlManagerAggregatorTest {
             final List<VastTracker> clickTrackingUris,
             final String clickThroughUri,
             final List<VastTracker> viewTrackingUris) {
-        VastIconXmlManager iconXmlManager = mock(VastIconXmlManager.class);
+        VastXmlPullParser.Icon iconXmlManager = mock(VastXmlPullParser.Icon.class);
         when(iconXmlManager.getWidth()).thenReturn(width);
         when(iconXmlManager.getHeight()).thenReturn(height);
         when(iconXmlManager.getOffsetMS()).thenReturn(offsetMS);
         when(iconXmlManager.getDurationMS()).thenReturn(durationMS);
 
-        VastResourceXmlManager mockResourceXmlManager = initializeVastResourceXmlManagerMock(
+        VastXmlPullParser.Resource mockResourceXmlManager = initializeVastResourceXmlManagerMock(
                 staticResource,
                 staticResourceType,
                 iFrameResource,
@@ -1846,12 +1888,12 @@ public class VastXmlManagerAggregatorTest {
         return iconXmlManager;
     }
 
-    static VastResourceXmlManager initializeVastResourceXmlManagerMock(
+    static VastXmlPullParser.Resource initializeVastResourceXmlManagerMock(
             final String staticResource,
             final String staticResourceType,
             final String iFrameResource,
             final String htmlResource) {
-        VastResourceXmlManager mockResourceXmlManager = mock(VastResourceXmlManager.class);
+        VastXmlPullParser.Resource mockResourceXmlManager = mock(VastXmlPullParser.Resource.class);
         when(mockResourceXmlManager.getStaticResource()).thenReturn(staticResource);
         when(mockResourceXmlManager.getStaticResourceType()).thenReturn(staticResourceType);
         when(mockResourceXmlManager.getIFrameResource()).thenReturn(iFrameResource);
@@ -0,0 +1,401 @@
+package com.mopub.mobileads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.DeviceUtils.ForceOrientation;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_INVALID_VAST_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_INVALID_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_JUST_ERROR_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_NESTED_NO_COMPANION_VAST_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_NESTED_VAST_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_VAST_BAD_NEST_URL_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_VAST_WITH_NEGATIVE_SEQUENCE_NUMBER_XML_STRING;
+import static com.mopub.mobileads.VastXmlManagerAggregatorTest.TEST_VAST_XML_STRING;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class VastXmlPullParserTest {
+    private static final String TEST_EDGE_CASES_XML_STRING =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<VAST version='3.0'>" +
+            "    <Ad sequence='2'>" +
+            "        <InLine>" +
+            "            <Impression>   </Impression>" +
+            "            <Impression><child/>https://ignoredImpression</Impression>" +
+            "            <Impression>https://impression<child/>ignored</Impression>" +
+            "            <Error></Error>" +
+            "            <Error>https://inLineError</Error>" +
+            "            <Creatives>" +
+            "                <Creative>" +
+            "                    <Linear skipoffset='  25%  '>" +
+            "                        <TrackingEvents>" +
+            "                            <Tracking event='progress' offset=' 00:00:03.000 '>https://progress3s</Tracking>" +
+            "                            <Tracking event='progress' offset='33%'>https://progress33</Tracking>" +
+            "                            <Tracking event='progress' offset='junk'>https://junk</Tracking>" +
+            "                            <Tracking event='progress'>https://noOffset</Tracking>" +
+            "                            <Tracking event='closeLinear'>https://closeLinear</Tracking>" +
+            "                            <Tracking event='close'>https://close</Tracking>" +
+            "                            <Tracking event='skip'>https://skip</Tracking>" +
+            "                            <Tracking event='pause'>https://pause</Tracking>" +
+            "                            <Tracking event='pause'/>" +
+            "                        </TrackingEvents>" +
+            "                        <TrackingEvents>" +
+            "                            <Tracking event='start'>https://secondTrackingEvents</Tracking>" +
+            "                        </TrackingEvents>" +
+            "                        <VideoClicks>" +
+            "                            <ClickThrough>https://clickThrough</ClickThrough>" +
+            "                            <ClickThrough>https://secondClickThrough</ClickThrough>" +
+            "                            <ClickTracking/>" +
+            "                            <ClickTracking>https://clickTracking</ClickTracking>" +
+            "                        </VideoClicks>" +
+            "                        <MediaFiles>" +
+            "                            <MediaFile width='abc' height='250' type='video/mp4'>https://video &amp; more</MediaFile>" +
+            "                        </MediaFiles>" +
+            "                        <Icons>" +
+            "                            <Icon width='40' height='40' offset='00:00:05' duration='bad'>" +
+            "                                <StaticResource creativeType='IMAGE/PNG'>https://icon</StaticResource>" +
+            "                                <IconClicks>" +
+            "                                    <IconClickThrough>https://iconClickThrough</IconClickThrough>" +
+            "                                    <IconClickTracking>https://iconClickTracking</IconClickTracking>" +
+            "                                </IconClicks>" +
+            "                                <IconViewTracking>https://iconView</IconViewTracking>" +
+            "                            </Icon>" +
+            "                        </Icons>" +
+            "                    </Linear>" +
+            "                    <Linear>" +
+            "                        <MediaFiles>" +
+            "                            <MediaFile width='1' height='1' type='video/mp4'>https://ignoredLinear</MediaFile>" +
+            "                        </MediaFiles>" +
+            "                    </Linear>" +
+            "                    <CompanionAds>" +
+            "                        <Companion width='300' height='250' adSlotID='adsBy'>" +
+            "                            <HTMLResource><![CDATA[<div>html</div>]]></HTMLResource>" +
+            "                            <IFrameResource>https://iframe</IFrameResource>" +
+            "                            <CompanionClickTracking></CompanionClickTracking>" +
+            "                            <CompanionClickTracking>https://companionClick</CompanionClickTracking>" +
+            "                            <TrackingEvents>" +
+            "                                <Tracking event='creativeView'>https://companionView</Tracking>" +
+            "                                <Tracking event='start'>https://companionStart</Tracking>" +
+            "                            </TrackingEvents>" +
+            "                        </Companion>" +
+            "                    </CompanionAds>" +
+            "                </Creative>" +
+            "            </Creatives>" +
+            "            <Extensions>" +
+            "                <Extension type='Other'>" +
+            "                    <MoPubViewabilityTracker viewablePlaytime='1' percentViewable='10%'>https://otherExtension</MoPubViewabilityTracker>" +
+            "                </Extension>" +
+            "                <Extension type='MoPub'>" +
+            "                    <MoPubViewabilityTracker viewablePlaytime='2.5' percentViewable='50%'>https://viewability</MoPubViewabilityTracker>" +
+            "                    <MoPubViewabilityTracker viewablePlaytime='3' percentViewable='60%'>https://secondViewability</MoPubViewabilityTracker>" +
+            "                </Extension>" +
+            "                <Extension type='MoPub'>" +
+            "                    <MoPubViewabilityTracker viewablePlaytime='4' percentViewable='70%'>https://secondExtension</MoPubViewabilityTracker>" +
+            "                </Extension>" +
+            "            </Extensions>" +
+            "            <MoPubCtaText>Learn More</MoPubCtaText>" +
+            "        </InLine>" +
+            "    </Ad>" +
+            "    <Ad>" +
+            "        <Wrapper>" +
+            "            <VASTAdTagURI>  https://redirect  </VASTAdTagURI>" +
+            "            <Extensions>" +
+            "                <Extension type='MoPub'>" +
+            "                    <MoPubViewabilityTracker percentViewable='50%'>https://missingPlaytime</MoPubViewabilityTracker>" +
+            "                </Extension>" +
+            "            </Extensions>" +
+            "        </Wrapper>" +
+            "    </Ad>" +
+            "</VAST>" +
+            "<MP_TRACKING_URL>https://mopubImpression</MP_TRACKING_URL>" +
+            "<MoPubSkipText>Skip this ad now</MoPubSkipText>" +
+            "<MoPubSkipText>Skip</MoPubSkipText>" +
+            "<MoPubCloseIcon>https://closeIcon</MoPubCloseIcon>" +
+            "<MoPubForceOrientation>landscape</MoPubForceOrientation>";
+
+    private static final List<String> PARITY_XML_STRINGS = Arrays.asList(
+            TEST_VAST_XML_STRING,
+            TEST_NESTED_VAST_XML_STRING,
+            TEST_NESTED_NO_COMPANION_VAST_XML_STRING,
+            TEST_JUST_ERROR_XML_STRING,
+            TEST_INVALID_VAST_XML_STRING,
+            TEST_VAST_WITH_NEGATIVE_SEQUENCE_NUMBER_XML_STRING,
+            TEST_EDGE_CASES_XML_STRING);
+
+    @Test
+    public void parse_shouldMatchDomXmlManagers() throws Exception {
+        for (final String xml : PARITY_XML_STRINGS) {
+            final VastXmlManager xmlManager = new VastXmlManager();
+            xmlManager.parseVastXml(xml);
+
+            assertDocumentsMatch(VastXmlPullParser.parse(xml), xmlManager);
+        }
+    }
+
+    @Test
+    public void parse_withMalformedXml_shouldThrowXmlPullParserException() throws Exception {
+        for (final String xml : Arrays.asList(TEST_INVALID_XML_STRING,
+                TEST_VAST_BAD_NEST_URL_XML_STRING, "<VAST><Ad>")) {
+            try {
+                VastXmlPullParser.parse(xml);
+                fail("Expected XmlPullParserException for " + xml);
+            } catch (XmlPullParserException e) {
+                // pass
+            }
+        }
+    }
+
+    @Test
+    public void parse_shouldReadTextBeforeFirstChildElement() throws Exception {
+        final VastXmlPullParser.InLineWrapper inLine =
+                VastXmlPullParser.parse(TEST_EDGE_CASES_XML_STRING).getAds().get(0).getInLine();
+
+        assertThat(inLine.getImpressionTrackers()).hasSize(1);
+        assertThat(inLine.getImpressionTrackers().get(0).getTrackingUrl())
+                .isEqualTo("https://impression");
+    }
+
+    @Test
+    public void parse_shouldOnlyReadFirstLinearOfCreative() throws Exception {
+        final VastXmlPullParser.InLineWrapper inLine =
+                VastXmlPullParser.parse(TEST_EDGE_CASES_XML_STRING).getAds().get(0).getInLine();
+
+        assertThat(inLine.getLinears()).hasSize(1);
+        final VastXmlPullParser.Linear linear = inLine.getLinears().get(0);
+        assertThat(linear.getSkipOffset()).isEqualTo("25%");
+        assertThat(linear.getClickThroughUrl()).isEqualTo("https://clickThrough");
+        assertThat(linear.getMediaFiles().get(0).getWidth()).isNull();
+        assertThat(linear.getMediaFiles().get(0).getMediaUrl()).isEqualTo("https://video & more");
+        assertThat(linear.getAbsoluteProgressTrackers()).hasSize(1);
+        assertThat(linear.getAbsoluteProgressTrackers().get(0).getTrackingMilliseconds())
+                .isEqualTo(3000);
+    }
+
+    @Test
+    public void parse_shouldUseViewabilityTrackerOfFirstMoPubExtension() throws Exception {
+        final List<VastXmlPullParser.Ad> ads =
+                VastXmlPullParser.parse(TEST_EDGE_CASES_XML_STRING).getAds();
+
+        final VideoViewabilityTracker tracker =
+                ads.get(0).getInLine().getVideoViewabilityTracker();
+        assertThat(tracker.getTrackingUrl()).isEqualTo("https://viewability");
+        assertThat(tracker.getViewablePlaytimeMS()).isEqualTo(2500);
+        assertThat(tracker.getPercentViewable()).isEqualTo(50);
+        assertThat(ads.get(1).getWrapper().getVideoViewabilityTracker()).isNull();
+        assertThat(ads.get(1).getWrapper().getVastAdTagUri()).isEqualTo("https://redirect");
+    }
+
+    @Test
+    public void parse_shouldReadMoPubElementsAnywhereInDocument() throws Exception {
+        final VastXmlPullParser.Document document =
+                VastXmlPullParser.parse(TEST_EDGE_CASES_XML_STRING);
+
+        assertThat(document.getCustomCtaText()).isEqualTo("Learn More");
+        // The first skip text is too long
+        assertThat(document.getCustomSkipText()).isNull();
+        assertThat(document.getCustomCloseIconUrl()).isEqualTo("https://closeIcon");
+        assertThat(document.getCustomForceOrientation()).isEqualTo(ForceOrientation.FORCE_LANDSCAPE);
+        assertThat(document.getMoPubImpressionTrackers()).hasSize(1);
+        // The first Error element is empty
+        assertThat(document.getErrorTracker().getTrackingUrl()).isEqualTo("https://inLineError");
+    }
+
+    @Test
+    public void parse_withXmlDeclarationAfterFirstLine_shouldSkipIt() throws Exception {
+        final VastXmlPullParser.Document document = VastXmlPullParser.parse(
+                "<VAST>\n<?xml version=\"1.0\"?><Error>https://error</Error></VAST>");
+
+        assertThat(document.getAds()).isEmpty();
+        assertThat(document.getErrorTracker().getTrackingUrl()).isEqualTo("https://error");
+    }
+
+    private static void assertDocumentsMatch(final VastXmlPullParser.Document document,
+            final VastXmlManager xmlManager) {
+        assertTrackersMatch(document.getMoPubImpressionTrackers(),
+                xmlManager.getMoPubImpressionTrackers());
+        assertTrackerMatches(document.getErrorTracker(), xmlManager.getErrorTracker());
+        assertThat(document.getCustomCtaText()).isEqualTo(xmlManager.getCustomCtaText());
+        assertThat(document.getCustomSkipText()).isEqualTo(xmlManager.getCustomSkipText());
+        assertThat(document.getCustomCloseIconUrl()).isEqualTo(xmlManager.getCustomCloseIconUrl());
+        assertThat(document.getCustomForceOrientation())
+                .isEqualTo(xmlManager.getCustomForceOrientation());
+
+        final List<VastAdXmlManager> adXmlManagers = xmlManager.getAdXmlManagers();
+        assertThat(document.getAds()).hasSize(adXmlManagers.size());
+        for (int i = 0; i < adXmlManagers.size(); i++) {
+            final VastXmlPullParser.Ad ad = document.getAds().get(i);
+            final VastAdXmlManager adXmlManager = adXmlManagers.get(i);
+            assertThat(ad.getSequence()).isEqualTo(adXmlManager.getSequence());
+            assertInLineWrappersMatch(ad.getInLine(), adXmlManager.getInLineXmlManager());
+            assertInLineWrappersMatch(ad.getWrapper(), adXmlManager.getWrapperXmlManager());
+            if (adXmlManager.getWrapperXmlManager() != null) {
+                assertThat(ad.getWrapper().getVastAdTagUri())
+                        .isEqualTo(adXmlManager.getWrapperXmlManager().getVastAdTagURI());
+            }
+        }
+    }
+
+    private static void assertInLineWrappersMatch(
+            final VastXmlPullParser.InLineWrapper inLineWrapper,
+            final VastBaseInLineWrapperXmlManager xmlManager) {
+        if (xmlManager == null) {
+            assertThat(inLineWrapper).isNull();
+            return;
+        }
+
+        assertTrackersMatch(inLineWrapper.getImpressionTrackers(),
+                xmlManager.getImpressionTrackers());
+        assertTrackersMatch(inLineWrapper.getErrorTrackers(), xmlManager.getErrorTrackers());
+        assertTrackerMatches(inLineWrapper.getVideoViewabilityTracker(),
+                getMoPubViewabilityTracker(xmlManager));
+
+        final List<VastLinearXmlManager> linearXmlManagers = xmlManager.getLinearXmlManagers();
+        assertThat(inLineWrapper.getLinears()).hasSize(linearXmlManagers.size());
+        for (int i = 0; i < linearXmlManagers.size(); i++) {
+            assertLinearsMatch(inLineWrapper.getLinears().get(i), linearXmlManagers.get(i));
+        }
+
+        final List<VastCompanionAdXmlManager> companionAdXmlManagers =
+                xmlManager.getCompanionAdXmlManagers();
+        assertThat(inLineWrapper.getCompanionAds()).hasSize(companionAdXmlManagers.size());
+        for (int i = 0; i < companionAdXmlManagers.size(); i++) {
+            final VastXmlPullParser.CompanionAd companionAd = inLineWrapper.getCompanionAds().get(i);
+            final VastCompanionAdXmlManager companionAdXmlManager = companionAdXmlManagers.get(i);
+            assertThat(companionAd.getWidth()).isEqualTo(companionAdXmlManager.getWidth());
+            assertThat(companionAd.getHeight()).isEqualTo(companionAdXmlManager.getHeight());
+            assertThat(companionAd.getAdSlotId()).isEqualTo(companionAdXmlManager.getAdSlotId());
+            assertThat(companionAd.getClickThroughUrl())
+                    .isEqualTo(companionAdXmlManager.getClickThroughUrl());
+            assertThat(companionAd.hasResources()).isEqualTo(companionAdXmlManager.hasResources());
+            assertTrackersMatch(companionAd.getClickTrackers(),
+                    companionAdXmlManager.getClickTrackers());
+            assertTrackersMatch(companionAd.getCompanionCreativeViewTrackers(),
+                    companionAdXmlManager.getCompanionCreativeViewTrackers());
+            assertResourcesMatch(companionAd.getResourceXmlManager(),
+                    companionAdXmlManager.getResourceXmlManager());
+        }
+    }
+
+    private static void assertLinearsMatch(final VastXmlPullParser.Linear linear,
+            final VastLinearXmlManager linearXmlManager) {
+        assertThat(linear.getSkipOffset()).isEqualTo(linearXmlManager.getSkipOffset());
+        assertThat(linear.getClickThroughUrl()).isEqualTo(linearXmlManager.getClickThroughUrl());
+        assertTrackersMatch(linear.getClickTrackers(), linearXmlManager.getClickTrackers());
+        assertTrackersMatch(linear.getVideoCompleteTrackers(),
+                linearXmlManager.getVideoCompleteTrackers());
+        assertTrackersMatch(linear.getPauseTrackers(), linearXmlManager.getPauseTrackers());
+        assertTrackersMatch(linear.getResumeTrackers(), linearXmlManager.getResumeTrackers());
+        assertTrackersMatch(linear.getVideoCloseTrackers(),
+                linearXmlManager.getVideoCloseTrackers());
+        assertTrackersMatch(linear.getVideoSkipTrackers(),
+                linearXmlManager.getVideoSkipTrackers());
+
+        final List<VastAbsoluteProgressTracker> absoluteTrackers =
+                linear.getAbsoluteProgressTrackers();
+        final List<VastAbsoluteProgressTracker> expectedAbsoluteTrackers =
+                linearXmlManager.getAbsoluteProgressTrackers();
+        assertTrackersMatch(absoluteTrackers, expectedAbsoluteTrackers);
+        for (int i = 0; i < absoluteTrackers.size(); i++) {
+            assertThat(absoluteTrackers.get(i).getTrackingMilliseconds())
+                    .isEqualTo(expectedAbsoluteTrackers.get(i).getTrackingMilliseconds());
+        }
+
+        final List<VastFractionalProgressTracker> fractionalTrackers =
+                linear.getFractionalProgressTrackers();
+        final List<VastFractionalProgressTracker> expectedFractionalTrackers =
+                linearXmlManager.getFractionalProgressTrackers();
+        assertTrackersMatch(fractionalTrackers, expectedFractionalTrackers);
+        for (int i = 0; i < fractionalTrackers.size(); i++) {
+            assertThat(fractionalTrackers.get(i).trackingFraction())
+                    .isEqualTo(expectedFractionalTrackers.get(i).trackingFraction());
+        }
+
+        final List<VastMediaXmlManager> mediaXmlManagers = linearXmlManager.getMediaXmlManagers();
+        assertThat(linear.getMediaFiles()).hasSize(mediaXmlManagers.size());
+        for (int i = 0; i < mediaXmlManagers.size(); i++) {
+            final VastXmlPullParser.MediaFile mediaFile = linear.getMediaFiles().get(i);
+            assertThat(mediaFile.getWidth()).isEqualTo(mediaXmlManagers.get(i).getWidth());
+            assertThat(mediaFile.getHeight()).isEqualTo(mediaXmlManagers.get(i).getHeight());
+            assertThat(mediaFile.getType()).isEqualTo(mediaXmlManagers.get(i).getType());
+            assertThat(mediaFile.getMediaUrl()).isEqualTo(mediaXmlManagers.get(i).getMediaUrl());
+        }
+
+        final List<VastIconXmlManager> iconXmlManagers = linearXmlManager.getIconXmlManagers();
+        assertThat(linear.getIcons()).hasSize(iconXmlManagers.size());
+        for (int i = 0; i < iconXmlManagers.size(); i++) {
+            final VastXmlPullParser.Icon icon = linear.getIcons().get(i);
+            final VastIconXmlManager iconXmlManager = iconXmlManagers.get(i);
+            assertThat(icon.getWidth()).isEqualTo(iconXmlManager.getWidth());
+            assertThat(icon.getHeight()).isEqualTo(iconXmlManager.getHeight());
+            assertThat(icon.getOffsetMS()).isEqualTo(iconXmlManager.getOffsetMS());
+            assertThat(icon.getDurationMS()).isEqualTo(iconXmlManager.getDurationMS());
+            assertThat(icon.getClickThroughUri()).isEqualTo(iconXmlManager.getClickThroughUri());
+            assertTrackersMatch(icon.getClickTrackingUris(),
+                    iconXmlManager.getClickTrackingUris());
+            assertTrackersMatch(icon.getViewTrackingUris(), iconXmlManager.getViewTrackingUris());
+            assertResourcesMatch(icon.getResourceXmlManager(),
+                    iconXmlManager.getResourceXmlManager());
+        }
+    }
+
+    private static void assertResourcesMatch(final VastXmlPullParser.Resource resource,
+            final VastResourceXmlManager expected) {
+        assertThat(resource.getStaticResource()).isEqualTo(expected.getStaticResource());
+        assertThat(resource.getStaticResourceType()).isEqualTo(expected.getStaticResourceType());
+        assertThat(resource.getIFrameResource()).isEqualTo(expected.getIFrameResource());
+        assertThat(resource.getHTMLResource()).isEqualTo(expected.getHTMLResource());
+    }
+
+    private static VideoViewabilityTracker getMoPubViewabilityTracker(
+            final VastBaseInLineWrapperXmlManager xmlManager) {
+        final VastExtensionParentXmlManager extensionParentXmlManager =
+                xmlManager.getVastExtensionParentXmlManager();
+        if (extensionParentXmlManager == null) {
+            return null;
+        }
+        for (final VastExtensionXmlManager extensionXmlManager :
+                extensionParentXmlManager.getVastExtensionXmlManagers()) {
+            if ("MoPub".equals(extensionXmlManager.getType())) {
+                return extensionXmlManager.getVideoViewabilityTracker();
+            }
+        }
+        return null;
+    }
+
+    private static void assertTrackersMatch(final List<? extends VastTracker> trackers,
+            final List<? extends VastTracker> expected) {
+        assertThat(trackers).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrackerMatches(trackers.get(i), expected.get(i));
+        }
+    }
+
+    private static void assertTrackerMatches(final VastTracker tracker,
+            final VastTracker expected) {
+        if (expected == null) {
+            assertThat(tracker).isNull();
+            return;
+        }
+        assertThat(tracker.getTrackingUrl()).isEqualTo(expected.getTrackingUrl());
+        assertThat(tracker.isRepeatable()).isEqualTo(expected.isRepeatable());
+        if (expected instanceof VideoViewabilityTracker) {
+            final VideoViewabilityTracker viewabilityTracker = (VideoViewabilityTracker) tracker;
+            final VideoViewabilityTracker expectedViewabilityTracker =
+                    (VideoViewabilityTracker) expected;
+            assertThat(viewabilityTracker.getViewablePlaytimeMS())
+                    .isEqualTo(expectedViewabilityTracker.getViewablePlaytimeMS());
+            assertThat(viewabilityTracker.getPercentViewable())
+                    .isEqualTo(expectedViewabilityTracker.getPercentViewable());
+        }
+    }
+}
@@ -4,6 +4,8 @@ import android.app.Activity;
 import android.content.Context;
 
 import com.mopub.common.CacheService;
+import com.mopub.common.ClientMetadata;
+import com.mopub.common.ClientMetadata.MoPubNetworkType;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.common.util.test.support.ShadowAsyncTasks;
 import com.mopub.common.util.test.support.ShadowMoPubHttpUrlConnection;
@@ -20,12 +22,18 @@ import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 
 import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(SdkTestRunner.class)
 @Config(constants = BuildConfig.class, shadows = {ShadowAsyncTasks.class, ShadowMoPubHttpUrlConnection.class})
@@ -211,6 +219,51 @@ public class VideoDownloaderTest {
         assertThat(CacheService.getDiskLruCache().size()).isEqualTo(0);
     }
 
+    @Test
+    public void doInBackground_withPausedDownload_shouldResumeWhenNetworkChanges() throws Exception {
+        final ClientMetadata clientMetadata = mock(ClientMetadata.class);
+        when(clientMetadata.getActiveNetworkType())
+                .thenReturn(MoPubNetworkType.MOBILE, MoPubNetworkType.WIFI);
+        ClientMetadata.setInstance(clientMetadata);
+        final Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("Content-Range", Collections.singletonList("bytes 0-7/8"));
+        ShadowMoPubHttpUrlConnection.addPendingResponse(206, "01234567", headers);
+        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener, 0);
+
+        final Boolean result = videoDownloaderTask.doInBackground(expectedUrl1);
+
+        assertThat(result).isTrue();
+        assertThat(CacheService.getFromDiskCache(expectedUrl1)).isEqualTo("01234567".getBytes());
+    }
+
+    @Test
+    public void doInBackground_withDownloadPausedPastMaxResumeAttempts_shouldReturnFalse()
+            throws Exception {
+        final ClientMetadata clientMetadata = mock(ClientMetadata.class);
+        when(clientMetadata.getActiveNetworkType()).thenReturn(MoPubNetworkType.MOBILE);
+        ClientMetadata.setInstance(clientMetadata);
+        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener, 0);
+
+        final Boolean result = videoDownloaderTask.doInBackground(expectedUrl1);
+
+        assertThat(result).isFalse();
+        verify(clientMetadata, times(VideoDownloader.MAX_RESUME_ATTEMPTS + 1))
+                .getActiveNetworkType();
+    }
+
+    @Test
+    public void cancel_shouldCancelTaskWithListener_shouldRemoveItFromStaticCollection() {
+        final VideoDownloaderListener otherListener = mock(VideoDownloaderListener.class);
+        final VideoDownloaderTask task = new VideoDownloaderTask(mockListener);
+        final VideoDownloaderTask otherTask = new VideoDownloaderTask(otherListener);
+
+        VideoDownloader.cancel(mockListener);
+
+        assertThat(task.isCancelled()).isTrue();
+        assertThat(otherTask.isCancelled()).isFalse();
+        assertThat(VideoDownloader.getDownloaderTasks()).hasSize(1);
+    }
+
     @Test
     public void onPostExecute_withSuccessTrue_shouldCallOnCompleteTrue_shouldRemoveDownloadTaskFromQueue() {
         VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
@@ -255,6 +308,43 @@ public class VideoDownloaderTest {
         assertThat(VideoDownloader.getDownloaderTasks()).hasSize(0);
     }
 
+    @Test
+    public void doInBackground_withSameUrlDownloading_shouldWaitForIt_shouldUseCachedVideo()
+            throws Exception {
+        ShadowMoPubHttpUrlConnection.addPendingResponse(404, "not found");
+        final VideoDownloaderTask videoDownloaderTask = new VideoDownloaderTask(mockListener);
+        final Boolean[] result = new Boolean[1];
+        VideoDownloader.startDownloading(expectedUrl1);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = videoDownloaderTask.doInBackground(expectedUrl1);
+            }
+        });
+        thread.start();
+
+        thread.join(100);
+        assertThat(thread.isAlive()).isTrue();
+
+        CacheService.putToDiskCache(expectedUrl1, "response".getBytes());
+        VideoDownloader.finishDownloading(expectedUrl1);
+        thread.join(1000);
+
+        assertThat(thread.isAlive()).isFalse();
+        assertThat(result[0]).isTrue();
+        // The waiting task doesn't download the video again
+        assertThat(ShadowMoPubHttpUrlConnection.getPendingUrlConnections()).hasSize(1);
+    }
+
+    @Test
+    public void startDownloading_withOtherUrlDownloading_shouldNotWait() throws Exception {
+        assertThat(VideoDownloader.startDownloading(expectedUrl1)).isFalse();
+        assertThat(VideoDownloader.startDownloading(expectedUrl2)).isFalse();
+
+        VideoDownloader.finishDownloading(expectedUrl1);
+        VideoDownloader.finishDownloading(expectedUrl2);
+    }
+
     private static String createLongString(int size) {
         return new String(new char[size]).replace("\0", "*");
     }
@@ -2,6 +2,7 @@ package com.mopub.mobileads;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.Intent;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Point;
@@ -25,6 +26,7 @@ import com.mopub.common.MoPub;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.common.util.Reflection.MethodBuilder;
 import com.mopub.common.util.Utils;
+import com.mopub.common.util.test.support.TestDateAndTime;
 import com.mopub.common.util.test.support.TestMethodBuilderFactory;
 import com.mopub.mobileads.test.support.MoPubShadowTelephonyManager;
 import com.mopub.mraid.MraidNativeCommandHandler;
@@ -44,6 +46,8 @@ import org.robolectric.shadows.ShadowConnectivityManager;
 import org.robolectric.shadows.ShadowLocationManager;
 import org.robolectric.shadows.ShadowNetworkInfo;
 
+import java.util.TimeZone;
+
 import static android.Manifest.permission.ACCESS_COARSE_LOCATION;
 import static android.Manifest.permission.ACCESS_FINE_LOCATION;
 import static android.Manifest.permission.ACCESS_NETWORK_STATE;
@@ -199,11 +203,34 @@ public class WebViewAdUrlGeneratorTest {
         configuration.orientation = Configuration.ORIENTATION_LANDSCAPE;
         assertThat(generateMinimumUrlString()).contains("&o=l");
         configuration.orientation = Configuration.ORIENTATION_PORTRAIT;
+        sendBroadcast(Intent.ACTION_CONFIGURATION_CHANGED);
         assertThat(generateMinimumUrlString()).contains("&o=p");
         configuration.orientation = Configuration.ORIENTATION_SQUARE;
+        sendBroadcast(Intent.ACTION_CONFIGURATION_CHANGED);
         assertThat(generateMinimumUrlString()).contains("&o=s");
     }
 
+    @Test
+    public void generateAdUrl_withoutClientMetadataChange_shouldReuseEncodedParams() throws Exception {
+        configuration.orientation = Configuration.ORIENTATION_LANDSCAPE;
+        assertThat(generateMinimumUrlString()).contains("&o=l");
+
+        configuration.orientation = Configuration.ORIENTATION_PORTRAIT;
+        final String adUrl = new WebViewAdUrlGenerator(context, false)
+                .withAdUnitId("otherAdUnitId")
+                .generateUrlString("ads.mopub.com");
+
+        assertThat(adUrl).contains("&o=l");
+        assertThat(adUrl).contains("?v=6&id=otherAdUnitId&nv=");
+    }
+
+    @Test
+    public void generateAdUrl_withTimeZoneOffsetInMinutes_shouldFormatOffset() throws Exception {
+        TestDateAndTime.getInstance().setTimeZone(TimeZone.getTimeZone("GMT+05:30"));
+
+        assertThat(generateMinimumUrlString()).contains("&z=%2B0530&");
+    }
+
     @Test
     public void generateAdUrl_shouldHandleFunkyNetworkOperatorCodes() throws Exception {
         AdUrlBuilder urlBuilder = new AdUrlBuilder(expectedUdid);
@@ -296,35 +323,43 @@ public class WebViewAdUrlGeneratorTest {
         String adUrl;
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_DUMMY));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.UNKNOWN).build());
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_ETHERNET));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.ETHERNET).build());
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_WIFI));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.WIFI).build());
 
         // bunch of random mobile types just to make life more interesting
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_MOBILE));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.MOBILE).build());
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_MOBILE_DUN));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.MOBILE).build());
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_MOBILE_HIPRI));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.MOBILE).build());
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_MOBILE_MMS));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.MOBILE).build());
 
         shadowConnectivityManager.setActiveNetworkInfo(createNetworkInfo(TYPE_MOBILE_SUPL));
+        sendBroadcast(ConnectivityManager.CONNECTIVITY_ACTION);
         adUrl = generateMinimumUrlString();
         assertThat(adUrl).isEqualTo(urlBuilder.withNetworkType(MoPubNetworkType.MOBILE).build());
     }
@@ -684,6 +719,11 @@ public class WebViewAdUrlGeneratorTest {
                 NETWORK_TYPE_UNKNOWN, true, true);
     }
 
+    private void sendBroadcast(String action) {
+        // ClientMetadata listens for these to know when to encode the params again
+        RuntimeEnvironment.application.sendBroadcast(new Intent(action));
+    }
+
     private String generateMinimumUrlString() {
         return subject.generateUrlString("ads.mopub.com");
     }
@@ -0,0 +1,113 @@
+package com.mopub.mobileads;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
+import com.mopub.common.test.support.SdkTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class WebViewPoolTest {
+    private Context context;
+    private List<BaseWebView> createdWebViews;
+    private WebViewPool.Factory<BaseWebView> factory;
+    private WebViewPool subject;
+
+    @Before
+    public void setUp() {
+        context = Robolectric.buildActivity(Activity.class).create().get();
+        createdWebViews = new ArrayList<BaseWebView>();
+        factory = new WebViewPool.Factory<BaseWebView>() {
+            @Override
+            public BaseWebView create(final Context context) {
+                final BaseWebView webView = new BaseWebView(context);
+                createdWebViews.add(webView);
+                return webView;
+            }
+        };
+        subject = new WebViewPool(context);
+    }
+
+    @Test
+    public void obtain_withEmptyPool_shouldCreateWebView_shouldCountMiss() {
+        final BaseWebView webView = subject.obtain(BaseWebView.class, factory);
+
+        assertThat(createdWebViews).containsExactly(webView);
+        assertThat(subject.getStats().getMissCount()).isEqualTo(1);
+        assertThat(subject.getStats().getHitCount()).isEqualTo(0);
+        assertThat(subject.getStats().getConstructionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void obtain_afterWarmUp_shouldReturnPooledWebView_shouldCountHit() {
+        subject.obtain(BaseWebView.class, factory);
+        assertThat(subject.warmUp()).isTrue();
+        final BaseWebView pooledWebView = createdWebViews.get(1);
+
+        final BaseWebView webView = subject.obtain(BaseWebView.class, factory);
+
+        assertThat(webView).isSameAs(pooledWebView);
+        assertThat(createdWebViews).hasSize(2);
+        assertThat(subject.getStats().getHitCount()).isEqualTo(1);
+        assertThat(subject.getStats().getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void warmUp_shouldNotGrowPastMaxIdlePerType() {
+        subject.obtain(BaseWebView.class, factory);
+
+        for (int i = 0; i < WebViewPool.MAX_IDLE_PER_TYPE; i++) {
+            assertThat(subject.warmUp()).isTrue();
+        }
+        assertThat(subject.warmUp()).isFalse();
+
+        assertThat(subject.getIdleCount(BaseWebView.class))
+                .isEqualTo(WebViewPool.MAX_IDLE_PER_TYPE);
+    }
+
+    @Test
+    public void warmUp_beforeAnyObtain_shouldNotCreateWebViews() {
+        assertThat(subject.warmUp()).isFalse();
+
+        assertThat(createdWebViews).isEmpty();
+    }
+
+    @Test
+    public void obtain_shouldNeverReturnSameWebViewTwice() {
+        final BaseWebView first = subject.obtain(BaseWebView.class, factory);
+        subject.warmUp();
+        final BaseWebView second = subject.obtain(BaseWebView.class, factory);
+        subject.warmUp();
+        final BaseWebView third = subject.obtain(BaseWebView.class, factory);
+
+        assertThat(first).isNotSameAs(second);
+        assertThat(second).isNotSameAs(third);
+        assertThat(first).isNotSameAs(third);
+    }
+
+    @Test
+    public void onTrimMemory_shouldDestroyIdleWebViews() {
+        subject.obtain(BaseWebView.class, factory);
+        subject.warmUp();
+        final BaseWebView pooledWebView = createdWebViews.get(1);
+
+        ((Application) context.getApplicationContext())
+                .onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertThat(pooledWebView.mIsDestroyed).isTrue();
+        assertThat(subject.getIdleCount(BaseWebView.class)).isEqualTo(0);
+    }
+}
@@ -5,6 +5,7 @@ import android.content.Intent;
 
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
+import com.mopub.mobileads.HtmlPayloadRegistry;
 import com.mopub.mobileads.ResponseBodyInterstitialTest;
 
 import org.junit.Before;
@@ -112,7 +113,9 @@ public class MraidInterstitialTest extends ResponseBodyInterstitialTest {
 
         assertThat(intent.getComponent().getClassName())
                 .isEqualTo("com.mopub.mobileads.MraidActivity");
-        assertThat(intent.getExtras().get(HTML_RESPONSE_BODY_KEY)).isEqualTo(EXPECTED_HTML_DATA);
+        assertThat(intent.hasExtra(HTML_RESPONSE_BODY_KEY)).isFalse();
+        assertThat(HtmlPayloadRegistry.get(broadcastIdentifier))
+                .isEqualTo(EXPECTED_HTML_DATA);
         assertThat(intent.getFlags() & Intent.FLAG_ACTIVITY_NEW_TASK).isNotEqualTo(0);
     }
 
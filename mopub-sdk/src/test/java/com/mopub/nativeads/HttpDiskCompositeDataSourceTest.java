@@ -6,11 +6,9 @@ import android.net.Uri;
 
 import com.google.android.exoplayer.upstream.DataSpec;
 import com.google.android.exoplayer.upstream.HttpDataSource;
-import com.mopub.common.CacheService;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
 
-import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,6 +18,8 @@ import org.mockito.stubbing.Answer;
 import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.TreeSet;
@@ -40,6 +40,7 @@ public class HttpDiskCompositeDataSourceTest {
 
     private static final int BASE_SEED = 1234567890;
     @Mock HttpDataSource mockHttpDataSource;
+    private Context context;
     private HttpDiskCompositeDataSource subject;
     private DataSpec dataSpec;
     private Uri uri;
@@ -47,18 +48,12 @@ public class HttpDiskCompositeDataSourceTest {
 
     @Before
     public void setUp() throws Exception {
-        Context context = Robolectric.buildActivity(Activity.class).create().get();
-        CacheService.initialize(context);
+        context = Robolectric.buildActivity(Activity.class).create().get();
         subject = new HttpDiskCompositeDataSource(context, "userAgent", null, mockHttpDataSource);
         uri = new Uri.Builder().scheme("https").path("www.someurl").build();
         dataSpec = new DataSpec(uri, 0, -1, null);
     }
 
-    @After
-    public void tearDown() throws Exception {
-        CacheService.clearAndNullCaches();
-    }
-
     @Test
     public void open_withNullDataSpecUri_shouldReturnLengthUnbounded() throws Exception {
         DataSpec dataSpecWithNullUri = new DataSpec(null);
@@ -85,14 +80,7 @@ public class HttpDiskCompositeDataSourceTest {
         // When the entire file is cached, there's no need to open the network.
         when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn(100000L);
         byte[] data = generateRandomByteArray(100000, 0);
-        byte[] expectedFileSize = "100000".getBytes();
-        byte[] intervals = "[\"{start : 0, length : 100000}\"]".getBytes();
-        CacheService.putToDiskCache("0" + uri.toString(), data);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString(),
-                expectedFileSize);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString(), intervals);
+        putToStore(100000, data, 0, new IntInterval(0, 100000));
 
         long result = subject.open(dataSpec);
 
@@ -106,14 +94,7 @@ public class HttpDiskCompositeDataSourceTest {
         // the network for byte 33333 and onward.
         when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn(100000L);
         byte[] data = generateRandomByteArray(100000, 0);
-        byte[] expectedFileSize = "100000".getBytes();
-        byte[] intervals = "[\"{start : 0, length : 33333}\"]".getBytes();
-        CacheService.putToDiskCache("0" + uri.toString(), data);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString(),
-                expectedFileSize);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString(), intervals);
+        putToStore(100000, data, 0, new IntInterval(0, 33333));
 
         long result = subject.open(dataSpec);
 
@@ -123,20 +104,30 @@ public class HttpDiskCompositeDataSourceTest {
         verify(mockHttpDataSource).open(refEq(expectedDataSpec));
     }
 
+    @Test
+    public void open_withDeletedDataFile_shouldInvalidateCache_shouldOpenHttpDataSourceAtStartPoint() throws Exception {
+        when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn(100000L);
+        byte[] data = generateRandomByteArray(100000, 0);
+        putToStore(100000, data, 0, new IntInterval(0, 33333));
+        final File directory = VideoSegmentStore.getDirectory(context);
+        for (final File file : directory.listFiles()) {
+            if (file.getName().endsWith(VideoSegmentStore.DATA_EXTENSION)) {
+                assertThat(file.delete()).isTrue();
+            }
+        }
+
+        subject.open(dataSpec);
+
+        verify(mockHttpDataSource).open(refEq(dataSpec));
+    }
+
     @Test
     public void read_with2048ExpectedBytes_shouldFillBufferWith2048Bytes_shouldReturnNumberOfBytesRead2048() throws Exception {
         // This is the case where we're reading from a cache that has all the necessary bytes
         byte[] data = generateRandomByteArray(100000, 0);
-        byte[] expectedFileSize = "100000".getBytes();
-        byte[] intervals = "[\"{start : 0, length : 100000}\"]".getBytes();
         // Pretend we have all the bytes in the cache, complete with the expected file size and
         // a valid intervals set.
-        CacheService.putToDiskCache("0" + uri.toString(), data);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString(),
-                expectedFileSize);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString(), intervals);
+        putToStore(100000, data, 0, new IntInterval(0, 100000));
         byte[] readBuffer = new byte[2048];
 
         subject.open(dataSpec);
@@ -151,25 +142,15 @@ public class HttpDiskCompositeDataSourceTest {
     }
 
     @Test
-    public void read_withAllDataCached_whenReadingAcrossSegmentBoundaries_shouldReturnAllBytes() throws Exception {
+    public void read_withAllDataCached_whenReadingAcrossWindowBoundaries_shouldReturnAllBytes() throws Exception {
         // This is the case where we're reading from a cache that has all the necessary bytes, but
-        // some of it is in the next block. We need to finish reading from the current block, set
-        // up reading from the next block, and then do it.
-        byte[] data1 = generateRandomByteArray(HttpDiskCompositeDataSource.BLOCK_SIZE, 0);
-        byte[] data2 = generateRandomByteArray(HttpDiskCompositeDataSource.BLOCK_SIZE, 1);
-        String expectedFileLengthString = String.valueOf(
-                2 * HttpDiskCompositeDataSource.BLOCK_SIZE);
-        byte[] intervals = ("[\"{start : 0, length : " + expectedFileLengthString + "}\"]").getBytes();
-        CacheService.putToDiskCache("0" + uri.toString(), data1);
-        CacheService.putToDiskCache("1" + uri.toString(), data2);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString(),
-                expectedFileLengthString.getBytes());
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString(), intervals);
-        // Expect to read the last 1337 bytes from the first block and the rest from the second block
+        // some of it is in the next mapped window of the store.
+        final int fileLength = 2 * VideoSegmentStore.WINDOW_SIZE;
+        byte[] data = generateRandomByteArray(fileLength, 0);
+        putToStore(fileLength, data, 0, new IntInterval(0, fileLength));
+        // Expect to read the last 1337 bytes from the first window and the rest from the second
         DataSpec modifiedDataSpec = new DataSpec(dataSpec.uri,
-                HttpDiskCompositeDataSource.BLOCK_SIZE - 1337, -1, null);
+                VideoSegmentStore.WINDOW_SIZE - 1337, -1, null);
         byte[] readBuffer = new byte[4096];
 
         subject.open(modifiedDataSpec);
@@ -177,9 +158,7 @@ public class HttpDiskCompositeDataSourceTest {
 
         assertThat(bytesRead).isEqualTo(4096);
         byte[] expectedBytes = new byte[4096];
-        System.arraycopy(data1, HttpDiskCompositeDataSource.BLOCK_SIZE - 1337, expectedBytes, 0,
-                1337);
-        System.arraycopy(data2, 0, expectedBytes, 1337, 4096 - 1337);
+        System.arraycopy(data, VideoSegmentStore.WINDOW_SIZE - 1337, expectedBytes, 0, 4096);
         assertThat(readBuffer).isEqualTo(expectedBytes);
         verifyZeroInteractions(mockHttpDataSource);
     }
@@ -210,17 +189,8 @@ public class HttpDiskCompositeDataSourceTest {
         when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn(100000L);
         setUpMockHttpDataSourceToReturnBytesFromNetwork(bytesFromNetwork, mockHttpDataSource);
         byte[] data = generateRandomByteArray(2048, 1);
-        byte[] segment0 = new byte[HttpDiskCompositeDataSource.BLOCK_SIZE];
-        byte[] expectedFileSize = "100000".getBytes();
-        byte[] intervals = ("[\"{start : 0, length : 2048}\"]").getBytes();
         // So we have the first 2048 bytes in the cache
-        System.arraycopy(data, 0, segment0, 0, 2048);
-        CacheService.putToDiskCache("0" + uri.toString(), segment0);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString(),
-                expectedFileSize);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString(), intervals);
+        putToStore(100000, data, 0, new IntInterval(0, 2048));
         // However, we want to read 4096 bytes (We have to go to the network for the rest).
         byte[] readBuffer = new byte[4096];
 
@@ -242,67 +212,58 @@ public class HttpDiskCompositeDataSourceTest {
     }
 
     @Test
-    public void read_withSomeDataInCacheBeforeBlockBoundary_whenApproachingBlockBoundary_shouldReadBytesFromDisk_shouldReadBytesFromNetwork_shouldSetUpNextBlock() throws Exception {
-        // This is the situation where the cache ends 1024 bytes before the second block boundary.
-        // We need to read the first 1024 bytes from the cache, read the next 3072 bytes, store
-        // the first 1024 bytes in the current block, close it out, flush it, set up the next block,
-        // and store the next 2048 bytes into that block.
+    public void read_withSomeDataInCacheBeforeWindowBoundary_whenCrossingWindowBoundary_shouldReadBytesFromDisk_shouldReadBytesFromNetwork_shouldStoreBytesFromNetwork() throws Exception {
+        // This is the situation where the cache ends 1024 bytes before the second window boundary.
+        // We need to read the first 1024 bytes from the cache, read the next 3072 bytes from the
+        // network, and store them across the end of the second window and into the third.
+        final int windowSize = VideoSegmentStore.WINDOW_SIZE;
         final byte[] bytesFromNetwork = generateRandomByteArray(3072, 0);
-        when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn(
-                (long) (HttpDiskCompositeDataSource.BLOCK_SIZE * 4));
+        when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn((long) (windowSize * 4));
         setUpMockHttpDataSourceToReturnBytesFromNetwork(bytesFromNetwork, mockHttpDataSource);
-        byte[] data = generateRandomByteArray(HttpDiskCompositeDataSource.BLOCK_SIZE, 1);
-        byte[] expectedFileSize = String.valueOf(
-                HttpDiskCompositeDataSource.BLOCK_SIZE * 4).getBytes();
+        byte[] data = generateRandomByteArray(windowSize, 1);
         // Typical access patterns of video is to request for the first 44 bytes, the last 3886
         // bytes, and then start at byte 44 and request till the end of the video. We are pretending
-        // that we did that, and stopped 1024 bytes before the end of the 2nd block.
-        byte[] intervals = ("[\"{start : 0, length : 44}\", \"{start : " +
-                (HttpDiskCompositeDataSource.BLOCK_SIZE * 4 - 3886) +
-                ", length : 3886}\", \"{start : 44, length : " +
-                (HttpDiskCompositeDataSource.BLOCK_SIZE * 2 - 1024 - 44) + "}\"]")
-                .getBytes();
-        CacheService.putToDiskCache("1" + uri.toString(), data);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString(),
-                expectedFileSize);
-        CacheService.putToDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString(), intervals);
+        // that we did that, and stopped 1024 bytes before the end of the 2nd window.
+        putToStore(windowSize * 4, data, windowSize,
+                new IntInterval(0, 44),
+                new IntInterval(windowSize * 4 - 3886, 3886),
+                new IntInterval(44, windowSize * 2 - 1024 - 44));
         byte[] readBuffer = new byte[4096];
-        dataSpec = new DataSpec(dataSpec.uri, 2 * HttpDiskCompositeDataSource.BLOCK_SIZE - 2048, -1,
+        dataSpec = new DataSpec(dataSpec.uri, 2 * windowSize - 2048, -1,
                 dataSpec.key, dataSpec.flags);
 
         subject.open(dataSpec);
         int bytesRead = subject.read(readBuffer, 0, 4096);
+        subject.close();
 
         assertThat(bytesRead).isEqualTo(4096);
         byte[] expectedBytes = new byte[4096];
-        System.arraycopy(data, HttpDiskCompositeDataSource.BLOCK_SIZE - 2048, expectedBytes, 0,
-                1024);
+        System.arraycopy(data, windowSize - 2048, expectedBytes, 0, 1024);
         System.arraycopy(bytesFromNetwork, 0, expectedBytes, 1024, 3072);
         assertThat(readBuffer).isEqualTo(expectedBytes);
-        DataSpec modifiedDataSpec = new DataSpec(dataSpec.uri,
-                2 * HttpDiskCompositeDataSource.BLOCK_SIZE - 1024, -1, null);
+        DataSpec modifiedDataSpec = new DataSpec(dataSpec.uri, 2 * windowSize - 1024, -1, null);
         verify(mockHttpDataSource).open(refEq(modifiedDataSpec));
         verify(mockHttpDataSource).read(any(byte[].class), eq(1024), eq(3072));
-        // Also verify that the 2nd block was written to disk correctly.
-        byte[] expectedBlock = new byte[HttpDiskCompositeDataSource.BLOCK_SIZE];
-        System.arraycopy(data, 0, expectedBlock, 0, HttpDiskCompositeDataSource.BLOCK_SIZE - 1024);
-        System.arraycopy(bytesFromNetwork, 0, expectedBlock,
-                HttpDiskCompositeDataSource.BLOCK_SIZE - 1024, 1024);
-        assertThat(CacheService.getFromDiskCache("1" + uri.toString())).isEqualTo(
-                expectedBlock);
+        // Also verify that the bytes from the network were written to disk correctly.
+        assertThat(readFromStore(2 * windowSize - 2048, 4096)).isEqualTo(expectedBytes);
+        assertThat(readIntervalsFromStore()).contains(new IntInterval(2 * windowSize - 2048, 4096));
+    }
+
+    @Test
+    public void read_whenNetworkReachesEndOfInput_shouldReturnEndOfInput() throws Exception {
+        when(mockHttpDataSource.open(any(DataSpec.class))).thenReturn(100000L);
+        when(mockHttpDataSource.read(any(byte[].class), anyInt(), anyInt())).thenReturn(-1);
+
+        subject.open(dataSpec);
+
+        assertThat(subject.read(new byte[2048], 0, 2048)).isEqualTo(-1);
     }
 
     @Test
     public void close_withoutFirstCallingOpen_shouldNotWriteToDisk() throws Exception {
         subject.close();
 
-        assertThat(CacheService.containsKeyDiskCache("0" + uri.toString())).isFalse();
-        assertThat(CacheService.containsKeyDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString())).isFalse();
-        assertThat(CacheService.containsKeyDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString())).isFalse();
+        assertThat(VideoSegmentStore.getDirectory(context).exists()).isFalse();
     }
 
     @Test
@@ -318,15 +279,11 @@ public class HttpDiskCompositeDataSourceTest {
         subject.close();
 
         assertThat(readBuffer).isEqualTo(bytesFromNetwork);
-        byte[] expectedBlock = new byte[HttpDiskCompositeDataSource.BLOCK_SIZE];
-        System.arraycopy(bytesFromNetwork, 0, expectedBlock, 0, 1000);
-        assertThat(CacheService.getFromDiskCache("0" + uri.toString())).isEqualTo(expectedBlock);
-        assertThat(CacheService.getFromDiskCache(
-                HttpDiskCompositeDataSource.EXPECTED_FILE_SIZE_KEY_PREFIX + uri.toString())).isEqualTo(
-                "5000".getBytes());
-        assertThat(CacheService.getFromDiskCache(
-                HttpDiskCompositeDataSource.INTERVALS_KEY_PREFIX + uri.toString())).isEqualTo(
-                "[\"{start : 0, length : 1000}\"]".getBytes());
+        assertThat(readFromStore(0, 1000)).isEqualTo(bytesFromNetwork);
+        final VideoSegmentStore store = openStore();
+        assertThat(store.getExpectedLength()).isEqualTo(5000);
+        store.close();
+        assertThat(readIntervalsFromStore()).containsExactly(new IntInterval(0, 1000));
     }
 
     @Test
@@ -452,6 +409,43 @@ public class HttpDiskCompositeDataSourceTest {
         assertThat(result).isEqualTo(4501);
     }
 
+    private VideoSegmentStore openStore() throws IOException {
+        return VideoSegmentStore.open(VideoSegmentStore.getDirectory(context), uri.toString());
+    }
+
+    /**
+     * Stores data for the uri as if it had been downloaded earlier.
+     *
+     * @param expectedFileLength The length of the whole video
+     * @param data               The bytes to store
+     * @param position           Where in the video the bytes belong
+     * @param intervals          The intervals of the video that are valid
+     */
+    private void putToStore(final int expectedFileLength, final byte[] data, final int position,
+            final IntInterval... intervals) throws IOException {
+        final VideoSegmentStore store = openStore();
+        store.setExpectedLength(expectedFileLength);
+        store.write(position, data, 0, data.length);
+        store.writeIndex(new TreeSet<IntInterval>(Arrays.asList(intervals)));
+        store.close();
+    }
+
+    private byte[] readFromStore(final int position, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        final VideoSegmentStore store = openStore();
+        store.read(position, bytes, 0, length);
+        store.close();
+        return bytes;
+    }
+
+    private TreeSet<IntInterval> readIntervalsFromStore() throws IOException {
+        final TreeSet<IntInterval> intervals = new TreeSet<IntInterval>();
+        final VideoSegmentStore store = openStore();
+        store.readIntervals(intervals);
+        store.close();
+        return intervals;
+    }
+
     /**
      * Creates a byte array and fills it with random data. Use the seed offset to generate
      * subsequent random byte arrays that are not the same random byte array.
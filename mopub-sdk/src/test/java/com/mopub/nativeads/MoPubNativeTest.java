@@ -1,14 +1,22 @@
 package com.mopub.nativeads;
 
 import android.app.Activity;
+import android.content.Context;
 
+import com.mopub.common.event.BaseEvent;
+import com.mopub.common.event.EventDispatcher;
+import com.mopub.common.event.MoPubEvents;
 import com.mopub.common.logging.MoPubLog;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.common.util.test.support.ShadowAsyncTasks;
 import com.mopub.common.util.test.support.TestMethodBuilderFactory;
 import com.mopub.mobileads.BuildConfig;
 import com.mopub.mobileads.MoPubErrorCode;
+import com.mopub.nativeads.CustomEventNative.CustomEventNativeListener;
 import com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
+import com.mopub.nativeads.test.support.TestCustomEventNativeFactory;
+import com.mopub.network.AdRequest;
+import com.mopub.network.AdResponse;
 import com.mopub.network.MoPubNetworkError;
 import com.mopub.network.MoPubRequestQueue;
 import com.mopub.network.Networking;
@@ -20,6 +28,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -39,10 +48,15 @@ import static com.mopub.common.util.Reflection.MethodBuilder;
 import static com.mopub.nativeads.MoPubNative.EMPTY_NETWORK_LISTENER;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -58,6 +72,10 @@ public class MoPubNativeTest {
     @Mock private MoPubRequestQueue mockRequestQueue;
     @Mock private AdRendererRegistry mockAdRendererRegistry;
     @Mock private MoPubStaticNativeAdRenderer mockRenderer;
+    @Mock private BaseNativeAd mockBaseNativeAd;
+    @Mock private EventDispatcher mockEventDispatcher;
+    private CustomEventNative mockCustomEventNative;
+    private AdResponse testAdResponse;
 
     @Before
     public void setup() {
@@ -67,11 +85,21 @@ public class MoPubNativeTest {
         subject = new MoPubNative(context, adUnitId, mockAdRendererRegistry, mockNetworkListener);
         methodBuilder = TestMethodBuilderFactory.getSingletonMock();
         Networking.setRequestQueueForTesting(mockRequestQueue);
+
+        mockCustomEventNative = TestCustomEventNativeFactory.getSingletonMock();
+        testAdResponse = new AdResponse.Builder()
+                .setCustomEventClassName("com.mopub.nativeads.MoPubCustomEventNative")
+                .setFailoverUrl("https://failover1")
+                .setRequestId("request_id")
+                .setAdTimeoutDelayMilliseconds(1000)
+                .build();
+        Robolectric.getForegroundThreadScheduler().pause();
     }
 
     @After
     public void tearDown() {
         reset(methodBuilder);
+        MoPubEvents.setEventDispatcher(null);
     }
 
     @Test
@@ -136,6 +164,25 @@ public class MoPubNativeTest {
         verify(mockRequestQueue, never()).add(any(Request.class));
     }
 
+    @Test
+    public void makeRequest_withRequestListener_whenRequestFails_shouldOnlyNotifyRequestListener() {
+        final MoPubNativeNetworkListener requestListener = mock(MoPubNativeNetworkListener.class);
+        when(mockRequestQueue.add(any(Request.class)))
+                .then(new Answer<Void>() {
+                    @Override
+                    public Void answer(final InvocationOnMock invocationOnMock) throws Throwable {
+                        ((Request) invocationOnMock.getArguments()[0]).deliverError(
+                                new MoPubNetworkError(MoPubNetworkError.Reason.NO_FILL));
+                        return null;
+                    }
+                });
+
+        subject.makeRequest(null, 0, requestListener);
+
+        verify(requestListener).onNativeFail(any(NativeErrorCode.class));
+        verify(mockNetworkListener, never()).onNativeFail(any(NativeErrorCode.class));
+    }
+
     @Test
     public void onAdError_shouldNotifyListener() {
         subject.onAdError(new MoPubNetworkError(MoPubNetworkError.Reason.BAD_BODY));
@@ -178,4 +225,170 @@ public class MoPubNativeTest {
         assertThat(latestLogMessage.msg.trim()).isEqualTo(MoPubErrorCode.NO_CONNECTION.toString());
         verify(mockNetworkListener).onNativeFail(eq(NativeErrorCode.CONNECTION_ERROR));
     }
+
+    @Test
+    public void loadNativeAd_shouldRequestFailoverWhileCustomEventIsLoading() {
+        subject.loadNativeAd(testAdResponse);
+
+        verify(mockCustomEventNative).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+        verify(mockRequestQueue).add(argThat(isUrl("https://failover1")));
+    }
+
+    @Test
+    public void loadNativeAd_whenCustomEventFails_shouldLoadPrefetchedFailoverWithoutAnotherRequest() {
+        subject.loadNativeAd(testAdResponse);
+        deliverFailoverResponse(0, "https://failover2");
+
+        getCustomEventNativeListener(0).onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+
+        verify(mockCustomEventNative, times(2)).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+        // The first failover was prefetched; only the next one is requested now
+        verify(mockRequestQueue).add(argThat(isUrl("https://failover1")));
+        verify(mockRequestQueue).add(argThat(isUrl("https://failover2")));
+        verify(mockNetworkListener, never()).onNativeFail(any(NativeErrorCode.class));
+    }
+
+    @Test
+    public void loadNativeAd_whenCustomEventFailsBeforeFailoverArrives_shouldLoadFailoverWhenItArrives() {
+        subject.loadNativeAd(testAdResponse);
+
+        getCustomEventNativeListener(0).onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+        verify(mockCustomEventNative).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+
+        deliverFailoverResponse(0, null);
+
+        verify(mockCustomEventNative, times(2)).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+    }
+
+    @Test
+    public void loadNativeAd_whenCustomEventTimesOut_shouldFailOver() {
+        subject.loadNativeAd(testAdResponse);
+        deliverFailoverResponse(0, null);
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(999);
+        verify(mockCustomEventNative).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(1);
+        verify(mockCustomEventNative, times(2)).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+    }
+
+    @Test
+    public void loadNativeAd_withoutAdTimeout_shouldUseDefaultTimeout() {
+        subject.loadNativeAd(testAdResponse.toBuilder()
+                .setAdTimeoutDelayMilliseconds(null)
+                .build());
+        deliverFailoverResponse(0, null);
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(
+                MoPubNative.DEFAULT_NATIVE_TIMEOUT_DELAY - 1);
+        verify(mockCustomEventNative).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(1);
+        verify(mockCustomEventNative, times(2)).loadNativeAd(any(Context.class),
+                any(CustomEventNativeListener.class), anyMap(), anyMap());
+    }
+
+    @Test
+    public void loadNativeAd_whenCustomEventLoadsAfterTimingOut_shouldDestroyAd() {
+        when(mockAdRendererRegistry.getRendererForAd(mockBaseNativeAd)).thenReturn(mockRenderer);
+        subject.loadNativeAd(testAdResponse);
+        final CustomEventNativeListener timedOutListener = getCustomEventNativeListener(0);
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(1000);
+        timedOutListener.onNativeAdLoaded(mockBaseNativeAd);
+
+        verify(mockBaseNativeAd).destroy();
+        verify(mockNetworkListener, never()).onNativeLoad(any(NativeAd.class));
+    }
+
+    @Test
+    public void loadNativeAd_whenCustomEventLoads_shouldNotifyListener_shouldCancelFailoverRequest() {
+        when(mockAdRendererRegistry.getRendererForAd(mockBaseNativeAd)).thenReturn(mockRenderer);
+        subject.loadNativeAd(testAdResponse);
+
+        getCustomEventNativeListener(0).onNativeAdLoaded(mockBaseNativeAd);
+
+        verify(mockNetworkListener).onNativeLoad(any(NativeAd.class));
+        assertThat(getAdRequest(0).isCanceled()).isTrue();
+    }
+
+    @Test
+    public void loadNativeAd_whenWaterfallMissesDeadline_shouldFailWithNetworkTimeout() {
+        subject.loadNativeAd(testAdResponse);
+
+        // The custom event times out, and the failover request never returns
+        Robolectric.getForegroundThreadScheduler().advanceBy(
+                MoPubNative.DEFAULT_WATERFALL_DEADLINE - 1);
+        verify(mockNetworkListener, never()).onNativeFail(any(NativeErrorCode.class));
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(1);
+        verify(mockNetworkListener).onNativeFail(NativeErrorCode.NETWORK_TIMEOUT);
+        assertThat(getAdRequest(0).isCanceled()).isTrue();
+    }
+
+    @Test
+    public void loadNativeAd_whenLastCustomEventFails_shouldNotifyListener() {
+        subject.loadNativeAd(testAdResponse.toBuilder().setFailoverUrl(null).build());
+
+        getCustomEventNativeListener(0).onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+
+        verify(mockNetworkListener).onNativeFail(NativeErrorCode.INVALID_REQUEST_URL);
+        Robolectric.getForegroundThreadScheduler().advanceBy(MoPubNative.DEFAULT_WATERFALL_DEADLINE);
+        verify(mockNetworkListener, times(1)).onNativeFail(any(NativeErrorCode.class));
+    }
+
+    @Test
+    public void loadNativeAd_whenCustomEventFails_shouldLogCustomEventLatency() {
+        when(mockEventDispatcher.isSampled(anyString(), anyDouble())).thenReturn(true);
+        MoPubEvents.setEventDispatcher(mockEventDispatcher);
+        subject.loadNativeAd(testAdResponse);
+
+        getCustomEventNativeListener(0).onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+
+        ArgumentCaptor<BaseEvent> eventCaptor = ArgumentCaptor.forClass(BaseEvent.class);
+        verify(mockEventDispatcher).dispatch(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getName())
+                .isEqualTo(BaseEvent.Name.NATIVE_CUSTOM_EVENT_FAILED);
+        assertThat(eventCaptor.getValue().getRequestId()).isEqualTo("request_id");
+        assertThat(eventCaptor.getValue().getPerformanceDurationMs()).isNotNull();
+    }
+
+    @Test
+    public void destroy_shouldCancelFailoverRequest_shouldIgnoreCustomEvent() {
+        subject.loadNativeAd(testAdResponse);
+
+        subject.destroy();
+        getCustomEventNativeListener(0).onNativeAdFailed(NativeErrorCode.NETWORK_NO_FILL);
+        Robolectric.getForegroundThreadScheduler().advanceBy(MoPubNative.DEFAULT_WATERFALL_DEADLINE);
+
+        assertThat(getAdRequest(0).isCanceled()).isTrue();
+        verify(mockNetworkListener, never()).onNativeFail(any(NativeErrorCode.class));
+    }
+
+    private CustomEventNativeListener getCustomEventNativeListener(final int index) {
+        ArgumentCaptor<CustomEventNativeListener> listenerCaptor =
+                ArgumentCaptor.forClass(CustomEventNativeListener.class);
+        verify(mockCustomEventNative, times(index + 1)).loadNativeAd(any(Context.class),
+                listenerCaptor.capture(), anyMap(), anyMap());
+        return listenerCaptor.getAllValues().get(index);
+    }
+
+    private AdRequest getAdRequest(final int index) {
+        ArgumentCaptor<AdRequest> requestCaptor = ArgumentCaptor.forClass(AdRequest.class);
+        verify(mockRequestQueue, times(index + 1)).add(requestCaptor.capture());
+        return requestCaptor.getAllValues().get(index);
+    }
+
+    private void deliverFailoverResponse(final int index, final String nextFailoverUrl) {
+        getAdRequest(index).getListener().onSuccess(testAdResponse.toBuilder()
+                .setFailoverUrl(nextFailoverUrl)
+                .build());
+    }
 }
@@ -2,6 +2,7 @@ package com.mopub.nativeads;
 
 import android.app.Activity;
 import android.content.Context;
+import android.support.annotation.NonNull;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
@@ -9,17 +10,21 @@ import android.view.ViewGroup;
 
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
+import com.mopub.nativeads.MoPubRecyclerAdapter.ContentChangeStrategy;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static com.mopub.nativeads.MoPubRecyclerAdapter.ContentChangeStrategy.INSERT_AT_END;
@@ -28,6 +33,8 @@ import static com.mopub.nativeads.MoPubRecyclerAdapter.ContentChangeStrategy.MOV
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -85,6 +92,8 @@ public class MoPubRecyclerAdapterTest {
         when(mockAdRenderer.createAdView(any(Activity.class), any(ViewGroup.class)))
                 .thenReturn(mockAdView);
 
+        when(mockStreamAdPlacer.getPlacedAdPositions())
+                .thenReturn(new int[] {AD_POSITION_1, AD_POSITION_7});
         when(mockStreamAdPlacer.isAd(anyInt())).thenAnswer(new Answer<Boolean>() {
             @Override
             public Boolean answer(final InvocationOnMock invocation) throws Throwable {
@@ -455,7 +464,7 @@ public class MoPubRecyclerAdapterTest {
     }
 
     @Test
-    public void onItemRangeInsertedAtEnd_withInsertAtEndStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedAtEnd_withInsertAtEndStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(INSERT_AT_END);
 
@@ -463,9 +472,9 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
@@ -481,14 +490,14 @@ public class MoPubRecyclerAdapterTest {
 
         verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
+        verify(mockStreamAdPlacer, times(2)).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
-        verify(mockStreamAdPlacer, times(3)).insertItem(anyInt());
+        verify(mockStreamAdPlacer).insertItems(originalItemCount, 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
     @Test
-    public void onItemRangeInsertedAtEnd_withKeepAdsPlacedStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedAtEnd_withKeepAdsPlacedStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -496,9 +505,9 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount + 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
@@ -514,9 +523,9 @@ public class MoPubRecyclerAdapterTest {
 
         verify(mockObserver).onItemRangeInserted(originalItemCount - 5, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 7);
+        verify(mockStreamAdPlacer, times(2)).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
-        verify(mockStreamAdPlacer, times(3)).insertItem(anyInt());
+        verify(mockStreamAdPlacer).insertItems(originalItemCount - 7, 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
@@ -531,14 +540,14 @@ public class MoPubRecyclerAdapterTest {
 
         verify(mockObserver).onItemRangeInserted(originalItemCount - 5, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 7);
+        verify(mockStreamAdPlacer, times(2)).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
-        verify(mockStreamAdPlacer, times(3)).insertItem(anyInt());
+        verify(mockStreamAdPlacer).insertItems(originalItemCount - 7, 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
     @Test
-    public void onItemRangeInsertedInMiddle_withKeepAdsStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedInMiddle_withKeepAdsStrategy_shouldNotifyItemRangeInserted() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -546,15 +555,30 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount + 3);
         originalAdapter.notifyItemRangeInserted(originalItemCount - 7, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeInserted(originalItemCount - 5, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 7);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount + 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withInsertAtEndStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeInsertedBeforeAd_withKeepAdsStrategy_shouldMoveAdBackToItsPosition() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = originalAdapter.getItemCount();
+        originalAdapter.setItemCount(originalItemCount + 3);
+        originalAdapter.notifyItemRangeInserted(3, 3);
+
+        InOrder inOrder = inOrder(mockObserver);
+        inOrder.verify(mockObserver).onItemRangeInserted(4, 3);
+        inOrder.verify(mockObserver).onItemRangeMoved(AD_POSITION_7 + 3, AD_POSITION_7, 1);
+        verifyNoMoreInteractions(mockObserver);
+    }
+
+    @Test
+    public void onItemRangeRemovedFromEnd_withInsertAtEndStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(INSERT_AT_END);
 
@@ -562,9 +586,9 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 2, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 4);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
@@ -582,30 +606,35 @@ public class MoPubRecyclerAdapterTest {
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
-        verify(mockStreamAdPlacer, times(3)).removeItem(originalItemCount - 4);
+        verify(mockStreamAdPlacer).removeItems(originalItemCount - 4, 3);
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withMoveAdsStrategyAndItemsSurroundAnAd_shouldNotifyItemRangeRemoved() {
+    public void onItemRangeRemovedFromEnd_withMoveAdsStrategyAndItemsSurroundAnAd_shouldOnlyNotifyItemsRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(MOVE_ALL_ADS_WITH_CONTENT);
-        originalAdapter.setItemCount(AD_POSITION_7 + 1);
+        // The ad between the removed items ends up right after the last remaining item.
+        when(mockStreamAdPlacer.getPlacedAdPositions())
+                .thenReturn(new int[] {AD_POSITION_1, AD_POSITION_7})
+                .thenReturn(new int[] {AD_POSITION_1, 5});
 
         final int originalItemCount = AD_POSITION_7 + 1;
 
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        // We remove 3 items + 1 ad
-        verify(mockObserver).onItemRangeRemoved(originalItemCount - 4, 4);
+        // We remove the 3 items on both sides of the ad, but not the ad.
+        InOrder inOrder = inOrder(mockObserver);
+        inOrder.verify(mockObserver).onItemRangeRemoved(AD_POSITION_7 + 1, 1);
+        inOrder.verify(mockObserver).onItemRangeRemoved(originalItemCount - 3, 2);
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
-        verify(mockStreamAdPlacer, times(3)).removeItem(originalItemCount - 4);
+        verify(mockStreamAdPlacer).removeItems(originalItemCount - 4, 3);
     }
 
     @Test
-    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_shouldNotifyDataChanged() {
+    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -613,10 +642,26 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 4, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 2, 3);
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
+        verify(mockStreamAdPlacer, never()).removeItems(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onItemRangeRemovedFromEnd_withKeepAdsStrategy_withAdLeftAfterLastItem_shouldRemoveAd() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = AD_POSITION_7 + 1;
+        originalAdapter.setItemCount(originalItemCount - 3);
+        originalAdapter.notifyItemRangeRemoved(3, 3);
+
+        InOrder inOrder = inOrder(mockObserver);
+        inOrder.verify(mockObserver).onItemRangeRemoved(4, 3);
+        inOrder.verify(mockObserver).onItemRangeRemoved(4, 1);
+        verifyNoMoreInteractions(mockObserver);
     }
 
     @Test
@@ -632,7 +677,7 @@ public class MoPubRecyclerAdapterTest {
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
-        verify(mockStreamAdPlacer, times(3)).removeItem(originalItemCount - 8);
+        verify(mockStreamAdPlacer).removeItems(originalItemCount - 8, 3);
     }
 
     @Test
@@ -648,11 +693,11 @@ public class MoPubRecyclerAdapterTest {
         verifyNoMoreInteractions(mockObserver);
 
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
-        verify(mockStreamAdPlacer, times(3)).removeItem(originalItemCount - 8);
+        verify(mockStreamAdPlacer).removeItems(originalItemCount - 8, 3);
     }
 
     @Test
-    public void onItemRangeRemovedFromMiddle_withKeepAdsStrategy_shouldNotifyChanged() {
+    public void onItemRangeRemovedFromMiddle_withKeepAdsStrategy_shouldNotifyItemRangeRemoved() {
         subject.registerAdapterDataObserver(mockObserver);
         subject.setContentChangeStrategy(KEEP_ADS_FIXED);
 
@@ -660,13 +705,248 @@ public class MoPubRecyclerAdapterTest {
         originalAdapter.setItemCount(originalItemCount - 3);
         originalAdapter.notifyItemRangeRemoved(originalItemCount - 8, 3);
 
-        verify(mockObserver).onChanged();
+        verify(mockObserver).onItemRangeRemoved(originalItemCount - 6, 3);
         verifyNoMoreInteractions(mockObserver);
-        verify(mockStreamAdPlacer).getAdjustedPosition(originalItemCount - 8);
+        verify(mockStreamAdPlacer).getPlacedAdPositions();
         verify(mockStreamAdPlacer).setItemCount(originalItemCount - 3);
         verifyNoMoreInteractions(mockStreamAdPlacer);
     }
 
+    @Test
+    public void onItemRangeRemovedBeforeAd_withKeepAdsStrategy_shouldMoveAdBackToItsPosition() {
+        subject.registerAdapterDataObserver(mockObserver);
+        subject.setContentChangeStrategy(KEEP_ADS_FIXED);
+
+        final int originalItemCount = originalAdapter.getItemCount();
+        originalAdapter.setItemCount(originalItemCount - 3);
+        originalAdapter.notifyItemRangeRemoved(2, 3);
+
+        InOrder inOrder = inOrder(mockObserver);
+        inOrder.verify(mockObserver).onItemRangeRemoved(3, 3);
+        inOrder.verify(mockObserver).onItemRangeMoved(AD_POSITION_7 - 3, AD_POSITION_7, 1);
+        verifyNoMoreInteractions(mockObserver);
+    }
+
+    @Test
+    public void onItemRangeChanged_withAdInRange_shouldNotNotifyAdChanged() {
+        subject.registerAdapterDataObserver(mockObserver);
+
+        originalAdapter.notifyItemRangeChanged(0, 3);
+
+        verify(mockObserver).onItemRangeChanged(0, 1, null);
+        verify(mockObserver).onItemRangeChanged(AD_POSITION_1 + 1, 2, null);
+        verifyNoMoreInteractions(mockObserver);
+    }
+
+    @Test
+    public void onItemRangeChanged_withPayload_shouldPassPayload() {
+        subject.registerAdapterDataObserver(mockObserver);
+        final Object payload = new Object();
+
+        originalAdapter.notifyItemRangeChanged(AD_POSITION_7, 1, payload);
+
+        verify(mockObserver).onItemRangeChanged(AD_POSITION_7 + 2, 1, payload);
+        verifyNoMoreInteractions(mockObserver);
+    }
+
+    @Test
+    public void onItemRangeMoved_shouldMoveItemAndKeepAdsInPlace() {
+        subject.registerAdapterDataObserver(mockObserver);
+
+        originalAdapter.notifyItemMoved(0, 3);
+
+        // The item passes the first ad, which then moves back to its position.
+        InOrder inOrder = inOrder(mockObserver);
+        inOrder.verify(mockObserver).onItemRangeMoved(0, 4, 1);
+        inOrder.verify(mockObserver).onItemRangeMoved(0, AD_POSITION_1, 1);
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer, never()).moveItem(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onChanged_shouldNotifyDataSetChanged() {
+        subject.registerAdapterDataObserver(mockObserver);
+
+        originalAdapter.notifyDataSetChanged();
+
+        verify(mockObserver).onChanged();
+        verifyNoMoreInteractions(mockObserver);
+        verify(mockStreamAdPlacer).setItemCount(originalAdapter.getItemCount());
+    }
+
+    @Test
+    public void contentChanges_withEveryStrategy_shouldOnlyBindNewAndChangedItems() {
+        for (final ContentChangeStrategy strategy : ContentChangeStrategy.values()) {
+            final List<String> items = new ArrayList<String>();
+            for (int i = 0; i < 30; i++) {
+                items.add("item" + i);
+            }
+            originalAdapter.setItemCount(items.size());
+            final PlacementData placementData = createPlacementDataWithAds(items.size());
+            subject.setContentChangeStrategy(strategy);
+            final StreamModel model = new StreamModel(getStream(placementData, items));
+            subject.registerAdapterDataObserver(model);
+
+            // Insert a page of items in the middle.
+            for (int i = 0; i < 5; i++) {
+                items.add(10 + i, "inserted" + i);
+            }
+            originalAdapter.setItemCount(items.size());
+            originalAdapter.notifyItemRangeInserted(10, 5);
+            model.assertMatches(getStream(placementData, items), 5);
+
+            // Remove items on both sides of several ads.
+            for (int i = 0; i < 8; i++) {
+                items.remove(3);
+            }
+            originalAdapter.setItemCount(items.size());
+            originalAdapter.notifyItemRangeRemoved(3, 8);
+            model.assertMatches(getStream(placementData, items), 0);
+
+            // Move an item past an ad.
+            items.add(6, items.remove(1));
+            originalAdapter.notifyItemMoved(1, 6);
+            model.assertMatches(getStream(placementData, items), 0);
+
+            // Change items around an ad.
+            for (int i = 2; i < 6; i++) {
+                items.set(i, "changed" + i);
+            }
+            originalAdapter.notifyItemRangeChanged(2, 4);
+            model.assertMatches(getStream(placementData, items), 4);
+
+            // Insert at the end.
+            items.add("last");
+            originalAdapter.setItemCount(items.size());
+            originalAdapter.notifyItemRangeInserted(items.size() - 1, 1);
+            model.assertMatches(getStream(placementData, items), 1);
+
+            subject.unregisterAdapterDataObserver(model);
+        }
+    }
+
+    /**
+     * Backs the mock stream ad placer with real placement data, with ads placed at every desired
+     * position.
+     */
+    @NonNull
+    private PlacementData createPlacementDataWithAds(final int itemCount) {
+        final PlacementData placementData = PlacementData.fromAdPositioning(
+                MoPubNativeAdPositioning.clientPositioning()
+                        .addFixedPosition(1)
+                        .enableRepeatingPositions(4));
+        int position = placementData.nextInsertionPosition(-1);
+        while (position != PlacementData.NOT_FOUND
+                && position < placementData.getAdjustedCount(itemCount)) {
+            placementData.placeAd(position, mock(NativeAd.class));
+            position = placementData.nextInsertionPosition(position);
+        }
+
+        when(mockStreamAdPlacer.getPlacedAdPositions()).thenAnswer(new Answer<int[]>() {
+            @Override
+            public int[] answer(final InvocationOnMock invocation) throws Throwable {
+                return placementData.getPlacedAdPositions();
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final Object[] arguments = invocation.getArguments();
+                placementData.insertItems((Integer) arguments[0], (Integer) arguments[1]);
+                return null;
+            }
+        }).when(mockStreamAdPlacer).insertItems(anyInt(), anyInt());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                final Object[] arguments = invocation.getArguments();
+                placementData.removeItems((Integer) arguments[0], (Integer) arguments[1]);
+                return null;
+            }
+        }).when(mockStreamAdPlacer).removeItems(anyInt(), anyInt());
+        return placementData;
+    }
+
+    /**
+     * Returns the ads and items in the stream, in the order they should be shown.
+     */
+    @NonNull
+    private static List<Object> getStream(@NonNull final PlacementData placementData,
+            @NonNull final List<String> items) {
+        final List<Object> stream = new ArrayList<Object>();
+        for (int i = 0; i < placementData.getAdjustedCount(items.size()); i++) {
+            if (placementData.isPlacedAd(i)) {
+                stream.add(placementData.getPlacedAd(i));
+            } else {
+                stream.add(items.get(placementData.getOriginalPosition(i)));
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Applies the notifications of the adapter to a copy of the stream, the way RecyclerView
+     * would, and counts the items that have to be bound again.
+     */
+    private static class StreamModel extends RecyclerView.AdapterDataObserver {
+        private static final Object NEEDS_BIND = new Object();
+
+        @NonNull private final List<Object> mStream;
+        private int mBindCount;
+
+        StreamModel(@NonNull final List<Object> stream) {
+            mStream = stream;
+        }
+
+        @Override
+        public void onChanged() {
+            throw new AssertionError("Every item would be bound again");
+        }
+
+        @Override
+        public void onItemRangeChanged(final int positionStart, final int itemCount,
+                final Object payload) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mStream.set(i, NEEDS_BIND);
+            }
+            mBindCount += itemCount;
+        }
+
+        @Override
+        public void onItemRangeInserted(final int positionStart, final int itemCount) {
+            for (int i = 0; i < itemCount; i++) {
+                mStream.add(positionStart, NEEDS_BIND);
+            }
+            mBindCount += itemCount;
+        }
+
+        @Override
+        public void onItemRangeRemoved(final int positionStart, final int itemCount) {
+            for (int i = 0; i < itemCount; i++) {
+                mStream.remove(positionStart);
+            }
+        }
+
+        @Override
+        public void onItemRangeMoved(final int fromPosition, final int toPosition,
+                final int itemCount) {
+            mStream.add(toPosition, mStream.remove(fromPosition));
+        }
+
+        void assertMatches(@NonNull final List<Object> expectedStream,
+                final int expectedBindCount) {
+            assertThat(mStream).hasSize(expectedStream.size());
+            for (int i = 0; i < mStream.size(); i++) {
+                if (mStream.get(i) == NEEDS_BIND) {
+                    mStream.set(i, expectedStream.get(i));
+                }
+                assertThat(mStream.get(i)).isSameAs(expectedStream.get(i));
+            }
+            assertThat(mBindCount).isEqualTo(expectedBindCount);
+            mBindCount = 0;
+        }
+    }
+
     private class TestAdapter extends RecyclerView.Adapter<TestHolder> {
         private int mItems = 18;
 
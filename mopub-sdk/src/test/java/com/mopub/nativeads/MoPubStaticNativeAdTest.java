@@ -400,6 +400,16 @@ public class MoPubStaticNativeAdTest {
         verify(mMockNativeClickHandler).setOnClickListener(mockView, subject);
     }
 
+    @Test
+    public void prepare_shouldPreResolveClickDestinationUrl() {
+        subject.setClickDestinationUrl("https://www.mopub.com/click");
+
+        subject.prepare(mockView);
+
+        verify(mMockNativeClickHandler).preResolveClickDestinationUrl(
+                "https://www.mopub.com/click");
+    }
+
     @Test
     public void clear_shouldRemoveViewFromImpressionTracker_shouldClearOnClickListener() {
         subject.clear(mockView);
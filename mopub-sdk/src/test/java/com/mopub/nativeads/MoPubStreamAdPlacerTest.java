@@ -42,7 +42,7 @@ public class MoPubStreamAdPlacerTest {
     @Mock
     PositioningSource mockPositioningSource;
     @Mock
-    NativeAdSource mockAdSource;
+    StreamAdSource mockAdSource;
     @Mock
     MoPubStaticNativeAdRenderer mockAdRenderer;
     @Mock
@@ -66,6 +66,22 @@ public class MoPubStreamAdPlacerTest {
         subject.setAdLoadedListener(mockAdLoadedListener);
     }
 
+    @Test
+    public void constructor_shouldNotShareAdSourceByDefault() {
+        subject = new MoPubStreamAdPlacer(activity, positioning);
+
+        assertThat(subject.getAdSource()).isInstanceOf(NativeAdSource.class);
+    }
+
+    @Test
+    public void constructor_withAdSourceSharingEnabled_shouldShareAdSource() {
+        MoPubStreamAdPlacer.setAdSourceSharingEnabled(true);
+        subject = new MoPubStreamAdPlacer(activity, positioning);
+        MoPubStreamAdPlacer.setAdSourceSharingEnabled(false);
+
+        assertThat(subject.getAdSource()).isInstanceOf(SharedNativeAdSource.class);
+    }
+
     @Test
     public void isAd_initialState_hasNoAds() {
         checkAdPositions();
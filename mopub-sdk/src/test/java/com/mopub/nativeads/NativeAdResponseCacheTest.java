@@ -0,0 +1,186 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+
+import com.mopub.common.AdType;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.DateAndTime;
+import com.mopub.mobileads.BuildConfig;
+import com.mopub.network.AdResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class NativeAdResponseCacheTest {
+    private static final long EXPIRATION_TIME_MILLISECONDS = 15 * 60 * 1000;
+    private static final long NOW = 1000000000L;
+
+    private NativeAdResponseCache subject;
+
+    @Before
+    public void setUp() {
+        final Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        subject = new NativeAdResponseCache(activity, EXPIRATION_TIME_MILLISECONDS);
+        NativeAdResponseCache.setExecutorForTesting(new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                runnable.run();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        NativeAdResponseCache.setExecutorForTesting(null);
+    }
+
+    @Test
+    public void save_thenLoad_shouldRestoreResponses_shouldRemoveThemFromDisk() throws Exception {
+        final long now = DateAndTime.now().getTime();
+        subject.save("adUnitId", Arrays.asList(createAdResponse(now)));
+
+        final List<AdResponse> loaded = load("adUnitId");
+        assertThat(loaded).hasSize(1);
+        assertThat(loaded.get(0).getTimestamp()).isEqualTo(now);
+        assertThat(load("adUnitId")).isEmpty();
+    }
+
+    @Test
+    public void save_shouldReplacePreviouslySavedResponses() throws Exception {
+        final long now = DateAndTime.now().getTime();
+        subject.save("adUnitId", Arrays.asList(createAdResponse(now)));
+        subject.save("adUnitId", new ArrayList<AdResponse>());
+
+        assertThat(load("adUnitId")).isEmpty();
+    }
+
+    @Test
+    public void toJson_fromJson_shouldRoundTripNativeAdResponse() throws Exception {
+        final Map<String, String> serverExtras = new HashMap<String, String>();
+        serverExtras.put("key", "value \"quoted\"");
+        final JSONObject jsonBody = new JSONObject("{\"title\":\"Ad title\"}");
+        final AdResponse adResponse = new AdResponse.Builder()
+                .setTimestamp(NOW)
+                .setAdType(AdType.STATIC_NATIVE)
+                .setAdUnitId("adUnitId")
+                .setNetworkType("mopub")
+                .setCustomEventClassName("com.mopub.nativeads.MoPubCustomEventNative")
+                .setClickTrackingUrl("clickUrl")
+                .setImpressionTrackingUrl("impressionUrl")
+                .setFailoverUrl("failoverUrl")
+                .setRequestId("requestId")
+                .setDspCreativeId("dspCreativeId")
+                .setServerExtras(serverExtras)
+                .setJsonBody(jsonBody)
+                .build();
+
+        final AdResponse restored = NativeAdResponseCache.fromJson(
+                new JSONObject(NativeAdResponseCache.toJson(adResponse).toString()));
+
+        assertThat(restored.getTimestamp()).isEqualTo(NOW);
+        assertThat(restored.getAdType()).isEqualTo(AdType.STATIC_NATIVE);
+        assertThat(restored.getAdUnitId()).isEqualTo("adUnitId");
+        assertThat(restored.getNetworkType()).isEqualTo("mopub");
+        assertThat(restored.getCustomEventClassName())
+                .isEqualTo("com.mopub.nativeads.MoPubCustomEventNative");
+        assertThat(restored.getClickTrackingUrl()).isEqualTo("clickUrl");
+        assertThat(restored.getImpressionTrackingUrl()).isEqualTo("impressionUrl");
+        assertThat(restored.getFailoverUrl()).isEqualTo("failoverUrl");
+        assertThat(restored.getRequestId()).isEqualTo("requestId");
+        assertThat(restored.getDspCreativeId()).isEqualTo("dspCreativeId");
+        assertThat(restored.getServerExtras()).isEqualTo(serverExtras);
+        assertThat(restored.getJsonBody().getString("title")).isEqualTo("Ad title");
+    }
+
+    @Test
+    public void fromJson_withMissingOptionalFields_shouldLeaveThemNull() throws Exception {
+        final AdResponse restored = NativeAdResponseCache.fromJson(
+                new JSONObject("{\"timestamp\":" + NOW + "}"));
+
+        assertThat(restored.getTimestamp()).isEqualTo(NOW);
+        assertThat(restored.getFailoverUrl()).isNull();
+        assertThat(restored.getJsonBody()).isNull();
+        assertThat(restored.getServerExtras()).isEmpty();
+    }
+
+    @Test
+    public void fromBytes_shouldDropExpiredResponses() throws Exception {
+        final JSONArray jsonArray = new JSONArray();
+        jsonArray.put(NativeAdResponseCache.toJson(createAdResponse(NOW - 1000)));
+        jsonArray.put(NativeAdResponseCache.toJson(
+                createAdResponse(NOW - EXPIRATION_TIME_MILLISECONDS)));
+
+        final List<AdResponse> adResponses = subject.fromBytes(
+                jsonArray.toString().getBytes(), NOW);
+
+        assertThat(adResponses).hasSize(1);
+        assertThat(adResponses.get(0).getTimestamp()).isEqualTo(NOW - 1000);
+    }
+
+    @Test
+    public void fromBytes_withResponseFromTheFuture_shouldDropResponse() throws Exception {
+        final JSONArray jsonArray = new JSONArray();
+        jsonArray.put(NativeAdResponseCache.toJson(createAdResponse(NOW + 1000)));
+
+        assertThat(subject.fromBytes(jsonArray.toString().getBytes(), NOW)).isEmpty();
+    }
+
+    @Test
+    public void fromBytes_withNullOrInvalidContent_shouldReturnEmptyList() {
+        assertThat(subject.fromBytes(null, NOW)).isEmpty();
+        assertThat(subject.fromBytes(new byte[0], NOW)).isEmpty();
+        assertThat(subject.fromBytes("not json".getBytes(), NOW)).isEmpty();
+    }
+
+    @Test
+    public void isCacheable_shouldOnlyAcceptStaticNativeResponsesWithJsonBody() {
+        assertThat(NativeAdResponseCache.isCacheable(createAdResponse(NOW))).isTrue();
+        assertThat(NativeAdResponseCache.isCacheable(null)).isFalse();
+        assertThat(NativeAdResponseCache.isCacheable(new AdResponse.Builder()
+                .setAdType(AdType.STATIC_NATIVE)
+                .build())).isFalse();
+        assertThat(NativeAdResponseCache.isCacheable(new AdResponse.Builder()
+                .setAdType(AdType.VIDEO_NATIVE)
+                .setJsonBody(new JSONObject())
+                .build())).isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<AdResponse> load(final String adUnitId) {
+        final NativeAdResponseCache.Listener mockListener =
+                mock(NativeAdResponseCache.Listener.class);
+        subject.load(adUnitId, mockListener);
+
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockListener).onResponsesLoaded(captor.capture());
+        return (List<AdResponse>) captor.getValue();
+    }
+
+    private static AdResponse createAdResponse(final long timestamp) {
+        return new AdResponse.Builder()
+                .setTimestamp(timestamp)
+                .setAdType(AdType.STATIC_NATIVE)
+                .setJsonBody(new JSONObject())
+                .build();
+    }
+}
@@ -3,19 +3,28 @@ package com.mopub.nativeads;
 import android.os.Handler;
 import android.os.SystemClock;
 
+import com.mopub.common.AdType;
 import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.DateAndTime;
 import com.mopub.mobileads.BuildConfig;
+import com.mopub.network.AdResponse;
 
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowSystemClock;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-import static com.mopub.nativeads.NativeAdSource.AdSourceListener;
+import static com.mopub.nativeads.MoPubNative.MoPubNativeNetworkListener;
+import static com.mopub.nativeads.NativeAdResponseCache.Listener;
+import static com.mopub.nativeads.StreamAdSource.AdSourceListener;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
@@ -41,6 +50,7 @@ public class NativeAdSourceTest {
     @Mock private Handler mockReplenishCacheHandler;
     @Mock private AdRendererRegistry mockAdRendererRegistry;
     @Mock private MoPubStaticNativeAdRenderer mockRenderer;
+    @Mock private NativeAdResponseCache mockResponseCache;
 
     @Before
     public void setUp() {
@@ -64,7 +74,7 @@ public class NativeAdSourceTest {
 
     @Test
     public void constructor_shouldInitializeCorrectly() {
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mSequenceNumber).isEqualTo(0);
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
     }
@@ -109,8 +119,9 @@ public class NativeAdSourceTest {
     @Test
     public void loadAds_shouldReplenishCache() {
         subject.loadAds(requestParameters, mockMoPubNative);
-        assertThat(subject.mRequestInFlight).isTrue();
-        verify(mockMoPubNative).makeRequest(requestParameters, 0);
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
+        verify(mockMoPubNative).makeRequest(eq(requestParameters), eq(0),
+                any(MoPubNativeNetworkListener.class));
     }
 
     @Test
@@ -126,7 +137,7 @@ public class NativeAdSourceTest {
         TimestampWrapper<NativeAd> timestampWrapper =
                 new TimestampWrapper<NativeAd>(mock(NativeAd.class));
         nativeAdCache.add(timestampWrapper);
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mSequenceNumber = 5;
         subject.mCurrentRetries = maxRetries;
 
@@ -141,7 +152,7 @@ public class NativeAdSourceTest {
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
 
         // new request has been kicked off
-        assertThat(subject.mRequestInFlight).isTrue();
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
@@ -158,7 +169,7 @@ public class NativeAdSourceTest {
         subject.setMoPubNative(mockMoPubNative);
         TimestampWrapper<NativeAd> timestampWrapper = new TimestampWrapper<NativeAd>(mock(NativeAd.class));
         nativeAdCache.add(timestampWrapper);
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mSequenceNumber = 5;
         subject.mCurrentRetries = maxRetries;
 
@@ -168,7 +179,7 @@ public class NativeAdSourceTest {
         assertThat(nativeAdCache).isEmpty();
         verify(mockMoPubNative).destroy();
         verify(mockReplenishCacheHandler).removeMessages(0);
-        assertThat(subject.mRequestInFlight).isFalse();
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mSequenceNumber).isEqualTo(0);
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
     }
@@ -182,6 +193,20 @@ public class NativeAdSourceTest {
         assertThat(nativeAdCache).isEmpty();
     }
 
+    @Test
+    public void dequeueTimestampedAd_shouldReturnCachedWrapper_shouldKeepLoadTime() {
+        subject.setMoPubNative(mockMoPubNative);
+        final TimestampWrapper<NativeAd> timestampWrapper = new TimestampWrapper<NativeAd>(
+                mMockNativeAd);
+        timestampWrapper.mCreatedTimestamp = SystemClock.uptimeMillis() - 1000;
+        nativeAdCache.add(timestampWrapper);
+
+        final TimestampWrapper<NativeAd> dequeued = subject.dequeueTimestampedAd();
+
+        assertThat(dequeued).isSameAs(timestampWrapper);
+        assertThat(dequeued.mCreatedTimestamp).isEqualTo(SystemClock.uptimeMillis() - 1000);
+    }
+
     @Test
     public void dequeueAd_withStaleAd_shouldReturnNativeAd() {
         subject.setMoPubNative(mockMoPubNative);
@@ -213,7 +238,7 @@ public class NativeAdSourceTest {
 
         nativeAdCache.add(new TimestampWrapper<NativeAd>(mMockNativeAd));
 
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         assertThat(subject.dequeueAd()).isEqualTo(mMockNativeAd);
 
         assertThat(nativeAdCache).isEmpty();
@@ -252,19 +277,21 @@ public class NativeAdSourceTest {
 
         subject.replenishCache();
 
-        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0));
-        assertThat(subject.mRequestInFlight).isTrue();
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0),
+                any(MoPubNativeNetworkListener.class));
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @Test
     public void replenishCache_withRequestInFlight_shouldNotLoadNativeAd() {
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.setMoPubNative(mockMoPubNative);
 
         subject.replenishCache();
 
-        verify(mockMoPubNative, never()).makeRequest(requestParameters, 0);
-        assertThat(subject.mRequestInFlight).isTrue();
+        verify(mockMoPubNative, never()).makeRequest(eq(requestParameters), eq(0),
+                any(MoPubNativeNetworkListener.class));
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
     }
 
     @SuppressWarnings("unchecked")
@@ -279,8 +306,9 @@ public class NativeAdSourceTest {
 
         subject.replenishCache();
 
-        verify(mockMoPubNative, never()).makeRequest(any(RequestParameters.class), any(Integer.class));
-        assertThat(subject.mRequestInFlight).isFalse();
+        verify(mockMoPubNative, never()).makeRequest(any(RequestParameters.class),
+                any(Integer.class), any(MoPubNativeNetworkListener.class));
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
@@ -332,7 +360,7 @@ public class NativeAdSourceTest {
     public void moPubNativeNetworkListener_onNativeLoad_withFullCache_shouldResetRequestInFlight() {
         subject.setMoPubNative(mockMoPubNative);
 
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
 
         // fill cache
         nativeAdCache.add(mock(TimestampWrapper.class));
@@ -341,28 +369,28 @@ public class NativeAdSourceTest {
 
         subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
     public void moPubNativeNetworkListener_onNativeLoad_withCacheFilled_shouldNotReplenishCache() {
         subject.setMoPubNative(mockMoPubNative);
 
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
 
         subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
     }
 
     @Test
     public void
     moPubNativeNetworkListener_onNativeFail_shouldResetInFlight_shouldUpdateRetryTime_shouldPostDelayedRunnable() {
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
 
         subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mRetryInFlight).isEqualTo(true);
         assertThat(subject.getRetryTime()).isGreaterThan(defaultRetryTime);
         verify(mockReplenishCacheHandler).postDelayed(any(Runnable.class), eq((long)subject.getRetryTime()));
@@ -371,14 +399,303 @@ public class NativeAdSourceTest {
     @Test
     public void
     moPubNativeNetworkListener_onNativeFail_maxRetryTime_shouldResetInflight_shouldResetRetryTime_shouldNotPostDelayedRunnable() {
-        subject.mRequestInFlight = true;
+        subject.mRequestsInFlight = 1;
         subject.mCurrentRetries = maxRetries;
 
         subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
 
-        assertThat(subject.mRequestInFlight).isEqualTo(false);
+        assertThat(subject.mRequestsInFlight).isEqualTo(0);
         assertThat(subject.mRetryInFlight).isEqualTo(false);
         assertThat(subject.getRetryTime()).isEqualTo(defaultRetryTime);
         verify(mockReplenishCacheHandler, never()).postDelayed(any(Runnable.class), anyLong());
     }
+
+    @Test
+    public void setCacheLimits_shouldAllowParallelRequestsUpToTargetCacheSize() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setCacheLimits(4, 2);
+        // Simulate a fast scrolling feed: one dequeue every 500 ms.
+        subject.mAverageDequeueIntervalMillis = 500;
+        subject.mAverageLoadTimeMillis = 1000;
+
+        subject.replenishCache();
+
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0),
+                any(MoPubNativeNetworkListener.class));
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(1),
+                any(MoPubNativeNetworkListener.class));
+        assertThat(subject.mRequestsInFlight).isEqualTo(2);
+    }
+
+    @Test
+    public void onNativeLoad_withRequestsFinishingOutOfOrder_shouldMeasureEachFromItsOwnStart() {
+        subject.mAverageDequeueIntervalMillis = 500;
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setCacheLimits(4, 1);
+        ShadowSystemClock.sleep(3000);
+        subject.setCacheLimits(4, 2);
+        ShadowSystemClock.sleep(1000);
+        final ArgumentCaptor<MoPubNativeNetworkListener> firstListener =
+                ArgumentCaptor.forClass(MoPubNativeNetworkListener.class);
+        final ArgumentCaptor<MoPubNativeNetworkListener> secondListener =
+                ArgumentCaptor.forClass(MoPubNativeNetworkListener.class);
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(0),
+                firstListener.capture());
+        verify(mockMoPubNative).makeRequest(any(RequestParameters.class), eq(1),
+                secondListener.capture());
+
+        // The second request finishes first, 1 second after it started.
+        secondListener.getValue().onNativeLoad(mMockNativeAd);
+        assertThat(subject.mAverageLoadTimeMillis).isEqualTo(1000);
+
+        // The first request took 4 seconds.
+        firstListener.getValue().onNativeLoad(mMockNativeAd);
+        assertThat(subject.mAverageLoadTimeMillis).isEqualTo((3 * 1000 + 4000) / 4);
+    }
+
+    @Test
+    public void setCacheLimits_withInvalidValues_shouldNotChangeLimits() {
+        subject.setCacheLimits(0, 1);
+        subject.setCacheLimits(2, 3);
+        subject.setCacheLimits(NativeAdSource.MAX_CACHE_LIMIT + 1, 1);
+        subject.mAverageDequeueIntervalMillis = 100;
+
+        assertThat(subject.getTargetCacheSize()).isEqualTo(NativeAdSource.DEFAULT_CACHE_LIMIT);
+    }
+
+    @Test
+    public void getTargetCacheSize_withNoDequeues_shouldReturnOne() {
+        subject.setCacheLimits(5, 5);
+
+        assertThat(subject.getTargetCacheSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void getTargetCacheSize_shouldCoverDequeuesDuringOneLoad() {
+        subject.setCacheLimits(10, 2);
+        subject.mAverageLoadTimeMillis = 1500;
+        subject.mAverageDequeueIntervalMillis = 500;
+
+        // 3 dequeues while a request is in flight, plus the one being dequeued
+        assertThat(subject.getTargetCacheSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void getTargetCacheSize_shouldNotExceedCacheLimit() {
+        subject.setCacheLimits(3, 1);
+        subject.mAverageLoadTimeMillis = 5000;
+        subject.mAverageDequeueIntervalMillis = 100;
+
+        assertThat(subject.getTargetCacheSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void getTargetCacheSize_shouldNotPrefetchAdsThatWouldExpireBeforeDequeue() {
+        subject.setCacheLimits(10, 1);
+        subject.mAverageLoadTimeMillis = 20 * 60 * 1000;
+        subject.mAverageDequeueIntervalMillis = 6 * 60 * 1000;
+
+        // Only 2 ads can be dequeued within the 15 minute expiration
+        assertThat(subject.getTargetCacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void dequeueAd_shouldCountHitsMissesAndExpiredAds() {
+        subject.setMoPubNative(mockMoPubNative);
+        TimestampWrapper<NativeAd> staleWrapper = new TimestampWrapper<NativeAd>(
+                mock(NativeAd.class));
+        staleWrapper.mCreatedTimestamp = SystemClock.uptimeMillis() - (15*60*1000+1);
+        nativeAdCache.add(staleWrapper);
+        nativeAdCache.add(new TimestampWrapper<NativeAd>(mMockNativeAd));
+
+        assertThat(subject.dequeueAd()).isEqualTo(mMockNativeAd);
+        assertThat(subject.dequeueAd()).isNull();
+
+        assertThat(subject.getCacheHitCount()).isEqualTo(1);
+        assertThat(subject.getCacheMissCount()).isEqualTo(1);
+        assertThat(subject.getExpiredCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void moPubNativeNetworkListener_onNativeFail_withRetryAlreadyScheduled_shouldNotPostAnotherRetry() {
+        subject.mRequestsInFlight = 2;
+        subject.mRetryInFlight = true;
+
+        subject.getMoPubNativeNetworkListener().onNativeFail(NativeErrorCode.UNSPECIFIED);
+
+        assertThat(subject.mRequestsInFlight).isEqualTo(1);
+        verify(mockReplenishCacheHandler, never()).postDelayed(any(Runnable.class), anyLong());
+    }
+    @Test
+    public void moPubNativeNetworkListener_onNativeLoad_withResponseCache_shouldPersistCachedResponses() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        final AdResponse adResponse = createStaticNativeAdResponse(DateAndTime.now().getTime());
+        when(mMockNativeAd.getAdResponse()).thenReturn(adResponse);
+
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
+
+        verify(mockResponseCache, never()).save(any(String.class), any(List.class));
+        runPersistCachedResponsesRunnable();
+        verify(mockResponseCache).save("adUnitId", Arrays.asList(adResponse));
+    }
+
+    @Test
+    public void dequeueAd_withResponseCache_shouldPersistRemainingResponses() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        nativeAdCache.add(new TimestampWrapper<NativeAd>(mMockNativeAd));
+
+        subject.dequeueAd();
+
+        verify(mockResponseCache).save("adUnitId", new ArrayList<AdResponse>());
+        verify(mockReplenishCacheHandler, never()).postDelayed(any(Runnable.class),
+                eq(NativeAdSource.PERSIST_DELAY_MILLISECONDS));
+    }
+
+    @Test
+    public void dequeueAd_withPersistPending_shouldWriteOnceWithoutDequeuedAd() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        when(mMockNativeAd.getAdResponse()).thenReturn(
+                createStaticNativeAdResponse(DateAndTime.now().getTime()));
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
+
+        subject.dequeueAd();
+
+        verify(mockResponseCache).save("adUnitId", new ArrayList<AdResponse>());
+        verify(mockReplenishCacheHandler).removeCallbacks(any(Runnable.class));
+    }
+
+    @Test
+    public void persistCachedResponses_withSeveralLoads_shouldWriteOnce() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        when(mMockNativeAd.getAdResponse()).thenReturn(
+                createStaticNativeAdResponse(DateAndTime.now().getTime()));
+
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
+
+        runPersistCachedResponsesRunnable();
+        verify(mockResponseCache).save(eq("adUnitId"), any(List.class));
+    }
+
+    @Test
+    public void clear_withPersistPending_shouldWriteCachedResponsesBeforeDestroyingAds() {
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        final AdResponse adResponse = createStaticNativeAdResponse(DateAndTime.now().getTime());
+        when(mMockNativeAd.getAdResponse()).thenReturn(adResponse);
+        subject.getMoPubNativeNetworkListener().onNativeLoad(mMockNativeAd);
+
+        subject.clear();
+
+        verify(mockResponseCache).save("adUnitId", Arrays.asList(adResponse));
+        verify(mMockNativeAd).destroy();
+    }
+
+    @Test
+    public void restoreCachedResponses_shouldLoadPersistedResponsesWithoutAdRequest() {
+        final MoPubNative mockRestoreMoPubNative = mock(MoPubNative.class);
+        final AdResponse adResponse = createStaticNativeAdResponse(DateAndTime.now().getTime());
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+
+        subject.restoreCachedResponses(mockRestoreMoPubNative);
+
+        final ArgumentCaptor<Listener> listenerCaptor = ArgumentCaptor.forClass(Listener.class);
+        verify(mockResponseCache).load(eq("adUnitId"), listenerCaptor.capture());
+        listenerCaptor.getValue().onResponsesLoaded(Arrays.asList(adResponse));
+
+        verify(mockRestoreMoPubNative).registerAdRenderer(mockRenderer);
+        verify(mockRestoreMoPubNative).loadNativeAd(adResponse);
+        verify(mockMoPubNative, never()).makeRequest(any(RequestParameters.class),
+                any(Integer.class), any(MoPubNativeNetworkListener.class));
+    }
+
+    @Test
+    public void restoreCachedResponses_withMoreResponsesThanCacheLimit_shouldOnlyLoadCacheLimit() {
+        final MoPubNative mockRestoreMoPubNative = mock(MoPubNative.class);
+        final AdResponse adResponse1 = createStaticNativeAdResponse(DateAndTime.now().getTime());
+        final AdResponse adResponse2 = createStaticNativeAdResponse(DateAndTime.now().getTime());
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+
+        subject.restoreCachedResponses(mockRestoreMoPubNative);
+
+        final ArgumentCaptor<Listener> listenerCaptor = ArgumentCaptor.forClass(Listener.class);
+        verify(mockResponseCache).load(eq("adUnitId"), listenerCaptor.capture());
+        listenerCaptor.getValue().onResponsesLoaded(Arrays.asList(adResponse1, adResponse2));
+
+        verify(mockRestoreMoPubNative).loadNativeAd(adResponse1);
+        verify(mockRestoreMoPubNative, never()).loadNativeAd(adResponse2);
+    }
+
+    @Test
+    public void restoredAd_withFullCache_shouldDestroyAd() {
+        final MoPubNative mockRestoreMoPubNative = mock(MoPubNative.class);
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        subject.restoreCachedResponses(mockRestoreMoPubNative);
+        nativeAdCache.add(new TimestampWrapper<NativeAd>(mock(NativeAd.class)));
+
+        subject.getRestoredAdNetworkListener().onNativeLoad(mMockNativeAd);
+
+        assertThat(nativeAdCache).hasSize(1);
+        verify(mMockNativeAd).destroy();
+    }
+
+    @Test
+    public void restoreCachedResponses_withSourceClearedBeforeLoad_shouldDropResponses() {
+        final MoPubNative mockRestoreMoPubNative = mock(MoPubNative.class);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        subject.restoreCachedResponses(mockRestoreMoPubNative);
+        subject.clear();
+
+        final ArgumentCaptor<Listener> listenerCaptor = ArgumentCaptor.forClass(Listener.class);
+        verify(mockResponseCache).load(eq("adUnitId"), listenerCaptor.capture());
+        listenerCaptor.getValue().onResponsesLoaded(
+                Arrays.asList(createStaticNativeAdResponse(DateAndTime.now().getTime())));
+
+        verify(mockRestoreMoPubNative).destroy();
+        verify(mockRestoreMoPubNative, never()).loadNativeAd(any(AdResponse.class));
+    }
+
+    @Test
+    public void restoredAd_shouldKeepItsOriginalAge() {
+        final MoPubNative mockRestoreMoPubNative = mock(MoPubNative.class);
+        subject.setMoPubNative(mockMoPubNative);
+        subject.setResponseCache(mockResponseCache, "adUnitId");
+        subject.restoreCachedResponses(mockRestoreMoPubNative);
+        final MoPubNative.MoPubNativeNetworkListener restoredAdListener =
+                subject.getRestoredAdNetworkListener();
+
+        // Persisted 14 minutes ago, so it expires in one minute.
+        final AdResponse adResponse = createStaticNativeAdResponse(
+                DateAndTime.now().getTime() - 14 * 60 * 1000);
+        when(mMockNativeAd.getAdResponse()).thenReturn(adResponse);
+        restoredAdListener.onNativeLoad(mMockNativeAd);
+
+        assertThat(nativeAdCache).hasSize(1);
+        verify(mockAdSourceListener).onAdsAvailable();
+        ShadowSystemClock.sleep(61 * 1000);
+        assertThat(subject.dequeueAd()).isNull();
+        assertThat(subject.getExpiredCount()).isEqualTo(1);
+    }
+
+    private void runPersistCachedResponsesRunnable() {
+        final ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockReplenishCacheHandler).postDelayed(runnableCaptor.capture(),
+                eq(NativeAdSource.PERSIST_DELAY_MILLISECONDS));
+        runnableCaptor.getValue().run();
+    }
+
+    private static AdResponse createStaticNativeAdResponse(final long timestamp) {
+        return new AdResponse.Builder()
+                .setAdType(AdType.STATIC_NATIVE)
+                .setJsonBody(new JSONObject())
+                .setTimestamp(timestamp)
+                .build();
+    }
 }
@@ -7,10 +7,13 @@ import android.view.View;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import com.mopub.common.ClickUrlPreResolver;
+import com.mopub.common.MoPub;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.common.util.Utils;
 import com.mopub.mobileads.BuildConfig;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -56,6 +59,12 @@ public class NativeClickHandlerTest {
         relativeLayout2.addView(relativeLayout);
     }
 
+    @After
+    public void tearDown() {
+        MoPub.setClickUrlPreResolutionEnabled(false);
+        ClickUrlPreResolver.clearForTesting();
+    }
+
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
     @Test
     public void setOnClickListener_shouldSetClickListenerOnViewHierarchy() {
@@ -136,4 +145,28 @@ public class NativeClickHandlerTest {
         Robolectric.getBackgroundThreadScheduler().unPause();
         verify(mockSpinningProgressView, never()).removeFromRoot();
     }
+
+    @Test
+    public void handleClick_withPreResolvedClickDestinationUrl_shouldNotShowSpinner() {
+        MoPub.setClickUrlPreResolutionEnabled(true);
+        subject.preResolveClickDestinationUrl("market://details?id=com.mopub.simpleadsdemo");
+
+        subject.openClickDestinationUrl("market://details?id=com.mopub.simpleadsdemo", mockView,
+                mockSpinningProgressView);
+
+        verifyNoMoreInteractions(mockSpinningProgressView);
+    }
+
+    @Test
+    public void handleClick_withPreResolutionDisabled_shouldShowSpinner() {
+        subject.preResolveClickDestinationUrl("market://details?id=com.mopub.simpleadsdemo");
+        Robolectric.getBackgroundThreadScheduler().pause();
+
+        subject.openClickDestinationUrl("market://details?id=com.mopub.simpleadsdemo", mockView,
+                mockSpinningProgressView);
+
+        verify(mockSpinningProgressView).addToRoot(mockView);
+        Robolectric.getBackgroundThreadScheduler().unPause();
+        verify(mockSpinningProgressView).removeFromRoot();
+    }
 }
@@ -17,7 +17,7 @@ import com.google.android.exoplayer.MediaCodecAudioTrackRenderer;
 import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
-import com.mopub.mobileads.VastTracker;
+import com.mopub.mobileads.VastAbsoluteProgressTracker;
 import com.mopub.mobileads.VastVideoConfig;
 import com.mopub.nativeads.NativeVideoController.ExoPlayerFactory;
 import com.mopub.nativeads.NativeVideoController.Listener;
@@ -39,7 +39,6 @@ import org.robolectric.annotation.Config;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
-import java.util.List;
 
 import static com.mopub.common.VolleyRequestMatcher.isUrl;
 import static com.mopub.nativeads.NativeVideoController.STATE_BUFFERING;
@@ -526,10 +525,12 @@ public class NativeVideoControllerTest {
         when(mockExoPlayer.getDuration()).thenReturn(25L);
         when(mockExoPlayer.getPlayWhenReady()).thenReturn(true);
 
-        VastTracker vastTracker = new VastTracker("vastTrackingUrl");
-        List<VastTracker> vastTrackers = new ArrayList<VastTracker>();
+        VastAbsoluteProgressTracker vastTracker =
+                new VastAbsoluteProgressTracker("vastTrackingUrl", 10);
+        ArrayList<VastAbsoluteProgressTracker> vastTrackers =
+                new ArrayList<VastAbsoluteProgressTracker>();
         vastTrackers.add(vastTracker);
-        when(mockVastVideoConfig.getUntriggeredTrackersBefore(10, 25)).thenReturn(vastTrackers);
+        when(mockVastVideoConfig.getAbsoluteTrackers()).thenReturn(vastTrackers);
 
         nativeVideoProgressRunnable.doWork();
 
@@ -548,10 +549,12 @@ public class NativeVideoControllerTest {
         when(mockExoPlayer.getDuration()).thenReturn(25L);
         when(mockExoPlayer.getPlayWhenReady()).thenReturn(true);
 
-        VastTracker vastTracker = new VastTracker("vastTrackingUrl");
-        List<VastTracker> vastTrackers = new ArrayList<VastTracker>();
+        VastAbsoluteProgressTracker vastTracker =
+                new VastAbsoluteProgressTracker("vastTrackingUrl", 10);
+        ArrayList<VastAbsoluteProgressTracker> vastTrackers =
+                new ArrayList<VastAbsoluteProgressTracker>();
         vastTrackers.add(vastTracker);
-        when(mockVastVideoConfig.getUntriggeredTrackersBefore(10, 25)).thenReturn(vastTrackers);
+        when(mockVastVideoConfig.getAbsoluteTrackers()).thenReturn(vastTrackers);
         nativeVideoProgressRunnable.setUpdateIntervalMillis(10);
 
         nativeVideoProgressRunnable.setExoPlayer(null);
@@ -572,10 +575,12 @@ public class NativeVideoControllerTest {
         when(mockExoPlayer.getDuration()).thenReturn(25L);
         when(mockExoPlayer.getPlayWhenReady()).thenReturn(false);
 
-        VastTracker vastTracker = new VastTracker("vastTrackingUrl");
-        List<VastTracker> vastTrackers = new ArrayList<VastTracker>();
+        VastAbsoluteProgressTracker vastTracker =
+                new VastAbsoluteProgressTracker("vastTrackingUrl", 10);
+        ArrayList<VastAbsoluteProgressTracker> vastTrackers =
+                new ArrayList<VastAbsoluteProgressTracker>();
         vastTrackers.add(vastTracker);
-        when(mockVastVideoConfig.getUntriggeredTrackersBefore(10, 25)).thenReturn(vastTrackers);
+        when(mockVastVideoConfig.getAbsoluteTrackers()).thenReturn(vastTrackers);
         nativeVideoProgressRunnable.setUpdateIntervalMillis(10);
 
         nativeVideoProgressRunnable.doWork();
@@ -796,6 +796,83 @@ public class PlacementDataTest {
         checkPlacedPositions(20, adsAt15repeating);
     }
 
+    @Test
+    public void insertItems_shouldMatchInsertingItemsOneAtATime() {
+        PlacementData expected = PlacementData.fromAdPositioning(
+                MoPubNativeAdPositioning.clientPositioning()
+                        .addFixedPosition(1)
+                        .addFixedPosition(5)
+                        .enableRepeatingPositions(3));
+        adsAt15repeating.placeAd(1, mMockNativeAd);
+        adsAt15repeating.placeAd(5, mMockNativeAd);
+        expected.placeAd(1, mMockNativeAd);
+        expected.placeAd(5, mMockNativeAd);
+
+        adsAt15repeating.insertItems(3, 50);
+        for (int i = 0; i < 50; i++) {
+            expected.insertItem(3);
+        }
+
+        checkPlacedPositions(100, adsAt15repeating, 1, 55);
+        checkSamePositions(100, adsAt15repeating, expected);
+    }
+
+    @Test
+    public void removeItems_shouldMatchRemovingItemsOneAtATime() {
+        PlacementData expected = PlacementData.fromAdPositioning(
+                MoPubNativeAdPositioning.clientPositioning()
+                        .addFixedPosition(1)
+                        .addFixedPosition(5)
+                        .enableRepeatingPositions(3));
+        for (int position : new int[] {1, 5, 8, 11, 14}) {
+            adsAt15repeating.placeAd(position, mMockNativeAd);
+            expected.placeAd(position, mMockNativeAd);
+        }
+
+        // Removes the items between several ads
+        adsAt15repeating.removeItems(2, 6);
+        for (int i = 0; i < 6; i++) {
+            expected.removeItem(2);
+        }
+
+        checkPlacedPositions(40, adsAt15repeating, 1, 3, 4, 5, 8);
+        checkSamePositions(40, adsAt15repeating, expected);
+    }
+
+    @Test
+    public void insertItems_withZeroCount_shouldNotMoveAds() {
+        adsAt15repeating.placeAd(1, mMockNativeAd);
+
+        adsAt15repeating.insertItems(0, 0);
+        adsAt15repeating.removeItems(0, 0);
+
+        checkPlacedPositions(20, adsAt15repeating, 1);
+        checkInsertionPositions(10, adsAt15repeating, 5, 7, 9);
+    }
+
+    @Test
+    public void placeAd_withRepeatingPositions_shouldNotLimitNumberOfAds() {
+        int position = adsRepeating.nextInsertionPosition(-1);
+        for (int i = 0; i < 1000; i++) {
+            adsRepeating.placeAd(position, mMockNativeAd);
+            position = adsRepeating.nextInsertionPosition(position);
+        }
+
+        assertThat(adsRepeating.getPlacedAdPositions()).hasSize(1000);
+        assertThat(adsRepeating.isPlacedAd(2999)).isTrue();
+        assertThat(adsRepeating.nextInsertionPosition(2999)).isEqualTo(3002);
+        assertThat(adsRepeating.getAdjustedCount(2000)).isEqualTo(2999);
+    }
+
+    void checkSamePositions(int maxValue, PlacementData actual, PlacementData expected) {
+        for (int i = 0; i <= maxValue; i++) {
+            assertThat(actual.isPlacedAd(i)).isEqualTo(expected.isPlacedAd(i));
+            assertThat(actual.shouldPlaceAd(i)).isEqualTo(expected.shouldPlaceAd(i));
+            assertThat(actual.getOriginalPosition(i)).isEqualTo(expected.getOriginalPosition(i));
+            assertThat(actual.getAdjustedPosition(i)).isEqualTo(expected.getAdjustedPosition(i));
+        }
+    }
+
     void checkInsertionPositions(int maxValue, PlacementData placementData, Integer... positions) {
         List<Integer> expected = Arrays.asList(positions);
         List<Integer> actual = new ArrayList<Integer>();
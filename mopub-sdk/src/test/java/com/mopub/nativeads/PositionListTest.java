@@ -0,0 +1,130 @@
+package com.mopub.nativeads;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class PositionListTest {
+    private PositionList subject;
+
+    @Before
+    public void setUp() {
+        subject = new PositionList();
+    }
+
+    @Test
+    public void add_shouldAppendPositions_shouldGrowPastInitialCapacity() {
+        for (int i = 0; i < 100; i++) {
+            subject.add(i * 3);
+        }
+
+        assertThat(subject.size()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(subject.get(i)).isEqualTo(i * 3);
+        }
+        assertThat(subject.last()).isEqualTo(297);
+    }
+
+    @Test
+    public void add_withPositionBeforeLast_shouldStillStorePosition() {
+        subject.add(5);
+        subject.add(4);
+
+        assertThat(subject.toArray()).isEqualTo(new int[] {5, 4});
+    }
+
+    @Test
+    public void indexOfFirstAtLeast_shouldSkipDuplicates() {
+        subject.setAll(new int[] {1, 4, 4, 4, 9}, 5);
+
+        assertThat(subject.indexOfFirstAtLeast(0)).isEqualTo(0);
+        assertThat(subject.indexOfFirstAtLeast(1)).isEqualTo(0);
+        assertThat(subject.indexOfFirstAtLeast(2)).isEqualTo(1);
+        assertThat(subject.indexOfFirstAtLeast(4)).isEqualTo(1);
+        assertThat(subject.indexOfFirstAtLeast(5)).isEqualTo(4);
+        assertThat(subject.indexOfFirstAtLeast(10)).isEqualTo(5);
+        assertThat(subject.indexOfFirstGreaterThan(4)).isEqualTo(4);
+        assertThat(subject.indexOfFirstGreaterThan(Integer.MAX_VALUE)).isEqualTo(5);
+        assertThat(subject.indexOf(4)).isEqualTo(1);
+        assertThat(subject.indexOf(5)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shift_shouldShiftPositionsFromIndexOn() {
+        subject.setAll(new int[] {1, 4, 6, 9}, 4);
+
+        subject.shift(2, 5);
+        subject.shift(1, -3);
+
+        assertThat(subject.toArray()).isEqualTo(new int[] {1, 1, 8, 11});
+        assertThat(subject.indexOfFirstAtLeast(1)).isEqualTo(0);
+        assertThat(subject.indexOfFirstAtLeast(2)).isEqualTo(2);
+    }
+
+    @Test
+    public void addAtIndex_thenRemove_shouldKeepOtherPositions() {
+        subject.setAll(new int[] {1, 4, 6, 9}, 4);
+
+        subject.add(2, 5);
+        assertThat(subject.toArray()).isEqualTo(new int[] {1, 4, 5, 6, 9});
+
+        subject.remove(0);
+        assertThat(subject.toArray()).isEqualTo(new int[] {4, 5, 6, 9});
+
+        subject.add(4, 10);
+        assertThat(subject.toArray()).isEqualTo(new int[] {4, 5, 6, 9, 10});
+    }
+
+    @Test
+    public void remove_withFirstIndex_shouldKeepSearchesAndShiftsConsistent() {
+        for (int i = 0; i < 20; i++) {
+            subject.add(i * 2);
+        }
+
+        for (int i = 0; i < 15; i++) {
+            subject.remove(0);
+            subject.shift(0, -2);
+            subject.add(40);
+        }
+
+        // Removed positions are shifted along with the list, so they never get past its start
+        assertThat(subject.size()).isEqualTo(20);
+        assertThat(subject.get(0)).isEqualTo(0);
+        assertThat(subject.last()).isEqualTo(40);
+        assertThat(subject.indexOfFirstAtLeast(0)).isEqualTo(0);
+        assertThat(subject.indexOfFirstAtLeast(9)).isEqualTo(5);
+        assertThat(subject.indexOf(10)).isEqualTo(-1);
+        assertThat(subject.indexOf(12)).isEqualTo(5);
+        assertThat(subject.toArray()).isEqualTo(new int[] {
+                0, 2, 4, 6, 8, 12, 14, 16, 18, 20, 22, 24, 26, 28, 30, 32, 34, 36, 38, 40});
+    }
+
+    @Test
+    public void setAll_shouldOnlyUseCount_shouldMatchAppendedPositions() {
+        final int[] positions = new int[50];
+        final PositionList appended = new PositionList();
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i * i;
+            appended.add(i * i);
+        }
+
+        subject.setAll(positions, 40);
+
+        assertThat(subject.size()).isEqualTo(40);
+        for (int i = 0; i < 40; i++) {
+            assertThat(subject.get(i)).isEqualTo(appended.get(i));
+        }
+
+        subject.clear();
+        assertThat(subject.size()).isEqualTo(0);
+        assertThat(subject.indexOfFirstAtLeast(0)).isEqualTo(0);
+    }
+}
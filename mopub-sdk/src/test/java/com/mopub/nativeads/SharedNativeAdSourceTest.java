@@ -0,0 +1,362 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import static com.mopub.nativeads.NativeAdSourceRegistry.SharedEntry;
+import static com.mopub.nativeads.StreamAdSource.AdSourceListener;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class SharedNativeAdSourceTest {
+    private static final String AD_UNIT_ID = "adUnitId";
+
+    private Activity activity1;
+    private Activity activity2;
+    private SharedEntry sharedEntry;
+    private SharedNativeAdSource subject1;
+    private SharedNativeAdSource subject2;
+
+    @Mock private NativeAdSource mockAdSource;
+    @Mock private AdSourceListener mockListener1;
+    @Mock private AdSourceListener mockListener2;
+    @Mock private MoPubStaticNativeAdRenderer mockRenderer1;
+    @Mock private MoPubStaticNativeAdRenderer mockRenderer2;
+    @Mock private BaseNativeAd mockBaseNativeAd;
+    @Mock private NativeAd mockNativeAd;
+    @Mock private RequestParameters mockRequestParameters;
+
+    @Before
+    public void setUp() {
+        // XXX We need this to ensure that our SystemClock starts
+        ShadowSystemClock.uptimeMillis();
+        activity1 = Robolectric.buildActivity(Activity.class).create().get();
+        activity2 = Robolectric.buildActivity(Activity.class).create().get();
+
+        sharedEntry = new SharedEntry(AD_UNIT_ID, mockAdSource);
+        NativeAdSourceRegistry.putEntry(sharedEntry);
+
+        subject1 = new SharedNativeAdSource();
+        subject1.registerAdRenderer(mockRenderer1);
+        subject1.setAdSourceListener(mockListener1);
+
+        subject2 = new SharedNativeAdSource();
+        subject2.registerAdRenderer(mockRenderer2);
+        subject2.setAdSourceListener(mockListener2);
+
+        when(mockNativeAd.getBaseNativeAd()).thenReturn(mockBaseNativeAd);
+        when(mockNativeAd.getMoPubAdRenderer()).thenReturn(mockRenderer1);
+        when(mockRenderer1.supports(mockBaseNativeAd)).thenReturn(true);
+        when(mockRenderer2.supports(mockBaseNativeAd)).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        NativeAdSourceRegistry.clearEntries();
+    }
+
+    @Test
+    public void loadAds_withFirstPlacer_shouldLoadSharedSource() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+
+        verify(mockAdSource).loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        verify(mockAdSource).registerAdRenderer(mockRenderer1);
+        assertThat(sharedEntry.getAttachedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void loadAds_withSecondPlacer_shouldShareSource_shouldNotReloadAds() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+
+        verify(mockAdSource).loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        verify(mockAdSource, never()).loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+        assertThat(subject2.getSharedEntry()).isSameAs(subject1.getSharedEntry());
+        assertThat(sharedEntry.getAttachedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void loadAds_withSecondPlacer_withRendererOfSameType_shouldNotRegisterRendererTwice() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+
+        verify(mockAdSource).registerAdRenderer(mockRenderer1);
+        verify(mockAdSource, never()).registerAdRenderer(mockRenderer2);
+    }
+
+    @Test
+    public void loadAds_withSecondPlacer_withCachedAds_shouldNotifyAdsAvailable() {
+        when(mockAdSource.getCachedAdCount()).thenReturn(1);
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+
+        verify(mockListener2).onAdsAvailable();
+    }
+
+    @Test
+    public void onAdsAvailable_shouldNotifyWaitingPlacersFirst() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        subject2.dequeueAd();
+
+        final AdSourceListener[] notified = new AdSourceListener[2];
+        subject1.setAdSourceListener(new AdSourceListener() {
+            @Override
+            public void onAdsAvailable() {
+                notified[notified[0] == null ? 0 : 1] = mockListener1;
+            }
+        });
+        subject2.setAdSourceListener(new AdSourceListener() {
+            @Override
+            public void onAdsAvailable() {
+                notified[notified[0] == null ? 0 : 1] = mockListener2;
+            }
+        });
+        // Simulate the shared source announcing a new ad.
+        when(mockAdSource.getCachedAdCount()).thenReturn(1);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+        sharedEntryListener().onAdsAvailable();
+
+        assertThat(notified[0]).isEqualTo(mockListener2);
+        assertThat(notified[1]).isEqualTo(mockListener1);
+    }
+
+    @Test
+    public void onAdsAvailable_withWaitingPlacer_shouldReserveAdForWaitingPlacer() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        assertThat(subject2.dequeueAd()).isNull();
+
+        // One ad arrives and is handed to subject2, which asked first.
+        when(mockAdSource.getCachedAdCount()).thenReturn(1, 0);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+        sharedEntryListener().onAdsAvailable();
+
+        verify(mockListener2).onAdsAvailable();
+        verify(mockListener1, never()).onAdsAvailable();
+        assertThat(sharedEntry.getReservedAdCount()).isEqualTo(1);
+        assertThat(subject1.dequeueAd()).isNull();
+        assertThat(subject2.dequeueAd()).isSameAs(mockNativeAd);
+        assertThat(sharedEntry.getReservedAdCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dequeueAd_withReservationUnclaimedPastTimeout_shouldTakeReservedAd() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        subject2.dequeueAd();
+        when(mockAdSource.getCachedAdCount()).thenReturn(1, 0);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+        sharedEntryListener().onAdsAvailable();
+
+        // subject2 stops asking for ads, so its reservation mustn't starve subject1.
+        ShadowSystemClock.sleep(SharedEntry.RESERVATION_TIMEOUT_MILLISECONDS);
+
+        assertThat(subject1.dequeueAd()).isSameAs(mockNativeAd);
+        assertThat(subject2.dequeueAd()).isNull();
+    }
+
+    @Test
+    public void dequeueAd_withExpiredReservation_shouldDestroyAd_shouldReturnNull() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        subject1.dequeueAd();
+        when(mockAdSource.getCachedAdCount()).thenReturn(1, 0);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+        sharedEntryListener().onAdsAvailable();
+
+        ShadowSystemClock.sleep(NativeAdSource.EXPIRATION_TIME_MILLISECONDS);
+
+        assertThat(subject1.dequeueAd()).isNull();
+        verify(mockNativeAd).destroy();
+    }
+
+    @Test
+    public void dequeueAd_withReservationOfNearlyExpiredAd_shouldExpireAdOnSchedule() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        subject1.dequeueAd();
+        final TimestampWrapper<NativeAd> timestampWrapper =
+                new TimestampWrapper<NativeAd>(mockNativeAd);
+        ShadowSystemClock.sleep(NativeAdSource.EXPIRATION_TIME_MILLISECONDS - 1000);
+        when(mockAdSource.getCachedAdCount()).thenReturn(1, 0);
+        when(mockAdSource.dequeueTimestampedAd()).thenReturn(timestampWrapper);
+        sharedEntryListener().onAdsAvailable();
+        assertThat(sharedEntry.getReservedAdCount()).isEqualTo(1);
+
+        // The ad expires when it would have in the cache, not an expiry period after reserving.
+        ShadowSystemClock.sleep(1000);
+
+        assertThat(subject1.dequeueAd()).isNull();
+        verify(mockNativeAd).destroy();
+        assertThat(sharedEntry.getReservedAdCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void dequeueAd_withAdForOwnRenderer_shouldReturnSameAd() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(1);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+
+        assertThat(subject1.dequeueAd()).isSameAs(mockNativeAd);
+    }
+
+    @Test
+    public void dequeueAd_withAdForOtherPlacersRenderer_shouldRewrapWithOwnRenderer() {
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+        final NativeAd nativeAd = new NativeAd(activity1, "impressionUrl", "clickUrl",
+                AD_UNIT_ID, mockBaseNativeAd, mockRenderer1);
+        when(mockAdSource.getCachedAdCount()).thenReturn(1);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(nativeAd));
+
+        final NativeAd dequeued = subject2.dequeueAd();
+
+        assertThat(dequeued.getMoPubAdRenderer()).isSameAs(mockRenderer2);
+        assertThat(dequeued.getBaseNativeAd()).isSameAs(mockBaseNativeAd);
+    }
+
+    @Test
+    public void dequeueAd_withNoSupportingRenderer_shouldDestroyAd_shouldReturnNull() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        when(mockRenderer1.supports(mockBaseNativeAd)).thenReturn(false);
+        when(mockAdSource.getCachedAdCount()).thenReturn(1);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+
+        assertThat(subject1.dequeueAd()).isNull();
+        verify(mockNativeAd).destroy();
+    }
+
+    @Test
+    public void dequeueAd_withoutLoadAds_shouldReturnNull() {
+        assertThat(subject1.dequeueAd()).isNull();
+        verify(mockAdSource, never()).dequeueTimestampedAd();
+    }
+
+    @Test
+    public void clear_withOtherPlacersAttached_shouldNotClearSharedSource() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+
+        subject2.clear();
+
+        verify(mockAdSource, never()).clear();
+        assertThat(sharedEntry.getAttachedCount()).isEqualTo(1);
+        assertThat(NativeAdSourceRegistry.getEntry(AD_UNIT_ID)).isSameAs(sharedEntry);
+    }
+
+    @Test
+    public void clear_withOwnerPlacer_shouldSwitchSharedSourceToNextActivity() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+
+        subject1.clear();
+
+        verify(mockAdSource).switchActivity(activity2, AD_UNIT_ID);
+        verify(mockAdSource, never()).clear();
+    }
+
+    @Test
+    public void clear_withLastPlacer_shouldClearSharedSource_shouldRemoveRegistryEntry() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+
+        subject1.clear();
+        subject2.clear();
+
+        verify(mockAdSource).clear();
+        assertThat(NativeAdSourceRegistry.getEntry(AD_UNIT_ID)).isNull();
+    }
+
+    @Test
+    public void clear_withReservedAd_shouldLetOtherPlacerTakeAd() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        subject2.loadAds(activity2, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        subject2.dequeueAd();
+        when(mockAdSource.getCachedAdCount()).thenReturn(1, 0);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+        sharedEntryListener().onAdsAvailable();
+
+        subject2.clear();
+
+        verify(mockListener1).onAdsAvailable();
+        verify(mockNativeAd, never()).destroy();
+        assertThat(subject1.dequeueAd()).isSameAs(mockNativeAd);
+    }
+
+    @Test
+    public void clear_withLastPlacer_withReservedAd_shouldDestroyAd() {
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+        when(mockAdSource.getCachedAdCount()).thenReturn(0);
+        subject1.dequeueAd();
+        when(mockAdSource.getCachedAdCount()).thenReturn(1, 0);
+        when(mockAdSource.dequeueTimestampedAd())
+                .thenReturn(new TimestampWrapper<NativeAd>(mockNativeAd));
+        sharedEntryListener().onAdsAvailable();
+
+        subject1.clear();
+
+        verify(mockNativeAd).destroy();
+        assertThat(sharedEntry.getReservedAdCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void loadAds_withDifferentAdUnit_shouldDetachFromPreviousSource() {
+        final NativeAdSource otherAdSource = mock(NativeAdSource.class);
+        NativeAdSourceRegistry.putEntry(new SharedEntry("otherAdUnitId", otherAdSource));
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+
+        subject1.loadAds(activity1, "otherAdUnitId", mockRequestParameters);
+
+        verify(mockAdSource).clear();
+        verify(otherAdSource).loadAds(activity1, "otherAdUnitId", mockRequestParameters);
+        assertThat(subject1.getSharedEntry().getAdUnitId()).isEqualTo("otherAdUnitId");
+    }
+
+    @Test
+    public void setCacheLimits_beforeLoadAds_shouldApplyToSharedSourceOnLoad() {
+        subject1.setCacheLimits(4, 2);
+        verify(mockAdSource, never()).setCacheLimits(any(Integer.class), any(Integer.class));
+
+        subject1.loadAds(activity1, AD_UNIT_ID, mockRequestParameters);
+
+        verify(mockAdSource).setCacheLimits(4, 2);
+    }
+
+    private AdSourceListener sharedEntryListener() {
+        final ArgumentCaptor<AdSourceListener> captor =
+                ArgumentCaptor.forClass(AdSourceListener.class);
+        verify(mockAdSource).setAdSourceListener(captor.capture());
+        return captor.getValue();
+    }
+}
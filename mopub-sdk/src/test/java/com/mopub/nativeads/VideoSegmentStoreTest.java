@@ -0,0 +1,229 @@
+package com.mopub.nativeads;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.mopub.common.CacheService;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class VideoSegmentStoreTest {
+    private static final String KEY = "https://www.someurl";
+
+    private Context context;
+    private File directory;
+    private VideoSegmentStore subject;
+
+    @Before
+    public void setUp() throws Exception {
+        context = Robolectric.buildActivity(Activity.class).create().get();
+        directory = VideoSegmentStore.getDirectory(context);
+        VideoSegmentStore.clearForTesting();
+        subject = VideoSegmentStore.open(directory, KEY);
+    }
+
+    @Test
+    public void open_withNewKey_shouldHaveNoIntervals_shouldHaveNoExpectedLength() throws Exception {
+        final TreeSet<IntInterval> intervals = new TreeSet<IntInterval>();
+        intervals.add(new IntInterval(1, 2));
+
+        subject.readIntervals(intervals);
+
+        assertThat(intervals).isEmpty();
+        assertThat(subject.getExpectedLength()).isNull();
+    }
+
+    @Test
+    public void writeIndex_shouldBeReadBackByNextStore() throws Exception {
+        subject.setExpectedLength(5000);
+        subject.writeIndex(intervals(new IntInterval(0, 44), new IntInterval(1000, 200)));
+        subject.close();
+
+        final VideoSegmentStore store = VideoSegmentStore.open(directory, KEY);
+        final TreeSet<IntInterval> intervals = new TreeSet<IntInterval>();
+        store.readIntervals(intervals);
+
+        assertThat(store.getExpectedLength()).isEqualTo(5000);
+        assertThat(intervals).containsExactly(new IntInterval(0, 44), new IntInterval(1000, 200));
+    }
+
+    @Test
+    public void open_withCorruptedIndex_shouldHaveNoIntervals() throws Exception {
+        subject.setExpectedLength(5000);
+        subject.writeIndex(intervals(new IntInterval(0, 44)));
+        subject.close();
+        final File indexFile = getFileWithExtension(VideoSegmentStore.INDEX_EXTENSION);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "rw");
+        // Flip a byte of the first interval
+        randomAccessFile.seek(20);
+        randomAccessFile.write(0x7F);
+        randomAccessFile.close();
+
+        final VideoSegmentStore store = VideoSegmentStore.open(directory, KEY);
+        final TreeSet<IntInterval> intervals = new TreeSet<IntInterval>();
+        store.readIntervals(intervals);
+
+        assertThat(intervals).isEmpty();
+        assertThat(store.getExpectedLength()).isNull();
+    }
+
+    @Test
+    public void open_withTruncatedIndex_shouldHaveNoIntervals() throws Exception {
+        final File indexFile = new File(directory,
+                getFileWithExtension(VideoSegmentStore.DATA_EXTENSION).getName()
+                        .replace(VideoSegmentStore.DATA_EXTENSION,
+                                VideoSegmentStore.INDEX_EXTENSION));
+        final FileOutputStream outputStream = new FileOutputStream(indexFile);
+        outputStream.write(new byte[] {0x4D, 0x50});
+        outputStream.close();
+
+        final VideoSegmentStore store = VideoSegmentStore.open(directory, KEY);
+        final TreeSet<IntInterval> intervals = new TreeSet<IntInterval>();
+        store.readIntervals(intervals);
+
+        assertThat(intervals).isEmpty();
+    }
+
+    @Test
+    public void setExpectedLength_shouldPreSizeDataFile() throws Exception {
+        subject.setExpectedLength(123456);
+
+        assertThat(getFileWithExtension(VideoSegmentStore.DATA_EXTENSION).length())
+                .isEqualTo(123456);
+    }
+
+    @Test
+    public void setExpectedLength_shouldReserveStoreSizeFromDiskCacheBudget() throws Exception {
+        CacheService.initialize(context);
+        final long maxSizeBefore = CacheService.getDiskLruCache().getMaxSize();
+
+        subject.setExpectedLength(123456);
+
+        assertThat(CacheService.getDiskLruCache().getMaxSize()).isEqualTo(maxSizeBefore - 123456);
+    }
+
+    @Test
+    public void open_withLegacyVideoInDiskCache_shouldDeleteIt() throws Exception {
+        final String key = "https://www.otherurl";
+        CacheService.initialize(context);
+        CacheService.putToDiskCache(VideoSegmentStore.LEGACY_EXPECTED_LENGTH_KEY_PREFIX + key,
+                String.valueOf(3 * VideoSegmentStore.LEGACY_SEGMENT_SIZE).getBytes());
+        CacheService.putToDiskCache(VideoSegmentStore.LEGACY_INTERVALS_KEY_PREFIX + key,
+                "[]".getBytes());
+        // The middle segment was never downloaded
+        CacheService.putToDiskCache("0" + key, new byte[10]);
+        CacheService.putToDiskCache("2" + key, new byte[10]);
+
+        VideoSegmentStore.open(directory, key).close();
+
+        assertThat(CacheService.containsKeyDiskCache(
+                VideoSegmentStore.LEGACY_EXPECTED_LENGTH_KEY_PREFIX + key)).isFalse();
+        assertThat(CacheService.containsKeyDiskCache(
+                VideoSegmentStore.LEGACY_INTERVALS_KEY_PREFIX + key)).isFalse();
+        assertThat(CacheService.containsKeyDiskCache("0" + key)).isFalse();
+        assertThat(CacheService.containsKeyDiskCache("2" + key)).isFalse();
+    }
+
+    @Test
+    public void write_thenRead_acrossWindowBoundaries_shouldReturnSameBytes() throws Exception {
+        final int windowSize = VideoSegmentStore.WINDOW_SIZE;
+        final byte[] data = new byte[windowSize + 4096];
+        new Random(1234567890).nextBytes(data);
+        subject.setExpectedLength(3 * windowSize);
+
+        subject.write(windowSize - 2048, data, 0, data.length);
+        final byte[] readBuffer = new byte[data.length + 10];
+        subject.read(windowSize - 2048, readBuffer, 10, data.length);
+
+        assertThat(Arrays.copyOfRange(readBuffer, 10, readBuffer.length)).isEqualTo(data);
+        // Mapping windows must not grow the pre-sized file
+        assertThat(getFileWithExtension(VideoSegmentStore.DATA_EXTENSION).length())
+                .isEqualTo(3 * windowSize);
+    }
+
+    @Test
+    public void open_shouldOnlyPruneFirstTimeInProcess() throws Exception {
+        // Larger than any disk cache budget, but sparse
+        final File oldVideo = new File(directory, "old" + VideoSegmentStore.DATA_EXTENSION);
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(oldVideo, "rw");
+        randomAccessFile.setLength(200 * 1024 * 1024);
+        randomAccessFile.close();
+        assertThat(oldVideo.setLastModified(1000L)).isTrue();
+
+        VideoSegmentStore.open(directory, "https://www.otherurl").close();
+        assertThat(oldVideo.exists()).isTrue();
+
+        VideoSegmentStore.clearForTesting();
+        VideoSegmentStore.open(directory, "https://www.otherurl").close();
+        assertThat(oldVideo.exists()).isFalse();
+    }
+
+    @Test
+    public void setExpectedLength_whenGrowingPastBudget_shouldPrune() throws Exception {
+        final File oldVideo = createDataFile("old", 100, 1000L);
+
+        subject.setExpectedLength(200 * 1024 * 1024);
+
+        assertThat(oldVideo.exists()).isFalse();
+        assertThat(getFileWithExtension(VideoSegmentStore.DATA_EXTENSION).exists()).isTrue();
+    }
+
+    @Test
+    public void prune_shouldDeleteLeastRecentlyUsedVideosOverMaxSize() throws Exception {
+        subject.close();
+        final File keep = createDataFile("keep", 100, 4000L);
+        final File newest = createDataFile("newest", 100, 3000L);
+        final File older = createDataFile("older", 100, 2000L);
+        final File oldest = createDataFile("oldest", 100, 1000L);
+        final File oldestIndex = new File(directory, "oldest" + VideoSegmentStore.INDEX_EXTENSION);
+        assertThat(oldestIndex.createNewFile()).isTrue();
+
+        VideoSegmentStore.prune(directory, 250, keep);
+
+        assertThat(keep.exists()).isTrue();
+        assertThat(newest.exists()).isTrue();
+        assertThat(older.exists()).isFalse();
+        assertThat(oldest.exists()).isFalse();
+        assertThat(oldestIndex.exists()).isFalse();
+    }
+
+    private File createDataFile(final String name, final int size, final long lastModified)
+            throws Exception {
+        final File file = new File(directory, name + VideoSegmentStore.DATA_EXTENSION);
+        final FileOutputStream outputStream = new FileOutputStream(file);
+        outputStream.write(new byte[size]);
+        outputStream.close();
+        assertThat(file.setLastModified(lastModified)).isTrue();
+        return file;
+    }
+
+    private File getFileWithExtension(final String extension) {
+        for (final File file : directory.listFiles()) {
+            if (file.getName().endsWith(extension)) {
+                return file;
+            }
+        }
+        throw new AssertionError("No file ending with " + extension);
+    }
+
+    private static TreeSet<IntInterval> intervals(final IntInterval... intervals) {
+        return new TreeSet<IntInterval>(Arrays.asList(intervals));
+    }
+}
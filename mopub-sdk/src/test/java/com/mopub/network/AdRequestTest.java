@@ -37,6 +37,8 @@ import java.util.TreeMap;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -74,6 +76,7 @@ public class AdRequestTest {
         defaultHeaders.put(ResponseHeader.IMPRESSION_VISIBLE_MS.getKey(), "2000");
         defaultHeaders.put(ResponseHeader.MAX_BUFFER_MS.getKey(), "1000");
 
+        when(mockEventDispatcher.isSampled(anyString(), anyDouble())).thenReturn(true);
         MoPubEvents.setEventDispatcher(mockEventDispatcher);
     }
 
@@ -486,4 +489,15 @@ public class AdRequestTest {
 
         verify(mockEventDispatcher).dispatch(any(BaseEvent.class));
     }
+
+    @Test
+    public void logScribeEvent_withRequestIdThatDidNotPassSampling_shouldNotLogEvent() throws Exception {
+        when(mockAdResponse.getRequestId()).thenReturn("request_id");
+        when(mockEventDispatcher.isSampled("request_id", 0.1)).thenReturn(false);
+
+        subject.logScribeEvent(mockAdResponse, new NetworkResponse(200, null, null, false, 300),
+                null);
+
+        verify(mockEventDispatcher, never()).dispatch(any(BaseEvent.class));
+    }
 }
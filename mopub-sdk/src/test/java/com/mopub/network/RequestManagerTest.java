@@ -4,7 +4,9 @@ import android.os.Looper;
 
 import com.mopub.common.test.support.SdkTestRunner;
 import com.mopub.mobileads.BuildConfig;
+import com.mopub.volley.NoConnectionError;
 import com.mopub.volley.Request;
+import com.mopub.volley.VolleyError;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +17,7 @@ import org.robolectric.annotation.Config;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -36,7 +39,7 @@ public class RequestManagerTest {
         Networking.setRequestQueueForTesting(mockRequestQueue);
 
         subject = new ScribeRequestManager(Looper.getMainLooper());
-        when(mockScribeRequestFactory.createRequest(subject)).thenReturn(mockScribeRequest);
+        when(mockScribeRequestFactory.createRequest(any(ScribeRequest.Listener.class))).thenReturn(mockScribeRequest);
     }
 
     @Test
@@ -44,45 +47,83 @@ public class RequestManagerTest {
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
 
         verify(mockRequestQueue).add(mockScribeRequest);
+        assertThat(subject.getInFlightRequests()).hasSize(1);
+        assertThat(subject.getStats().getInFlightCount()).isEqualTo(1);
     }
 
-
     @Test
-    public void makeRequest_shouldCancelTheCurrentRequest() throws Exception {
-        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
-        Request<?> request = subject.getCurrentRequest();
+    public void makeRequest_belowCapacity_shouldKeepCurrentRequestInFlight() throws Exception {
+        ScribeRequest.ScribeRequestFactory otherFactory = mock(ScribeRequest.ScribeRequestFactory.class);
+        ScribeRequest otherRequest = mock(ScribeRequest.class);
+        when(otherFactory.createRequest(any(ScribeRequest.Listener.class))).thenReturn(otherRequest);
 
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
+        assertThat(subject.isAtCapacity()).isFalse();
+        subject.makeRequest(otherFactory, mock(ScribeBackoffPolicy.class));
+
+        verify(mockRequestQueue, never()).cancel(any(Request.class));
+        verify(mockRequestQueue).add(otherRequest);
+        assertThat(subject.getInFlightRequests()).hasSize(2);
+        assertThat(subject.isAtCapacity()).isTrue();
+    }
+
+    @Test
+    public void makeRequest_atCapacity_shouldCancelOldestRequest() throws Exception {
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy, "first");
+        Request<?> request = subject.getInFlightRequests().get(0).getCurrentRequest();
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy, "second");
+
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy, "third");
 
         verify(mockRequestQueue).cancel(request);
+        assertThat(subject.hasRequest("first")).isFalse();
+        assertThat(subject.hasRequest("second")).isTrue();
+        assertThat(subject.hasRequest("third")).isTrue();
+        assertThat(subject.getStats().getCancelledCount()).isEqualTo(1);
     }
 
     @Test
-    public void cancelRequest_shouldCancelRequestInQueue_shouldClearRequest() throws Exception {
+    public void cancelRequest_shouldCancelRequestsInQueue_shouldClearRequests() throws Exception {
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
         subject.cancelRequest();
 
         verify(mockRequestQueue).cancel(mockScribeRequest);
-        assertThat(subject.getCurrentRequest()).isNull();
+        assertThat(subject.getInFlightRequests()).isEmpty();
     }
 
     @Test
-    public void cancelRequest_withNullRequestQueue_shouldOnlyClearCurrentRequest() throws Exception {
+    public void cancelRequest_withNullRequestQueue_shouldOnlyClearRequests() throws Exception {
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
         Networking.setRequestQueueForTesting(null);
 
-        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
         subject.cancelRequest();
 
         verify(mockRequestQueue, never()).cancel(mockScribeRequest);
-        assertThat(subject.getCurrentRequest()).isNull();
+        assertThat(subject.getInFlightRequests()).isEmpty();
     }
 
     @Test
-    public void cancelRequest_withNullCurrentRequest_shouldOnlyClearCurrentRequest() throws Exception {
+    public void cancelRequest_withNoRequests_shouldNotCancelAnything() throws Exception {
         subject.cancelRequest();
 
-        verify(mockRequestQueue, never()).cancel(mockScribeRequest);
-        assertThat(subject.getCurrentRequest()).isNull();
+        verify(mockRequestQueue, never()).cancel(any(Request.class));
+        assertThat(subject.getStats().getCancelledCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void cancelRequests_shouldOnlyCancelRequestsWithTag() throws Exception {
+        ScribeRequest.ScribeRequestFactory otherFactory = mock(ScribeRequest.ScribeRequestFactory.class);
+        ScribeRequest otherRequest = mock(ScribeRequest.class);
+        when(otherFactory.createRequest(any(ScribeRequest.Listener.class))).thenReturn(otherRequest);
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy, "tag");
+        subject.makeRequest(otherFactory, mockScribeBackoffPolicy, "other tag");
+
+        subject.cancelRequests("tag");
+
+        verify(mockRequestQueue).cancel(mockScribeRequest);
+        verify(mockRequestQueue, never()).cancel(otherRequest);
+        assertThat(subject.hasRequest("tag")).isFalse();
+        assertThat(subject.hasRequest("other tag")).isTrue();
     }
 
     @Test
@@ -90,11 +131,12 @@ public class RequestManagerTest {
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
         reset(mockRequestQueue);
 
-        ScribeRequest previousRequest = (ScribeRequest) subject.getCurrentRequest();
+        ScribeRequestManager.InFlightRequest inFlightRequest = subject.getInFlightRequests().get(0);
+        ScribeRequest previousRequest = (ScribeRequest) inFlightRequest.getCurrentRequest();
         ScribeRequest nextRequest = mock(ScribeRequest.class);
-        when(mockScribeRequestFactory.createRequest(subject)).thenReturn(nextRequest);
+        when(mockScribeRequestFactory.createRequest(any(ScribeRequest.Listener.class))).thenReturn(nextRequest);
 
-        subject.makeRequestInternal();
+        subject.makeRequestInternal(inFlightRequest);
 
         verify(mockRequestQueue).add(nextRequest);
         verify(mockRequestQueue, never()).addDelayedRequest(any(Request.class), anyInt());
@@ -108,34 +150,76 @@ public class RequestManagerTest {
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
         reset(mockRequestQueue);
 
-        ScribeRequest previousRequest = (ScribeRequest) subject.getCurrentRequest();
+        ScribeRequestManager.InFlightRequest inFlightRequest = subject.getInFlightRequests().get(0);
+        ScribeRequest previousRequest = (ScribeRequest) inFlightRequest.getCurrentRequest();
         ScribeRequest nextRequest = mock(ScribeRequest.class);
-        when(mockScribeRequestFactory.createRequest(subject)).thenReturn(nextRequest);
+        when(mockScribeRequestFactory.createRequest(any(ScribeRequest.Listener.class))).thenReturn(nextRequest);
 
-        subject.makeRequestInternal();
+        subject.makeRequestInternal(inFlightRequest);
 
         verify(mockRequestQueue).addDelayedRequest(nextRequest, 100);
         verify(mockRequestQueue, never()).add(any(Request.class));
         assertThat(previousRequest).isNotEqualTo(nextRequest);
+        assertThat(subject.getStats().getRetryingCount()).isEqualTo(1);
     }
 
     @Test
-    public void makeRequestInternal_withNullRequestQueue_shouldClearCurrentRequest_shouldNotAddRequestToQueue() throws Exception {
+    public void makeRequestInternal_withNullRequestQueue_shouldClearRequest_shouldNotAddRequestToQueue() throws Exception {
         Networking.setRequestQueueForTesting(null);
 
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
 
         verify(mockRequestQueue, never()).add(any(Request.class));
         verify(mockRequestQueue, never()).addDelayedRequest(any(Request.class), anyInt());
-        assertThat(subject.getCurrentRequest()).isNull();
+        assertThat(subject.getInFlightRequests()).isEmpty();
     }
 
     @Test
-    public void clearRequest_shouldSetCurrentRequestToNull() throws Exception {
+    public void onRequestSucceeded_shouldClearRequest_shouldCountSuccess() throws Exception {
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
-        assertThat(subject.getCurrentRequest()).isNotNull();
-        subject.clearRequest();
-        assertThat(subject.getCurrentRequest()).isNull();
+
+        subject.onRequestSucceeded(subject.getInFlightRequests().get(0));
+
+        assertThat(subject.getInFlightRequests()).isEmpty();
+        assertThat(subject.getStats().getSucceededCount()).isEqualTo(1);
     }
-}
 
+    @Test
+    public void onRequestFailed_shouldOnlyBackOffFailedRequest() throws Exception {
+        ScribeBackoffPolicy otherBackoffPolicy = mock(ScribeBackoffPolicy.class);
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
+        subject.makeRequest(mockScribeRequestFactory, otherBackoffPolicy);
+        VolleyError volleyError = new NoConnectionError();
+
+        subject.onRequestFailed(subject.getInFlightRequests().get(1), volleyError);
+
+        verify(otherBackoffPolicy).backoff(volleyError);
+        verify(mockScribeBackoffPolicy, never()).backoff(any(VolleyError.class));
+        assertThat(subject.getInFlightRequests()).hasSize(2);
+    }
+
+    @Test
+    public void onRequestFailed_withNoAttemptsRemaining_shouldClearRequest_shouldCountAbandoned() throws Exception {
+        VolleyError volleyError = new NoConnectionError();
+        doThrow(new VolleyError()).when(mockScribeBackoffPolicy).backoff(volleyError);
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy, "tag");
+
+        subject.onRequestFailed(subject.getInFlightRequests().get(0), volleyError);
+
+        assertThat(subject.hasRequest("tag")).isFalse();
+        assertThat(subject.getStats().getAbandonedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void onRequestFailed_afterCancel_shouldNotRetry() throws Exception {
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
+        ScribeRequestManager.InFlightRequest inFlightRequest = subject.getInFlightRequests().get(0);
+        subject.cancelRequest();
+        reset(mockRequestQueue);
+
+        subject.onRequestFailed(inFlightRequest, new NoConnectionError());
+
+        verify(mockScribeBackoffPolicy, never()).backoff(any(VolleyError.class));
+        verify(mockRequestQueue, never()).add(any(Request.class));
+    }
+}
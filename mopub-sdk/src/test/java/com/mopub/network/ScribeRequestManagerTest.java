@@ -11,10 +11,12 @@ import com.mopub.volley.VolleyError;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.robolectric.annotation.Config;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -26,6 +28,7 @@ import static org.mockito.Mockito.when;
 public class ScribeRequestManagerTest {
 
     private ScribeRequestManager subject;
+    private ScribeRequest.Listener listener;
     @Mock private ScribeRequest.ScribeRequestFactory mockScribeRequestFactory;
     @Mock private ScribeBackoffPolicy mockScribeBackoffPolicy;
     @Mock private ScribeRequest mockScribeRequest;
@@ -36,20 +39,35 @@ public class ScribeRequestManagerTest {
         Networking.setRequestQueueForTesting(mockRequestQueue);
 
         subject = new ScribeRequestManager(Looper.getMainLooper());
-        when(mockScribeRequestFactory.createRequest(subject)).thenReturn(mockScribeRequest);
+        when(mockScribeRequestFactory.createRequest(any(ScribeRequest.Listener.class))).thenReturn(mockScribeRequest);
         subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
+
+        ArgumentCaptor<ScribeRequest.Listener> listenerCaptor = ArgumentCaptor.forClass(ScribeRequest.Listener.class);
+        verify(mockScribeRequestFactory).createRequest(listenerCaptor.capture());
+        listener = listenerCaptor.getValue();
     }
 
     @Test
     public void createRequest_shouldCreateNewScribeRequest() throws Exception {
-        Request request = subject.createRequest();
+        Request request = subject.createRequest(subject.getInFlightRequests().get(0));
         assertThat(request).isEqualTo(mockScribeRequest);
     }
 
+    @Test
+    public void isAtCapacity_withTwoRequestsInFlight_shouldReturnTrue() throws Exception {
+        assertThat(subject.isAtCapacity()).isFalse();
+
+        subject.makeRequest(mockScribeRequestFactory, mockScribeBackoffPolicy);
+
+        assertThat(subject.isAtCapacity()).isTrue();
+    }
+
     @Test
     public void onResponse_shouldClearRequest() throws Exception {
-        subject.onResponse();
-        assertThat(subject.getCurrentRequest()).isNull();
+        listener.onResponse();
+
+        assertThat(subject.getInFlightRequests()).isEmpty();
+        assertThat(subject.getStats().getSucceededCount()).isEqualTo(1);
     }
 
     @Test
@@ -58,10 +76,11 @@ public class ScribeRequestManagerTest {
         when(mockScribeBackoffPolicy.getBackoffMs()).thenReturn(100);
 
         VolleyError volleyError = new NoConnectionError();
-        subject.onErrorResponse(volleyError);
+        listener.onErrorResponse(volleyError);
 
         verify(mockScribeBackoffPolicy).backoff(volleyError);
         verify(mockRequestQueue).addDelayedRequest(mockScribeRequest, 100);
+        assertThat(subject.getStats().getRetryingCount()).isEqualTo(1);
     }
 
     @Test
@@ -71,10 +90,11 @@ public class ScribeRequestManagerTest {
         VolleyError volleyError = new NoConnectionError();
         doThrow(new VolleyError()).when(mockScribeBackoffPolicy).backoff(volleyError);
 
-        subject.onErrorResponse(volleyError);
+        listener.onErrorResponse(volleyError);
 
         verify(mockScribeBackoffPolicy).backoff(volleyError);
         verify(mockRequestQueue, never()).add(mockScribeRequest);
-        assertThat(subject.getCurrentRequest()).isNull();
+        assertThat(subject.getInFlightRequests()).isEmpty();
+        assertThat(subject.getStats().getAbandonedCount()).isEqualTo(1);
     }
 }
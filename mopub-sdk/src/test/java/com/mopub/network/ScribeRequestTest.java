@@ -2,38 +2,44 @@ package com.mopub.network;
 
 import android.app.Activity;
 
-import com.mopub.common.event.BaseEvent;
 import com.mopub.common.event.EventSerializer;
 import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.Streams;
 import com.mopub.mobileads.BuildConfig;
 import com.mopub.volley.DefaultRetryPolicy;
 import com.mopub.volley.NetworkResponse;
 import com.mopub.volley.Response;
 
-import org.json.JSONArray;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.robolectric.Robolectric;
 import org.robolectric.annotation.Config;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.fest.assertions.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 @RunWith(SdkTestRunner.class)
 @Config(constants = BuildConfig.class)
 public class ScribeRequestTest {
 
     private ScribeRequest subject;
-    @Mock private List<BaseEvent> mockEvents;
+    @Mock private List<byte[]> mockRecords;
     @Mock private EventSerializer mockEventSerializer;
     @Mock private ScribeRequest.Listener mockListener;
 
@@ -42,7 +48,7 @@ public class ScribeRequestTest {
         Activity activity = Robolectric.buildActivity(Activity.class).create().get();
         Networking.getRequestQueue(activity);
 
-        subject = new ScribeRequest("url", mockEvents, mockEventSerializer, mockListener);
+        subject = new ScribeRequest("url", mockRecords, mockEventSerializer, mockListener);
     }
 
     @Test
@@ -56,18 +62,39 @@ public class ScribeRequestTest {
     }
 
     @Test
-    public void getParams_returnJsonSerializedEventsInMap() throws Exception {
-        JSONArray mockJsonArray = mock(JSONArray.class);
-        when(mockJsonArray.toString()).thenReturn("jsonArrayToString");
-        when(mockEventSerializer.serializeAsJson(mockEvents)).thenReturn(mockJsonArray);
+    public void getHeaders_shouldSetGzipContentEncoding() throws Exception {
+        assertThat(subject.getHeaders().get("Content-Encoding")).isEqualTo("gzip");
+    }
+
+    @Test
+    public void getBody_shouldReturnGzippedFormEncodedJson() throws Exception {
+        stubJson("[{\"name\":\"ad request\",\"uri\":\"https://a.com/?x=1&y=2\"}]");
 
-        Map<String, String> params = subject.getParams();
+        String body = gunzip(subject.getBody());
 
-        verify(mockEventSerializer).serializeAsJson(mockEvents);
-        assertThat(params.keySet().size()).isEqualTo(1);
-        assertThat(params.get("log")).isEqualTo("jsonArrayToString");
+        verify(mockEventSerializer).writeRecordsAsJson(eq(mockRecords), any(Writer.class));
+        assertThat(body).isEqualTo("log=" + URLEncoder.encode(
+                "[{\"name\":\"ad request\",\"uri\":\"https://a.com/?x=1&y=2\"}]", "UTF-8"));
     }
-    
+
+    @Test
+    public void getBody_withJsonLongerThanChunk_withSurrogatePairAtChunkEnd_shouldEncodeItOnce() throws Exception {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 4095; i++) {
+            json.append('a');
+        }
+        // A surrogate pair straddling the end of the first chunk
+        json.append("\ud83d\ude00");
+        for (int i = 0; i < 5000; i++) {
+            json.append('\u00e9');
+        }
+        stubJson(json.toString());
+
+        String body = gunzip(subject.getBody());
+
+        assertThat(body).isEqualTo("log=" + URLEncoder.encode(json.toString(), "UTF-8"));
+    }
+
     @Test
     public void parseNetworkResponse_shouldReturnSuccessResponse() throws Exception {
         NetworkResponse networkResponse = new NetworkResponse(200, "abc".getBytes(Charset.defaultCharset()), new HashMap<String, String>(), false);
@@ -83,4 +110,25 @@ public class ScribeRequestTest {
 
         verify(mockListener).onResponse();
     }
+
+    private void stubJson(final String json) throws Exception {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Writer writer = (Writer) invocation.getArguments()[1];
+                // Write in several pieces, as the serializer writes one event at a time
+                int middle = json.length() / 2;
+                writer.write(json.substring(0, middle));
+                writer.write(json.substring(middle));
+                return null;
+            }
+        }).when(mockEventSerializer).writeRecordsAsJson(eq(mockRecords), any(Writer.class));
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Streams.copyContent(gzipInputStream, outputStream);
+        return new String(outputStream.toByteArray(), "US-ASCII");
+    }
 }
@@ -0,0 +1,115 @@
+package com.mopub.network;
+
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.mobileads.BuildConfig;
+import com.mopub.volley.NetworkResponse;
+import com.mopub.volley.NoConnectionError;
+import com.mopub.volley.TimeoutError;
+import com.mopub.volley.VolleyError;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.fail;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TrackingBackoffPolicyTest {
+
+    private TrackingBackoffPolicy subject;
+
+    @Before
+    public void setUp() {
+        subject = new TrackingBackoffPolicy();
+    }
+
+    @Test(expected = VolleyError.class)
+    public void backoff_with503Error_shouldRethrowException() throws Exception {
+        // The server received the request, so it may have recorded the hit.
+        NetworkResponse networkResponse = new NetworkResponse(503, null, null, false);
+        VolleyError volleyError = new VolleyError(networkResponse);
+
+        subject.backoff(volleyError);
+    }
+
+    @Test(expected = VolleyError.class)
+    public void backoff_with504Error_shouldRethrowException() throws Exception {
+        NetworkResponse networkResponse = new NetworkResponse(504, null, null, false);
+        VolleyError volleyError = new VolleyError(networkResponse);
+
+        subject.backoff(volleyError);
+    }
+
+    @Test
+    public void backoff_withUnknownHost_shouldDoubleBackoffTimeEachRetry() throws Exception {
+        VolleyError volleyError = new NoConnectionError(new UnknownHostException());
+
+        subject.backoff(volleyError);
+        assertThat(subject.getBackoffMs()).isEqualTo(5000);
+
+        subject.backoff(volleyError);
+        assertThat(subject.getBackoffMs()).isEqualTo(10000);
+
+        subject.backoff(volleyError);
+        assertThat(subject.getBackoffMs()).isEqualTo(20000);
+        assertThat(subject.getRetryCount()).isEqualTo(3);
+    }
+
+    @Test(expected = VolleyError.class)
+    public void backoff_with500Error_shouldRethrowException() throws Exception {
+        NetworkResponse networkResponse = new NetworkResponse(500, null, null, false);
+        VolleyError volleyError = new VolleyError(networkResponse);
+
+        subject.backoff(volleyError);
+    }
+
+    @Test
+    public void backoff_withConnectionRefusedOrNoRoute_shouldUpdateBackoffTime() throws Exception {
+        subject.backoff(new NoConnectionError(new ConnectException()));
+        subject.backoff(new NoConnectionError(new NoRouteToHostException()));
+
+        assertThat(subject.getRetryCount()).isEqualTo(2);
+    }
+
+    @Test(expected = NoConnectionError.class)
+    public void backoff_withConnectionBrokenAfterOpening_shouldRethrowException() throws Exception {
+        // The request may have been written before the connection broke.
+        subject.backoff(new NoConnectionError(new SocketException()));
+    }
+
+    @Test(expected = NoConnectionError.class)
+    public void backoff_withNoConnectionErrorWithoutCause_shouldRethrowException()
+            throws Exception {
+        subject.backoff(new NoConnectionError());
+    }
+
+    @Test(expected = TimeoutError.class)
+    public void backoff_withTimeoutError_shouldRethrowException() throws Exception {
+        // The server may have recorded the hit before the request timed out.
+        subject.backoff(new TimeoutError());
+    }
+
+    @Test(expected = NoConnectionError.class)
+    public void backoff_withNoAttemptsRemaining_shouldRethrowVolleyException() throws Exception {
+        VolleyError volleyError = new NoConnectionError(new UnknownHostException());
+
+        try {
+            for (int i = 0; i < 5; i++) {
+                subject.backoff(volleyError);
+            }
+        } catch (Exception e) {
+            fail("Exception should not be thrown from above backoffs.");
+        }
+        assertThat(subject.hasAttemptRemaining()).isFalse();
+
+        subject.backoff(volleyError);
+    }
+}
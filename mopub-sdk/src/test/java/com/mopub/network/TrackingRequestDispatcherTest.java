@@ -0,0 +1,271 @@
+package com.mopub.network;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.mopub.common.SharedPreferencesHelper;
+import com.mopub.common.test.support.SdkTestRunner;
+import com.mopub.common.util.DateAndTime;
+import com.mopub.mobileads.BuildConfig;
+import com.mopub.volley.NetworkResponse;
+import com.mopub.volley.NoConnectionError;
+import com.mopub.volley.VolleyError;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.mopub.common.VolleyRequestMatcher.isUrl;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(SdkTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TrackingRequestDispatcherTest {
+
+    private Context context;
+    private TrackingRequestDispatcher subject;
+    @Mock private MoPubRequestQueue mockRequestQueue;
+    @Mock private TrackingRequest.Listener mockListener;
+
+    @Before
+    public void setUp() {
+        context = Robolectric.buildActivity(Activity.class).create().get();
+        Networking.setRequestQueueForTesting(mockRequestQueue);
+        subject = new TrackingRequestDispatcher(context, new Handler(Looper.getMainLooper()));
+    }
+
+    @Test
+    public void dispatch_shouldSendUpToMaxRequestsInFlight_shouldQueueTheRest() {
+        subject.dispatch(Arrays.asList("url1", "url2", "url3", "url4", "url5"), null);
+
+        final List<TrackingRequest> requests =
+                captureRequests(TrackingRequestDispatcher.MAX_REQUESTS_IN_FLIGHT);
+        verify(mockRequestQueue, never()).add(argThat(isUrl("url5")));
+        assertThat(subject.getUndeliveredCount()).isEqualTo(5);
+
+        requests.get(0).deliverResponse(null);
+
+        verify(mockRequestQueue).add(argThat(isUrl("url5")));
+    }
+
+    @Test
+    public void dispatch_withRetryWaiting_shouldSendNewHitsFirst() {
+        subject.dispatch(Arrays.asList("failing", "url1", "url2", "url3"), null);
+        captureRequests(4).get(0).deliverError(new NoConnectionError(new UnknownHostException()));
+        subject.dispatch(Arrays.asList("url4"), null);
+        final List<TrackingRequest> requests = captureRequests(5);
+        ShadowLooper.idleMainLooper(5000);
+        subject.dispatch(Arrays.asList("url5"), null);
+        reset(mockRequestQueue);
+
+        // Both the retry and url5 are waiting for a slot.
+        requests.get(1).deliverResponse(null);
+
+        verify(mockRequestQueue).add(argThat(isUrl("url5")));
+        verify(mockRequestQueue, never()).add(argThat(isUrl("failing")));
+    }
+
+    @Test
+    public void dispatch_withRepeatedAndEmptyUrls_shouldSendEachUrlOnce() {
+        subject.dispatch(Arrays.asList("url", "", "url", null), null);
+
+        verify(mockRequestQueue).add(argThat(isUrl("url")));
+        assertThat(subject.getUndeliveredCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void dispatch_withSameUrlInSeparateCalls_shouldSendBoth() {
+        subject.dispatch(Arrays.asList("url"), null);
+        subject.dispatch(Arrays.asList("url"), null);
+
+        verify(mockRequestQueue, times(2)).add(argThat(isUrl("url")));
+    }
+
+    @Test
+    public void dispatch_withSameUrlForSameAd_shouldSendOnce() {
+        final Object ad = new Object();
+
+        subject.dispatch(Arrays.asList("url"), null, ad);
+        subject.dispatch(Arrays.asList("url", "other"), null, ad);
+
+        verify(mockRequestQueue).add(argThat(isUrl("url")));
+        verify(mockRequestQueue).add(argThat(isUrl("other")));
+    }
+
+    @Test
+    public void dispatch_withSameUrlForDifferentAds_shouldSendBoth() {
+        subject.dispatch(Arrays.asList("url"), null, new Object());
+        subject.dispatch(Arrays.asList("url"), null, new Object());
+
+        verify(mockRequestQueue, times(2)).add(argThat(isUrl("url")));
+    }
+
+    @Test
+    public void onResponse_shouldNotifyListener_shouldRecordDelivery() {
+        subject.dispatch(Arrays.asList("url"), mockListener);
+
+        captureRequests(1).get(0).deliverResponse(null);
+
+        verify(mockListener).onResponse("url");
+        assertThat(subject.getDeliveredCount()).isEqualTo(1);
+        assertThat(subject.getUndeliveredCount()).isEqualTo(0);
+        assertThat(subject.getAverageDeliveryLatencyMillis()).isEqualTo(0);
+    }
+
+    @Test
+    public void onErrorResponse_withUnknownHost_shouldRetrySameHitAfterBackoff() {
+        subject.dispatch(Arrays.asList("url"), mockListener);
+        final TrackingRequest request = captureRequests(1).get(0);
+        reset(mockRequestQueue);
+
+        request.deliverError(new NoConnectionError(new UnknownHostException()));
+
+        verify(mockListener, never()).onErrorResponse(any(VolleyError.class));
+        verifyZeroInteractions(mockRequestQueue);
+        assertThat(subject.getRetriedCount()).isEqualTo(1);
+        assertThat(subject.getUndeliveredCount()).isEqualTo(1);
+
+        ShadowLooper.idleMainLooper(5000);
+
+        verify(mockRequestQueue).add(argThat(isUrl("url")));
+    }
+
+    @Test
+    public void onErrorResponse_withConnectionBrokenAfterOpening_shouldNotRetry() {
+        subject.dispatch(Arrays.asList("url"), mockListener);
+        final VolleyError volleyError = new NoConnectionError(new SocketException());
+
+        captureRequests(1).get(0).deliverError(volleyError);
+
+        verify(mockListener).onErrorResponse(volleyError);
+        assertThat(subject.getRetriedCount()).isEqualTo(0);
+        assertThat(subject.getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void onErrorResponse_withServerError_shouldNotRetry_shouldNotifyListener() {
+        subject.dispatch(Arrays.asList("url"), mockListener);
+        final VolleyError volleyError =
+                new VolleyError(new NetworkResponse(500, null, null, false));
+
+        captureRequests(1).get(0).deliverError(volleyError);
+
+        verify(mockListener).onErrorResponse(volleyError);
+        assertThat(subject.getRetriedCount()).isEqualTo(0);
+        assertThat(subject.getDroppedCount()).isEqualTo(1);
+        assertThat(subject.getUndeliveredCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void onErrorResponse_withNoAttemptsRemaining_shouldDropHit_shouldNotifyListener() {
+        subject.dispatch(Arrays.asList("url"), mockListener);
+        final NoConnectionError error = new NoConnectionError(new UnknownHostException());
+
+        for (int i = 0; i < 6; i++) {
+            final List<TrackingRequest> requests = captureRequests(i + 1);
+            requests.get(i).deliverError(error);
+            ShadowLooper.idleMainLooper(100000);
+        }
+
+        verify(mockListener).onErrorResponse(error);
+        assertThat(subject.getRetriedCount()).isEqualTo(5);
+        assertThat(subject.getDroppedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void retry_withRequestsInFlight_shouldWaitForFreeSlot() {
+        subject.dispatch(Arrays.asList("failing"), null);
+        captureRequests(1).get(0).deliverError(new NoConnectionError(new UnknownHostException()));
+        subject.dispatch(Arrays.asList("url1", "url2", "url3", "url4"), null);
+        final List<TrackingRequest> requests = captureRequests(5);
+        reset(mockRequestQueue);
+
+        ShadowLooper.idleMainLooper(5000);
+        verifyZeroInteractions(mockRequestQueue);
+
+        requests.get(1).deliverResponse(null);
+        verify(mockRequestQueue).add(argThat(isUrl("failing")));
+    }
+
+    @Test
+    public void persist_thenRestore_shouldResendUndeliveredHits() {
+        subject.dispatch(Arrays.asList("url1", "url2"), null);
+        final List<TrackingRequest> requests = captureRequests(2);
+        requests.get(0).deliverResponse(null);
+        requests.get(1).deliverError(new NoConnectionError(new UnknownHostException()));
+        subject.persist();
+        reset(mockRequestQueue);
+
+        final TrackingRequestDispatcher restored =
+                new TrackingRequestDispatcher(context, new Handler(Looper.getMainLooper()));
+        restored.restore();
+
+        verify(mockRequestQueue).add(argThat(isUrl("url2")));
+        verify(mockRequestQueue, never()).add(argThat(isUrl("url1")));
+        assertThat(restored.getUndeliveredCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void persist_withRequestInFlight_shouldNotPersistHit() {
+        subject.dispatch(Arrays.asList("url"), null);
+        subject.persist();
+        reset(mockRequestQueue);
+
+        final TrackingRequestDispatcher restored =
+                new TrackingRequestDispatcher(context, new Handler(Looper.getMainLooper()));
+        restored.restore();
+
+        verifyZeroInteractions(mockRequestQueue);
+        assertThat(restored.getUndeliveredCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void restore_shouldSkipExpiredAndDuplicateHits() throws Exception {
+        final long now = DateAndTime.now().getTime();
+        final JSONArray jsonArray = new JSONArray();
+        jsonArray.put(new JSONObject().put("url", "fresh").put("timestamp", now - 1000)
+                .put("sequence-number", 1));
+        jsonArray.put(new JSONObject().put("url", "fresh").put("timestamp", now - 1000)
+                .put("sequence-number", 1));
+        jsonArray.put(new JSONObject().put("url", "expired")
+                .put("timestamp", now - TrackingRequestDispatcher.MAX_AGE_MILLIS)
+                .put("sequence-number", 2));
+        SharedPreferencesHelper.getSharedPreferences(context).edit()
+                .putString(TrackingRequestDispatcher.PENDING_TRACKERS_KEY, jsonArray.toString())
+                .commit();
+
+        subject.restore();
+
+        verify(mockRequestQueue).add(argThat(isUrl("fresh")));
+        verify(mockRequestQueue, never()).add(argThat(isUrl("expired")));
+        assertThat(subject.getUndeliveredCount()).isEqualTo(1);
+    }
+
+    private List<TrackingRequest> captureRequests(final int count) {
+        final ArgumentCaptor<TrackingRequest> captor =
+                ArgumentCaptor.forClass(TrackingRequest.class);
+        verify(mockRequestQueue, times(count)).add(captor.capture());
+        return captor.getAllValues();
+    }
+}